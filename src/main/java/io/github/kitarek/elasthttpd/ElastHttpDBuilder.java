@@ -19,6 +19,7 @@ package io.github.kitarek.elasthttpd;
 
 import io.github.kitarek.elasthttpd.plugins.consumers.ConsumerPluginBuilder;
 import io.github.kitarek.elasthttpd.server.HttpServer;
+import io.github.kitarek.elasthttpd.server.compression.CompressionConfigurationBuilder;
 import io.github.kitarek.elasthttpd.server.consumers.HttpRequestConsumer;
 import io.github.kitarek.elasthttpd.server.networking.NetworkConfigurationBuilder;
 
@@ -69,6 +70,15 @@ public interface ElastHttpDBuilder {
 	 */
 	ElastHttpDBuilder consumeRequestsWithPlugin(ConsumerPluginBuilder consumerPluginBuilder);
 
+	/**
+	 * Compress response entities on the fly for clients that accept it (see Accept-Encoding request header).
+	 * Compression is applied to responses of any request consumer - custom one or built by plugin.
+	 *
+	 * @param compressionConfigurationBuilder preconfigured not-null compression settings builder
+	 * @return the current builder for chaining other methods
+	 */
+	ElastHttpDBuilder compressResponses(CompressionConfigurationBuilder compressionConfigurationBuilder);
+
 	/**
 	 * Allows to configure number of threads and connections that can run in parallel different requests. Please
 	 * note that for {@code value > 1} consumer passed here: {@link #customRequestConsumer(HttpRequestConsumer)}
@@ -18,9 +18,14 @@
 package io.github.kitarek.elasthttpd.builder;
 
 import io.github.kitarek.elasthttpd.ElastHttpDBuilder;
+import io.github.kitarek.elasthttpd.commons.Optional;
 import io.github.kitarek.elasthttpd.plugins.consumers.ConsumerPluginBuilder;
 import io.github.kitarek.elasthttpd.server.HttpServer;
 import io.github.kitarek.elasthttpd.server.SimpleHttpServer;
+import io.github.kitarek.elasthttpd.server.compression.AcceptEncodingNegotiator;
+import io.github.kitarek.elasthttpd.server.compression.CompressingHttpRequestConsumer;
+import io.github.kitarek.elasthttpd.server.compression.CompressionConfiguration;
+import io.github.kitarek.elasthttpd.server.compression.CompressionConfigurationBuilder;
 import io.github.kitarek.elasthttpd.server.consumers.HttpRequestConsumer;
 import io.github.kitarek.elasthttpd.server.executors.HttpConnectionListenerExecutor;
 import io.github.kitarek.elasthttpd.server.executors.ListenerExecutor;
@@ -30,6 +35,10 @@ import io.github.kitarek.elasthttpd.server.networking.NetworkConfigurationBuilde
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.util.Collections;
+import java.util.List;
+
 import static io.github.kitarek.elasthttpd.builder.HttpConnectionListenerBuilder.newListener;
 import static io.github.kitarek.elasthttpd.server.networking.HttpConfiguredServerSocket.newHttpConfiguredServerSocket;
 import static io.github.kitarek.elasthttpd.server.networking.NetworkConfigurationBuilder.newConfiguration;
@@ -42,6 +51,7 @@ public class FluentElastHttpDBuilder implements ElastHttpDBuilder {
 	private HttpServer server;
 	private NetworkConfigurationBuilder networkConfigurationBuilder = newConfiguration();
 	private HttpRequestConsumer customHttpRequestConsumer = new DummyHttpRequestConsumer();
+	private Optional<CompressionConfiguration> optionalCompressionConfiguration = Optional.empty();
 
 	private int maximumNumberOfThreads = DEFAULT_MAXIMUM_NUMBER_OF_CONCURRENT_CONNECTIONS;
 	private String serverInfoLine = DEFAULT_SERVER_INFO_LINE;
@@ -68,6 +78,12 @@ public class FluentElastHttpDBuilder implements ElastHttpDBuilder {
 		return this;
 	}
 
+	public ElastHttpDBuilder compressResponses(CompressionConfigurationBuilder compressionConfigurationBuilder) {
+		this.optionalCompressionConfiguration = Optional.present(notNull(compressionConfigurationBuilder,
+				"Compression configuration builder must be not null").createNow());
+		return this;
+	}
+
 	public ElastHttpDBuilder concurrentConnections(int maximumNumberOfThreads) {
 		inclusiveBetween(1, MAX_VALUE, maximumNumberOfThreads, "Maximum number of threads must be greater than 0");
 		this.maximumNumberOfThreads = maximumNumberOfThreads;
@@ -78,11 +94,25 @@ public class FluentElastHttpDBuilder implements ElastHttpDBuilder {
 		final ListenerExecutor listenerExecutor = new HttpConnectionListenerExecutor();
 		final ListeningSocket listeningSocket = newHttpConfiguredServerSocket(networkConfigurationBuilder.createNow());
 		final HttpConnectionListener connectionListener = newListener(serverInfoLine, maximumNumberOfThreads)
-				.createNow(customHttpRequestConsumer);
-		server = new SimpleHttpServer(listenerExecutor, connectionListener, listeningSocket);
+				.createNow(decorateWithCompressionIfConfigured(customHttpRequestConsumer));
+		server = new SimpleHttpServer(listenerExecutor, connectionListener, listeningSocket,
+				getResourcesClosedOnStop(customHttpRequestConsumer));
 		return server;
 	}
 
+	private static List<Closeable> getResourcesClosedOnStop(HttpRequestConsumer httpRequestConsumer) {
+		return httpRequestConsumer instanceof Closeable
+				? Collections.singletonList((Closeable) httpRequestConsumer)
+				: Collections.<Closeable>emptyList();
+	}
+
+	private HttpRequestConsumer decorateWithCompressionIfConfigured(HttpRequestConsumer httpRequestConsumer) {
+		return optionalCompressionConfiguration.isPresent()
+				? new CompressingHttpRequestConsumer(httpRequestConsumer, optionalCompressionConfiguration.get(),
+						new AcceptEncodingNegotiator())
+				: httpRequestConsumer;
+	}
+
 	public void run() {
 		runAsync();
 		server.waitUntilStopped();
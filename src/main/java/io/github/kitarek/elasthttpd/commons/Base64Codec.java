@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.commons;
+
+import java.util.Arrays;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty;
+import static io.github.kitarek.elasthttpd.commons.Optional.present;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Encodes and decodes the standard Base64 alphabet with padding (RFC 4648) used by digests in HTTP headers
+ * (i.e. Content-MD5, Digest). Decoding is strict: characters outside of the alphabet, missing padding and
+ * non-zero unused bits make the value invalid.
+ */
+public class Base64Codec {
+
+	private static final char[] ALPHABET =
+			"ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+	private static final char PADDING = '=';
+	private static final int INVALID = -1;
+	private static final int[] VALUES = new int[128];
+
+	static {
+		Arrays.fill(VALUES, INVALID);
+		for (int i = 0; i < ALPHABET.length; i++)
+			VALUES[ALPHABET[i]] = i;
+	}
+
+	private Base64Codec() {
+	}
+
+	/**
+	 * Encode bytes with padding
+	 *
+	 * @param bytes not null bytes to encode
+	 * @return not null encoded value
+	 */
+	public static String encode(byte[] bytes) {
+		notNull(bytes, "Bytes cannot be null");
+		final StringBuilder encoded = new StringBuilder((bytes.length + 2) / 3 * 4);
+		for (int i = 0; i < bytes.length; i += 3) {
+			final int remainingBytes = Math.min(3, bytes.length - i);
+			int group = (bytes[i] & 0xFF) << 16;
+			if (remainingBytes > 1)
+				group |= (bytes[i + 1] & 0xFF) << 8;
+			if (remainingBytes > 2)
+				group |= bytes[i + 2] & 0xFF;
+			encoded.append(ALPHABET[(group >> 18) & 0x3F]).append(ALPHABET[(group >> 12) & 0x3F]);
+			encoded.append(remainingBytes > 1 ? ALPHABET[(group >> 6) & 0x3F] : PADDING);
+			encoded.append(remainingBytes > 2 ? ALPHABET[group & 0x3F] : PADDING);
+		}
+		return encoded.toString();
+	}
+
+	/**
+	 * Decode value with padding
+	 *
+	 * @param value not null encoded value
+	 * @return optional decoded bytes; not present when the value is not valid
+	 */
+	public static Optional<byte[]> decode(String value) {
+		notNull(value, "Encoded value cannot be null");
+		if (value.length() % 4 != 0)
+			return empty();
+		final int paddingLength = value.endsWith("==") ? 2 : value.endsWith("=") ? 1 : 0;
+		final byte[] decoded = new byte[value.length() / 4 * 3 - paddingLength];
+		int decodedLength = 0;
+		for (int i = 0; i < value.length(); i += 4) {
+			final boolean lastGroup = i + 4 == value.length();
+			final int significantCharacters = lastGroup ? 4 - paddingLength : 4;
+			int group = 0;
+			for (int j = 0; j < 4; j++) {
+				final int characterValue = j < significantCharacters ? valueOf(value.charAt(i + j)) : 0;
+				if (characterValue == INVALID)
+					return empty();
+				group = (group << 6) | characterValue;
+			}
+			final int decodedBytesOfGroup = significantCharacters - 1;
+			if (decodedBytesOfGroup < 3 && (group & (0xFFFFFF >> (8 * decodedBytesOfGroup))) != 0)
+				return empty();
+			for (int j = 0; j < decodedBytesOfGroup; j++)
+				decoded[decodedLength++] = (byte) (group >> (16 - 8 * j));
+		}
+		return present(decoded);
+	}
+
+	private static int valueOf(char character) {
+		return character < VALUES.length ? VALUES[character] : INVALID;
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Input stream that reads remaining bytes of a buffer (heap, direct or memory mapped one) without copying them
+ * upfront. The stream moves position of the buffer so pass it its own duplicate when the buffer is shared.
+ */
+public class ByteBufferInputStream extends InputStream {
+
+	private static final int END_OF_STREAM = -1;
+	private static final int UNSIGNED_BYTE_MASK = 0xFF;
+	private final ByteBuffer buffer;
+
+	/**
+	 * Create stream
+	 *
+	 * @param buffer not null buffer which bytes from position to limit will be read
+	 */
+	public ByteBufferInputStream(ByteBuffer buffer) {
+		this.buffer = notNull(buffer, "Buffer cannot be null");
+	}
+
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? buffer.get() & UNSIGNED_BYTE_MASK : END_OF_STREAM;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) {
+		if (length == 0)
+			return 0;
+		if (!buffer.hasRemaining())
+			return END_OF_STREAM;
+		final int bytesToRead = Math.min(length, buffer.remaining());
+		buffer.get(bytes, offset, bytesToRead);
+		return bytesToRead;
+	}
+
+	@Override
+	public long skip(long bytesToSkip) {
+		final int bytesSkipped = (int) Math.max(0, Math.min(bytesToSkip, buffer.remaining()));
+		buffer.position(buffer.position() + bytesSkipped);
+		return bytesSkipped;
+	}
+
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+}
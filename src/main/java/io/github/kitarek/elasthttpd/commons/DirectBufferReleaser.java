@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Releases native memory of direct or memory mapped buffers immediately (i.e. unmaps the file) instead of waiting
+ * for garbage collector. It uses the JDK internal cleaner that is available in all mainstream JVMs. When it is not
+ * available the buffer is released by garbage collector as usual.
+ *
+ * The released buffer (and every view of it) must never be accessed again - it could crash the JVM.
+ */
+public class DirectBufferReleaser {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(DirectBufferReleaser.class);
+	private static final String UNSAFE_CLASS_NAME = "sun.misc.Unsafe";
+	private static final String UNSAFE_INSTANCE_FIELD_NAME = "theUnsafe";
+	private static final String INVOKE_CLEANER_METHOD_NAME = "invokeCleaner";
+	private static final String CLEANER_METHOD_NAME = "cleaner";
+	private static final String CLEAN_METHOD_NAME = "clean";
+
+	private DirectBufferReleaser() {
+	}
+
+	/**
+	 * Release native memory of buffer.
+	 *
+	 * @param buffer not null direct buffer that was allocated or mapped directly (not a view of another buffer)
+	 * @return true if memory was released immediately; false if it will be released by garbage collector
+	 */
+	public static boolean release(ByteBuffer buffer) {
+		isTrue(notNull(buffer, "Buffer cannot be null").isDirect(), "Only direct buffers can be released");
+		try {
+			return releaseUsingUnsafe(buffer) || releaseUsingCleaner(buffer);
+		} catch (Exception e) {
+			LOGGER.debug("Cannot release direct buffer immediately. It will be released by garbage collector", e);
+			return false;
+		}
+	}
+
+	private static boolean releaseUsingUnsafe(ByteBuffer buffer) throws Exception {
+		final Class<?> unsafeClass = Class.forName(UNSAFE_CLASS_NAME);
+		final Method invokeCleanerMethod;
+		try {
+			invokeCleanerMethod = unsafeClass.getMethod(INVOKE_CLEANER_METHOD_NAME, ByteBuffer.class);
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+		final Field unsafeInstanceField = unsafeClass.getDeclaredField(UNSAFE_INSTANCE_FIELD_NAME);
+		unsafeInstanceField.setAccessible(true);
+		invokeCleanerMethod.invoke(unsafeInstanceField.get(null), buffer);
+		return true;
+	}
+
+	private static boolean releaseUsingCleaner(ByteBuffer buffer) throws Exception {
+		final Method cleanerMethod = buffer.getClass().getMethod(CLEANER_METHOD_NAME);
+		cleanerMethod.setAccessible(true);
+		final Object cleaner = cleanerMethod.invoke(buffer);
+		if (cleaner == null)
+			return false;
+		final Method cleanMethod = cleaner.getClass().getMethod(CLEAN_METHOD_NAME);
+		cleanMethod.setAccessible(true);
+		cleanMethod.invoke(cleaner);
+		return true;
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons;
+
+import java.text.DateFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty;
+import static io.github.kitarek.elasthttpd.commons.Optional.present;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Formats and parses dates used in HTTP headers (i.e. Last-Modified, If-Modified-Since, Expires). Dates are always
+ * formatted using the preferred IMF-fixdate format while all three formats allowed by HTTP/1.1 can be parsed.
+ */
+public class HttpDates {
+
+	public static final String IMF_FIXDATE_PATTERN = "EEE, dd MMM yyyy HH:mm:ss 'GMT'";
+	public static final String RFC_850_PATTERN = "EEEE, dd-MMM-yy HH:mm:ss 'GMT'";
+	public static final String ASCTIME_PATTERN = "EEE MMM d HH:mm:ss yyyy";
+	private static final TimeZone GMT = TimeZone.getTimeZone("GMT");
+	private static final long TWO_DIGIT_YEAR_START = -1577923200000L;
+	private static final ThreadLocal<DateFormat[]> DATE_FORMATS = new ThreadLocal<DateFormat[]>() {
+		@Override
+		protected DateFormat[] initialValue() {
+			return new DateFormat[] { createDateFormat(IMF_FIXDATE_PATTERN), createDateFormat(RFC_850_PATTERN),
+					createDateFormat(ASCTIME_PATTERN) };
+		}
+	};
+
+	private HttpDates() {
+	}
+
+	private static DateFormat createDateFormat(String pattern) {
+		final SimpleDateFormat dateFormat = new SimpleDateFormat(pattern, Locale.US);
+		dateFormat.setTimeZone(GMT);
+		dateFormat.setLenient(false);
+		dateFormat.set2DigitYearStart(new Date(TWO_DIGIT_YEAR_START));
+		return dateFormat;
+	}
+
+	/**
+	 * Format date in IMF-fixdate format (i.e. 'Sun, 06 Nov 1994 08:49:37 GMT')
+	 *
+	 * @param timeInMilliseconds time since the epoch
+	 * @return not null formatted date
+	 */
+	public static String formatDate(long timeInMilliseconds) {
+		return DATE_FORMATS.get()[0].format(new Date(timeInMilliseconds));
+	}
+
+	/**
+	 * Parse date in any of formats allowed by HTTP/1.1
+	 *
+	 * @param value not null value of header
+	 * @return optional time since the epoch in milliseconds; not present when the value is not a valid date
+	 */
+	public static Optional<Long> parseDate(String value) {
+		final String trimmedValue = notNull(value, "Date value cannot be null").trim();
+		for (DateFormat dateFormat : DATE_FORMATS.get()) {
+			final ParsePosition position = new ParsePosition(0);
+			final Date date = dateFormat.parse(trimmedValue, position);
+			if (date != null && position.getIndex() == trimmedValue.length())
+				return present(date.getTime());
+		}
+		return empty();
+	}
+}
@@ -27,13 +27,44 @@ import java.nio.file.Paths;
 
 import static io.github.kitarek.elasthttpd.commons.Optional.empty;
 import static io.github.kitarek.elasthttpd.commons.Optional.optional;
+import static io.github.kitarek.elasthttpd.commons.Optional.present;
+import static org.apache.commons.lang3.Validate.notNull;
 
 /**
  * Encapsulates MIME type detection for an existing file.
+ *
+ * The MIME type is resolved by file extension from the immutable {@link MimeTypeTable} without accessing filesystem.
+ * Only files with unknown extension are probed by the system (which may read the file content) and the result is
+ * remembered for the path until the size or modification time of the file changes.
  */
 public class MimeTypeDetector {
 
 	public static final Logger LOGGER = LoggerFactory.getLogger(MimeTypeDetector.class);
+	public static final int SNIFFED_MIME_TYPES_MEMO_SIZE = 4096;
+	private static final String NOT_DETECTED_MIME_TYPE = "";
+	private final MimeTypeTable mimeTypeTable;
+	private final WeightedLruCache<SniffedFileKey, String> sniffedMimeTypes =
+			new WeightedLruCache<SniffedFileKey, String>(SNIFFED_MIME_TYPES_MEMO_SIZE, new Weigher<String>() {
+				public long weigh(String value) {
+					return 1;
+				}
+			});
+
+	/**
+	 * Create detector that uses the default table of MIME types
+	 */
+	public MimeTypeDetector() {
+		this(MimeTypeTable.defaultTable());
+	}
+
+	/**
+	 * Create detector that uses the given table of MIME types
+	 *
+	 * @param mimeTypeTable not null table of MIME types by file extension
+	 */
+	public MimeTypeDetector(MimeTypeTable mimeTypeTable) {
+		this.mimeTypeTable = notNull(mimeTypeTable, "MIME type table cannot be null");
+	}
 
 	/**
 	 * Detect MIME type of the existing local file/directoru (filesystem object). If file does not exist the MIME type
@@ -43,10 +74,19 @@ public class MimeTypeDetector {
 	 * @return optional string object for which you need to explicitly check if it is present.
 	 */
 	public Optional<String> detectMimeContentType(File localFile) {
+		final Optional<String> optionalContentType = mimeTypeTable.mimeTypeOf(localFile.getName());
+		return optionalContentType.isPresent() ? optionalContentType : sniffMimeContentType(localFile);
+	}
+
+	private Optional<String> sniffMimeContentType(File localFile) {
 		Optional<String> optionalContentType;
 		try {
-			String contentType = Files.probeContentType(Paths.get(localFile.getAbsolutePath()));
-			optionalContentType = optional(contentType);
+			final SniffedFileKey key = new SniffedFileKey(localFile.getAbsolutePath(), localFile.length(),
+					localFile.lastModified());
+			final Optional<String> optionalSniffedContentType = sniffedMimeTypes.get(key);
+			optionalContentType = optionalSniffedContentType.isPresent()
+					? toContentType(optionalSniffedContentType.get())
+					: sniffAndRemember(key);
 		} catch (IOException e) {
 			optionalContentType = empty();
 			LOGGER.warn("There was an error checking file content type", e);
@@ -54,4 +94,46 @@ public class MimeTypeDetector {
 		return optionalContentType;
 	}
 
+	private Optional<String> sniffAndRemember(SniffedFileKey key) throws IOException {
+		final String contentType = Files.probeContentType(Paths.get(key.absolutePath));
+		sniffedMimeTypes.put(key, contentType == null ? NOT_DETECTED_MIME_TYPE : contentType);
+		return optional(contentType);
+	}
+
+	private static Optional<String> toContentType(String sniffedContentType) {
+		return NOT_DETECTED_MIME_TYPE.equals(sniffedContentType)
+				? Optional.<String>empty()
+				: present(sniffedContentType);
+	}
+
+	private static class SniffedFileKey {
+		private final String absolutePath;
+		private final long length;
+		private final long lastModified;
+
+		private SniffedFileKey(String absolutePath, long length, long lastModified) {
+			this.absolutePath = absolutePath;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			SniffedFileKey that = (SniffedFileKey) o;
+
+			return length == that.length && lastModified == that.lastModified &&
+					absolutePath.equals(that.absolutePath);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = absolutePath.hashCode();
+			result = 31 * result + (int) (length ^ (length >>> 32));
+			result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+			return result;
+		}
+	}
 }
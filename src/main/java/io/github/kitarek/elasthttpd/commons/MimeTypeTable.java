@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.optional;
+import static java.util.Collections.unmodifiableMap;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Immutable table of MIME types by file extension. The lookup needs no filesystem access so it is fast and gives
+ * the same results on every host. The default table covers the most common web, document, media and archive
+ * formats; it can be extended (i.e. by {@link #withMimeType(String, String)}) which creates a new table.
+ */
+public class MimeTypeTable {
+
+	private static final char EXTENSION_SEPARATOR = '.';
+	private static final char MIME_TYPE_SUBTYPE_SEPARATOR = '/';
+	private static final String[][] DEFAULT_MIME_TYPES = {
+			{ "text/html", "html htm shtml" },
+			{ "text/css", "css" },
+			{ "text/javascript", "js mjs" },
+			{ "text/plain", "txt text log conf ini properties java groovy c h cpp py rb sh" },
+			{ "text/markdown", "md markdown" },
+			{ "text/csv", "csv" },
+			{ "text/tab-separated-values", "tsv" },
+			{ "text/xml", "xml xsl xsd" },
+			{ "text/calendar", "ics" },
+			{ "text/vcard", "vcf" },
+			{ "text/cache-manifest", "appcache manifest" },
+			{ "application/json", "json map" },
+			{ "application/ld+json", "jsonld" },
+			{ "application/manifest+json", "webmanifest" },
+			{ "application/xhtml+xml", "xhtml" },
+			{ "application/rss+xml", "rss" },
+			{ "application/atom+xml", "atom" },
+			{ "application/pdf", "pdf" },
+			{ "application/rtf", "rtf" },
+			{ "application/postscript", "ps eps ai" },
+			{ "application/msword", "doc" },
+			{ "application/vnd.openxmlformats-officedocument.wordprocessingml.document", "docx" },
+			{ "application/vnd.ms-excel", "xls" },
+			{ "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", "xlsx" },
+			{ "application/vnd.ms-powerpoint", "ppt" },
+			{ "application/vnd.openxmlformats-officedocument.presentationml.presentation", "pptx" },
+			{ "application/vnd.oasis.opendocument.text", "odt" },
+			{ "application/vnd.oasis.opendocument.spreadsheet", "ods" },
+			{ "application/vnd.oasis.opendocument.presentation", "odp" },
+			{ "application/epub+zip", "epub" },
+			{ "application/zip", "zip" },
+			{ "application/gzip", "gz tgz" },
+			{ "application/x-bzip2", "bz2" },
+			{ "application/x-xz", "xz" },
+			{ "application/x-tar", "tar" },
+			{ "application/x-7z-compressed", "7z" },
+			{ "application/vnd.rar", "rar" },
+			{ "application/java-archive", "jar war ear" },
+			{ "application/java-vm", "class" },
+			{ "application/wasm", "wasm" },
+			{ "application/x-shockwave-flash", "swf" },
+			{ "application/x-iso9660-image", "iso" },
+			{ "application/vnd.android.package-archive", "apk" },
+			{ "application/vnd.debian.binary-package", "deb" },
+			{ "application/x-rpm", "rpm" },
+			{ "application/x-msdownload", "exe dll msi" },
+			{ "application/x-apple-diskimage", "dmg" },
+			{ "application/octet-stream", "bin dat img" },
+			{ "image/png", "png" },
+			{ "image/jpeg", "jpg jpeg jpe" },
+			{ "image/gif", "gif" },
+			{ "image/webp", "webp" },
+			{ "image/avif", "avif" },
+			{ "image/bmp", "bmp" },
+			{ "image/tiff", "tif tiff" },
+			{ "image/svg+xml", "svg svgz" },
+			{ "image/x-icon", "ico" },
+			{ "image/vnd.microsoft.icon", "cur" },
+			{ "font/woff", "woff" },
+			{ "font/woff2", "woff2" },
+			{ "font/ttf", "ttf" },
+			{ "font/otf", "otf" },
+			{ "application/vnd.ms-fontobject", "eot" },
+			{ "audio/mpeg", "mp3" },
+			{ "audio/ogg", "oga ogg opus" },
+			{ "audio/wav", "wav" },
+			{ "audio/flac", "flac" },
+			{ "audio/aac", "aac" },
+			{ "audio/mp4", "m4a" },
+			{ "audio/webm", "weba" },
+			{ "audio/midi", "mid midi" },
+			{ "video/mp4", "mp4 m4v" },
+			{ "video/webm", "webm" },
+			{ "video/ogg", "ogv" },
+			{ "video/mpeg", "mpeg mpg" },
+			{ "video/quicktime", "mov" },
+			{ "video/x-msvideo", "avi" },
+			{ "video/x-matroska", "mkv" },
+			{ "video/x-flv", "flv" },
+			{ "video/mp2t", "ts" },
+			{ "application/vnd.apple.mpegurl", "m3u8" },
+			{ "application/dash+xml", "mpd" },
+	};
+	private static final MimeTypeTable DEFAULT_TABLE = new MimeTypeTable(createDefaultMimeTypes());
+
+	private final Map<String, String> mimeTypesByExtension;
+
+	private MimeTypeTable(Map<String, String> mimeTypesByExtension) {
+		this.mimeTypesByExtension = unmodifiableMap(mimeTypesByExtension);
+	}
+
+	private static Map<String, String> createDefaultMimeTypes() {
+		final Map<String, String> mimeTypes = new HashMap<String, String>();
+		for (String[] mimeTypeWithExtensions : DEFAULT_MIME_TYPES)
+			for (String extension : mimeTypeWithExtensions[1].split(" "))
+				mimeTypes.put(extension, mimeTypeWithExtensions[0]);
+		return mimeTypes;
+	}
+
+	/**
+	 * @return not null preloaded table of common MIME types
+	 */
+	public static MimeTypeTable defaultTable() {
+		return DEFAULT_TABLE;
+	}
+
+	/**
+	 * @return not null table without any MIME type
+	 */
+	public static MimeTypeTable emptyTable() {
+		return new MimeTypeTable(new HashMap<String, String>());
+	}
+
+	/**
+	 * Create a new table with all MIME types of this table and the given one (that replaces the existing one for the
+	 * same extension).
+	 *
+	 * @param extension not null and not empty file extension with or without leading dot (case is ignored)
+	 * @param mimeType not null MIME type in form of 'type/subtype'
+	 * @return not null new table
+	 */
+	public MimeTypeTable withMimeType(String extension, String mimeType) {
+		final String normalizedExtension = normalizeExtension(notNull(extension, "Extension cannot be null"));
+		isTrue(normalizedExtension.length() > 0, "Extension cannot be empty");
+		isTrue(notNull(mimeType, "MIME type cannot be null").indexOf(MIME_TYPE_SUBTYPE_SEPARATOR) > 0,
+				"MIME type needs to be in form of 'type/subtype': %s", mimeType);
+		final Map<String, String> mimeTypes = new HashMap<String, String>(mimeTypesByExtension);
+		mimeTypes.put(normalizedExtension, mimeType.trim());
+		return new MimeTypeTable(mimeTypes);
+	}
+
+	private static String normalizeExtension(String extension) {
+		final String trimmedExtension = extension.trim();
+		final int firstExtensionCharacterIndex =
+				trimmedExtension.length() > 0 && trimmedExtension.charAt(0) == EXTENSION_SEPARATOR ? 1 : 0;
+		return trimmedExtension.substring(firstExtensionCharacterIndex).toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * Find MIME type by extension of the file name (the part after the last dot).
+	 *
+	 * @param fileName not null name of file (i.e. 'index.html')
+	 * @return optional MIME type; not present when name has no extension or extension is unknown
+	 */
+	public Optional<String> mimeTypeOf(String fileName) {
+		final int extensionSeparatorIndex = notNull(fileName, "File name cannot be null")
+				.lastIndexOf(EXTENSION_SEPARATOR);
+		if (extensionSeparatorIndex < 0 || extensionSeparatorIndex == fileName.length() - 1)
+			return Optional.empty();
+		final String extension = fileName.substring(extensionSeparatorIndex + 1);
+		final String mimeType = mimeTypesByExtension.get(extension);
+		return optional(mimeType != null ? mimeType : mimeTypesByExtension.get(extension.toLowerCase(Locale.ENGLISH)));
+	}
+
+	/**
+	 * @return number of known extensions
+	 */
+	public int size() {
+		return mimeTypesByExtension.size();
+	}
+}
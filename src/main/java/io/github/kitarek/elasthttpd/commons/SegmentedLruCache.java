@@ -0,0 +1,277 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.optional;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Thread-safe segmented LRU cache bounded by the total weight of its values (i.e. number of bytes).
+ *
+ * New values go to the probation segment and are promoted to the protected segment when they are requested again.
+ * Values are evicted from the probation segment first so a scan over many values requested only once does not
+ * flush the values that are really hot. The protected segment takes up to 80% of the capacity - values that do
+ * not fit there are demoted back to the probation segment.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public class SegmentedLruCache<K, V> {
+
+	public static final int PROTECTED_SEGMENT_PERCENTAGE = 80;
+	private static final float LOAD_FACTOR = 0.75f;
+	private static final int INITIAL_CAPACITY = 64;
+	private static final boolean ACCESS_ORDER = true;
+
+	private final LinkedHashMap<K, V> probationSegment = new LinkedHashMap<K, V>(INITIAL_CAPACITY, LOAD_FACTOR,
+			ACCESS_ORDER);
+	private final LinkedHashMap<K, V> protectedSegment = new LinkedHashMap<K, V>(INITIAL_CAPACITY, LOAD_FACTOR,
+			ACCESS_ORDER);
+	private final Object lock = new Object();
+	private final long maximumWeight;
+	private final long maximumProtectedWeight;
+	private final Weigher<V> weigher;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private long probationWeight;
+	private long protectedWeight;
+
+	/**
+	 * Create cache
+	 *
+	 * @param maximumWeight positive maximum total weight of all cached values
+	 * @param weigher not null weigher of values
+	 */
+	public SegmentedLruCache(long maximumWeight, Weigher<V> weigher) {
+		isTrue(maximumWeight > 0, "Maximum weight of cache must be positive");
+		this.maximumWeight = maximumWeight;
+		this.maximumProtectedWeight = maximumWeight / 100 * PROTECTED_SEGMENT_PERCENTAGE +
+				maximumWeight % 100 * PROTECTED_SEGMENT_PERCENTAGE / 100;
+		this.weigher = notNull(weigher, "Weigher cannot be null");
+	}
+
+	/**
+	 * Get value and mark it as the most recently used one. Value found in probation segment is promoted.
+	 *
+	 * @param key not null
+	 * @return optional value that is not present when there is no value for key
+	 */
+	public Optional<V> get(K key) {
+		final Optional<V> optionalValue = getWithoutCounting(key);
+		(optionalValue.isPresent() ? hitCount : missCount).incrementAndGet();
+		return optionalValue;
+	}
+
+	/**
+	 * Get value like {@link #get(Object)} but without counting a hit or a miss. Caller that checks whether the value
+	 * is still valid counts the outcome itself with {@link #recordHit()} or {@link #recordMiss()}.
+	 *
+	 * @param key not null
+	 * @return optional value that is not present when there is no value for key
+	 */
+	public Optional<V> getWithoutCounting(K key) {
+		notNull(key, "Key cannot be null");
+		synchronized (lock) {
+			return optional(getUnsynchronized(key));
+		}
+	}
+
+	public void recordHit() {
+		hitCount.incrementAndGet();
+	}
+
+	public void recordMiss() {
+		missCount.incrementAndGet();
+	}
+
+	private V getUnsynchronized(K key) {
+		final V protectedValue = protectedSegment.get(key);
+		if (protectedValue != null)
+			return protectedValue;
+		final V probationValue = probationSegment.remove(key);
+		if (probationValue != null)
+			promoteUnsynchronized(key, probationValue);
+		return probationValue;
+	}
+
+	private void promoteUnsynchronized(K key, V value) {
+		final long weight = weigher.weigh(value);
+		probationWeight -= weight;
+		protectedSegment.put(key, value);
+		protectedWeight += weight;
+		demoteLeastRecentlyUsedUnsynchronized();
+	}
+
+	private void demoteLeastRecentlyUsedUnsynchronized() {
+		final Iterator<Map.Entry<K, V>> iterator = protectedSegment.entrySet().iterator();
+		while (protectedWeight > maximumProtectedWeight && iterator.hasNext()) {
+			final Map.Entry<K, V> demotedEntry = iterator.next();
+			final long weight = weigher.weigh(demotedEntry.getValue());
+			iterator.remove();
+			protectedWeight -= weight;
+			probationSegment.put(demotedEntry.getKey(), demotedEntry.getValue());
+			probationWeight += weight;
+		}
+	}
+
+	/**
+	 * Put value into probation segment evicting the least recently used values when needed.
+	 *
+	 * @param key not null
+	 * @param value not null
+	 * @return true if value was cached; false if it is heavier than the capacity of whole cache
+	 */
+	public boolean put(K key, V value) {
+		notNull(key, "Key cannot be null");
+		final long weight = weigher.weigh(notNull(value, "Value cannot be null"));
+		synchronized (lock) {
+			removeUnsynchronized(key);
+			if (weight > maximumWeight)
+				return false;
+			probationSegment.put(key, value);
+			probationWeight += weight;
+			evictLeastRecentlyUsedUnsynchronized();
+			return true;
+		}
+	}
+
+	private void evictLeastRecentlyUsedUnsynchronized() {
+		evictLeastRecentlyUsedUnsynchronized(probationSegment);
+		evictLeastRecentlyUsedUnsynchronized(protectedSegment);
+	}
+
+	private void evictLeastRecentlyUsedUnsynchronized(LinkedHashMap<K, V> segment) {
+		final Iterator<V> iterator = segment.values().iterator();
+		while (probationWeight + protectedWeight > maximumWeight && iterator.hasNext()) {
+			final V evictedValue = iterator.next();
+			iterator.remove();
+			subtractWeightUnsynchronized(segment, weigher.weigh(evictedValue));
+			evictionCount.incrementAndGet();
+			onRemoval(evictedValue);
+		}
+	}
+
+	/**
+	 * Remove value for key
+	 *
+	 * @param key not null
+	 * @return optional removed value
+	 */
+	public Optional<V> remove(K key) {
+		notNull(key, "Key cannot be null");
+		synchronized (lock) {
+			final V removedValue = removeUnsynchronized(key);
+			return optional(removedValue);
+		}
+	}
+
+	private V removeUnsynchronized(K key) {
+		final V removedValue = removeUnsynchronized(probationSegment, key);
+		return removedValue != null ? removedValue : removeUnsynchronized(protectedSegment, key);
+	}
+
+	private V removeUnsynchronized(LinkedHashMap<K, V> segment, K key) {
+		final V removedValue = segment.remove(key);
+		if (removedValue != null) {
+			subtractWeightUnsynchronized(segment, weigher.weigh(removedValue));
+			onRemoval(removedValue);
+		}
+		return removedValue;
+	}
+
+	private void subtractWeightUnsynchronized(LinkedHashMap<K, V> segment, long weight) {
+		if (segment == probationSegment)
+			probationWeight -= weight;
+		else
+			protectedWeight -= weight;
+	}
+
+	/**
+	 * Remove all values
+	 */
+	public void clear() {
+		synchronized (lock) {
+			for (V value : probationSegment.values())
+				onRemoval(value);
+			for (V value : protectedSegment.values())
+				onRemoval(value);
+			probationSegment.clear();
+			protectedSegment.clear();
+			probationWeight = 0;
+			protectedWeight = 0;
+		}
+	}
+
+	/**
+	 * @return not null snapshot of keys of all cached values that does not change the recency of values
+	 */
+	public List<K> keys() {
+		synchronized (lock) {
+			final List<K> keys = new ArrayList<K>(probationSegment.size() + protectedSegment.size());
+			keys.addAll(probationSegment.keySet());
+			keys.addAll(protectedSegment.keySet());
+			return keys;
+		}
+	}
+
+	/**
+	 * Hook invoked (under cache lock) for every value that leaves the cache (eviction, removal or replacement).
+	 * Override it to release resources held by values.
+	 *
+	 * @param value not null value that was removed
+	 */
+	protected void onRemoval(V value) {
+	}
+
+	public long getMaximumWeight() {
+		return maximumWeight;
+	}
+
+	public long getCurrentWeight() {
+		synchronized (lock) {
+			return probationWeight + protectedWeight;
+		}
+	}
+
+	public int size() {
+		synchronized (lock) {
+			return probationSegment.size() + protectedSegment.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+/**
+ * Fixed number of reentrant locks shared by an unbounded set of keys, so operations on the same key (i.e. a path)
+ * are serialized without keeping a lock per key. Keys with the same hash code modulo the number of stripes share
+ * the lock.
+ */
+public class StripedLocks {
+
+	public static final int DEFAULT_NUMBER_OF_STRIPES = 64;
+	private final Lock[] stripes;
+
+	/**
+	 * Create locks
+	 *
+	 * @param numberOfStripes positive number of locks shared by all keys
+	 */
+	public StripedLocks(int numberOfStripes) {
+		isTrue(numberOfStripes > 0, "Number of lock stripes must be positive");
+		stripes = new Lock[numberOfStripes];
+		for (int i = 0; i < numberOfStripes; i++)
+			stripes[i] = new ReentrantLock();
+	}
+
+	/**
+	 * Get the lock of key
+	 *
+	 * @param hashCode hash code of key (i.e. of path or content of array)
+	 * @return not null reentrant lock shared with all keys of the same stripe
+	 */
+	public Lock lockFor(int hashCode) {
+		return stripes[(hashCode & Integer.MAX_VALUE) % stripes.length];
+	}
+
+	public int getNumberOfStripes() {
+		return stripes.length;
+	}
+}
@@ -31,6 +31,8 @@ import static org.apache.http.util.EncodingUtils.getAsciiBytes;
  */
 public class TemplatedHttpResponder {
 
+	private static final ContentType TEXT_PLAIN_US_ASCII = ContentType.create("text/plain", "US-ASCII");
+
 	/**
 	 * Setup INTERNAL SERVER ERROR HttpResponse with a given text/plain message send as response body.
 	 *
@@ -58,6 +60,21 @@ public class TemplatedHttpResponder {
 		setupAsciiUsStringAsResponseEntity(response, message);
 	}
 
+	/**
+	 * Setup NOT FOUND response for a given HttpResponse using already rendered text/plain (US-ASCII) message as
+	 * response body content. The message is not copied so it needs to be left unchanged.
+	 *
+	 * @param response not null
+	 * @param renderedMessage not null
+	 */
+	public void respondWithRenderedResourceNotFound(HttpResponse response, byte[] renderedMessage) {
+		notNull(response, "HttpResponse to use with template must be not null");
+		notNull(renderedMessage, "Rendered message to use in template must be not null");
+		response.setStatusCode(SC_NOT_FOUND);
+		response.setReasonPhrase("NOT FOUND");
+		response.setEntity(new ByteArrayEntity(renderedMessage, TEXT_PLAIN_US_ASCII));
+	}
+
 	/**
 	 * Setup FORBIDDEN response for a given HttpResponse. The specified message will be used as
 	 * response body content (text/plain).
@@ -82,14 +99,24 @@ public class TemplatedHttpResponder {
 		response.setReasonPhrase("DELETED");
 	}
 
+	/**
+	 * Setup 204 (no content) PATCHED response for a given HttpResponse.
+	 *
+	 * @param response not null
+	 */
+	public void respondWithNoContentAndReasonPatched(HttpResponse response) {
+		notNull(response, "HttpResponse to use with template must be not null");
+		response.setStatusCode(SC_NO_CONTENT);
+		response.setReasonPhrase("PATCHED");
+	}
+
 	private void validateResponseAndMessage(HttpResponse response, String message) {
 		notNull(response, "HttpResponse to use with template must be not null");
 		notNull(message, "Message to use in template must be not null");
 	}
 
 	private void setupAsciiUsStringAsResponseEntity(HttpResponse response, String message) {
-		response.setEntity(new ByteArrayEntity(getAsciiBytes(message),
-				ContentType.create("text/plain", "US-ASCII")));
+		response.setEntity(new ByteArrayEntity(getAsciiBytes(message), TEXT_PLAIN_US_ASCII));
 	}
 
 	/**
@@ -102,4 +129,97 @@ public class TemplatedHttpResponder {
 		response.setStatusCode(SC_CREATED);
 		response.setReasonPhrase("CREATED");
 	}
+
+	/**
+	 * Setup 202 ACCEPTED HTTP status code for a given HttpResponse (i.e. for a part of upload that is not complete
+	 * yet). Response body is not set.
+	 *
+	 * @param response not null
+	 */
+	public void respondThatRequestIsAccepted(HttpResponse response) {
+		notNull(response, "HttpResponse to use with template must be not null");
+		response.setStatusCode(SC_ACCEPTED);
+		response.setReasonPhrase("ACCEPTED");
+	}
+
+	/**
+	 * Setup 304 NOT MODIFIED response for a given HttpResponse. Response body is not allowed hence any entity set
+	 * previously is removed.
+	 *
+	 * @param response not null
+	 */
+	public void respondThatResourceIsNotModified(HttpResponse response) {
+		notNull(response, "HttpResponse to use with template must be not null");
+		response.setStatusCode(SC_NOT_MODIFIED);
+		response.setReasonPhrase("NOT MODIFIED");
+		response.setEntity(null);
+	}
+
+	/**
+	 * Setup 412 PRECONDITION FAILED response for a given HttpResponse. The specified message will be used as
+	 * response body content (text/plain).
+	 *
+	 * @param response not null
+	 * @param message not null
+	 */
+	public void respondWithPreconditionFailed(HttpResponse response, String message) {
+		validateResponseAndMessage(response, message);
+		response.setStatusCode(SC_PRECONDITION_FAILED);
+		response.setReasonPhrase("PRECONDITION FAILED");
+		setupAsciiUsStringAsResponseEntity(response, message);
+	}
+
+	/**
+	 * Setup 206 PARTIAL CONTENT HTTP status code for a given HttpResponse. The entity with requested ranges needs to
+	 * be set separately.
+	 *
+	 * @param response not null
+	 */
+	public void respondWithPartialContent(HttpResponse response) {
+		notNull(response, "HttpResponse to use with template must be not null");
+		response.setStatusCode(SC_PARTIAL_CONTENT);
+		response.setReasonPhrase("PARTIAL CONTENT");
+	}
+
+	/**
+	 * Setup 416 REQUESTED RANGE NOT SATISFIABLE response for a given HttpResponse. The specified message will be used
+	 * as response body content (text/plain).
+	 *
+	 * @param response not null
+	 * @param message not null
+	 */
+	public void respondWithRequestedRangeNotSatisfiable(HttpResponse response, String message) {
+		validateResponseAndMessage(response, message);
+		response.setStatusCode(SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+		response.setReasonPhrase("REQUESTED RANGE NOT SATISFIABLE");
+		setupAsciiUsStringAsResponseEntity(response, message);
+	}
+
+	/**
+	 * Setup 400 BAD REQUEST response for a given HttpResponse. The specified message will be used as response body
+	 * content (text/plain).
+	 *
+	 * @param response not null
+	 * @param message not null
+	 */
+	public void respondWithBadRequest(HttpResponse response, String message) {
+		validateResponseAndMessage(response, message);
+		response.setStatusCode(SC_BAD_REQUEST);
+		response.setReasonPhrase("BAD REQUEST");
+		setupAsciiUsStringAsResponseEntity(response, message);
+	}
+
+	/**
+	 * Setup 409 CONFLICT response for a given HttpResponse. The specified message will be used as response body
+	 * content (text/plain).
+	 *
+	 * @param response not null
+	 * @param message not null
+	 */
+	public void respondWithConflict(HttpResponse response, String message) {
+		validateResponseAndMessage(response, message);
+		response.setStatusCode(SC_CONFLICT);
+		response.setReasonPhrase("CONFLICT");
+		setupAsciiUsStringAsResponseEntity(response, message);
+	}
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons;
+
+/**
+ * Calculates the weight (i.e. size in bytes) of values kept by {@link WeightedLruCache} or
+ * {@link SegmentedLruCache}.
+ *
+ * @param <V> type of weighted values
+ */
+public interface Weigher<V> {
+
+	/**
+	 * @param value not null value
+	 * @return zero or positive weight of value
+	 */
+	long weigh(V value);
+}
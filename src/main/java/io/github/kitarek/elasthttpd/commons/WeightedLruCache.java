@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.optional;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Thread-safe cache bounded by the total weight of its values (i.e. number of bytes). When a new value does not fit
+ * the least recently used values are evicted. Values heavier than the whole capacity are never cached.
+ *
+ * @param <K> type of keys
+ * @param <V> type of values
+ */
+public class WeightedLruCache<K, V> {
+
+	private static final float LOAD_FACTOR = 0.75f;
+	private static final int INITIAL_CAPACITY = 64;
+	private static final boolean ACCESS_ORDER = true;
+
+	private final LinkedHashMap<K, V> entries = new LinkedHashMap<K, V>(INITIAL_CAPACITY, LOAD_FACTOR, ACCESS_ORDER);
+	private final long maximumWeight;
+	private final Weigher<V> weigher;
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private long currentWeight;
+
+	/**
+	 * Create cache
+	 *
+	 * @param maximumWeight positive maximum total weight of all cached values
+	 * @param weigher not null weigher of values
+	 */
+	public WeightedLruCache(long maximumWeight, Weigher<V> weigher) {
+		isTrue(maximumWeight > 0, "Maximum weight of cache must be positive");
+		this.maximumWeight = maximumWeight;
+		this.weigher = notNull(weigher, "Weigher cannot be null");
+	}
+
+	/**
+	 * Get value and mark it as the most recently used one.
+	 *
+	 * @param key not null
+	 * @return optional value that is not present when there is no value for key
+	 */
+	public Optional<V> get(K key) {
+		notNull(key, "Key cannot be null");
+		final V value;
+		synchronized (entries) {
+			value = entries.get(key);
+		}
+		(value == null ? missCount : hitCount).incrementAndGet();
+		return optional(value);
+	}
+
+	/**
+	 * Put value evicting the least recently used values when needed.
+	 *
+	 * @param key not null
+	 * @param value not null
+	 * @return true if value was cached; false if it is heavier than the capacity of whole cache
+	 */
+	public boolean put(K key, V value) {
+		notNull(key, "Key cannot be null");
+		final long weight = weigher.weigh(notNull(value, "Value cannot be null"));
+		synchronized (entries) {
+			removeUnsynchronized(key);
+			if (weight > maximumWeight)
+				return false;
+			entries.put(key, value);
+			currentWeight += weight;
+			evictLeastRecentlyUsedUnsynchronized();
+			return true;
+		}
+	}
+
+	/**
+	 * Remove value for key
+	 *
+	 * @param key not null
+	 * @return optional removed value
+	 */
+	public Optional<V> remove(K key) {
+		notNull(key, "Key cannot be null");
+		synchronized (entries) {
+			return optional(removeUnsynchronized(key));
+		}
+	}
+
+	/**
+	 * Remove all values
+	 */
+	public void clear() {
+		synchronized (entries) {
+			for (V value : entries.values())
+				onRemoval(value);
+			entries.clear();
+			currentWeight = 0;
+		}
+	}
+
+	/**
+	 * @return not null snapshot of keys of all cached values that does not change the recency of values
+	 */
+	public List<K> keys() {
+		synchronized (entries) {
+			return new ArrayList<K>(entries.keySet());
+		}
+	}
+
+	/**
+	 * @return not null snapshot of all cached entries (from the least to the most recently used) that does not change
+	 * the recency of values
+	 */
+	public Map<K, V> entries() {
+		synchronized (entries) {
+			return new LinkedHashMap<K, V>(entries);
+		}
+	}
+
+	private V removeUnsynchronized(K key) {
+		final V previousValue = entries.remove(key);
+		if (previousValue != null) {
+			currentWeight -= weigher.weigh(previousValue);
+			onRemoval(previousValue);
+		}
+		return previousValue;
+	}
+
+	private void evictLeastRecentlyUsedUnsynchronized() {
+		final Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+		while (currentWeight > maximumWeight && iterator.hasNext()) {
+			final V evictedValue = iterator.next().getValue();
+			iterator.remove();
+			currentWeight -= weigher.weigh(evictedValue);
+			evictionCount.incrementAndGet();
+			onRemoval(evictedValue);
+		}
+	}
+
+	/**
+	 * Hook invoked (under cache lock) for every value that leaves the cache (eviction, removal or replacement).
+	 * Override it to release resources held by values.
+	 *
+	 * @param value not null value that was removed
+	 */
+	protected void onRemoval(V value) {
+	}
+
+	public long getMaximumWeight() {
+		return maximumWeight;
+	}
+
+	public long getCurrentWeight() {
+		synchronized (entries) {
+			return currentWeight;
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+}
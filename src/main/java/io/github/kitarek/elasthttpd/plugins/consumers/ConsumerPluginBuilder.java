@@ -37,7 +37,8 @@ public interface ConsumerPluginBuilder {
 	 * Build the resulting HttpRequestConsumer that will be used by HttpServer.
 	 * This method is executed itself by the implementation of {@link io.github.kitarek.elasthttpd.ElastHttpDBuilder}
 	 * in method {@link io.github.kitarek.elasthttpd.ElastHttpDBuilder#consumeRequestsWithPlugin(ConsumerPluginBuilder)}
-	 * or by other plugins (their builders).
+	 * or by other plugins (their builders). When the consumer implements {@link java.io.Closeable} it is closed when
+	 * the server is stopped, so it can stop its background threads.
 	 *
 	 * @return valid not null HttpRequestConsumer instance that will be used by HttpServer.
 	 */
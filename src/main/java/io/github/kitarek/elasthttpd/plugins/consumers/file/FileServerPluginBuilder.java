@@ -18,33 +18,108 @@
 package io.github.kitarek.elasthttpd.plugins.consumers.file;
 
 import io.github.kitarek.elasthttpd.commons.MimeTypeDetector;
+import io.github.kitarek.elasthttpd.commons.MimeTypeTable;
+import io.github.kitarek.elasthttpd.commons.Optional;
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
 import io.github.kitarek.elasthttpd.plugins.consumers.ConsumerPluginBuilder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.DirectoryIndexCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.HotFileCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.MemoryMappedFileCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.NotFoundCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlPolicy;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlRules;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.CompositeFileChangeListener;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileChangeListener;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileSystemChangeWatcher;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ContentHashEntityTagGenerator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.EntityTagGenerator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.MetadataEntityTagGenerator;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileRequestConsumerFactory;
-import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.DirectorySubResourceRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.storage.StorageHttpFileRequestConsumerFactory;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.DirectoryArchiveRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.DirectoryListingRequestConsumer;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.ForbiddenDirectoryRequestConsumer;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.HttpDirectoryRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.HttpDirectoryRequestConsumerFactory;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingProvider;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadataCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadataProvider;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.patch.FilePatchMode;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.CompressedFileVariantCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FileContentProvider;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FileVariantResolver;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FirstAvailableFileContentProvider;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FirstAvailableFileVariantResolver;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.HttpFileProducer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.PrecompressedSidecarVariantResolver;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequestFactory;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.selector.HttpFileRequestConsumerSelector;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.EncodedFileStorage;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.FileStorage;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.InMemoryFileStorage;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.LocalFileStorage;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.StorageDirectoryListingProvider;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.ZipArchiveStorage;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentAddressedStore;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.DurabilityMode;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.GroupCommitter;
+import io.github.kitarek.elasthttpd.server.compression.AcceptEncodingNegotiator;
+import io.github.kitarek.elasthttpd.server.compression.CompressionConfiguration;
+import io.github.kitarek.elasthttpd.server.compression.CompressionConfigurationBuilder;
 import io.github.kitarek.elasthttpd.server.consumers.HttpRequestConsumer;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
+import static java.lang.String.format;
 import static org.apache.commons.lang3.Validate.isTrue;
 import static org.apache.commons.lang3.Validate.notNull;
 
 public class FileServerPluginBuilder implements ConsumerPluginBuilder {
 
+	public static final int CACHED_COMPRESSED_FILE_SIZE_RATIO = 8;
+
 	private FileServerMode fileServerMode = FileServerMode.READ_ONLY;
 	private File root;
 	private final TemplatedHttpResponder templatedHttpResponder = new TemplatedHttpResponder();
-	private MimeTypeDetector mimeTypeDetector = new MimeTypeDetector();
-	private final HttpFileProducer httpFileProducer = new HttpFileProducer(mimeTypeDetector, templatedHttpResponder);
-	private HttpDirectoryRequestConsumer httpDirectoryRequestConsumer = new ForbiddenDirectoryRequestConsumer(
-			templatedHttpResponder);
+	private MimeTypeTable mimeTypeTable = MimeTypeTable.defaultTable();
+	private CacheControlRules cacheControlRules = CacheControlRules.noRules();
+	private List<String> directorySubresources = Collections.emptyList();
+	private boolean directoryIndexesCached = false;
+	private int directoryIndexCacheSize;
+	private boolean directoryContentsListed = false;
+	private boolean directoryListingsCached = false;
+	private long directoryListingsCacheSizeInBytes;
+	private boolean directoryArchivesSent = false;
+	private boolean precompressedFilesServed = false;
+	private Optional<CompressionConfiguration> optionalCompressedFilesConfiguration = Optional.empty();
+	private long compressedFilesCacheSizeInBytes;
+	private boolean hotFilesCached = false;
+	private long hotFilesCacheSizeInBytes;
+	private long hotFileMaximumSizeInBytes;
+	private boolean largeFilesMemoryMapped = false;
+	private long memoryMappedFileMinimumSizeInBytes;
+	private long memoryMappedFilesMaximumSizeInBytes;
+	private boolean contentHashEntityTagsUsed = false;
+	private boolean fileMetadataCached = false;
+	private long fileMetadataTimeToLiveInMilliseconds;
+	private boolean notFoundPathsCached = false;
+	private long notFoundCacheSizeInBytes;
+	private DurabilityMode uploadDurabilityMode = DurabilityMode.NONE;
+	private Optional<GroupCommitter> optionalGroupCommitter = Optional.empty();
+	private FilePatchMode patchMode = FilePatchMode.IN_PLACE;
+	private Optional<File> optionalBlobStoreDirectory = Optional.empty();
+	private Optional<FileStorage> optionalStorage = Optional.empty();
+	private Optional<File> optionalArchive = Optional.empty();
 
 	private FileServerPluginBuilder() {
 	}
@@ -100,7 +175,8 @@ public class FileServerPluginBuilder implements ConsumerPluginBuilder {
 	 * @return this builder
 	 */
 	public FileServerPluginBuilder forbidsAccessToDirectories() {
-		httpDirectoryRequestConsumer = new ForbiddenDirectoryRequestConsumer(templatedHttpResponder);
+		directorySubresources = Collections.emptyList();
+		directoryContentsListed = false;
 		return this;
 	}
 
@@ -113,19 +189,537 @@ public class FileServerPluginBuilder implements ConsumerPluginBuilder {
 	 *
 	 */
 	public FileServerPluginBuilder serveSubresourceWhenDirectoryRequested(String subresource) {
-		notNull(subresource, "Subresource must be not null");
-		httpDirectoryRequestConsumer = new DirectorySubResourceRequestConsumer(httpFileProducer, templatedHttpResponder,
-				subresource);
+		directorySubresources = Collections.singletonList(notNull(subresource, "Subresource must be not null"));
+		directoryContentsListed = false;
+		return this;
+	}
+
+	/**
+	 * Use the first existing of predefined sub-resources of that directory for resource resolution
+	 *
+	 * @param subresources not empty default resources under the served resource in order of preference
+	 *                     (i.e. index.html, index.htm)
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder serveFirstExistingSubresourceWhenDirectoryRequested(String... subresources) {
+		notNull(subresources, "Subresources must be not null");
+		isTrue(subresources.length > 0, "At least one subresource is required");
+		for (String subresource : subresources)
+			notNull(subresource, "Subresource must be not null");
+		directorySubresources = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(subresources)));
+		directoryContentsListed = false;
+		return this;
+	}
+
+	/**
+	 * Remember which of sub-resources served for directories was found in each directory, so a directory request
+	 * costs the same as a request for that file directly. The whole root directory tree is watched in a background
+	 * thread to notice changes. Applies only when sub-resources are served for directories.
+	 *
+	 * @param maximumNumberOfDirectories positive limit of directories with remembered sub-resource
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder cacheDirectoryIndexes(int maximumNumberOfDirectories) {
+		isTrue(maximumNumberOfDirectories > 0, "Maximum number of directories must be positive");
+		directoryIndexesCached = true;
+		directoryIndexCacheSize = maximumNumberOfDirectories;
+		return this;
+	}
+
+	/**
+	 * Respond with listing of entries of requested directory: HTML page or JSON object (for 'format=json' query
+	 * parameter or clients accepting 'application/json'). Listings are paginated with 'after' cursors and sorted by
+	 * 'sort' (name, size, modified) and 'order' (asc, desc) query parameters.
+	 *
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder listDirectoryContents() {
+		directorySubresources = Collections.emptyList();
+		directoryContentsListed = true;
+		return this;
+	}
+
+	/**
+	 * Remember listings of directories, so a directory is scanned only once for all requests and pages of its
+	 * listing until anything changes in it. The whole root directory tree is watched in a background thread to
+	 * notice changes. Applies only when contents of directories are listed.
+	 *
+	 * @param maximumCacheSizeInBytes positive limit of memory taken by remembered listings
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder cacheDirectoryListings(long maximumCacheSizeInBytes) {
+		isTrue(maximumCacheSizeInBytes > 0, "Maximum cache size must be positive");
+		directoryListingsCached = true;
+		directoryListingsCacheSizeInBytes = maximumCacheSizeInBytes;
+		return this;
+	}
+
+	/**
+	 * Respond to directory requests with 'archive' query parameter (i.e. '/docs?archive=tar' or '/docs?archive=zip')
+	 * with archive of the whole directory tree streamed while the tree is walked. Other directory requests are served
+	 * as configured (with sub-resources, listings or forbidden).
+	 *
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder sendArchivesOfDirectories() {
+		directoryArchivesSent = true;
+		return this;
+	}
+
+	/**
+	 * Serve precompressed sidecar files (i.e. app.js.gz next to app.js) instead of the requested ones when client
+	 * accepts gzip coding and the sidecar is at least as new as the original file. The original MIME type is kept.
+	 *
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder servePrecompressedFilesWhenAvailable() {
+		precompressedFilesServed = true;
+		return this;
+	}
+
+	/**
+	 * Compress files on the fly and keep compressed bodies in memory so each variant of a file is compressed only once
+	 * per its modification. Only files not bigger than 1/8 of cache size are compressed. When precompressed sidecar
+	 * files are served as well they take precedence.
+	 *
+	 * @param compressionConfigurationBuilder not null settings of compression (MIME types, minimum size, codings, level)
+	 * @param maximumCacheSizeInBytes positive limit of total size of cached compressed bodies
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder cacheCompressedFiles(CompressionConfigurationBuilder compressionConfigurationBuilder,
+														long maximumCacheSizeInBytes) {
+		notNull(compressionConfigurationBuilder, "Compression configuration builder cannot be null");
+		isTrue(maximumCacheSizeInBytes > 0, "Maximum cache size must be positive");
+		optionalCompressedFilesConfiguration = Optional.present(compressionConfigurationBuilder.createNow());
+		compressedFilesCacheSizeInBytes = maximumCacheSizeInBytes;
+		return this;
+	}
+
+	/**
+	 * Keep content of small files in off-heap memory so frequently requested files are not reread from disk.
+	 * The cache is invalidated when files are written or deleted by this plugin and when they are changed directly
+	 * on the filesystem (the whole root directory tree is watched in a background thread).
+	 *
+	 * @param maximumCacheSizeInBytes positive limit of total size of cached files
+	 * @param maximumFileSizeInBytes positive limit of size of single cached file (not bigger than 2GB)
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder cacheHotFilesInMemory(long maximumCacheSizeInBytes, long maximumFileSizeInBytes) {
+		isTrue(maximumCacheSizeInBytes > 0, "Maximum cache size must be positive");
+		isTrue(maximumFileSizeInBytes > 0 && maximumFileSizeInBytes <= Integer.MAX_VALUE,
+				"Maximum size of cached file must be a positive number not bigger than 2GB");
+		hotFilesCached = true;
+		hotFilesCacheSizeInBytes = maximumCacheSizeInBytes;
+		hotFileMaximumSizeInBytes = maximumFileSizeInBytes;
+		return this;
+	}
+
+	/**
+	 * Serve big files from memory mapped regions shared by all concurrent downloads of the same file instead of
+	 * reading them through separate streams and heap buffers. Files are unmapped as soon as they are evicted or
+	 * changed and their last download finishes.
+	 *
+	 * @param minimumFileSizeInBytes positive size from which files are memory mapped
+	 * @param maximumMappedSizeInBytes positive limit of total size of files kept mapped at the same time
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder serveLargeFilesMemoryMapped(long minimumFileSizeInBytes,
+															   long maximumMappedSizeInBytes) {
+		isTrue(minimumFileSizeInBytes > 0, "Minimum size of memory mapped file must be positive");
+		isTrue(maximumMappedSizeInBytes > 0, "Maximum size of memory mapped files must be positive");
+		largeFilesMemoryMapped = true;
+		memoryMappedFileMinimumSizeInBytes = minimumFileSizeInBytes;
+		memoryMappedFilesMaximumSizeInBytes = maximumMappedSizeInBytes;
+		return this;
+	}
+
+	/**
+	 * Generate entity tags (ETag) of files from hash of their content instead of their size and modification time.
+	 * Tags stay the same when files are touched or deployed to other hosts without changing their content, at the
+	 * cost of reading every new file version once to hash it.
+	 *
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder useContentHashEntityTags() {
+		contentHashEntityTagsUsed = true;
+		return this;
+	}
+
+	/**
+	 * Remember metadata of requested files (existence, type, size, modification time and readability) for a short
+	 * time, so serving a file costs at most one stat and one readability check. Metadata of files changed by
+	 * the server is forgotten immediately, other changes are noticed after the time to live at the latest (or
+	 * immediately when hot files are cached and the root directory is watched).
+	 *
+	 * @param timeToLiveInMilliseconds positive time for which metadata of file is remembered
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder cacheFileMetadata(long timeToLiveInMilliseconds) {
+		isTrue(timeToLiveInMilliseconds > 0, "Time to live of file metadata must be positive");
+		fileMetadataCached = true;
+		fileMetadataTimeToLiveInMilliseconds = timeToLiveInMilliseconds;
+		return this;
+	}
+
+	/**
+	 * Remember request paths that were not found and answer repeated requests for them with the same 404 response
+	 * without any filesystem access. The cache is invalidated when files are written by this plugin and when they
+	 * are created directly on the filesystem (the whole root directory tree is watched in a background thread).
+	 *
+	 * @param maximumCacheSizeInBytes positive limit of memory taken by remembered paths and their responses
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder cacheNotFoundPaths(long maximumCacheSizeInBytes) {
+		isTrue(maximumCacheSizeInBytes > 0, "Maximum cache size must be positive");
+		notFoundPathsCached = true;
+		notFoundCacheSizeInBytes = maximumCacheSizeInBytes;
+		return this;
+	}
+
+	/**
+	 * Make every upload durable on disk before it is answered with "Created", so it survives a power loss.
+	 * {@link DurabilityMode#GROUP_COMMIT} synchronizes uploads completed at about the same time together with
+	 * default commit window and batch size, which keeps the throughput of many small uploads.
+	 *
+	 * @param durabilityMode not null mode ({@link DurabilityMode#NONE} by default)
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder syncUploadsToDisk(DurabilityMode durabilityMode) {
+		uploadDurabilityMode = notNull(durabilityMode, "Durability mode cannot be null");
+		optionalGroupCommitter = Optional.empty();
+		return this;
+	}
+
+	/**
+	 * Make every upload durable on disk before it is answered with "Created" in batches committed by the
+	 * committer, which also exposes metrics of batches (i.e. their size and latency).
+	 *
+	 * @param groupCommitter not null committer with chosen commit window and maximum batch size
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder syncUploadsToDiskWithGroupCommit(GroupCommitter groupCommitter) {
+		optionalGroupCommitter = Optional.present(notNull(groupCommitter, "Group committer cannot be null"));
+		uploadDurabilityMode = DurabilityMode.GROUP_COMMIT;
+		return this;
+	}
+
+	/**
+	 * Choose how PATCH requests update ranges of bytes of files when file operations are allowed.
+	 * {@link FilePatchMode#IN_PLACE} (the default) writes only the patched ranges, while
+	 * {@link FilePatchMode#COPY_ON_WRITE} copies the file first, so readers never see a partially applied patch.
+	 *
+	 * @param patchMode not null mode of patching files
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder patchFiles(FilePatchMode patchMode) {
+		this.patchMode = notNull(patchMode, "Patch mode cannot be null");
+		return this;
+	}
+
+	/**
+	 * Store each distinct content of uploaded files only once when file operations are allowed: content goes into
+	 * blobs named by its SHA-256 digest and uploaded files become hard links of them, which are released when files
+	 * are deleted or replaced. An upload with declared SHA-256 digest (Digest header) of already stored content
+	 * is not written at all.
+	 *
+	 * @param blobStoreDirectory not null directory of blobs outside of the root server directory but on the same
+	 *                           file system
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder deduplicateUploads(String blobStoreDirectory) {
+		notNull(blobStoreDirectory, "Blob store directory cannot be null");
+		optionalBlobStoreDirectory = Optional.present(new File(blobStoreDirectory));
+		return this;
+	}
+
+	/**
+	 * Serve files of the storage (i.e. {@link InMemoryFileStorage}) instead of files of the root server directory,
+	 * which is not required then. Directory sub-resources, listings, conditional and single range requests are
+	 * supported; caches, encoded variants (except the ones kept by {@link EncodedFileStorage}), content hash entity
+	 * tags, uploads in parts, patching and deduplication of uploads apply only to the root server directory.
+	 *
+	 * @param storage not null storage of served files
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder serveFromStorage(FileStorage storage) {
+		optionalStorage = Optional.present(notNull(storage, "Storage cannot be null"));
+		return this;
+	}
+
+	/**
+	 * Serve entries of ZIP (or JAR) archive without extracting it (see {@link ZipArchiveStorage}) like files of
+	 * storage. The archive is opened and its central directory is read when the plugin is built. Files are only read
+	 * regardless of allowed file operations and deflated entries are sent still compressed to clients accepting gzip
+	 * or deflate coding.
+	 *
+	 * @param archiveFile not null path of archive
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder serveFromArchive(String archiveFile) {
+		notNull(archiveFile, "Archive file cannot be null");
+		optionalArchive = Optional.present(new File(archiveFile));
+		return this;
+	}
+
+	/**
+	 * Replace the whole table of MIME types resolved by file extension. Files with unknown extensions are probed
+	 * by the system and the result is remembered.
+	 *
+	 * @param mimeTypeTable not null table (i.e. {@link MimeTypeTable#emptyTable()} extended with custom types)
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder withMimeTypeTable(MimeTypeTable mimeTypeTable) {
+		this.mimeTypeTable = notNull(mimeTypeTable, "MIME type table cannot be null");
+		return this;
+	}
+
+	/**
+	 * Add or replace a MIME type for a file extension in the currently used table of MIME types.
+	 *
+	 * @param extension not null and not empty file extension with or without leading dot (case is ignored)
+	 * @param mimeType not null MIME type in form of 'type/subtype'
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder mapFileExtensionToMimeType(String extension, String mimeType) {
+		mimeTypeTable = mimeTypeTable.withMimeType(extension, mimeType);
 		return this;
 	}
 
+	/**
+	 * Send Cache-Control and Expires headers chosen by the policy with files whose request path matches the pattern.
+	 * Patterns are checked in the order they were added (before MIME type rules) and the first matching one wins.
+	 *
+	 * @param pathPattern not null exact request path or pattern with a single '*' matching any characters
+	 *                    (i.e. '*.js', '/static/*' or '/img/*.png')
+	 * @param policy not null policy (i.e. {@code maxAge(31536000).immutable()} or {@code noCache()})
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder withCacheControlForPath(String pathPattern, CacheControlPolicy policy) {
+		cacheControlRules = cacheControlRules.withPathPattern(pathPattern, policy);
+		return this;
+	}
+
+	/**
+	 * Send Cache-Control and Expires headers chosen by the policy with files of the MIME type whose request path
+	 * does not match any path pattern.
+	 *
+	 * @param mimeType not null MIME type in form of 'type/subtype' or 'type/*' (i.e. 'image/*')
+	 * @param policy not null policy (i.e. {@code maxAge(86400)})
+	 * @return this builder
+	 */
+	public FileServerPluginBuilder withCacheControlForMimeType(String mimeType, CacheControlPolicy policy) {
+		cacheControlRules = cacheControlRules.withMimeType(mimeType, policy);
+		return this;
+	}
+
+	/**
+	 * Build the consumer of requests. It implements {@link Closeable}, so stopping the server stops the background
+	 * threads started here (watcher of file changes and committer of uploads) and closes the opened archive.
+	 *
+	 * @return not null consumer of requests
+	 */
 	public HttpRequestConsumer build() {
+		if (optionalArchive.isPresent()) {
+			final ZipArchiveStorage archiveStorage = openArchive(optionalArchive.get());
+			return buildServingFromStorage(archiveStorage, FileServerMode.READ_ONLY,
+					Collections.<Closeable>singletonList(archiveStorage));
+		}
+		if (optionalStorage.isPresent())
+			return buildServingFromStorage(optionalStorage.get(), fileServerMode, Collections.<Closeable>emptyList());
 		notNull(root, "You need to invoke mandatory builder chain method: 'withRootServerDirectory' to define root server folder");
+		List<FileChangeListener> fileChangeListeners = new ArrayList<FileChangeListener>();
+		HttpFileProducer httpFileProducer = new HttpFileProducer(new MimeTypeDetector(mimeTypeTable), templatedHttpResponder,
+				createOptionalFileVariantResolver(), createOptionalFileContentProvider(fileChangeListeners),
+				createEntityTagGenerator(), cacheControlRules);
+		Optional<FileMetadataProvider> optionalFileMetadataProvider =
+				createOptionalFileMetadataProvider(fileChangeListeners);
+		HttpDirectoryRequestConsumer httpDirectoryRequestConsumer = sendArchivesOfDirectoriesWhenRequested(
+				createDirectoryRequestConsumer(httpFileProducer, optionalFileMetadataProvider, fileChangeListeners),
+				new LocalFileStorage(root));
 		HttpFileRequestFactory requestFactory = new HttpFileRequestFactory(root.getAbsolutePath());
+		Optional<NotFoundCache> optionalNotFoundCache = createOptionalNotFoundCache(fileChangeListeners);
+		Optional<FileChangeListener> optionalFileChangeListener = createOptionalFileChangeListener(fileChangeListeners);
+		Optional<ContentAddressedStore> optionalContentAddressedStore = createOptionalContentAddressedStore();
 		HttpFileRequestConsumerFactory consumerFactory = new HttpFileRequestConsumerFactory(templatedHttpResponder,
-				httpDirectoryRequestConsumer, httpFileProducer);
+				httpDirectoryRequestConsumer, httpFileProducer, optionalFileChangeListener,
+				optionalFileMetadataProvider, optionalNotFoundCache, createUploadPublisher(), patchMode,
+				optionalContentAddressedStore);
 		HttpFileRequestConsumerSelector selector = new HttpFileRequestConsumerSelector(fileServerMode, consumerFactory);
-		return new HttpFileRequestConsumerDispatcher(requestFactory, selector);
+		List<Closeable> backgroundServices = new ArrayList<Closeable>();
+		if (optionalGroupCommitter.isPresent())
+			backgroundServices.add(optionalGroupCommitter.get());
+		if (isRootDirectoryWatched())
+			backgroundServices.add(watchForFileChanges(optionalFileChangeListener.get()));
+		if (fileServerMode == FileServerMode.READ_AND_WRITE)
+			AtomicUploadPublisher.removeAbandonedTemporaryFilesInBackground(root,
+					AtomicUploadPublisher.DEFAULT_ABANDONED_FILE_MINIMUM_AGE_IN_MILLISECONDS);
+		if (optionalContentAddressedStore.isPresent())
+			optionalContentAddressedStore.get().removeUnreferencedBlobsInBackground();
+		return new HttpFileRequestConsumerDispatcher(requestFactory, selector, backgroundServices);
+	}
+
+	private HttpRequestConsumer buildServingFromStorage(FileStorage storage, FileServerMode mode,
+														List<Closeable> backgroundServices) {
+		final HttpDirectoryRequestConsumer listingOrForbiddingConsumer = directoryContentsListed
+				? new DirectoryListingRequestConsumer(templatedHttpResponder,
+						Optional.<DirectoryListingProvider>present(new StorageDirectoryListingProvider(storage)))
+				: new ForbiddenDirectoryRequestConsumer(templatedHttpResponder);
+		final HttpDirectoryRequestConsumer directoryRequestConsumer =
+				sendArchivesOfDirectoriesWhenRequested(listingOrForbiddingConsumer, storage);
+		// content of stored files is not read to build entity tags, so they come from length and modification time
+		final HttpFileRequestConsumerSelector selector = new HttpFileRequestConsumerSelector(mode,
+				new StorageHttpFileRequestConsumerFactory(storage, mimeTypeTable, templatedHttpResponder,
+						directorySubresources, directoryRequestConsumer, new MetadataEntityTagGenerator()));
+		// consumers of storage take only normalized request paths from the mapper of the root directory
+		final File mappedRoot = root != null ? root : new File(currentDirectory());
+		return new HttpFileRequestConsumerDispatcher(new HttpFileRequestFactory(mappedRoot.getAbsolutePath()),
+				selector, backgroundServices);
+	}
+
+	private ZipArchiveStorage openArchive(File archive) {
+		try {
+			return ZipArchiveStorage.open(archive);
+		} catch (IOException e) {
+			throw new IllegalStateException(format("Cannot open archive: '%s'", archive), e);
+		}
+	}
+
+	private Optional<ContentAddressedStore> createOptionalContentAddressedStore() {
+		if (fileServerMode != FileServerMode.READ_AND_WRITE || optionalBlobStoreDirectory.isNotPresent())
+			return Optional.empty();
+		final Path blobStorePath = optionalBlobStoreDirectory.get().toPath().toAbsolutePath().normalize();
+		isTrue(!blobStorePath.startsWith(root.toPath().toAbsolutePath().normalize()),
+				"The blob store directory cannot be located in the root server directory: '%s'", blobStorePath);
+		return Optional.present(new ContentAddressedStore(blobStorePath.toFile()));
+	}
+
+	private AtomicUploadPublisher createUploadPublisher() {
+		return optionalGroupCommitter.isPresent()
+				? new AtomicUploadPublisher(AtomicUploadPublisher.DEFAULT_NUMBER_OF_LOCK_STRIPES,
+						optionalGroupCommitter.get())
+				: new AtomicUploadPublisher(AtomicUploadPublisher.DEFAULT_NUMBER_OF_LOCK_STRIPES, uploadDurabilityMode);
+	}
+
+	private boolean isRootDirectoryWatched() {
+		return hotFilesCached || notFoundPathsCached || (directoryContentsListed && directoryListingsCached) ||
+				(!directorySubresources.isEmpty() && directoryIndexesCached);
+	}
+
+	private Optional<FileContentProvider> createOptionalFileContentProvider(
+			List<FileChangeListener> fileChangeListeners) {
+		final List<FileContentProvider> providers = new ArrayList<FileContentProvider>();
+		if (hotFilesCached) {
+			final HotFileCache hotFileCache = new HotFileCache(hotFilesCacheSizeInBytes, hotFileMaximumSizeInBytes);
+			providers.add(hotFileCache);
+			fileChangeListeners.add(hotFileCache);
+		}
+		if (largeFilesMemoryMapped) {
+			final MemoryMappedFileCache memoryMappedFileCache = new MemoryMappedFileCache(
+					memoryMappedFileMinimumSizeInBytes, memoryMappedFilesMaximumSizeInBytes);
+			providers.add(memoryMappedFileCache);
+			fileChangeListeners.add(memoryMappedFileCache);
+		}
+		if (providers.isEmpty())
+			return Optional.empty();
+		return Optional.<FileContentProvider>present(providers.size() == 1
+				? providers.get(0)
+				: new FirstAvailableFileContentProvider(providers));
+	}
+
+	private Optional<FileMetadataProvider> createOptionalFileMetadataProvider(
+			List<FileChangeListener> fileChangeListeners) {
+		if (!fileMetadataCached)
+			return Optional.empty();
+		final FileMetadataCache fileMetadataCache = new FileMetadataCache(fileMetadataTimeToLiveInMilliseconds);
+		fileChangeListeners.add(fileMetadataCache);
+		return Optional.<FileMetadataProvider>present(fileMetadataCache);
+	}
+
+	private Optional<NotFoundCache> createOptionalNotFoundCache(List<FileChangeListener> fileChangeListeners) {
+		if (!notFoundPathsCached)
+			return Optional.empty();
+		final NotFoundCache notFoundCache = new NotFoundCache(notFoundCacheSizeInBytes);
+		fileChangeListeners.add(notFoundCache);
+		return Optional.present(notFoundCache);
+	}
+
+	private Optional<DirectoryListingProvider> createOptionalDirectoryListingProvider(
+			List<FileChangeListener> fileChangeListeners) {
+		if (!directoryListingsCached)
+			return Optional.empty();
+		final DirectoryListingCache directoryListingCache = new DirectoryListingCache(directoryListingsCacheSizeInBytes);
+		fileChangeListeners.add(directoryListingCache);
+		return Optional.<DirectoryListingProvider>present(directoryListingCache);
+	}
+
+	private EntityTagGenerator createEntityTagGenerator() {
+		return contentHashEntityTagsUsed ? new ContentHashEntityTagGenerator() : new MetadataEntityTagGenerator();
+	}
+
+	private Optional<FileChangeListener> createOptionalFileChangeListener(List<FileChangeListener> listeners) {
+		if (listeners.isEmpty())
+			return Optional.empty();
+		return Optional.<FileChangeListener>present(listeners.size() == 1
+				? listeners.get(0)
+				: new CompositeFileChangeListener(listeners));
+	}
+
+	private FileSystemChangeWatcher watchForFileChanges(FileChangeListener listener) {
+		final FileSystemChangeWatcher watcher = new FileSystemChangeWatcher(root, listener);
+		try {
+			watcher.startWatching();
+			return watcher;
+		} catch (IOException e) {
+			throw new IllegalStateException(format("Cannot watch for changes of files in root directory: '%s'",
+					root.getAbsolutePath()), e);
+		}
+	}
+
+	private Optional<FileVariantResolver> createOptionalFileVariantResolver() {
+		final AcceptEncodingNegotiator negotiator = new AcceptEncodingNegotiator();
+		final List<FileVariantResolver> resolvers = new ArrayList<FileVariantResolver>();
+		if (precompressedFilesServed)
+			resolvers.add(new PrecompressedSidecarVariantResolver(negotiator));
+		if (optionalCompressedFilesConfiguration.isPresent())
+			resolvers.add(new CompressedFileVariantCache(negotiator, optionalCompressedFilesConfiguration.get(),
+					compressedFilesCacheSizeInBytes,
+					Math.max(1, compressedFilesCacheSizeInBytes / CACHED_COMPRESSED_FILE_SIZE_RATIO)));
+		if (resolvers.isEmpty())
+			return Optional.empty();
+		return Optional.<FileVariantResolver>present(resolvers.size() == 1
+				? resolvers.get(0)
+				: new FirstAvailableFileVariantResolver(resolvers));
+	}
+
+	private HttpDirectoryRequestConsumer createDirectoryRequestConsumer(HttpFileProducer httpFileProducer,
+			Optional<FileMetadataProvider> optionalFileMetadataProvider, List<FileChangeListener> fileChangeListeners) {
+		final HttpDirectoryRequestConsumerFactory factory = new HttpDirectoryRequestConsumerFactory(
+				templatedHttpResponder, httpFileProducer, optionalFileMetadataProvider);
+		if (directoryContentsListed)
+			return factory.createConsumerThatListsDirectories(
+					createOptionalDirectoryListingProvider(fileChangeListeners));
+		if (directorySubresources.isEmpty())
+			return factory.createConsumerThatForbidsAccessToDirectories();
+		if (directorySubresources.size() == 1 && !directoryIndexesCached)
+			return factory.createConsumerThatAllowsToAccessSubResourceForDirectories(directorySubresources.get(0));
+		return factory.createConsumerThatAllowsToAccessFirstExistingSubResourceForDirectories(directorySubresources,
+				createOptionalDirectoryIndexCache(fileChangeListeners));
+	}
+
+	private HttpDirectoryRequestConsumer sendArchivesOfDirectoriesWhenRequested(
+			HttpDirectoryRequestConsumer directoryRequestConsumer, FileStorage storage) {
+		return directoryArchivesSent
+				? new DirectoryArchiveRequestConsumer(storage, templatedHttpResponder, directoryRequestConsumer)
+				: directoryRequestConsumer;
+	}
+
+	private Optional<DirectoryIndexCache> createOptionalDirectoryIndexCache(
+			List<FileChangeListener> fileChangeListeners) {
+		if (!directoryIndexesCached)
+			return Optional.empty();
+		final DirectoryIndexCache directoryIndexCache = new DirectoryIndexCache(directoryIndexCacheSize);
+		fileChangeListeners.add(directoryIndexCache);
+		return Optional.present(directoryIndexCache);
 	}
 
 }
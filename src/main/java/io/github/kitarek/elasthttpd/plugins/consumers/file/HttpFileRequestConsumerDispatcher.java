@@ -28,24 +28,41 @@ import io.github.kitarek.elasthttpd.server.consumers.HttpRequestConsumer;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
 import org.apache.http.HttpStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import static org.apache.commons.lang3.Validate.notNull;
 import static org.apache.http.HttpStatus.SC_NOT_IMPLEMENTED;
 
 /**
  * The basic FileServer plugin request consumer that dispatches the work to specialized consumer selected by
- * HTTP request attributes like HTTP method.
+ * HTTP request attributes like HTTP method. Closing it stops the background services of the plugin (i.e. watcher
+ * of file changes), which the server does when it is stopped.
  */
-class HttpFileRequestConsumerDispatcher implements HttpRequestConsumer {
+class HttpFileRequestConsumerDispatcher implements HttpRequestConsumer, Closeable {
 
+	public static final Logger LOGGER = LoggerFactory.getLogger(HttpFileRequestConsumerDispatcher.class);
 	private final HttpFileRequestFactory fileRequestFactory;
 	private final HttpFileRequestConsumerSelector consumerSelector;
+	private final List<Closeable> backgroundServices;
 
 	public HttpFileRequestConsumerDispatcher(HttpFileRequestFactory httpFileRequestFactory,
 											 HttpFileRequestConsumerSelector httpFileRequestConsumerSelector) {
+		this(httpFileRequestFactory, httpFileRequestConsumerSelector, Collections.<Closeable>emptyList());
+	}
+
+	public HttpFileRequestConsumerDispatcher(HttpFileRequestFactory httpFileRequestFactory,
+											 HttpFileRequestConsumerSelector httpFileRequestConsumerSelector,
+											 List<Closeable> backgroundServices) {
 		this.fileRequestFactory = notNull(httpFileRequestFactory, "HttpFileRequestFactory instance must be not null");
 		this.consumerSelector = notNull(httpFileRequestConsumerSelector,
 				"HttpFileRequestConsumerSelector instance must be not null");
+		this.backgroundServices = notNull(backgroundServices, "Background services cannot be null");
 	}
 
 	public void consumeRequest(final HttpRequest request, final HttpResponse response) {
@@ -82,6 +99,19 @@ class HttpFileRequestConsumerDispatcher implements HttpRequestConsumer {
 		}
 	}
 
+	/**
+	 * Stop all background services. Requests can still be consumed, only without them (i.e. without caches being
+	 * notified about changes made outside of the server).
+	 */
+	public void close() {
+		for (Closeable backgroundService : backgroundServices)
+			try {
+				backgroundService.close();
+			} catch (IOException e) {
+				LOGGER.warn("Cannot stop background service of file server", e);
+			}
+	}
+
 	private void delegateToConsumer(HttpFileRequestConsumer consumer, HttpRequest request, HttpResponse response) {
 		HttpFileRequest fileRequest = fileRequestFactory.createNew(request, response);
 		consumer.consumeFileRequest(fileRequest);
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.archive;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryEntry;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.FileStorage;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * HTTP entity with archive of the whole directory tree of storage created while it is written to the connection.
+ * Length of archive is not known upfront so the entity is always sent using chunked transfer coding. The tree is
+ * walked depth first in order of names and only listing of directories on the current path is kept in memory, so
+ * memory does not grow with the size of tree. Files and directories removed during the walk are skipped and
+ * directories nested deeper than {@link #MAXIMUM_DEPTH} (i.e. loops of symbolic links) are not archived.
+ */
+public class DirectoryArchiveEntity extends AbstractHttpEntity {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(DirectoryArchiveEntity.class);
+	public static final int MAXIMUM_DEPTH = 64;
+	private static final int UNKNOWN_CONTENT_LENGTH = -1;
+	private static final Comparator<DirectoryEntry> NAME_ORDER = new Comparator<DirectoryEntry>() {
+		public int compare(DirectoryEntry first, DirectoryEntry second) {
+			return first.getName().compareTo(second.getName());
+		}
+	};
+	private final FileStorage storage;
+	private final String directoryPath;
+	private final String rootName;
+	private final DirectoryArchiveFormat format;
+
+	/**
+	 * Create entity with the following parameters
+	 *
+	 * @param storage not null storage of directory
+	 * @param directoryPath not null normalized path of existing directory
+	 * @param rootName not null name of the top directory of archive that contains all archived entries
+	 * @param format not null format of archive
+	 */
+	public DirectoryArchiveEntity(FileStorage storage, String directoryPath, String rootName,
+								  DirectoryArchiveFormat format) {
+		this.storage = notNull(storage, "Storage cannot be null");
+		this.directoryPath = notNull(directoryPath, "Directory path cannot be null");
+		this.rootName = notNull(rootName, "Name of root directory of archive cannot be null");
+		this.format = notNull(format, "Archive format cannot be null");
+		setContentType(format.getMimeType());
+		setChunked(true);
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public long getContentLength() {
+		return UNKNOWN_CONTENT_LENGTH;
+	}
+
+	/**
+	 * Content is assembled in memory, so it should be used only for small trees. Connections send the entity using
+	 * {@link #writeTo(OutputStream)} which does not buffer any file.
+	 */
+	public InputStream getContent() throws IOException {
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		writeTo(content);
+		return new ByteArrayInputStream(content.toByteArray());
+	}
+
+	public void writeTo(OutputStream outstream) throws IOException {
+		notNull(outstream, "Output stream cannot be null");
+		final DirectoryArchiveWriter writer = format.createWriter(outstream);
+		final Optional<DirectoryEntry> optionalDirectory = storage.stat(directoryPath);
+		writer.writeDirectory(rootName, optionalDirectory.isPresent()
+				? optionalDirectory.get().getLastModified()
+				: System.currentTimeMillis());
+		writeDirectoryContents(writer, directoryPath, rootName, 1);
+		writer.finish();
+	}
+
+	private void writeDirectoryContents(DirectoryArchiveWriter writer, String path, String name, int depth)
+			throws IOException {
+		final List<DirectoryEntry> entries;
+		try {
+			entries = new ArrayList<DirectoryEntry>(storage.list(path));
+		} catch (FileNotFoundException e) {
+			LOGGER.debug(format("Directory was removed while it was archived: %s", path));
+			return;
+		}
+		Collections.sort(entries, NAME_ORDER);
+		for (DirectoryEntry entry : entries) {
+			final String entryPath = (path.equals(FileStorage.ROOT_PATH) ? "" : path) + FileStorage.PATH_SEPARATOR +
+					entry.getName();
+			final String entryName = name + FileStorage.PATH_SEPARATOR + entry.getName();
+			if (!entry.isDirectory()) {
+				writeFile(writer, entryPath, entryName, entry);
+			} else if (depth < MAXIMUM_DEPTH) {
+				writer.writeDirectory(entryName, entry.getLastModified());
+				writeDirectoryContents(writer, entryPath, entryName, depth + 1);
+			} else {
+				LOGGER.warn(format("Directory is nested too deep and it is not archived: %s", entryPath));
+			}
+		}
+	}
+
+	private void writeFile(DirectoryArchiveWriter writer, String path, String name, DirectoryEntry entry)
+			throws IOException {
+		final InputStream content;
+		try {
+			content = storage.openForRead(path);
+		} catch (FileNotFoundException e) {
+			LOGGER.debug(format("File was removed while it was archived: %s", path));
+			return;
+		}
+		try {
+			writer.writeFile(name, entry.getLength(), entry.getLastModified(), content);
+		} finally {
+			content.close();
+		}
+	}
+
+	public boolean isStreaming() {
+		return false;
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.archive;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.optional;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Formats of archives with the whole directory tree streamed to clients (see 'archive' query parameter).
+ */
+public enum DirectoryArchiveFormat {
+	TAR("tar", "application/x-tar") {
+		public DirectoryArchiveWriter createWriter(OutputStream out) {
+			return new TarArchiveWriter(out);
+		}
+	},
+	ZIP("zip", "application/zip") {
+		public DirectoryArchiveWriter createWriter(OutputStream out) {
+			return new ZipStreamArchiveWriter(out);
+		}
+	};
+
+	private static Map<String, DirectoryArchiveFormat> tokenMap = new HashMap<String, DirectoryArchiveFormat>();
+
+	static {
+		for (DirectoryArchiveFormat format : values())
+			tokenMap.put(format.token, format);
+	}
+
+	/**
+	 * Find archive format by its (case insensitive) token like 'tar'.
+	 *
+	 * @param token not null token of format
+	 * @return optional format that is not present for unknown tokens
+	 */
+	public static Optional<DirectoryArchiveFormat> fromToken(String token) {
+		final String normalizedToken = notNull(token, "Archive format token cannot be null")
+				.trim().toLowerCase(Locale.ENGLISH);
+		return optional(tokenMap.get(normalizedToken));
+	}
+
+	DirectoryArchiveFormat(String token, String mimeType) {
+		this.token = token;
+		this.mimeType = mimeType;
+	}
+
+	private final String token;
+	private final String mimeType;
+
+	/**
+	 * @return the token used in query parameter and as extension of archive file name
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * @return MIME type of archive sent as Content-Type header
+	 */
+	public String getMimeType() {
+		return mimeType;
+	}
+
+	/**
+	 * Create writer of archive of this format. Finishing the writer never closes the wrapped stream.
+	 *
+	 * @param out not null output stream that will receive archive
+	 * @return not null writer
+	 */
+	public abstract DirectoryArchiveWriter createWriter(OutputStream out);
+}
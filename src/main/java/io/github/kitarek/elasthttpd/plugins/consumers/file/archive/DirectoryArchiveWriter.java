@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.archive;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Writer of entries of archive that streams them one after another, so no entry is kept in memory. Names of entries
+ * are relative paths with '/' separators.
+ */
+public interface DirectoryArchiveWriter {
+
+	/**
+	 * Write entry of directory
+	 *
+	 * @param name not null relative path of directory
+	 * @param lastModified modification time in milliseconds since the epoch
+	 * @throws IOException when entry cannot be written
+	 */
+	void writeDirectory(String name, long lastModified) throws IOException;
+
+	/**
+	 * Write entry of file with its content
+	 *
+	 * @param name not null relative path of file
+	 * @param length not negative length of file known before its content is read
+	 * @param lastModified modification time in milliseconds since the epoch
+	 * @param content not null content of file (it is not closed)
+	 * @throws IOException when content cannot be read or entry cannot be written
+	 */
+	void writeFile(String name, long length, long lastModified, InputStream content) throws IOException;
+
+	/**
+	 * Write the end of archive and flush it. The wrapped stream is not closed.
+	 *
+	 * @throws IOException when the end cannot be written
+	 */
+	void finish() throws IOException;
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.archive;
+
+import org.apache.http.Consts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.util.EncodingUtils.getAsciiBytes;
+
+/**
+ * Writer of POSIX tar (ustar) archives. Names that do not fit ustar header (or are not ASCII) and files of more than
+ * 8 GiB are described by an extra pax header before their entry. Content of each file is copied with a fixed buffer
+ * and exactly its length known upfront is written: a file that shrinks while it is copied is padded with zeros and
+ * the bytes of a file that grows are not sent, so the archive always stays readable.
+ */
+public class TarArchiveWriter implements DirectoryArchiveWriter {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(TarArchiveWriter.class);
+	private static final int BLOCK_SIZE = 512;
+	private static final int NAME_LENGTH = 100;
+	private static final int PREFIX_LENGTH = 155;
+	private static final long MAXIMUM_OCTAL_SIZE = 077777777777L;
+	private static final char FILE_TYPE = '0';
+	private static final char DIRECTORY_TYPE = '5';
+	private static final char PAX_HEADER_TYPE = 'x';
+	private static final int FILE_MODE = 0644;
+	private static final int DIRECTORY_MODE = 0755;
+	private static final String PAX_HEADER_NAME = "././@PaxHeader";
+	private static final int COPY_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+	private final OutputStream out;
+	private final byte[] buffer = new byte[COPY_BUFFER_SIZE_IN_BYTES];
+
+	/**
+	 * Create writer
+	 *
+	 * @param out not null stream that receives archive
+	 */
+	public TarArchiveWriter(OutputStream out) {
+		this.out = notNull(out, "Output stream cannot be null");
+	}
+
+	public void writeDirectory(String name, long lastModified) throws IOException {
+		notNull(name, "Name of directory cannot be null");
+		writeHeaders(name.endsWith("/") ? name : name + "/", DIRECTORY_TYPE, DIRECTORY_MODE, 0, lastModified);
+	}
+
+	public void writeFile(String name, long length, long lastModified, InputStream content) throws IOException {
+		notNull(name, "Name of file cannot be null");
+		notNull(content, "Content of file cannot be null");
+		isTrue(length >= 0, "Length of file cannot be negative");
+		writeHeaders(name, FILE_TYPE, FILE_MODE, length, lastModified);
+		long remaining = length;
+		int readBytes;
+		while (remaining > 0 && (readBytes = content.read(buffer, 0, (int) Math.min(buffer.length, remaining))) != -1) {
+			out.write(buffer, 0, readBytes);
+			remaining -= readBytes;
+		}
+		if (remaining > 0) {
+			LOGGER.warn(format("File was truncated while it was archived and it is padded with zeros: %s", name));
+			writeZeros(remaining);
+		}
+		writePadding(length);
+	}
+
+	public void finish() throws IOException {
+		writeZeros(2 * BLOCK_SIZE);
+		out.flush();
+	}
+
+	private void writeHeaders(String name, char type, int mode, long length, long lastModified) throws IOException {
+		final byte[] nameBytes = name.getBytes(Consts.UTF_8);
+		final boolean asciiName = nameBytes.length == name.length();
+		final int prefixLength = asciiName ? prefixLengthOf(name) : -1;
+		final boolean paxNameNeeded = prefixLength < 0;
+		final boolean paxSizeNeeded = length > MAXIMUM_OCTAL_SIZE;
+		if (paxNameNeeded || paxSizeNeeded) {
+			final StringBuilder records = new StringBuilder();
+			if (paxNameNeeded)
+				records.append(paxRecord("path", name));
+			if (paxSizeNeeded)
+				records.append(paxRecord("size", String.valueOf(length)));
+			final byte[] recordBytes = records.toString().getBytes(Consts.UTF_8);
+			out.write(createHeader(PAX_HEADER_NAME, "", PAX_HEADER_TYPE, FILE_MODE, recordBytes.length, lastModified));
+			out.write(recordBytes);
+			writePadding(recordBytes.length);
+		}
+		final String fallbackName = paxNameNeeded ? asciiTailOf(name) : name.substring(prefixLength == 0 ? 0 :
+				prefixLength + 1);
+		final String prefix = paxNameNeeded || prefixLength == 0 ? "" : name.substring(0, prefixLength);
+		out.write(createHeader(fallbackName, prefix, type, mode, paxSizeNeeded ? 0 : length, lastModified));
+	}
+
+	/**
+	 * @return 0 when ASCII name fits name field, length of prefix when it needs to be split at '/' or -1 when it
+	 * does not fit at all
+	 */
+	private static int prefixLengthOf(String name) {
+		if (name.length() <= NAME_LENGTH)
+			return 0;
+		for (int separator = name.indexOf('/'); separator >= 0 && separator <= PREFIX_LENGTH;
+			 separator = name.indexOf('/', separator + 1))
+			if (name.length() - separator - 1 <= NAME_LENGTH && separator > 0 && separator < name.length() - 1)
+				return separator;
+		return -1;
+	}
+
+	private static String asciiTailOf(String name) {
+		final String asciiName = name.replaceAll("[^\\x20-\\x7e]", "_");
+		return asciiName.length() <= NAME_LENGTH ? asciiName : asciiName.substring(asciiName.length() - NAME_LENGTH);
+	}
+
+	private static String paxRecord(String key, String value) {
+		final int contentLength = (" " + key + "=" + value + "\n").getBytes(Consts.UTF_8).length;
+		int length = contentLength + String.valueOf(contentLength).length();
+		if (String.valueOf(length).length() != String.valueOf(contentLength).length())
+			length = contentLength + String.valueOf(length).length();
+		return length + " " + key + "=" + value + "\n";
+	}
+
+	private static byte[] createHeader(String name, String prefix, char type, int mode, long length,
+									   long lastModified) {
+		final byte[] header = new byte[BLOCK_SIZE];
+		putAscii(header, 0, name, NAME_LENGTH);
+		putOctal(header, 100, mode, 8);
+		putOctal(header, 108, 0, 8);
+		putOctal(header, 116, 0, 8);
+		putOctal(header, 124, length, 12);
+		putOctal(header, 136, Math.max(0, lastModified / 1000), 12);
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		header[156] = (byte) type;
+		putAscii(header, 257, "ustar\0" + "00", 8);
+		putAscii(header, 345, prefix, PREFIX_LENGTH);
+		long checksum = 0;
+		for (byte headerByte : header)
+			checksum += headerByte & 0xFF;
+		putOctal(header, 148, checksum, 7);
+		return header;
+	}
+
+	private static void putAscii(byte[] header, int offset, String value, int length) {
+		final byte[] valueBytes = getAsciiBytes(value);
+		System.arraycopy(valueBytes, 0, header, offset, Math.min(valueBytes.length, length));
+	}
+
+	/**
+	 * Put zero padded octal number followed by NUL that takes the whole field
+	 */
+	private static void putOctal(byte[] header, int offset, long value, int length) {
+		final String octal = Long.toOctalString(value);
+		final StringBuilder field = new StringBuilder(length);
+		for (int i = octal.length(); i < length - 1; i++)
+			field.append('0');
+		putAscii(header, offset, field.append(octal).toString(), length - 1);
+		header[offset + length - 1] = 0;
+	}
+
+	private void writePadding(long length) throws IOException {
+		final int lastBlockLength = (int) (length % BLOCK_SIZE);
+		if (lastBlockLength > 0)
+			writeZeros(BLOCK_SIZE - lastBlockLength);
+	}
+
+	private void writeZeros(long length) throws IOException {
+		Arrays.fill(buffer, (byte) 0);
+		for (long remaining = length; remaining > 0; remaining -= buffer.length)
+			out.write(buffer, 0, (int) Math.min(buffer.length, remaining));
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.archive;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Writer of ZIP archives with deflated files (compressed with the fastest level, as the archive is compressed while
+ * it is sent). Sizes and checksums of files follow their data, so each file is read only once. Unlike tar, ZIP needs
+ * a small record of every entry until the central directory is written at the end of archive.
+ */
+public class ZipStreamArchiveWriter implements DirectoryArchiveWriter {
+
+	private static final int COPY_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+	private final ZipOutputStream zipOutputStream;
+	private final byte[] buffer = new byte[COPY_BUFFER_SIZE_IN_BYTES];
+
+	/**
+	 * Create writer
+	 *
+	 * @param out not null stream that receives archive
+	 */
+	public ZipStreamArchiveWriter(OutputStream out) {
+		zipOutputStream = new ZipOutputStream(new NotClosingOutputStream(notNull(out, "Output stream cannot be null")));
+		zipOutputStream.setLevel(Deflater.BEST_SPEED);
+	}
+
+	public void writeDirectory(String name, long lastModified) throws IOException {
+		notNull(name, "Name of directory cannot be null");
+		final ZipEntry entry = new ZipEntry(name.endsWith("/") ? name : name + "/");
+		entry.setTime(lastModified);
+		zipOutputStream.putNextEntry(entry);
+		zipOutputStream.closeEntry();
+	}
+
+	public void writeFile(String name, long length, long lastModified, InputStream content) throws IOException {
+		notNull(name, "Name of file cannot be null");
+		notNull(content, "Content of file cannot be null");
+		final ZipEntry entry = new ZipEntry(name);
+		entry.setTime(lastModified);
+		zipOutputStream.putNextEntry(entry);
+		int readBytes;
+		while ((readBytes = content.read(buffer)) != -1)
+			zipOutputStream.write(buffer, 0, readBytes);
+		zipOutputStream.closeEntry();
+	}
+
+	/**
+	 * Write the central directory and release the compressor
+	 */
+	public void finish() throws IOException {
+		zipOutputStream.close();
+	}
+
+	/**
+	 * Protects the connection stream from being closed when compressor resources are released
+	 */
+	private static class NotClosingOutputStream extends FilterOutputStream {
+		private NotClosingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			out.write(bytes, offset, length);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cache;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.Weigher;
+import io.github.kitarek.elasthttpd.commons.WeightedLruCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileChangeListener;
+
+import java.io.File;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Bounded cache of directory index resolutions: for each directory it remembers which of the ordered index candidates
+ * (i.e. index.html, index.htm) was found in it first, or that none of them was found. Candidates are identified by
+ * their position in the list of candidates of the owner of the cache, so a cache cannot be shared between owners
+ * with different lists. The least recently requested directories are evicted first.
+ *
+ * Entries are never revalidated against the filesystem - the cache needs to be notified about changes (i.e. by
+ * {@link io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileSystemChangeWatcher} and by consumers
+ * writing files). A change of file forgets its parent directory, the file itself (when it is a directory) and all
+ * directories under it.
+ */
+public class DirectoryIndexCache implements FileChangeListener {
+
+	/**
+	 * Resolution remembered for directories that contain none of the candidates
+	 */
+	public static final int NO_INDEX = -1;
+	private static final Weigher<Integer> EACH_DIRECTORY_COUNTS_ONCE = new Weigher<Integer>() {
+		public long weigh(Integer value) {
+			return 1;
+		}
+	};
+
+	private final WeightedLruCache<String, Integer> cache;
+	private final Object invalidationLock = new Object();
+	private long invalidationCount;
+
+	/**
+	 * Create cache
+	 *
+	 * @param maximumNumberOfDirectories positive limit of directories with remembered resolution
+	 */
+	public DirectoryIndexCache(int maximumNumberOfDirectories) {
+		isTrue(maximumNumberOfDirectories > 0, "Maximum number of directories must be positive");
+		this.cache = new WeightedLruCache<String, Integer>(maximumNumberOfDirectories, EACH_DIRECTORY_COUNTS_ONCE);
+	}
+
+	/**
+	 * Get remembered resolution of index of directory
+	 *
+	 * @param directory not null directory
+	 * @return optional position of the first existing candidate or {@link #NO_INDEX}; not present if resolution
+	 * of the directory is not known
+	 */
+	public Optional<Integer> getResolvedIndex(File directory) {
+		return cache.get(notNull(directory, "Directory cannot be null").getAbsolutePath());
+	}
+
+	/**
+	 * @return current number of invalidations that needs to be passed to
+	 * {@link #rememberResolvedIndex(File, int, long)} to detect changes made in the meantime
+	 */
+	public long getInvalidationCount() {
+		synchronized (invalidationLock) {
+			return invalidationCount;
+		}
+	}
+
+	/**
+	 * Remember resolution of index of directory unless any file was changed since the resolution started
+	 *
+	 * @param directory not null directory
+	 * @param resolvedIndex position of the first existing candidate or {@link #NO_INDEX}
+	 * @param invalidationCountBeforeResolution number of invalidations read before candidates were looked up
+	 * @return true if resolution is remembered
+	 */
+	public boolean rememberResolvedIndex(File directory, int resolvedIndex, long invalidationCountBeforeResolution) {
+		final String key = notNull(directory, "Directory cannot be null").getAbsolutePath();
+		isTrue(resolvedIndex >= NO_INDEX, "Resolved index must be either a position of candidate or NO_INDEX");
+		synchronized (invalidationLock) {
+			return invalidationCount == invalidationCountBeforeResolution && cache.put(key, resolvedIndex);
+		}
+	}
+
+	public void fileChanged(File file) {
+		final String changedPath = notNull(file, "File cannot be null").getAbsolutePath();
+		final String changedDirectoryContentPrefix = changedPath + File.separator;
+		final String parentPath = file.getAbsoluteFile().getParent();
+		synchronized (invalidationLock) {
+			invalidationCount++;
+			for (String directoryPath : cache.keys())
+				if (directoryPath.equals(changedPath) || directoryPath.equals(parentPath) ||
+						directoryPath.startsWith(changedDirectoryContentPrefix))
+					cache.remove(directoryPath);
+		}
+	}
+
+	public void allFilesChanged() {
+		synchronized (invalidationLock) {
+			invalidationCount++;
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return the underlying cache of resolutions (i.e. for checking its statistics)
+	 */
+	public WeightedLruCache<String, Integer> getCache() {
+		return cache;
+	}
+}
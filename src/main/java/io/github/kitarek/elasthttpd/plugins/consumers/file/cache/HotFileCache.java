@@ -0,0 +1,196 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cache;
+
+import io.github.kitarek.elasthttpd.commons.ByteBufferInputStream;
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.SegmentedLruCache;
+import io.github.kitarek.elasthttpd.commons.Weigher;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileChangeListener;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FileContent;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FileContentProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty;
+import static io.github.kitarek.elasthttpd.commons.Optional.present;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Keeps content of small and frequently requested files in memory so they are neither reopened nor reread from disk.
+ * Content is stored in direct (off-heap) buffers, so a large cache does not make garbage collection pauses longer.
+ * Values are evicted in segmented LRU order once the total size of cached files exceeds the limit.
+ *
+ * Cached content is provided only when its size and modification time are the ones of the requested file, so a file
+ * changed before the change notification arrives is reloaded. Notifications about changes (i.e. from
+ * {@link io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileSystemChangeWatcher} and from consumers
+ * writing or deleting files) release memory of changed files early.
+ */
+public class HotFileCache implements FileContentProvider, FileChangeListener {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(HotFileCache.class);
+	private final long maximumFileSizeInBytes;
+	private final SegmentedLruCache<String, CachedFileContent> cache;
+	private final Object invalidationLock = new Object();
+	private long invalidationCount;
+
+	/**
+	 * Create cache
+	 *
+	 * @param maximumCacheSizeInBytes positive limit of total size of cached files
+	 * @param maximumFileSizeInBytes positive limit of size of single cached file (not bigger than 2GB)
+	 */
+	public HotFileCache(long maximumCacheSizeInBytes, long maximumFileSizeInBytes) {
+		isTrue(maximumFileSizeInBytes > 0 && maximumFileSizeInBytes <= Integer.MAX_VALUE,
+				"Maximum size of cached file must be a positive number not bigger than 2GB");
+		this.maximumFileSizeInBytes = maximumFileSizeInBytes;
+		this.cache = new SegmentedLruCache<String, CachedFileContent>(maximumCacheSizeInBytes,
+				new Weigher<CachedFileContent>() {
+					public long weigh(CachedFileContent value) {
+						return value.getContentLength();
+					}
+				});
+	}
+
+	public Optional<FileContent> provideContent(File file, long length, long lastModified) {
+		final String key = notNull(file, "File cannot be null").getAbsolutePath();
+		final Optional<CachedFileContent> optionalCachedContent = cache.getWithoutCounting(key);
+		if (optionalCachedContent.isPresent() && optionalCachedContent.get().isContentOf(length, lastModified)) {
+			cache.recordHit();
+			return present((FileContent) optionalCachedContent.get());
+		}
+		cache.recordMiss();
+		return loadAndCache(file, key, length, lastModified);
+	}
+
+	private Optional<FileContent> loadAndCache(File file, String key, long length, long lastModified) {
+		if (length > maximumFileSizeInBytes)
+			return empty();
+		final long invalidationCountBeforeLoad = getInvalidationCount();
+		try {
+			final Optional<CachedFileContent> optionalContent = load(file);
+			if (optionalContent.isNotPresent())
+				return empty();
+			cacheUnlessInvalidatedMeanwhile(key, optionalContent.get(), invalidationCountBeforeLoad);
+			return optionalContent.get().isContentOf(length, lastModified)
+					? present((FileContent) optionalContent.get())
+					: Optional.<FileContent>empty();
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot load file into cache: %s", key), e);
+			return empty();
+		}
+	}
+
+	private Optional<CachedFileContent> load(File file) throws IOException {
+		final long lastModified = file.lastModified();
+		final FileInputStream inputStream = new FileInputStream(file);
+		try {
+			final FileChannel channel = inputStream.getChannel();
+			final long size = channel.size();
+			if (size > maximumFileSizeInBytes)
+				return empty();
+			final ByteBuffer content = ByteBuffer.allocateDirect((int) size);
+			while (content.hasRemaining() && channel.read(content) >= 0)
+				;
+			content.flip();
+			return present(new CachedFileContent(content, lastModified));
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	private void cacheUnlessInvalidatedMeanwhile(String key, CachedFileContent content,
+												 long invalidationCountBeforeLoad) {
+		synchronized (invalidationLock) {
+			if (invalidationCount == invalidationCountBeforeLoad)
+				cache.put(key, content);
+		}
+	}
+
+	private long getInvalidationCount() {
+		synchronized (invalidationLock) {
+			return invalidationCount;
+		}
+	}
+
+	public void fileChanged(File file) {
+		final String changedPath = notNull(file, "File cannot be null").getAbsolutePath();
+		final String changedDirectoryContentPrefix = changedPath + File.separator;
+		synchronized (invalidationLock) {
+			invalidationCount++;
+			for (String key : cache.keys())
+				if (key.equals(changedPath) || key.startsWith(changedDirectoryContentPrefix))
+					cache.remove(key);
+		}
+	}
+
+	public void allFilesChanged() {
+		synchronized (invalidationLock) {
+			invalidationCount++;
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return the underlying cache of file contents (i.e. for checking its statistics)
+	 */
+	public SegmentedLruCache<String, ?> getCache() {
+		return cache;
+	}
+
+	/**
+	 * File content kept in off-heap buffer that is shared by all requests - each of them reads its own view of it.
+	 */
+	public static class CachedFileContent implements FileContent {
+		private final ByteBuffer content;
+		private final long lastModified;
+
+		private CachedFileContent(ByteBuffer content, long lastModified) {
+			this.content = content.asReadOnlyBuffer();
+			this.lastModified = lastModified;
+		}
+
+		public long getContentLength() {
+			return content.remaining();
+		}
+
+		public InputStream openContent() {
+			return new ByteBufferInputStream(content.duplicate());
+		}
+
+		/**
+		 * @return modification time of file (in milliseconds since the epoch) at the moment it was cached
+		 */
+		public long getLastModified() {
+			return lastModified;
+		}
+
+		private boolean isContentOf(long length, long lastModified) {
+			return getContentLength() == length && this.lastModified == lastModified;
+		}
+	}
+}
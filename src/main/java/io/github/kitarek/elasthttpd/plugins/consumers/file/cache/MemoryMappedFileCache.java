@@ -0,0 +1,262 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cache;
+
+import io.github.kitarek.elasthttpd.commons.DirectBufferReleaser;
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.Weigher;
+import io.github.kitarek.elasthttpd.commons.WeightedLruCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileChangeListener;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FileContent;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FileContentProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty;
+import static io.github.kitarek.elasthttpd.commons.Optional.present;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Serves big files from memory mapped regions shared by all concurrent downloads of the same file, so the content
+ * comes straight from the page cache without per-request file descriptors and heap buffers.
+ *
+ * Every mapping is reference counted: the cache holds one reference and every opened stream holds another one.
+ * The file is unmapped deterministically as soon as it is evicted (or invalidated) and the last stream reading
+ * it is closed. Mappings are evicted in LRU order when their total size exceeds the limit and are replaced when
+ * the size or modification time of the file changes.
+ */
+public class MemoryMappedFileCache implements FileContentProvider, FileChangeListener {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(MemoryMappedFileCache.class);
+	public static final long REGION_SIZE_IN_BYTES = 1L << 30;
+	private final long minimumFileSizeInBytes;
+	private final WeightedLruCache<String, MappedFile> cache;
+	private final Object mappingLock = new Object();
+
+	/**
+	 * Create cache
+	 *
+	 * @param minimumFileSizeInBytes positive size from which files are memory mapped; smaller ones are not handled
+	 * @param maximumMappedSizeInBytes positive limit of total size of files kept mapped
+	 */
+	public MemoryMappedFileCache(long minimumFileSizeInBytes, long maximumMappedSizeInBytes) {
+		isTrue(minimumFileSizeInBytes > 0, "Minimum size of memory mapped file must be positive");
+		this.minimumFileSizeInBytes = minimumFileSizeInBytes;
+		this.cache = new WeightedLruCache<String, MappedFile>(maximumMappedSizeInBytes, new Weigher<MappedFile>() {
+			public long weigh(MappedFile value) {
+				return value.length;
+			}
+		}) {
+			@Override
+			protected void onRemoval(MappedFile value) {
+				value.release();
+			}
+		};
+	}
+
+	public Optional<FileContent> provideContent(File file, long length, long lastModified) {
+		notNull(file, "File cannot be null");
+		if (length < minimumFileSizeInBytes || length > cache.getMaximumWeight())
+			return empty();
+		try {
+			return present((FileContent) new MappedFileContent(getOrMap(file, length, lastModified)));
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot map file into memory: %s", file.getAbsolutePath()), e);
+			return empty();
+		}
+	}
+
+	private MappedFile getOrMap(File file, long length, long lastModified) throws IOException {
+		final String key = file.getAbsolutePath();
+		synchronized (mappingLock) {
+			final Optional<MappedFile> optionalMappedFile = cache.get(key);
+			if (optionalMappedFile.isPresent() && optionalMappedFile.get().isMappingOf(length, lastModified))
+				return optionalMappedFile.get();
+			final MappedFile mappedFile = MappedFile.map(file, lastModified);
+			cache.put(key, mappedFile);
+			return mappedFile;
+		}
+	}
+
+	public void fileChanged(File file) {
+		final String changedPath = notNull(file, "File cannot be null").getAbsolutePath();
+		final String changedDirectoryContentPrefix = changedPath + File.separator;
+		synchronized (mappingLock) {
+			for (String key : cache.keys())
+				if (key.equals(changedPath) || key.startsWith(changedDirectoryContentPrefix))
+					cache.remove(key);
+		}
+	}
+
+	public void allFilesChanged() {
+		synchronized (mappingLock) {
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return the underlying cache of mapped files (i.e. for checking its statistics)
+	 */
+	public WeightedLruCache<String, ?> getCache() {
+		return cache;
+	}
+
+	/**
+	 * Reference counted mapping of the whole file split into regions of at most 1GB.
+	 */
+	private static class MappedFile {
+		private final MappedByteBuffer[] regions;
+		private final long length;
+		private final long lastModified;
+		private int referenceCount = 1;
+
+		private MappedFile(MappedByteBuffer[] regions, long length, long lastModified) {
+			this.regions = regions;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		private static MappedFile map(File file, long lastModified) throws IOException {
+			final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+			try {
+				final FileChannel channel = randomAccessFile.getChannel();
+				final long length = channel.size();
+				final MappedByteBuffer[] regions = new MappedByteBuffer[(int) ((length + REGION_SIZE_IN_BYTES - 1) /
+						REGION_SIZE_IN_BYTES)];
+				for (int i = 0; i < regions.length; i++) {
+					final long position = i * REGION_SIZE_IN_BYTES;
+					regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, position,
+							Math.min(REGION_SIZE_IN_BYTES, length - position));
+				}
+				return new MappedFile(regions, length, lastModified);
+			} finally {
+				randomAccessFile.close();
+			}
+		}
+
+		private boolean isMappingOf(long length, long lastModified) {
+			return this.length == length && this.lastModified == lastModified;
+		}
+
+		private synchronized boolean retain() {
+			if (referenceCount == 0)
+				return false;
+			referenceCount++;
+			return true;
+		}
+
+		private synchronized void release() {
+			if (referenceCount > 0 && --referenceCount == 0)
+				for (MappedByteBuffer region : regions)
+					DirectBufferReleaser.release(region);
+		}
+	}
+
+	private static class MappedFileContent implements FileContent {
+		private final MappedFile mappedFile;
+
+		private MappedFileContent(MappedFile mappedFile) {
+			this.mappedFile = mappedFile;
+		}
+
+		public long getContentLength() {
+			return mappedFile.length;
+		}
+
+		public InputStream openContent() throws IOException {
+			if (!mappedFile.retain())
+				throw new IOException("The file has been already unmapped");
+			return new MappedFileInputStream(mappedFile);
+		}
+	}
+
+	/**
+	 * Reads all regions of mapped file one by one and releases the mapping when closed. Reading after close fails
+	 * as the file could have been already unmapped.
+	 */
+	private static class MappedFileInputStream extends InputStream {
+		private static final int END_OF_STREAM = -1;
+		private static final int UNSIGNED_BYTE_MASK = 0xFF;
+		private final MappedFile mappedFile;
+		private int regionIndex = -1;
+		private ByteBuffer region = ByteBuffer.allocate(0);
+		private boolean closed;
+
+		private MappedFileInputStream(MappedFile mappedFile) {
+			this.mappedFile = mappedFile;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return hasRemainingBytes() ? region.get() & UNSIGNED_BYTE_MASK : END_OF_STREAM;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0)
+				return 0;
+			if (!hasRemainingBytes())
+				return END_OF_STREAM;
+			final int bytesToRead = Math.min(length, region.remaining());
+			region.get(bytes, offset, bytesToRead);
+			return bytesToRead;
+		}
+
+		@Override
+		public long skip(long bytesToSkip) throws IOException {
+			long bytesSkipped = 0;
+			while (bytesSkipped < bytesToSkip && hasRemainingBytes()) {
+				final int bytesSkippedInRegion = (int) Math.min(bytesToSkip - bytesSkipped, region.remaining());
+				region.position(region.position() + bytesSkippedInRegion);
+				bytesSkipped += bytesSkippedInRegion;
+			}
+			return bytesSkipped;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return hasRemainingBytes() ? region.remaining() : 0;
+		}
+
+		private boolean hasRemainingBytes() throws IOException {
+			if (closed)
+				throw new IOException("Stream has been already closed");
+			while (!region.hasRemaining() && regionIndex + 1 < mappedFile.regions.length)
+				region = mappedFile.regions[++regionIndex].duplicate();
+			return region.hasRemaining();
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				mappedFile.release();
+			}
+		}
+	}
+}
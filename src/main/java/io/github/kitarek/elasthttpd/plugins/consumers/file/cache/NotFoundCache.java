@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cache;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.Weigher;
+import io.github.kitarek.elasthttpd.commons.WeightedLruCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileChangeListener;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Bounded cache of request paths known to be missing together with the already rendered body of their 404
+ * responses, so repeated requests for them need neither mapping to local path nor any filesystem access.
+ * The total (estimated) memory taken by entries is limited and the least recently requested paths are evicted
+ * first, so requests for random paths cannot make the cache grow without limit.
+ *
+ * Entries are never revalidated against the filesystem - the cache needs to be notified about changes (i.e. by
+ * {@link io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileSystemChangeWatcher} and by consumers
+ * writing files). A change of file forgets the file itself, all missing paths below it and all missing paths
+ * above it, as creating a file creates its parent directories too. Missing paths are indexed in sorted order, so a
+ * change looks up only its own ancestors and the range of paths below it instead of scanning all entries.
+ */
+public class NotFoundCache implements FileChangeListener {
+
+	public static final int MAXIMUM_CACHED_REQUEST_PATH_LENGTH = 2048;
+	public static final int MAXIMUM_CACHED_MESSAGE_LENGTH = 4096;
+	private static final int ENTRY_OVERHEAD_IN_BYTES = 128;
+	private final WeightedLruCache<String, NotFoundEntry> cache;
+	private final Object invalidationLock = new Object();
+	// guarded by invalidationLock, as entries are put, removed and evicted only while holding it
+	private final TreeMap<String, Set<String>> requestPathsByMissingPath = new TreeMap<String, Set<String>>();
+	private long invalidationCount;
+
+	/**
+	 * Create cache
+	 *
+	 * @param maximumCacheSizeInBytes positive limit of total estimated memory taken by entries
+	 */
+	public NotFoundCache(long maximumCacheSizeInBytes) {
+		isTrue(maximumCacheSizeInBytes > 0, "Maximum size of cache must be positive");
+		this.cache = new WeightedLruCache<String, NotFoundEntry>(maximumCacheSizeInBytes,
+				new Weigher<NotFoundEntry>() {
+					public long weigh(NotFoundEntry value) {
+						return value.getWeight();
+					}
+				}) {
+			@Override
+			protected void onRemoval(NotFoundEntry value) {
+				unindex(value);
+			}
+		};
+	}
+
+	/**
+	 * Get body of 404 response for request path known to be missing
+	 *
+	 * @param requestPath not null request path (without query)
+	 * @return optional body of response; not present if the path is not known to be missing
+	 */
+	public Optional<byte[]> getNotFoundMessage(String requestPath) {
+		final Optional<NotFoundEntry> optionalEntry = cache.get(notNull(requestPath, "Request path cannot be null"));
+		return optionalEntry.isPresent() ? Optional.present(optionalEntry.get().message) : Optional.<byte[]>empty();
+	}
+
+	/**
+	 * @return current number of invalidations that needs to be passed to
+	 * {@link #rememberNotFound(String, String, byte[], long)} to detect changes made in the meantime
+	 */
+	public long getInvalidationCount() {
+		synchronized (invalidationLock) {
+			return invalidationCount;
+		}
+	}
+
+	/**
+	 * Remember request path as missing unless it is too long or any file was changed since the request started
+	 *
+	 * @param requestPath not null request path (without query)
+	 * @param absolutePath not null absolute local path to which request path is mapped
+	 * @param message not null body of 404 response
+	 * @param invalidationCountBeforeRequest number of invalidations read before the path was looked up
+	 * @return true if request path is remembered
+	 */
+	public boolean rememberNotFound(String requestPath, String absolutePath, byte[] message,
+									long invalidationCountBeforeRequest) {
+		notNull(requestPath, "Request path cannot be null");
+		notNull(absolutePath, "Absolute path cannot be null");
+		notNull(message, "Message cannot be null");
+		if (requestPath.length() > MAXIMUM_CACHED_REQUEST_PATH_LENGTH || message.length > MAXIMUM_CACHED_MESSAGE_LENGTH)
+			return false;
+		synchronized (invalidationLock) {
+			if (invalidationCount != invalidationCountBeforeRequest ||
+					!cache.put(requestPath, new NotFoundEntry(requestPath, absolutePath, message)))
+				return false;
+			index(requestPath, absolutePath);
+			return true;
+		}
+	}
+
+	public void fileChanged(File file) {
+		final String changedPath = notNull(file, "File cannot be null").getAbsolutePath();
+		final String changedDirectoryContentPrefix = changedPath + File.separator;
+		final String changedDirectoryContentEnd = changedPath + (char) (File.separatorChar + 1);
+		synchronized (invalidationLock) {
+			invalidationCount++;
+			for (File path = new File(changedPath); path != null; path = path.getParentFile())
+				forgetMissingPath(path.getPath());
+			final List<String> missingPathsBelow = new ArrayList<String>(requestPathsByMissingPath.subMap(
+					changedDirectoryContentPrefix, changedDirectoryContentEnd).keySet());
+			for (String missingPath : missingPathsBelow)
+				forgetMissingPath(missingPath);
+		}
+	}
+
+	private void forgetMissingPath(String missingPath) {
+		final Set<String> requestPaths = requestPathsByMissingPath.get(missingPath);
+		if (requestPaths != null)
+			for (String requestPath : new ArrayList<String>(requestPaths))
+				cache.remove(requestPath);
+	}
+
+	private void index(String requestPath, String absolutePath) {
+		Set<String> requestPaths = requestPathsByMissingPath.get(absolutePath);
+		if (requestPaths == null) {
+			requestPaths = new HashSet<String>();
+			requestPathsByMissingPath.put(absolutePath, requestPaths);
+		}
+		requestPaths.add(requestPath);
+	}
+
+	private void unindex(NotFoundEntry entry) {
+		final Set<String> requestPaths = requestPathsByMissingPath.get(entry.absolutePath);
+		if (requestPaths != null && requestPaths.remove(entry.requestPath) && requestPaths.isEmpty())
+			requestPathsByMissingPath.remove(entry.absolutePath);
+	}
+
+	public void allFilesChanged() {
+		synchronized (invalidationLock) {
+			invalidationCount++;
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return the underlying cache of missing paths (i.e. for checking its statistics)
+	 */
+	public WeightedLruCache<String, ?> getCache() {
+		return cache;
+	}
+
+	private static class NotFoundEntry {
+		private final String requestPath;
+		private final String absolutePath;
+		private final byte[] message;
+		private final long weight;
+
+		private NotFoundEntry(String requestPath, String absolutePath, byte[] message) {
+			this.requestPath = requestPath;
+			this.absolutePath = absolutePath;
+			this.message = message;
+			this.weight = ENTRY_OVERHEAD_IN_BYTES + 2L * (requestPath.length() + absolutePath.length()) +
+					message.length;
+		}
+
+		private long getWeight() {
+			return weight;
+		}
+	}
+}
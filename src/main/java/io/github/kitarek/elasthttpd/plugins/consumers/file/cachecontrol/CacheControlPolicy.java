@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol;
+
+import io.github.kitarek.elasthttpd.commons.HttpDates;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+/**
+ * Immutable caching policy of files sent to clients expressed as Cache-Control directives and the equivalent Expires
+ * date (for HTTP/1.0 caches). Header values are prepared once; the Expires date is formatted at most once a second.
+ */
+public class CacheControlPolicy {
+
+	public static final long MAXIMUM_MAX_AGE_IN_SECONDS = Integer.MAX_VALUE;
+	private static final String NO_CACHE_DIRECTIVE = "no-cache";
+	private static final String MAX_AGE_DIRECTIVE = "max-age=";
+	private static final String IMMUTABLE_DIRECTIVE = "immutable";
+	private static final String DIRECTIVE_SEPARATOR = ", ";
+	private static final String ALREADY_EXPIRED_DATE = HttpDates.formatDate(0);
+	private final long maxAgeInSeconds;
+	private final boolean noCache;
+	private final boolean immutable;
+	private final String cacheControl;
+	private volatile Expiration lastExpiration;
+
+	private CacheControlPolicy(long maxAgeInSeconds, boolean noCache, boolean immutable) {
+		this.maxAgeInSeconds = maxAgeInSeconds;
+		this.noCache = noCache;
+		this.immutable = immutable;
+		this.cacheControl = noCache
+				? NO_CACHE_DIRECTIVE
+				: MAX_AGE_DIRECTIVE + maxAgeInSeconds + (immutable ? DIRECTIVE_SEPARATOR + IMMUTABLE_DIRECTIVE : "");
+	}
+
+	/**
+	 * Allow clients and intermediate caches to reuse the file without revalidation for the given time
+	 *
+	 * @param maxAgeInSeconds non-negative time (not greater than {@link #MAXIMUM_MAX_AGE_IN_SECONDS})
+	 * @return not null policy
+	 */
+	public static CacheControlPolicy maxAge(long maxAgeInSeconds) {
+		isTrue(maxAgeInSeconds >= 0 && maxAgeInSeconds <= MAXIMUM_MAX_AGE_IN_SECONDS,
+				"Max age needs to be between 0 and %d seconds", MAXIMUM_MAX_AGE_IN_SECONDS);
+		return new CacheControlPolicy(maxAgeInSeconds, false, false);
+	}
+
+	/**
+	 * Allow clients and intermediate caches to store the file but require revalidation before every reuse
+	 *
+	 * @return not null policy
+	 */
+	public static CacheControlPolicy noCache() {
+		return new CacheControlPolicy(0, true, false);
+	}
+
+	/**
+	 * Mark files as never changing during their max age (i.e. with version or hash in name), so clients do not
+	 * revalidate them even when user reloads the page.
+	 *
+	 * @return not null new policy with the same max age
+	 */
+	public CacheControlPolicy immutable() {
+		isTrue(!noCache, "Files that need revalidation cannot be immutable");
+		return new CacheControlPolicy(maxAgeInSeconds, false, true);
+	}
+
+	/**
+	 * @return not null value of Cache-Control header
+	 */
+	public String getCacheControl() {
+		return cacheControl;
+	}
+
+	/**
+	 * @param nowInMilliseconds current time since the epoch
+	 * @return not null value of Expires header
+	 */
+	public String getExpires(long nowInMilliseconds) {
+		if (noCache)
+			return ALREADY_EXPIRED_DATE;
+		final long nowInSeconds = TimeUnit.MILLISECONDS.toSeconds(nowInMilliseconds);
+		final Expiration expiration = lastExpiration;
+		if (expiration != null && expiration.nowInSeconds == nowInSeconds)
+			return expiration.expires;
+		final Expiration newExpiration = new Expiration(nowInSeconds,
+				HttpDates.formatDate(TimeUnit.SECONDS.toMillis(nowInSeconds + maxAgeInSeconds)));
+		lastExpiration = newExpiration;
+		return newExpiration.expires;
+	}
+
+	private static class Expiration {
+		private final long nowInSeconds;
+		private final String expires;
+
+		private Expiration(long nowInSeconds, String expires) {
+			this.nowInSeconds = nowInSeconds;
+			this.expires = expires;
+		}
+	}
+}
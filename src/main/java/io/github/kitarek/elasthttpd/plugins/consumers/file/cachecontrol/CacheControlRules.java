@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.optional;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableMap;
+import static org.apache.commons.lang3.StringUtils.substringBefore;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Immutable rules that choose {@link CacheControlPolicy} of a file by its request path or MIME type. Adding a rule
+ * (i.e. by {@link #withPathPattern(String, CacheControlPolicy)}) creates new rules.
+ *
+ * Path patterns are either exact request paths or contain a single '*' that matches any characters (including '/'),
+ * i.e. '*.js', '/static/*' or '/img/*.png'. Each pattern is compiled into its prefix and suffix, so matching is
+ * a comparison of both ends of the path without any backtracking. Path rules are checked in the order they were
+ * added and the first matching one wins. When no path rule matches, the policy is looked up by the exact MIME type
+ * and then by its 'type/*' wildcard (i.e. 'image/*').
+ */
+public class CacheControlRules {
+
+	private static final char WILDCARD = '*';
+	private static final char PATH_SEPARATOR = '/';
+	private static final String ANY_SUBTYPE = "/*";
+	private static final String MIME_TYPE_PARAMETERS_SEPARATOR = ";";
+	private static final CacheControlRules NO_RULES =
+			new CacheControlRules(new ArrayList<PathRule>(), new HashMap<String, CacheControlPolicy>());
+
+	private final List<PathRule> pathRules;
+	private final Map<String, CacheControlPolicy> policiesByMimeType;
+
+	private CacheControlRules(List<PathRule> pathRules, Map<String, CacheControlPolicy> policiesByMimeType) {
+		this.pathRules = unmodifiableList(pathRules);
+		this.policiesByMimeType = unmodifiableMap(policiesByMimeType);
+	}
+
+	/**
+	 * @return not null rules that never choose any policy
+	 */
+	public static CacheControlRules noRules() {
+		return NO_RULES;
+	}
+
+	/**
+	 * Create new rules with all rules of these ones and the given path rule (which replaces the rule of the same
+	 * pattern keeping its position).
+	 *
+	 * @param pathPattern not null exact request path or pattern with a single '*' that starts with '/' or '*'
+	 * @param policy not null
+	 * @return not null new rules
+	 */
+	public CacheControlRules withPathPattern(String pathPattern, CacheControlPolicy policy) {
+		final PathRule newPathRule = new PathRule(notNull(pathPattern, "Path pattern cannot be null"),
+				notNull(policy, "Cache control policy cannot be null"));
+		final List<PathRule> newPathRules = new ArrayList<PathRule>(pathRules);
+		final int existingRuleIndex = indexOfPathRule(pathPattern);
+		if (existingRuleIndex >= 0)
+			newPathRules.set(existingRuleIndex, newPathRule);
+		else
+			newPathRules.add(newPathRule);
+		return new CacheControlRules(newPathRules, new HashMap<String, CacheControlPolicy>(policiesByMimeType));
+	}
+
+	private int indexOfPathRule(String pathPattern) {
+		for (int i = 0; i < pathRules.size(); i++)
+			if (pathRules.get(i).pattern.equals(pathPattern))
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Create new rules with all rules of these ones and the given MIME type rule (which replaces the existing rule
+	 * for the same MIME type).
+	 *
+	 * @param mimeType not null MIME type in form of 'type/subtype' or 'type/*' (case is ignored)
+	 * @param policy not null
+	 * @return not null new rules
+	 */
+	public CacheControlRules withMimeType(String mimeType, CacheControlPolicy policy) {
+		final String normalizedMimeType = normalizeMimeType(notNull(mimeType, "MIME type cannot be null"));
+		isTrue(normalizedMimeType.indexOf(PATH_SEPARATOR) > 0,
+				"MIME type needs to be in form of 'type/subtype' or 'type/*': %s", mimeType);
+		final Map<String, CacheControlPolicy> newPoliciesByMimeType =
+				new HashMap<String, CacheControlPolicy>(policiesByMimeType);
+		newPoliciesByMimeType.put(normalizedMimeType, notNull(policy, "Cache control policy cannot be null"));
+		return new CacheControlRules(new ArrayList<PathRule>(pathRules), newPoliciesByMimeType);
+	}
+
+	private static String normalizeMimeType(String mimeType) {
+		return substringBefore(mimeType, MIME_TYPE_PARAMETERS_SEPARATOR).trim().toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * @return true when there is no rule at all
+	 */
+	public boolean isEmpty() {
+		return pathRules.isEmpty() && policiesByMimeType.isEmpty();
+	}
+
+	/**
+	 * Choose policy of a file
+	 *
+	 * @param requestPath not null request path of file without query string
+	 * @param optionalMimeType not null optional MIME type of file (parameters are ignored)
+	 * @return optional policy; not present when no rule matches
+	 */
+	public Optional<CacheControlPolicy> policyFor(String requestPath, Optional<String> optionalMimeType) {
+		notNull(requestPath, "Request path cannot be null");
+		notNull(optionalMimeType, "Optional MIME type cannot be null");
+		for (PathRule pathRule : pathRules)
+			if (pathRule.matches(requestPath))
+				return Optional.present(pathRule.policy);
+		if (optionalMimeType.isNotPresent() || policiesByMimeType.isEmpty())
+			return Optional.empty();
+		final String mimeType = normalizeMimeType(optionalMimeType.get());
+		final CacheControlPolicy policy = policiesByMimeType.get(mimeType);
+		return optional(policy != null
+				? policy
+				: policiesByMimeType.get(substringBefore(mimeType, String.valueOf(PATH_SEPARATOR)) + ANY_SUBTYPE));
+	}
+
+	private static class PathRule {
+		private final String pattern;
+		private final String prefix;
+		private final String suffix;
+		private final boolean wildcard;
+		private final CacheControlPolicy policy;
+
+		private PathRule(String pattern, CacheControlPolicy policy) {
+			final int wildcardIndex = pattern.indexOf(WILDCARD);
+			isTrue(pattern.length() > 0 && (pattern.charAt(0) == PATH_SEPARATOR || wildcardIndex == 0),
+					"Path pattern needs to start with '/' or '*': %s", pattern);
+			isTrue(wildcardIndex == pattern.lastIndexOf(WILDCARD),
+					"Path pattern can contain at most one '*': %s", pattern);
+			this.pattern = pattern;
+			this.wildcard = wildcardIndex >= 0;
+			this.prefix = wildcard ? pattern.substring(0, wildcardIndex) : pattern;
+			this.suffix = wildcard ? pattern.substring(wildcardIndex + 1) : "";
+			this.policy = policy;
+		}
+
+		private boolean matches(String requestPath) {
+			if (!wildcard)
+				return requestPath.equals(prefix);
+			return requestPath.length() >= prefix.length() + suffix.length() && requestPath.startsWith(prefix) &&
+					requestPath.endsWith(suffix);
+		}
+	}
+}
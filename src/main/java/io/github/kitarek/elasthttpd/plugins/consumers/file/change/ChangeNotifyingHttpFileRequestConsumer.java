@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.change;
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+
+import java.io.File;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Decorates consumer that modifies files (i.e. write or delete one) and notifies listener about the requested file
+ * after every request - successful or not, as even a failed request could have changed the file partially.
+ */
+public class ChangeNotifyingHttpFileRequestConsumer implements HttpFileRequestConsumer {
+
+	private final HttpFileRequestConsumer decoratedConsumer;
+	private final FileChangeListener listener;
+
+	public ChangeNotifyingHttpFileRequestConsumer(HttpFileRequestConsumer decoratedConsumer,
+												  FileChangeListener listener) {
+		this.decoratedConsumer = notNull(decoratedConsumer, "Decorated file request consumer cannot be null");
+		this.listener = notNull(listener, "File change listener cannot be null");
+	}
+
+	public void consumeFileRequest(HttpFileRequest fileRequest) {
+		notNull(fileRequest, "File request cannot be null");
+		try {
+			decoratedConsumer.consumeFileRequest(fileRequest);
+		} finally {
+			listener.fileChanged(new File(fileRequest.mapper().mapUriRequestPath(
+					fileRequest.request().getRequestLine().getUri())));
+		}
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.change;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Passes every change notification to all listeners in the given order.
+ */
+public class CompositeFileChangeListener implements FileChangeListener {
+
+	private final List<FileChangeListener> listeners;
+
+	/**
+	 * Create composite listener
+	 *
+	 * @param listeners not null and not empty list of listeners
+	 */
+	public CompositeFileChangeListener(List<FileChangeListener> listeners) {
+		notEmpty(noNullElements(notNull(listeners, "Listeners cannot be null")), "At least one listener is needed");
+		this.listeners = new ArrayList<FileChangeListener>(listeners);
+	}
+
+	public void fileChanged(File file) {
+		for (FileChangeListener listener : listeners)
+			listener.fileChanged(file);
+	}
+
+	public void allFilesChanged() {
+		for (FileChangeListener listener : listeners)
+			listener.allFilesChanged();
+	}
+}
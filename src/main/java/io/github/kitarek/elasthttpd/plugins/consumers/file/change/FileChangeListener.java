@@ -0,0 +1,39 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.change;
+
+import java.io.File;
+
+/**
+ * Gets notified about changes of served files so anything that was cached for them can be invalidated.
+ * The implementation needs to be thread-safe.
+ */
+public interface FileChangeListener {
+
+	/**
+	 * The file or directory (together with its whole content) was created, modified or deleted.
+	 *
+	 * @param file not null changed file or directory
+	 */
+	void fileChanged(File file);
+
+	/**
+	 * Any file could have been changed (i.e. some change notifications were lost).
+	 */
+	void allFilesChanged();
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.change;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.String.format;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Watches the whole directory tree using {@link WatchService} in a background daemon thread and notifies listener
+ * about every created, modified or deleted file or directory. Newly created directories are watched as well.
+ * When the watch service loses events all files are reported as changed.
+ */
+public class FileSystemChangeWatcher implements Closeable {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(FileSystemChangeWatcher.class);
+	public static final String WATCHER_THREAD_NAME = "elasthttpd-file-watcher";
+	private final Path rootDirectory;
+	private final FileChangeListener listener;
+	private final Map<WatchKey, Path> watchedDirectories = new ConcurrentHashMap<WatchKey, Path>();
+	private WatchService watchService;
+
+	/**
+	 * Create watcher
+	 *
+	 * @param rootDirectory not null existing directory watched together with all its subdirectories
+	 * @param listener not null listener of changes
+	 */
+	public FileSystemChangeWatcher(File rootDirectory, FileChangeListener listener) {
+		notNull(rootDirectory, "Root directory cannot be null");
+		isTrue(rootDirectory.isDirectory(), "Root directory needs to be an existing directory: %s", rootDirectory);
+		this.rootDirectory = rootDirectory.toPath().toAbsolutePath();
+		this.listener = notNull(listener, "File change listener cannot be null");
+	}
+
+	/**
+	 * Register the directory tree and start watching it in a background daemon thread.
+	 *
+	 * @throws IOException when the watch service cannot be created or directories cannot be registered
+	 */
+	public synchronized void startWatching() throws IOException {
+		isTrue(watchService == null, "Watcher has been already started");
+		watchService = FileSystems.getDefault().newWatchService();
+		registerDirectoryTree(rootDirectory);
+		final Thread watcherThread = new Thread(new Runnable() {
+			public void run() {
+				watchForChanges();
+			}
+		}, WATCHER_THREAD_NAME);
+		watcherThread.setDaemon(true);
+		watcherThread.start();
+	}
+
+	/**
+	 * Stop watching and release the watch service. No notifications are sent afterwards.
+	 */
+	public synchronized void stopWatching() {
+		if (watchService == null)
+			return;
+		try {
+			watchService.close();
+		} catch (IOException e) {
+			LOGGER.warn("Cannot close the watch service", e);
+		}
+	}
+
+	/**
+	 * The same as {@link #stopWatching()}
+	 */
+	public void close() {
+		stopWatching();
+	}
+
+	private void registerDirectoryTree(Path directory) throws IOException {
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+					throws IOException {
+				watchedDirectories.put(directory.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY),
+						directory);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFileFailed(Path file, IOException e) {
+				LOGGER.warn(format("Cannot watch the directory: %s", file), e);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+	private void watchForChanges() {
+		try {
+			while (true)
+				processEvents(watchService.take());
+		} catch (ClosedWatchServiceException e) {
+			LOGGER.debug("Watch service has been closed");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void processEvents(WatchKey watchKey) {
+		final Path directory = watchedDirectories.get(watchKey);
+		for (WatchEvent<?> event : watchKey.pollEvents())
+			if (event.kind() == OVERFLOW || directory == null)
+				listener.allFilesChanged();
+			else
+				processEvent(directory.resolve((Path) event.context()), event.kind());
+		if (!watchKey.reset())
+			watchedDirectories.remove(watchKey);
+	}
+
+	private void processEvent(Path changedPath, WatchEvent.Kind<?> kind) {
+		if (kind == ENTRY_CREATE && Files.isDirectory(changedPath))
+			tryRegisterDirectoryTree(changedPath);
+		listener.fileChanged(changedPath.toFile());
+	}
+
+	private void tryRegisterDirectoryTree(Path directory) {
+		try {
+			registerDirectoryTree(directory);
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot watch the new directory: %s", directory), e);
+			listener.allFilesChanged();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.conditional;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.kitarek.elasthttpd.commons.HttpDates.parseDate;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult.NOT_MODIFIED;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult.PRECONDITION_FAILED;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult.PROCEED;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.IF_MATCH;
+import static org.apache.http.HttpHeaders.IF_MODIFIED_SINCE;
+import static org.apache.http.HttpHeaders.IF_NONE_MATCH;
+import static org.apache.http.HttpHeaders.IF_UNMODIFIED_SINCE;
+
+/**
+ * Evaluates If-Match, If-Unmodified-Since, If-None-Match and If-Modified-Since request headers against validators
+ * of an existing file in the order defined by RFC 7232 section 6. Only validators are needed, so the evaluation
+ * never touches file content. Dates are compared with one second precision as this is the precision of HTTP dates.
+ */
+public class ConditionalRequestEvaluator {
+
+	private static final String ANY_ENTITY_TAG = "*";
+	private static final String WEAK_INDICATOR = "W/";
+	private static final char QUOTE = '"';
+	private static final char LIST_SEPARATOR = ',';
+	private static final long MILLISECONDS_IN_SECOND = 1000;
+
+	/**
+	 * Evaluate preconditions of request
+	 *
+	 * @param request not null request
+	 * @param validators not null validators of current version of requested file
+	 * @return not null result of evaluation
+	 */
+	public ConditionalRequestResult evaluate(HttpRequest request, FileValidators validators) {
+		notNull(request, "HTTP request cannot be null");
+		notNull(validators, "File validators cannot be null");
+		if (request.containsHeader(IF_MATCH)) {
+			if (!matchesAny(request.getHeaders(IF_MATCH), validators, true))
+				return PRECONDITION_FAILED;
+		} else if (isModifiedSince(request, IF_UNMODIFIED_SINCE, validators)) {
+			return PRECONDITION_FAILED;
+		}
+		if (request.containsHeader(IF_NONE_MATCH)) {
+			if (matchesAny(request.getHeaders(IF_NONE_MATCH), validators, false))
+				return isRetrieval(request) ? NOT_MODIFIED : PRECONDITION_FAILED;
+		} else if (isNotModifiedSince(request, validators) && isRetrieval(request)) {
+			return NOT_MODIFIED;
+		}
+		return PROCEED;
+	}
+
+	/**
+	 * Find entity tag of current file version (or of its variant) that is listed in If-None-Match header, so
+	 * Not Modified response carries the tag of the variant which client already has
+	 *
+	 * @param request not null request
+	 * @param validators not null validators of current version of requested file
+	 * @return optional strong entity tag with quotes; not present when none of listed tags (apart from "*") matches
+	 */
+	public Optional<String> findMatchedEntityTag(HttpRequest request, FileValidators validators) {
+		notNull(request, "HTTP request cannot be null");
+		notNull(validators, "File validators cannot be null");
+		for (Header header : request.getHeaders(IF_NONE_MATCH))
+			for (String entityTag : splitEntityTags(header.getValue())) {
+				final Optional<String> optionalOpaqueTag = extractOpaqueTag(entityTag, false);
+				if (optionalOpaqueTag.isPresent() && validators.matchesOpaqueTag(optionalOpaqueTag.get()))
+					return Optional.present(QUOTE + optionalOpaqueTag.get() + QUOTE);
+			}
+		return Optional.empty();
+	}
+
+	private boolean isRetrieval(HttpRequest request) {
+		final String method = request.getRequestLine().getMethod();
+		return "GET".equalsIgnoreCase(method) || "HEAD".equalsIgnoreCase(method);
+	}
+
+	private boolean isModifiedSince(HttpRequest request, String headerName, FileValidators validators) {
+		final Optional<Long> optionalDate = parseDateHeader(request, headerName);
+		return optionalDate.isPresent() && toSeconds(validators.getLastModified()) > toSeconds(optionalDate.get());
+	}
+
+	private boolean isNotModifiedSince(HttpRequest request, FileValidators validators) {
+		final Optional<Long> optionalDate = parseDateHeader(request, IF_MODIFIED_SINCE);
+		return optionalDate.isPresent() && optionalDate.get() <= System.currentTimeMillis() &&
+				toSeconds(validators.getLastModified()) <= toSeconds(optionalDate.get());
+	}
+
+	private Optional<Long> parseDateHeader(HttpRequest request, String headerName) {
+		final Header header = request.getFirstHeader(headerName);
+		return header == null ? Optional.<Long>empty() : parseDate(header.getValue());
+	}
+
+	private static long toSeconds(long timeInMilliseconds) {
+		return timeInMilliseconds / MILLISECONDS_IN_SECOND;
+	}
+
+	private boolean matchesAny(Header[] headers, FileValidators validators, boolean strongComparison) {
+		for (Header header : headers)
+			for (String entityTag : splitEntityTags(header.getValue()))
+				if (matches(entityTag, validators, strongComparison))
+					return true;
+		return false;
+	}
+
+	private boolean matches(String entityTag, FileValidators validators, boolean strongComparison) {
+		if (ANY_ENTITY_TAG.equals(entityTag))
+			return true;
+		final Optional<String> optionalOpaqueTag = extractOpaqueTag(entityTag, strongComparison);
+		return optionalOpaqueTag.isPresent() && validators.matchesOpaqueTag(optionalOpaqueTag.get());
+	}
+
+	private Optional<String> extractOpaqueTag(String entityTag, boolean strongComparison) {
+		final boolean weak = entityTag.startsWith(WEAK_INDICATOR);
+		if (weak && strongComparison)
+			return Optional.empty();
+		final String quotedTag = weak ? entityTag.substring(WEAK_INDICATOR.length()) : entityTag;
+		return quotedTag.length() >= 2 && quotedTag.charAt(0) == QUOTE &&
+				quotedTag.charAt(quotedTag.length() - 1) == QUOTE
+				? Optional.present(quotedTag.substring(1, quotedTag.length() - 1))
+				: Optional.<String>empty();
+	}
+
+	private List<String> splitEntityTags(String value) {
+		final List<String> entityTags = new ArrayList<String>();
+		if (value == null)
+			return entityTags;
+		boolean quoted = false;
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			final char character = value.charAt(i);
+			if (character == QUOTE) {
+				quoted = !quoted;
+			} else if (character == LIST_SEPARATOR && !quoted) {
+				addEntityTag(entityTags, value.substring(start, i));
+				start = i + 1;
+			}
+		}
+		addEntityTag(entityTags, value.substring(start));
+		return entityTags;
+	}
+
+	private void addEntityTag(List<String> entityTags, String entityTag) {
+		final String trimmedTag = entityTag.trim();
+		if (trimmedTag.length() > 0)
+			entityTags.add(trimmedTag);
+	}
+}
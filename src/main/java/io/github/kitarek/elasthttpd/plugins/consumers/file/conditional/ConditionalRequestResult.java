@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.conditional;
+
+/**
+ * Outcome of evaluation of conditional request headers
+ */
+public enum ConditionalRequestResult {
+	/**
+	 * All preconditions are met (or there are none) so the request should be processed as usual
+	 */
+	PROCEED,
+	/**
+	 * Client already has the current version of resource and should be answered with 304 Not Modified
+	 */
+	NOT_MODIFIED,
+	/**
+	 * Some precondition is not met and client should be answered with 412 Precondition Failed
+	 */
+	PRECONDITION_FAILED
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.conditional;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.Weigher;
+import io.github.kitarek.elasthttpd.commons.WeightedLruCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStore;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigests;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+import static java.lang.String.format;
+
+/**
+ * Generates entity tags from SHA-256 hash of file content, so the tag does not change when file is touched or
+ * copied to another host without changing its content. Hashes are remembered for the path, length and modification
+ * time of file so each file version is read only once. A hash stored with the file by {@link ContentDigestStore}
+ * (i.e. computed while the file was uploaded) is used without reading the file at all. When the file cannot be read
+ * the tag is generated from metadata of file.
+ */
+public class ContentHashEntityTagGenerator implements EntityTagGenerator {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(ContentHashEntityTagGenerator.class);
+	public static final String HASH_ALGORITHM = ContentDigestStore.DIGEST_ALGORITHM;
+	public static final int REMEMBERED_HASHES = 4096;
+	private static final int HASH_PREFIX_LENGTH_IN_BYTES = 16;
+	private final EntityTagGenerator fallbackGenerator = new MetadataEntityTagGenerator();
+	private final ContentDigestStore contentDigestStore = new ContentDigestStore();
+	private final WeightedLruCache<HashedFileKey, String> rememberedHashes =
+			new WeightedLruCache<HashedFileKey, String>(REMEMBERED_HASHES, new Weigher<String>() {
+				public long weigh(String value) {
+					return 1;
+				}
+			});
+
+	public String generateEntityTag(File file, long length, long lastModified) {
+		final HashedFileKey key = new HashedFileKey(file.getAbsolutePath(), length, lastModified);
+		final Optional<String> optionalHash = rememberedHashes.get(key);
+		if (optionalHash.isPresent())
+			return optionalHash.get();
+		try {
+			final Optional<byte[]> optionalStoredDigest = contentDigestStore.load(file, length, lastModified);
+			final byte[] digest = optionalStoredDigest.isPresent()
+					? optionalStoredDigest.get() : ContentDigests.computeDigest(file);
+			final String hash = ContentDigests.toHex(digest, HASH_PREFIX_LENGTH_IN_BYTES);
+			rememberedHashes.put(key, hash);
+			return hash;
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot hash content of file %s. Its metadata is used instead", file), e);
+			return fallbackGenerator.generateEntityTag(file, length, lastModified);
+		}
+	}
+
+	private static class HashedFileKey {
+		private final String absolutePath;
+		private final long length;
+		private final long lastModified;
+
+		private HashedFileKey(String absolutePath, long length, long lastModified) {
+			this.absolutePath = absolutePath;
+			this.length = length;
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			HashedFileKey that = (HashedFileKey) o;
+
+			return length == that.length && lastModified == that.lastModified &&
+					absolutePath.equals(that.absolutePath);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = absolutePath.hashCode();
+			result = 31 * result + (int) (length ^ (length >>> 32));
+			result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+			return result;
+		}
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.conditional;
+
+import java.io.File;
+
+/**
+ * Generates strong entity tags of files. The implementation needs to be thread-safe.
+ */
+public interface EntityTagGenerator {
+
+	/**
+	 * Generate entity tag of the current content of file
+	 *
+	 * @param file not null existing and readable file
+	 * @param length length of file in bytes
+	 * @param lastModified modification time of file in milliseconds since the epoch
+	 * @return not null opaque tag (without quotes) that changes whenever the content of file changes
+	 */
+	String generateEntityTag(File file, long length, long lastModified);
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.conditional;
+
+import io.github.kitarek.elasthttpd.server.compression.ContentCoding;
+
+import static io.github.kitarek.elasthttpd.commons.HttpDates.formatDate;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Immutable validators of a file version: strong entity tag and modification time. Entity tag of a content coded
+ * variant of file is the entity tag of file with coding token appended, so all variants have distinct tags while
+ * each of them still identifies the same file version.
+ */
+public class FileValidators {
+
+	private static final char VARIANT_SEPARATOR = '-';
+	private static final char QUOTE = '"';
+	private final String opaqueTag;
+	private final long lastModified;
+
+	/**
+	 * Create validators of file version
+	 *
+	 * @param opaqueTag not null entity tag without quotes
+	 * @param lastModified modification time in milliseconds since the epoch
+	 */
+	public FileValidators(String opaqueTag, long lastModified) {
+		this.opaqueTag = notNull(opaqueTag, "Opaque entity tag cannot be null");
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * @return not null value of ETag header for the original file content
+	 */
+	public String getEntityTag() {
+		return QUOTE + opaqueTag + QUOTE;
+	}
+
+	/**
+	 * @param coding not null coding of variant
+	 * @return not null value of ETag header for the variant of file content encoded using a given coding
+	 */
+	public String getEntityTagOfVariant(ContentCoding coding) {
+		return QUOTE + opaqueTag + VARIANT_SEPARATOR + notNull(coding, "Content coding cannot be null").getToken() +
+				QUOTE;
+	}
+
+	/**
+	 * @return not null value of Last-Modified header
+	 */
+	public String getLastModifiedDate() {
+		return formatDate(lastModified);
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * Check if entity tag received from client identifies the current file version (or any of its variants)
+	 *
+	 * @param opaqueTag not null entity tag without quotes and weakness indicator
+	 * @return true if tag matches
+	 */
+	public boolean matchesOpaqueTag(String opaqueTag) {
+		notNull(opaqueTag, "Opaque entity tag cannot be null");
+		if (opaqueTag.equals(this.opaqueTag))
+			return true;
+		if (opaqueTag.length() <= this.opaqueTag.length() + 1 || !opaqueTag.startsWith(this.opaqueTag) ||
+				opaqueTag.charAt(this.opaqueTag.length()) != VARIANT_SEPARATOR)
+			return false;
+		return ContentCoding.fromToken(opaqueTag.substring(this.opaqueTag.length() + 1)).isPresent();
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.conditional;
+
+import java.io.File;
+
+import static java.lang.Long.toHexString;
+
+/**
+ * Generates entity tags from length and modification time of file, so no file content needs to be read.
+ */
+public class MetadataEntityTagGenerator implements EntityTagGenerator {
+
+	public String generateEntityTag(File file, long length, long lastModified) {
+		return toHexString(length) + "-" + toHexString(lastModified);
+	}
+}
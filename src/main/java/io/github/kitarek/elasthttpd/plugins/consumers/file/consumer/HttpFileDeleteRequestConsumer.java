@@ -17,23 +17,41 @@
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer;
 
+import io.github.kitarek.elasthttpd.commons.Optional;
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentAddressedStore;
 
 import java.io.File;
 
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFile;
 import static java.lang.String.format;
 import static org.apache.commons.lang3.Validate.notNull;
 
 /**
- * Request consumer that deletes local file mapped by specified URI.
+ * Request consumer that deletes local file mapped by specified URI. A file that references a blob of
+ * {@link ContentAddressedStore} releases it, so the blob is removed together with its last reference.
  */
 public class HttpFileDeleteRequestConsumer implements HttpFileRequestConsumer {
 
 	private final TemplatedHttpResponder templatedHttpResponder;
+	private final Optional<ContentAddressedStore> optionalContentAddressedStore;
 
 	public HttpFileDeleteRequestConsumer(TemplatedHttpResponder templatedHttpResponder) {
+		this(templatedHttpResponder, Optional.<ContentAddressedStore>empty());
+	}
+
+	/**
+	 * Create consumer that releases blobs referenced by deleted files
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param optionalContentAddressedStore not null optional store of deduplicated content
+	 */
+	public HttpFileDeleteRequestConsumer(TemplatedHttpResponder templatedHttpResponder,
+										 Optional<ContentAddressedStore> optionalContentAddressedStore) {
 		this.templatedHttpResponder = notNull(templatedHttpResponder, "Templated HTTP responder cannot be null");
+		this.optionalContentAddressedStore = notNull(optionalContentAddressedStore,
+				"Optional content addressed store cannot be null");
 	}
 
 	public void consumeFileRequest(HttpFileRequest fileRequest) {
@@ -44,7 +62,7 @@ public class HttpFileDeleteRequestConsumer implements HttpFileRequestConsumer {
 	}
 
 	private void doWithRequestedFile(HttpFileRequest fileRequest, File file) {
-		if (file.exists())
+		if (file.exists() && !isTemporaryFile(file))
 			doWithExistingRequestedFileResource(fileRequest, file);
 		else
 			respondThatResourceIsNotFound(fileRequest);
@@ -58,10 +76,16 @@ public class HttpFileDeleteRequestConsumer implements HttpFileRequestConsumer {
 	}
 
 	void tryDeleteFileAndRespondToRequest(HttpFileRequest fileRequest, File file) {
-		if (file.delete())
+		final Optional<byte[]> optionalReferencedContentDigest = optionalContentAddressedStore.isPresent()
+				? optionalContentAddressedStore.get().referencedDigestOf(file)
+				: Optional.<byte[]>empty();
+		if (file.delete()) {
+			if (optionalReferencedContentDigest.isPresent())
+				optionalContentAddressedStore.get().release(optionalReferencedContentDigest.get());
 			respondThatResourceIsDeleted(fileRequest);
-		else
+		} else {
 			respondThatFileWasNotDeleted(fileRequest);
+		}
 	}
 
 	private void respondThatFileWasNotDeleted(HttpFileRequest fileRequest) {
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer;
+
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestEvaluator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.EntityTagGenerator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.FileValidators;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.patch.BytePatch;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.patch.FilePatcher;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.patch.InvalidPatchException;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.patch.UnsatisfiablePatchException;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.locks.Lock;
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFile;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.CONTENT_RANGE;
+import static org.apache.http.HttpHeaders.ETAG;
+import static org.apache.http.HttpHeaders.LAST_MODIFIED;
+
+/**
+ * Consumer that updates ranges of bytes of an existing file with a PATCH request, so changing a small part of
+ * a large file does not need to upload the whole file again. The patch is either a single range declared
+ * by Content-Range header or a 'multipart/byteranges' body and it is applied by {@link FilePatcher}.
+ *
+ * Preconditions of request (i.e. If-Match with entity tag of the version known to client) are evaluated against
+ * the version of file that the patch is applied to, so concurrent patches of the same file never overwrite each
+ * other unnoticed. A patched file is answered with "No Content" and its new ETag and Last-Modified headers.
+ */
+public class HttpFilePatchRequestConsumer implements HttpFileRequestConsumer {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(HttpFilePatchRequestConsumer.class);
+	private final TemplatedHttpResponder templatedHttpResponder;
+	private final FilePatcher filePatcher;
+	private final EntityTagGenerator entityTagGenerator;
+	private final ConditionalRequestEvaluator conditionalRequestEvaluator = new ConditionalRequestEvaluator();
+
+	/**
+	 * Create consumer
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param filePatcher not null patcher of files
+	 * @param entityTagGenerator not null generator of entity tags used as validators of files
+	 */
+	public HttpFilePatchRequestConsumer(TemplatedHttpResponder templatedHttpResponder, FilePatcher filePatcher,
+										EntityTagGenerator entityTagGenerator) {
+		this.templatedHttpResponder = notNull(templatedHttpResponder, "Templated HTTP responder cannot be null");
+		this.filePatcher = notNull(filePatcher, "File patcher cannot be null");
+		this.entityTagGenerator = notNull(entityTagGenerator, "Entity tag generator cannot be null");
+	}
+
+	public void consumeFileRequest(HttpFileRequest fileRequest) {
+		notNull(fileRequest, "File request cannot be null");
+		final File file = new File(fileRequest.mapper().mapUriRequestPath(getRequestedUri(fileRequest)));
+		if (file.isDirectory())
+			templatedHttpResponder.respondWithResourceForbidden(fileRequest.response(),
+					format("The following resource is directory and cannot be patched as file: %s",
+							getRequestedUri(fileRequest)));
+		else if (!file.isFile() || isTemporaryFile(file))
+			respondThatFileHasNotBeenFound(fileRequest);
+		else if (!(fileRequest.request() instanceof HttpEntityEnclosingRequest) ||
+				((HttpEntityEnclosingRequest) fileRequest.request()).getEntity() == null)
+			templatedHttpResponder.respondWithBadRequest(fileRequest.response(),
+					format("Patch of resource needs a body: %s", getRequestedUri(fileRequest)));
+		else
+			tryToPatchFileAndRespondToRequest(fileRequest, file,
+					((HttpEntityEnclosingRequest) fileRequest.request()).getEntity());
+	}
+
+	private void tryToPatchFileAndRespondToRequest(HttpFileRequest fileRequest, File file, HttpEntity entity) {
+		final Lock lock = filePatcher.lockFor(file);
+		lock.lock();
+		try {
+			patchFileAndRespondToRequest(fileRequest, file, entity);
+		} catch (FileNotFoundException e) {
+			respondThatFileHasNotBeenFound(fileRequest);
+		} catch (InvalidPatchException e) {
+			templatedHttpResponder.respondWithBadRequest(fileRequest.response(),
+					format("Invalid patch of resource %s: %s", getRequestedUri(fileRequest), e.getMessage()));
+		} catch (UnsatisfiablePatchException e) {
+			templatedHttpResponder.respondWithRequestedRangeNotSatisfiable(fileRequest.response(), e.getMessage());
+			fileRequest.response().setHeader(CONTENT_RANGE, format("bytes */%d", file.length()));
+		} catch (IOException e) {
+			LOGGER.error(format("There was an error with patching file: %s", file.getAbsolutePath()), e);
+			templatedHttpResponder.respondWithInternalServerError(fileRequest.response(),
+					format("The patch of the resource could not be completely applied: %s",
+							getRequestedUri(fileRequest)));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void patchFileAndRespondToRequest(HttpFileRequest fileRequest, File file, HttpEntity entity)
+			throws IOException {
+		if (!file.isFile())
+			throw new FileNotFoundException(format("The file to patch does not exist: %s", file));
+		final HttpRequest request = fileRequest.request();
+		final HttpResponse response = fileRequest.response();
+		final FileValidators currentValidators = readValidators(file);
+		if (conditionalRequestEvaluator.evaluate(request, currentValidators) != ConditionalRequestResult.PROCEED) {
+			templatedHttpResponder.respondWithPreconditionFailed(response,
+					format("412: Precondition of patch is not met by resource: %s", getRequestedUri(fileRequest)));
+			response.setHeader(ETAG, currentValidators.getEntityTag());
+			return;
+		}
+		final InputStream body = entity.getContent();
+		try {
+			filePatcher.patch(file, BytePatch.fromRequest(request, body, entity.getContentLength()));
+		} finally {
+			closeTheStream(body, file);
+		}
+		final FileValidators patchedValidators = readValidators(file);
+		templatedHttpResponder.respondWithNoContentAndReasonPatched(response);
+		response.setHeader(ETAG, patchedValidators.getEntityTag());
+		response.setHeader(LAST_MODIFIED, patchedValidators.getLastModifiedDate());
+	}
+
+	private FileValidators readValidators(File file) {
+		final long lastModified = file.lastModified();
+		return new FileValidators(entityTagGenerator.generateEntityTag(file, file.length(), lastModified),
+				lastModified);
+	}
+
+	private void closeTheStream(InputStream body, File file) {
+		try {
+			body.close();
+		} catch (IOException e) {
+			LOGGER.warn(format("An unexpected error when closing the body of patch of file: %s",
+					file.getAbsolutePath()), e);
+		}
+	}
+
+	private void respondThatFileHasNotBeenFound(HttpFileRequest fileRequest) {
+		templatedHttpResponder.respondWithResourceNotFound(fileRequest.response(),
+				format("404: The requested resource to patch was not found: %s", getRequestedUri(fileRequest)));
+	}
+
+	private String getRequestedUri(HttpFileRequest fileRequest) {
+		return fileRequest.request().getRequestLine().getUri();
+	}
+}
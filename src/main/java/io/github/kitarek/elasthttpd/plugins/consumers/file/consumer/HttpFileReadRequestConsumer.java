@@ -17,13 +17,17 @@
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer;
 
+import io.github.kitarek.elasthttpd.commons.Optional;
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.HttpDirectoryRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadata;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadataProvider;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.HttpFileProducer;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
 
 import java.io.File;
 
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFile;
 import static java.lang.String.format;
 import static org.apache.commons.lang3.Validate.notNull;
 
@@ -36,6 +40,7 @@ class HttpFileReadRequestConsumer implements HttpFileRequestConsumer {
 	private final HttpFileProducer httpFileProducer;
 	private final TemplatedHttpResponder templatedHttpResponder;
 	private final HttpDirectoryRequestConsumer directoryRequestConsumer;
+	private final Optional<FileMetadataProvider> optionalFileMetadataProvider;
 
 	/**
 	 * Create instance
@@ -48,17 +53,54 @@ class HttpFileReadRequestConsumer implements HttpFileRequestConsumer {
 	public HttpFileReadRequestConsumer(HttpFileProducer httpFileProducer,
 									   TemplatedHttpResponder templatedHttpResponder,
 									   HttpDirectoryRequestConsumer directoryRequestConsumer) {
+		this(httpFileProducer, templatedHttpResponder, directoryRequestConsumer,
+				Optional.<FileMetadataProvider>empty());
+	}
+
+	/**
+	 * Create instance that takes metadata of requested files (existence, type, size etc.) from the provider and
+	 * passes it to the producer, so the filesystem is not asked about it again
+	 *
+	 * @param httpFileProducer not-null
+	 * @param templatedHttpResponder not-null
+	 * @param directoryRequestConsumer the strategy used for consuming directories to which consumption will be delegated
+	 *                                 in case of mapping resource to a directory
+	 * @param optionalFileMetadataProvider not null optional provider of metadata of requested files
+	 */
+	public HttpFileReadRequestConsumer(HttpFileProducer httpFileProducer,
+									   TemplatedHttpResponder templatedHttpResponder,
+									   HttpDirectoryRequestConsumer directoryRequestConsumer,
+									   Optional<FileMetadataProvider> optionalFileMetadataProvider) {
 		this.httpFileProducer = notNull(httpFileProducer, "HttpFileProducer constructor argument needs to be not null");
 		this.templatedHttpResponder = notNull(templatedHttpResponder,
 				"TemplatedHttpResponder constructor argument needs to be not null");
 		this.directoryRequestConsumer = notNull(directoryRequestConsumer,
 				"HttpDirectoryRequestConsumer cannot be null");
+		this.optionalFileMetadataProvider = notNull(optionalFileMetadataProvider,
+				"Optional file metadata provider cannot be null");
 	}
 
 	public void consumeFileRequest(HttpFileRequest fileRequest) {
 		final String uri = getRequestedUri(fileRequest);
 		final String absolutePath = mapUriToLocalPath(fileRequest, uri);
-		doWithRequestedFile(fileRequest, new File(absolutePath));
+		final File requestedFile = new File(absolutePath);
+		if (isTemporaryFile(requestedFile))
+			respondThatFileHasNotBeenFound(fileRequest);
+		else if (optionalFileMetadataProvider.isPresent())
+			doWithRequestedFile(fileRequest, requestedFile,
+					optionalFileMetadataProvider.get().provideMetadata(requestedFile));
+		else
+			doWithRequestedFile(fileRequest, requestedFile);
+	}
+
+	private void doWithRequestedFile(HttpFileRequest fileRequest, File requestedFile, FileMetadata metadata) {
+		if (!metadata.exists())
+			respondThatFileHasNotBeenFound(fileRequest);
+		else if (metadata.isDirectory())
+			directoryRequestConsumer.serveExistingDirectoryElement(fileRequest, requestedFile);
+		else
+			httpFileProducer.sendFileOverHttpResponse(requestedFile, metadata, fileRequest.request(),
+					fileRequest.response());
 	}
 
 	private void doWithRequestedFile(HttpFileRequest fileRequest, File requestedFile) {
@@ -72,7 +114,7 @@ class HttpFileReadRequestConsumer implements HttpFileRequestConsumer {
 		if (requestedFile.isDirectory())
 			directoryRequestConsumer.serveExistingDirectoryElement(fileRequest, requestedFile);
 		else
-			httpFileProducer.sendFileOverHttpResponse(requestedFile, fileRequest.response());
+			httpFileProducer.sendFileOverHttpResponse(requestedFile, fileRequest.request(), fileRequest.response());
 	}
 
 	private void respondThatFileHasNotBeenFound(HttpFileRequest fileRequest) {
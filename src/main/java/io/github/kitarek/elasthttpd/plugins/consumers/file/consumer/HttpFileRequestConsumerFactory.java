@@ -17,39 +17,218 @@
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer;
 
+import io.github.kitarek.elasthttpd.commons.Optional;
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.NotFoundCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.ChangeNotifyingHttpFileRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileChangeListener;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.HttpDirectoryRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadataProvider;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.patch.FilePatchMode;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.patch.FilePatcher;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.HttpFileProducer;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentAddressedStore;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.FileUploadWriter;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.PartialUploads;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
 /**
- * Creates different {@link HttpFileRequest} consumers.
+ * Creates different {@link HttpFileRequest} consumers of files of the local file system.
  */
-public class HttpFileRequestConsumerFactory {
+public class HttpFileRequestConsumerFactory implements HttpFileOperationConsumerFactory {
 
 	private final TemplatedHttpResponder templatedHttpResponder;
 	private final HttpDirectoryRequestConsumer httpDirectoryRequestConsumer;
 	private final HttpFileProducer httpFileProducer;
+	private final Optional<FileChangeListener> optionalFileChangeListener;
+	private final Optional<FileMetadataProvider> optionalFileMetadataProvider;
+	private final Optional<NotFoundCache> optionalNotFoundCache;
+	private final AtomicUploadPublisher uploadPublisher;
+	private final FilePatchMode patchMode;
+	private final Optional<ContentAddressedStore> optionalContentAddressedStore;
 
 	public HttpFileRequestConsumerFactory(TemplatedHttpResponder templatedHttpResponder,
 										  HttpDirectoryRequestConsumer httpDirectoryRequestConsumer,
 										  HttpFileProducer httpFileProducer) {
+		this(templatedHttpResponder, httpDirectoryRequestConsumer, httpFileProducer,
+				Optional.<FileChangeListener>empty());
+	}
+
+	/**
+	 * Create factory which consumers modifying files notify the listener about changes
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param httpDirectoryRequestConsumer not null
+	 * @param httpFileProducer not null
+	 * @param optionalFileChangeListener not null optional listener of files changed by consumers
+	 */
+	public HttpFileRequestConsumerFactory(TemplatedHttpResponder templatedHttpResponder,
+										  HttpDirectoryRequestConsumer httpDirectoryRequestConsumer,
+										  HttpFileProducer httpFileProducer,
+										  Optional<FileChangeListener> optionalFileChangeListener) {
+		this(templatedHttpResponder, httpDirectoryRequestConsumer, httpFileProducer, optionalFileChangeListener,
+				Optional.<FileMetadataProvider>empty());
+	}
+
+	/**
+	 * Create factory which consumers modifying files notify the listener about changes and which read consumer
+	 * takes metadata of requested files from the provider
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param httpDirectoryRequestConsumer not null
+	 * @param httpFileProducer not null
+	 * @param optionalFileChangeListener not null optional listener of files changed by consumers
+	 * @param optionalFileMetadataProvider not null optional provider of metadata of requested files
+	 */
+	public HttpFileRequestConsumerFactory(TemplatedHttpResponder templatedHttpResponder,
+										  HttpDirectoryRequestConsumer httpDirectoryRequestConsumer,
+										  HttpFileProducer httpFileProducer,
+										  Optional<FileChangeListener> optionalFileChangeListener,
+										  Optional<FileMetadataProvider> optionalFileMetadataProvider) {
+		this(templatedHttpResponder, httpDirectoryRequestConsumer, httpFileProducer, optionalFileChangeListener,
+				optionalFileMetadataProvider, Optional.<NotFoundCache>empty());
+	}
+
+	/**
+	 * Create factory which consumers modifying files notify the listener about changes, which read consumer takes
+	 * metadata of requested files from the provider and answers requests for missing paths from the cache
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param httpDirectoryRequestConsumer not null
+	 * @param httpFileProducer not null
+	 * @param optionalFileChangeListener not null optional listener of files changed by consumers
+	 * @param optionalFileMetadataProvider not null optional provider of metadata of requested files
+	 * @param optionalNotFoundCache not null optional cache of missing paths
+	 */
+	public HttpFileRequestConsumerFactory(TemplatedHttpResponder templatedHttpResponder,
+										  HttpDirectoryRequestConsumer httpDirectoryRequestConsumer,
+										  HttpFileProducer httpFileProducer,
+										  Optional<FileChangeListener> optionalFileChangeListener,
+										  Optional<FileMetadataProvider> optionalFileMetadataProvider,
+										  Optional<NotFoundCache> optionalNotFoundCache) {
+		this(templatedHttpResponder, httpDirectoryRequestConsumer, httpFileProducer, optionalFileChangeListener,
+				optionalFileMetadataProvider, optionalNotFoundCache, new AtomicUploadPublisher());
+	}
+
+	/**
+	 * Create factory which consumers modifying files notify the listener about changes, which read consumer takes
+	 * metadata of requested files from the provider and answers requests for missing paths from the cache and which
+	 * write consumer publishes uploads with the publisher
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param httpDirectoryRequestConsumer not null
+	 * @param httpFileProducer not null
+	 * @param optionalFileChangeListener not null optional listener of files changed by consumers
+	 * @param optionalFileMetadataProvider not null optional provider of metadata of requested files
+	 * @param optionalNotFoundCache not null optional cache of missing paths
+	 * @param uploadPublisher not null publisher of uploads (i.e. with configured durability)
+	 */
+	public HttpFileRequestConsumerFactory(TemplatedHttpResponder templatedHttpResponder,
+										  HttpDirectoryRequestConsumer httpDirectoryRequestConsumer,
+										  HttpFileProducer httpFileProducer,
+										  Optional<FileChangeListener> optionalFileChangeListener,
+										  Optional<FileMetadataProvider> optionalFileMetadataProvider,
+										  Optional<NotFoundCache> optionalNotFoundCache,
+										  AtomicUploadPublisher uploadPublisher) {
+		this(templatedHttpResponder, httpDirectoryRequestConsumer, httpFileProducer, optionalFileChangeListener,
+				optionalFileMetadataProvider, optionalNotFoundCache, uploadPublisher, FilePatchMode.IN_PLACE);
+	}
+
+	/**
+	 * Create factory which consumers modifying files notify the listener about changes, which read consumer takes
+	 * metadata of requested files from the provider and answers requests for missing paths from the cache, which
+	 * write consumer publishes uploads with the publisher and which patch consumer patches files in the mode
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param httpDirectoryRequestConsumer not null
+	 * @param httpFileProducer not null
+	 * @param optionalFileChangeListener not null optional listener of files changed by consumers
+	 * @param optionalFileMetadataProvider not null optional provider of metadata of requested files
+	 * @param optionalNotFoundCache not null optional cache of missing paths
+	 * @param uploadPublisher not null publisher of uploads (i.e. with configured durability)
+	 * @param patchMode not null mode of patching files
+	 */
+	public HttpFileRequestConsumerFactory(TemplatedHttpResponder templatedHttpResponder,
+										  HttpDirectoryRequestConsumer httpDirectoryRequestConsumer,
+										  HttpFileProducer httpFileProducer,
+										  Optional<FileChangeListener> optionalFileChangeListener,
+										  Optional<FileMetadataProvider> optionalFileMetadataProvider,
+										  Optional<NotFoundCache> optionalNotFoundCache,
+										  AtomicUploadPublisher uploadPublisher,
+										  FilePatchMode patchMode) {
+		this(templatedHttpResponder, httpDirectoryRequestConsumer, httpFileProducer, optionalFileChangeListener,
+				optionalFileMetadataProvider, optionalNotFoundCache, uploadPublisher, patchMode,
+				Optional.<ContentAddressedStore>empty());
+	}
+
+	/**
+	 * Create factory which consumers modifying files notify the listener about changes, which read consumer takes
+	 * metadata of requested files from the provider and answers requests for missing paths from the cache, which
+	 * write consumer publishes uploads with the publisher, which patch consumer patches files in the mode and which
+	 * consumers modifying files deduplicate their content in the store
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param httpDirectoryRequestConsumer not null
+	 * @param httpFileProducer not null
+	 * @param optionalFileChangeListener not null optional listener of files changed by consumers
+	 * @param optionalFileMetadataProvider not null optional provider of metadata of requested files
+	 * @param optionalNotFoundCache not null optional cache of missing paths
+	 * @param uploadPublisher not null publisher of uploads (i.e. with configured durability)
+	 * @param patchMode not null mode of patching files
+	 * @param optionalContentAddressedStore not null optional store of deduplicated content
+	 */
+	public HttpFileRequestConsumerFactory(TemplatedHttpResponder templatedHttpResponder,
+										  HttpDirectoryRequestConsumer httpDirectoryRequestConsumer,
+										  HttpFileProducer httpFileProducer,
+										  Optional<FileChangeListener> optionalFileChangeListener,
+										  Optional<FileMetadataProvider> optionalFileMetadataProvider,
+										  Optional<NotFoundCache> optionalNotFoundCache,
+										  AtomicUploadPublisher uploadPublisher,
+										  FilePatchMode patchMode,
+										  Optional<ContentAddressedStore> optionalContentAddressedStore) {
 		this.templatedHttpResponder = notNull(templatedHttpResponder);
 		this.httpDirectoryRequestConsumer = notNull(httpDirectoryRequestConsumer);
 		this.httpFileProducer = notNull(httpFileProducer);
+		this.optionalFileChangeListener = notNull(optionalFileChangeListener);
+		this.optionalFileMetadataProvider = notNull(optionalFileMetadataProvider);
+		this.optionalNotFoundCache = notNull(optionalNotFoundCache);
+		this.uploadPublisher = notNull(uploadPublisher);
+		this.patchMode = notNull(patchMode);
+		this.optionalContentAddressedStore = notNull(optionalContentAddressedStore);
 	}
 
 	public HttpFileRequestConsumer createConsumerForReadOperation() {
-		return new HttpFileReadRequestConsumer(httpFileProducer, templatedHttpResponder, httpDirectoryRequestConsumer);
+		final HttpFileRequestConsumer consumer = new HttpFileReadRequestConsumer(httpFileProducer,
+				templatedHttpResponder, httpDirectoryRequestConsumer, optionalFileMetadataProvider);
+		return optionalNotFoundCache.isPresent()
+				? new NotFoundCachingHttpFileRequestConsumer(consumer, optionalNotFoundCache.get(), templatedHttpResponder)
+				: consumer;
 	}
 
 	public HttpFileRequestConsumer createConsumerForWriteOperation() {
-		return new HttpFileWriteRequestConsumer(templatedHttpResponder);
+		final FileUploadWriter fileUploadWriter = new FileUploadWriter();
+		return notifyingAboutChanges(new HttpFileWriteRequestConsumer(templatedHttpResponder, fileUploadWriter,
+				uploadPublisher, new PartialUploads(fileUploadWriter, uploadPublisher),
+				optionalContentAddressedStore));
+	}
+
+	public HttpFileRequestConsumer createConsumerForPatchOperation() {
+		return notifyingAboutChanges(new HttpFilePatchRequestConsumer(templatedHttpResponder,
+				new FilePatcher(new FileUploadWriter(), uploadPublisher, patchMode, optionalContentAddressedStore),
+				httpFileProducer.getEntityTagGenerator()));
 	}
 
 	public HttpFileRequestConsumer createConsumerForDeleteOperation() {
-		return new HttpFileDeleteRequestConsumer(templatedHttpResponder);
+		return notifyingAboutChanges(new HttpFileDeleteRequestConsumer(templatedHttpResponder,
+				optionalContentAddressedStore));
+	}
+
+	private HttpFileRequestConsumer notifyingAboutChanges(HttpFileRequestConsumer consumer) {
+		return optionalFileChangeListener.isPresent()
+				? new ChangeNotifyingHttpFileRequestConsumer(consumer, optionalFileChangeListener.get())
+				: consumer;
 	}
 }
@@ -17,27 +17,62 @@
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer;
 
+import io.github.kitarek.elasthttpd.commons.Optional;
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStore;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentAddressedStore;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentRange;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.FileUploadWriter;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.PartialUploadStatus;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.PartialUploads;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.UploadDigestMismatchException;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.UploadDigests;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
 
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFile;
 import static java.lang.String.format;
 import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.CONTENT_RANGE;
+import static org.apache.http.HttpHeaders.RANGE;
 
 /**
  * Consumer that is able to write one file send in HTTP request body and declared as octet-stream.
- * The current implementation tries to write a file as soon as possible without any checksum verification into
- * destination place.
+ * The body is written by {@link FileUploadWriter} into a temporary file that is published over the destination
+ * by {@link AtomicUploadPublisher} only when the whole body has been written, so readers never see partial
+ * content and an upload that cannot be completed (i.e. the body is shorter than declared) keeps the previous
+ * version and is answered with "Internal Server Error".
+ *
+ * Digests of the body declared in Content-MD5 or Digest headers are computed by {@link UploadDigests} while the body
+ * is written, so a body that does not match them is discarded before it is published and answered with
+ * "Bad Request". SHA-256 digest of each uploaded file is stored with it by {@link ContentDigestStore}, so entity
+ * tags and digests of the file are served without reading it again.
+ *
+ * A request with Content-Range header carries only a part of file that is written by {@link PartialUploads}.
+ * It is answered with "Accepted" and Range header listing all received parts until the whole file is received
+ * (and published) - then it is answered with "Created". A request with Content-Range 'bytes *' followed by
+ * '/length' and without body only queries the received parts. Digests declared by a request with Content-Range
+ * describe only its part, which is not received when they do not match.
+ *
+ * With {@link ContentAddressedStore} a whole uploaded file becomes a link of the stored blob of its content. When
+ * the client declares SHA-256 digest of the body that is already stored, the body is only read to verify it and
+ * not written at all. The blob referenced by the replaced file is released after publication.
  *
  * Currently no respnse body is sent to client with the URL of created resource.
  */
@@ -45,9 +80,66 @@ public class HttpFileWriteRequestConsumer implements HttpFileRequestConsumer {
 
 	public static final Logger LOGGER = LoggerFactory.getLogger(HttpFileWriteRequestConsumer.class);
 	private final TemplatedHttpResponder templatedHttpResponder;
+	private final FileUploadWriter fileUploadWriter;
+	private final AtomicUploadPublisher uploadPublisher;
+	private final PartialUploads partialUploads;
+	private final Optional<ContentAddressedStore> optionalContentAddressedStore;
+	private final ContentDigestStore contentDigestStore = new ContentDigestStore();
 
 	public HttpFileWriteRequestConsumer(TemplatedHttpResponder templatedHttpResponder) {
+		this(templatedHttpResponder, new FileUploadWriter(), new AtomicUploadPublisher());
+	}
+
+	/**
+	 * Create consumer
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param fileUploadWriter not null writer of bodies of uploads
+	 * @param uploadPublisher not null publisher of written uploads
+	 */
+	public HttpFileWriteRequestConsumer(TemplatedHttpResponder templatedHttpResponder,
+										FileUploadWriter fileUploadWriter,
+										AtomicUploadPublisher uploadPublisher) {
+		this(templatedHttpResponder, fileUploadWriter, uploadPublisher,
+				new PartialUploads(fileUploadWriter, uploadPublisher));
+	}
+
+	/**
+	 * Create consumer
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param fileUploadWriter not null writer of bodies of uploads
+	 * @param uploadPublisher not null publisher of written uploads
+	 * @param partialUploads not null uploads received in parts
+	 */
+	public HttpFileWriteRequestConsumer(TemplatedHttpResponder templatedHttpResponder,
+										FileUploadWriter fileUploadWriter,
+										AtomicUploadPublisher uploadPublisher,
+										PartialUploads partialUploads) {
+		this(templatedHttpResponder, fileUploadWriter, uploadPublisher, partialUploads,
+				Optional.<ContentAddressedStore>empty());
+	}
+
+	/**
+	 * Create consumer that deduplicates whole uploaded files in the store
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param fileUploadWriter not null writer of bodies of uploads
+	 * @param uploadPublisher not null publisher of written uploads
+	 * @param partialUploads not null uploads received in parts
+	 * @param optionalContentAddressedStore not null optional store of deduplicated content
+	 */
+	public HttpFileWriteRequestConsumer(TemplatedHttpResponder templatedHttpResponder,
+										FileUploadWriter fileUploadWriter,
+										AtomicUploadPublisher uploadPublisher,
+										PartialUploads partialUploads,
+										Optional<ContentAddressedStore> optionalContentAddressedStore) {
 		this.templatedHttpResponder = notNull(templatedHttpResponder, "Templated HTTP responder cannot be null");
+		this.fileUploadWriter = notNull(fileUploadWriter, "File upload writer cannot be null");
+		this.uploadPublisher = notNull(uploadPublisher, "Upload publisher cannot be null");
+		this.partialUploads = notNull(partialUploads, "Partial uploads cannot be null");
+		this.optionalContentAddressedStore = notNull(optionalContentAddressedStore,
+				"Optional content addressed store cannot be null");
 	}
 
 	public void consumeFileRequest(HttpFileRequest fileRequest) {
@@ -58,7 +150,10 @@ public class HttpFileWriteRequestConsumer implements HttpFileRequestConsumer {
 	}
 
 	protected void doWithRequestedFile(HttpFileRequest fileRequest, File file) {
-		if (file.isDirectory())
+		if (isTemporaryFile(file))
+			templatedHttpResponder.respondWithResourceNotFound(fileRequest.response(),
+					format("Cannot find the resource or resources in requested path: %s", getRequestedUri(fileRequest)));
+		else if (file.isDirectory())
 			respondThatResourceIsForbidden(fileRequest);
 		else
 			tryToWriteFileAndRespondToRequest(fileRequest, file);
@@ -71,18 +166,238 @@ public class HttpFileWriteRequestConsumer implements HttpFileRequestConsumer {
 	}
 
 	private void tryToWriteFileAndRespondToRequest(HttpFileRequest fileRequest, File file) {
-		if (isRequestImplementingEntity(fileRequest.request()))
-			decodeRequestEntityAndWriteToFile(fileRequest, file,
-					upgradeHttpRequestToSupportEntities(fileRequest.request()));
+		final Header contentRangeHeader = fileRequest.request().getFirstHeader(CONTENT_RANGE);
+		if (contentRangeHeader == null)
+			tryToWriteWholeFileAndRespondToRequest(fileRequest, file);
 		else
-			createOrUpdateAnEmptyFile(fileRequest, file);
+			tryToWritePartOfFileAndRespondToRequest(fileRequest, file, contentRangeHeader.getValue());
+	}
+
+	private void tryToWritePartOfFileAndRespondToRequest(HttpFileRequest fileRequest, File file,
+														 String contentRangeHeaderValue) {
+		final ContentRange contentRange;
+		try {
+			contentRange = ContentRange.parse(contentRangeHeaderValue);
+		} catch (IllegalArgumentException e) {
+			respondWithBadRequest(fileRequest, format("Invalid Content-Range header: %s", e.getMessage()));
+			return;
+		}
+		if (!isDeclaredLengthOfBodyMatching(fileRequest.request(), contentRange)) {
+			respondWithBadRequest(fileRequest, format("The length of body does not match Content-Range: %s",
+					contentRange));
+			return;
+		}
+		final Optional<UploadDigests> optionalPartDigests = parseDigestsOfBody(fileRequest, false);
+		if (optionalPartDigests.isPresent())
+			writePartOfFileAndRespondToRequest(fileRequest, file, contentRange, optionalPartDigests.get());
+	}
+
+	private Optional<UploadDigests> parseDigestsOfBody(HttpFileRequest fileRequest, boolean contentDigestComputed) {
+		try {
+			return Optional.present(UploadDigests.expectedBy(fileRequest.request(), contentDigestComputed));
+		} catch (IllegalArgumentException e) {
+			respondWithBadRequest(fileRequest, format("Invalid digest of body: %s", e.getMessage()));
+			return Optional.empty();
+		}
+	}
+
+	private boolean isDeclaredLengthOfBodyMatching(HttpRequest request, ContentRange contentRange) {
+		final Optional<HttpEntity> optionalEntity = getOptionalEntity(request);
+		final long declaredLength = optionalEntity.isPresent() ? optionalEntity.get().getContentLength() : 0;
+		final long expectedLength = contentRange.getRange().isPresent() ? contentRange.getRange().get().getLength() : 0;
+		return declaredLength < 0 ? expectedLength > 0 : declaredLength == expectedLength;
 	}
 
-	private void createOrUpdateAnEmptyFile(HttpFileRequest fileRequest, File file) {
+	private void writePartOfFileAndRespondToRequest(HttpFileRequest fileRequest, File file,
+													ContentRange contentRange, UploadDigests partDigests) {
 		try {
-			createOrUpdateAnEmptyFileUnchecked(fileRequest, file);
+			respondWithStatusOfUpload(fileRequest, file, contentRange.getRange().isPresent()
+					? writePartOfFile(fileRequest, file, contentRange, partDigests)
+					: partialUploads.getStatus(file, contentRange.getCompleteLength()));
 		} catch (FileNotFoundException e) {
 			handleFileNotFoundException(fileRequest, file, e);
+		} catch (UploadDigestMismatchException e) {
+			respondThatDigestDoesNotMatch(fileRequest, e);
+		} catch (IOException e) {
+			LOGGER.error(format("There was an error with writing part %s of file: %s", contentRange,
+					file.getAbsolutePath()), e);
+			respondThatUploadHasFailed(fileRequest);
+		} catch (IllegalStateException e) {
+			templatedHttpResponder.respondWithConflict(fileRequest.response(), e.getMessage());
+		}
+	}
+
+	private PartialUploadStatus writePartOfFile(HttpFileRequest fileRequest, File file, ContentRange contentRange,
+												UploadDigests partDigests) throws IOException {
+		final InputStream body = getOptionalEntity(fileRequest.request()).get().getContent();
+		try {
+			return partialUploads.writePart(file, contentRange, body, partDigests);
+		} finally {
+			closeTheStream(body, file);
+		}
+	}
+
+	private void respondWithStatusOfUpload(HttpFileRequest fileRequest, File file, PartialUploadStatus status) {
+		if (status.isCompleted()) {
+			postprocessCreationOfFile(fileRequest, file);
+		} else {
+			templatedHttpResponder.respondThatRequestIsAccepted(fileRequest.response());
+			if (!status.getReceivedRanges().isEmpty())
+				fileRequest.response().setHeader(RANGE, status.toRangeHeaderValue());
+		}
+	}
+
+	private void tryToWriteWholeFileAndRespondToRequest(HttpFileRequest fileRequest, File file) {
+		final Optional<UploadDigests> optionalUploadDigests = parseDigestsOfBody(fileRequest, true);
+		if (optionalUploadDigests.isNotPresent())
+			return;
+		final Optional<File> optionalLinkOfStoredContent = linkStoredContent(file, optionalUploadDigests.get());
+		if (optionalLinkOfStoredContent.isPresent()) {
+			verifyAndPublishLinkOfStoredContent(fileRequest, file, optionalLinkOfStoredContent.get(),
+					optionalUploadDigests.get());
+			return;
+		}
+		final File temporaryFile;
+		try {
+			temporaryFile = uploadPublisher.createTemporaryFile(file);
+		} catch (FileNotFoundException e) {
+			handleFileNotFoundException(fileRequest, file, e);
+			return;
+		} catch (IOException e) {
+			LOGGER.error(format("Cannot create temporary file for upload of file: %s", file.getAbsolutePath()), e);
+			respondThatUploadHasFailed(fileRequest);
+			return;
+		}
+		writeAndPublishTemporaryFile(fileRequest, file, temporaryFile, optionalUploadDigests.get());
+	}
+
+	private void writeAndPublishTemporaryFile(HttpFileRequest fileRequest, File file, File temporaryFile,
+											  UploadDigests uploadDigests) {
+		if (!writeBodyOfRequest(fileRequest, temporaryFile, uploadDigests)) {
+			uploadPublisher.discard(temporaryFile);
+			respondThatUploadHasFailed(fileRequest);
+		} else if (!verifyDigests(fileRequest, uploadDigests)) {
+			uploadPublisher.discard(temporaryFile);
+		} else {
+			storeContentDigest(temporaryFile, uploadDigests);
+			publishAndRespondToRequest(fileRequest, file, deduplicate(temporaryFile, uploadDigests),
+					uploadDigests);
+		}
+	}
+
+	private Optional<File> linkStoredContent(File file, UploadDigests uploadDigests) {
+		final Optional<byte[]> optionalExpectedContentDigest = uploadDigests.getExpectedContentDigest();
+		return optionalContentAddressedStore.isPresent() && optionalExpectedContentDigest.isPresent()
+				? optionalContentAddressedStore.get().linkStoredBlob(optionalExpectedContentDigest.get(), file)
+				: Optional.<File>empty();
+	}
+
+	private void verifyAndPublishLinkOfStoredContent(HttpFileRequest fileRequest, File file, File link,
+													 UploadDigests uploadDigests) {
+		if (!digestBodyOfRequest(fileRequest, link, uploadDigests)) {
+			discard(link, uploadDigests);
+			respondThatUploadHasFailed(fileRequest);
+		} else if (!verifyDigests(fileRequest, uploadDigests)) {
+			discard(link, uploadDigests);
+		} else {
+			publishAndRespondToRequest(fileRequest, file, link, uploadDigests);
+		}
+	}
+
+	private boolean digestBodyOfRequest(HttpFileRequest fileRequest, File link, UploadDigests uploadDigests) {
+		final Optional<HttpEntity> optionalEntity = getOptionalEntity(fileRequest.request());
+		if (optionalEntity.isNotPresent())
+			return true;
+		try {
+			fileUploadWriter.digestEntity(optionalEntity.get(), uploadDigests.getMessageDigests());
+			return true;
+		} catch (IOException e) {
+			LOGGER.error(format("There was an error with reading request body of already stored file: %s",
+					link.getAbsolutePath()), e);
+			return false;
+		}
+	}
+
+	private File deduplicate(File temporaryFile, UploadDigests uploadDigests) {
+		final Optional<byte[]> optionalContentDigest = uploadDigests.getContentDigest();
+		return optionalContentAddressedStore.isPresent() && optionalContentDigest.isPresent()
+				? optionalContentAddressedStore.get().deduplicate(temporaryFile, optionalContentDigest.get())
+				: temporaryFile;
+	}
+
+	private void publishAndRespondToRequest(HttpFileRequest fileRequest, File file, File temporaryFile,
+											UploadDigests uploadDigests) {
+		final Optional<byte[]> optionalReplacedContentDigest = getReferencedContentDigest(file);
+		if (publish(temporaryFile, file)) {
+			release(optionalReplacedContentDigest);
+			postprocessCreationOfFile(fileRequest, file);
+		} else {
+			discard(temporaryFile, uploadDigests);
+			respondThatUploadHasFailed(fileRequest);
+		}
+	}
+
+	private Optional<byte[]> getReferencedContentDigest(File file) {
+		return optionalContentAddressedStore.isPresent()
+				? optionalContentAddressedStore.get().referencedDigestOf(file)
+				: Optional.<byte[]>empty();
+	}
+
+	private void discard(File temporaryFile, UploadDigests uploadDigests) {
+		uploadPublisher.discard(temporaryFile);
+		release(uploadDigests.getExpectedContentDigest().isPresent()
+				? uploadDigests.getExpectedContentDigest()
+				: uploadDigests.getContentDigest());
+	}
+
+	private void release(Optional<byte[]> optionalContentDigest) {
+		if (optionalContentAddressedStore.isPresent() && optionalContentDigest.isPresent())
+			optionalContentAddressedStore.get().release(optionalContentDigest.get());
+	}
+
+	private boolean verifyDigests(HttpFileRequest fileRequest, UploadDigests uploadDigests) {
+		try {
+			uploadDigests.verify();
+			return true;
+		} catch (UploadDigestMismatchException e) {
+			respondThatDigestDoesNotMatch(fileRequest, e);
+			return false;
+		}
+	}
+
+	private void storeContentDigest(File temporaryFile, UploadDigests uploadDigests) {
+		final Optional<byte[]> optionalContentDigest = uploadDigests.getContentDigest();
+		if (optionalContentDigest.isPresent())
+			contentDigestStore.store(temporaryFile, optionalContentDigest.get());
+	}
+
+	private boolean writeBodyOfRequest(HttpFileRequest fileRequest, File temporaryFile, UploadDigests uploadDigests) {
+		final Optional<HttpEntity> optionalEntity = getOptionalEntity(fileRequest.request());
+		if (optionalEntity.isNotPresent())
+			return true;
+		try {
+			return write(temporaryFile, optionalEntity.get(), new RandomAccessFile(temporaryFile, "rw"),
+					uploadDigests.getMessageDigests());
+		} catch (FileNotFoundException e) {
+			LOGGER.error(format("Cannot open temporary file of upload: %s", temporaryFile.getAbsolutePath()), e);
+			return false;
+		}
+	}
+
+	private Optional<HttpEntity> getOptionalEntity(HttpRequest request) {
+		return isRequestImplementingEntity(request)
+				? Optional.optional(upgradeHttpRequestToSupportEntities(request).getEntity())
+				: Optional.<HttpEntity>empty();
+	}
+
+	private boolean publish(File temporaryFile, File file) {
+		try {
+			uploadPublisher.publish(temporaryFile, file);
+			return true;
+		} catch (IOException e) {
+			LOGGER.error(format("Cannot replace file '%s' with uploaded temporary file '%s'", file.getAbsolutePath(),
+					temporaryFile.getAbsolutePath()), e);
+			return false;
 		}
 	}
 
@@ -93,15 +408,9 @@ public class HttpFileWriteRequestConsumer implements HttpFileRequestConsumer {
 				getRequestedUri(fileRequest)), e);
 	}
 
-	private void createOrUpdateAnEmptyFileUnchecked(HttpFileRequest fileRequest, File file) throws FileNotFoundException {
-		OutputStream outputStream = new FileOutputStream(file);
-		closeTheStream(outputStream, file);
-		postprocessCreationOfFile(fileRequest, file);
-	}
-
-	void closeTheStream(OutputStream outputStream, File file) {
+	void closeTheStream(Closeable closeable, File file) {
 		try {
-			outputStream.close();
+			closeable.close();
 		} catch (IOException e) {
 			LOGGER.warn(format("An unexpected error when closing the file: %s", file.getAbsolutePath()), e);
 		}
@@ -119,50 +428,41 @@ public class HttpFileWriteRequestConsumer implements HttpFileRequestConsumer {
 				format("There was an unexpected failure when creating the resource: %s", getRequestedUri(fileRequest)));
 	}
 
-	private void decodeRequestEntityAndWriteToFile(HttpFileRequest fileRequest, File file,
-												   HttpEntityEnclosingRequest httpEntityEnclosingRequest) {
-		final HttpEntity entity = httpEntityEnclosingRequest.getEntity();
-		try {
-			decodeRequestEntityAndWriteToFileUnchecked(fileRequest, file, entity);
-		} catch (FileNotFoundException e) {
-			handleFileNotFoundException(fileRequest, file, e);
-		}
+	private void respondThatResourceIsCreated(HttpFileRequest fileRequest) {
+		templatedHttpResponder.respondThatResourceIsCreated(fileRequest.response());
+		// TODO ... create an URL
 	}
 
-	private void decodeRequestEntityAndWriteToFileUnchecked(HttpFileRequest fileRequest, File file, HttpEntity entity) throws FileNotFoundException {
-		OutputStream outputStream = new FileOutputStream(file);
-		writeAndFlush(file, entity, outputStream);
-		respondThatResourceIsCreated(fileRequest);
+	private void respondWithBadRequest(HttpFileRequest fileRequest, String message) {
+		templatedHttpResponder.respondWithBadRequest(fileRequest.response(), message);
 	}
 
-	private void respondThatResourceIsCreated(HttpFileRequest fileRequest) {
-		templatedHttpResponder.respondThatResourceIsCreated(fileRequest.response());
-		// TODO ... create an URL
+	private void respondThatDigestDoesNotMatch(HttpFileRequest fileRequest, UploadDigestMismatchException e) {
+		LOGGER.warn(format("Rejecting corrupted upload of resource %s: %s", getRequestedUri(fileRequest),
+				e.getMessage()));
+		respondWithBadRequest(fileRequest, format("The body does not match its declared digest: %s", e.getMessage()));
 	}
 
-	void writeAndFlush(File file, HttpEntity entity, OutputStream outputStream) {
-		try {
-			writeAndFlushUnchecked(entity, outputStream);
-		} catch (IOException e) {
-			LOGGER.error(format("There was an error with writing or flushing stream to file: %s",
-					file.getAbsolutePath()), e);
-			flushTheFile(file, outputStream, e);
-		} finally {
-			closeTheStream(outputStream, file);
-		}
+	private void respondThatUploadHasFailed(HttpFileRequest fileRequest) {
+		templatedHttpResponder.respondWithInternalServerError(fileRequest.response(),
+				format("The content of the resource could not be completely written: %s",
+						getRequestedUri(fileRequest)));
 	}
 
-	private void writeAndFlushUnchecked(HttpEntity entity, OutputStream outputStream) throws IOException {
-		entity.writeTo(outputStream);
-		outputStream.flush();
+	boolean write(File file, HttpEntity entity, RandomAccessFile randomAccessFile) {
+		return write(file, entity, randomAccessFile, Collections.<MessageDigest>emptyList());
 	}
 
-	void flushTheFile(File file, OutputStream outputStream, IOException e) {
+	boolean write(File file, HttpEntity entity, RandomAccessFile randomAccessFile, List<MessageDigest> digests) {
 		try {
-			outputStream.flush();
-		} catch (IOException e1) {
-			LOGGER.error(format("There was an error with flushing stream to file: %s",
+			fileUploadWriter.writeEntity(entity, randomAccessFile, digests);
+			return true;
+		} catch (IOException e) {
+			LOGGER.error(format("There was an error with writing request body to file: %s",
 					file.getAbsolutePath()), e);
+			return false;
+		} finally {
+			closeTheStream(randomAccessFile, file);
 		}
 	}
 
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.NotFoundCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+import static org.apache.commons.lang3.StringUtils.substringBefore;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpStatus.SC_NOT_FOUND;
+
+/**
+ * Decorates read request consumer and answers requests for paths known to be missing with the 404 response rendered
+ * when the path was requested for the first time - without mapping the path and without any filesystem access.
+ */
+class NotFoundCachingHttpFileRequestConsumer implements HttpFileRequestConsumer {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(NotFoundCachingHttpFileRequestConsumer.class);
+	private static final String QUERY_SEPARATOR = "?";
+	private final HttpFileRequestConsumer decoratedConsumer;
+	private final NotFoundCache notFoundCache;
+	private final TemplatedHttpResponder templatedHttpResponder;
+
+	public NotFoundCachingHttpFileRequestConsumer(HttpFileRequestConsumer decoratedConsumer,
+												  NotFoundCache notFoundCache,
+												  TemplatedHttpResponder templatedHttpResponder) {
+		this.decoratedConsumer = notNull(decoratedConsumer, "Decorated file request consumer cannot be null");
+		this.notFoundCache = notNull(notFoundCache, "Not found cache cannot be null");
+		this.templatedHttpResponder = notNull(templatedHttpResponder, "Templated HTTP responder cannot be null");
+	}
+
+	public void consumeFileRequest(HttpFileRequest fileRequest) {
+		notNull(fileRequest, "File request cannot be null");
+		final String uri = fileRequest.request().getRequestLine().getUri();
+		final String requestPath = substringBefore(uri, QUERY_SEPARATOR);
+		final Optional<byte[]> optionalMessage = notFoundCache.getNotFoundMessage(requestPath);
+		if (optionalMessage.isPresent()) {
+			templatedHttpResponder.respondWithRenderedResourceNotFound(fileRequest.response(), optionalMessage.get());
+			return;
+		}
+		final long invalidationCount = notFoundCache.getInvalidationCount();
+		decoratedConsumer.consumeFileRequest(fileRequest);
+		if (isNotFound(fileRequest.response()))
+			rememberNotFound(fileRequest, uri, requestPath, invalidationCount);
+	}
+
+	private boolean isNotFound(HttpResponse response) {
+		final HttpEntity entity = response.getEntity();
+		return response.getStatusLine().getStatusCode() == SC_NOT_FOUND && entity != null && entity.isRepeatable() &&
+				entity.getContentLength() >= 0 && entity.getContentLength() <= NotFoundCache.MAXIMUM_CACHED_MESSAGE_LENGTH;
+	}
+
+	private void rememberNotFound(HttpFileRequest fileRequest, String uri, String requestPath,
+								  long invalidationCount) {
+		try {
+			notFoundCache.rememberNotFound(requestPath, fileRequest.mapper().mapUriRequestPath(uri),
+					EntityUtils.toByteArray(fileRequest.response().getEntity()), invalidationCount);
+		} catch (IOException e) {
+			LOGGER.debug("Cannot render body of 404 response to remember it", e);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.archive.DirectoryArchiveEntity;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.archive.DirectoryArchiveFormat;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.FileStorage;
+import org.apache.http.Consts;
+import org.apache.http.HttpResponse;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.substringAfter;
+import static org.apache.commons.lang3.StringUtils.substringAfterLast;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpStatus.SC_OK;
+
+/**
+ * Strategy that responds to directory request with 'archive' query parameter (i.e. '/docs?archive=tar') with
+ * archive of the whole directory tree streamed while the tree is walked (see {@link DirectoryArchiveEntity}), so
+ * a single request replaces requests for every file. Other directory requests are passed to the wrapped strategy.
+ */
+public class DirectoryArchiveRequestConsumer implements HttpDirectoryRequestConsumer {
+
+	public static final String ARCHIVE_PARAMETER = "archive";
+	private static final String QUERY_STRING_SEPARATOR = "?";
+	private static final String DEFAULT_ARCHIVE_NAME = "archive";
+	private static final String CONTENT_DISPOSITION = "Content-Disposition";
+	private final FileStorage storage;
+	private final TemplatedHttpResponder templatedHttpResponder;
+	private final HttpDirectoryRequestConsumer directoryRequestConsumer;
+
+	/**
+	 * Create strategy
+	 *
+	 * @param storage not null storage of files that request paths of directories refer to
+	 * @param templatedHttpResponder not null
+	 * @param directoryRequestConsumer not null strategy for directory requests without 'archive' parameter
+	 */
+	public DirectoryArchiveRequestConsumer(FileStorage storage, TemplatedHttpResponder templatedHttpResponder,
+										   HttpDirectoryRequestConsumer directoryRequestConsumer) {
+		this.storage = notNull(storage, "Storage cannot be null");
+		this.templatedHttpResponder = notNull(templatedHttpResponder, "TemplatedHttpResponder cannot be null");
+		this.directoryRequestConsumer = notNull(directoryRequestConsumer,
+				"HttpDirectoryRequestConsumer cannot be null");
+	}
+
+	public void serveExistingDirectoryElement(HttpFileRequest fileRequest, File requestedDirectory) {
+		notNull(fileRequest, "HTTP file request cannot be null");
+		notNull(requestedDirectory, "Requested directory file object cannot be null");
+		final String uri = fileRequest.request().getRequestLine().getUri();
+		final Optional<String> optionalArchiveToken = archiveTokenOf(uri);
+		if (optionalArchiveToken.isNotPresent()) {
+			directoryRequestConsumer.serveExistingDirectoryElement(fileRequest, requestedDirectory);
+			return;
+		}
+		final Optional<DirectoryArchiveFormat> optionalFormat =
+				DirectoryArchiveFormat.fromToken(optionalArchiveToken.get());
+		if (optionalFormat.isNotPresent())
+			templatedHttpResponder.respondWithBadRequest(fileRequest.response(),
+					format("400: Unknown format of directory archive: %s", uri));
+		else
+			sendArchive(fileRequest.response(), directoryPathOf(fileRequest, uri), optionalFormat.get());
+	}
+
+	private static Optional<String> archiveTokenOf(String uri) {
+		final Map<String, String> parameters;
+		try {
+			parameters = DirectoryListingRequestConsumer.parseQueryParameters(
+					substringAfter(uri, QUERY_STRING_SEPARATOR));
+		} catch (IllegalArgumentException e) {
+			return Optional.empty();
+		}
+		return Optional.optional(parameters.get(ARCHIVE_PARAMETER));
+	}
+
+	private static String directoryPathOf(HttpFileRequest fileRequest, String uri) {
+		final String path = fileRequest.mapper().getNormalizedUriRequestPathWithoutQueryString(uri);
+		return path.length() > 1 && path.endsWith(FileStorage.PATH_SEPARATOR)
+				? path.substring(0, path.length() - 1)
+				: path;
+	}
+
+	private void sendArchive(HttpResponse response, String directoryPath, DirectoryArchiveFormat format) {
+		final String directoryName = substringAfterLast(directoryPath, FileStorage.PATH_SEPARATOR);
+		final String rootName = directoryName.length() > 0 ? directoryName : DEFAULT_ARCHIVE_NAME;
+		response.setStatusCode(SC_OK);
+		response.setReasonPhrase("OK");
+		response.setHeader(CONTENT_DISPOSITION, contentDispositionOf(rootName + "." + format.getToken()));
+		response.setEntity(new DirectoryArchiveEntity(storage, directoryPath, rootName, format));
+	}
+
+	private static String contentDispositionOf(String fileName) {
+		final String asciiFileName = fileName.replaceAll("[^\\x20-\\x7e]|[\"\\\\]", "_");
+		if (asciiFileName.equals(fileName))
+			return "attachment; filename=\"" + fileName + "\"";
+		try {
+			return "attachment; filename=\"" + asciiFileName + "\"; filename*=UTF-8''" +
+					URLEncoder.encode(fileName, Consts.UTF_8.name()).replace("+", "%20");
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not supported", e);
+		}
+	}
+}
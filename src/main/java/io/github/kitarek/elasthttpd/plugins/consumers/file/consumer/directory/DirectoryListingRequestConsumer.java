@@ -0,0 +1,273 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryEntry;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListing;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingPage;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingProvider;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingRenderer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingSortOrder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.HtmlDirectoryListingRenderer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.JsonDirectoryListingRenderer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import org.apache.http.Consts;
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.substringAfter;
+import static org.apache.commons.lang3.StringUtils.substringBefore;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.ACCEPT;
+import static org.apache.http.HttpHeaders.VARY;
+import static org.apache.http.HttpStatus.SC_OK;
+
+/**
+ * Strategy that responds with listing of requested directory as HTML page or JSON object (when requested with
+ * 'format=json' query parameter or when client accepts 'application/json').
+ *
+ * Listings are paginated with cursors: the page starts just after the entry given by the 'after' parameter, which
+ * every page provides for the next one, so a page does not move when entries are added or removed before it. Query
+ * parameters 'sort' (name, size or modified), 'order' (asc or desc) and 'limit' (maximum number of entries) choose
+ * the order and size of pages. With a provider of remembered listings the directory is scanned only once for all
+ * requests and pages.
+ */
+public class DirectoryListingRequestConsumer implements HttpDirectoryRequestConsumer {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(DirectoryListingRequestConsumer.class);
+	public static final int DEFAULT_PAGE_SIZE = 1000;
+	public static final int MAXIMUM_PAGE_SIZE = 10000;
+	public static final String SORT_PARAMETER = "sort";
+	public static final String ORDER_PARAMETER = "order";
+	public static final String LIMIT_PARAMETER = "limit";
+	public static final String AFTER_PARAMETER = "after";
+	public static final String FORMAT_PARAMETER = "format";
+	private static final String ASCENDING_ORDER = "asc";
+	private static final String DESCENDING_ORDER = "desc";
+	private static final String HTML_FORMAT = "html";
+	private static final String JSON_FORMAT = "json";
+	private static final String JSON_MIME_TYPE = "application/json";
+	private static final String QUERY_STRING_SEPARATOR = "?";
+	private static final String PARAMETERS_SEPARATOR = "&";
+	private static final String NAME_VALUE_SEPARATOR = "=";
+	private static final String PATH_SEPARATOR = "/";
+	private final TemplatedHttpResponder templatedHttpResponder;
+	private final Optional<DirectoryListingProvider> optionalDirectoryListingProvider;
+	private final DirectoryListingRenderer htmlRenderer = new HtmlDirectoryListingRenderer();
+	private final DirectoryListingRenderer jsonRenderer = new JsonDirectoryListingRenderer();
+
+	/**
+	 * Create strategy that scans directory on every request
+	 *
+	 * @param templatedHttpResponder not null
+	 */
+	public DirectoryListingRequestConsumer(TemplatedHttpResponder templatedHttpResponder) {
+		this(templatedHttpResponder, Optional.<DirectoryListingProvider>empty());
+	}
+
+	/**
+	 * Create strategy that takes listings of directories from the provider (i.e. cache)
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param optionalDirectoryListingProvider not null optional provider of directory listings
+	 */
+	public DirectoryListingRequestConsumer(TemplatedHttpResponder templatedHttpResponder,
+										   Optional<DirectoryListingProvider> optionalDirectoryListingProvider) {
+		this.templatedHttpResponder = notNull(templatedHttpResponder, "TemplatedHttpResponder cannot be null");
+		this.optionalDirectoryListingProvider = notNull(optionalDirectoryListingProvider,
+				"Optional directory listing provider cannot be null");
+	}
+
+	public void serveExistingDirectoryElement(HttpFileRequest fileRequest, File requestedDirectory) {
+		notNull(fileRequest, "HTTP file request cannot be null");
+		notNull(requestedDirectory, "Requested directory file object cannot be null");
+		final String uri = fileRequest.request().getRequestLine().getUri();
+		final Map<String, String> parameters;
+		try {
+			parameters = parseQueryParameters(substringAfter(uri, QUERY_STRING_SEPARATOR));
+		} catch (IllegalArgumentException e) {
+			templatedHttpResponder.respondWithBadRequest(fileRequest.response(),
+					format("400: Malformed query string of directory listing: %s", uri));
+			return;
+		}
+		final ListingRequest listingRequest = parseListingRequest(parameters, fileRequest.request());
+		if (listingRequest.optionalErrorMessage.isPresent())
+			templatedHttpResponder.respondWithBadRequest(fileRequest.response(),
+					format("400: %s: %s", listingRequest.optionalErrorMessage.get(), uri));
+		else
+			sendListingPage(fileRequest.response(), directoryRequestPathOf(uri), requestedDirectory, listingRequest);
+	}
+
+	/**
+	 * Decode query parameters; the last value of repeated parameter wins
+	 *
+	 * @param queryString not null query string without '?'
+	 * @return not null map of decoded names to decoded values
+	 * @throws IllegalArgumentException when query string is not properly encoded
+	 */
+	static Map<String, String> parseQueryParameters(String queryString) {
+		final Map<String, String> parameters = new HashMap<String, String>();
+		for (String parameter : queryString.split(PARAMETERS_SEPARATOR))
+			if (parameter.length() > 0)
+				parameters.put(decode(substringBefore(parameter, NAME_VALUE_SEPARATOR)),
+						decode(substringAfter(parameter, NAME_VALUE_SEPARATOR)));
+		return parameters;
+	}
+
+	private static String decode(String value) {
+		try {
+			return URLDecoder.decode(value, Consts.UTF_8.name());
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not supported", e);
+		}
+	}
+
+	private static String encode(String value) {
+		try {
+			return URLEncoder.encode(value, Consts.UTF_8.name());
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException("UTF-8 is not supported", e);
+		}
+	}
+
+	private static String directoryRequestPathOf(String uri) {
+		final String requestPath = substringBefore(uri, QUERY_STRING_SEPARATOR);
+		return requestPath.endsWith(PATH_SEPARATOR) ? requestPath : requestPath + PATH_SEPARATOR;
+	}
+
+	private ListingRequest parseListingRequest(Map<String, String> parameters, HttpRequest request) {
+		final ListingRequest listingRequest = new ListingRequest();
+		final Optional<DirectoryListingSortOrder> optionalOrder = DirectoryListingSortOrder.fromToken(
+				parameterOrDefault(parameters, SORT_PARAMETER, DirectoryListingSortOrder.NAME.getToken()));
+		if (optionalOrder.isNotPresent())
+			return listingRequest.withError("Unknown sort order of directory listing");
+		listingRequest.order = optionalOrder.get();
+		final String direction = parameterOrDefault(parameters, ORDER_PARAMETER, ASCENDING_ORDER);
+		if (!direction.equals(ASCENDING_ORDER) && !direction.equals(DESCENDING_ORDER))
+			return listingRequest.withError("Unknown direction of directory listing order");
+		listingRequest.descending = direction.equals(DESCENDING_ORDER);
+		listingRequest.limit = parseLimit(parameterOrDefault(parameters, LIMIT_PARAMETER,
+				String.valueOf(DEFAULT_PAGE_SIZE)));
+		if (listingRequest.limit <= 0)
+			return listingRequest.withError(format("Limit of directory listing page needs to be between 1 and %d",
+					MAXIMUM_PAGE_SIZE));
+		if (parameters.containsKey(AFTER_PARAMETER)) {
+			listingRequest.optionalCursor = listingRequest.order.parseCursor(parameters.get(AFTER_PARAMETER));
+			if (listingRequest.optionalCursor.isNotPresent())
+				return listingRequest.withError("Malformed cursor of directory listing page");
+		}
+		listingRequest.optionalFormat = Optional.optional(parameters.get(FORMAT_PARAMETER));
+		final String format = listingRequest.optionalFormat.isPresent()
+				? listingRequest.optionalFormat.get()
+				: (acceptsJson(request) ? JSON_FORMAT : HTML_FORMAT);
+		if (!format.equals(HTML_FORMAT) && !format.equals(JSON_FORMAT))
+			return listingRequest.withError("Unknown format of directory listing");
+		listingRequest.renderer = format.equals(JSON_FORMAT) ? jsonRenderer : htmlRenderer;
+		return listingRequest;
+	}
+
+	private static String parameterOrDefault(Map<String, String> parameters, String name, String defaultValue) {
+		final String value = parameters.get(name);
+		return value != null ? value : defaultValue;
+	}
+
+	private static int parseLimit(String limit) {
+		try {
+			final int parsedLimit = Integer.parseInt(limit);
+			return parsedLimit <= MAXIMUM_PAGE_SIZE ? parsedLimit : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static boolean acceptsJson(HttpRequest request) {
+		for (Header header : request.getHeaders(ACCEPT))
+			if (header.getValue().contains(JSON_MIME_TYPE))
+				return true;
+		return false;
+	}
+
+	private void sendListingPage(HttpResponse response, String directoryRequestPath, File requestedDirectory,
+								 ListingRequest listingRequest) {
+		final DirectoryListing listing;
+		try {
+			listing = optionalDirectoryListingProvider.isPresent()
+					? optionalDirectoryListingProvider.get().provideListing(requestedDirectory)
+					: DirectoryListing.scan(requestedDirectory);
+		} catch (IOException e) {
+			LOGGER.error("Cannot list directory " + requestedDirectory.getAbsolutePath(), e);
+			templatedHttpResponder.respondWithInternalServerError(response,
+					format("500: Cannot list directory: %s", directoryRequestPath));
+			return;
+		}
+		final DirectoryListingPage page = listing.getPage(listingRequest.order, listingRequest.descending,
+				listingRequest.optionalCursor, listingRequest.limit);
+		final Optional<String> optionalNextPageUri = page.getNextPageCursor().isPresent()
+				? Optional.present(nextPageUri(directoryRequestPath, listingRequest, page.getNextPageCursor().get()))
+				: Optional.<String>empty();
+		response.setStatusCode(SC_OK);
+		response.setReasonPhrase("OK");
+		response.setHeader(VARY, ACCEPT);
+		response.setEntity(new ByteArrayEntity(listingRequest.renderer.render(directoryRequestPath, page,
+				optionalNextPageUri), listingRequest.renderer.getContentType()));
+	}
+
+	private static String nextPageUri(String directoryRequestPath, ListingRequest listingRequest, String cursor) {
+		final StringBuilder uri = new StringBuilder(directoryRequestPath).append(QUERY_STRING_SEPARATOR)
+				.append(SORT_PARAMETER).append(NAME_VALUE_SEPARATOR).append(listingRequest.order.getToken())
+				.append(PARAMETERS_SEPARATOR).append(ORDER_PARAMETER).append(NAME_VALUE_SEPARATOR)
+				.append(listingRequest.descending ? DESCENDING_ORDER : ASCENDING_ORDER)
+				.append(PARAMETERS_SEPARATOR).append(LIMIT_PARAMETER).append(NAME_VALUE_SEPARATOR)
+				.append(listingRequest.limit);
+		if (listingRequest.optionalFormat.isPresent())
+			uri.append(PARAMETERS_SEPARATOR).append(FORMAT_PARAMETER).append(NAME_VALUE_SEPARATOR)
+					.append(encode(listingRequest.optionalFormat.get()));
+		return uri.append(PARAMETERS_SEPARATOR).append(AFTER_PARAMETER).append(NAME_VALUE_SEPARATOR)
+				.append(encode(cursor)).toString();
+	}
+
+	private static class ListingRequest {
+		private DirectoryListingSortOrder order;
+		private boolean descending;
+		private int limit;
+		private Optional<DirectoryEntry> optionalCursor = Optional.empty();
+		private Optional<String> optionalFormat = Optional.empty();
+		private DirectoryListingRenderer renderer;
+		private Optional<String> optionalErrorMessage = Optional.empty();
+
+		private ListingRequest withError(String errorMessage) {
+			optionalErrorMessage = Optional.present(errorMessage);
+			return this;
+		}
+	}
+}
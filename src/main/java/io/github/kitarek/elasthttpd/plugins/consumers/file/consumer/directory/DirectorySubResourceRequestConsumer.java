@@ -17,18 +17,34 @@
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory;
 
+import io.github.kitarek.elasthttpd.commons.Optional;
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.DirectoryIndexCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadata;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadataProvider;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.HttpFileProducer;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.cache.DirectoryIndexCache.NO_INDEX;
 import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.noNullElements;
 import static org.apache.commons.lang3.Validate.notNull;
 
 /**
  * Strategy that allows for directories to serve specified resource that is always located relatively under
- * the directory resource requested by HTTP client.
+ * the directory resource requested by HTTP client. When more than one subresource is specified the first existing
+ * one is served (i.e. index.html, then index.htm).
+ *
+ * Which subresource was resolved for a directory can be remembered in {@link DirectoryIndexCache}. Then only
+ * the remembered subresource is checked for each request, exactly like a file requested directly, and the remaining
+ * candidates are looked up again only when the remembered one disappeared or the cache has been notified about
+ * a change of the directory.
  *
  * The current implementation does not enforce server base path limitation so please be aware if you use '..'
  * as subresource.
@@ -37,7 +53,9 @@ public class DirectorySubResourceRequestConsumer implements HttpDirectoryRequest
 
 	private final HttpFileProducer producer;
 	private final TemplatedHttpResponder responder;
-	private final String subResourceToServe;
+	private final List<String> subResourcesToServe;
+	private final Optional<FileMetadataProvider> optionalFileMetadataProvider;
+	private final Optional<DirectoryIndexCache> optionalDirectoryIndexCache;
 
 	/**
 	 * Create strategy with the following dependencies
@@ -53,21 +71,121 @@ public class DirectorySubResourceRequestConsumer implements HttpDirectoryRequest
 	public DirectorySubResourceRequestConsumer(HttpFileProducer producer,
 											   TemplatedHttpResponder responder,
 											   String subResourceToServe) {
+		this(producer, responder, subResourceToServe, Optional.<FileMetadataProvider>empty());
+	}
+
+	/**
+	 * Create strategy that takes metadata of served subresources from the provider
+	 *
+	 * @param producer not-null
+	 * @param responder not-null
+	 * @param subResourceToServe not-null string that represents either one level in resource path or
+	 *                           part of resource path that will be appended to the requested resource directory
+	 * @param optionalFileMetadataProvider not null optional provider of metadata of subresources
+	 */
+	public DirectorySubResourceRequestConsumer(HttpFileProducer producer,
+											   TemplatedHttpResponder responder,
+											   String subResourceToServe,
+											   Optional<FileMetadataProvider> optionalFileMetadataProvider) {
+		this(producer, responder,
+				Collections.singletonList(notNull(subResourceToServe, "Subresource identifer cannot be null")),
+				optionalFileMetadataProvider, Optional.<DirectoryIndexCache>empty());
+	}
+
+	/**
+	 * Create strategy that serves the first existing of subresources and optionally remembers which one it was
+	 *
+	 * @param producer not-null
+	 * @param responder not-null
+	 * @param subResourcesToServe not-null and not empty list of not-null subresources in order of preference; each
+	 *                            of them has the same form as a single subresource
+	 * @param optionalFileMetadataProvider not null optional provider of metadata of subresources
+	 * @param optionalDirectoryIndexCache not null optional cache of resolved subresources that is used only by this
+	 *                                    strategy
+	 */
+	public DirectorySubResourceRequestConsumer(HttpFileProducer producer,
+											   TemplatedHttpResponder responder,
+											   List<String> subResourcesToServe,
+											   Optional<FileMetadataProvider> optionalFileMetadataProvider,
+											   Optional<DirectoryIndexCache> optionalDirectoryIndexCache) {
 		this.producer = notNull(producer, "HttpFileProducer cannot be null");
 		this.responder = notNull(responder, "TemplatedHttpResponder cannot be null");
-		this.subResourceToServe = notNull(subResourceToServe, "Subresource identifer cannot be null");
+		noNullElements(notNull(subResourcesToServe, "Subresource identifers cannot be null"),
+				"Subresource identifer cannot be null");
+		isTrue(!subResourcesToServe.isEmpty(), "At least one subresource identifier is required");
+		this.subResourcesToServe = Collections.unmodifiableList(new ArrayList<String>(subResourcesToServe));
+		this.optionalFileMetadataProvider = notNull(optionalFileMetadataProvider,
+				"Optional file metadata provider cannot be null");
+		this.optionalDirectoryIndexCache = notNull(optionalDirectoryIndexCache,
+				"Optional directory index cache cannot be null");
 	}
 
 	public void serveExistingDirectoryElement(HttpFileRequest fileRequest, File requestedDirectory) {
 		notNull(fileRequest, "HTTP file request cannot be null");
 		notNull(requestedDirectory, "Requested directory file object cannot be null");
-		File subFile = new File(requestedDirectory, subResourceToServe);
-		if (subFile.exists() && subFile.isFile())
-			producer.sendFileOverHttpResponse(subFile, fileRequest.response());
+		final Optional<File> optionalSubFile = optionalDirectoryIndexCache.isPresent()
+				? resolveSubResourceWithCache(requestedDirectory, optionalDirectoryIndexCache.get())
+				: resolveSubResource(requestedDirectory);
+		if (optionalSubFile.isPresent())
+			sendSubResource(fileRequest, optionalSubFile.get());
 		else
 			respondThatFileHasNotBeenFound(fileRequest);
 	}
 
+	private Optional<File> resolveSubResourceWithCache(File requestedDirectory, DirectoryIndexCache cache) {
+		final Optional<Integer> optionalResolvedIndex = cache.getResolvedIndex(requestedDirectory);
+		if (optionalResolvedIndex.isPresent()) {
+			final int resolvedIndex = optionalResolvedIndex.get();
+			if (resolvedIndex == NO_INDEX)
+				return Optional.empty();
+			if (resolvedIndex < subResourcesToServe.size()) {
+				final File subFile = subResourceOf(requestedDirectory, resolvedIndex);
+				if (isRegularFile(subFile))
+					return Optional.present(subFile);
+			}
+		}
+		final long invalidationCountBeforeResolution = cache.getInvalidationCount();
+		final int resolvedIndex = findFirstExistingSubResource(requestedDirectory);
+		cache.rememberResolvedIndex(requestedDirectory, resolvedIndex, invalidationCountBeforeResolution);
+		return resolvedIndex == NO_INDEX
+				? Optional.<File>empty()
+				: Optional.present(subResourceOf(requestedDirectory, resolvedIndex));
+	}
+
+	private Optional<File> resolveSubResource(File requestedDirectory) {
+		final int resolvedIndex = findFirstExistingSubResource(requestedDirectory);
+		return resolvedIndex == NO_INDEX
+				? Optional.<File>empty()
+				: Optional.present(subResourceOf(requestedDirectory, resolvedIndex));
+	}
+
+	private int findFirstExistingSubResource(File requestedDirectory) {
+		for (int i = 0; i < subResourcesToServe.size(); i++) {
+			if (isRegularFile(subResourceOf(requestedDirectory, i)))
+				return i;
+		}
+		return NO_INDEX;
+	}
+
+	private File subResourceOf(File requestedDirectory, int index) {
+		return new File(requestedDirectory, subResourcesToServe.get(index));
+	}
+
+	private boolean isRegularFile(File subFile) {
+		return optionalFileMetadataProvider.isPresent()
+				? optionalFileMetadataProvider.get().provideMetadata(subFile).isRegularFile()
+				: subFile.isFile();
+	}
+
+	private void sendSubResource(HttpFileRequest fileRequest, File subFile) {
+		if (optionalFileMetadataProvider.isPresent()) {
+			final FileMetadata metadata = optionalFileMetadataProvider.get().provideMetadata(subFile);
+			producer.sendFileOverHttpResponse(subFile, metadata, fileRequest.request(), fileRequest.response());
+		} else {
+			producer.sendFileOverHttpResponse(subFile, fileRequest.request(), fileRequest.response());
+		}
+	}
+
 	private void respondThatFileHasNotBeenFound(HttpFileRequest fileRequest) {
 		responder.respondWithResourceNotFound(fileRequest.response(),
 				format("404: The default file resource for requested resource collection was not found: %s",
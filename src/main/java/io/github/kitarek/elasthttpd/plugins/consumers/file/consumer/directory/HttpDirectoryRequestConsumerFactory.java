@@ -17,9 +17,15 @@
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory;
 
+import io.github.kitarek.elasthttpd.commons.Optional;
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.DirectoryIndexCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingProvider;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadataProvider;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.HttpFileProducer;
 
+import java.util.List;
+
 import static org.apache.commons.lang3.Validate.notNull;
 
 /**
@@ -28,6 +34,7 @@ import static org.apache.commons.lang3.Validate.notNull;
 public class HttpDirectoryRequestConsumerFactory {
 	private final TemplatedHttpResponder templatedHttpResponder;
 	private final HttpFileProducer httpFileProducer;
+	private final Optional<FileMetadataProvider> optionalFileMetadataProvider;
 
 	/**
 	 * Create factory with dependencies
@@ -36,8 +43,22 @@ public class HttpDirectoryRequestConsumerFactory {
 	 * @param httpFileProducer not null
 	 */
 	public HttpDirectoryRequestConsumerFactory(TemplatedHttpResponder templatedHttpResponder, HttpFileProducer httpFileProducer) {
+		this(templatedHttpResponder, httpFileProducer, Optional.<FileMetadataProvider>empty());
+	}
+
+	/**
+	 * Create factory with dependencies which consumers take metadata of files from the provider
+	 *
+	 * @param templatedHttpResponder not null
+	 * @param httpFileProducer not null
+	 * @param optionalFileMetadataProvider not null optional provider of metadata of files
+	 */
+	public HttpDirectoryRequestConsumerFactory(TemplatedHttpResponder templatedHttpResponder,
+											   HttpFileProducer httpFileProducer,
+											   Optional<FileMetadataProvider> optionalFileMetadataProvider) {
 		this.templatedHttpResponder = notNull(templatedHttpResponder);
 		this.httpFileProducer = notNull(httpFileProducer);
+		this.optionalFileMetadataProvider = notNull(optionalFileMetadataProvider);
 	}
 
 	/**
@@ -61,6 +82,34 @@ public class HttpDirectoryRequestConsumerFactory {
 	 */
 	public HttpDirectoryRequestConsumer createConsumerThatAllowsToAccessSubResourceForDirectories(String subresource) {
 		return new DirectorySubResourceRequestConsumer(httpFileProducer, templatedHttpResponder,
-				notNull(subresource, "Subresource for directories cannot be null"));
+				notNull(subresource, "Subresource for directories cannot be null"), optionalFileMetadataProvider);
+	}
+
+	/**
+	 * Create {@link DirectorySubResourceRequestConsumer} instance that serves the first existing of subresources
+	 * (i.e. index.html, index.htm) for directories.
+	 *
+	 * @param subresources not null and not empty list of not null subresources in order of preference
+	 * @param optionalDirectoryIndexCache not null optional cache of resolved subresources; it must not be shared
+	 *                                    with other consumers
+	 * @return always not null
+	 */
+	public HttpDirectoryRequestConsumer createConsumerThatAllowsToAccessFirstExistingSubResourceForDirectories(
+			List<String> subresources, Optional<DirectoryIndexCache> optionalDirectoryIndexCache) {
+		return new DirectorySubResourceRequestConsumer(httpFileProducer, templatedHttpResponder,
+				notNull(subresources, "Subresources for directories cannot be null"), optionalFileMetadataProvider,
+				optionalDirectoryIndexCache);
+	}
+
+	/**
+	 * Create {@link DirectoryListingRequestConsumer} instance that responds with paginated listings of directories.
+	 *
+	 * @param optionalDirectoryListingProvider not null optional provider of listings (i.e. cache); when not present
+	 *                                         directories are scanned on every request
+	 * @return always not null
+	 */
+	public HttpDirectoryRequestConsumer createConsumerThatListsDirectories(
+			Optional<DirectoryListingProvider> optionalDirectoryListingProvider) {
+		return new DirectoryListingRequestConsumer(templatedHttpResponder, optionalDirectoryListingProvider);
 	}
 }
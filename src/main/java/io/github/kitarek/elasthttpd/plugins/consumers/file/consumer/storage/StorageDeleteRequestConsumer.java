@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.storage;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryEntry;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.FileStorage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFile;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Request consumer that deletes file of {@link FileStorage}. Directories are never deleted.
+ */
+public class StorageDeleteRequestConsumer implements HttpFileRequestConsumer {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(StorageDeleteRequestConsumer.class);
+	private final FileStorage storage;
+	private final TemplatedHttpResponder templatedHttpResponder;
+
+	public StorageDeleteRequestConsumer(FileStorage storage, TemplatedHttpResponder templatedHttpResponder) {
+		this.storage = notNull(storage, "Storage cannot be null");
+		this.templatedHttpResponder = notNull(templatedHttpResponder, "Templated HTTP responder cannot be null");
+	}
+
+	public void consumeFileRequest(HttpFileRequest fileRequest) {
+		notNull(fileRequest, "File request cannot be null");
+		final String uri = getRequestedUri(fileRequest);
+		final String path = fileRequest.mapper().getNormalizedUriRequestPathWithoutQueryString(uri);
+		try {
+			final Optional<DirectoryEntry> optionalEntry = storage.stat(path);
+			if (optionalEntry.isPresent() && optionalEntry.get().isDirectory())
+				templatedHttpResponder.respondWithResourceForbidden(fileRequest.response(),
+						format("The following resource is forbidden: %s", uri));
+			else if (optionalEntry.isPresent() && !isTemporaryFile(new File(path)) && storage.delete(path))
+				templatedHttpResponder.respondWithNoContentAndReasonDeleted(fileRequest.response());
+			else
+				templatedHttpResponder.respondWithResourceNotFound(fileRequest.response(),
+						format("Resource cannot be found: %s", uri));
+		} catch (IOException e) {
+			LOGGER.error(format("Cannot delete stored file: %s", path), e);
+			templatedHttpResponder.respondWithInternalServerError(fileRequest.response(),
+					format("Server wasn't able to fulfil delete request on resource: %s", uri));
+		}
+	}
+
+	private String getRequestedUri(HttpFileRequest fileRequest) {
+		return fileRequest.request().getRequestLine().getUri();
+	}
+}
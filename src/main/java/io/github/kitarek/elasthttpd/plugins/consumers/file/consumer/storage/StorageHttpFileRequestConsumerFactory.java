@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.storage;
+
+import io.github.kitarek.elasthttpd.commons.MimeTypeTable;
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.EntityTagGenerator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.MetadataEntityTagGenerator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileOperationConsumerFactory;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.HttpDirectoryRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.FileStorage;
+
+import java.util.List;
+
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpStatus.SC_NOT_IMPLEMENTED;
+
+/**
+ * Creates consumers of {@link HttpFileRequest} for files of {@link FileStorage}. Files of storage are not patched,
+ * so PATCH requests are answered with 501 Not Implemented.
+ */
+public class StorageHttpFileRequestConsumerFactory implements HttpFileOperationConsumerFactory {
+
+	private final FileStorage storage;
+	private final MimeTypeTable mimeTypeTable;
+	private final TemplatedHttpResponder templatedHttpResponder;
+	private final List<String> directorySubresources;
+	private final HttpDirectoryRequestConsumer directoryRequestConsumer;
+	private final EntityTagGenerator entityTagGenerator;
+
+	/**
+	 * Create factory
+	 *
+	 * @param storage not null storage of files
+	 * @param mimeTypeTable not null table of MIME types of file extensions
+	 * @param templatedHttpResponder not null
+	 * @param directorySubresources not null names of files served instead of directory in order of preference
+	 * @param directoryRequestConsumer not null consumer of directories without any of sub-resources
+	 */
+	public StorageHttpFileRequestConsumerFactory(FileStorage storage, MimeTypeTable mimeTypeTable,
+												 TemplatedHttpResponder templatedHttpResponder,
+												 List<String> directorySubresources,
+												 HttpDirectoryRequestConsumer directoryRequestConsumer) {
+		this(storage, mimeTypeTable, templatedHttpResponder, directorySubresources, directoryRequestConsumer,
+				new MetadataEntityTagGenerator());
+	}
+
+	/**
+	 * Create factory of consumers that use a given generator of entity tags
+	 *
+	 * @param storage not null storage of files
+	 * @param mimeTypeTable not null table of MIME types of file extensions
+	 * @param templatedHttpResponder not null
+	 * @param directorySubresources not null names of files served instead of directory in order of preference
+	 * @param directoryRequestConsumer not null consumer of directories without any of sub-resources
+	 * @param entityTagGenerator not null generator of entity tags used as validators of stored files
+	 */
+	public StorageHttpFileRequestConsumerFactory(FileStorage storage, MimeTypeTable mimeTypeTable,
+												 TemplatedHttpResponder templatedHttpResponder,
+												 List<String> directorySubresources,
+												 HttpDirectoryRequestConsumer directoryRequestConsumer,
+												 EntityTagGenerator entityTagGenerator) {
+		this.storage = notNull(storage, "Storage cannot be null");
+		this.mimeTypeTable = notNull(mimeTypeTable, "MIME type table cannot be null");
+		this.templatedHttpResponder = notNull(templatedHttpResponder, "Templated HTTP responder cannot be null");
+		this.directorySubresources = notNull(directorySubresources, "Directory subresources cannot be null");
+		this.directoryRequestConsumer = notNull(directoryRequestConsumer,
+				"HttpDirectoryRequestConsumer cannot be null");
+		this.entityTagGenerator = notNull(entityTagGenerator, "Entity tag generator cannot be null");
+	}
+
+	public HttpFileRequestConsumer createConsumerForReadOperation() {
+		return new StorageReadRequestConsumer(storage, mimeTypeTable, templatedHttpResponder, directorySubresources,
+				directoryRequestConsumer, entityTagGenerator);
+	}
+
+	public HttpFileRequestConsumer createConsumerForWriteOperation() {
+		return new StorageWriteRequestConsumer(storage, templatedHttpResponder);
+	}
+
+	public HttpFileRequestConsumer createConsumerForPatchOperation() {
+		return new HttpFileRequestConsumer() {
+			public void consumeFileRequest(HttpFileRequest fileRequest) {
+				fileRequest.response().setStatusCode(SC_NOT_IMPLEMENTED);
+				fileRequest.response().setReasonPhrase("Method not implemented");
+			}
+		};
+	}
+
+	public HttpFileRequestConsumer createConsumerForDeleteOperation() {
+		return new StorageDeleteRequestConsumer(storage, templatedHttpResponder);
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.storage;
+
+import io.github.kitarek.elasthttpd.commons.MimeTypeTable;
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.EntityTagGenerator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.FileValidators;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.MetadataEntityTagGenerator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.HttpDirectoryRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryEntry;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.ConditionalFileResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FileVariant;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.RangeRequestResult;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.EncodedFileStorage;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.FileStorage;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.StoredFileEntity;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.StoredFileVariantEntity;
+import io.github.kitarek.elasthttpd.server.compression.AcceptEncodingNegotiator;
+import io.github.kitarek.elasthttpd.server.compression.ContentCoding;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.storage.StorageDirectoryListingProvider.directoryOf;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFile;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.CONTENT_ENCODING;
+import static org.apache.http.HttpHeaders.CONTENT_RANGE;
+import static org.apache.http.HttpHeaders.ETAG;
+
+/**
+ * Request consumer that sends files of {@link FileStorage} with ETag (built from size and modification time by
+ * default) and Last-Modified validators. Conditional requests are answered from metadata of file alone and a single
+ * range is sent with 206 Partial Content; a request for many ranges gets the whole file. A directory is served with
+ * the first of its sub-resources that exists or by the directory consumer (i.e. a listing). The whole content of file
+ * that {@link EncodedFileStorage} keeps encoded is sent in a stored coding accepted by client.
+ */
+public class StorageReadRequestConsumer implements HttpFileRequestConsumer {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(StorageReadRequestConsumer.class);
+	private final FileStorage storage;
+	private final MimeTypeTable mimeTypeTable;
+	private final TemplatedHttpResponder templatedHttpResponder;
+	private final List<String> directorySubresources;
+	private final HttpDirectoryRequestConsumer directoryRequestConsumer;
+	private final EntityTagGenerator entityTagGenerator;
+	private final ConditionalFileResponder conditionalFileResponder;
+	private final AcceptEncodingNegotiator acceptEncodingNegotiator = new AcceptEncodingNegotiator();
+
+	/**
+	 * Create consumer that passes all directories to the directory consumer
+	 *
+	 * @param storage not null storage of files
+	 * @param mimeTypeTable not null table of MIME types of file extensions
+	 * @param templatedHttpResponder not null
+	 * @param directoryRequestConsumer not null consumer of directories
+	 */
+	public StorageReadRequestConsumer(FileStorage storage, MimeTypeTable mimeTypeTable,
+									  TemplatedHttpResponder templatedHttpResponder,
+									  HttpDirectoryRequestConsumer directoryRequestConsumer) {
+		this(storage, mimeTypeTable, templatedHttpResponder, Collections.<String>emptyList(),
+				directoryRequestConsumer);
+	}
+
+	/**
+	 * Create consumer
+	 *
+	 * @param storage not null storage of files
+	 * @param mimeTypeTable not null table of MIME types of file extensions
+	 * @param templatedHttpResponder not null
+	 * @param directorySubresources not null names of files served instead of directory in order of preference
+	 * @param directoryRequestConsumer not null consumer of directories without any of sub-resources
+	 */
+	public StorageReadRequestConsumer(FileStorage storage, MimeTypeTable mimeTypeTable,
+									  TemplatedHttpResponder templatedHttpResponder, List<String> directorySubresources,
+									  HttpDirectoryRequestConsumer directoryRequestConsumer) {
+		this(storage, mimeTypeTable, templatedHttpResponder, directorySubresources, directoryRequestConsumer,
+				new MetadataEntityTagGenerator());
+	}
+
+	/**
+	 * Create consumer that uses a given generator of entity tags. Stored files are not files of local filesystem,
+	 * so the generator gets the storage path of file and must build tags from its length and modification time only.
+	 *
+	 * @param storage not null storage of files
+	 * @param mimeTypeTable not null table of MIME types of file extensions
+	 * @param templatedHttpResponder not null
+	 * @param directorySubresources not null names of files served instead of directory in order of preference
+	 * @param directoryRequestConsumer not null consumer of directories without any of sub-resources
+	 * @param entityTagGenerator not null generator of entity tags used as validators of stored files
+	 */
+	public StorageReadRequestConsumer(FileStorage storage, MimeTypeTable mimeTypeTable,
+									  TemplatedHttpResponder templatedHttpResponder, List<String> directorySubresources,
+									  HttpDirectoryRequestConsumer directoryRequestConsumer,
+									  EntityTagGenerator entityTagGenerator) {
+		this.storage = notNull(storage, "Storage cannot be null");
+		this.mimeTypeTable = notNull(mimeTypeTable, "MIME type table cannot be null");
+		this.templatedHttpResponder = notNull(templatedHttpResponder, "Templated HTTP responder cannot be null");
+		this.directorySubresources = new ArrayList<String>(noNullElements(notNull(directorySubresources,
+				"Directory subresources cannot be null"), "Directory subresource cannot be null"));
+		this.directoryRequestConsumer = notNull(directoryRequestConsumer,
+				"HttpDirectoryRequestConsumer cannot be null");
+		this.entityTagGenerator = notNull(entityTagGenerator, "Entity tag generator cannot be null");
+		this.conditionalFileResponder = new ConditionalFileResponder(this.templatedHttpResponder);
+	}
+
+	public void consumeFileRequest(HttpFileRequest fileRequest) {
+		notNull(fileRequest, "File request cannot be null");
+		final String uri = getRequestedUri(fileRequest);
+		final String path = fileRequest.mapper().getNormalizedUriRequestPathWithoutQueryString(uri);
+		if (isTemporaryFile(new File(path))) {
+			respondThatFileHasNotBeenFound(fileRequest);
+			return;
+		}
+		try {
+			final Optional<DirectoryEntry> optionalEntry = storage.stat(path);
+			if (optionalEntry.isNotPresent())
+				respondThatFileHasNotBeenFound(fileRequest);
+			else if (optionalEntry.get().isDirectory())
+				serveDirectory(fileRequest, path);
+			else
+				sendStoredFile(fileRequest.request(), fileRequest.response(), path, optionalEntry.get());
+		} catch (IOException e) {
+			LOGGER.error(format("Cannot read metadata of stored file: %s", path), e);
+			templatedHttpResponder.respondWithInternalServerError(fileRequest.response(),
+					format("500: Cannot read the requested resource: %s", uri));
+		}
+	}
+
+	private void serveDirectory(HttpFileRequest fileRequest, String path) throws IOException {
+		for (String subresource : directorySubresources) {
+			final String subresourcePath = (path.equals(FileStorage.ROOT_PATH) ? "" : path) +
+					FileStorage.PATH_SEPARATOR + subresource;
+			final Optional<DirectoryEntry> optionalEntry = storage.stat(subresourcePath);
+			if (optionalEntry.isPresent() && !optionalEntry.get().isDirectory()) {
+				sendStoredFile(fileRequest.request(), fileRequest.response(), subresourcePath, optionalEntry.get());
+				return;
+			}
+		}
+		directoryRequestConsumer.serveExistingDirectoryElement(fileRequest, directoryOf(path));
+	}
+
+	private void sendStoredFile(HttpRequest request, HttpResponse response, String path, DirectoryEntry entry)
+			throws IOException {
+		final FileValidators validators = new FileValidators(entityTagGenerator.generateEntityTag(new File(path),
+				entry.getLength(), entry.getLastModified()), entry.getLastModified());
+		final List<ContentCoding> storedCodings = storage instanceof EncodedFileStorage
+				? ((EncodedFileStorage) storage).storedCodingsOf(path)
+				: Collections.<ContentCoding>emptyList();
+		if (!storedCodings.isEmpty())
+			acceptEncodingNegotiator.addVaryAcceptEncodingHeader(response);
+		if (conditionalFileResponder.respondToPreconditions(request, response, validators, entry.getName()) ==
+				ConditionalRequestResult.PROCEED)
+			sendStoredFileOrItsRange(request, response, path, entry, validators, storedCodings);
+	}
+
+	private void sendStoredFileOrItsRange(HttpRequest request, HttpResponse response, String path,
+										  DirectoryEntry entry, FileValidators validators,
+										  List<ContentCoding> storedCodings) throws IOException {
+		final RangeRequestResult rangeRequestResult = conditionalFileResponder.respondToRanges(request, response,
+				validators, entry.getLength(), entry.getName());
+		if (rangeRequestResult.isNotSatisfiable())
+			return;
+		final boolean singleRangeRequested = rangeRequestResult.isPartialContent() &&
+				rangeRequestResult.getRanges().size() == 1;
+		final Optional<FileVariant> optionalFileVariant = singleRangeRequested
+				? Optional.<FileVariant>empty()
+				: findStoredVariant(request, path, storedCodings);
+		final AbstractHttpEntity httpEntity;
+		if (singleRangeRequested) {
+			final ByteRange range = rangeRequestResult.getRanges().get(0);
+			response.setHeader(ETAG, validators.getEntityTag());
+			response.setHeader(CONTENT_RANGE, range.toContentRange(entry.getLength()));
+			templatedHttpResponder.respondWithPartialContent(response);
+			httpEntity = new StoredFileEntity(storage, path, range);
+		} else if (optionalFileVariant.isPresent()) {
+			final ContentCoding coding = optionalFileVariant.get().getContentCoding();
+			response.setHeader(ETAG, validators.getEntityTagOfVariant(coding));
+			response.setHeader(CONTENT_ENCODING, coding.getToken());
+			httpEntity = new StoredFileVariantEntity(optionalFileVariant.get());
+		} else {
+			response.setHeader(ETAG, validators.getEntityTag());
+			httpEntity = new StoredFileEntity(storage, path, entry.getLength());
+		}
+		final Optional<String> optionalContentType = mimeTypeTable.mimeTypeOf(entry.getName());
+		if (optionalContentType.isPresent())
+			httpEntity.setContentType(ContentType.create(optionalContentType.get()).toString());
+		response.setEntity(httpEntity);
+	}
+
+	private Optional<FileVariant> findStoredVariant(HttpRequest request, String path,
+													List<ContentCoding> storedCodings) throws IOException {
+		if (storedCodings.isEmpty())
+			return Optional.empty();
+		final Optional<ContentCoding> optionalCoding = acceptEncodingNegotiator.negotiate(request, storedCodings);
+		return optionalCoding.isPresent()
+				? ((EncodedFileStorage) storage).storedVariantOf(path, optionalCoding.get())
+				: Optional.<FileVariant>empty();
+	}
+
+	private void respondThatFileHasNotBeenFound(HttpFileRequest fileRequest) {
+		templatedHttpResponder.respondWithResourceNotFound(fileRequest.response(),
+				format("404: The requested resource was not found: %s", getRequestedUri(fileRequest)));
+	}
+
+	private String getRequestedUri(HttpFileRequest fileRequest) {
+		return fileRequest.request().getRequestLine().getUri();
+	}
+}
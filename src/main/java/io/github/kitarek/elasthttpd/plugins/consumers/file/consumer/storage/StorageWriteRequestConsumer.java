@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.storage;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileRequestConsumer;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryEntry;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.FileStorage;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFile;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.CONTENT_RANGE;
+
+/**
+ * Request consumer that replaces the whole content of file of {@link FileStorage} with the body of request (or
+ * creates it). Uploads in parts with Content-Range header are not supported by storage.
+ */
+public class StorageWriteRequestConsumer implements HttpFileRequestConsumer {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(StorageWriteRequestConsumer.class);
+	private final FileStorage storage;
+	private final TemplatedHttpResponder templatedHttpResponder;
+
+	public StorageWriteRequestConsumer(FileStorage storage, TemplatedHttpResponder templatedHttpResponder) {
+		this.storage = notNull(storage, "Storage cannot be null");
+		this.templatedHttpResponder = notNull(templatedHttpResponder, "Templated HTTP responder cannot be null");
+	}
+
+	public void consumeFileRequest(HttpFileRequest fileRequest) {
+		notNull(fileRequest, "File request cannot be null");
+		final String uri = getRequestedUri(fileRequest);
+		final String path = fileRequest.mapper().getNormalizedUriRequestPathWithoutQueryString(uri);
+		if (isTemporaryFile(new File(path))) {
+			templatedHttpResponder.respondWithResourceNotFound(fileRequest.response(),
+					format("Cannot find the resource or resources in requested path: %s", uri));
+			return;
+		}
+		if (fileRequest.request().getFirstHeader(CONTENT_RANGE) != null) {
+			templatedHttpResponder.respondWithBadRequest(fileRequest.response(),
+					format("Uploads in parts are not supported for resource: %s", uri));
+			return;
+		}
+		try {
+			final Optional<DirectoryEntry> optionalEntry = storage.stat(path);
+			if (optionalEntry.isPresent() && optionalEntry.get().isDirectory())
+				templatedHttpResponder.respondWithResourceForbidden(fileRequest.response(),
+						format("The following resource is directory and cannot be overwritten as file: %s", uri));
+			else
+				writeStoredFile(fileRequest, path);
+		} catch (FileNotFoundException e) {
+			LOGGER.error(format("Cannot find the directory of stored file '%s' identified by resource: '%s'", path,
+					uri), e);
+			templatedHttpResponder.respondWithResourceNotFound(fileRequest.response(),
+					format("Cannot find the resource or resources in requested path: %s", uri));
+		} catch (IOException e) {
+			LOGGER.error(format("Cannot write stored file '%s' identified by resource: '%s'", path, uri), e);
+			templatedHttpResponder.respondWithInternalServerError(fileRequest.response(),
+					format("There was an unexpected failure when creating the resource: %s", uri));
+		}
+	}
+
+	private void writeStoredFile(HttpFileRequest fileRequest, String path) throws IOException {
+		final Optional<HttpEntity> optionalEntity = entityOf(fileRequest);
+		if (optionalEntity.isPresent()) {
+			final InputStream content = optionalEntity.get().getContent();
+			try {
+				storage.write(path, content, optionalEntity.get().getContentLength());
+			} finally {
+				content.close();
+			}
+		} else {
+			storage.write(path, new ByteArrayInputStream(new byte[0]), 0);
+		}
+		templatedHttpResponder.respondThatResourceIsCreated(fileRequest.response());
+	}
+
+	private static Optional<HttpEntity> entityOf(HttpFileRequest fileRequest) {
+		return fileRequest.request() instanceof HttpEntityEnclosingRequest
+				? Optional.optional(((HttpEntityEnclosingRequest) fileRequest.request()).getEntity())
+				: Optional.<HttpEntity>empty();
+	}
+
+	private String getRequestedUri(HttpFileRequest fileRequest) {
+		return fileRequest.request().getRequestLine().getUri();
+	}
+}
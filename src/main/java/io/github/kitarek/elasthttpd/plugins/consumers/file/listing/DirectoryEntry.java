@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Immutable entry of directory listing: name, type, size and modification time of a file read at the time of scan.
+ */
+public class DirectoryEntry {
+
+	private final String name;
+	private final boolean directory;
+	private final long length;
+	private final long lastModified;
+
+	/**
+	 * Create entry
+	 *
+	 * @param name not null name of file (without any path)
+	 * @param directory true when the file is a directory
+	 * @param length size of file in bytes (0 for directories)
+	 * @param lastModified modification time of file since the epoch in milliseconds
+	 */
+	public DirectoryEntry(String name, boolean directory, long length, long lastModified) {
+		this.name = notNull(name, "Name of directory entry cannot be null");
+		this.directory = directory;
+		this.length = length;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Read entry of existing file with a single stat
+	 *
+	 * @param path not null path of file
+	 * @return not null entry
+	 * @throws IOException when attributes of file cannot be read (i.e. it was just deleted)
+	 */
+	public static DirectoryEntry readEntry(Path path) throws IOException {
+		final BasicFileAttributes attributes = Files.readAttributes(notNull(path, "Path cannot be null"),
+				BasicFileAttributes.class);
+		return new DirectoryEntry(path.getFileName().toString(), attributes.isDirectory(),
+				attributes.isDirectory() ? 0 : attributes.size(), attributes.lastModifiedTime().toMillis());
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean isDirectory() {
+		return directory;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+}
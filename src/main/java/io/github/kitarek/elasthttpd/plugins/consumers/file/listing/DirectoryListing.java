@@ -0,0 +1,194 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.present;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFileName;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Immutable snapshot of entries of a directory taken by a single scan. Entries are sorted in each order only once
+ * (when a page in that order is requested for the first time), so every next page costs a binary search of its
+ * cursor and copying of its entries.
+ */
+public class DirectoryListing {
+
+	private static final int LISTING_OVERHEAD_IN_BYTES = 256;
+	private static final int ENTRY_OVERHEAD_IN_BYTES = 64;
+	private static final int REFERENCE_SIZE_IN_BYTES = 8;
+	private final AtomicReferenceArray<DirectoryEntry[]> sortedEntries =
+			new AtomicReferenceArray<DirectoryEntry[]>(DirectoryListingSortOrder.values().length);
+	private final DirectoryEntry[] entries;
+	private final long weightInBytes;
+
+	/**
+	 * Create listing
+	 *
+	 * @param entries not null entries of directory in any order
+	 */
+	public DirectoryListing(List<DirectoryEntry> entries) {
+		this.entries = notNull(entries, "Entries cannot be null").toArray(new DirectoryEntry[entries.size()]);
+		this.weightInBytes = computeWeightInBytes(this.entries);
+	}
+
+	private static long computeWeightInBytes(DirectoryEntry[] entries) {
+		long weight = LISTING_OVERHEAD_IN_BYTES;
+		for (DirectoryEntry entry : entries)
+			weight += ENTRY_OVERHEAD_IN_BYTES + 2L * entry.getName().length() +
+					REFERENCE_SIZE_IN_BYTES * (1 + DirectoryListingSortOrder.values().length);
+		return weight;
+	}
+
+	/**
+	 * Scan directory streaming its entries, so the whole list of names is never materialized twice. Entries removed
+	 * during the scan and temporary files of uploads in progress are skipped.
+	 *
+	 * @param directory not null existing directory
+	 * @return not null listing
+	 * @throws IOException when directory cannot be read
+	 */
+	public static DirectoryListing scan(File directory) throws IOException {
+		final List<DirectoryEntry> entries = new ArrayList<DirectoryEntry>();
+		final DirectoryStream<Path> directoryStream =
+				Files.newDirectoryStream(notNull(directory, "Directory cannot be null").toPath());
+		try {
+			for (Path path : directoryStream)
+				if (!isTemporaryFileName(path.getFileName().toString()))
+					addEntryIfStillExists(entries, path);
+		} finally {
+			directoryStream.close();
+		}
+		return new DirectoryListing(entries);
+	}
+
+	private static void addEntryIfStillExists(List<DirectoryEntry> entries, Path path) throws IOException {
+		try {
+			entries.add(DirectoryEntry.readEntry(path));
+		} catch (NoSuchFileException e) {
+			// removed (or a dangling link) - not listed
+		}
+	}
+
+	/**
+	 * Get page of listing
+	 *
+	 * @param order not null order of entries
+	 * @param descending true for reversed order
+	 * @param optionalCursor not null optional probe entry of the position just after which the page starts
+	 *                       (see {@link DirectoryListingSortOrder#parseCursor(String)}); not present for the first page
+	 * @param limit positive maximum number of entries of page
+	 * @return not null page
+	 */
+	public DirectoryListingPage getPage(DirectoryListingSortOrder order, boolean descending,
+										Optional<DirectoryEntry> optionalCursor, int limit) {
+		notNull(order, "Sort order cannot be null");
+		notNull(optionalCursor, "Optional cursor cannot be null");
+		isTrue(limit > 0, "Limit of entries must be positive");
+		final DirectoryEntry[] sorted = getSortedEntries(order);
+		final List<DirectoryEntry> pageEntries = new ArrayList<DirectoryEntry>(Math.min(limit, sorted.length));
+		if (descending) {
+			int i = optionalCursor.isPresent()
+					? firstIndexNotBefore(sorted, optionalCursor.get(), order.getComparator()) - 1
+					: sorted.length - 1;
+			for (; i >= 0 && pageEntries.size() < limit; i--)
+				pageEntries.add(sorted[i]);
+			return createPage(pageEntries, sorted.length, i >= 0, order);
+		}
+		int i = optionalCursor.isPresent()
+				? firstIndexAfter(sorted, optionalCursor.get(), order.getComparator())
+				: 0;
+		for (; i < sorted.length && pageEntries.size() < limit; i++)
+			pageEntries.add(sorted[i]);
+		return createPage(pageEntries, sorted.length, i < sorted.length, order);
+	}
+
+	private DirectoryListingPage createPage(List<DirectoryEntry> pageEntries, int totalNumberOfEntries,
+											boolean hasMoreEntries, DirectoryListingSortOrder order) {
+		final Optional<String> optionalNextPageCursor = hasMoreEntries && !pageEntries.isEmpty()
+				? present(order.formatCursor(pageEntries.get(pageEntries.size() - 1)))
+				: Optional.<String>empty();
+		return new DirectoryListingPage(pageEntries, totalNumberOfEntries, optionalNextPageCursor);
+	}
+
+	private DirectoryEntry[] getSortedEntries(DirectoryListingSortOrder order) {
+		final DirectoryEntry[] cachedSortedEntries = sortedEntries.get(order.ordinal());
+		if (cachedSortedEntries != null)
+			return cachedSortedEntries;
+		final DirectoryEntry[] newSortedEntries = Arrays.copyOf(entries, entries.length);
+		Arrays.sort(newSortedEntries, order.getComparator());
+		sortedEntries.compareAndSet(order.ordinal(), null, newSortedEntries);
+		return sortedEntries.get(order.ordinal());
+	}
+
+	private static int firstIndexAfter(DirectoryEntry[] sorted, DirectoryEntry probe,
+									   Comparator<DirectoryEntry> comparator) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (comparator.compare(sorted[middle], probe) <= 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	private static int firstIndexNotBefore(DirectoryEntry[] sorted, DirectoryEntry probe,
+										   Comparator<DirectoryEntry> comparator) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			if (comparator.compare(sorted[middle], probe) < 0)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * @return number of all entries
+	 */
+	public int size() {
+		return entries.length;
+	}
+
+	/**
+	 * @return approximate memory taken by the listing (including entries sorted in all orders)
+	 */
+	public long getWeightInBytes() {
+		return weightInBytes;
+	}
+}
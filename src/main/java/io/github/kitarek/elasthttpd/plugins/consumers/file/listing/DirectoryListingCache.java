@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.Weigher;
+import io.github.kitarek.elasthttpd.commons.WeightedLruCache;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileChangeListener;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Cache of directory listings bounded by their total size in memory. A directory is scanned once and its listing
+ * is reused by all requests (and all pages) until anything changes in the directory. Listings heavier than the whole
+ * cache are never remembered.
+ */
+public class DirectoryListingCache implements DirectoryListingProvider, FileChangeListener {
+
+	private final WeightedLruCache<String, DirectoryListing> cache;
+	private final Object invalidationLock = new Object();
+	private long invalidationCount;
+
+	/**
+	 * Create cache
+	 *
+	 * @param maximumCacheSizeInBytes positive limit of memory taken by remembered listings
+	 */
+	public DirectoryListingCache(long maximumCacheSizeInBytes) {
+		cache = new WeightedLruCache<String, DirectoryListing>(maximumCacheSizeInBytes,
+				new Weigher<DirectoryListing>() {
+					public long weigh(DirectoryListing value) {
+						return value.getWeightInBytes();
+					}
+				});
+	}
+
+	public DirectoryListing provideListing(File directory) throws IOException {
+		final String key = notNull(directory, "Directory cannot be null").getAbsolutePath();
+		final Optional<DirectoryListing> optionalListing = cache.get(key);
+		if (optionalListing.isPresent())
+			return optionalListing.get();
+		final long invalidationCountBeforeScan = getInvalidationCount();
+		final DirectoryListing listing = DirectoryListing.scan(directory);
+		synchronized (invalidationLock) {
+			if (invalidationCount == invalidationCountBeforeScan)
+				cache.put(key, listing);
+		}
+		return listing;
+	}
+
+	private long getInvalidationCount() {
+		synchronized (invalidationLock) {
+			return invalidationCount;
+		}
+	}
+
+	/**
+	 * Forget listings of the changed file (when it is a directory), of its parent directory and of all directories
+	 * under it.
+	 *
+	 * @param file not null changed file
+	 */
+	public void fileChanged(File file) {
+		final String changedPath = notNull(file, "File cannot be null").getAbsolutePath();
+		final String changedDirectoryContentPrefix = changedPath + File.separator;
+		final String parentPath = file.getAbsoluteFile().getParent();
+		synchronized (invalidationLock) {
+			invalidationCount++;
+			for (String directoryPath : cache.keys())
+				if (directoryPath.equals(changedPath) || directoryPath.equals(parentPath) ||
+						directoryPath.startsWith(changedDirectoryContentPrefix))
+					cache.remove(directoryPath);
+		}
+	}
+
+	public void allFilesChanged() {
+		synchronized (invalidationLock) {
+			invalidationCount++;
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return the underlying cache of listings (i.e. for checking its statistics)
+	 */
+	public WeightedLruCache<String, DirectoryListing> getCache() {
+		return cache;
+	}
+}
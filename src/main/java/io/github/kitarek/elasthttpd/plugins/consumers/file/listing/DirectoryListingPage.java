@@ -0,0 +1,61 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Immutable page of directory listing together with the cursor of the next page.
+ */
+public class DirectoryListingPage {
+
+	private final List<DirectoryEntry> entries;
+	private final int totalNumberOfEntries;
+	private final Optional<String> optionalNextPageCursor;
+
+	/**
+	 * Create page
+	 *
+	 * @param entries not null entries of page in requested order
+	 * @param totalNumberOfEntries number of entries of the whole listing
+	 * @param optionalNextPageCursor not null optional cursor of the next page; not present for the last page
+	 */
+	public DirectoryListingPage(List<DirectoryEntry> entries, int totalNumberOfEntries,
+								Optional<String> optionalNextPageCursor) {
+		this.entries = unmodifiableList(notNull(entries, "Entries cannot be null"));
+		this.totalNumberOfEntries = totalNumberOfEntries;
+		this.optionalNextPageCursor = notNull(optionalNextPageCursor, "Optional next page cursor cannot be null");
+	}
+
+	public List<DirectoryEntry> getEntries() {
+		return entries;
+	}
+
+	public int getTotalNumberOfEntries() {
+		return totalNumberOfEntries;
+	}
+
+	public Optional<String> getNextPageCursor() {
+		return optionalNextPageCursor;
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Provides listings of directories (i.e. remembered ones) instead of scanning them on every request.
+ */
+public interface DirectoryListingProvider {
+
+	/**
+	 * Provide listing of directory
+	 *
+	 * @param directory not null existing directory
+	 * @return not null listing
+	 * @throws IOException when directory needs to be scanned and cannot be read
+	 */
+	DirectoryListing provideListing(File directory) throws IOException;
+}
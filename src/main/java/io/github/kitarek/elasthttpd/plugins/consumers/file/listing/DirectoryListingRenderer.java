@@ -0,0 +1,42 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import org.apache.http.entity.ContentType;
+
+/**
+ * Renders page of directory listing in a single format.
+ */
+public interface DirectoryListingRenderer {
+
+	/**
+	 * @return not null content type of rendered pages
+	 */
+	ContentType getContentType();
+
+	/**
+	 * Render page
+	 *
+	 * @param directoryRequestPath not null request path of directory always ending with '/' (as sent by client)
+	 * @param page not null page of listing
+	 * @param optionalNextPageUri not null optional URI of the next page; not present for the last page
+	 * @return not null rendered page
+	 */
+	byte[] render(String directoryRequestPath, DirectoryListingPage page, Optional<String> optionalNextPageUri);
+}
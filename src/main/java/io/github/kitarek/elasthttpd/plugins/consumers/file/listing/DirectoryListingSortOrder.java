@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+
+import java.util.Comparator;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty;
+import static io.github.kitarek.elasthttpd.commons.Optional.present;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Orders in which entries of directory listing can be sorted. Every order is total (entries with the same key are
+ * ordered by name), so a page cursor - the sort key and name of the last entry of the previous page - points to
+ * a stable position even when the listing changes between requests.
+ */
+public enum DirectoryListingSortOrder {
+
+	NAME("name") {
+		@Override
+		long keyOf(DirectoryEntry entry) {
+			return 0;
+		}
+	},
+	SIZE("size") {
+		@Override
+		long keyOf(DirectoryEntry entry) {
+			return entry.getLength();
+		}
+	},
+	MODIFIED("modified") {
+		@Override
+		long keyOf(DirectoryEntry entry) {
+			return entry.getLastModified();
+		}
+	};
+
+	private static final char CURSOR_KEY_SEPARATOR = ':';
+	private final String token;
+	private final Comparator<DirectoryEntry> comparator = new Comparator<DirectoryEntry>() {
+		public int compare(DirectoryEntry first, DirectoryEntry second) {
+			final long firstKey = keyOf(first);
+			final long secondKey = keyOf(second);
+			if (firstKey != secondKey)
+				return firstKey < secondKey ? -1 : 1;
+			return first.getName().compareTo(second.getName());
+		}
+	};
+
+	DirectoryListingSortOrder(String token) {
+		this.token = token;
+	}
+
+	abstract long keyOf(DirectoryEntry entry);
+
+	/**
+	 * @return not null name of order used in query string (i.e. 'size')
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * @return not null comparator of entries in ascending order
+	 */
+	public Comparator<DirectoryEntry> getComparator() {
+		return comparator;
+	}
+
+	/**
+	 * Find order by its name used in query string
+	 *
+	 * @param token not null name of order
+	 * @return optional order; not present when name is unknown
+	 */
+	public static Optional<DirectoryListingSortOrder> fromToken(String token) {
+		notNull(token, "Token of sort order cannot be null");
+		for (DirectoryListingSortOrder order : values())
+			if (order.token.equals(token))
+				return present(order);
+		return empty();
+	}
+
+	/**
+	 * @param entry not null last entry of page
+	 * @return not null cursor pointing just after the entry in this order
+	 */
+	public String formatCursor(DirectoryEntry entry) {
+		notNull(entry, "Directory entry cannot be null");
+		return this == NAME ? entry.getName() : keyOf(entry) + String.valueOf(CURSOR_KEY_SEPARATOR) + entry.getName();
+	}
+
+	/**
+	 * @param cursor not null cursor formatted by {@link #formatCursor(DirectoryEntry)}
+	 * @return optional probe entry with the same position in this order as the entry of cursor; not present when
+	 * the cursor is malformed
+	 */
+	public Optional<DirectoryEntry> parseCursor(String cursor) {
+		notNull(cursor, "Cursor cannot be null");
+		if (this == NAME)
+			return present(new DirectoryEntry(cursor, false, 0, 0));
+		final int separatorIndex = cursor.indexOf(CURSOR_KEY_SEPARATOR);
+		if (separatorIndex <= 0)
+			return empty();
+		final long key;
+		try {
+			key = Long.parseLong(cursor.substring(0, separatorIndex));
+		} catch (NumberFormatException e) {
+			return empty();
+		}
+		return present(new DirectoryEntry(cursor.substring(separatorIndex + 1), false, key, key));
+	}
+}
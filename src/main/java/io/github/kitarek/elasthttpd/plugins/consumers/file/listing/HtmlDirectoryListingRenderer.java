@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing;
+
+import io.github.kitarek.elasthttpd.commons.HttpDates;
+import io.github.kitarek.elasthttpd.commons.Optional;
+import org.apache.http.Consts;
+import org.apache.http.entity.ContentType;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Renders page of directory listing as a simple HTML table with links to entries (and to the parent directory and
+ * the next page).
+ */
+public class HtmlDirectoryListingRenderer implements DirectoryListingRenderer {
+
+	private static final ContentType TEXT_HTML_UTF_8 = ContentType.create("text/html", Consts.UTF_8);
+	private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+	private static final int BYTES_PER_ENTRY = 160;
+	private static final String PATH_SEPARATOR = "/";
+
+	public ContentType getContentType() {
+		return TEXT_HTML_UTF_8;
+	}
+
+	public byte[] render(String directoryRequestPath, DirectoryListingPage page, Optional<String> optionalNextPageUri) {
+		notNull(directoryRequestPath, "Directory request path cannot be null");
+		notNull(page, "Page cannot be null");
+		notNull(optionalNextPageUri, "Optional next page URI cannot be null");
+		final StringBuilder html = new StringBuilder(BYTES_PER_ENTRY * (page.getEntries().size() + 4));
+		html.append("<!DOCTYPE html>\n<html><head><meta charset=\"utf-8\"><title>Index of ");
+		appendEscaped(html, directoryRequestPath);
+		html.append("</title></head><body>\n<h1>Index of ");
+		appendEscaped(html, directoryRequestPath);
+		html.append("</h1>\n<table>\n<tr><th>Name</th><th>Size</th><th>Last modified</th></tr>\n");
+		if (!PATH_SEPARATOR.equals(directoryRequestPath))
+			appendRow(html, parentOf(directoryRequestPath), "../", "", "");
+		for (DirectoryEntry entry : page.getEntries())
+			appendEntry(html, directoryRequestPath, entry);
+		html.append("</table>\n<p>").append(page.getTotalNumberOfEntries()).append(" entries</p>\n");
+		if (optionalNextPageUri.isPresent()) {
+			html.append("<p><a href=\"");
+			appendEscaped(html, optionalNextPageUri.get());
+			html.append("\">Next page</a></p>\n");
+		}
+		html.append("</body></html>\n");
+		return html.toString().getBytes(Consts.UTF_8);
+	}
+
+	private static String parentOf(String directoryRequestPath) {
+		return directoryRequestPath.substring(0,
+				directoryRequestPath.lastIndexOf(PATH_SEPARATOR, directoryRequestPath.length() - 2) + 1);
+	}
+
+	private static void appendEntry(StringBuilder html, String directoryRequestPath, DirectoryEntry entry) {
+		final String suffix = entry.isDirectory() ? PATH_SEPARATOR : "";
+		final StringBuilder href = new StringBuilder(directoryRequestPath);
+		appendPercentEncoded(href, entry.getName());
+		href.append(suffix);
+		appendRow(html, href.toString(), entry.getName() + suffix,
+				entry.isDirectory() ? "-" : String.valueOf(entry.getLength()),
+				HttpDates.formatDate(entry.getLastModified()));
+	}
+
+	private static void appendRow(StringBuilder html, String href, String name, String size, String lastModified) {
+		html.append("<tr><td><a href=\"");
+		appendEscaped(html, href);
+		html.append("\">");
+		appendEscaped(html, name);
+		html.append("</a></td><td>").append(size).append("</td><td>").append(lastModified).append("</td></tr>\n");
+	}
+
+	private static void appendEscaped(StringBuilder html, String text) {
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			switch (c) {
+				case '&': html.append("&amp;"); break;
+				case '<': html.append("&lt;"); break;
+				case '>': html.append("&gt;"); break;
+				case '"': html.append("&quot;"); break;
+				case '\'': html.append("&#39;"); break;
+				default: html.append(c);
+			}
+		}
+	}
+
+	private static void appendPercentEncoded(StringBuilder uri, String pathSegment) {
+		for (byte b : pathSegment.getBytes(Consts.UTF_8)) {
+			final int c = b & 0xFF;
+			if (isUnreserved(c)) {
+				uri.append((char) c);
+			} else {
+				uri.append('%').append(HEX_DIGITS[c >> 4]).append(HEX_DIGITS[c & 0x0F]);
+			}
+		}
+	}
+
+	private static boolean isUnreserved(int c) {
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') ||
+				c == '-' || c == '.' || c == '_' || c == '~';
+	}
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import org.apache.http.Consts;
+import org.apache.http.entity.ContentType;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Renders page of directory listing as JSON object:
+ * <pre>
+ * {"path":"/docs/","total":2,"entries":[{"name":"a","type":"directory","size":0,"modified":1445000000000},...],
+ *  "next":"/docs/?limit=1&amp;after=a"}
+ * </pre>
+ * where "modified" is time since the epoch in milliseconds and "next" is null for the last page.
+ */
+public class JsonDirectoryListingRenderer implements DirectoryListingRenderer {
+
+	private static final ContentType APPLICATION_JSON_UTF_8 = ContentType.create("application/json", Consts.UTF_8);
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	private static final int BYTES_PER_ENTRY = 96;
+	private static final char FIRST_PRINTABLE_CHARACTER = ' ';
+	private static final char LINE_SEPARATOR = 0x2028;
+	private static final char PARAGRAPH_SEPARATOR = 0x2029;
+
+	public ContentType getContentType() {
+		return APPLICATION_JSON_UTF_8;
+	}
+
+	public byte[] render(String directoryRequestPath, DirectoryListingPage page, Optional<String> optionalNextPageUri) {
+		notNull(directoryRequestPath, "Directory request path cannot be null");
+		notNull(page, "Page cannot be null");
+		notNull(optionalNextPageUri, "Optional next page URI cannot be null");
+		final StringBuilder json = new StringBuilder(BYTES_PER_ENTRY * (page.getEntries().size() + 2));
+		json.append("{\"path\":");
+		appendString(json, directoryRequestPath);
+		json.append(",\"total\":").append(page.getTotalNumberOfEntries()).append(",\"entries\":[");
+		boolean first = true;
+		for (DirectoryEntry entry : page.getEntries()) {
+			if (!first)
+				json.append(',');
+			first = false;
+			json.append("{\"name\":");
+			appendString(json, entry.getName());
+			json.append(",\"type\":\"").append(entry.isDirectory() ? "directory" : "file")
+					.append("\",\"size\":").append(entry.getLength())
+					.append(",\"modified\":").append(entry.getLastModified()).append('}');
+		}
+		json.append("],\"next\":");
+		if (optionalNextPageUri.isPresent())
+			appendString(json, optionalNextPageUri.get());
+		else
+			json.append("null");
+		json.append('}');
+		return json.toString().getBytes(Consts.UTF_8);
+	}
+
+	private static void appendString(StringBuilder json, String text) {
+		json.append('"');
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if (c == '"' || c == '\\')
+				json.append('\\').append(c);
+			else if (c < FIRST_PRINTABLE_CHARACTER || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR)
+				json.append("\\u").append(HEX_DIGITS[c >> 12 & 0x0F]).append(HEX_DIGITS[c >> 8 & 0x0F])
+						.append(HEX_DIGITS[c >> 4 & 0x0F]).append(HEX_DIGITS[c & 0x0F]);
+			else
+				json.append(c);
+		}
+		json.append('"');
+	}
+}
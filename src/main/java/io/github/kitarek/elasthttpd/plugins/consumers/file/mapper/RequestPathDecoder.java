@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.mapper;
+
+import java.nio.charset.Charset;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Decodes percent-encoded request path and normalizes it in a single pass. The result is the same as decoding
+ * the path with {@link java.net.URLDecoder} and normalizing it with {@link java.nio.file.Path#normalize()}:
+ * '+' is decoded as space, empty and '.' segments are removed and '..' segments remove previous segment but never
+ * go above the root - also when the separator or dots were percent-encoded.
+ */
+final class RequestPathDecoder {
+
+	private static final char SEGMENT_SEPARATOR = '/';
+	private static final char ESCAPE_CHARACTER = '%';
+	private static final char ENCODED_SPACE = '+';
+	private static final char NULL_CHARACTER = '\0';
+	private static final int ESCAPE_SEQUENCE_LENGTH = 3;
+	private static final int HEX_RADIX = 16;
+	private static final int LAST_ASCII_BYTE = 0x7F;
+	private final StringBuilder normalizedPath;
+	private int segmentStart;
+
+	private RequestPathDecoder(int capacity) {
+		normalizedPath = new StringBuilder(capacity);
+		normalizedPath.append(SEGMENT_SEPARATOR);
+		segmentStart = normalizedPath.length();
+	}
+
+	/**
+	 * Decode and normalize request path
+	 *
+	 * @param requestPath not null request path without query string
+	 * @param charset not null charset of bytes that are percent-encoded
+	 * @return not null absolute normalized path always starting with '/' and never ending with '/' (except the root)
+	 * @throws IllegalArgumentException when the path contains incomplete or illegal escape sequence or null character
+	 */
+	static String decodeRequestPath(String requestPath, Charset charset) {
+		notNull(requestPath, "Request path cannot be null");
+		notNull(charset, "Charset cannot be null");
+		final RequestPathDecoder decoder = new RequestPathDecoder(requestPath.length() + 1);
+		final int length = requestPath.length();
+		int i = 0;
+		while (i < length) {
+			final char c = requestPath.charAt(i);
+			if (c == ESCAPE_CHARACTER) {
+				i = decoder.appendEscapeSequences(requestPath, i, charset);
+			} else {
+				decoder.append(c == ENCODED_SPACE ? ' ' : c);
+				i++;
+			}
+		}
+		return decoder.toNormalizedPath();
+	}
+
+	private int appendEscapeSequences(String requestPath, int start, Charset charset) {
+		final int length = requestPath.length();
+		final byte[] bytes = new byte[(length - start) / ESCAPE_SEQUENCE_LENGTH];
+		int numberOfBytes = 0;
+		boolean onlyAsciiBytes = true;
+		int i = start;
+		while (i < length && requestPath.charAt(i) == ESCAPE_CHARACTER) {
+			isTrue(i + ESCAPE_SEQUENCE_LENGTH <= length, "Incomplete trailing escape sequence in request path");
+			final int b = (hexDigit(requestPath.charAt(i + 1)) << 4) | hexDigit(requestPath.charAt(i + 2));
+			onlyAsciiBytes &= b <= LAST_ASCII_BYTE;
+			bytes[numberOfBytes++] = (byte) b;
+			i += ESCAPE_SEQUENCE_LENGTH;
+		}
+		if (onlyAsciiBytes)
+			for (int j = 0; j < numberOfBytes; j++)
+				append((char) bytes[j]);
+		else
+			appendAll(new String(bytes, 0, numberOfBytes, charset));
+		return i;
+	}
+
+	private static int hexDigit(char c) {
+		final int digit = c <= LAST_ASCII_BYTE ? Character.digit(c, HEX_RADIX) : -1;
+		isTrue(digit >= 0, "Illegal hex character in escape sequence of request path");
+		return digit;
+	}
+
+	private void appendAll(String decoded) {
+		for (int i = 0; i < decoded.length(); i++)
+			append(decoded.charAt(i));
+	}
+
+	private void append(char c) {
+		isTrue(c != NULL_CHARACTER, "Request path cannot contain null character");
+		if (c == SEGMENT_SEPARATOR)
+			finishSegment();
+		else
+			normalizedPath.append(c);
+	}
+
+	private void finishSegment() {
+		if (isCurrentSegment("") || isCurrentSegment(".")) {
+			normalizedPath.setLength(segmentStart);
+		} else if (isCurrentSegment("..")) {
+			normalizedPath.setLength(segmentStart);
+			removePreviousSegment();
+		} else {
+			normalizedPath.append(SEGMENT_SEPARATOR);
+			segmentStart = normalizedPath.length();
+		}
+	}
+
+	private boolean isCurrentSegment(String segment) {
+		final int segmentLength = normalizedPath.length() - segmentStart;
+		if (segmentLength != segment.length())
+			return false;
+		for (int i = 0; i < segmentLength; i++)
+			if (normalizedPath.charAt(segmentStart + i) != segment.charAt(i))
+				return false;
+		return true;
+	}
+
+	private void removePreviousSegment() {
+		if (segmentStart == 1)
+			return;
+		segmentStart = normalizedPath.lastIndexOf(String.valueOf(SEGMENT_SEPARATOR), segmentStart - 2) + 1;
+		normalizedPath.setLength(segmentStart);
+	}
+
+	private String toNormalizedPath() {
+		finishSegment();
+		if (normalizedPath.length() > 1)
+			normalizedPath.setLength(normalizedPath.length() - 1);
+		return normalizedPath.toString();
+	}
+}
@@ -17,22 +17,25 @@
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.mapper;
 
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.SegmentedLruCache;
+import io.github.kitarek.elasthttpd.commons.Weigher;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
 import java.nio.charset.Charset;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 
 import static org.apache.commons.lang3.StringUtils.*;
 import static org.apache.commons.lang3.Validate.*;
 
 /**
  * Maps server URIs to local filesystem using one directory as base root path for mapping all resources.
+ *
+ * Mapping depends only on the path of URI (query string is ignored), so resolved paths of recently requested paths
+ * are remembered and mapping of a hot path is a single hash lookup. The number of remembered paths is limited - they
+ * are evicted one by one in segmented LRU order, so a flood of paths requested only once does not flush hot ones.
  */
 public class UriToFileMapper {
 
@@ -40,9 +43,32 @@ public class UriToFileMapper {
 	public static final String ROOT_URI_REQUEST_PATH = "/";
 	public static final String RESOURCE_PATH_SEPARATOR = "/";
 	public static final String QUERY_STRING_REQUEST_PATH_SEPARATOR = "?";
+	public static final int DEFAULT_MAXIMUM_NUMBER_OF_RESOLVED_PATHS = 4096;
+	public static final int MAXIMUM_CACHED_URI_LENGTH = 1024;
 	private final String pathToMappedRootDirectory;
+	private final Charset charset = Charset.defaultCharset();
+	private final Optional<SegmentedLruCache<String, String>> optionalResolvedPaths;
 
 	public UriToFileMapper(String pathToMappedRootDirectory) {
+		this(pathToMappedRootDirectory, DEFAULT_MAXIMUM_NUMBER_OF_RESOLVED_PATHS);
+	}
+
+	/**
+	 * Create mapper
+	 *
+	 * @param pathToMappedRootDirectory not empty absolute path to existing and readable directory
+	 * @param maximumNumberOfResolvedPaths non-negative limit of remembered resolved paths; 0 disables remembering
+	 */
+	public UriToFileMapper(String pathToMappedRootDirectory, int maximumNumberOfResolvedPaths) {
+		isTrue(maximumNumberOfResolvedPaths >= 0, "Maximum number of resolved paths cannot be negative");
+		this.optionalResolvedPaths = maximumNumberOfResolvedPaths > 0
+				? Optional.present(new SegmentedLruCache<String, String>(maximumNumberOfResolvedPaths,
+						new Weigher<String>() {
+							public long weigh(String value) {
+								return 1;
+							}
+						}))
+				: Optional.<SegmentedLruCache<String, String>>empty();
 		this.pathToMappedRootDirectory =
 				defaultIfEmpty(
 					removeEnd(
@@ -67,24 +93,34 @@ public class UriToFileMapper {
 	}
 
 	public String mapUriRequestPath(String uriRequestPath) {
+		final String requestPath = substringBefore(uriRequestPath, QUERY_STRING_REQUEST_PATH_SEPARATOR);
+		final Optional<String> optionalResolvedPath = requestPath != null && optionalResolvedPaths.isPresent()
+				? optionalResolvedPaths.get().get(requestPath)
+				: Optional.<String>empty();
+		if (optionalResolvedPath.isPresent())
+			return optionalResolvedPath.get();
 		isTrue(isCorrectUriRequestPath(uriRequestPath), "URI request path is not correct");
-		return removeEnd(pathToMappedRootDirectory + getNormalizedUriRequestPathWithoutQueryString(uriRequestPath), RESOURCE_PATH_SEPARATOR);
+		final String mappedPath = removeEnd(pathToMappedRootDirectory +
+				RequestPathDecoder.decodeRequestPath(requestPath, charset), RESOURCE_PATH_SEPARATOR);
+		rememberResolvedPath(requestPath, mappedPath);
+		return mappedPath;
 	}
 
-	public String getNormalizedUriRequestPathWithoutQueryString(String uriRequestPath) {
-		return normalizeUrlRequestPath(StringUtils.substringBefore(uriRequestPath, QUERY_STRING_REQUEST_PATH_SEPARATOR));
+	private void rememberResolvedPath(String requestPath, String mappedPath) {
+		if (optionalResolvedPaths.isPresent() && requestPath.length() <= MAXIMUM_CACHED_URI_LENGTH)
+			optionalResolvedPaths.get().put(requestPath, mappedPath);
 	}
 
-	private String normalizeUrlRequestPath(String uriRequestPath) {
-		String localRequestPath;
-		try {
-			localRequestPath = URLDecoder.decode(uriRequestPath, Charset.defaultCharset().displayName());
-		} catch (UnsupportedEncodingException e) {
-			LOGGER.error("Cannot decode URI. Using original URI path for file", e);
-			localRequestPath = uriRequestPath;
-		}
-		final Path p = Paths.get(localRequestPath);
-		return p.normalize().toAbsolutePath().toString();
+	/**
+	 * @return number of currently remembered resolved paths
+	 */
+	public int getNumberOfResolvedPaths() {
+		return optionalResolvedPaths.isPresent() ? optionalResolvedPaths.get().size() : 0;
+	}
+
+	public String getNormalizedUriRequestPathWithoutQueryString(String uriRequestPath) {
+		return RequestPathDecoder.decodeRequestPath(
+				StringUtils.substringBefore(uriRequestPath, QUERY_STRING_REQUEST_PATH_SEPARATOR), charset);
 	}
 
 }
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.metadata;
+
+import io.github.kitarek.elasthttpd.commons.Base64Codec;
+import io.github.kitarek.elasthttpd.commons.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.InvalidPathException;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty;
+import static java.lang.String.format;
+import static java.nio.file.Files.getFileAttributeView;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Keeps SHA-256 digest of file content in an extended attribute of the file, so a digest computed once
+ * (i.e. while the file was uploaded) is available to entity tags and digest headers without reading the file again.
+ *
+ * The digest is stored together with the length and modification time of the file and it is ignored as soon as
+ * any of them differs, so a file changed by any other means is never described by a stale digest. When the file
+ * system does not support extended attributes nothing is stored and no digest is ever found.
+ */
+public class ContentDigestStore {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(ContentDigestStore.class);
+	public static final String DIGEST_ALGORITHM = "SHA-256";
+	public static final int DIGEST_LENGTH_IN_BYTES = 32;
+	public static final String ATTRIBUTE_NAME = "elasthttpd.sha256";
+	private static final int MAXIMUM_ATTRIBUTE_SIZE_IN_BYTES = 128;
+	private static final String SEPARATOR = ":";
+	private static final Charset ATTRIBUTE_CHARSET = Charset.forName("US-ASCII");
+
+	/**
+	 * Store digest of the current content of file
+	 *
+	 * @param file not null file which content is described by the digest
+	 * @param digest not null SHA-256 digest of the whole content of file
+	 * @return true if digest was stored; false if the file system does not support it or it failed
+	 */
+	public boolean store(File file, byte[] digest) {
+		notNull(file, "File cannot be null");
+		isTrue(notNull(digest, "Digest cannot be null").length == DIGEST_LENGTH_IN_BYTES,
+				"Digest must be %d bytes long", DIGEST_LENGTH_IN_BYTES);
+		final Optional<UserDefinedFileAttributeView> optionalView = getAttributeView(file);
+		if (optionalView.isNotPresent())
+			return false;
+		final String value = file.length() + SEPARATOR + file.lastModified() + SEPARATOR + Base64Codec.encode(digest);
+		try {
+			optionalView.get().write(ATTRIBUTE_NAME, ByteBuffer.wrap(value.getBytes(ATTRIBUTE_CHARSET)));
+			return true;
+		} catch (IOException e) {
+			LOGGER.debug(format("Cannot store digest of file %s", file), e);
+			return false;
+		} catch (UnsupportedOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Load digest of the file that was stored for its current version
+	 *
+	 * @param file not null file
+	 * @param length the current length of file
+	 * @param lastModified the current modification time of file
+	 * @return optional SHA-256 digest; not present when it was not stored for the given version of file
+	 */
+	public Optional<byte[]> load(File file, long length, long lastModified) {
+		notNull(file, "File cannot be null");
+		final Optional<UserDefinedFileAttributeView> optionalView = getAttributeView(file);
+		if (optionalView.isNotPresent())
+			return empty();
+		try {
+			final ByteBuffer buffer = ByteBuffer.allocate(MAXIMUM_ATTRIBUTE_SIZE_IN_BYTES);
+			optionalView.get().read(ATTRIBUTE_NAME, buffer);
+			buffer.flip();
+			return parse(ATTRIBUTE_CHARSET.decode(buffer).toString(), length, lastModified);
+		} catch (IOException e) {
+			return empty();
+		} catch (UnsupportedOperationException e) {
+			return empty();
+		}
+	}
+
+	private static Optional<byte[]> parse(String value, long length, long lastModified) {
+		final String[] parts = value.split(SEPARATOR, -1);
+		if (parts.length != 3 || !parts[0].equals(Long.toString(length)) ||
+				!parts[1].equals(Long.toString(lastModified)))
+			return empty();
+		final Optional<byte[]> optionalDigest = Base64Codec.decode(parts[2]);
+		return optionalDigest.isPresent() && optionalDigest.get().length == DIGEST_LENGTH_IN_BYTES
+				? optionalDigest : Optional.<byte[]>empty();
+	}
+
+	private static Optional<UserDefinedFileAttributeView> getAttributeView(File file) {
+		try {
+			return Optional.optional(getFileAttributeView(file.toPath(), UserDefinedFileAttributeView.class));
+		} catch (InvalidPathException e) {
+			return empty();
+		}
+	}
+}
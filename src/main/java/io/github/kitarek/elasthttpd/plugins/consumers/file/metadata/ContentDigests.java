@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.metadata;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Computes digests of file content (SHA-256 as kept by {@link ContentDigestStore}) and encodes them as hex strings.
+ */
+public final class ContentDigests {
+
+	private static final int READ_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private ContentDigests() {
+	}
+
+	/**
+	 * Create digest with algorithm every Java platform is required to support
+	 *
+	 * @param algorithm not null name of algorithm (i.e. MD5, SHA-1 or SHA-256)
+	 * @return not null new digest
+	 * @throws IllegalStateException when the platform does not support the algorithm
+	 */
+	public static MessageDigest createMessageDigest(String algorithm) {
+		try {
+			return MessageDigest.getInstance(notNull(algorithm, "Digest algorithm cannot be null"));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("Every Java platform is required to support " + algorithm, e);
+		}
+	}
+
+	/**
+	 * Read the whole file and compute SHA-256 digest of its content
+	 *
+	 * @param file not null readable file
+	 * @return not null digest of {@link ContentDigestStore#DIGEST_LENGTH_IN_BYTES} bytes
+	 * @throws IOException when the file cannot be read
+	 */
+	public static byte[] computeDigest(File file) throws IOException {
+		final MessageDigest messageDigest = createMessageDigest(ContentDigestStore.DIGEST_ALGORITHM);
+		final InputStream inputStream = new FileInputStream(notNull(file, "File cannot be null"));
+		try {
+			final byte[] buffer = new byte[READ_BUFFER_SIZE_IN_BYTES];
+			int readBytes;
+			while ((readBytes = inputStream.read(buffer)) != -1)
+				messageDigest.update(buffer, 0, readBytes);
+			return messageDigest.digest();
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * @param bytes not null bytes (i.e. a digest)
+	 * @return not null lower case hex string of all bytes
+	 */
+	public static String toHex(byte[] bytes) {
+		return toHex(bytes, notNull(bytes, "Bytes cannot be null").length);
+	}
+
+	/**
+	 * @param bytes not null bytes (i.e. a digest)
+	 * @param length number of leading bytes to encode, not bigger than the number of bytes
+	 * @return not null lower case hex string of leading bytes
+	 */
+	public static String toHex(byte[] bytes, int length) {
+		isTrue(length >= 0 && length <= notNull(bytes, "Bytes cannot be null").length,
+				"Number of encoded bytes must be between 0 and %d", bytes.length);
+		final char[] hex = new char[length * 2];
+		for (int i = 0; i < length; i++) {
+			hex[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+			hex[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xF];
+		}
+		return new String(hex);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.metadata;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Immutable snapshot of metadata of a filesystem element needed to serve it: type, readability, size and
+ * modification time.
+ */
+public class FileMetadata {
+
+	/**
+	 * Metadata of element that does not exist (or cannot be accessed at all)
+	 */
+	public static final FileMetadata NOT_EXISTING = new FileMetadata(false, false, false, false, 0, 0);
+	private final boolean existing;
+	private final boolean directory;
+	private final boolean regularFile;
+	private final boolean readable;
+	private final long length;
+	private final long lastModified;
+
+	public FileMetadata(boolean existing, boolean directory, boolean regularFile, boolean readable, long length,
+						long lastModified) {
+		this.existing = existing;
+		this.directory = directory;
+		this.regularFile = regularFile;
+		this.readable = readable;
+		this.length = length;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * Read metadata of file with two system calls: a stat of all its basic attributes and an access check of its
+	 * readability (basic attributes do not tell whether the server may read the file)
+	 *
+	 * @param file not null file
+	 * @return not null metadata; {@link #NOT_EXISTING} when file does not exist or cannot be accessed
+	 */
+	public static FileMetadata readMetadata(File file) {
+		notNull(file, "File cannot be null");
+		try {
+			final Path path = file.toPath();
+			final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			return new FileMetadata(true, attributes.isDirectory(), attributes.isRegularFile(),
+					Files.isReadable(path), attributes.size(), attributes.lastModifiedTime().toMillis());
+		} catch (IOException e) {
+			return NOT_EXISTING;
+		} catch (InvalidPathException e) {
+			return NOT_EXISTING;
+		}
+	}
+
+	public boolean exists() {
+		return existing;
+	}
+
+	public boolean isDirectory() {
+		return directory;
+	}
+
+	public boolean isRegularFile() {
+		return regularFile;
+	}
+
+	public boolean isReadable() {
+		return readable;
+	}
+
+	public long getLength() {
+		return length;
+	}
+
+	public long getLastModified() {
+		return lastModified;
+	}
+}
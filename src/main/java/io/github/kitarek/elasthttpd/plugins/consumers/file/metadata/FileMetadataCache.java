@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.metadata;
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileChangeListener;
+
+import java.io.File;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Concurrent cache of file metadata keyed by absolute path of file. Every entry lives for a short time to live, so
+ * changes made outside of the server are noticed quickly even if nobody notifies the cache about them, and it is
+ * invalidated immediately when the cache is notified about a change. A request costs two system calls on a miss
+ * (see {@link FileMetadata#readMetadata(File)}) and no filesystem access on a hit.
+ *
+ * The number of entries is limited - when the limit is reached expired entries are purged and new metadata is not
+ * remembered until some entries expire.
+ */
+public class FileMetadataCache implements FileMetadataProvider, FileChangeListener {
+
+	public static final int DEFAULT_MAXIMUM_NUMBER_OF_ENTRIES = 65536;
+	private final ConcurrentMap<String, CachedMetadata> cachedMetadata =
+			new ConcurrentHashMap<String, CachedMetadata>();
+	private final AtomicInteger numberOfEntries = new AtomicInteger();
+	private final AtomicLong invalidationCount = new AtomicLong();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final long timeToLiveInNanoseconds;
+	private final int maximumNumberOfEntries;
+
+	/**
+	 * Create cache with default limit of entries
+	 *
+	 * @param timeToLiveInMilliseconds positive time for which metadata is remembered
+	 */
+	public FileMetadataCache(long timeToLiveInMilliseconds) {
+		this(timeToLiveInMilliseconds, DEFAULT_MAXIMUM_NUMBER_OF_ENTRIES);
+	}
+
+	/**
+	 * Create cache
+	 *
+	 * @param timeToLiveInMilliseconds positive time for which metadata is remembered
+	 * @param maximumNumberOfEntries positive limit of remembered metadata entries
+	 */
+	public FileMetadataCache(long timeToLiveInMilliseconds, int maximumNumberOfEntries) {
+		isTrue(timeToLiveInMilliseconds > 0, "Time to live of file metadata must be positive");
+		isTrue(maximumNumberOfEntries > 0, "Maximum number of file metadata entries must be positive");
+		this.timeToLiveInNanoseconds = TimeUnit.MILLISECONDS.toNanos(timeToLiveInMilliseconds);
+		this.maximumNumberOfEntries = maximumNumberOfEntries;
+	}
+
+	public FileMetadata provideMetadata(File file) {
+		final String key = notNull(file, "File cannot be null").getAbsolutePath();
+		final long now = System.nanoTime();
+		final CachedMetadata cached = cachedMetadata.get(key);
+		if (cached != null && !cached.isExpired(now)) {
+			hitCount.incrementAndGet();
+			return cached.metadata;
+		}
+		missCount.incrementAndGet();
+		final long invalidationCountBeforeRead = invalidationCount.get();
+		final FileMetadata metadata = FileMetadata.readMetadata(file);
+		remember(key, new CachedMetadata(metadata, now + timeToLiveInNanoseconds), invalidationCountBeforeRead, now);
+		return metadata;
+	}
+
+	private void remember(String key, CachedMetadata cached, long invalidationCountBeforeRead, long now) {
+		if (numberOfEntries.get() >= maximumNumberOfEntries && purgeExpiredEntries(now) == 0 &&
+				!cachedMetadata.containsKey(key))
+			return;
+		if (cachedMetadata.put(key, cached) == null)
+			numberOfEntries.incrementAndGet();
+		if (invalidationCount.get() != invalidationCountBeforeRead)
+			removeEntry(key, cached);
+	}
+
+	private int purgeExpiredEntries(long now) {
+		int purgedEntries = 0;
+		for (Map.Entry<String, CachedMetadata> entry : cachedMetadata.entrySet())
+			if (entry.getValue().isExpired(now) && removeEntry(entry.getKey(), entry.getValue()))
+				purgedEntries++;
+		return purgedEntries;
+	}
+
+	private boolean removeEntry(String key, CachedMetadata cached) {
+		if (!cachedMetadata.remove(key, cached))
+			return false;
+		numberOfEntries.decrementAndGet();
+		return true;
+	}
+
+	public void fileChanged(File file) {
+		final String changedPath = notNull(file, "File cannot be null").getAbsolutePath();
+		final String changedDirectoryContentPrefix = changedPath + File.separator;
+		invalidationCount.incrementAndGet();
+		for (Map.Entry<String, CachedMetadata> entry : cachedMetadata.entrySet())
+			if (entry.getKey().equals(changedPath) || entry.getKey().startsWith(changedDirectoryContentPrefix))
+				removeEntry(entry.getKey(), entry.getValue());
+	}
+
+	public void allFilesChanged() {
+		invalidationCount.incrementAndGet();
+		for (Map.Entry<String, CachedMetadata> entry : cachedMetadata.entrySet())
+			removeEntry(entry.getKey(), entry.getValue());
+	}
+
+	public int size() {
+		return numberOfEntries.get();
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	private static class CachedMetadata {
+		private final FileMetadata metadata;
+		private final long expirationTime;
+
+		private CachedMetadata(FileMetadata metadata, long expirationTime) {
+			this.metadata = metadata;
+			this.expirationTime = expirationTime;
+		}
+
+		private boolean isExpired(long now) {
+			return now - expirationTime >= 0;
+		}
+	}
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.metadata;
+
+import java.io.File;
+
+/**
+ * Provides metadata of files (i.e. from cache). The implementation needs to be thread-safe.
+ */
+public interface FileMetadataProvider {
+
+	/**
+	 * Provide metadata of file
+	 *
+	 * @param file not null file
+	 * @return not null metadata of file
+	 */
+	FileMetadata provideMetadata(File file);
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.patch;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentRange;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpRequest;
+import org.apache.http.NameValuePair;
+import org.apache.http.ParseException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.CONTENT_RANGE;
+import static org.apache.http.HttpHeaders.CONTENT_TYPE;
+
+/**
+ * Ranges of bytes of a patch read one by one from the body of request while it is received. A patch is either
+ * a single range declared by Content-Range header of the request, whose body holds the bytes of the range,
+ * or a 'multipart/byteranges' body whose parts declare their ranges in their own Content-Range headers.
+ *
+ * Complete length of a range is the length of file after the patch or '*' when the patch does not change
+ * the length of file (apart from ranges that extend it).
+ */
+public abstract class BytePatch {
+
+	public static final String MULTIPART_BYTERANGES = "multipart/byteranges";
+	private static final String BOUNDARY_PARAMETER = "boundary";
+	private static final String DELIMITER_PREFIX = "--";
+	private static final String CLOSE_DELIMITER_SUFFIX = "--";
+	private static final int MAXIMUM_LINE_LENGTH = 8192;
+	private static final int LINE_FEED = '\n';
+	private static final int CARRIAGE_RETURN = '\r';
+	private static final long UNKNOWN_BODY_LENGTH = -1;
+
+	protected final InputStream body;
+
+	private BytePatch(InputStream body) {
+		this.body = notNull(body, "Body of patch cannot be null");
+	}
+
+	/**
+	 * Create patch described by the request
+	 *
+	 * @param request not null request of patch
+	 * @param body not null body of request
+	 * @param declaredBodyLength length of body declared by request or -1 when unknown
+	 * @return not null patch
+	 * @throws InvalidPatchException when the request does not describe ranges of bytes
+	 */
+	public static BytePatch fromRequest(HttpRequest request, InputStream body, long declaredBodyLength)
+			throws InvalidPatchException {
+		notNull(request, "Request cannot be null");
+		final Header contentRangeHeader = request.getFirstHeader(CONTENT_RANGE);
+		if (contentRangeHeader != null)
+			return new SingleRangePatch(parseRange(contentRangeHeader.getValue()), body, declaredBodyLength);
+		final Header contentTypeHeader = request.getFirstHeader(CONTENT_TYPE);
+		if (contentTypeHeader != null)
+			return new MultipartByteRangesPatch(parseBoundary(contentTypeHeader), body);
+		throw new InvalidPatchException(format("Patch needs either Content-Range header or %s body",
+				MULTIPART_BYTERANGES));
+	}
+
+	private static ContentRange parseRange(String contentRangeHeaderValue) throws InvalidPatchException {
+		final ContentRange contentRange;
+		try {
+			contentRange = ContentRange.parse(contentRangeHeaderValue, true);
+		} catch (IllegalArgumentException e) {
+			throw new InvalidPatchException(format("Invalid Content-Range header: %s", e.getMessage()));
+		}
+		if (contentRange.getRange().isNotPresent())
+			throw new InvalidPatchException(format("Content-Range of patch needs a range of bytes: %s",
+					contentRange));
+		return contentRange;
+	}
+
+	private static String parseBoundary(Header contentTypeHeader) throws InvalidPatchException {
+		final HeaderElement[] elements;
+		try {
+			elements = contentTypeHeader.getElements();
+		} catch (ParseException e) {
+			throw new InvalidPatchException(format("Invalid Content-Type header: %s", e.getMessage()));
+		}
+		if (elements.length != 1 || !MULTIPART_BYTERANGES.equalsIgnoreCase(elements[0].getName()))
+			throw new InvalidPatchException(format("Patch needs either Content-Range header or %s body",
+					MULTIPART_BYTERANGES));
+		final NameValuePair boundary = elements[0].getParameterByName(BOUNDARY_PARAMETER);
+		if (boundary == null || boundary.getValue() == null || boundary.getValue().length() == 0)
+			throw new InvalidPatchException(format("Body of %s needs a boundary", MULTIPART_BYTERANGES));
+		return boundary.getValue();
+	}
+
+	/**
+	 * Read the next range of patch. Exactly the length of range bytes of it need to be read from {@link #getBody()}
+	 * before the next range is read.
+	 *
+	 * @return not null optional range of bytes with complete length; not present when there are no more ranges
+	 * @throws InvalidPatchException when the body does not describe ranges of bytes
+	 * @throws IOException when the body cannot be read
+	 */
+	public abstract Optional<ContentRange> nextRange() throws IOException;
+
+	/**
+	 * @return not null body of request positioned at the bytes of the last read range
+	 */
+	public InputStream getBody() {
+		return body;
+	}
+
+	private static class SingleRangePatch extends BytePatch {
+		private final ContentRange contentRange;
+		private boolean rangeRead;
+
+		private SingleRangePatch(ContentRange contentRange, InputStream body, long declaredBodyLength)
+				throws InvalidPatchException {
+			super(body);
+			this.contentRange = contentRange;
+			if (declaredBodyLength != UNKNOWN_BODY_LENGTH &&
+					declaredBodyLength != contentRange.getRange().get().getLength())
+				throw new InvalidPatchException(format("The length of body does not match Content-Range: %s",
+						contentRange));
+		}
+
+		@Override
+		public Optional<ContentRange> nextRange() throws IOException {
+			if (!rangeRead) {
+				rangeRead = true;
+				return Optional.present(contentRange);
+			}
+			if (body.read() != -1)
+				throw new InvalidPatchException(format("The body is longer than Content-Range: %s", contentRange));
+			return Optional.empty();
+		}
+	}
+
+	private static class MultipartByteRangesPatch extends BytePatch {
+		private final String delimiter;
+		private final String closeDelimiter;
+		private boolean firstDelimiterRead;
+		private boolean closeDelimiterRead;
+
+		private MultipartByteRangesPatch(String boundary, InputStream body) {
+			super(body);
+			this.delimiter = DELIMITER_PREFIX + boundary;
+			this.closeDelimiter = delimiter + CLOSE_DELIMITER_SUFFIX;
+		}
+
+		@Override
+		public Optional<ContentRange> nextRange() throws IOException {
+			if (closeDelimiterRead)
+				return Optional.empty();
+			if (!firstDelimiterRead) {
+				skipPreamble();
+				firstDelimiterRead = true;
+			} else {
+				readDelimiterAfterPart();
+			}
+			return closeDelimiterRead ? Optional.<ContentRange>empty() : Optional.present(readHeadersOfPart());
+		}
+
+		private void skipPreamble() throws IOException {
+			String line;
+			do {
+				line = readLine();
+			} while (!isDelimiter(line));
+		}
+
+		private void readDelimiterAfterPart() throws IOException {
+			if (readLine().length() != 0 || !isDelimiter(readLine()))
+				throw new InvalidPatchException("Part of body is not followed by a boundary");
+		}
+
+		private boolean isDelimiter(String line) {
+			final String trimmedLine = trimTrailingWhitespace(line);
+			if (trimmedLine.equals(closeDelimiter)) {
+				closeDelimiterRead = true;
+				return true;
+			}
+			return trimmedLine.equals(delimiter);
+		}
+
+		private ContentRange readHeadersOfPart() throws IOException {
+			ContentRange contentRange = null;
+			String line;
+			while ((line = readLine()).length() != 0) {
+				final int nameSeparator = line.indexOf(':');
+				if (nameSeparator > 0 && CONTENT_RANGE.equalsIgnoreCase(line.substring(0, nameSeparator).trim()))
+					contentRange = parseRange(line.substring(nameSeparator + 1));
+			}
+			if (contentRange == null)
+				throw new InvalidPatchException("Part of body needs Content-Range header");
+			return contentRange;
+		}
+
+		private String readLine() throws IOException {
+			final ByteArrayOutputStream line = new ByteArrayOutputStream();
+			int readByte;
+			while ((readByte = body.read()) != LINE_FEED) {
+				if (readByte == -1)
+					throw new InvalidPatchException("Body ends before its closing boundary");
+				if (line.size() == MAXIMUM_LINE_LENGTH)
+					throw new InvalidPatchException("Line of body is too long");
+				line.write(readByte);
+			}
+			final String value = line.toString("ISO-8859-1");
+			return value.length() > 0 && value.charAt(value.length() - 1) == CARRIAGE_RETURN
+					? value.substring(0, value.length() - 1)
+					: value;
+		}
+
+		private static String trimTrailingWhitespace(String line) {
+			int end = line.length();
+			while (end > 0 && (line.charAt(end - 1) == ' ' || line.charAt(end - 1) == '\t'))
+				end--;
+			return line.substring(0, end);
+		}
+	}
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.patch;
+
+/**
+ * How ranges of bytes of a patch are applied to a file.
+ */
+public enum FilePatchMode {
+
+	/**
+	 * Ranges are written straight into the file, so a patch costs only the writes of its ranges. Readers of the file
+	 * can see a patch that is being applied and a patch that fails in the middle stays partially applied.
+	 */
+	IN_PLACE,
+
+	/**
+	 * The file is copied to a temporary file next to it, ranges are written into the copy and the copy is published
+	 * over the file in a single atomic rename, so readers see either the previous or the patched version and a patch
+	 * that fails keeps the previous version. Each patch costs a copy of the whole file.
+	 */
+	COPY_ON_WRITE
+}
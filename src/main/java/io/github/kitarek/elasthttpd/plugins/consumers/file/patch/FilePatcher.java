@@ -0,0 +1,221 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.patch;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentAddressedStore;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentRange;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.DurabilityMode;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.FileUploadWriter;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.Lock;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Applies patches made of ranges of bytes to existing files according to {@link FilePatchMode}. Bytes of each range
+ * are written with large positional writes of {@link FileUploadWriter} while they are received, so a patch costs
+ * time proportional to its ranges (and a copy of file in copy-on-write mode). The patched file is synchronized with
+ * the disk unless uploads are published without durability and its modification time always moves forward, so
+ * validators of the file change even when the file is patched twice within the same millisecond.
+ *
+ * Patches of the same file need to be serialized by the caller with {@link #lockFor(File)}, which allows
+ * to evaluate preconditions of a patch against the version that the patch is applied to. It is the lock of
+ * {@link AtomicUploadPublisher}, so uploads of the file are not published while the file is patched.
+ *
+ * A file with other hard links (i.e. a reference of a blob of {@link ContentAddressedStore}) is always patched
+ * as a copy, so the other names keep their content, and the blob referenced by the replaced file is released.
+ */
+public class FilePatcher {
+
+	private final FileUploadWriter fileUploadWriter;
+	private final AtomicUploadPublisher uploadPublisher;
+	private final FilePatchMode patchMode;
+	private final Optional<ContentAddressedStore> optionalContentAddressedStore;
+
+	/**
+	 * Create patcher
+	 *
+	 * @param fileUploadWriter not null writer of ranges
+	 * @param uploadPublisher not null publisher of patched copies (and durability and locks of patches)
+	 * @param patchMode not null mode of patching
+	 */
+	public FilePatcher(FileUploadWriter fileUploadWriter, AtomicUploadPublisher uploadPublisher,
+					   FilePatchMode patchMode) {
+		this(fileUploadWriter, uploadPublisher, patchMode, Optional.<ContentAddressedStore>empty());
+	}
+
+	/**
+	 * Create patcher that releases blobs of the store referenced by patched files
+	 *
+	 * @param fileUploadWriter not null writer of ranges
+	 * @param uploadPublisher not null publisher of patched copies (and durability and locks of patches)
+	 * @param patchMode not null mode of patching
+	 * @param optionalContentAddressedStore not null optional store of deduplicated content
+	 */
+	public FilePatcher(FileUploadWriter fileUploadWriter, AtomicUploadPublisher uploadPublisher,
+					   FilePatchMode patchMode, Optional<ContentAddressedStore> optionalContentAddressedStore) {
+		this.fileUploadWriter = notNull(fileUploadWriter, "File upload writer cannot be null");
+		this.uploadPublisher = notNull(uploadPublisher, "Upload publisher cannot be null");
+		this.patchMode = notNull(patchMode, "Patch mode cannot be null");
+		this.optionalContentAddressedStore = notNull(optionalContentAddressedStore,
+				"Optional content addressed store cannot be null");
+	}
+
+	/**
+	 * Apply all ranges of the patch to the file
+	 *
+	 * @param target not null existing file
+	 * @param patch not null patch
+	 * @throws FileNotFoundException when the file does not exist
+	 * @throws InvalidPatchException when the patch is not valid (in place mode can leave preceding ranges applied)
+	 * @throws UnsatisfiablePatchException when a range starts after the end of file
+	 * @throws IOException when the patch cannot be applied
+	 */
+	public void patch(File target, BytePatch patch) throws IOException {
+		notNull(target, "Target file cannot be null");
+		notNull(patch, "Patch cannot be null");
+		if (!target.isFile())
+			throw new FileNotFoundException(format("The file to patch does not exist: %s", target));
+		if (patchMode == FilePatchMode.COPY_ON_WRITE || ContentAddressedStore.linkCountOf(target) > 1)
+			patchCopy(target, patch);
+		else
+			patchInPlace(target, patch);
+	}
+
+	private void patchInPlace(File target, BytePatch patch) throws IOException {
+		final long previousLastModified = target.lastModified();
+		applyRangesToFile(target, patch);
+		moveModificationTimeForward(target, previousLastModified);
+	}
+
+	private void patchCopy(File target, BytePatch patch) throws IOException {
+		final long previousLastModified = target.lastModified();
+		final File temporaryFile = uploadPublisher.createTemporaryFile(target);
+		try {
+			copy(target, temporaryFile);
+			applyRangesToFile(temporaryFile, patch);
+			moveModificationTimeForward(temporaryFile, previousLastModified);
+			publishAndReleaseReferencedBlob(temporaryFile, target);
+		} catch (IOException e) {
+			uploadPublisher.discard(temporaryFile);
+			throw e;
+		} catch (RuntimeException e) {
+			uploadPublisher.discard(temporaryFile);
+			throw e;
+		}
+	}
+
+	private void publishAndReleaseReferencedBlob(File temporaryFile, File target) throws IOException {
+		final Optional<byte[]> optionalReferencedDigest = optionalContentAddressedStore.isPresent()
+				? optionalContentAddressedStore.get().referencedDigestOf(target)
+				: Optional.<byte[]>empty();
+		uploadPublisher.publish(temporaryFile, target);
+		if (optionalReferencedDigest.isPresent())
+			optionalContentAddressedStore.get().release(optionalReferencedDigest.get());
+	}
+
+	private void copy(File source, File destination) throws IOException {
+		final RandomAccessFile sourceFile = new RandomAccessFile(source, "r");
+		try {
+			final RandomAccessFile destinationFile = new RandomAccessFile(destination, "rw");
+			try {
+				final FileChannel sourceChannel = sourceFile.getChannel();
+				final long length = sourceChannel.size();
+				long copiedBytes = 0;
+				while (copiedBytes < length)
+					copiedBytes += sourceChannel.transferTo(copiedBytes, length - copiedBytes,
+							destinationFile.getChannel());
+			} finally {
+				destinationFile.close();
+			}
+		} finally {
+			sourceFile.close();
+		}
+	}
+
+	private void applyRangesToFile(File file, BytePatch patch) throws IOException {
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			applyRanges(randomAccessFile, patch);
+			if (patchMode == FilePatchMode.IN_PLACE && uploadPublisher.getDurabilityMode() != DurabilityMode.NONE)
+				randomAccessFile.getChannel().force(false);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	private void applyRanges(RandomAccessFile file, BytePatch patch) throws IOException {
+		final FileChannel channel = file.getChannel();
+		long currentLength = channel.size();
+		long completeLength = ContentRange.UNKNOWN_COMPLETE_LENGTH;
+		int numberOfRanges = 0;
+		Optional<ContentRange> optionalContentRange;
+		while ((optionalContentRange = patch.nextRange()).isPresent()) {
+			final ContentRange contentRange = optionalContentRange.get();
+			completeLength = verifyCompleteLength(contentRange, completeLength);
+			final ByteRange range = contentRange.getRange().get();
+			if (range.getFirstPosition() > currentLength)
+				throw new UnsatisfiablePatchException(format("Range %s starts after the end of file of %d bytes",
+						range, currentLength));
+			fileUploadWriter.transferPrefix(patch.getBody(), channel, range.getFirstPosition(), range.getLength());
+			currentLength = Math.max(currentLength, range.getLastPosition() + 1);
+			numberOfRanges++;
+		}
+		if (numberOfRanges == 0)
+			throw new InvalidPatchException("Patch needs at least one range of bytes");
+		if (completeLength != ContentRange.UNKNOWN_COMPLETE_LENGTH && completeLength != currentLength)
+			file.setLength(completeLength);
+	}
+
+	private long verifyCompleteLength(ContentRange contentRange, long completeLength) throws InvalidPatchException {
+		if (!contentRange.isCompleteLengthKnown())
+			return completeLength;
+		if (completeLength != ContentRange.UNKNOWN_COMPLETE_LENGTH &&
+				completeLength != contentRange.getCompleteLength())
+			throw new InvalidPatchException(format("Ranges of patch declare different lengths of file: %d and %d",
+					completeLength, contentRange.getCompleteLength()));
+		return contentRange.getCompleteLength();
+	}
+
+	private void moveModificationTimeForward(File file, long previousLastModified) {
+		if (file.lastModified() <= previousLastModified)
+			file.setLastModified(previousLastModified + 1);
+	}
+
+	/**
+	 * Get the lock that serializes patches and publications of uploads of the file
+	 *
+	 * @param target not null file
+	 * @return not null reentrant lock of the upload publisher shared with all files of the same stripe
+	 */
+	public Lock lockFor(File target) {
+		return uploadPublisher.lockFor(target);
+	}
+
+	public FilePatchMode getPatchMode() {
+		return patchMode;
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.patch;
+
+import java.io.IOException;
+
+/**
+ * Signals that the body or headers of a patch request do not describe valid ranges of bytes, so the patch cannot
+ * be applied.
+ */
+public class InvalidPatchException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Create exception
+	 *
+	 * @param message not null description of the problem
+	 */
+	public InvalidPatchException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.Weigher;
+import io.github.kitarek.elasthttpd.commons.WeightedLruCache;
+import io.github.kitarek.elasthttpd.server.compression.AcceptEncodingNegotiator;
+import io.github.kitarek.elasthttpd.server.compression.CompressionConfiguration;
+import io.github.kitarek.elasthttpd.server.compression.ContentCoding;
+import org.apache.http.HttpRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty;
+import static io.github.kitarek.elasthttpd.commons.Optional.present;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Resolves dynamically compressed variants of files and keeps them in memory bounded cache, so each variant is
+ * computed only once per file modification. Variants are keyed by absolute path, modification time, length and
+ * coding of the file and evicted in LRU order when total size of compressed bodies exceeds the limit.
+ *
+ * Concurrent first requests for the same variant compress the file only once - the other requests wait for the
+ * result. Cache hits need neither filesystem reads nor compression. HEAD requests never compress the file - on a cache
+ * miss they get a variant of unknown length which is compressed only when its content is opened.
+ */
+public class CompressedFileVariantCache implements FileVariantResolver {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(CompressedFileVariantCache.class);
+	private final AcceptEncodingNegotiator negotiator;
+	private final CompressionConfiguration configuration;
+	private final long maximumFileSizeInBytes;
+	private final WeightedLruCache<CompressedVariantKey, byte[]> cache;
+	private final ConcurrentMap<CompressedVariantKey, FutureTask<byte[]>> compressionsInProgress =
+			new ConcurrentHashMap<CompressedVariantKey, FutureTask<byte[]>>();
+
+	/**
+	 * Create cache
+	 *
+	 * @param negotiator not null
+	 * @param configuration not null compression settings (allowed MIME types, minimum size, codings, level)
+	 * @param maximumCacheSizeInBytes positive limit of total size of cached compressed bodies
+	 * @param maximumFileSizeInBytes positive limit of size of original file that will be compressed and cached
+	 */
+	public CompressedFileVariantCache(AcceptEncodingNegotiator negotiator, CompressionConfiguration configuration,
+									  long maximumCacheSizeInBytes, long maximumFileSizeInBytes) {
+		this.negotiator = notNull(negotiator, "Accept-Encoding negotiator cannot be null");
+		this.configuration = notNull(configuration, "Compression configuration cannot be null");
+		isTrue(maximumFileSizeInBytes > 0, "Maximum size of cached file must be positive");
+		this.maximumFileSizeInBytes = maximumFileSizeInBytes;
+		this.cache = new WeightedLruCache<CompressedVariantKey, byte[]>(maximumCacheSizeInBytes,
+				new Weigher<byte[]>() {
+					public long weigh(byte[] value) {
+						return value.length;
+					}
+				});
+	}
+
+	public Optional<FileVariant> resolveVariant(File originalFile, long length, long lastModified,
+												Optional<String> optionalContentType, HttpRequest request) {
+		notNull(originalFile, "Original file cannot be null");
+		notNull(optionalContentType, "Optional content type cannot be null");
+		if (!isCompressible(length, optionalContentType))
+			return empty();
+		final Optional<ContentCoding> optionalCoding = negotiator.negotiate(notNull(request, "Request cannot be null"),
+				configuration.getOfferedCodings());
+		return optionalCoding.isPresent()
+				? resolveCompressedVariant(new CompressedVariantKey(originalFile.getAbsolutePath(), lastModified, length,
+						optionalCoding.get()), originalFile, isHeadRequest(request))
+				: Optional.<FileVariant>empty();
+	}
+
+	private static boolean isHeadRequest(HttpRequest request) {
+		return "HEAD".equalsIgnoreCase(request.getRequestLine().getMethod());
+	}
+
+	private boolean isCompressible(long fileLength, Optional<String> optionalContentType) {
+		return optionalContentType.isPresent() &&
+				configuration.isCompressibleContentType(optionalContentType.get()) &&
+				configuration.isCompressibleContentLength(fileLength) &&
+				fileLength <= maximumFileSizeInBytes;
+	}
+
+	private Optional<FileVariant> resolveCompressedVariant(CompressedVariantKey key, File originalFile,
+														   boolean metadataOnly) {
+		final Optional<byte[]> optionalCompressedContent = cache.get(key);
+		if (optionalCompressedContent.isPresent())
+			return present((FileVariant) new InMemoryFileVariant(key.coding, optionalCompressedContent.get()));
+		return metadataOnly
+				? present((FileVariant) new NotCompressedYetFileVariant(key, originalFile))
+				: compressOnlyOnce(key, originalFile);
+	}
+
+	private Optional<FileVariant> compressOnlyOnce(final CompressedVariantKey key, final File originalFile) {
+		final FutureTask<byte[]> newCompression = new FutureTask<byte[]>(new Callable<byte[]>() {
+			public byte[] call() throws IOException {
+				return compressAndCache(key, originalFile);
+			}
+		});
+		FutureTask<byte[]> compression = compressionsInProgress.putIfAbsent(key, newCompression);
+		if (compression == null) {
+			compression = newCompression;
+			runCompression(key, compression);
+		}
+		return waitForCompressedVariant(key, compression);
+	}
+
+	private void runCompression(CompressedVariantKey key, FutureTask<byte[]> compression) {
+		try {
+			compression.run();
+		} finally {
+			compressionsInProgress.remove(key, compression);
+		}
+	}
+
+	private Optional<FileVariant> waitForCompressedVariant(CompressedVariantKey key, FutureTask<byte[]> compression) {
+		try {
+			return present((FileVariant) new InMemoryFileVariant(key.coding, compression.get()));
+		} catch (ExecutionException e) {
+			LOGGER.warn(format("Cannot compress file '%s'. The original file will be sent", key.absolutePath),
+					e.getCause());
+			return empty();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return empty();
+		}
+	}
+
+	private byte[] compressAndCache(CompressedVariantKey key, File originalFile) throws IOException {
+		final byte[] compressedContent = compressFile(originalFile, key.coding);
+		cache.put(key, compressedContent);
+		return compressedContent;
+	}
+
+	private byte[] compressFile(File originalFile, ContentCoding coding) throws IOException {
+		final ByteArrayOutputStream compressedContent = new ByteArrayOutputStream(configuration.getChunkSizeInBytes());
+		final OutputStream encodingStream = coding.createEncodingStream(compressedContent,
+				configuration.getCompressionLevel(), configuration.getChunkSizeInBytes());
+		final InputStream inputStream = new FileInputStream(originalFile);
+		try {
+			copy(inputStream, encodingStream);
+		} finally {
+			inputStream.close();
+			encodingStream.close();
+		}
+		return compressedContent.toByteArray();
+	}
+
+	private void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+		final byte[] buffer = new byte[configuration.getChunkSizeInBytes()];
+		int bytesRead;
+		while ((bytesRead = inputStream.read(buffer)) != -1)
+			outputStream.write(buffer, 0, bytesRead);
+	}
+
+	/**
+	 * @return the underlying cache of compressed bodies (i.e. for checking its statistics)
+	 */
+	public WeightedLruCache<?, byte[]> getCache() {
+		return cache;
+	}
+
+	/**
+	 * Variant which length is unknown until its content is opened and the file is compressed
+	 */
+	private class NotCompressedYetFileVariant implements FileVariant {
+		private final CompressedVariantKey key;
+		private final File originalFile;
+
+		private NotCompressedYetFileVariant(CompressedVariantKey key, File originalFile) {
+			this.key = key;
+			this.originalFile = originalFile;
+		}
+
+		public ContentCoding getContentCoding() {
+			return key.coding;
+		}
+
+		public long getContentLength() {
+			return UNKNOWN_CONTENT_LENGTH;
+		}
+
+		public InputStream openContent() throws IOException {
+			final Optional<FileVariant> optionalFileVariant = compressOnlyOnce(key, originalFile);
+			if (optionalFileVariant.isNotPresent())
+				throw new IOException(format("Cannot compress file '%s'", key.absolutePath));
+			return optionalFileVariant.get().openContent();
+		}
+	}
+
+	private static class CompressedVariantKey {
+		private final String absolutePath;
+		private final long lastModified;
+		private final long length;
+		private final ContentCoding coding;
+
+		private CompressedVariantKey(String absolutePath, long lastModified, long length, ContentCoding coding) {
+			this.absolutePath = absolutePath;
+			this.lastModified = lastModified;
+			this.length = length;
+			this.coding = coding;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) return true;
+			if (o == null || getClass() != o.getClass()) return false;
+
+			CompressedVariantKey that = (CompressedVariantKey) o;
+
+			return lastModified == that.lastModified && length == that.length && coding == that.coding &&
+					absolutePath.equals(that.absolutePath);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = absolutePath.hashCode();
+			result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+			result = 31 * result + (int) (length ^ (length >>> 32));
+			result = 31 * result + coding.hashCode();
+			return result;
+		}
+	}
+}
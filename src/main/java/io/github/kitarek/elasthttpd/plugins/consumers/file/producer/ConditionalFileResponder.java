@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestEvaluator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.FileValidators;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.RangeRequestEvaluator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.RangeRequestResult;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.ACCEPT_RANGES;
+import static org.apache.http.HttpHeaders.CONTENT_RANGE;
+import static org.apache.http.HttpHeaders.ETAG;
+import static org.apache.http.HttpHeaders.LAST_MODIFIED;
+
+/**
+ * Answers conditional and range requests for a file using only its validators and length, so every source of files
+ * (local filesystem or storage) responds with the same 304, 412 and 416 responses and validator headers.
+ */
+public class ConditionalFileResponder {
+
+	private final TemplatedHttpResponder templatedHttpResponder;
+	private final ConditionalRequestEvaluator conditionalRequestEvaluator = new ConditionalRequestEvaluator();
+	private final RangeRequestEvaluator rangeRequestEvaluator = new RangeRequestEvaluator();
+
+	/**
+	 * Create responder
+	 *
+	 * @param templatedHttpResponder not null
+	 */
+	public ConditionalFileResponder(TemplatedHttpResponder templatedHttpResponder) {
+		this.templatedHttpResponder = notNull(templatedHttpResponder, "Templated HTTP responder cannot be null");
+	}
+
+	/**
+	 * Add Last-Modified header and evaluate preconditions of request. When they fail the response is completed:
+	 * 304 Not Modified carries the entity tag of the variant which client has and 412 Precondition Failed carries
+	 * no validators.
+	 *
+	 * @param request not null request for the file
+	 * @param response not null response to the request
+	 * @param validators not null validators of current version of the file
+	 * @param fileName not null name of the file used in the message of response
+	 * @return not null result of evaluation; the response needs to be completed by the caller only for
+	 * {@link ConditionalRequestResult#PROCEED}
+	 */
+	public ConditionalRequestResult respondToPreconditions(HttpRequest request, HttpResponse response,
+														   FileValidators validators, String fileName) {
+		notNull(request, "HTTP request cannot be null");
+		notNull(response, "HTTP response cannot be null");
+		notNull(validators, "File validators cannot be null");
+		response.setHeader(LAST_MODIFIED, validators.getLastModifiedDate());
+		final ConditionalRequestResult conditionalRequestResult =
+				conditionalRequestEvaluator.evaluate(request, validators);
+		if (conditionalRequestResult == ConditionalRequestResult.NOT_MODIFIED) {
+			response.setHeader(ETAG, entityTagOfNotModifiedFile(request, validators));
+			templatedHttpResponder.respondThatResourceIsNotModified(response);
+		} else if (conditionalRequestResult == ConditionalRequestResult.PRECONDITION_FAILED) {
+			response.removeHeaders(LAST_MODIFIED);
+			templatedHttpResponder.respondWithPreconditionFailed(response,
+					format("Precondition failed for resource %s", fileName));
+		}
+		return conditionalRequestResult;
+	}
+
+	private String entityTagOfNotModifiedFile(HttpRequest request, FileValidators validators) {
+		final Optional<String> optionalMatchedEntityTag =
+				conditionalRequestEvaluator.findMatchedEntityTag(request, validators);
+		return optionalMatchedEntityTag.isPresent() ? optionalMatchedEntityTag.get() : validators.getEntityTag();
+	}
+
+	/**
+	 * Add Accept-Ranges header and evaluate Range header of request. When none of requested ranges is satisfiable
+	 * the response is completed with 416 Requested Range Not Satisfiable.
+	 *
+	 * @param request not null request for the file
+	 * @param response not null response to the request
+	 * @param validators not null validators of current version of the file (for If-Range header)
+	 * @param fileLength length of the file in bytes
+	 * @param fileName not null name of the file used in the message of response
+	 * @return not null result of evaluation
+	 */
+	public RangeRequestResult respondToRanges(HttpRequest request, HttpResponse response, FileValidators validators,
+											  long fileLength, String fileName) {
+		notNull(response, "HTTP response cannot be null");
+		response.setHeader(ACCEPT_RANGES, RangeRequestEvaluator.BYTES_UNIT);
+		final RangeRequestResult rangeRequestResult = rangeRequestEvaluator.evaluate(request, validators, fileLength);
+		if (rangeRequestResult.isNotSatisfiable()) {
+			response.setHeader(CONTENT_RANGE, "bytes */" + fileLength);
+			templatedHttpResponder.respondWithRequestedRangeNotSatisfiable(response,
+					format("None of requested ranges is satisfiable for resource %s", fileName));
+		}
+		return rangeRequestResult;
+	}
+}
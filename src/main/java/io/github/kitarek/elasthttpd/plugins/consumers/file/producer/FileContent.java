@@ -0,0 +1,40 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Content of a served file (or of its variant) that can be read independently by many requests.
+ */
+public interface FileContent {
+
+	/**
+	 * @return exact length in bytes of content
+	 */
+	long getContentLength();
+
+	/**
+	 * Open content for reading. The caller is responsible for closing the stream.
+	 *
+	 * @return not null stream of content
+	 * @throws IOException when content cannot be opened
+	 */
+	InputStream openContent() throws IOException;
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+
+import java.io.File;
+
+/**
+ * Provides content of the served file from a faster source than regular reading of file (i.e. from memory).
+ * The implementation should be thread-safe.
+ */
+public interface FileContentProvider {
+
+	/**
+	 * Provide content of the file of given size and modification time. Content of any other version of the file
+	 * (i.e. cached before the file was changed) must not be provided, so validators built from the same metadata
+	 * always describe the provided content.
+	 *
+	 * @param file not null existing and readable file requested by client
+	 * @param length length of the file in bytes as read from filesystem by the caller
+	 * @param lastModified modification time of the file (in milliseconds since the epoch) as read by the caller
+	 * @return optional content; not present when the file needs to be read from filesystem as usual
+	 */
+	Optional<FileContent> provideContent(File file, long length, long lastModified);
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+/**
+ * HTTP entity that only describes a file (its length, type and coding) without any access to its content. It is used
+ * for responses to HEAD requests whose body is never sent, so no file needs to be opened and no buffer allocated.
+ */
+public class FileMetadataEntity extends AbstractHttpEntity {
+
+	private final long contentLength;
+
+	/**
+	 * Describe file which content length is not known (i.e. variant that is not encoded yet), so no Content-Length
+	 * header is sent
+	 */
+	public FileMetadataEntity() {
+		this.contentLength = FileVariant.UNKNOWN_CONTENT_LENGTH;
+	}
+
+	/**
+	 * @param contentLength zero or positive length of file content that would be sent for GET request
+	 */
+	public FileMetadataEntity(long contentLength) {
+		isTrue(contentLength >= 0, "Content length cannot be negative");
+		this.contentLength = contentLength;
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	public InputStream getContent() throws IOException {
+		throw new IOException("Entity describes only metadata of file and its content cannot be read");
+	}
+
+	public void writeTo(OutputStream outstream) throws IOException {
+		throw new IOException("Entity describes only metadata of file and its content cannot be written");
+	}
+
+	public boolean isStreaming() {
+		return false;
+	}
+}
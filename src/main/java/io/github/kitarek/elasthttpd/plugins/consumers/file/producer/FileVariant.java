@@ -0,0 +1,38 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import io.github.kitarek.elasthttpd.server.compression.ContentCoding;
+
+/**
+ * Alternative representation of a served file that is already encoded with some content coding (i.e. gzip).
+ * The original MIME type of the file is kept for the variant. Variants resolved for HEAD requests may not know their
+ * length until their content is opened and then report {@link #UNKNOWN_CONTENT_LENGTH}.
+ */
+public interface FileVariant extends FileContent {
+
+	/**
+	 * Length of variant which content is not encoded yet
+	 */
+	long UNKNOWN_CONTENT_LENGTH = -1;
+
+	/**
+	 * @return not null content coding of this variant sent as Content-Encoding header
+	 */
+	ContentCoding getContentCoding();
+}
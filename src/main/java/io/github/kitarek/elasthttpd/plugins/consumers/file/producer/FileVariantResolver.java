@@ -0,0 +1,44 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import org.apache.http.HttpRequest;
+
+import java.io.File;
+
+/**
+ * Finds an encoded variant of the served file that is acceptable for the client. The implementation should be
+ * thread-safe.
+ */
+public interface FileVariantResolver {
+
+	/**
+	 * Resolve the variant of the file of given size and modification time
+	 *
+	 * @param originalFile not null existing and readable file requested by client
+	 * @param length length of the original file in bytes as read from filesystem by the caller
+	 * @param lastModified modification time of the original file (in milliseconds since the epoch) as read by
+	 *                     the caller
+	 * @param optionalContentType not null optional MIME type of the original file
+	 * @param request not null HTTP request that describes what the client accepts
+	 * @return optional variant; not present when original file should be sent
+	 */
+	Optional<FileVariant> resolveVariant(File originalFile, long length, long lastModified,
+										 Optional<String> optionalContentType, HttpRequest request);
+}
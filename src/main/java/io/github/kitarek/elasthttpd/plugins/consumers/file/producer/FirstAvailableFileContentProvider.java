@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Composite provider that asks providers in the given order and returns the first content found.
+ */
+public class FirstAvailableFileContentProvider implements FileContentProvider {
+
+	private final List<FileContentProvider> providers;
+
+	/**
+	 * Create composite provider
+	 *
+	 * @param providers not null and not empty list of providers ordered by priority
+	 */
+	public FirstAvailableFileContentProvider(List<FileContentProvider> providers) {
+		notEmpty(noNullElements(notNull(providers, "Providers cannot be null")), "At least one provider is needed");
+		this.providers = new ArrayList<FileContentProvider>(providers);
+	}
+
+	public Optional<FileContent> provideContent(File file, long length, long lastModified) {
+		for (FileContentProvider provider : providers) {
+			final Optional<FileContent> optionalContent = provider.provideContent(file, length, lastModified);
+			if (optionalContent.isPresent())
+				return optionalContent;
+		}
+		return Optional.empty();
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import org.apache.http.HttpRequest;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Composite resolver that asks resolvers in the given order and returns the first variant found.
+ */
+public class FirstAvailableFileVariantResolver implements FileVariantResolver {
+
+	private final List<FileVariantResolver> resolvers;
+
+	/**
+	 * Create composite resolver
+	 *
+	 * @param resolvers not null and not empty list of resolvers ordered by priority
+	 */
+	public FirstAvailableFileVariantResolver(List<FileVariantResolver> resolvers) {
+		notEmpty(noNullElements(notNull(resolvers, "Resolvers cannot be null")), "At least one resolver is needed");
+		this.resolvers = new ArrayList<FileVariantResolver>(resolvers);
+	}
+
+	public Optional<FileVariant> resolveVariant(File originalFile, long length, long lastModified,
+												Optional<String> optionalContentType, HttpRequest request) {
+		for (FileVariantResolver resolver : resolvers) {
+			final Optional<FileVariant> optionalVariant = resolver.resolveVariant(originalFile, length, lastModified,
+					optionalContentType, request);
+			if (optionalVariant.isPresent())
+				return optionalVariant;
+		}
+		return Optional.empty();
+	}
+}
@@ -17,40 +17,167 @@
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
 
+import io.github.kitarek.elasthttpd.commons.Base64Codec;
 import io.github.kitarek.elasthttpd.commons.MimeTypeDetector;
 import io.github.kitarek.elasthttpd.commons.Optional;
 import io.github.kitarek.elasthttpd.commons.OptionalDispatcher;
+import io.github.kitarek.elasthttpd.commons.OptionalMapper;
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlPolicy;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlRules;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.EntityTagGenerator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.FileValidators;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.MetadataEntityTagGenerator;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStore;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadata;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.FileRangeEntity;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.MultipartByteRangesEntity;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.RangeRequestResult;
+import io.github.kitarek.elasthttpd.server.compression.AcceptEncodingNegotiator;
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.entity.AbstractHttpEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.InputStreamEntity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
+import java.util.List;
 
 import static io.github.kitarek.elasthttpd.commons.Optional.empty;
 import static io.github.kitarek.elasthttpd.commons.Optional.present;
 import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.substringBefore;
 import static org.apache.commons.lang3.Validate.isTrue;
 import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.CACHE_CONTROL;
+import static org.apache.http.HttpHeaders.CONTENT_RANGE;
+import static org.apache.http.HttpHeaders.ETAG;
+import static org.apache.http.HttpHeaders.EXPIRES;
 
 /**
  * Allows to setup HTTP response that will send over HTTP protocol an existing file from local filesystem using
  * the HTTP entity encoding
  *
  * Please note that this implementation currently does not handle charset detection of a file
+ *
+ * When the request is known every response carries ETag and Last-Modified validators and conditional requests are
+ * answered with 304 Not Modified or 412 Precondition Failed using file metadata only - the file is not opened then.
+ * Range requests for the original file content are answered with 206 Partial Content (multipart/byteranges for more
+ * than one range) or 416 Requested Range Not Satisfiable. HEAD requests are answered from file metadata only: neither
+ * the file nor its encoded variant is opened. Cache-Control and Expires headers are added to all these responses
+ * (except 412 and 416) according to the cache control rules. Responses with the whole original file carry Digest
+ * header when the client asks for SHA-256 digest with Want-Digest header and the digest is stored with the file
+ * by {@link ContentDigestStore} - it is never computed on demand.
  */
 public class HttpFileProducer {
 
 	public static final Logger LOGGER = LoggerFactory.getLogger(HttpFileProducer.class);
 	public static final int STREAM_BUFFER_100KB_SIZE = 102400;
+	public static final String WANT_DIGEST = "Want-Digest";
+	public static final String DIGEST = "Digest";
+	private static final String QUERY_STRING_SEPARATOR = "?";
+	private static final String DIGEST_ALGORITHM_OF_DIGEST_HEADER = "SHA-256";
+	private static final String ZERO_QUALITY_PATTERN = "q\\s*=\\s*0(\\.0*)?";
 	private final MimeTypeDetector mimeTypeDetector;
 	private final TemplatedHttpResponder templatedHttpResponder;
+	private final Optional<FileVariantResolver> optionalFileVariantResolver;
+	private final Optional<FileContentProvider> optionalFileContentProvider;
+	private final EntityTagGenerator entityTagGenerator;
+	private final CacheControlRules cacheControlRules;
+	private final AcceptEncodingNegotiator acceptEncodingNegotiator = new AcceptEncodingNegotiator();
+	private final ConditionalFileResponder conditionalFileResponder;
+	private final ContentDigestStore contentDigestStore = new ContentDigestStore();
 
 	public HttpFileProducer(MimeTypeDetector mimeTypeDetector, TemplatedHttpResponder templatedHttpResponder) {
+		this(mimeTypeDetector, templatedHttpResponder, Optional.<FileVariantResolver>empty());
+	}
+
+	/**
+	 * Create producer that sends encoded variants of files when they are available and accepted by client.
+	 *
+	 * @param mimeTypeDetector not null
+	 * @param templatedHttpResponder not null
+	 * @param optionalFileVariantResolver not null optional resolver of encoded file variants
+	 */
+	public HttpFileProducer(MimeTypeDetector mimeTypeDetector, TemplatedHttpResponder templatedHttpResponder,
+							Optional<FileVariantResolver> optionalFileVariantResolver) {
+		this(mimeTypeDetector, templatedHttpResponder, optionalFileVariantResolver,
+				Optional.<FileContentProvider>empty());
+	}
+
+	/**
+	 * Create producer that sends encoded variants of files when they are available and accepted by client and
+	 * takes content of original files from the provider (i.e. cache) when it has them.
+	 *
+	 * @param mimeTypeDetector not null
+	 * @param templatedHttpResponder not null
+	 * @param optionalFileVariantResolver not null optional resolver of encoded file variants
+	 * @param optionalFileContentProvider not null optional provider of original file contents
+	 */
+	public HttpFileProducer(MimeTypeDetector mimeTypeDetector, TemplatedHttpResponder templatedHttpResponder,
+							Optional<FileVariantResolver> optionalFileVariantResolver,
+							Optional<FileContentProvider> optionalFileContentProvider) {
+		this(mimeTypeDetector, templatedHttpResponder, optionalFileVariantResolver, optionalFileContentProvider,
+				new MetadataEntityTagGenerator());
+	}
+
+	/**
+	 * Create producer that sends encoded variants of files when they are available and accepted by client,
+	 * takes content of original files from the provider (i.e. cache) when it has them and uses a given generator
+	 * of entity tags.
+	 *
+	 * @param mimeTypeDetector not null
+	 * @param templatedHttpResponder not null
+	 * @param optionalFileVariantResolver not null optional resolver of encoded file variants
+	 * @param optionalFileContentProvider not null optional provider of original file contents
+	 * @param entityTagGenerator not null generator of entity tags used as validators of files
+	 */
+	public HttpFileProducer(MimeTypeDetector mimeTypeDetector, TemplatedHttpResponder templatedHttpResponder,
+							Optional<FileVariantResolver> optionalFileVariantResolver,
+							Optional<FileContentProvider> optionalFileContentProvider,
+							EntityTagGenerator entityTagGenerator) {
+		this(mimeTypeDetector, templatedHttpResponder, optionalFileVariantResolver, optionalFileContentProvider,
+				entityTagGenerator, CacheControlRules.noRules());
+	}
+
+	/**
+	 * Create producer that sends encoded variants of files when they are available and accepted by client,
+	 * takes content of original files from the provider (i.e. cache) when it has them, uses a given generator
+	 * of entity tags and adds caching headers chosen by the rules.
+	 *
+	 * @param mimeTypeDetector not null
+	 * @param templatedHttpResponder not null
+	 * @param optionalFileVariantResolver not null optional resolver of encoded file variants
+	 * @param optionalFileContentProvider not null optional provider of original file contents
+	 * @param entityTagGenerator not null generator of entity tags used as validators of files
+	 * @param cacheControlRules not null rules choosing Cache-Control and Expires headers of files
+	 */
+	public HttpFileProducer(MimeTypeDetector mimeTypeDetector, TemplatedHttpResponder templatedHttpResponder,
+							Optional<FileVariantResolver> optionalFileVariantResolver,
+							Optional<FileContentProvider> optionalFileContentProvider,
+							EntityTagGenerator entityTagGenerator, CacheControlRules cacheControlRules) {
 		this.mimeTypeDetector = notNull(mimeTypeDetector, "Mime Type Detector cannot be null");
 		this.templatedHttpResponder = notNull(templatedHttpResponder, "Templated HTTP responder cannot be null");
+		this.optionalFileVariantResolver = notNull(optionalFileVariantResolver,
+				"Optional file variant resolver cannot be null");
+		this.optionalFileContentProvider = notNull(optionalFileContentProvider,
+				"Optional file content provider cannot be null");
+		this.entityTagGenerator = notNull(entityTagGenerator, "Entity tag generator cannot be null");
+		this.cacheControlRules = notNull(cacheControlRules, "Cache control rules cannot be null");
+		this.conditionalFileResponder = new ConditionalFileResponder(this.templatedHttpResponder);
+	}
+
+	/**
+	 * @return not null generator of entity tags of files, so validators of files modified by other consumers are
+	 * the same as the ones sent with files
+	 */
+	public EntityTagGenerator getEntityTagGenerator() {
+		return entityTagGenerator;
 	}
 
 	/**
@@ -60,6 +187,171 @@ public class HttpFileProducer {
 	 * @param response a valid initially preconfigured HTTP response
 	 */
 	public void sendFileOverHttpResponse(final File localFile, final HttpResponse response) {
+		validateFileAndResponse(localFile, response);
+		sendOriginalFileOverHttpResponse(localFile, localFile.length(), localFile.lastModified(), response,
+				mimeTypeDetector.detectMimeContentType(localFile));
+	}
+
+	/**
+	 * Transform HttpResponse in such way it will contain the specified file (or its encoded variant acceptable for
+	 * the client) as HTTP entity together with its validators. When the request is conditional and client already
+	 * has the current file version (or a precondition fails) no entity is set and the file is not opened at all.
+	 *
+	 * @param localFile a valid not null file instance that must exist and be readable
+	 * @param request a valid not null HTTP request for the file
+	 * @param response a valid initially preconfigured HTTP response
+	 */
+	public void sendFileOverHttpResponse(final File localFile, final HttpRequest request,
+										 final HttpResponse response) {
+		notNull(request, "HTTP request must be not null");
+		validateFileAndResponse(localFile, response);
+		sendFileOverHttpResponse(localFile, localFile.length(), localFile.lastModified(), request, response);
+	}
+
+	/**
+	 * The same as {@link #sendFileOverHttpResponse(File, HttpRequest, HttpResponse)} but type, readability, length
+	 * and modification time of the file are taken from its metadata instead of asking the filesystem again.
+	 *
+	 * @param localFile a valid not null file instance
+	 * @param metadata not null metadata of the local file which must describe an existing and readable regular file
+	 * @param request a valid not null HTTP request for the file
+	 * @param response a valid initially preconfigured HTTP response
+	 */
+	public void sendFileOverHttpResponse(final File localFile, final FileMetadata metadata,
+										 final HttpRequest request, final HttpResponse response) {
+		notNull(request, "HTTP request must be not null");
+		validateFileMetadataAndResponse(localFile, metadata, response);
+		sendFileOverHttpResponse(localFile, metadata.getLength(), metadata.getLastModified(), request, response);
+	}
+
+	private void sendFileOverHttpResponse(File localFile, long fileLength, long lastModified, HttpRequest request,
+										  HttpResponse response) {
+		final FileValidators validators = new FileValidators(entityTagGenerator.generateEntityTag(localFile,
+				fileLength, lastModified), lastModified);
+		if (optionalFileVariantResolver.isPresent())
+			acceptEncodingNegotiator.addVaryAcceptEncodingHeader(response);
+		final ConditionalRequestResult conditionalRequestResult =
+				conditionalFileResponder.respondToPreconditions(request, response, validators, localFile.getName());
+		if (conditionalRequestResult == ConditionalRequestResult.PROCEED)
+			sendFileOrItsRangesOverHttpResponse(localFile, fileLength, request, response, validators);
+		else if (conditionalRequestResult == ConditionalRequestResult.NOT_MODIFIED && !cacheControlRules.isEmpty())
+			addCacheControlHeaders(request, response, mimeTypeDetector.detectMimeContentType(localFile));
+	}
+
+	private void sendFileOrItsRangesOverHttpResponse(File localFile, long fileLength, HttpRequest request,
+													 HttpResponse response, FileValidators validators) {
+		final RangeRequestResult rangeRequestResult = conditionalFileResponder.respondToRanges(request, response,
+				validators, fileLength, localFile.getName());
+		if (rangeRequestResult.isFullContent()) {
+			sendFileOrItsVariantOverHttpResponse(localFile, fileLength, request, response, validators);
+		} else if (rangeRequestResult.isPartialContent()) {
+			response.setHeader(ETAG, validators.getEntityTag());
+			sendFileRangesOverHttpResponse(localFile, fileLength, rangeRequestResult.getRanges(), request, response);
+		}
+	}
+
+	private void sendFileRangesOverHttpResponse(File localFile, long fileLength, List<ByteRange> ranges,
+												HttpRequest request, HttpResponse response) {
+		final Optional<String> optionalContentType = mimeTypeDetector.detectMimeContentType(localFile);
+		addCacheControlHeaders(request, response, optionalContentType);
+		final AbstractHttpEntity httpEntity;
+		if (ranges.size() == 1) {
+			response.setHeader(CONTENT_RANGE, ranges.get(0).toContentRange(fileLength));
+			httpEntity = new FileRangeEntity(localFile, ranges.get(0));
+			if (optionalContentType.isPresent())
+				httpEntity.setContentType(ContentType.create(optionalContentType.get()).toString());
+		} else {
+			httpEntity = new MultipartByteRangesEntity(localFile, ranges, fileLength, optionalContentType);
+		}
+		templatedHttpResponder.respondWithPartialContent(response);
+		response.setEntity(httpEntity);
+	}
+
+	private void sendFileOrItsVariantOverHttpResponse(File localFile, long fileLength, HttpRequest request,
+													  HttpResponse response, FileValidators validators) {
+		final Optional<String> optionalContentType = mimeTypeDetector.detectMimeContentType(localFile);
+		addCacheControlHeaders(request, response, optionalContentType);
+		final boolean metadataOnly = isHeadRequest(request);
+		if (optionalFileVariantResolver.isPresent()) {
+			final Optional<FileVariant> optionalFileVariant =
+					optionalFileVariantResolver.get().resolveVariant(localFile, fileLength, validators.getLastModified(),
+							optionalContentType, request);
+			if (optionalFileVariant.isPresent() && (metadataOnly ||
+					trySendFileVariantOverHttpResponse(optionalFileVariant.get(), response, optionalContentType))) {
+				final FileVariant fileVariant = optionalFileVariant.get();
+				response.setHeader(ETAG, validators.getEntityTagOfVariant(fileVariant.getContentCoding()));
+				if (metadataOnly)
+					describeFileOverHttpResponse(fileVariant.getContentLength(), optionalContentType,
+							Optional.present(fileVariant.getContentCoding().getToken()), response);
+				return;
+			}
+		}
+		response.setHeader(ETAG, validators.getEntityTag());
+		addDigestHeaderWhenWanted(localFile, fileLength, validators.getLastModified(), request, response);
+		if (metadataOnly)
+			describeFileOverHttpResponse(fileLength, optionalContentType, Optional.<String>empty(), response);
+		else
+			sendOriginalFileOverHttpResponse(localFile, fileLength, validators.getLastModified(), response,
+					optionalContentType);
+	}
+
+	private void addDigestHeaderWhenWanted(File localFile, long fileLength, long lastModified, HttpRequest request,
+										   HttpResponse response) {
+		if (!isContentDigestWanted(request))
+			return;
+		final Optional<byte[]> optionalDigest = contentDigestStore.load(localFile, fileLength, lastModified);
+		if (optionalDigest.isPresent())
+			response.setHeader(DIGEST,
+					DIGEST_ALGORITHM_OF_DIGEST_HEADER + "=" + Base64Codec.encode(optionalDigest.get()));
+	}
+
+	private static boolean isContentDigestWanted(HttpRequest request) {
+		final Header wantDigestHeader = request.getFirstHeader(WANT_DIGEST);
+		if (wantDigestHeader != null)
+			for (String element : wantDigestHeader.getValue().split(","))
+				if (isWantedDigestAlgorithm(element.split(";")))
+					return true;
+		return false;
+	}
+
+	private static boolean isWantedDigestAlgorithm(String[] algorithmAndParameters) {
+		if (!DIGEST_ALGORITHM_OF_DIGEST_HEADER.equalsIgnoreCase(algorithmAndParameters[0].trim()))
+			return false;
+		for (int i = 1; i < algorithmAndParameters.length; i++)
+			if (algorithmAndParameters[i].trim().matches(ZERO_QUALITY_PATTERN))
+				return false;
+		return true;
+	}
+
+	private boolean isHeadRequest(HttpRequest request) {
+		return "HEAD".equalsIgnoreCase(request.getRequestLine().getMethod());
+	}
+
+	private void describeFileOverHttpResponse(long contentLength, Optional<String> optionalContentType,
+											  Optional<String> optionalContentCoding, HttpResponse response) {
+		final FileMetadataEntity httpEntity = contentLength == FileVariant.UNKNOWN_CONTENT_LENGTH
+				? new FileMetadataEntity()
+				: new FileMetadataEntity(contentLength);
+		if (optionalContentType.isPresent())
+			httpEntity.setContentType(ContentType.create(optionalContentType.get()).toString());
+		if (optionalContentCoding.isPresent())
+			httpEntity.setContentEncoding(optionalContentCoding.get());
+		response.setEntity(httpEntity);
+	}
+
+	private void addCacheControlHeaders(HttpRequest request, HttpResponse response,
+										Optional<String> optionalContentType) {
+		if (cacheControlRules.isEmpty())
+			return;
+		final Optional<CacheControlPolicy> optionalPolicy = cacheControlRules.policyFor(
+				substringBefore(request.getRequestLine().getUri(), QUERY_STRING_SEPARATOR), optionalContentType);
+		if (optionalPolicy.isPresent()) {
+			response.setHeader(CACHE_CONTROL, optionalPolicy.get().getCacheControl());
+			response.setHeader(EXPIRES, optionalPolicy.get().getExpires(System.currentTimeMillis()));
+		}
+	}
+
+	private void validateFileAndResponse(File localFile, HttpResponse response) {
 		notNull(localFile, "Local file must be not null");
 		notNull(response, "HTTP response must be not null");
 		isTrue(localFile.exists(), "The local file needs to exists: %s", localFile);
@@ -67,13 +359,70 @@ public class HttpFileProducer {
 				localFile);
 		isTrue(!localFile.isDirectory(), "The local file must not be a directory: %s", localFile);
 		isTrue(localFile.canRead(), "The local file must be at least readable: %s", localFile);
+	}
 
-		final Optional<String> optionalContentType = mimeTypeDetector.detectMimeContentType(localFile);
+	private void validateFileMetadataAndResponse(File localFile, FileMetadata metadata, HttpResponse response) {
+		notNull(localFile, "Local file must be not null");
+		notNull(metadata, "Metadata of local file must be not null");
+		notNull(response, "HTTP response must be not null");
+		isTrue(metadata.exists(), "The local file needs to exists: %s", localFile);
+		isTrue(metadata.isRegularFile(), "The local file needs to be a regular file: %s", localFile);
+		isTrue(metadata.isReadable(), "The local file must be at least readable: %s", localFile);
+	}
+
+	private void sendOriginalFileOverHttpResponse(File localFile, long fileLength, long lastModified,
+												  HttpResponse response, Optional<String> optionalContentType) {
+		if (optionalFileContentProvider.isPresent()) {
+			final Optional<FileContent> optionalFileContent =
+					optionalFileContentProvider.get().provideContent(localFile, fileLength, lastModified);
+			if (optionalFileContent.isPresent() &&
+					trySendFileContentOverHttpResponse(optionalFileContent.get(), response, optionalContentType))
+				return;
+		}
+		sendFileFromFilesystemOverHttpResponse(localFile, fileLength, response, optionalContentType);
+	}
+
+	private void sendFileFromFilesystemOverHttpResponse(File localFile, long fileLength, HttpResponse response,
+														Optional<String> optionalContentType) {
 		final Optional<InputStream> optionalInputStreamFromFile = transformFileIntoInputStream(localFile);
-		final FileEntityMetadata fileEntityMetadata = new FileEntityMetadata(optionalContentType, localFile.length());
+		final FileEntityMetadata fileEntityMetadata = new FileEntityMetadata(optionalContentType, fileLength);
 		sendInputStreamOverHttpResponse(optionalInputStreamFromFile, response, fileEntityMetadata);
 	}
 
+	private boolean trySendFileVariantOverHttpResponse(FileVariant fileVariant, HttpResponse response,
+													   Optional<String> optionalContentType) {
+		final Optional<InputStreamEntity> optionalHttpEntity = tryCreateHttpEntity(fileVariant, optionalContentType);
+		if (optionalHttpEntity.isNotPresent()) {
+			LOGGER.warn("Cannot open encoded variant of file. The original file will be sent instead");
+			return false;
+		}
+		optionalHttpEntity.get().setContentEncoding(fileVariant.getContentCoding().getToken());
+		response.setEntity(optionalHttpEntity.get());
+		return true;
+	}
+
+	private boolean trySendFileContentOverHttpResponse(FileContent fileContent, HttpResponse response,
+													   Optional<String> optionalContentType) {
+		final Optional<InputStreamEntity> optionalHttpEntity = tryCreateHttpEntity(fileContent, optionalContentType);
+		if (optionalHttpEntity.isNotPresent()) {
+			LOGGER.warn("Cannot open provided content of file. The file will be read from filesystem instead");
+			return false;
+		}
+		response.setEntity(optionalHttpEntity.get());
+		return true;
+	}
+
+	private Optional<InputStreamEntity> tryCreateHttpEntity(FileContent fileContent,
+															 Optional<String> optionalContentType) {
+		try {
+			return present(createHttpEntity(new FileEntity(fileContent.openContent(),
+					new FileEntityMetadata(optionalContentType, fileContent.getContentLength()))));
+		} catch (IOException e) {
+			LOGGER.debug("Cannot open file content", e);
+			return empty();
+		}
+	}
+
 	private void sendInputStreamOverHttpResponse(Optional<InputStream> optionalInputStreamFromFile,
 												 final HttpResponse response,
 												 final FileEntityMetadata fileEntityMetadata) {
@@ -104,18 +453,19 @@ public class HttpFileProducer {
 	}
 
 	private void transformFileEntityIntoHttpEntity(final FileEntity fileEntity, final HttpResponse response) {
-		final FileEntityMetadata fileEntityMetadata = fileEntity.getFileEntityMetadata();
-		fileEntityMetadata.getOptionalContentType().dispatch(new OptionalDispatcher<String>() {
-			public void notPresent() {
-				response.setEntity(new InputStreamEntity(fileEntity.getInputStreamFromFile(),
-						fileEntityMetadata.getFileLength()));
-			}
+		response.setEntity(createHttpEntity(fileEntity));
+	}
 
+	private InputStreamEntity createHttpEntity(final FileEntity fileEntity) {
+		final FileEntityMetadata fileEntityMetadata = fileEntity.getFileEntityMetadata();
+		final InputStreamEntity httpEntity = new InputStreamEntity(fileEntity.getInputStreamFromFile(),
+				fileEntityMetadata.getFileLength());
+		fileEntityMetadata.getOptionalContentType().map(new OptionalMapper<String>() {
 			public void present(String contentType) {
-				response.setEntity(new InputStreamEntity(fileEntity.getInputStreamFromFile(),
-						fileEntityMetadata.getFileLength(), ContentType.create(contentType)));
+				httpEntity.setContentType(ContentType.create(contentType).toString());
 			}
 		});
+		return httpEntity;
 	}
 
 	private static class FileEntity {
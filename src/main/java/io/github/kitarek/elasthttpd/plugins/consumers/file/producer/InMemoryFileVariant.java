@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import io.github.kitarek.elasthttpd.server.compression.ContentCoding;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * File variant which encoded content is already kept in memory so serving it needs no filesystem access.
+ */
+public class InMemoryFileVariant implements FileVariant {
+
+	private final ContentCoding contentCoding;
+	private final byte[] encodedContent;
+
+	/**
+	 * Create variant
+	 *
+	 * @param contentCoding not null coding of content
+	 * @param encodedContent not null encoded content that must not be modified afterwards
+	 */
+	public InMemoryFileVariant(ContentCoding contentCoding, byte[] encodedContent) {
+		this.contentCoding = notNull(contentCoding, "Content coding cannot be null");
+		this.encodedContent = notNull(encodedContent, "Encoded content cannot be null");
+	}
+
+	public ContentCoding getContentCoding() {
+		return contentCoding;
+	}
+
+	public long getContentLength() {
+		return encodedContent.length;
+	}
+
+	public InputStream openContent() {
+		return new ByteArrayInputStream(encodedContent);
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.server.compression.AcceptEncodingNegotiator;
+import io.github.kitarek.elasthttpd.server.compression.ContentCoding;
+import org.apache.http.HttpRequest;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty;
+import static io.github.kitarek.elasthttpd.commons.Optional.present;
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.GZIP;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Resolves precompressed sidecar files created next to the original ones during the build (i.e. app.js.gz next to
+ * app.js). The sidecar is used only when client accepts gzip coding and the sidecar is regular file that is at least
+ * as new as the original. Serving such variant costs no CPU for compression.
+ */
+public class PrecompressedSidecarVariantResolver implements FileVariantResolver {
+
+	public static final String GZIP_SIDECAR_EXTENSION = ".gz";
+	public static final int STREAM_BUFFER_SIZE = HttpFileProducer.STREAM_BUFFER_100KB_SIZE;
+	private final AcceptEncodingNegotiator negotiator;
+
+	public PrecompressedSidecarVariantResolver(AcceptEncodingNegotiator negotiator) {
+		this.negotiator = notNull(negotiator, "Accept-Encoding negotiator cannot be null");
+	}
+
+	public Optional<FileVariant> resolveVariant(File originalFile, long length, long lastModified,
+												Optional<String> optionalContentType, HttpRequest request) {
+		notNull(originalFile, "Original file cannot be null");
+		notNull(request, "HTTP request cannot be null");
+		return negotiator.accepts(request, GZIP)
+				? resolveSidecar(lastModified, new File(originalFile.getPath() + GZIP_SIDECAR_EXTENSION))
+				: Optional.<FileVariant>empty();
+	}
+
+	private Optional<FileVariant> resolveSidecar(long originalLastModified, File sidecarFile) {
+		try {
+			final BasicFileAttributes sidecarAttributes = Files.readAttributes(sidecarFile.toPath(),
+					BasicFileAttributes.class);
+			return isSidecarUpToDate(originalLastModified, sidecarAttributes)
+					? present((FileVariant) new SidecarFileVariant(sidecarFile, GZIP, sidecarAttributes.size()))
+					: Optional.<FileVariant>empty();
+		} catch (IOException e) {
+			return empty();
+		}
+	}
+
+	private boolean isSidecarUpToDate(long originalLastModified, BasicFileAttributes sidecarAttributes) {
+		return sidecarAttributes.isRegularFile() &&
+				sidecarAttributes.lastModifiedTime().toMillis() >= originalLastModified;
+	}
+
+	private static class SidecarFileVariant implements FileVariant {
+		private final File sidecarFile;
+		private final ContentCoding contentCoding;
+		private final long contentLength;
+
+		private SidecarFileVariant(File sidecarFile, ContentCoding contentCoding, long contentLength) {
+			this.sidecarFile = sidecarFile;
+			this.contentCoding = contentCoding;
+			this.contentLength = contentLength;
+		}
+
+		public ContentCoding getContentCoding() {
+			return contentCoding;
+		}
+
+		public long getContentLength() {
+			return contentLength;
+		}
+
+		public InputStream openContent() throws IOException {
+			return new BufferedInputStream(new FileInputStream(sidecarFile), STREAM_BUFFER_SIZE);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.range;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+/**
+ * Immutable range of bytes with both positions inclusive, already resolved against length of file
+ */
+public class ByteRange {
+
+	private final long firstPosition;
+	private final long lastPosition;
+
+	/**
+	 * Create range of bytes
+	 *
+	 * @param firstPosition zero or positive position of the first byte in range
+	 * @param lastPosition position of the last byte in range; not smaller than the first one
+	 */
+	public ByteRange(long firstPosition, long lastPosition) {
+		isTrue(firstPosition >= 0, "First position of byte range cannot be negative");
+		isTrue(lastPosition >= firstPosition, "Last position of byte range cannot be smaller than the first one");
+		this.firstPosition = firstPosition;
+		this.lastPosition = lastPosition;
+	}
+
+	public long getFirstPosition() {
+		return firstPosition;
+	}
+
+	public long getLastPosition() {
+		return lastPosition;
+	}
+
+	public long getLength() {
+		return lastPosition - firstPosition + 1;
+	}
+
+	/**
+	 * @param completeLength length of the whole file
+	 * @return not null value of Content-Range header for this range (i.e. 'bytes 0-499/1234')
+	 */
+	public String toContentRange(long completeLength) {
+		return "bytes " + firstPosition + "-" + lastPosition + "/" + completeLength;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		ByteRange byteRange = (ByteRange) o;
+
+		return firstPosition == byteRange.firstPosition && lastPosition == byteRange.lastPosition;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (int) (firstPosition ^ (firstPosition >>> 32)) + (int) (lastPosition ^ (lastPosition >>> 32));
+	}
+
+	@Override
+	public String toString() {
+		return firstPosition + "-" + lastPosition;
+	}
+}
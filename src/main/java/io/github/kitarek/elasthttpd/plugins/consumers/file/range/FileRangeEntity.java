@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.range;
+
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * HTTP entity with a single range of file. The range is transferred directly from the file position using
+ * {@link FileChannel#transferTo(long, long, WritableByteChannel)} so bytes before the range are never read.
+ * The file is opened only when the entity is written, so responses that are not sent with body (i.e. to HEAD
+ * requests) do not hold any file handle.
+ */
+public class FileRangeEntity extends AbstractHttpEntity {
+
+	private final File file;
+	private final ByteRange range;
+
+	/**
+	 * Create entity with the following parameters
+	 *
+	 * @param file not null existing and readable file
+	 * @param range not null range of file satisfiable for its current length
+	 */
+	public FileRangeEntity(File file, ByteRange range) {
+		this.file = notNull(file, "File cannot be null");
+		this.range = notNull(range, "Byte range cannot be null");
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public long getContentLength() {
+		return range.getLength();
+	}
+
+	public InputStream getContent() throws IOException {
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			final FileChannel channel = randomAccessFile.getChannel();
+			channel.position(range.getFirstPosition());
+			return new BoundedInputStream(Channels.newInputStream(channel), range.getLength());
+		} catch (IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	public void writeTo(OutputStream outstream) throws IOException {
+		notNull(outstream, "Output stream cannot be null");
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			transferRange(randomAccessFile.getChannel(), range, Channels.newChannel(outstream));
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	public boolean isStreaming() {
+		return false;
+	}
+
+	/**
+	 * Transfer the whole range of file into the target channel
+	 *
+	 * @param fileChannel not null channel of file
+	 * @param range not null range to transfer
+	 * @param target not null target channel
+	 * @throws IOException when range cannot be read in whole (i.e. file was truncated) or cannot be written
+	 */
+	static void transferRange(FileChannel fileChannel, ByteRange range, WritableByteChannel target)
+			throws IOException {
+		long position = range.getFirstPosition();
+		long remaining = range.getLength();
+		while (remaining > 0) {
+			final long transferred = fileChannel.transferTo(position, remaining, target);
+			if (transferred <= 0 && position >= fileChannel.size())
+				throw new IOException("File was truncated while its range was sent: " + range);
+			position += transferred;
+			remaining -= transferred;
+		}
+	}
+
+	/**
+	 * Limits the stream to the length of range and closes the file together with the stream
+	 */
+	private static class BoundedInputStream extends InputStream {
+		private final InputStream inputStream;
+		private long remaining;
+
+		private BoundedInputStream(InputStream inputStream, long remaining) {
+			this.inputStream = inputStream;
+			this.remaining = remaining;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0)
+				return -1;
+			final int value = inputStream.read();
+			if (value >= 0)
+				remaining--;
+			return value;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (remaining <= 0)
+				return -1;
+			final int bytesRead = inputStream.read(b, off, (int) Math.min(len, remaining));
+			if (bytesRead > 0)
+				remaining -= bytesRead;
+			return bytesRead;
+		}
+
+		@Override
+		public void close() throws IOException {
+			inputStream.close();
+		}
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.range;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.util.EncodingUtils.getAsciiBytes;
+
+/**
+ * HTTP entity of type multipart/byteranges with many ranges of file. Every part has its own Content-Type and
+ * Content-Range headers and its bytes are transferred directly from the file position like in
+ * {@link FileRangeEntity}. Length of the whole entity is known upfront so it is sent with Content-Length.
+ */
+public class MultipartByteRangesEntity extends AbstractHttpEntity {
+
+	public static final String MULTIPART_BYTERANGES_MIME_TYPE = "multipart/byteranges";
+	private static final String LINE_SEPARATOR = "\r\n";
+	private static final String BOUNDARY_DELIMITER = "--";
+	private final File file;
+	private final List<ByteRange> ranges;
+	private final List<byte[]> partHeaders;
+	private final byte[] closeDelimiter;
+	private final long contentLength;
+
+	/**
+	 * Create entity with the following parameters
+	 *
+	 * @param file not null existing and readable file
+	 * @param ranges not null and not empty ranges of file satisfiable for its current length
+	 * @param completeLength length of file
+	 * @param optionalContentType not null optional content type of file
+	 */
+	public MultipartByteRangesEntity(File file, List<ByteRange> ranges, long completeLength,
+									 Optional<String> optionalContentType) {
+		this.file = notNull(file, "File cannot be null");
+		notEmpty(noNullElements(notNull(ranges, "Byte ranges cannot be null")), "At least one byte range is needed");
+		notNull(optionalContentType, "Optional content type cannot be null");
+		isTrue(completeLength >= 0, "Length of file cannot be negative");
+		this.ranges = new ArrayList<ByteRange>(ranges);
+		final String boundary = UUID.randomUUID().toString().replace("-", "");
+		this.partHeaders = new ArrayList<byte[]>(ranges.size());
+		long length = 0;
+		for (ByteRange range : this.ranges) {
+			final byte[] headers = createPartHeaders(boundary, range, completeLength, optionalContentType,
+					partHeaders.isEmpty());
+			partHeaders.add(headers);
+			length += headers.length + range.getLength();
+		}
+		this.closeDelimiter = getAsciiBytes(LINE_SEPARATOR + BOUNDARY_DELIMITER + boundary + BOUNDARY_DELIMITER +
+				LINE_SEPARATOR);
+		this.contentLength = length + closeDelimiter.length;
+		setContentType(MULTIPART_BYTERANGES_MIME_TYPE + "; boundary=" + boundary);
+	}
+
+	private static byte[] createPartHeaders(String boundary, ByteRange range, long completeLength,
+											Optional<String> optionalContentType, boolean firstPart) {
+		final StringBuilder headers = new StringBuilder();
+		if (!firstPart)
+			headers.append(LINE_SEPARATOR);
+		headers.append(BOUNDARY_DELIMITER).append(boundary).append(LINE_SEPARATOR);
+		if (optionalContentType.isPresent())
+			headers.append("Content-Type: ").append(optionalContentType.get()).append(LINE_SEPARATOR);
+		headers.append("Content-Range: ").append(range.toContentRange(completeLength)).append(LINE_SEPARATOR);
+		headers.append(LINE_SEPARATOR);
+		return getAsciiBytes(headers.toString());
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	/**
+	 * Content is assembled in memory, so it should be used only by decorators of small entities. Connections send
+	 * the entity using {@link #writeTo(OutputStream)} which does not buffer any range.
+	 */
+	public InputStream getContent() throws IOException {
+		final ByteArrayOutputStream content = new ByteArrayOutputStream();
+		writeTo(content);
+		return new ByteArrayInputStream(content.toByteArray());
+	}
+
+	public void writeTo(OutputStream outstream) throws IOException {
+		notNull(outstream, "Output stream cannot be null");
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+		try {
+			final WritableByteChannel target = Channels.newChannel(outstream);
+			for (int i = 0; i < ranges.size(); i++) {
+				outstream.write(partHeaders.get(i));
+				FileRangeEntity.transferRange(randomAccessFile.getChannel(), ranges.get(i), target);
+			}
+			outstream.write(closeDelimiter);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	public boolean isStreaming() {
+		return false;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.range;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.FileValidators;
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.kitarek.elasthttpd.commons.HttpDates.parseDate;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.range.RangeRequestResult.fullContent;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.range.RangeRequestResult.notSatisfiable;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.range.RangeRequestResult.partialContent;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.IF_RANGE;
+import static org.apache.http.HttpHeaders.RANGE;
+
+/**
+ * Evaluates Range and If-Range headers of GET requests as defined by RFC 7233. The Range header is ignored (and the
+ * whole content is sent) when it is syntactically invalid, uses other unit than bytes, requests too many ranges or
+ * when If-Range does not match the current file version.
+ */
+public class RangeRequestEvaluator {
+
+	public static final String BYTES_UNIT = "bytes";
+	public static final int MAXIMUM_NUMBER_OF_RANGES = 64;
+	private static final char UNIT_SEPARATOR = '=';
+	private static final char POSITION_SEPARATOR = '-';
+	private static final String RANGE_SEPARATOR = ",";
+	private static final int MAXIMUM_POSITION_DIGITS = 18;
+	private static final long MILLISECONDS_IN_SECOND = 1000;
+
+	/**
+	 * Evaluate ranges requested for the file
+	 *
+	 * @param request not null request
+	 * @param validators not null validators of current version of requested file
+	 * @param completeLength zero or positive length of file
+	 * @return not null result of evaluation
+	 */
+	public RangeRequestResult evaluate(HttpRequest request, FileValidators validators, long completeLength) {
+		notNull(request, "HTTP request cannot be null");
+		notNull(validators, "File validators cannot be null");
+		isTrue(completeLength >= 0, "Length of content cannot be negative");
+		final Header rangeHeader = request.getFirstHeader(RANGE);
+		if (rangeHeader == null || !"GET".equalsIgnoreCase(request.getRequestLine().getMethod()) ||
+				!isIfRangeMatching(request.getFirstHeader(IF_RANGE), validators))
+			return fullContent();
+		final Optional<List<ByteRange>> optionalRanges = parseRanges(rangeHeader.getValue(), completeLength);
+		if (optionalRanges.isNotPresent())
+			return fullContent();
+		return optionalRanges.get().isEmpty() ? notSatisfiable() : partialContent(optionalRanges.get());
+	}
+
+	private boolean isIfRangeMatching(Header ifRangeHeader, FileValidators validators) {
+		if (ifRangeHeader == null)
+			return true;
+		final String value = ifRangeHeader.getValue().trim();
+		if (value.startsWith("\"") || value.startsWith("W/"))
+			return value.equals(validators.getEntityTag());
+		final Optional<Long> optionalDate = parseDate(value);
+		return optionalDate.isPresent() &&
+				optionalDate.get() / MILLISECONDS_IN_SECOND == validators.getLastModified() / MILLISECONDS_IN_SECOND;
+	}
+
+	/**
+	 * @return not present when header should be ignored, otherwise satisfiable ranges (empty if there are none)
+	 */
+	private Optional<List<ByteRange>> parseRanges(String value, long completeLength) {
+		final int unitSeparatorIndex = value.indexOf(UNIT_SEPARATOR);
+		if (unitSeparatorIndex < 0 || !BYTES_UNIT.equalsIgnoreCase(value.substring(0, unitSeparatorIndex).trim()))
+			return Optional.empty();
+		final String[] rangeSpecifications = value.substring(unitSeparatorIndex + 1).split(RANGE_SEPARATOR);
+		final List<ByteRange> ranges = new ArrayList<ByteRange>();
+		int numberOfRanges = 0;
+		for (String rangeSpecification : rangeSpecifications) {
+			final String trimmedSpecification = rangeSpecification.trim();
+			if (trimmedSpecification.length() == 0)
+				continue;
+			if (++numberOfRanges > MAXIMUM_NUMBER_OF_RANGES || !addSatisfiableRange(trimmedSpecification,
+					completeLength, ranges))
+				return Optional.empty();
+		}
+		return numberOfRanges == 0 ? Optional.<List<ByteRange>>empty() : Optional.present(ranges);
+	}
+
+	/**
+	 * @return false if range specification is not valid
+	 */
+	private boolean addSatisfiableRange(String specification, long completeLength, List<ByteRange> ranges) {
+		final int separatorIndex = specification.indexOf(POSITION_SEPARATOR);
+		if (separatorIndex < 0)
+			return false;
+		final String firstValue = specification.substring(0, separatorIndex).trim();
+		final String lastValue = specification.substring(separatorIndex + 1).trim();
+		if (firstValue.length() == 0)
+			return isValidPosition(lastValue) && addSatisfiableSuffixRange(Long.parseLong(lastValue), completeLength,
+					ranges);
+		if (!isValidPosition(firstValue) || (lastValue.length() > 0 && !isValidPosition(lastValue)))
+			return false;
+		final long first = Long.parseLong(firstValue);
+		final long last = lastValue.length() > 0 ? Long.parseLong(lastValue) : completeLength - 1;
+		if (last < first && lastValue.length() > 0)
+			return false;
+		if (first < completeLength)
+			ranges.add(new ByteRange(first, Math.min(last, completeLength - 1)));
+		return true;
+	}
+
+	private boolean addSatisfiableSuffixRange(long suffixLength, long completeLength, List<ByteRange> ranges) {
+		if (suffixLength > 0 && completeLength > 0)
+			ranges.add(new ByteRange(Math.max(0, completeLength - suffixLength), completeLength - 1));
+		return true;
+	}
+
+	private boolean isValidPosition(String value) {
+		if (value.length() == 0 || value.length() > MAXIMUM_POSITION_DIGITS)
+			return false;
+		for (int i = 0; i < value.length(); i++)
+			if (value.charAt(i) < '0' || value.charAt(i) > '9')
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.range;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Collections.unmodifiableList;
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Outcome of evaluation of Range and If-Range request headers: the whole content, some ranges of it or none
+ * when the requested ranges cannot be satisfied.
+ */
+public class RangeRequestResult {
+
+	private static final RangeRequestResult FULL_CONTENT = new RangeRequestResult(true,
+			Collections.<ByteRange>emptyList());
+	private static final RangeRequestResult NOT_SATISFIABLE = new RangeRequestResult(false,
+			Collections.<ByteRange>emptyList());
+	private final boolean fullContent;
+	private final List<ByteRange> ranges;
+
+	private RangeRequestResult(boolean fullContent, List<ByteRange> ranges) {
+		this.fullContent = fullContent;
+		this.ranges = ranges;
+	}
+
+	public static RangeRequestResult fullContent() {
+		return FULL_CONTENT;
+	}
+
+	public static RangeRequestResult notSatisfiable() {
+		return NOT_SATISFIABLE;
+	}
+
+	/**
+	 * @param ranges not null and not empty ranges in order requested by client
+	 * @return result for partial content
+	 */
+	public static RangeRequestResult partialContent(List<ByteRange> ranges) {
+		notEmpty(noNullElements(notNull(ranges, "Byte ranges cannot be null")), "At least one byte range is needed");
+		return new RangeRequestResult(false, unmodifiableList(new ArrayList<ByteRange>(ranges)));
+	}
+
+	/**
+	 * @return true if the whole content should be sent as usual
+	 */
+	public boolean isFullContent() {
+		return fullContent;
+	}
+
+	/**
+	 * @return true if there are ranges to be sent as partial content
+	 */
+	public boolean isPartialContent() {
+		return !ranges.isEmpty();
+	}
+
+	/**
+	 * @return true if none of requested ranges overlaps the content
+	 */
+	public boolean isNotSatisfiable() {
+		return !fullContent && ranges.isEmpty();
+	}
+
+	/**
+	 * @return not null list of ranges; empty unless the result is partial content
+	 */
+	public List<ByteRange> getRanges() {
+		return ranges;
+	}
+}
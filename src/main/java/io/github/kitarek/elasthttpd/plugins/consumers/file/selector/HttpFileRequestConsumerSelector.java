@@ -21,7 +21,7 @@ import io.github.kitarek.elasthttpd.commons.Optional;
 import io.github.kitarek.elasthttpd.model.AnyHttpMethod;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.FileServerMode;
 import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileRequestConsumer;
-import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileRequestConsumerFactory;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileOperationConsumerFactory;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -38,7 +38,7 @@ public class HttpFileRequestConsumerSelector {
 
 	private final Map<AnyHttpMethod, HttpFileRequestConsumer> methodToConsumerMap;
 
-	public HttpFileRequestConsumerSelector(FileServerMode fileServerMode, HttpFileRequestConsumerFactory factory) {
+	public HttpFileRequestConsumerSelector(FileServerMode fileServerMode, HttpFileOperationConsumerFactory factory) {
 		notNull(fileServerMode, "File server mode needs to be defined (not null)");
 		notNull(factory, "The factory for HttpFileRequestConsumer needs to be a valid not null instance");
 		methodToConsumerMap = new HashMap<AnyHttpMethod, HttpFileRequestConsumer>();
@@ -47,21 +47,23 @@ public class HttpFileRequestConsumerSelector {
 	}
 
 	private void optionallyCreateReadWriteFileRequestConsumerSelector(FileServerMode fileServerMode,
-																	  HttpFileRequestConsumerFactory factory) {
+																	  HttpFileOperationConsumerFactory factory) {
 		if (fileServerMode == READ_AND_WRITE) {
 			createReadWriteFileRequestConsumerSelector(factory);
 		}
 	}
 
-	private void createReadWriteFileRequestConsumerSelector(HttpFileRequestConsumerFactory factory) {
+	private void createReadWriteFileRequestConsumerSelector(HttpFileOperationConsumerFactory factory) {
 		final HttpFileRequestConsumer consumerForDeleteOperation = factory.createConsumerForDeleteOperation();
 		final HttpFileRequestConsumer consumerForWriteOperation = factory.createConsumerForWriteOperation();
+		final HttpFileRequestConsumer consumerForPatchOperation = factory.createConsumerForPatchOperation();
 		methodToConsumerMap.put(POST, consumerForWriteOperation);
 		methodToConsumerMap.put(PUT, consumerForWriteOperation);
+		methodToConsumerMap.put(PATCH, consumerForPatchOperation);
 		methodToConsumerMap.put(DELETE, consumerForDeleteOperation);
 	}
 
-	private void createReadOnlyFileRequestConsumerSelector(HttpFileRequestConsumerFactory factory) {
+	private void createReadOnlyFileRequestConsumerSelector(HttpFileOperationConsumerFactory factory) {
 		final HttpFileRequestConsumer consumerForReadOperation = factory.createConsumerForReadOperation();
 		methodToConsumerMap.put(GET, consumerForReadOperation);
 		methodToConsumerMap.put(HEAD, consumerForReadOperation);
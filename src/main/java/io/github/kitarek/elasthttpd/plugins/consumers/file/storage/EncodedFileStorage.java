@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FileVariant;
+import io.github.kitarek.elasthttpd.server.compression.ContentCoding;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Storage that keeps some files already encoded (i.e. compressed entries of archive), so they can be sent to clients
+ * accepting the coding without decoding them first.
+ */
+public interface EncodedFileStorage extends FileStorage {
+
+	/**
+	 * List codings of variants that file has without any encoding done on request
+	 *
+	 * @param path not null normalized path of file
+	 * @return not null codings in order of preference; empty when file is stored as it is or does not exist
+	 * @throws IOException when metadata of file cannot be read
+	 */
+	List<ContentCoding> storedCodingsOf(String path) throws IOException;
+
+	/**
+	 * Find encoded variant of file. Its content is opened only by {@link FileVariant#openContent()}.
+	 *
+	 * @param path not null normalized path of file
+	 * @param coding not null coding of variant
+	 * @return not null optional variant; not present when the coding is not one of stored codings of file
+	 * @throws IOException when metadata of file cannot be read
+	 */
+	Optional<FileVariant> storedVariantOf(String path, ContentCoding coding) throws IOException;
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryEntry;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Storage of files served by the FileServer plugin (i.e. local file system or memory). Files and directories are
+ * addressed by normalized request paths: absolute paths with '/' separators that never end with '/' except
+ * the root directory '/'. Implementations are safe for concurrent use and a file replaced by a write is never seen
+ * partially written.
+ */
+public interface FileStorage {
+
+	String ROOT_PATH = "/";
+	String PATH_SEPARATOR = "/";
+	long UNKNOWN_CONTENT_LENGTH = -1;
+
+	/**
+	 * Read metadata of file or directory
+	 *
+	 * @param path not null normalized path
+	 * @return not null optional entry (name, type, size and modification time) present when the path exists
+	 * @throws IOException when metadata cannot be read
+	 */
+	Optional<DirectoryEntry> stat(String path) throws IOException;
+
+	/**
+	 * Open the whole content of file
+	 *
+	 * @param path not null normalized path of file
+	 * @return not null stream that needs to be closed
+	 * @throws FileNotFoundException when the path does not exist or is a directory
+	 * @throws IOException when file cannot be opened
+	 */
+	InputStream openForRead(String path) throws IOException;
+
+	/**
+	 * Open a range of content of file without reading the bytes before it
+	 *
+	 * @param path not null normalized path of file
+	 * @param range not null range satisfiable for the current length of file
+	 * @return not null stream of exactly the bytes of range that needs to be closed
+	 * @throws FileNotFoundException when the path does not exist or is a directory
+	 * @throws IOException when file cannot be opened
+	 */
+	InputStream openForRead(String path, ByteRange range) throws IOException;
+
+	/**
+	 * Replace the whole content of file (or create it) with the content of stream. The new content is visible only
+	 * when it is complete and nothing is changed when the write fails.
+	 *
+	 * @param path not null normalized path of file
+	 * @param content not null stream read until its end (it is not closed)
+	 * @param contentLength declared length of content or {@link #UNKNOWN_CONTENT_LENGTH}
+	 * @return number of written bytes
+	 * @throws FileNotFoundException when the parent directory of file does not exist or the path is a directory
+	 * @throws IOException when content cannot be read or written or it has not the declared length
+	 */
+	long write(String path, InputStream content, long contentLength) throws IOException;
+
+	/**
+	 * Delete file or empty directory
+	 *
+	 * @param path not null normalized path
+	 * @return true when the path existed and was deleted
+	 * @throws IOException when the path cannot be deleted (i.e. not empty directory)
+	 */
+	boolean delete(String path) throws IOException;
+
+	/**
+	 * List entries of directory
+	 *
+	 * @param path not null normalized path of directory
+	 * @return not null entries in any order
+	 * @throws FileNotFoundException when the path does not exist or is not a directory
+	 * @throws IOException when directory cannot be read
+	 */
+	List<DirectoryEntry> list(String path) throws IOException;
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryEntry;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFileName;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.substringAfterLast;
+import static org.apache.commons.lang3.StringUtils.substringBeforeLast;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Storage of files kept entirely in heap memory, i.e. to serve a hot directory tree without touching the disk or to
+ * benchmark the plugin without noise of the file system. Files and directories are kept in sorted concurrent maps,
+ * so reads never block and a directory is listed with a single scan of the range of its paths. Content of file is
+ * an immutable array replaced as a whole by every write, so readers keep streaming the version they have opened.
+ * Writes create missing parent directories.
+ */
+public class InMemoryFileStorage implements FileStorage {
+
+	public static final int MAXIMUM_FILE_SIZE_IN_BYTES = Integer.MAX_VALUE - 8;
+	private static final int COPY_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+	private static final char PATH_SEPARATOR_SUCCESSOR = '/' + 1;
+
+	private final ConcurrentNavigableMap<String, StoredFile> files = new ConcurrentSkipListMap<String, StoredFile>();
+	private final ConcurrentNavigableMap<String, Long> directories = new ConcurrentSkipListMap<String, Long>();
+	private final AtomicLong storedBytes = new AtomicLong();
+
+	/**
+	 * Create empty storage
+	 */
+	public InMemoryFileStorage() {
+		directories.put(ROOT_PATH, System.currentTimeMillis());
+	}
+
+	/**
+	 * Create storage with a copy of the whole directory tree (except temporary files of uploads)
+	 *
+	 * @param directory not null existing directory copied as the root directory
+	 * @return not null storage
+	 * @throws IOException when the directory tree cannot be read
+	 */
+	public static InMemoryFileStorage copyOf(File directory) throws IOException {
+		notNull(directory, "Directory cannot be null");
+		isTrue(directory.isDirectory(), "Directory needs to exist: %s", directory);
+		final InMemoryFileStorage storage = new InMemoryFileStorage();
+		final Path rootPath = directory.toPath();
+		Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult preVisitDirectory(Path path, BasicFileAttributes attributes) {
+				storage.directories.put(storagePathOf(rootPath, path), attributes.lastModifiedTime().toMillis());
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult visitFile(Path path, BasicFileAttributes attributes) throws IOException {
+				if (attributes.isRegularFile() && !isTemporaryFileName(path.getFileName().toString()))
+					storage.putFile(storagePathOf(rootPath, path), Files.readAllBytes(path),
+							attributes.lastModifiedTime().toMillis());
+				return FileVisitResult.CONTINUE;
+			}
+		});
+		return storage;
+	}
+
+	private static String storagePathOf(Path rootPath, Path path) {
+		final StringBuilder storagePath = new StringBuilder();
+		for (Path name : rootPath.relativize(path))
+			if (name.toString().length() > 0)
+				storagePath.append(PATH_SEPARATOR).append(name.toString());
+		return storagePath.length() > 0 ? storagePath.toString() : ROOT_PATH;
+	}
+
+	public Optional<DirectoryEntry> stat(String path) {
+		final StoredFile file = files.get(validPath(path));
+		if (file != null)
+			return Optional.present(file.toEntry(nameOf(path)));
+		final Long directoryLastModified = directories.get(path);
+		return directoryLastModified != null
+				? Optional.present(new DirectoryEntry(nameOf(path), true, 0, directoryLastModified))
+				: Optional.<DirectoryEntry>empty();
+	}
+
+	public InputStream openForRead(String path) throws IOException {
+		final StoredFile file = fileOf(path);
+		return new ByteArrayInputStream(file.content);
+	}
+
+	public InputStream openForRead(String path, ByteRange range) throws IOException {
+		notNull(range, "Byte range cannot be null");
+		final StoredFile file = fileOf(path);
+		isTrue(range.getLastPosition() < file.content.length, "Byte range is not satisfiable: %s", range);
+		return new ByteArrayInputStream(file.content, (int) range.getFirstPosition(), (int) range.getLength());
+	}
+
+	private StoredFile fileOf(String path) throws FileNotFoundException {
+		final StoredFile file = files.get(validPath(path));
+		if (file == null)
+			throw new FileNotFoundException(format("The file does not exist: %s", path));
+		return file;
+	}
+
+	public long write(String path, InputStream content, long contentLength) throws IOException {
+		notNull(content, "Content cannot be null");
+		isTrue(!validPath(path).equals(ROOT_PATH), "The root directory cannot be written");
+		if (directories.containsKey(path))
+			throw new FileNotFoundException(format("The path is a directory: %s", path));
+		if (contentLength > MAXIMUM_FILE_SIZE_IN_BYTES)
+			throw new IOException(format("The content of %d bytes is too large to be stored in memory", contentLength));
+		final byte[] bytes = readContent(content, contentLength);
+		if (contentLength != UNKNOWN_CONTENT_LENGTH && contentLength != bytes.length)
+			throw new IOException(format("The content has %d bytes instead of declared %d bytes", bytes.length,
+					contentLength));
+		final long lastModified = System.currentTimeMillis();
+		createParentDirectories(path, lastModified);
+		putFile(path, bytes, lastModified);
+		return bytes.length;
+	}
+
+	private static byte[] readContent(InputStream content, long contentLength) throws IOException {
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				contentLength > 0 ? (int) contentLength : COPY_BUFFER_SIZE_IN_BYTES);
+		final byte[] buffer = new byte[COPY_BUFFER_SIZE_IN_BYTES];
+		int readBytes;
+		while ((readBytes = content.read(buffer)) != -1) {
+			if (bytes.size() > MAXIMUM_FILE_SIZE_IN_BYTES - readBytes)
+				throw new IOException("The content is too large to be stored in memory");
+			bytes.write(buffer, 0, readBytes);
+		}
+		return bytes.toByteArray();
+	}
+
+	private void createParentDirectories(String path, long lastModified) throws FileNotFoundException {
+		String parentPath = parentOf(path);
+		while (!directories.containsKey(parentPath)) {
+			if (files.containsKey(parentPath))
+				throw new FileNotFoundException(format("The parent of path is a file: %s", path));
+			directories.putIfAbsent(parentPath, lastModified);
+			parentPath = parentOf(parentPath);
+		}
+	}
+
+	private void putFile(String path, byte[] content, long lastModified) {
+		final StoredFile previousFile = files.put(path, new StoredFile(content, lastModified));
+		storedBytes.addAndGet(content.length - (previousFile != null ? previousFile.content.length : 0));
+	}
+
+	public boolean delete(String path) throws IOException {
+		isTrue(!validPath(path).equals(ROOT_PATH), "The root directory cannot be deleted");
+		final StoredFile removedFile = files.remove(path);
+		if (removedFile != null) {
+			storedBytes.addAndGet(-removedFile.content.length);
+			return true;
+		}
+		if (!directories.containsKey(path))
+			return false;
+		if (!childrenOf(files, path).isEmpty() || !childrenOf(directories, path).isEmpty())
+			throw new IOException(format("The directory is not empty: %s", path));
+		return directories.remove(path) != null;
+	}
+
+	public List<DirectoryEntry> list(String path) throws IOException {
+		if (!directories.containsKey(validPath(path)))
+			throw new FileNotFoundException(format("The directory does not exist: %s", path));
+		final List<DirectoryEntry> entries = new ArrayList<DirectoryEntry>();
+		for (Map.Entry<String, Long> directory : childrenOf(directories, path).entrySet())
+			if (isDirectChild(path, directory.getKey()))
+				entries.add(new DirectoryEntry(nameOf(directory.getKey()), true, 0, directory.getValue()));
+		for (Map.Entry<String, StoredFile> file : childrenOf(files, path).entrySet())
+			if (isDirectChild(path, file.getKey()))
+				entries.add(file.getValue().toEntry(nameOf(file.getKey())));
+		return entries;
+	}
+
+	private static <V> ConcurrentNavigableMap<String, V> childrenOf(ConcurrentNavigableMap<String, V> map,
+																	 String directoryPath) {
+		final String prefix = directoryPath.equals(ROOT_PATH) ? "" : directoryPath;
+		return map.subMap(prefix + PATH_SEPARATOR, false, prefix + PATH_SEPARATOR_SUCCESSOR, false);
+	}
+
+	private static boolean isDirectChild(String directoryPath, String path) {
+		return path.indexOf(PATH_SEPARATOR, directoryPath.equals(ROOT_PATH) ? 1 : directoryPath.length() + 1) < 0;
+	}
+
+	private static String validPath(String path) {
+		notNull(path, "Path cannot be null");
+		isTrue(path.startsWith(ROOT_PATH), "Path needs to be absolute: %s", path);
+		isTrue(path.equals(ROOT_PATH) || !path.endsWith(PATH_SEPARATOR), "Path cannot end with separator: %s", path);
+		return path;
+	}
+
+	private static String nameOf(String path) {
+		return substringAfterLast(path, PATH_SEPARATOR);
+	}
+
+	private static String parentOf(String path) {
+		final String parentPath = substringBeforeLast(path, PATH_SEPARATOR);
+		return parentPath.length() > 0 ? parentPath : ROOT_PATH;
+	}
+
+	/**
+	 * @return number of stored files
+	 */
+	public int getNumberOfFiles() {
+		return files.size();
+	}
+
+	/**
+	 * @return total size of content of all stored files in bytes
+	 */
+	public long getStoredBytes() {
+		return storedBytes.get();
+	}
+
+	private static class StoredFile {
+		private final byte[] content;
+		private final long lastModified;
+
+		private StoredFile(byte[] content, long lastModified) {
+			this.content = content;
+			this.lastModified = lastModified;
+		}
+
+		private DirectoryEntry toEntry(String name) {
+			return new DirectoryEntry(name, false, content.length, lastModified);
+		}
+	}
+}
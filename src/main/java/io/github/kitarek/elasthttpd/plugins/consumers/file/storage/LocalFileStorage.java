@@ -0,0 +1,188 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryEntry;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.FileRangeEntity;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.FileUploadWriter;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFileName;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Storage of files in a directory of the local file system. Writes are written by {@link FileUploadWriter} into
+ * a temporary file that is published with {@link AtomicUploadPublisher}, ranges are read from the file position and
+ * temporary files of writes in progress are never listed.
+ */
+public class LocalFileStorage implements FileStorage {
+
+	public static final int STREAM_BUFFER_SIZE_IN_BYTES = 102400;
+
+	private final File rootDirectory;
+	private final Path rootPath;
+	private final FileUploadWriter fileUploadWriter;
+	private final AtomicUploadPublisher uploadPublisher;
+
+	/**
+	 * Create storage that does not make writes durable
+	 *
+	 * @param rootDirectory not null existing directory mapped to the root path
+	 */
+	public LocalFileStorage(File rootDirectory) {
+		this(rootDirectory, new FileUploadWriter(), new AtomicUploadPublisher());
+	}
+
+	/**
+	 * Create storage
+	 *
+	 * @param rootDirectory not null existing directory mapped to the root path
+	 * @param fileUploadWriter not null writer of content
+	 * @param uploadPublisher not null publisher of written files (i.e. with configured durability)
+	 */
+	public LocalFileStorage(File rootDirectory, FileUploadWriter fileUploadWriter,
+							AtomicUploadPublisher uploadPublisher) {
+		notNull(rootDirectory, "Root directory cannot be null");
+		isTrue(rootDirectory.isDirectory(), "Root directory needs to be an existing directory: %s", rootDirectory);
+		this.rootDirectory = rootDirectory.getAbsoluteFile();
+		this.rootPath = this.rootDirectory.toPath().normalize();
+		this.fileUploadWriter = notNull(fileUploadWriter, "File upload writer cannot be null");
+		this.uploadPublisher = notNull(uploadPublisher, "Upload publisher cannot be null");
+	}
+
+	public Optional<DirectoryEntry> stat(String path) throws IOException {
+		final Path localPath = localPathOf(path);
+		try {
+			final DirectoryEntry entry = DirectoryEntry.readEntry(localPath);
+			return Optional.present(localPath.equals(rootPath)
+					? new DirectoryEntry("", true, 0, entry.getLastModified())
+					: entry);
+		} catch (NoSuchFileException e) {
+			return Optional.empty();
+		}
+	}
+
+	public InputStream openForRead(String path) throws IOException {
+		return new BufferedInputStream(new FileInputStream(regularFileOf(path)), STREAM_BUFFER_SIZE_IN_BYTES);
+	}
+
+	public InputStream openForRead(String path, ByteRange range) throws IOException {
+		notNull(range, "Byte range cannot be null");
+		return new FileRangeEntity(regularFileOf(path), range).getContent();
+	}
+
+	private File regularFileOf(String path) throws FileNotFoundException {
+		final File file = localPathOf(path).toFile();
+		if (!file.isFile())
+			throw new FileNotFoundException(format("The file does not exist: %s", path));
+		return file;
+	}
+
+	public long write(String path, InputStream content, long contentLength) throws IOException {
+		notNull(content, "Content cannot be null");
+		final File file = localPathOf(path).toFile();
+		if (file.isDirectory())
+			throw new FileNotFoundException(format("The path is a directory: %s", path));
+		final File temporaryFile = uploadPublisher.createTemporaryFile(file);
+		try {
+			final long writtenBytes = writeTemporaryFile(temporaryFile, content);
+			if (contentLength != UNKNOWN_CONTENT_LENGTH && contentLength != writtenBytes)
+				throw new IOException(format("The content has %d bytes instead of declared %d bytes", writtenBytes,
+						contentLength));
+			uploadPublisher.publish(temporaryFile, file);
+			return writtenBytes;
+		} catch (IOException e) {
+			uploadPublisher.discard(temporaryFile);
+			throw e;
+		}
+	}
+
+	private long writeTemporaryFile(File temporaryFile, InputStream content) throws IOException {
+		final RandomAccessFile randomAccessFile = new RandomAccessFile(temporaryFile, "rw");
+		try {
+			return fileUploadWriter.transfer(content, randomAccessFile.getChannel(), 0);
+		} finally {
+			randomAccessFile.close();
+		}
+	}
+
+	public boolean delete(String path) throws IOException {
+		final Path localPath = localPathOf(path);
+		isTrue(!localPath.equals(rootPath), "The root directory cannot be deleted");
+		return Files.deleteIfExists(localPath);
+	}
+
+	public List<DirectoryEntry> list(String path) throws IOException {
+		final List<DirectoryEntry> entries = new ArrayList<DirectoryEntry>();
+		final DirectoryStream<Path> directoryStream;
+		try {
+			directoryStream = Files.newDirectoryStream(localPathOf(path));
+		} catch (NoSuchFileException e) {
+			throw new FileNotFoundException(format("The directory does not exist: %s", path));
+		} catch (NotDirectoryException e) {
+			throw new FileNotFoundException(format("The path is not a directory: %s", path));
+		}
+		try {
+			for (Path entryPath : directoryStream)
+				if (!isTemporaryFileName(entryPath.getFileName().toString()))
+					addEntryIfStillExists(entries, entryPath);
+		} finally {
+			directoryStream.close();
+		}
+		return entries;
+	}
+
+	private static void addEntryIfStillExists(List<DirectoryEntry> entries, Path path) throws IOException {
+		try {
+			entries.add(DirectoryEntry.readEntry(path));
+		} catch (NoSuchFileException e) {
+			// removed (or a dangling link) - not listed
+		}
+	}
+
+	private Path localPathOf(String path) {
+		notNull(path, "Path cannot be null");
+		isTrue(path.startsWith(ROOT_PATH), "Path needs to be absolute: %s", path);
+		final Path localPath = rootPath.resolve(path.substring(ROOT_PATH.length())).normalize();
+		isTrue(localPath.startsWith(rootPath), "Path cannot point outside of the root directory: %s", path);
+		return localPath;
+	}
+
+	public File getRootDirectory() {
+		return rootDirectory;
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage;
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListing;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingProvider;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Provides listings of directories of storage. The directory is given as a file object of its storage path.
+ */
+public class StorageDirectoryListingProvider implements DirectoryListingProvider {
+
+	private final FileStorage storage;
+
+	public StorageDirectoryListingProvider(FileStorage storage) {
+		this.storage = notNull(storage, "Storage cannot be null");
+	}
+
+	public DirectoryListing provideListing(File directory) throws IOException {
+		notNull(directory, "Directory cannot be null");
+		return new DirectoryListing(storage.list(storagePathOf(directory)));
+	}
+
+	/**
+	 * @param storagePath not null normalized path of directory in storage
+	 * @return not null file object of the path given to directory consumers
+	 */
+	public static File directoryOf(String storagePath) {
+		return new File(notNull(storagePath, "Storage path cannot be null"));
+	}
+
+	private static String storagePathOf(File directory) {
+		return directory.getPath().replace(File.separatorChar, FileStorage.PATH_SEPARATOR.charAt(0));
+	}
+}
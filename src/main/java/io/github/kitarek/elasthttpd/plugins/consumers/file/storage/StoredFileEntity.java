@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * HTTP entity with the whole content or a single range of file of storage. The file is opened only when the entity
+ * is written, so responses that are not sent with body (i.e. to HEAD requests) never open it.
+ */
+public class StoredFileEntity extends AbstractHttpEntity {
+
+	private static final int COPY_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+	private final FileStorage storage;
+	private final String path;
+	private final Optional<ByteRange> optionalRange;
+	private final long contentLength;
+
+	/**
+	 * Create entity with the whole content of file
+	 *
+	 * @param storage not null storage of file
+	 * @param path not null normalized path of file
+	 * @param length not negative length of file
+	 */
+	public StoredFileEntity(FileStorage storage, String path, long length) {
+		this(storage, path, Optional.<ByteRange>empty(), length);
+	}
+
+	/**
+	 * Create entity with a range of file
+	 *
+	 * @param storage not null storage of file
+	 * @param path not null normalized path of file
+	 * @param range not null range satisfiable for the current length of file
+	 */
+	public StoredFileEntity(FileStorage storage, String path, ByteRange range) {
+		this(storage, path, Optional.present(notNull(range, "Byte range cannot be null")), range.getLength());
+	}
+
+	private StoredFileEntity(FileStorage storage, String path, Optional<ByteRange> optionalRange,
+							 long contentLength) {
+		this.storage = notNull(storage, "Storage cannot be null");
+		this.path = notNull(path, "Path cannot be null");
+		isTrue(contentLength >= 0, "Length of file cannot be negative");
+		this.optionalRange = optionalRange;
+		this.contentLength = contentLength;
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public long getContentLength() {
+		return contentLength;
+	}
+
+	public InputStream getContent() throws IOException {
+		return optionalRange.isPresent()
+				? storage.openForRead(path, optionalRange.get())
+				: storage.openForRead(path);
+	}
+
+	public void writeTo(OutputStream outstream) throws IOException {
+		notNull(outstream, "Output stream cannot be null");
+		final InputStream inputStream = getContent();
+		try {
+			final byte[] buffer = new byte[(int) Math.min(COPY_BUFFER_SIZE_IN_BYTES, Math.max(1, contentLength))];
+			long remaining = contentLength;
+			int readBytes;
+			while (remaining > 0 && (readBytes = inputStream.read(buffer, 0, (int) Math.min(buffer.length,
+					remaining))) != -1) {
+				outstream.write(buffer, 0, readBytes);
+				remaining -= readBytes;
+			}
+			if (remaining > 0)
+				throw new IOException("File was truncated while it was sent: " + path);
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	public boolean isStreaming() {
+		return false;
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage;
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FileVariant;
+import org.apache.http.entity.AbstractHttpEntity;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * HTTP entity with encoded variant of file of storage sent with its Content-Encoding. Like {@link StoredFileEntity}
+ * the variant is opened only when the entity is written.
+ */
+public class StoredFileVariantEntity extends AbstractHttpEntity {
+
+	private static final int COPY_BUFFER_SIZE_IN_BYTES = 64 * 1024;
+	private final FileVariant fileVariant;
+
+	/**
+	 * Create entity
+	 *
+	 * @param fileVariant not null encoded variant of file
+	 */
+	public StoredFileVariantEntity(FileVariant fileVariant) {
+		this.fileVariant = notNull(fileVariant, "File variant cannot be null");
+		setContentEncoding(fileVariant.getContentCoding().getToken());
+	}
+
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	public long getContentLength() {
+		return fileVariant.getContentLength();
+	}
+
+	public InputStream getContent() throws IOException {
+		return fileVariant.openContent();
+	}
+
+	public void writeTo(OutputStream outstream) throws IOException {
+		notNull(outstream, "Output stream cannot be null");
+		final InputStream inputStream = getContent();
+		try {
+			final byte[] buffer = new byte[COPY_BUFFER_SIZE_IN_BYTES];
+			long remaining = fileVariant.getContentLength();
+			int readBytes;
+			while (remaining > 0 && (readBytes = inputStream.read(buffer, 0, (int) Math.min(buffer.length,
+					remaining))) != -1) {
+				outstream.write(buffer, 0, readBytes);
+				remaining -= readBytes;
+			}
+			if (remaining > 0)
+				throw new IOException("Encoded variant of file was truncated while it was sent");
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	public boolean isStreaming() {
+		return false;
+	}
+}
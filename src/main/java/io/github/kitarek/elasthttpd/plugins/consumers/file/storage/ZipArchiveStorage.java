@@ -0,0 +1,660 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryEntry;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.FileVariant;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+import io.github.kitarek.elasthttpd.server.compression.ContentCoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Vector;
+import java.util.zip.Adler32;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.StringUtils.substringAfterLast;
+import static org.apache.commons.lang3.StringUtils.substringBeforeLast;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Read-only storage of entries of ZIP (or JAR) archive served without extracting it. The central directory is read
+ * once when the archive is opened and kept in memory as an index of files and directories (directories missing in
+ * the archive are implied by paths of entries), so serving an entry takes only positioned reads of the archive file
+ * that are safe for concurrent requests. Stored entries (and any of their ranges) are read directly; deflated entries
+ * are inflated on the fly or sent still compressed as gzip or deflate variants. Encrypted entries, entries with other
+ * compression methods and entries with unsafe names (absolute or with '.' and '..' segments) are not served.
+ * The archive must not be modified while it is open.
+ */
+public class ZipArchiveStorage implements EncodedFileStorage, Closeable {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(ZipArchiveStorage.class);
+	private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+	private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+	private static final int MAXIMUM_COMMENT_SIZE = 0xFFFF;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE = 20;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE = 56;
+	private static final int CENTRAL_FILE_HEADER_SIGNATURE = 0x02014b50;
+	private static final int CENTRAL_FILE_HEADER_SIZE = 46;
+	private static final int LOCAL_FILE_HEADER_SIGNATURE = 0x04034b50;
+	private static final int LOCAL_FILE_HEADER_SIZE = 30;
+	private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+	private static final int EXTENDED_TIMESTAMP_EXTRA_FIELD_ID = 0x5455;
+	private static final int ZIP64_MARKER_16 = 0xFFFF;
+	private static final long ZIP64_MARKER_32 = 0xFFFFFFFFL;
+	private static final int ENCRYPTED_FLAG = 1;
+	private static final int STORED_METHOD = 0;
+	private static final int DEFLATED_METHOD = 8;
+	private static final int READ_BUFFER_SIZE_IN_BYTES = 8 * 1024;
+	private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, 8, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+	private static final byte[] ZLIB_HEADER = {0x78, (byte) 0x9c};
+	private static final List<ContentCoding> DEFLATED_ENTRY_CODINGS =
+			Collections.unmodifiableList(Arrays.asList(ContentCoding.GZIP, ContentCoding.DEFLATE));
+	private static final Charset ENTRY_NAME_CHARSET = Charset.forName("UTF-8");
+
+	private final File archive;
+	private final FileChannel channel;
+	private final Map<String, ArchivedFile> files;
+	private final Map<String, ArchivedDirectory> directories;
+
+	private ZipArchiveStorage(File archive, FileChannel channel, Map<String, ArchivedFile> files,
+							  Map<String, ArchivedDirectory> directories) {
+		this.archive = archive;
+		this.channel = channel;
+		this.files = files;
+		this.directories = directories;
+	}
+
+	/**
+	 * Open archive and read its central directory
+	 *
+	 * @param archive not null ZIP archive
+	 * @return not null storage that keeps the archive open until it is closed
+	 * @throws FileNotFoundException when the archive does not exist
+	 * @throws IOException when the archive cannot be read or it is not a valid ZIP archive
+	 */
+	public static ZipArchiveStorage open(File archive) throws IOException {
+		notNull(archive, "Archive cannot be null");
+		if (!archive.isFile())
+			throw new FileNotFoundException(format("The archive does not exist: %s", archive));
+		final FileChannel channel = FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+		try {
+			final Map<String, ArchivedFile> files = new HashMap<String, ArchivedFile>();
+			final Map<String, Long> directoryTimes = new TreeMap<String, Long>();
+			readCentralDirectory(channel, files, directoryTimes);
+			final ZipArchiveStorage storage = new ZipArchiveStorage(archive, channel, files,
+					indexDirectories(files, directoryTimes, archive.lastModified()));
+			LOGGER.info(format("Opened archive %s with %d files and %d directories", archive, files.size(),
+					storage.directories.size()));
+			return storage;
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		} catch (RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public File getArchive() {
+		return archive;
+	}
+
+	public int getNumberOfFiles() {
+		return files.size();
+	}
+
+	public Optional<DirectoryEntry> stat(String path) {
+		notNull(path, "Path cannot be null");
+		final ArchivedFile file = files.get(path);
+		if (file != null)
+			return Optional.present(file.entry);
+		final ArchivedDirectory directory = directories.get(path);
+		return directory != null ? Optional.present(directory.entry) : Optional.<DirectoryEntry>empty();
+	}
+
+	public InputStream openForRead(String path) throws IOException {
+		final ArchivedFile file = archivedFileOf(path);
+		final InputStream rawContent = openRawContent(file);
+		return file.deflated ? new EntryInflaterInputStream(rawContent) : rawContent;
+	}
+
+	public InputStream openForRead(String path, ByteRange range) throws IOException {
+		notNull(range, "Byte range cannot be null");
+		final ArchivedFile file = archivedFileOf(path);
+		if (!file.deflated)
+			return new ArchivedContentInputStream(channel, dataOffsetOf(file) + range.getFirstPosition(),
+					range.getLength());
+		final InputStream content = new EntryInflaterInputStream(openRawContent(file));
+		try {
+			skipFully(content, range.getFirstPosition());
+		} catch (IOException e) {
+			content.close();
+			throw e;
+		}
+		return new LimitedInputStream(content, range.getLength());
+	}
+
+	/**
+	 * Always fails as archive is read-only
+	 *
+	 * @throws IOException always
+	 */
+	public long write(String path, InputStream content, long contentLength) throws IOException {
+		throw new IOException(format("Archive is read-only and file cannot be written: %s", path));
+	}
+
+	/**
+	 * Always fails as archive is read-only
+	 *
+	 * @throws IOException always
+	 */
+	public boolean delete(String path) throws IOException {
+		throw new IOException(format("Archive is read-only and file cannot be deleted: %s", path));
+	}
+
+	public List<DirectoryEntry> list(String path) throws FileNotFoundException {
+		notNull(path, "Path cannot be null");
+		final ArchivedDirectory directory = directories.get(path);
+		if (directory == null)
+			throw new FileNotFoundException(format("The path is not a directory: %s", path));
+		return directory.children;
+	}
+
+	public List<ContentCoding> storedCodingsOf(String path) {
+		final ArchivedFile file = files.get(notNull(path, "Path cannot be null"));
+		return file != null && file.deflated ? DEFLATED_ENTRY_CODINGS : Collections.<ContentCoding>emptyList();
+	}
+
+	public Optional<FileVariant> storedVariantOf(String path, ContentCoding coding) {
+		notNull(coding, "Content coding cannot be null");
+		final ArchivedFile file = files.get(notNull(path, "Path cannot be null"));
+		if (file == null || !file.deflated)
+			return Optional.empty();
+		return Optional.<FileVariant>present(new DeflatedEntryVariant(file, coding));
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private ArchivedFile archivedFileOf(String path) throws FileNotFoundException {
+		final ArchivedFile file = files.get(notNull(path, "Path cannot be null"));
+		if (file == null)
+			throw new FileNotFoundException(format("The file does not exist in archive: %s", path));
+		return file;
+	}
+
+	private InputStream openRawContent(ArchivedFile file) throws IOException {
+		return new ArchivedContentInputStream(channel, dataOffsetOf(file), file.compressedSize);
+	}
+
+	private long dataOffsetOf(ArchivedFile file) throws IOException {
+		long dataOffset = file.dataOffset;
+		if (dataOffset < 0) {
+			final ByteBuffer header = readFully(channel, file.localHeaderOffset, LOCAL_FILE_HEADER_SIZE);
+			if (header.getInt(0) != LOCAL_FILE_HEADER_SIGNATURE)
+				throw new IOException(format("Local header of entry is corrupted: %s", file.entry.getName()));
+			dataOffset = file.localHeaderOffset + LOCAL_FILE_HEADER_SIZE + unsignedShort(header, 26) +
+					unsignedShort(header, 28);
+			if (dataOffset + file.compressedSize > channel.size())
+				throw new IOException(format("Entry exceeds the end of archive: %s", file.entry.getName()));
+			file.dataOffset = dataOffset;
+		}
+		return dataOffset;
+	}
+
+	private long adler32Of(ArchivedFile file) throws IOException {
+		long adler32 = file.adler32;
+		if (adler32 < 0) {
+			final Adler32 checksum = new Adler32();
+			final InputStream content = openForRead(file.path);
+			try {
+				final byte[] buffer = new byte[READ_BUFFER_SIZE_IN_BYTES];
+				int readBytes;
+				while ((readBytes = content.read(buffer)) != -1)
+					checksum.update(buffer, 0, readBytes);
+			} finally {
+				content.close();
+			}
+			adler32 = checksum.getValue();
+			file.adler32 = adler32;
+		}
+		return adler32;
+	}
+
+	private static void readCentralDirectory(FileChannel channel, Map<String, ArchivedFile> files,
+											 Map<String, Long> directoryTimes) throws IOException {
+		final long endOffset = findEndOfCentralDirectory(channel);
+		final ByteBuffer end = readFully(channel, endOffset, END_OF_CENTRAL_DIRECTORY_SIZE);
+		long numberOfEntries = unsignedShort(end, 10);
+		long centralDirectorySize = unsignedInt(end, 12);
+		long centralDirectoryOffset = unsignedInt(end, 16);
+		if (numberOfEntries == ZIP64_MARKER_16 || centralDirectorySize == ZIP64_MARKER_32 ||
+				centralDirectoryOffset == ZIP64_MARKER_32) {
+			final ByteBuffer zip64End = readZip64EndOfCentralDirectory(channel, endOffset);
+			numberOfEntries = zip64End.getLong(32);
+			centralDirectorySize = zip64End.getLong(40);
+			centralDirectoryOffset = zip64End.getLong(48);
+		}
+		if (centralDirectorySize > Integer.MAX_VALUE || centralDirectoryOffset + centralDirectorySize > endOffset)
+			throw new IOException("Central directory of archive is corrupted");
+		final ByteBuffer centralDirectory = readFully(channel, centralDirectoryOffset, (int) centralDirectorySize);
+		final Calendar calendar = Calendar.getInstance();
+		for (long i = 0; i < numberOfEntries; i++)
+			readCentralFileHeader(centralDirectory, calendar, files, directoryTimes);
+	}
+
+	private static long findEndOfCentralDirectory(FileChannel channel) throws IOException {
+		final long archiveSize = channel.size();
+		if (archiveSize < END_OF_CENTRAL_DIRECTORY_SIZE)
+			throw new IOException("The file is not a ZIP archive");
+		final int tailSize = (int) Math.min(archiveSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAXIMUM_COMMENT_SIZE);
+		final ByteBuffer tail = readFully(channel, archiveSize - tailSize, tailSize);
+		for (int position = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; position >= 0; position--)
+			if (tail.getInt(position) == END_OF_CENTRAL_DIRECTORY_SIGNATURE &&
+					position + END_OF_CENTRAL_DIRECTORY_SIZE + unsignedShort(tail, position + 20) <= tailSize)
+				return archiveSize - tailSize + position;
+		throw new IOException("The file is not a ZIP archive");
+	}
+
+	private static ByteBuffer readZip64EndOfCentralDirectory(FileChannel channel, long endOffset)
+			throws IOException {
+		if (endOffset < ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE)
+			throw new IOException("ZIP64 end of central directory locator is missing");
+		final ByteBuffer locator = readFully(channel, endOffset - ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE,
+				ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIZE);
+		if (locator.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_LOCATOR_SIGNATURE)
+			throw new IOException("ZIP64 end of central directory locator is missing");
+		final long zip64EndOffset = locator.getLong(8);
+		if (zip64EndOffset < 0 || zip64EndOffset + ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE > endOffset)
+			throw new IOException("ZIP64 end of central directory is corrupted");
+		final ByteBuffer zip64End = readFully(channel, zip64EndOffset, ZIP64_END_OF_CENTRAL_DIRECTORY_SIZE);
+		if (zip64End.getInt(0) != ZIP64_END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+			throw new IOException("ZIP64 end of central directory is corrupted");
+		return zip64End;
+	}
+
+	private static void readCentralFileHeader(ByteBuffer centralDirectory, Calendar calendar,
+											  Map<String, ArchivedFile> files, Map<String, Long> directoryTimes)
+			throws IOException {
+		final int headerOffset = centralDirectory.position();
+		if (centralDirectory.remaining() < CENTRAL_FILE_HEADER_SIZE ||
+				centralDirectory.getInt(headerOffset) != CENTRAL_FILE_HEADER_SIGNATURE)
+			throw new IOException("Central directory of archive is corrupted");
+		final int flags = unsignedShort(centralDirectory, headerOffset + 8);
+		final int method = unsignedShort(centralDirectory, headerOffset + 10);
+		final long dosTime = unsignedInt(centralDirectory, headerOffset + 12);
+		final long crc32 = unsignedInt(centralDirectory, headerOffset + 16);
+		long compressedSize = unsignedInt(centralDirectory, headerOffset + 20);
+		long size = unsignedInt(centralDirectory, headerOffset + 24);
+		final int nameLength = unsignedShort(centralDirectory, headerOffset + 28);
+		final int extraLength = unsignedShort(centralDirectory, headerOffset + 30);
+		final int commentLength = unsignedShort(centralDirectory, headerOffset + 32);
+		long localHeaderOffset = unsignedInt(centralDirectory, headerOffset + 42);
+		final int nameOffset = headerOffset + CENTRAL_FILE_HEADER_SIZE;
+		final int extraOffset = nameOffset + nameLength;
+		if (extraOffset + extraLength + commentLength > centralDirectory.limit())
+			throw new IOException("Central directory of archive is corrupted");
+		final String name = new String(centralDirectory.array(), nameOffset, nameLength, ENTRY_NAME_CHARSET);
+		long lastModified = dosTimeToMillis(dosTime, calendar);
+		for (int fieldOffset = extraOffset; fieldOffset + 4 <= extraOffset + extraLength; ) {
+			final int fieldId = unsignedShort(centralDirectory, fieldOffset);
+			final int fieldLength = unsignedShort(centralDirectory, fieldOffset + 2);
+			int valueOffset = fieldOffset + 4;
+			final int fieldEnd = Math.min(valueOffset + fieldLength, extraOffset + extraLength);
+			if (fieldId == ZIP64_EXTRA_FIELD_ID) {
+				if (size == ZIP64_MARKER_32 && valueOffset + 8 <= fieldEnd) {
+					size = centralDirectory.getLong(valueOffset);
+					valueOffset += 8;
+				}
+				if (compressedSize == ZIP64_MARKER_32 && valueOffset + 8 <= fieldEnd) {
+					compressedSize = centralDirectory.getLong(valueOffset);
+					valueOffset += 8;
+				}
+				if (localHeaderOffset == ZIP64_MARKER_32 && valueOffset + 8 <= fieldEnd)
+					localHeaderOffset = centralDirectory.getLong(valueOffset);
+			} else if (fieldId == EXTENDED_TIMESTAMP_EXTRA_FIELD_ID && valueOffset + 5 <= fieldEnd &&
+					(centralDirectory.get(valueOffset) & 1) != 0) {
+				lastModified = unsignedInt(centralDirectory, valueOffset + 1) * 1000;
+			}
+			fieldOffset += 4 + fieldLength;
+		}
+		centralDirectory.position(extraOffset + extraLength + commentLength);
+		if (!isSafeEntryName(name)) {
+			LOGGER.warn(format("Entry of archive with unsafe name is not served: %s", name));
+		} else if (name.endsWith(PATH_SEPARATOR)) {
+			directoryTimes.put(PATH_SEPARATOR + name.substring(0, name.length() - 1), lastModified);
+		} else if ((flags & ENCRYPTED_FLAG) != 0 || (method != STORED_METHOD && method != DEFLATED_METHOD) ||
+				size < 0 || compressedSize < 0 || localHeaderOffset < 0) {
+			LOGGER.warn(format("Encrypted or unsupported entry of archive is not served: %s", name));
+		} else {
+			final String path = PATH_SEPARATOR + name;
+			if (!files.containsKey(path))
+				files.put(path, new ArchivedFile(path, new DirectoryEntry(substringAfterLast(path, PATH_SEPARATOR),
+						false, size, lastModified), method == DEFLATED_METHOD, compressedSize, crc32,
+						localHeaderOffset));
+		}
+	}
+
+	private static boolean isSafeEntryName(String name) {
+		if (name.length() == 0 || name.startsWith(PATH_SEPARATOR) || name.indexOf('\\') >= 0 ||
+				name.indexOf('\0') >= 0)
+			return false;
+		final String[] segments = (name.endsWith(PATH_SEPARATOR) ? name.substring(0, name.length() - 1) : name)
+				.split(PATH_SEPARATOR, -1);
+		for (String segment : segments)
+			if (segment.length() == 0 || segment.equals(".") || segment.equals(".."))
+				return false;
+		return true;
+	}
+
+	private static Map<String, ArchivedDirectory> indexDirectories(Map<String, ArchivedFile> files,
+																   Map<String, Long> directoryTimes,
+																   long impliedLastModified) {
+		final Map<String, Long> allDirectoryTimes = new TreeMap<String, Long>(directoryTimes);
+		allDirectoryTimes.put(ROOT_PATH, impliedLastModified);
+		for (String path : directoryTimes.keySet())
+			addImpliedParentDirectories(path, allDirectoryTimes, impliedLastModified);
+		for (String path : files.keySet())
+			addImpliedParentDirectories(path, allDirectoryTimes, impliedLastModified);
+		for (String path : new ArrayList<String>(files.keySet()))
+			if (allDirectoryTimes.containsKey(path)) {
+				LOGGER.warn(format("Entry of archive with the same path as directory is not served: %s", path));
+				files.remove(path);
+			}
+		final Map<String, ArchivedDirectory> directories = new HashMap<String, ArchivedDirectory>();
+		for (Map.Entry<String, Long> directoryTime : allDirectoryTimes.entrySet())
+			directories.put(directoryTime.getKey(), new ArchivedDirectory(new DirectoryEntry(
+					substringAfterLast(directoryTime.getKey(), PATH_SEPARATOR), true, 0, directoryTime.getValue())));
+		for (Map.Entry<String, ArchivedDirectory> directory : directories.entrySet())
+			if (!directory.getKey().equals(ROOT_PATH))
+				directories.get(parentOf(directory.getKey())).children.add(directory.getValue().entry);
+		for (ArchivedFile file : files.values())
+			directories.get(parentOf(file.path)).children.add(file.entry);
+		return directories;
+	}
+
+	private static void addImpliedParentDirectories(String path, Map<String, Long> directoryTimes,
+													long impliedLastModified) {
+		for (String parent = parentOf(path); !directoryTimes.containsKey(parent); parent = parentOf(parent))
+			directoryTimes.put(parent, impliedLastModified);
+	}
+
+	private static String parentOf(String path) {
+		final String parent = substringBeforeLast(path, PATH_SEPARATOR);
+		return parent.length() == 0 ? ROOT_PATH : parent;
+	}
+
+	private static long dosTimeToMillis(long dosTime, Calendar calendar) {
+		calendar.clear();
+		calendar.set((int) ((dosTime >> 25) & 0x7f) + 1980, (int) ((dosTime >> 21) & 0x0f) - 1,
+				(int) ((dosTime >> 16) & 0x1f), (int) ((dosTime >> 11) & 0x1f), (int) ((dosTime >> 5) & 0x3f),
+				(int) ((dosTime << 1) & 0x3e));
+		return calendar.getTimeInMillis();
+	}
+
+	private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+		final ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException("Unexpected end of archive");
+		buffer.flip();
+		return buffer;
+	}
+
+	private static int unsignedShort(ByteBuffer buffer, int index) {
+		return buffer.getShort(index) & 0xFFFF;
+	}
+
+	private static long unsignedInt(ByteBuffer buffer, int index) {
+		return buffer.getInt(index) & 0xFFFFFFFFL;
+	}
+
+	private static void skipFully(InputStream inputStream, long bytes) throws IOException {
+		long remaining = bytes;
+		while (remaining > 0) {
+			final long skipped = inputStream.skip(remaining);
+			if (skipped <= 0)
+				throw new EOFException("Unexpected end of entry of archive");
+			remaining -= skipped;
+		}
+	}
+
+	private static byte[] littleEndianTrailer(long crc32, long size) {
+		return ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN).putInt((int) crc32).putInt((int) size)
+				.array();
+	}
+
+	private static class ArchivedFile {
+		private final String path;
+		private final DirectoryEntry entry;
+		private final boolean deflated;
+		private final long compressedSize;
+		private final long crc32;
+		private final long localHeaderOffset;
+		private volatile long dataOffset = -1;
+		private volatile long adler32 = -1;
+
+		private ArchivedFile(String path, DirectoryEntry entry, boolean deflated, long compressedSize, long crc32,
+							 long localHeaderOffset) {
+			this.path = path;
+			this.entry = entry;
+			this.deflated = deflated;
+			this.compressedSize = compressedSize;
+			this.crc32 = crc32;
+			this.localHeaderOffset = localHeaderOffset;
+		}
+	}
+
+	private static class ArchivedDirectory {
+		private final DirectoryEntry entry;
+		private final List<DirectoryEntry> children = new ArrayList<DirectoryEntry>();
+
+		private ArchivedDirectory(DirectoryEntry entry) {
+			this.entry = entry;
+		}
+	}
+
+	/**
+	 * Deflated entry sent without inflating it: the raw deflate stream of entry is framed as gzip (its checksum and
+	 * size are known from the central directory) or as zlib (its Adler-32 checksum is computed once on first use).
+	 */
+	private class DeflatedEntryVariant implements FileVariant {
+		private final ArchivedFile file;
+		private final ContentCoding coding;
+
+		private DeflatedEntryVariant(ArchivedFile file, ContentCoding coding) {
+			this.file = file;
+			this.coding = coding;
+		}
+
+		public ContentCoding getContentCoding() {
+			return coding;
+		}
+
+		public long getContentLength() {
+			return coding == ContentCoding.GZIP
+					? GZIP_HEADER.length + file.compressedSize + 8
+					: ZLIB_HEADER.length + file.compressedSize + 4;
+		}
+
+		public InputStream openContent() throws IOException {
+			final byte[] header;
+			final byte[] trailer;
+			if (coding == ContentCoding.GZIP) {
+				header = GZIP_HEADER;
+				trailer = littleEndianTrailer(file.crc32, file.entry.getLength());
+			} else {
+				header = ZLIB_HEADER;
+				trailer = ByteBuffer.allocate(4).putInt((int) adler32Of(file)).array();
+			}
+			final Vector<InputStream> parts = new Vector<InputStream>(3);
+			parts.add(new ByteArrayInputStream(header));
+			parts.add(openRawContent(file));
+			parts.add(new ByteArrayInputStream(trailer));
+			return new SequenceInputStream(parts.elements());
+		}
+	}
+
+	/**
+	 * Stream of bytes of archive file read with positioned reads, so many of them share one channel.
+	 */
+	private static class ArchivedContentInputStream extends InputStream {
+		private final FileChannel channel;
+		private long position;
+		private long remaining;
+
+		private ArchivedContentInputStream(FileChannel channel, long position, long length) {
+			this.channel = channel;
+			this.position = position;
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			final byte[] singleByte = new byte[1];
+			return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (length == 0)
+				return 0;
+			if (remaining <= 0)
+				return -1;
+			final int readBytes = channel.read(ByteBuffer.wrap(buffer, offset, (int) Math.min(length, remaining)),
+					position);
+			if (readBytes < 0)
+				throw new EOFException("Unexpected end of archive");
+			position += readBytes;
+			remaining -= readBytes;
+			return readBytes;
+		}
+
+		@Override
+		public long skip(long bytes) {
+			final long skipped = Math.max(0, Math.min(bytes, remaining));
+			position += skipped;
+			remaining -= skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, remaining);
+		}
+	}
+
+	/**
+	 * Inflater of raw deflate data of entry that (like {@link java.util.zip.ZipFile}) feeds the inflater with one
+	 * dummy byte at the end of data and releases the inflater when closed.
+	 */
+	private static class EntryInflaterInputStream extends InflaterInputStream {
+		private boolean endOfInputReached = false;
+
+		private EntryInflaterInputStream(InputStream rawContent) {
+			super(rawContent, new Inflater(true), READ_BUFFER_SIZE_IN_BYTES);
+		}
+
+		@Override
+		protected void fill() throws IOException {
+			if (endOfInputReached)
+				throw new EOFException("Unexpected end of entry of archive");
+			len = in.read(buf, 0, buf.length);
+			if (len == -1) {
+				buf[0] = 0;
+				len = 1;
+				endOfInputReached = true;
+			}
+			inf.setInput(buf, 0, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				inf.end();
+			}
+		}
+	}
+
+	private static class LimitedInputStream extends FilterInputStream {
+		private long remaining;
+
+		private LimitedInputStream(InputStream in, long length) {
+			super(in);
+			this.remaining = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remaining <= 0)
+				return -1;
+			final int readByte = super.read();
+			if (readByte != -1)
+				remaining--;
+			return readByte;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (remaining <= 0)
+				return -1;
+			final int readBytes = super.read(buffer, offset, (int) Math.min(length, remaining));
+			if (readBytes > 0)
+				remaining -= readBytes;
+			return readBytes;
+		}
+
+		@Override
+		public long skip(long bytes) throws IOException {
+			final long skipped = super.skip(Math.min(bytes, remaining));
+			remaining -= skipped;
+			return skipped;
+		}
+	}
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.StripedLocks;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.DiskSynchronization.directoryOf;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.DiskSynchronization.synchronizeContent;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.DiskSynchronization.synchronizeDirectory;
+import static java.lang.String.format;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Publishes uploads atomically: the body is written to a temporary file next to the target and then the temporary
+ * file is renamed over the target. Readers never see partially written content - they either open the previous
+ * version (and keep streaming it after it has been replaced) or the complete new one - and a failed upload leaves
+ * the previous version untouched.
+ *
+ * Publications of the same path are serialized with one of striped locks, so the version published last is
+ * always the one of the upload that has completed last. Temporary files of failed uploads are removed at once;
+ * the ones abandoned by a crashed server can be removed with {@link #removeAbandonedTemporaryFiles(File, long)}.
+ *
+ * A publication is made durable according to {@link DurabilityMode}: not at all by default, by synchronizing each
+ * upload with the disk before it is published or by a {@link GroupCommitter} that does it for batches of uploads.
+ */
+public class AtomicUploadPublisher {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(AtomicUploadPublisher.class);
+	public static final String TEMPORARY_FILE_PREFIX = ".elasthttpd-upload-";
+	public static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+	public static final int DEFAULT_NUMBER_OF_LOCK_STRIPES = StripedLocks.DEFAULT_NUMBER_OF_STRIPES;
+	public static final long DEFAULT_ABANDONED_FILE_MINIMUM_AGE_IN_MILLISECONDS = 60 * 60 * 1000;
+	public static final String CLEANER_THREAD_NAME = "elasthttpd-upload-cleaner";
+
+	private final StripedLocks locks;
+	private final DurabilityMode durabilityMode;
+	private final Optional<GroupCommitter> optionalGroupCommitter;
+
+	/**
+	 * Create publisher with default number of lock stripes that does not make publications durable
+	 */
+	public AtomicUploadPublisher() {
+		this(DEFAULT_NUMBER_OF_LOCK_STRIPES);
+	}
+
+	/**
+	 * Create publisher that does not make publications durable
+	 *
+	 * @param numberOfLockStripes positive number of locks shared by all published paths
+	 */
+	public AtomicUploadPublisher(int numberOfLockStripes) {
+		this(numberOfLockStripes, DurabilityMode.NONE);
+	}
+
+	/**
+	 * Create publisher that makes publications durable according to the mode (group commit with default window
+	 * and batch size)
+	 *
+	 * @param numberOfLockStripes positive number of locks shared by all published paths
+	 * @param durabilityMode not null mode
+	 */
+	public AtomicUploadPublisher(int numberOfLockStripes, DurabilityMode durabilityMode) {
+		this(numberOfLockStripes, notNull(durabilityMode, "Durability mode cannot be null"),
+				createOptionalGroupCommitter(durabilityMode));
+	}
+
+	private static Optional<GroupCommitter> createOptionalGroupCommitter(DurabilityMode durabilityMode) {
+		return durabilityMode == DurabilityMode.GROUP_COMMIT
+				? Optional.present(new GroupCommitter())
+				: Optional.<GroupCommitter>empty();
+	}
+
+	/**
+	 * Create publisher that makes publications durable with the group committer
+	 *
+	 * @param numberOfLockStripes positive number of locks shared by all published paths
+	 * @param groupCommitter not null committer (i.e. shared with other publishers)
+	 */
+	public AtomicUploadPublisher(int numberOfLockStripes, GroupCommitter groupCommitter) {
+		this(numberOfLockStripes, DurabilityMode.GROUP_COMMIT,
+				Optional.present(notNull(groupCommitter, "Group committer cannot be null")));
+	}
+
+	private AtomicUploadPublisher(int numberOfLockStripes, DurabilityMode durabilityMode,
+								  Optional<GroupCommitter> optionalGroupCommitter) {
+		this.locks = new StripedLocks(numberOfLockStripes);
+		this.durabilityMode = durabilityMode;
+		this.optionalGroupCommitter = optionalGroupCommitter;
+	}
+
+	/**
+	 * Create an empty temporary file in the directory of the target
+	 *
+	 * @param target not null file that will be replaced by the temporary file
+	 * @return not null new temporary file
+	 * @throws FileNotFoundException when directory of the target does not exist
+	 * @throws IOException when temporary file cannot be created
+	 */
+	public File createTemporaryFile(File target) throws IOException {
+		final File directory = notNull(target, "Target file cannot be null").getAbsoluteFile().getParentFile();
+		if (directory == null || !directory.isDirectory())
+			throw new FileNotFoundException(format("The directory of file does not exist: %s", target));
+		return File.createTempFile(TEMPORARY_FILE_PREFIX, TEMPORARY_FILE_SUFFIX, directory);
+	}
+
+	/**
+	 * Replace the target with the temporary file in a single atomic rename and make it durable according to
+	 * the durability mode
+	 *
+	 * @param temporaryFile not null complete temporary file created by {@link #createTemporaryFile(File)}
+	 * @param target not null file to replace
+	 * @throws IOException when the temporary file cannot be renamed (it is left in place then) or the publication
+	 * cannot be made durable
+	 */
+	public void publish(File temporaryFile, File target) throws IOException {
+		notNull(temporaryFile, "Temporary file cannot be null");
+		notNull(target, "Target file cannot be null");
+		if (durabilityMode == DurabilityMode.NONE) {
+			rename(temporaryFile, target);
+			return;
+		}
+		synchronizeContent(temporaryFile);
+		rename(temporaryFile, target);
+		if (durabilityMode == DurabilityMode.GROUP_COMMIT)
+			optionalGroupCommitter.get().commit(target);
+		else
+			synchronizeDirectory(directoryOf(target));
+	}
+
+	private void rename(File temporaryFile, File target) throws IOException {
+		final Lock lock = lockFor(target);
+		lock.lock();
+		try {
+			Files.move(temporaryFile.toPath(), target.toPath(), ATOMIC_MOVE);
+			// renaming a hard link over another link of the same file leaves both of them in place
+			Files.deleteIfExists(temporaryFile.toPath());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public DurabilityMode getDurabilityMode() {
+		return durabilityMode;
+	}
+
+	/**
+	 * @return not null optional committer that is present only in group commit mode
+	 */
+	public Optional<GroupCommitter> getOptionalGroupCommitter() {
+		return optionalGroupCommitter;
+	}
+
+	/**
+	 * Remove temporary file of upload that cannot be published
+	 *
+	 * @param temporaryFile not null temporary file
+	 */
+	public void discard(File temporaryFile) {
+		if (!notNull(temporaryFile, "Temporary file cannot be null").delete() && temporaryFile.exists())
+			LOGGER.warn(format("Cannot remove temporary file of failed upload: %s", temporaryFile.getAbsolutePath()));
+	}
+
+	/**
+	 * Get the lock that serializes publications of the file
+	 *
+	 * @param target not null file
+	 * @return not null lock shared with all files of the same stripe
+	 */
+	public Lock lockFor(File target) {
+		return locks.lockFor(notNull(target, "Target file cannot be null").getAbsolutePath().hashCode());
+	}
+
+	/**
+	 * @param fileName not null name of file
+	 * @return true if the name is a name of temporary file of upload
+	 */
+	public static boolean isTemporaryFileName(String fileName) {
+		return fileName.startsWith(TEMPORARY_FILE_PREFIX) && fileName.endsWith(TEMPORARY_FILE_SUFFIX);
+	}
+
+	/**
+	 * @param file not null file
+	 * @return true if the file is a temporary file of upload - it is never served, overwritten nor deleted on request
+	 */
+	public static boolean isTemporaryFile(File file) {
+		return isTemporaryFileName(notNull(file, "File cannot be null").getName());
+	}
+
+	/**
+	 * Remove temporary files of uploads left in the directory tree (i.e. by a crashed server)
+	 *
+	 * @param rootDirectory not null root of directory tree
+	 * @param minimumAgeInMilliseconds not negative minimal time since the last modification of temporary file, so
+	 *                                 files of uploads still in progress are kept
+	 * @return number of removed files
+	 */
+	public static int removeAbandonedTemporaryFiles(File rootDirectory, long minimumAgeInMilliseconds) {
+		notNull(rootDirectory, "Root directory cannot be null");
+		isTrue(minimumAgeInMilliseconds >= 0, "Minimum age cannot be negative");
+		final long modifiedBefore = System.currentTimeMillis() - minimumAgeInMilliseconds;
+		final AtomicInteger numberOfRemovedFiles = new AtomicInteger();
+		try {
+			Files.walkFileTree(rootDirectory.toPath(), new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+					if (attributes.isRegularFile() && isTemporaryFileName(file.getFileName().toString()) &&
+							attributes.lastModifiedTime().toMillis() <= modifiedBefore)
+						removeAbandonedTemporaryFile(file, numberOfRemovedFiles);
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot look for abandoned temporary files of uploads in: %s", rootDirectory), e);
+		}
+		return numberOfRemovedFiles.get();
+	}
+
+	/**
+	 * Remove temporary files of uploads left in the directory tree in a background daemon thread
+	 *
+	 * @param rootDirectory not null root of directory tree
+	 * @param minimumAgeInMilliseconds not negative minimal time since the last modification of temporary file
+	 */
+	public static void removeAbandonedTemporaryFilesInBackground(final File rootDirectory,
+																 final long minimumAgeInMilliseconds) {
+		notNull(rootDirectory, "Root directory cannot be null");
+		isTrue(minimumAgeInMilliseconds >= 0, "Minimum age cannot be negative");
+		final Thread cleanerThread = new Thread(new Runnable() {
+			public void run() {
+				final int numberOfRemovedFiles = removeAbandonedTemporaryFiles(rootDirectory, minimumAgeInMilliseconds);
+				if (numberOfRemovedFiles > 0)
+					LOGGER.info(format("Removed %d abandoned temporary files of uploads", numberOfRemovedFiles));
+			}
+		}, CLEANER_THREAD_NAME);
+		cleanerThread.setDaemon(true);
+		cleanerThread.start();
+	}
+
+	private static void removeAbandonedTemporaryFile(Path file, AtomicInteger numberOfRemovedFiles) {
+		try {
+			if (Files.deleteIfExists(file))
+				numberOfRemovedFiles.incrementAndGet();
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot remove abandoned temporary file of upload: %s", file), e);
+		}
+	}
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.commons.StripedLocks;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStore;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigests;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.TEMPORARY_FILE_PREFIX;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.TEMPORARY_FILE_SUFFIX;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Deduplicates uploaded files in a directory of blobs named by SHA-256 digest of their content. A published upload
+ * is a hard link to the blob of its content, so each distinct content is stored on disk only once however many paths
+ * it is uploaded to, and the number of links of a blob is the number of its references. A blob that is no longer
+ * linked by any path is removed by {@link #release(byte[])} when a path is deleted or replaced, or by
+ * {@link #removeUnreferencedBlobs()} (i.e. after a crash or a change made by other means).
+ *
+ * Blobs are never modified: writers of paths replace them with new files. The blob directory needs to be on
+ * the same file system as the uploaded paths; when hard links cannot be created uploads are published without
+ * deduplication. Creation and removal of links of the same blob are serialized with striped locks.
+ */
+public class ContentAddressedStore {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(ContentAddressedStore.class);
+	public static final String DIGEST_ALGORITHM = ContentDigestStore.DIGEST_ALGORITHM;
+	public static final int DEFAULT_NUMBER_OF_LOCK_STRIPES = StripedLocks.DEFAULT_NUMBER_OF_STRIPES;
+	public static final String CLEANER_THREAD_NAME = "elasthttpd-blob-cleaner";
+	private static final String LINK_COUNT_ATTRIBUTE = "unix:nlink";
+	private static final int FAN_OUT_PREFIX_LENGTH = 2;
+
+	private final File directory;
+	private final StripedLocks locks;
+	private final ContentDigestStore contentDigestStore = new ContentDigestStore();
+	private final AtomicLong storedBlobCount = new AtomicLong();
+	private final AtomicLong deduplicatedUploadCount = new AtomicLong();
+	private final AtomicLong skippedWriteCount = new AtomicLong();
+	private final AtomicLong removedBlobCount = new AtomicLong();
+
+	/**
+	 * Create store with default number of lock stripes
+	 *
+	 * @param directory not null directory of blobs (created when missing)
+	 */
+	public ContentAddressedStore(File directory) {
+		this(directory, DEFAULT_NUMBER_OF_LOCK_STRIPES);
+	}
+
+	/**
+	 * Create store
+	 *
+	 * @param directory not null directory of blobs (created when missing)
+	 * @param numberOfLockStripes positive number of locks shared by all blobs
+	 */
+	public ContentAddressedStore(File directory, int numberOfLockStripes) {
+		this.directory = notNull(directory, "Blob directory cannot be null").getAbsoluteFile();
+		this.locks = new StripedLocks(numberOfLockStripes);
+	}
+
+	/**
+	 * Make the complete temporary file of upload a reference of the blob of its content. When the blob is already
+	 * stored the temporary file is discarded and a new temporary link of the blob is returned instead, otherwise
+	 * the temporary file becomes the blob.
+	 *
+	 * @param temporaryFile not null complete temporary file of upload
+	 * @param digest not null SHA-256 digest of the content of temporary file
+	 * @return not null temporary file to publish in place of the given one
+	 */
+	public File deduplicate(File temporaryFile, byte[] digest) {
+		notNull(temporaryFile, "Temporary file cannot be null");
+		final File blob = blobOf(digest);
+		final Lock lock = lockFor(digest);
+		lock.lock();
+		try {
+			if (blob.isFile() && blob.length() == temporaryFile.length())
+				return replaceWithLinkOfBlob(temporaryFile, blob);
+			else if (!blob.exists())
+				storeAsBlob(temporaryFile, blob);
+			return temporaryFile;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private File replaceWithLinkOfBlob(File temporaryFile, File blob) {
+		final Optional<File> optionalLink = createTemporaryLink(blob, temporaryFile.getAbsoluteFile().getParentFile());
+		if (optionalLink.isNotPresent())
+			return temporaryFile;
+		if (!temporaryFile.delete())
+			LOGGER.warn(format("Cannot remove deduplicated temporary file of upload: %s", temporaryFile));
+		deduplicatedUploadCount.incrementAndGet();
+		return optionalLink.get();
+	}
+
+	private void storeAsBlob(File temporaryFile, File blob) {
+		try {
+			Files.createDirectories(blob.toPath().getParent());
+			Files.createLink(blob.toPath(), temporaryFile.toPath());
+			storedBlobCount.incrementAndGet();
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot store blob %s of uploaded file; it is not deduplicated", blob), e);
+		} catch (UnsupportedOperationException e) {
+			LOGGER.warn(format("Hard links are not supported; uploaded file is not deduplicated: %s", blob));
+		}
+	}
+
+	/**
+	 * Create a temporary link of the already stored blob in the directory of the target, so an upload with declared
+	 * digest of the same content does not need to write its body. The blob stays referenced by the link until it
+	 * is published or discarded.
+	 *
+	 * @param digest not null SHA-256 digest of the content
+	 * @param target not null file that will be replaced by the link
+	 * @return optional temporary link; not present when the blob is not stored or cannot be linked
+	 */
+	public Optional<File> linkStoredBlob(byte[] digest, File target) {
+		final File directoryOfTarget = notNull(target, "Target file cannot be null").getAbsoluteFile().getParentFile();
+		final File blob = blobOf(digest);
+		final Lock lock = lockFor(digest);
+		lock.lock();
+		try {
+			if (!blob.isFile() || directoryOfTarget == null || !directoryOfTarget.isDirectory())
+				return Optional.empty();
+			final Optional<File> optionalLink = createTemporaryLink(blob, directoryOfTarget);
+			if (optionalLink.isPresent())
+				skippedWriteCount.incrementAndGet();
+			return optionalLink;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Optional<File> createTemporaryLink(File blob, File directoryOfLink) {
+		File link = null;
+		try {
+			link = File.createTempFile(TEMPORARY_FILE_PREFIX, TEMPORARY_FILE_SUFFIX, directoryOfLink);
+			Files.delete(link.toPath());
+			Files.createLink(link.toPath(), blob.toPath());
+			return Optional.present(link);
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot link stored blob %s into directory %s", blob, directoryOfLink), e);
+		} catch (UnsupportedOperationException e) {
+			LOGGER.warn(format("Hard links are not supported; cannot link stored blob: %s", blob));
+		}
+		if (link != null)
+			link.delete();
+		return Optional.empty();
+	}
+
+	/**
+	 * Find the digest of blob referenced by the file before the file is replaced or deleted
+	 *
+	 * @param file not null file
+	 * @return optional digest; not present when the file is not a reference of any blob
+	 */
+	public Optional<byte[]> referencedDigestOf(File file) {
+		notNull(file, "File cannot be null");
+		if (!file.isFile() || linkCountOf(file) < 2)
+			return Optional.empty();
+		final Optional<byte[]> optionalDigest = loadOrComputeDigest(file);
+		if (optionalDigest.isNotPresent() || !isSameFile(blobOf(optionalDigest.get()), file))
+			return Optional.empty();
+		return optionalDigest;
+	}
+
+	private Optional<byte[]> loadOrComputeDigest(File file) {
+		final Optional<byte[]> optionalStoredDigest = contentDigestStore.load(file, file.length(), file.lastModified());
+		if (optionalStoredDigest.isPresent())
+			return optionalStoredDigest;
+		try {
+			return Optional.present(ContentDigests.computeDigest(file));
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot compute digest of file: %s", file), e);
+			return Optional.empty();
+		}
+	}
+
+	private static boolean isSameFile(File blob, File file) {
+		try {
+			return blob.exists() && Files.isSameFile(blob.toPath(), file.toPath());
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Remove the blob when it is no longer referenced by any file (i.e. after a reference has been deleted
+	 * or replaced)
+	 *
+	 * @param digest not null SHA-256 digest of the content
+	 * @return true if the blob has been removed
+	 */
+	public boolean release(byte[] digest) {
+		final File blob = blobOf(digest);
+		final Lock lock = lockFor(digest);
+		lock.lock();
+		try {
+			return removeIfUnreferenced(blob);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private boolean removeIfUnreferenced(File blob) {
+		if (!blob.isFile() || linkCountOf(blob) != 1)
+			return false;
+		if (!blob.delete()) {
+			LOGGER.warn(format("Cannot remove unreferenced blob: %s", blob));
+			return false;
+		}
+		removedBlobCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Remove all blobs that are not referenced by any file
+	 *
+	 * @return number of removed blobs
+	 */
+	public int removeUnreferencedBlobs() {
+		final AtomicInteger numberOfRemovedBlobs = new AtomicInteger();
+		if (!directory.isDirectory())
+			return 0;
+		try {
+			Files.walkFileTree(directory.toPath(), new SimpleFileVisitor<Path>() {
+				@Override
+				public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+					final Optional<byte[]> optionalDigest = parseDigest(file.getFileName().toString());
+					if (attributes.isRegularFile() && optionalDigest.isPresent() && release(optionalDigest.get()))
+						numberOfRemovedBlobs.incrementAndGet();
+					return FileVisitResult.CONTINUE;
+				}
+
+				@Override
+				public FileVisitResult visitFileFailed(Path file, IOException e) {
+					return FileVisitResult.CONTINUE;
+				}
+			});
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot look for unreferenced blobs in: %s", directory), e);
+		}
+		return numberOfRemovedBlobs.get();
+	}
+
+	/**
+	 * Remove all blobs that are not referenced by any file in a background daemon thread
+	 */
+	public void removeUnreferencedBlobsInBackground() {
+		final Thread cleanerThread = new Thread(new Runnable() {
+			public void run() {
+				final int numberOfRemovedBlobs = removeUnreferencedBlobs();
+				if (numberOfRemovedBlobs > 0)
+					LOGGER.info(format("Removed %d unreferenced blobs of uploads", numberOfRemovedBlobs));
+			}
+		}, CLEANER_THREAD_NAME);
+		cleanerThread.setDaemon(true);
+		cleanerThread.start();
+	}
+
+	/**
+	 * Get the file of blob with the content
+	 *
+	 * @param digest not null SHA-256 digest of the content
+	 * @return not null file of blob (which may not exist)
+	 */
+	public File blobOf(byte[] digest) {
+		isTrue(notNull(digest, "Digest cannot be null").length == ContentDigestStore.DIGEST_LENGTH_IN_BYTES,
+				"Digest must be %d bytes long", ContentDigestStore.DIGEST_LENGTH_IN_BYTES);
+		final String name = ContentDigests.toHex(digest);
+		return new File(new File(directory, name.substring(0, FAN_OUT_PREFIX_LENGTH)), name);
+	}
+
+	private Lock lockFor(byte[] digest) {
+		return locks.lockFor(Arrays.hashCode(digest));
+	}
+
+	private static Optional<byte[]> parseDigest(String name) {
+		if (name.length() != ContentDigestStore.DIGEST_LENGTH_IN_BYTES * 2)
+			return Optional.empty();
+		final byte[] digest = new byte[ContentDigestStore.DIGEST_LENGTH_IN_BYTES];
+		for (int i = 0; i < digest.length; i++) {
+			final int high = Character.digit(name.charAt(2 * i), 16);
+			final int low = Character.digit(name.charAt(2 * i + 1), 16);
+			if (high < 0 || low < 0)
+				return Optional.empty();
+			digest[i] = (byte) ((high << 4) | low);
+		}
+		return Optional.present(digest);
+	}
+
+	/**
+	 * Get the number of names of the file (hard links)
+	 *
+	 * @param file not null existing file
+	 * @return number of links; 1 when the file system does not report it
+	 */
+	public static int linkCountOf(File file) {
+		try {
+			return ((Number) Files.getAttribute(notNull(file, "File cannot be null").toPath(), LINK_COUNT_ATTRIBUTE))
+					.intValue();
+		} catch (IOException e) {
+			return 1;
+		} catch (UnsupportedOperationException e) {
+			return 1;
+		} catch (IllegalArgumentException e) {
+			return 1;
+		}
+	}
+
+	public File getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * @return number of new blobs stored by uploads
+	 */
+	public long getStoredBlobCount() {
+		return storedBlobCount.get();
+	}
+
+	/**
+	 * @return number of uploads which written content has been replaced by a link of already stored blob
+	 */
+	public long getDeduplicatedUploadCount() {
+		return deduplicatedUploadCount.get();
+	}
+
+	/**
+	 * @return number of uploads which body has not been written at all, because their declared digest was stored
+	 */
+	public long getSkippedWriteCount() {
+		return skippedWriteCount.get();
+	}
+
+	/**
+	 * @return number of removed unreferenced blobs
+	 */
+	public long getRemovedBlobCount() {
+		return removedBlobCount.get();
+	}
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Immutable value of Content-Range header of an upload request: either a part of file (i.e. 'bytes 0-499/1234')
+ * or a query for already received parts of file ('bytes *' followed by '/1234'). The complete length of file
+ * needs to be known unless it is explicitly allowed to be unknown for a part of file (i.e. 'bytes 0-499' followed
+ * by '/*' in a patch that does not change the length of file).
+ */
+public class ContentRange {
+
+	public static final long UNKNOWN_COMPLETE_LENGTH = -1;
+	private static final String BYTES_UNIT_PREFIX = "bytes ";
+	private static final String UNSATISFIED_RANGE = "*";
+	private static final String UNKNOWN_LENGTH = "*";
+
+	private final Optional<ByteRange> optionalRange;
+	private final long completeLength;
+
+	/**
+	 * Create value
+	 *
+	 * @param optionalRange not null optional range of bytes in the request; not present for a query
+	 * @param completeLength positive length of the whole file that the range does not exceed or
+	 *                       {@link #UNKNOWN_COMPLETE_LENGTH} when the range is present
+	 */
+	public ContentRange(Optional<ByteRange> optionalRange, long completeLength) {
+		this.optionalRange = notNull(optionalRange, "Optional range cannot be null");
+		isTrue(completeLength > 0 || (completeLength == UNKNOWN_COMPLETE_LENGTH && optionalRange.isPresent()),
+				"Complete length must be positive or unknown for a range");
+		isTrue(optionalRange.isNotPresent() || completeLength == UNKNOWN_COMPLETE_LENGTH ||
+				optionalRange.get().getLastPosition() < completeLength, "Range cannot exceed the complete length");
+		this.completeLength = completeLength;
+	}
+
+	/**
+	 * Parse value of Content-Range header
+	 *
+	 * @param headerValue not null value of header
+	 * @return not null parsed value
+	 * @throws IllegalArgumentException when the value is not a valid range of bytes of file with known length
+	 */
+	public static ContentRange parse(String headerValue) {
+		return parse(headerValue, false);
+	}
+
+	/**
+	 * Parse value of Content-Range header that may have unknown complete length
+	 *
+	 * @param headerValue not null value of header
+	 * @param unknownCompleteLengthAllowed true if a range of bytes can have unknown ('*') complete length
+	 * @return not null parsed value
+	 * @throws IllegalArgumentException when the value is not a valid range of bytes
+	 */
+	public static ContentRange parse(String headerValue, boolean unknownCompleteLengthAllowed) {
+		final String value = notNull(headerValue, "Header value cannot be null").trim();
+		isTrue(value.startsWith(BYTES_UNIT_PREFIX), "Content range needs to be expressed in bytes: %s", value);
+		final int lengthSeparator = value.indexOf('/');
+		isTrue(lengthSeparator > 0, "Content range needs to have complete length: %s", value);
+		final String range = value.substring(BYTES_UNIT_PREFIX.length(), lengthSeparator).trim();
+		final String length = value.substring(lengthSeparator + 1);
+		final long completeLength = unknownCompleteLengthAllowed && length.equals(UNKNOWN_LENGTH)
+				? UNKNOWN_COMPLETE_LENGTH
+				: parsePosition(length, value);
+		if (range.equals(UNSATISFIED_RANGE))
+			return new ContentRange(Optional.<ByteRange>empty(), completeLength);
+		final int rangeSeparator = range.indexOf('-');
+		isTrue(rangeSeparator > 0, "Content range needs to have first and last position: %s", value);
+		return new ContentRange(Optional.present(new ByteRange(
+				parsePosition(range.substring(0, rangeSeparator), value),
+				parsePosition(range.substring(rangeSeparator + 1), value))), completeLength);
+	}
+
+	private static long parsePosition(String position, String value) {
+		isTrue(position.length() > 0 && position.length() < 19, "Invalid position in content range: %s", value);
+		for (int i = 0; i < position.length(); i++)
+			isTrue(Character.isDigit(position.charAt(i)) && position.charAt(i) < 128,
+					"Invalid position in content range: %s", value);
+		return Long.parseLong(position);
+	}
+
+	/**
+	 * @return not null optional range of bytes; not present when received parts of file are queried
+	 */
+	public Optional<ByteRange> getRange() {
+		return optionalRange;
+	}
+
+	/**
+	 * @return positive complete length of file or {@link #UNKNOWN_COMPLETE_LENGTH}
+	 */
+	public long getCompleteLength() {
+		return completeLength;
+	}
+
+	public boolean isCompleteLengthKnown() {
+		return completeLength != UNKNOWN_COMPLETE_LENGTH;
+	}
+
+	@Override
+	public String toString() {
+		return format("bytes %s/%s", optionalRange.isPresent() ? optionalRange.get().toString() : UNSATISFIED_RANGE,
+				isCompleteLengthKnown() ? Long.toString(completeLength) : UNKNOWN_LENGTH);
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Synchronizes files and directories with the disk.
+ */
+final class DiskSynchronization {
+
+	private DiskSynchronization() {
+	}
+
+	/**
+	 * Write content of file (with its length) to the disk
+	 *
+	 * @param file not null existing regular file
+	 * @throws IOException when the file cannot be synchronized
+	 */
+	static void synchronizeContent(File file) throws IOException {
+		final FileChannel channel = FileChannel.open(file.toPath(), WRITE);
+		try {
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+	}
+
+	/**
+	 * Write entries of directory (i.e. a rename of file in it) to the disk
+	 *
+	 * @param directory not null existing directory
+	 * @throws IOException when the directory cannot be synchronized
+	 */
+	static void synchronizeDirectory(File directory) throws IOException {
+		final FileChannel channel = FileChannel.open(directory.toPath(), READ);
+		try {
+			channel.force(true);
+		} finally {
+			channel.close();
+		}
+	}
+
+	static File directoryOf(File file) {
+		return file.getAbsoluteFile().getParentFile();
+	}
+}
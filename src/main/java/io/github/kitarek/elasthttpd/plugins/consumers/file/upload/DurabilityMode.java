@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+/**
+ * How durable a published upload is when the client is told that it has been stored.
+ */
+public enum DurabilityMode {
+
+	/**
+	 * Nothing is synchronized with the disk: the upload survives a crash of the server but it can be lost or
+	 * replaced by an empty file after a power loss.
+	 */
+	NONE,
+
+	/**
+	 * Content of every upload is synchronized with the disk before it is renamed over the target and the directory
+	 * is synchronized after the rename, so a published upload survives a power loss. Each upload waits for its own
+	 * synchronizations.
+	 */
+	FILE_SYNC,
+
+	/**
+	 * The same guarantee as {@link #FILE_SYNC}, but directories of uploads renamed at about the same time are
+	 * synchronized together in batches by a single background {@link GroupCommitter}, so each directory is
+	 * synchronized once per batch. Content of every upload is still synchronized by its own thread.
+	 */
+	GROUP_COMMIT
+}
@@ -0,0 +1,301 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import org.apache.http.HttpEntity;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.List;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Writes bodies of uploads into files with large positional writes of a file channel.
+ *
+ * The decoded body (either delimited by Content-Length or chunked) is read in large blocks into a byte array reused
+ * by each thread. Message digests passed along with the body are updated from that array, so the body is verified
+ * without reading the written file again. Each block is then copied once into a direct buffer of the thread and
+ * written with a single positional write, so the file channel does not copy it into a temporary direct buffer.
+ * When Content-Length is known the length of the file is set to it before writing (that does not reserve disk space)
+ * and the upload fails when the body ends before or after the declared number of bytes.
+ */
+public class FileUploadWriter {
+
+	public static final int DEFAULT_BUFFER_SIZE_IN_BYTES = 256 * 1024;
+	private static final long UNKNOWN_CONTENT_LENGTH = -1;
+
+	private final int bufferSizeInBytes;
+	private final ThreadLocal<byte[]> arrays = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[bufferSizeInBytes];
+		}
+	};
+	private final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>() {
+		@Override
+		protected ByteBuffer initialValue() {
+			return ByteBuffer.allocateDirect(bufferSizeInBytes);
+		}
+	};
+
+	/**
+	 * Create writer with default size of buffers
+	 */
+	public FileUploadWriter() {
+		this(DEFAULT_BUFFER_SIZE_IN_BYTES);
+	}
+
+	/**
+	 * Create writer
+	 *
+	 * @param bufferSizeInBytes positive size of byte array and direct buffer allocated once for each uploading thread
+	 */
+	public FileUploadWriter(int bufferSizeInBytes) {
+		isTrue(bufferSizeInBytes > 0, "Size of buffer must be positive");
+		this.bufferSizeInBytes = bufferSizeInBytes;
+	}
+
+	/**
+	 * Replace the whole content of the file with the body of upload
+	 *
+	 * @param entity not null body of upload request
+	 * @param file not null file opened for writing
+	 * @return number of written bytes
+	 * @throws IOException when body cannot be read, file cannot be written or body has not the declared length
+	 */
+	public long writeEntity(HttpEntity entity, RandomAccessFile file) throws IOException {
+		return writeEntity(entity, file, Collections.<MessageDigest>emptyList());
+	}
+
+	/**
+	 * Replace the whole content of the file with the body of upload and update digests with all bytes of the body
+	 *
+	 * @param entity not null body of upload request
+	 * @param file not null file opened for writing
+	 * @param digests not null list of not null digests
+	 * @return number of written bytes
+	 * @throws IOException when body cannot be read, file cannot be written or body has not the declared length
+	 */
+	public long writeEntity(HttpEntity entity, RandomAccessFile file, List<MessageDigest> digests) throws IOException {
+		notNull(entity, "Entity cannot be null");
+		notNull(file, "File cannot be null");
+		final long declaredLength = entity.getContentLength();
+		file.setLength(Math.max(0, declaredLength));
+		final InputStream inputStream = entity.getContent();
+		try {
+			final long writtenBytes = transfer(inputStream, file.getChannel(), 0, digests);
+			verifyLength(declaredLength, writtenBytes);
+			return writtenBytes;
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Read the whole body of upload without writing it anywhere and update digests with all its bytes (i.e. when
+	 * the content is already stored)
+	 *
+	 * @param entity not null body of upload request
+	 * @param digests not null list of not null digests
+	 * @return number of read bytes
+	 * @throws IOException when body cannot be read or body has not the declared length
+	 */
+	public long digestEntity(HttpEntity entity, List<MessageDigest> digests) throws IOException {
+		notNull(entity, "Entity cannot be null");
+		noNullElements(notNull(digests, "Digests cannot be null"), "Digest cannot be null");
+		final InputStream inputStream = entity.getContent();
+		try {
+			final byte[] array = arrays.get();
+			long readBytes = 0;
+			int filledBytes;
+			while ((filledBytes = fill(inputStream, array)) > 0) {
+				updateDigests(digests, array, filledBytes);
+				readBytes += filledBytes;
+			}
+			verifyLength(entity.getContentLength(), readBytes);
+			return readBytes;
+		} finally {
+			inputStream.close();
+		}
+	}
+
+	/**
+	 * Write all bytes of the stream into the channel starting at the position
+	 *
+	 * @param inputStream not null stream of body
+	 * @param channel not null channel of file opened for writing
+	 * @param position not negative position in file of the first byte of the stream
+	 * @return number of written bytes
+	 * @throws IOException when stream cannot be read or file cannot be written
+	 */
+	public long transfer(InputStream inputStream, FileChannel channel, long position) throws IOException {
+		return transfer(inputStream, channel, position, Collections.<MessageDigest>emptyList());
+	}
+
+	/**
+	 * Write all bytes of the stream into the channel starting at the position and update digests with them
+	 *
+	 * @param inputStream not null stream of body
+	 * @param channel not null channel of file opened for writing
+	 * @param position not negative position in file of the first byte of the stream
+	 * @param digests not null list of not null digests
+	 * @return number of written bytes
+	 * @throws IOException when stream cannot be read or file cannot be written
+	 */
+	public long transfer(InputStream inputStream, FileChannel channel, long position, List<MessageDigest> digests)
+			throws IOException {
+		notNull(inputStream, "Input stream cannot be null");
+		notNull(channel, "Channel cannot be null");
+		isTrue(position >= 0, "Position cannot be negative");
+		noNullElements(notNull(digests, "Digests cannot be null"), "Digest cannot be null");
+		final byte[] array = arrays.get();
+		final ByteBuffer buffer = buffers.get();
+		long writtenBytes = 0;
+		int filledBytes;
+		while ((filledBytes = fill(inputStream, array)) > 0) {
+			updateDigests(digests, array, filledBytes);
+			buffer.clear();
+			buffer.put(array, 0, filledBytes).flip();
+			while (buffer.hasRemaining())
+				writtenBytes += channel.write(buffer, position + writtenBytes);
+		}
+		return writtenBytes;
+	}
+
+	/**
+	 * Write exactly the given number of bytes of the stream into the channel starting at the position
+	 *
+	 * @param inputStream not null stream of body
+	 * @param channel not null channel of file opened for writing
+	 * @param position not negative position in file of the first byte of the stream
+	 * @param length not negative number of bytes that the stream needs to have
+	 * @throws IOException when stream cannot be read, file cannot be written or the stream is shorter or longer
+	 */
+	public void transferExactly(InputStream inputStream, FileChannel channel, long position, long length)
+			throws IOException {
+		transferExactly(inputStream, channel, position, length, Collections.<MessageDigest>emptyList());
+	}
+
+	/**
+	 * Write exactly the given number of bytes of the stream into the channel starting at the position and update
+	 * digests with them
+	 *
+	 * @param inputStream not null stream of body
+	 * @param channel not null channel of file opened for writing
+	 * @param position not negative position in file of the first byte of the stream
+	 * @param length not negative number of bytes that the stream needs to have
+	 * @param digests not null list of not null digests
+	 * @throws IOException when stream cannot be read, file cannot be written or the stream is shorter or longer
+	 */
+	public void transferExactly(InputStream inputStream, FileChannel channel, long position, long length,
+								List<MessageDigest> digests) throws IOException {
+		transferPrefix(inputStream, channel, position, length, digests);
+		if (inputStream.read() != -1)
+			throw new IOException(format("The body of request is not %d bytes long", length));
+	}
+
+	/**
+	 * Write the given number of leading bytes of the stream into the channel starting at the position and leave
+	 * the remaining bytes of the stream unread (i.e. a part of a multipart body)
+	 *
+	 * @param inputStream not null stream of body
+	 * @param channel not null channel of file opened for writing
+	 * @param position not negative position in file of the first byte of the stream
+	 * @param length not negative number of bytes to write
+	 * @throws IOException when stream cannot be read, file cannot be written or the stream is shorter
+	 */
+	public void transferPrefix(InputStream inputStream, FileChannel channel, long position, long length)
+			throws IOException {
+		transferPrefix(inputStream, channel, position, length, Collections.<MessageDigest>emptyList());
+	}
+
+	private void transferPrefix(InputStream inputStream, FileChannel channel, long position, long length,
+								List<MessageDigest> digests) throws IOException {
+		isTrue(length >= 0, "Length cannot be negative");
+		final long writtenBytes = transfer(new BoundedInputStream(notNull(inputStream, "Input stream cannot be null"),
+				length), channel, position, digests);
+		if (writtenBytes != length)
+			throw new IOException(format("The body of request is not %d bytes long", length));
+	}
+
+	private static int fill(InputStream inputStream, byte[] array) throws IOException {
+		int filledBytes = 0;
+		int readBytes;
+		while (filledBytes < array.length &&
+				(readBytes = inputStream.read(array, filledBytes, array.length - filledBytes)) != -1)
+			filledBytes += readBytes;
+		return filledBytes;
+	}
+
+	private static void updateDigests(List<MessageDigest> digests, byte[] array, int length) {
+		for (MessageDigest digest : digests)
+			digest.update(array, 0, length);
+	}
+
+	private static void verifyLength(long declaredLength, long writtenBytes) throws IOException {
+		if (declaredLength != UNKNOWN_CONTENT_LENGTH && declaredLength != writtenBytes)
+			throw new IOException(format("The body of request has %d bytes instead of declared %d bytes",
+					writtenBytes, declaredLength));
+	}
+
+	public int getBufferSizeInBytes() {
+		return bufferSizeInBytes;
+	}
+
+	private static class BoundedInputStream extends FilterInputStream {
+		private long remainingBytes;
+
+		private BoundedInputStream(InputStream inputStream, long length) {
+			super(inputStream);
+			this.remainingBytes = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (remainingBytes == 0)
+				return -1;
+			final int readByte = super.read();
+			if (readByte != -1)
+				remainingBytes--;
+			return readByte;
+		}
+
+		@Override
+		public int read(byte[] array, int offset, int length) throws IOException {
+			if (remainingBytes == 0)
+				return -1;
+			final int readBytes = super.read(array, offset, (int) Math.min(length, remainingBytes));
+			if (readBytes > 0)
+				remainingBytes -= readBytes;
+			return readBytes;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
@@ -0,0 +1,330 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.DiskSynchronization.directoryOf;
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.DiskSynchronization.synchronizeDirectory;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+
+/**
+ * Makes published uploads durable in batches (group commit). Threads that publish uploads synchronize content of
+ * their own files with the disk in parallel, rename them over their targets and only then enqueue them and wait;
+ * a single background thread takes the first waiting upload, collects the ones that arrive within the commit window
+ * (up to the maximum batch size) together with all uploads queued in the meantime, synchronizes each of their
+ * directories once and then releases all waiting threads together. Under load the batch grows by itself with
+ * uploads that arrive while the previous batch is synchronized, so a zero window adds no latency at all.
+ *
+ * The number and size of batches and the time uploads wait for them are measured and exposed as metrics.
+ *
+ * The committer thread is started by the first commit and stopped by {@link #close()}; a commit made afterwards
+ * starts a new one, so a committer shared by a few servers can be closed by each of them.
+ */
+public class GroupCommitter implements Closeable {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(GroupCommitter.class);
+	public static final long DEFAULT_COMMIT_WINDOW_IN_MICROSECONDS = 2000;
+	public static final int DEFAULT_MAXIMUM_BATCH_SIZE = 256;
+	public static final String COMMITTER_THREAD_NAME = "elasthttpd-upload-committer";
+
+	private static final PendingCommit STOP_COMMITTING = new PendingCommit(null);
+
+	private final BlockingQueue<PendingCommit> pendingCommits = new LinkedBlockingQueue<PendingCommit>();
+	private final long commitWindowInNanoseconds;
+	private final int maximumBatchSize;
+	private final AtomicLong numberOfBatches = new AtomicLong();
+	private final AtomicLong numberOfCommits = new AtomicLong();
+	private final AtomicLong largestBatchSize = new AtomicLong();
+	private final AtomicLong totalCommitLatencyInNanoseconds = new AtomicLong();
+	private final AtomicLong maximumCommitLatencyInNanoseconds = new AtomicLong();
+	private Thread committerThread;
+
+	/**
+	 * Create committer with default commit window and maximum batch size
+	 */
+	public GroupCommitter() {
+		this(DEFAULT_COMMIT_WINDOW_IN_MICROSECONDS, DEFAULT_MAXIMUM_BATCH_SIZE);
+	}
+
+	/**
+	 * Create committer
+	 *
+	 * @param commitWindowInMicroseconds not negative time for which the first upload of a batch waits for others
+	 * @param maximumBatchSize positive maximum number of uploads committed together
+	 */
+	public GroupCommitter(long commitWindowInMicroseconds, int maximumBatchSize) {
+		isTrue(commitWindowInMicroseconds >= 0, "Commit window cannot be negative");
+		isTrue(maximumBatchSize > 0, "Maximum batch size must be positive");
+		this.commitWindowInNanoseconds = TimeUnit.MICROSECONDS.toNanos(commitWindowInMicroseconds);
+		this.maximumBatchSize = maximumBatchSize;
+	}
+
+	/**
+	 * Synchronize the directory of the target in the next batch and wait until the whole batch is done
+	 *
+	 * @param target not null file which synchronized content has just been renamed over it
+	 * @throws IOException when the rename cannot be made durable
+	 */
+	void commit(File target) throws IOException {
+		final PendingCommit pendingCommit = new PendingCommit(target);
+		enqueue(pendingCommit);
+		pendingCommit.awaitCompletion();
+	}
+
+	private synchronized void enqueue(PendingCommit pendingCommit) {
+		if (committerThread == null)
+			committerThread = startCommitterThread();
+		pendingCommits.add(pendingCommit);
+	}
+
+	private Thread startCommitterThread() {
+		final Thread thread = new Thread(new Runnable() {
+			public void run() {
+				commitBatchesUntilStopped();
+			}
+		}, COMMITTER_THREAD_NAME);
+		thread.setDaemon(true);
+		thread.start();
+		return thread;
+	}
+
+	/**
+	 * Commit all uploads enqueued so far and stop the committer thread. Uploads are not enqueued until it stops.
+	 */
+	public synchronized void close() {
+		if (committerThread == null)
+			return;
+		pendingCommits.add(STOP_COMMITTING);
+		joinUninterruptibly(committerThread);
+		committerThread = null;
+	}
+
+	private static void joinUninterruptibly(Thread thread) {
+		boolean interrupted = false;
+		while (thread.isAlive()) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+	}
+
+	private void commitBatchesUntilStopped() {
+		boolean stopped = false;
+		while (!stopped) {
+			try {
+				final List<PendingCommit> batch = takeBatch();
+				stopped = batch.remove(STOP_COMMITTING);
+				if (!batch.isEmpty())
+					commitBatch(batch);
+			} catch (InterruptedException e) {
+				LOGGER.warn("Committer of uploads has been interrupted and ignores it");
+			}
+		}
+	}
+
+	private List<PendingCommit> takeBatch() throws InterruptedException {
+		final List<PendingCommit> batch = new ArrayList<PendingCommit>();
+		PendingCommit lastPendingCommit = pendingCommits.take();
+		batch.add(lastPendingCommit);
+		final long deadline = System.nanoTime() + commitWindowInNanoseconds;
+		long remainingNanoseconds;
+		while (batch.size() < maximumBatchSize && lastPendingCommit != STOP_COMMITTING &&
+				(remainingNanoseconds = deadline - System.nanoTime()) > 0) {
+			lastPendingCommit = pendingCommits.poll(remainingNanoseconds, TimeUnit.NANOSECONDS);
+			if (lastPendingCommit == null)
+				break;
+			batch.add(lastPendingCommit);
+		}
+		// nothing is enqueued after the stop marker, as enqueuing waits until the committer thread stops
+		pendingCommits.drainTo(batch, maximumBatchSize - batch.size());
+		return batch;
+	}
+
+	private void commitBatch(List<PendingCommit> batch) {
+		try {
+			for (Map.Entry<File, List<PendingCommit>> entry : groupByDirectory(batch).entrySet())
+				synchronizeDirectoryOfCommits(entry.getKey(), entry.getValue());
+		} catch (RuntimeException e) {
+			LOGGER.error("Unexpected failure of committer of uploads", e);
+			for (PendingCommit pendingCommit : batch)
+				pendingCommit.fail(new IOException(e));
+		} finally {
+			completeRecordedBatch(batch);
+		}
+	}
+
+	private void completeRecordedBatch(List<PendingCommit> batch) {
+		try {
+			recordBatch(batch);
+		} finally {
+			// statistics are recorded first, so they already count the commit when waiting upload is released
+			for (PendingCommit pendingCommit : batch)
+				pendingCommit.complete();
+		}
+	}
+
+	private static Map<File, List<PendingCommit>> groupByDirectory(List<PendingCommit> batch) {
+		final Map<File, List<PendingCommit>> commitsByDirectory = new LinkedHashMap<File, List<PendingCommit>>();
+		for (PendingCommit pendingCommit : batch) {
+			final File directory = directoryOf(pendingCommit.target);
+			List<PendingCommit> commitsOfDirectory = commitsByDirectory.get(directory);
+			if (commitsOfDirectory == null) {
+				commitsOfDirectory = new ArrayList<PendingCommit>();
+				commitsByDirectory.put(directory, commitsOfDirectory);
+			}
+			commitsOfDirectory.add(pendingCommit);
+		}
+		return commitsByDirectory;
+	}
+
+	private static void synchronizeDirectoryOfCommits(File directory, List<PendingCommit> commitsOfDirectory) {
+		try {
+			synchronizeDirectory(directory);
+		} catch (IOException e) {
+			for (PendingCommit pendingCommit : commitsOfDirectory)
+				pendingCommit.fail(e);
+		}
+	}
+
+	private void recordBatch(List<PendingCommit> batch) {
+		final long now = System.nanoTime();
+		numberOfBatches.incrementAndGet();
+		numberOfCommits.addAndGet(batch.size());
+		updateMaximum(largestBatchSize, batch.size());
+		for (PendingCommit pendingCommit : batch) {
+			final long latency = now - pendingCommit.enqueuedAt;
+			totalCommitLatencyInNanoseconds.addAndGet(latency);
+			updateMaximum(maximumCommitLatencyInNanoseconds, latency);
+		}
+		if (LOGGER.isDebugEnabled())
+			LOGGER.debug(format("Committed batch of %d uploads", batch.size()));
+	}
+
+	private static void updateMaximum(AtomicLong maximum, long value) {
+		long current = maximum.get();
+		while (value > current && !maximum.compareAndSet(current, value))
+			current = maximum.get();
+	}
+
+	public long getCommitWindowInMicroseconds() {
+		return TimeUnit.NANOSECONDS.toMicros(commitWindowInNanoseconds);
+	}
+
+	public int getMaximumBatchSize() {
+		return maximumBatchSize;
+	}
+
+	/**
+	 * @return number of batches committed so far
+	 */
+	public long getNumberOfBatches() {
+		return numberOfBatches.get();
+	}
+
+	/**
+	 * @return number of uploads committed so far (including the failed ones)
+	 */
+	public long getNumberOfCommits() {
+		return numberOfCommits.get();
+	}
+
+	/**
+	 * @return the largest number of uploads committed in one batch
+	 */
+	public long getLargestBatchSize() {
+		return largestBatchSize.get();
+	}
+
+	/**
+	 * @return average number of uploads committed in one batch; zero when nothing has been committed yet
+	 */
+	public double getAverageBatchSize() {
+		final long batches = numberOfBatches.get();
+		return batches == 0 ? 0 : (double) numberOfCommits.get() / batches;
+	}
+
+	/**
+	 * @return average time from enqueuing an upload to releasing it; zero when nothing has been committed yet
+	 */
+	public long getAverageCommitLatencyInMicroseconds() {
+		final long commits = numberOfCommits.get();
+		return commits == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalCommitLatencyInNanoseconds.get() / commits);
+	}
+
+	/**
+	 * @return the longest time from enqueuing an upload to releasing it
+	 */
+	public long getMaximumCommitLatencyInMicroseconds() {
+		return TimeUnit.NANOSECONDS.toMicros(maximumCommitLatencyInNanoseconds.get());
+	}
+
+	private static class PendingCommit {
+		private final File target;
+		private final long enqueuedAt = System.nanoTime();
+		private final CountDownLatch completion = new CountDownLatch(1);
+		private volatile IOException failure;
+
+		private PendingCommit(File target) {
+			this.target = target;
+		}
+
+		private void fail(IOException e) {
+			if (failure == null)
+				failure = e;
+		}
+
+		private void complete() {
+			completion.countDown();
+		}
+
+		private void awaitCompletion() throws IOException {
+			boolean interrupted = false;
+			while (true) {
+				try {
+					completion.await();
+					break;
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted)
+				Thread.currentThread().interrupt();
+			if (failure != null)
+				throw new IOException(format("Upload '%s' has not been durably published", target), failure);
+		}
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * Upload of one file received in parts: the temporary file with already written parts, the set of received
+ * ranges and the number of parts being written at the moment. Every state change is synchronized on the upload;
+ * parts are written to the shared channel outside of the lock with positional writes.
+ */
+class PartialUpload {
+
+	private final File temporaryFile;
+	private final RandomAccessFile randomAccessFile;
+	private final long completeLength;
+	private final ReceivedRanges receivedRanges = new ReceivedRanges();
+	private int activeWrites;
+	private boolean finished;
+	private long lastActivityTimeInMilliseconds;
+
+	PartialUpload(File temporaryFile, long completeLength, long nowInMilliseconds) throws IOException {
+		this.temporaryFile = temporaryFile;
+		this.randomAccessFile = new RandomAccessFile(temporaryFile, "rw");
+		this.completeLength = completeLength;
+		this.lastActivityTimeInMilliseconds = nowInMilliseconds;
+		try {
+			randomAccessFile.setLength(completeLength);
+		} catch (IOException e) {
+			randomAccessFile.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * @return true if a part can be written; false if the upload has been already finished
+	 */
+	synchronized boolean beginWrite(long nowInMilliseconds) {
+		if (finished)
+			return false;
+		activeWrites++;
+		lastActivityTimeInMilliseconds = nowInMilliseconds;
+		return true;
+	}
+
+	/**
+	 * @return true if the upload has been just completed by this part and needs to be published by the caller
+	 */
+	synchronized boolean finishWrite(Optional<ByteRange> optionalWrittenRange, long nowInMilliseconds) {
+		activeWrites--;
+		lastActivityTimeInMilliseconds = nowInMilliseconds;
+		if (optionalWrittenRange.isPresent())
+			receivedRanges.add(optionalWrittenRange.get());
+		if (finished || activeWrites > 0 || !receivedRanges.isComplete(completeLength))
+			return false;
+		finished = true;
+		return true;
+	}
+
+	/**
+	 * @return true if the upload has been idle for too long and has been just finished by this call, so the caller
+	 * needs to discard it
+	 */
+	synchronized boolean abandonIfIdle(long nowInMilliseconds, long idleTimeoutInMilliseconds) {
+		if (finished || activeWrites > 0 || nowInMilliseconds - lastActivityTimeInMilliseconds < idleTimeoutInMilliseconds)
+			return false;
+		finished = true;
+		return true;
+	}
+
+	synchronized PartialUploadStatus getStatus() {
+		return new PartialUploadStatus(receivedRanges.getRanges(), finished && receivedRanges.isComplete(completeLength));
+	}
+
+	FileChannel getChannel() {
+		return randomAccessFile.getChannel();
+	}
+
+	File getTemporaryFile() {
+		return temporaryFile;
+	}
+
+	long getCompleteLength() {
+		return completeLength;
+	}
+
+	void close() throws IOException {
+		randomAccessFile.close();
+	}
+}
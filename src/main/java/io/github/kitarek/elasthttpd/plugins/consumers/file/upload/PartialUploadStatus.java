@@ -0,0 +1,77 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Immutable state of upload received in parts
+ */
+public class PartialUploadStatus {
+
+	private final List<ByteRange> receivedRanges;
+	private final boolean completed;
+
+	/**
+	 * Create state
+	 *
+	 * @param receivedRanges not null disjoint received ranges sorted by position
+	 * @param completed true if the whole file has been received and published
+	 */
+	public PartialUploadStatus(List<ByteRange> receivedRanges, boolean completed) {
+		this.receivedRanges = Collections.unmodifiableList(
+				new ArrayList<ByteRange>(notNull(receivedRanges, "Received ranges cannot be null")));
+		this.completed = completed;
+	}
+
+	/**
+	 * @return not null status of upload that has not received any part yet
+	 */
+	public static PartialUploadStatus notStarted() {
+		return new PartialUploadStatus(Collections.<ByteRange>emptyList(), false);
+	}
+
+	public List<ByteRange> getReceivedRanges() {
+		return receivedRanges;
+	}
+
+	public boolean isCompleted() {
+		return completed;
+	}
+
+	/**
+	 * @return not null value of Range header describing received ranges (i.e. 'bytes=0-499,1000-1233'); empty
+	 * when nothing has been received
+	 */
+	public String toRangeHeaderValue() {
+		if (receivedRanges.isEmpty())
+			return "";
+		final StringBuilder builder = new StringBuilder("bytes=");
+		for (int i = 0; i < receivedRanges.size(); i++) {
+			if (i > 0)
+				builder.append(',');
+			builder.append(receivedRanges.get(i));
+		}
+		return builder.toString();
+	}
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Uploads of files received in parts (PUT requests with Content-Range), so an interrupted upload can be resumed
+ * and parts of one file can be uploaded over several connections at once.
+ *
+ * Each part is written at its position into a temporary file shared by all parts of the file and its range is
+ * remembered only when the whole part has been written and it matches digests declared for the part. When all
+ * bytes of the file are received the temporary file is published over the target with
+ * {@link AtomicUploadPublisher}. Uploads that do not receive any part for longer than the idle timeout are discarded
+ * when the next upload is started.
+ */
+public class PartialUploads {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(PartialUploads.class);
+	public static final long DEFAULT_IDLE_TIMEOUT_IN_MILLISECONDS = 60 * 60 * 1000;
+
+	private final ConcurrentMap<String, PartialUpload> uploads = new ConcurrentHashMap<String, PartialUpload>();
+	private final FileUploadWriter fileUploadWriter;
+	private final AtomicUploadPublisher uploadPublisher;
+	private final long idleTimeoutInMilliseconds;
+
+	/**
+	 * Create uploads with default idle timeout
+	 *
+	 * @param fileUploadWriter not null writer of parts
+	 * @param uploadPublisher not null publisher of complete files
+	 */
+	public PartialUploads(FileUploadWriter fileUploadWriter, AtomicUploadPublisher uploadPublisher) {
+		this(fileUploadWriter, uploadPublisher, DEFAULT_IDLE_TIMEOUT_IN_MILLISECONDS);
+	}
+
+	/**
+	 * Create uploads
+	 *
+	 * @param fileUploadWriter not null writer of parts
+	 * @param uploadPublisher not null publisher of complete files
+	 * @param idleTimeoutInMilliseconds positive time after which an upload without new parts is discarded
+	 */
+	public PartialUploads(FileUploadWriter fileUploadWriter, AtomicUploadPublisher uploadPublisher,
+						  long idleTimeoutInMilliseconds) {
+		this.fileUploadWriter = notNull(fileUploadWriter, "File upload writer cannot be null");
+		this.uploadPublisher = notNull(uploadPublisher, "Upload publisher cannot be null");
+		isTrue(idleTimeoutInMilliseconds > 0, "Idle timeout must be positive");
+		this.idleTimeoutInMilliseconds = idleTimeoutInMilliseconds;
+	}
+
+	/**
+	 * Write part of file and publish the file when it is complete
+	 *
+	 * @param target not null file that is uploaded
+	 * @param contentRange not null range of the part with complete length of file
+	 * @param body not null stream with exactly all bytes of the part
+	 * @return not null status of upload after the part is written
+	 * @throws IOException when part cannot be written (i.e. body is shorter) or complete file cannot be published
+	 * @throws IllegalStateException when upload of the file with another complete length is in progress
+	 */
+	public PartialUploadStatus writePart(File target, ContentRange contentRange, InputStream body) throws IOException {
+		return writePart(target, contentRange, body, UploadDigests.none());
+	}
+
+	/**
+	 * Write part of file verified with digests and publish the file when it is complete
+	 *
+	 * @param target not null file that is uploaded
+	 * @param contentRange not null range of the part with complete length of file
+	 * @param body not null stream with exactly all bytes of the part
+	 * @param partDigests not null digests declared for the body of the part
+	 * @return not null status of upload after the part is written
+	 * @throws UploadDigestMismatchException when the part does not match its digests, so it is not received
+	 * @throws IOException when part cannot be written (i.e. body is shorter) or complete file cannot be published
+	 * @throws IllegalStateException when upload of the file with another complete length is in progress
+	 */
+	public PartialUploadStatus writePart(File target, ContentRange contentRange, InputStream body,
+										 UploadDigests partDigests) throws IOException {
+		notNull(target, "Target file cannot be null");
+		notNull(body, "Body cannot be null");
+		notNull(partDigests, "Digests of part cannot be null");
+		isTrue(notNull(contentRange, "Content range cannot be null").getRange().isPresent(),
+				"Content range of part cannot be a query");
+		while (true) {
+			final PartialUpload upload = getOrStartUpload(target, contentRange.getCompleteLength());
+			if (upload.beginWrite(System.currentTimeMillis()))
+				return writePart(target, upload, contentRange.getRange().get(), body, partDigests);
+			uploads.remove(target.getAbsolutePath(), upload);
+		}
+	}
+
+	private PartialUploadStatus writePart(File target, PartialUpload upload, ByteRange range, InputStream body,
+										  UploadDigests partDigests) throws IOException {
+		boolean written = false;
+		try {
+			fileUploadWriter.transferExactly(body, upload.getChannel(), range.getFirstPosition(), range.getLength(),
+					partDigests.getMessageDigests());
+			partDigests.verify();
+			written = true;
+		} finally {
+			if (!written)
+				finishFailedWrite(target, upload);
+		}
+		if (upload.finishWrite(Optional.present(range), System.currentTimeMillis()))
+			publishCompletedUpload(target, upload);
+		return upload.getStatus();
+	}
+
+	private void finishFailedWrite(File target, PartialUpload upload) {
+		if (upload.finishWrite(Optional.<ByteRange>empty(), System.currentTimeMillis())) {
+			try {
+				publishCompletedUpload(target, upload);
+			} catch (IOException e) {
+				LOGGER.error(format("Cannot publish completed upload of file: %s", target.getAbsolutePath()), e);
+			}
+		}
+	}
+
+	private void publishCompletedUpload(File target, PartialUpload upload) throws IOException {
+		uploads.remove(target.getAbsolutePath(), upload);
+		try {
+			upload.close();
+			uploadPublisher.publish(upload.getTemporaryFile(), target);
+		} catch (IOException e) {
+			uploadPublisher.discard(upload.getTemporaryFile());
+			throw e;
+		}
+	}
+
+	/**
+	 * Get status of upload in progress
+	 *
+	 * @param target not null file that is uploaded
+	 * @param completeLength positive length of the whole file
+	 * @return not null status; without any received range when upload of the file is not in progress
+	 * @throws IllegalStateException when upload of the file with another complete length is in progress
+	 */
+	public PartialUploadStatus getStatus(File target, long completeLength) {
+		final PartialUpload upload = uploads.get(notNull(target, "Target file cannot be null").getAbsolutePath());
+		if (upload == null)
+			return PartialUploadStatus.notStarted();
+		verifyCompleteLength(target, upload, completeLength);
+		return upload.getStatus();
+	}
+
+	private PartialUpload getOrStartUpload(File target, long completeLength) throws IOException {
+		final String key = target.getAbsolutePath();
+		PartialUpload upload = uploads.get(key);
+		if (upload == null) {
+			discardIdleUploads();
+			final PartialUpload startedUpload = startUpload(target, completeLength);
+			upload = uploads.putIfAbsent(key, startedUpload);
+			if (upload == null)
+				return startedUpload;
+			discard(startedUpload);
+		}
+		verifyCompleteLength(target, upload, completeLength);
+		return upload;
+	}
+
+	private PartialUpload startUpload(File target, long completeLength) throws IOException {
+		final File temporaryFile = uploadPublisher.createTemporaryFile(target);
+		try {
+			return new PartialUpload(temporaryFile, completeLength, System.currentTimeMillis());
+		} catch (IOException e) {
+			uploadPublisher.discard(temporaryFile);
+			throw e;
+		}
+	}
+
+	private static void verifyCompleteLength(File target, PartialUpload upload, long completeLength) {
+		if (upload.getCompleteLength() != completeLength)
+			throw new IllegalStateException(format("Upload of file '%s' with %d bytes instead of %d is in progress",
+					target.getAbsolutePath(), upload.getCompleteLength(), completeLength));
+	}
+
+	private void discardIdleUploads() {
+		final long now = System.currentTimeMillis();
+		for (Map.Entry<String, PartialUpload> entry : uploads.entrySet())
+			if (entry.getValue().abandonIfIdle(now, idleTimeoutInMilliseconds)) {
+				uploads.remove(entry.getKey(), entry.getValue());
+				LOGGER.info(format("Discarding idle upload of file: %s", entry.getKey()));
+				discard(entry.getValue());
+			}
+	}
+
+	private void discard(PartialUpload upload) {
+		try {
+			upload.close();
+		} catch (IOException e) {
+			LOGGER.warn(format("Cannot close temporary file of upload: %s", upload.getTemporaryFile()), e);
+		}
+		uploadPublisher.discard(upload.getTemporaryFile());
+	}
+
+	/**
+	 * @return number of files which upload is in progress
+	 */
+	public int getNumberOfUploadsInProgress() {
+		return uploads.size();
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Set of received bytes of file kept as sorted disjoint intervals, so the size of the set depends only on the
+ * number of gaps between received parts and not on the number of received parts. Overlapping and adjacent
+ * parts are merged.
+ *
+ * The set is not thread-safe.
+ */
+public class ReceivedRanges {
+
+	private final TreeMap<Long, Long> lastPositionsByFirstPosition = new TreeMap<Long, Long>();
+	private long receivedBytes;
+
+	/**
+	 * Add received part of file
+	 *
+	 * @param range not null range of received bytes
+	 */
+	public void add(ByteRange range) {
+		notNull(range, "Range cannot be null");
+		long firstPosition = range.getFirstPosition();
+		long lastPosition = range.getLastPosition();
+		final Map.Entry<Long, Long> preceding = lastPositionsByFirstPosition.floorEntry(firstPosition);
+		if (preceding != null && preceding.getValue() >= firstPosition - 1) {
+			firstPosition = preceding.getKey();
+			lastPosition = Math.max(lastPosition, preceding.getValue());
+			removeInterval(preceding);
+		}
+		Map.Entry<Long, Long> following;
+		while ((following = lastPositionsByFirstPosition.ceilingEntry(firstPosition)) != null &&
+				following.getKey() <= lastPosition + 1) {
+			lastPosition = Math.max(lastPosition, following.getValue());
+			removeInterval(following);
+		}
+		lastPositionsByFirstPosition.put(firstPosition, lastPosition);
+		receivedBytes += lastPosition - firstPosition + 1;
+	}
+
+	private void removeInterval(Map.Entry<Long, Long> interval) {
+		lastPositionsByFirstPosition.remove(interval.getKey());
+		receivedBytes -= interval.getValue() - interval.getKey() + 1;
+	}
+
+	/**
+	 * @param completeLength length of the whole file
+	 * @return true if all bytes of file have been received
+	 */
+	public boolean isComplete(long completeLength) {
+		return lastPositionsByFirstPosition.size() == 1 && lastPositionsByFirstPosition.firstKey() == 0 &&
+				lastPositionsByFirstPosition.firstEntry().getValue() == completeLength - 1;
+	}
+
+	public long getReceivedBytes() {
+		return receivedBytes;
+	}
+
+	/**
+	 * @return not null list of disjoint received ranges sorted by position
+	 */
+	public List<ByteRange> getRanges() {
+		final List<ByteRange> ranges = new ArrayList<ByteRange>(lastPositionsByFirstPosition.size());
+		for (Map.Entry<Long, Long> interval : lastPositionsByFirstPosition.entrySet())
+			ranges.add(new ByteRange(interval.getKey(), interval.getValue()));
+		return ranges;
+	}
+}
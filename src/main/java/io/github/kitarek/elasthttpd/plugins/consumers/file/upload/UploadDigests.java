@@ -0,0 +1,199 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload;
+
+import io.github.kitarek.elasthttpd.commons.Base64Codec;
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStore;
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigests;
+import org.apache.http.Header;
+import org.apache.http.HttpRequest;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.CONTENT_MD5;
+
+/**
+ * Digests of the body of upload computed while the body is written (see {@link FileUploadWriter}) and compared
+ * with digests declared by the client in Content-MD5 header and Digest header (RFC 3230) with MD5, SHA, SHA-256
+ * or SHA-512 algorithm. Digests with other algorithms are ignored. Optionally SHA-256 digest of the body is
+ * computed even when the client has not declared it, so it can be stored with the uploaded file.
+ *
+ * Each instance describes exactly one body and it is not thread-safe.
+ */
+public class UploadDigests {
+
+	public static final String DIGEST = "Digest";
+	public static final String CONTENT_DIGEST_ALGORITHM = ContentDigestStore.DIGEST_ALGORITHM;
+	private static final String ALGORITHM_SEPARATOR = "=";
+	private static final String DIGESTS_SEPARATOR = ",";
+	private static final Map<String, String> ALGORITHMS_OF_DIGEST_HEADER = new HashMap<String, String>();
+
+	static {
+		ALGORITHMS_OF_DIGEST_HEADER.put("md5", "MD5");
+		ALGORITHMS_OF_DIGEST_HEADER.put("sha", "SHA-1");
+		ALGORITHMS_OF_DIGEST_HEADER.put("sha-256", "SHA-256");
+		ALGORITHMS_OF_DIGEST_HEADER.put("sha-512", "SHA-512");
+	}
+
+	private final List<ExpectedDigest> expectedDigests;
+	private final Map<String, MessageDigest> messageDigests = new LinkedHashMap<String, MessageDigest>();
+	private final boolean contentDigestComputed;
+	private Map<String, byte[]> computedDigests;
+
+	private UploadDigests(List<ExpectedDigest> expectedDigests, boolean contentDigestComputed) {
+		this.expectedDigests = expectedDigests;
+		this.contentDigestComputed = contentDigestComputed;
+		for (ExpectedDigest expectedDigest : expectedDigests)
+			addMessageDigest(expectedDigest.algorithm);
+		if (contentDigestComputed)
+			addMessageDigest(CONTENT_DIGEST_ALGORITHM);
+	}
+
+	/**
+	 * @return not null digests that do not verify nor compute anything
+	 */
+	public static UploadDigests none() {
+		return new UploadDigests(Collections.<ExpectedDigest>emptyList(), false);
+	}
+
+	/**
+	 * Create digests of the body of request declared in its headers
+	 *
+	 * @param request not null request with body
+	 * @param contentDigestComputed true when SHA-256 digest of the body needs to be computed in any case
+	 * @return not null digests that verify all declared digests with supported algorithms
+	 * @throws IllegalArgumentException when any digest with supported algorithm is malformed
+	 */
+	public static UploadDigests expectedBy(HttpRequest request, boolean contentDigestComputed) {
+		notNull(request, "Request cannot be null");
+		final List<ExpectedDigest> expectedDigests = new ArrayList<ExpectedDigest>();
+		final Header contentMd5Header = request.getFirstHeader(CONTENT_MD5);
+		if (contentMd5Header != null)
+			expectedDigests.add(parseExpectedDigest("MD5", contentMd5Header.getValue().trim()));
+		final Header digestHeader = request.getFirstHeader(DIGEST);
+		if (digestHeader != null)
+			for (String element : digestHeader.getValue().split(DIGESTS_SEPARATOR))
+				addExpectedDigestOfDigestHeader(expectedDigests, element.trim());
+		return new UploadDigests(expectedDigests, contentDigestComputed);
+	}
+
+	private static void addExpectedDigestOfDigestHeader(List<ExpectedDigest> expectedDigests, String element) {
+		final int separatorIndex = element.indexOf(ALGORITHM_SEPARATOR);
+		if (separatorIndex <= 0)
+			throw new IllegalArgumentException(format("Invalid element of Digest header: %s", element));
+		final String algorithm = ALGORITHMS_OF_DIGEST_HEADER.get(
+				element.substring(0, separatorIndex).trim().toLowerCase(Locale.ENGLISH));
+		if (algorithm != null)
+			expectedDigests.add(parseExpectedDigest(algorithm, element.substring(separatorIndex + 1).trim()));
+	}
+
+	private static ExpectedDigest parseExpectedDigest(String algorithm, String encodedValue) {
+		final Optional<byte[]> optionalValue = Base64Codec.decode(encodedValue);
+		if (optionalValue.isNotPresent() ||
+				optionalValue.get().length != ContentDigests.createMessageDigest(algorithm).getDigestLength())
+			throw new IllegalArgumentException(format("Invalid %s digest: %s", algorithm, encodedValue));
+		return new ExpectedDigest(algorithm, optionalValue.get());
+	}
+
+	private void addMessageDigest(String algorithm) {
+		if (!messageDigests.containsKey(algorithm))
+			messageDigests.put(algorithm, ContentDigests.createMessageDigest(algorithm));
+	}
+
+	/**
+	 * @return not null list of digests that need to be updated with every byte of the body
+	 */
+	public List<MessageDigest> getMessageDigests() {
+		return Collections.unmodifiableList(new ArrayList<MessageDigest>(messageDigests.values()));
+	}
+
+	/**
+	 * Finish digests of the body and compare them with the declared ones. Call it only when the whole body has been
+	 * passed to digests.
+	 *
+	 * @throws UploadDigestMismatchException when any of declared digests is different
+	 */
+	public void verify() throws UploadDigestMismatchException {
+		final Map<String, byte[]> digests = computeDigests();
+		for (ExpectedDigest expectedDigest : expectedDigests)
+			if (!MessageDigest.isEqual(expectedDigest.value, digests.get(expectedDigest.algorithm)))
+				throw new UploadDigestMismatchException(format("%s digest of the body is %s instead of declared %s",
+						expectedDigest.algorithm, Base64Codec.encode(digests.get(expectedDigest.algorithm)),
+						Base64Codec.encode(expectedDigest.value)));
+	}
+
+	/**
+	 * Get SHA-256 digest of the body. Call it only when the whole body has been passed to digests.
+	 *
+	 * @return optional digest; not present when it was not requested nor declared
+	 */
+	public Optional<byte[]> getContentDigest() {
+		return Optional.optional(computeDigests().get(CONTENT_DIGEST_ALGORITHM));
+	}
+
+	/**
+	 * Get SHA-256 digest of the body declared by the client, which is known before the body is read
+	 *
+	 * @return optional digest; not present when the client has not declared it
+	 */
+	public Optional<byte[]> getExpectedContentDigest() {
+		for (ExpectedDigest expectedDigest : expectedDigests)
+			if (expectedDigest.algorithm.equals(CONTENT_DIGEST_ALGORITHM))
+				return Optional.present(expectedDigest.value.clone());
+		return Optional.empty();
+	}
+
+	private Map<String, byte[]> computeDigests() {
+		if (computedDigests == null) {
+			computedDigests = new HashMap<String, byte[]>();
+			for (Map.Entry<String, MessageDigest> entry : messageDigests.entrySet())
+				computedDigests.put(entry.getKey(), entry.getValue().digest());
+		}
+		return computedDigests;
+	}
+
+	/**
+	 * @return true when the client has declared any digest with supported algorithm
+	 */
+	public boolean isVerified() {
+		return !expectedDigests.isEmpty();
+	}
+
+	public boolean isContentDigestComputed() {
+		return contentDigestComputed;
+	}
+
+	private static class ExpectedDigest {
+		private final String algorithm;
+		private final byte[] value;
+
+		private ExpectedDigest(String algorithm, byte[] value) {
+			this.algorithm = algorithm;
+			this.value = value;
+		}
+	}
+}
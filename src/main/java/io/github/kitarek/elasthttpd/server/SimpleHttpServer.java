@@ -21,20 +21,38 @@ package io.github.kitarek.elasthttpd.server;
 import io.github.kitarek.elasthttpd.server.executors.ListenerExecutor;
 import io.github.kitarek.elasthttpd.server.listeners.HttpConnectionListener;
 import io.github.kitarek.elasthttpd.server.networking.ListeningSocket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import static org.apache.commons.lang3.Validate.notNull;
 
 public class SimpleHttpServer implements HttpServer {
 
+	public static final Logger LOGGER = LoggerFactory.getLogger(SimpleHttpServer.class);
 	public static final int ONE_SECOND_IN_MILISECONDS = 1000;
 	private final ListenerExecutor executor;
 	private final HttpConnectionListener listener;
 	private final ListeningSocket socket;
+	private final List<Closeable> resourcesClosedOnStop;
 
 	public SimpleHttpServer(ListenerExecutor executor, HttpConnectionListener listener, ListeningSocket socket) {
+		this(executor, listener, socket, Collections.<Closeable>emptyList());
+	}
+
+	/**
+	 * Create server that closes the resources (i.e. request consumer with its background threads) when it is stopped
+	 */
+	public SimpleHttpServer(ListenerExecutor executor, HttpConnectionListener listener, ListeningSocket socket,
+							List<Closeable> resourcesClosedOnStop) {
 		this.executor = notNull(executor, "Listener executor must be not null");;
 		this.listener = notNull(listener, "HTTP connection listener must be not null");
 		this.socket = notNull(socket, "Listening socket must be not null");
+		this.resourcesClosedOnStop = notNull(resourcesClosedOnStop, "Resources closed on stop must be not null");
 	}
 
 	public void start() {
@@ -45,6 +63,16 @@ public class SimpleHttpServer implements HttpServer {
 		listener.stopListening();
 		executor.terminate();
 		socket.stopListening();
+		closeResources();
+	}
+
+	private void closeResources() {
+		for (Closeable resource : resourcesClosedOnStop)
+			try {
+				resource.close();
+			} catch (IOException e) {
+				LOGGER.warn("Cannot close resource of stopped server", e);
+			}
 	}
 
 	public void waitUntilStopped() {
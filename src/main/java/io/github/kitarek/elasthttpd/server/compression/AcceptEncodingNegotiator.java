@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.server.compression;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty;
+import static io.github.kitarek.elasthttpd.commons.Optional.present;
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.VARY;
+
+/**
+ * Selects the content coding for response based on Accept-Encoding request header(s) and their quality values.
+ *
+ * When client does not send Accept-Encoding header at all no coding is selected - even if the specification allows
+ * any coding in such case the uncompressed response is the safest choice for simple clients.
+ */
+public class AcceptEncodingNegotiator {
+
+	public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+	public static final String ANY_CODING_TOKEN = "*";
+	private static final String ANY_HEADER = "*";
+	private static final String QUALITY_PARAMETER = "q";
+	private static final float NOT_ACCEPTABLE_QUALITY = 0f;
+	private static final float DEFAULT_QUALITY = 1f;
+
+	/**
+	 * Select the best content coding from the ones offered by server.
+	 *
+	 * @param request not null HTTP request with optional Accept-Encoding headers
+	 * @param offeredCodings not null codings ordered by server preference. When client assigns the same quality
+	 *                       to more than one coding the one offered earlier wins.
+	 * @return optional coding; not present when response should not be encoded at all
+	 */
+	public Optional<ContentCoding> negotiate(HttpRequest request, Collection<ContentCoding> offeredCodings) {
+		notNull(request, "HTTP request cannot be null");
+		notNull(offeredCodings, "Offered content codings cannot be null");
+		final Header[] headers = request.getHeaders(ACCEPT_ENCODING_HEADER);
+		if (headers.length == 0)
+			return empty();
+		return selectBestCoding(parseQualities(headers), offeredCodings);
+	}
+
+	/**
+	 * Check if client explicitly accepts the specified coding.
+	 *
+	 * @param request not null HTTP request with optional Accept-Encoding headers
+	 * @param coding not null coding to check
+	 * @return true only if quality for coding is greater than zero
+	 */
+	public boolean accepts(HttpRequest request, ContentCoding coding) {
+		notNull(coding, "Content coding cannot be null");
+		final Header[] headers = notNull(request, "HTTP request cannot be null").getHeaders(ACCEPT_ENCODING_HEADER);
+		return headers.length > 0 && qualityOf(coding, parseQualities(headers)) > NOT_ACCEPTABLE_QUALITY;
+	}
+
+	/**
+	 * Mark response as negotiated by adding 'Vary: Accept-Encoding' unless the response varies already by that header
+	 * (or by everything). Use it for every response that could have been sent using different content coding.
+	 *
+	 * @param response not null
+	 */
+	public void addVaryAcceptEncodingHeader(HttpResponse response) {
+		notNull(response, "HTTP response cannot be null");
+		for (Header header : response.getHeaders(VARY))
+			for (HeaderElement element : header.getElements())
+				if (ACCEPT_ENCODING_HEADER.equalsIgnoreCase(element.getName()) || ANY_HEADER.equals(element.getName()))
+					return;
+		response.addHeader(VARY, ACCEPT_ENCODING_HEADER);
+	}
+
+	private Optional<ContentCoding> selectBestCoding(Map<String, Float> qualities,
+													 Collection<ContentCoding> offeredCodings) {
+		ContentCoding bestCoding = null;
+		float bestQuality = NOT_ACCEPTABLE_QUALITY;
+		for (ContentCoding coding : offeredCodings) {
+			final float quality = qualityOf(coding, qualities);
+			if (quality > bestQuality) {
+				bestCoding = coding;
+				bestQuality = quality;
+			}
+		}
+		return bestCoding == null ? Optional.<ContentCoding>empty() : present(bestCoding);
+	}
+
+	private float qualityOf(ContentCoding coding, Map<String, Float> qualities) {
+		final Float explicitQuality = qualities.get(coding.getToken());
+		if (explicitQuality != null)
+			return explicitQuality;
+		final Float anyQuality = qualities.get(ANY_CODING_TOKEN);
+		return anyQuality != null ? anyQuality : NOT_ACCEPTABLE_QUALITY;
+	}
+
+	private Map<String, Float> parseQualities(Header[] headers) {
+		final Map<String, Float> qualities = new HashMap<String, Float>();
+		for (Header header : headers)
+			for (HeaderElement element : header.getElements())
+				putQualityOfElement(qualities, element);
+		return qualities;
+	}
+
+	private void putQualityOfElement(Map<String, Float> qualities, HeaderElement element) {
+		final String token = element.getName().trim().toLowerCase(Locale.ENGLISH);
+		final Optional<ContentCoding> optionalCoding = ContentCoding.fromToken(token);
+		final String normalizedToken = optionalCoding.isPresent() ? optionalCoding.get().getToken() : token;
+		final float quality = parseQuality(element.getParameterByName(QUALITY_PARAMETER));
+		final Float previousQuality = qualities.get(normalizedToken);
+		if (previousQuality == null || previousQuality < quality)
+			qualities.put(normalizedToken, quality);
+	}
+
+	private float parseQuality(NameValuePair qualityParameter) {
+		if (qualityParameter == null || qualityParameter.getValue() == null)
+			return DEFAULT_QUALITY;
+		try {
+			return Float.parseFloat(qualityParameter.getValue().trim());
+		} catch (NumberFormatException e) {
+			return NOT_ACCEPTABLE_QUALITY;
+		}
+	}
+}
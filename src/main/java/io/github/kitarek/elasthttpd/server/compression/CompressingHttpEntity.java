@@ -0,0 +1,173 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.server.compression;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.util.EntityUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.CONTENT_ENCODING;
+
+/**
+ * HTTP entity that compresses the wrapped entity on the fly while it is written to the connection. Compressed length
+ * is not known upfront so the entity is always sent using chunked transfer coding.
+ */
+public class CompressingHttpEntity extends HttpEntityWrapper {
+
+	private static final int UNKNOWN_CONTENT_LENGTH = -1;
+	private final ContentCoding coding;
+	private final int compressionLevel;
+	private final int chunkSizeInBytes;
+
+	/**
+	 * Create entity with the following parameters
+	 *
+	 * @param wrappedEntity not null entity with original (not encoded) content
+	 * @param coding not null coding used to encode content
+	 * @param compressionLevel from 0 to 9 or -1 for default
+	 * @param chunkSizeInBytes size of compressor buffer that defines how big compressed chunks are written
+	 */
+	public CompressingHttpEntity(HttpEntity wrappedEntity, ContentCoding coding, int compressionLevel,
+								 int chunkSizeInBytes) {
+		super(notNull(wrappedEntity, "Wrapped entity cannot be null"));
+		this.coding = notNull(coding, "Content coding cannot be null");
+		this.compressionLevel = compressionLevel;
+		this.chunkSizeInBytes = chunkSizeInBytes;
+	}
+
+	/**
+	 * Compress the whole content of entity into memory
+	 *
+	 * @param entity not null entity with original content
+	 * @param coding not null coding used to encode content
+	 * @param compressionLevel from 0 to 9 or -1 for default
+	 * @param chunkSizeInBytes size of compressor buffer
+	 * @return encoded content
+	 * @throws IOException when entity content cannot be read
+	 */
+	public static byte[] compressIntoByteArray(HttpEntity entity, ContentCoding coding, int compressionLevel,
+											   int chunkSizeInBytes) throws IOException {
+		final ByteArrayOutputStream compressedContent = new ByteArrayOutputStream(chunkSizeInBytes);
+		new CompressingHttpEntity(entity, coding, compressionLevel, chunkSizeInBytes).writeTo(compressedContent);
+		return compressedContent.toByteArray();
+	}
+
+	@Override
+	public Header getContentEncoding() {
+		return new BasicHeader(CONTENT_ENCODING, coding.getToken());
+	}
+
+	@Override
+	public long getContentLength() {
+		return UNKNOWN_CONTENT_LENGTH;
+	}
+
+	@Override
+	public boolean isChunked() {
+		return true;
+	}
+
+	/**
+	 * Content is compressed on the first read only, so closing content that was never read (i.e. of response to HEAD
+	 * request) releases the wrapped entity without compressing it.
+	 */
+	@Override
+	public InputStream getContent() throws IOException {
+		return new LazilyCompressedInputStream();
+	}
+
+	@Override
+	public void writeTo(OutputStream outstream) throws IOException {
+		notNull(outstream, "Output stream cannot be null");
+		final DeflaterOutputStream encodingStream = coding.createEncodingStream(
+				new NotClosingOutputStream(outstream), compressionLevel, chunkSizeInBytes);
+		try {
+			wrappedEntity.writeTo(encodingStream);
+			encodingStream.finish();
+		} finally {
+			encodingStream.close();
+		}
+	}
+
+	/**
+	 * Compresses the wrapped entity into memory when content is read for the first time
+	 */
+	private class LazilyCompressedInputStream extends InputStream {
+		private InputStream compressedContent;
+
+		@Override
+		public int read() throws IOException {
+			return getCompressedContent().read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			return getCompressedContent().read(b, off, len);
+		}
+
+		@Override
+		public int available() throws IOException {
+			return compressedContent == null ? 0 : compressedContent.available();
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (compressedContent == null)
+				EntityUtils.consume(wrappedEntity);
+			else
+				compressedContent.close();
+		}
+
+		private InputStream getCompressedContent() throws IOException {
+			if (compressedContent == null)
+				compressedContent = new ByteArrayInputStream(compressIntoByteArray(wrappedEntity, coding,
+						compressionLevel, chunkSizeInBytes));
+			return compressedContent;
+		}
+	}
+
+	/**
+	 * Protects the connection stream from being closed when compressor resources are released
+	 */
+	private static class NotClosingOutputStream extends FilterOutputStream {
+		private NotClosingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+		}
+
+		@Override
+		public void close() throws IOException {
+			flush();
+		}
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.server.compression;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.server.consumers.HttpRequestConsumer;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ByteArrayEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.apache.http.HttpHeaders.ACCEPT_RANGES;
+import static org.apache.http.HttpHeaders.CACHE_CONTROL;
+import static org.apache.http.HttpHeaders.CONTENT_ENCODING;
+import static org.apache.http.HttpHeaders.CONTENT_MD5;
+import static org.apache.http.HttpHeaders.ETAG;
+import static org.apache.http.HttpStatus.SC_INTERNAL_SERVER_ERROR;
+import static org.apache.http.HttpStatus.SC_OK;
+
+/**
+ * Decorates any request consumer (custom one or built by plugin) and compresses its response entity when:
+ * <ul>
+ *     <li>response is 200 OK with an entity that is not encoded yet and allows transformations,</li>
+ *     <li>content type of entity is on the allow-list and its length is not smaller than configured minimum,</li>
+ *     <li>client accepts one of the offered codings.</li>
+ * </ul>
+ * For every response that could be compressed 'Vary: Accept-Encoding' is added so caches keep variants apart.
+ * A compressed response gets the entity tag of its variant (the coding is appended to the opaque tag, as for
+ * encoded variants of files), loses Accept-Ranges (ranges would address the original bytes) and loses digests
+ * of the original content.
+ *
+ * Entities of known length that fit into a single chunk are compressed upfront and sent with Content-Length.
+ * All other entities, and entities of responses to HEAD requests (which are never sent nor read), are compressed
+ * while sending using chunked transfer coding.
+ */
+public class CompressingHttpRequestConsumer implements HttpRequestConsumer {
+
+	public static final Logger LOGGER = LoggerFactory.getLogger(CompressingHttpRequestConsumer.class);
+	public static final String NO_TRANSFORM_DIRECTIVE = "no-transform";
+	public static final String DIGEST = "Digest";
+	private static final String VARIANT_SEPARATOR = "-";
+	private static final String QUOTE = "\"";
+
+	private final HttpRequestConsumer decoratedConsumer;
+	private final CompressionConfiguration configuration;
+	private final AcceptEncodingNegotiator negotiator;
+
+	public CompressingHttpRequestConsumer(HttpRequestConsumer decoratedConsumer,
+										  CompressionConfiguration configuration,
+										  AcceptEncodingNegotiator negotiator) {
+		this.decoratedConsumer = notNull(decoratedConsumer, "Decorated HTTP request consumer cannot be null");
+		this.configuration = notNull(configuration, "Compression configuration cannot be null");
+		this.negotiator = notNull(negotiator, "Accept-Encoding negotiator cannot be null");
+	}
+
+	public void consumeRequest(HttpRequest request, HttpResponse response) {
+		decoratedConsumer.consumeRequest(request, response);
+		if (isResponseEligibleForCompression(response)) {
+			negotiator.addVaryAcceptEncodingHeader(response);
+			final Optional<ContentCoding> optionalCoding = negotiator.negotiate(request,
+					configuration.getOfferedCodings());
+			if (optionalCoding.isPresent())
+				compressResponseEntity(request, response, optionalCoding.get());
+		}
+	}
+
+	private boolean isResponseEligibleForCompression(HttpResponse response) {
+		final HttpEntity entity = response.getEntity();
+		return entity != null &&
+				response.getStatusLine().getStatusCode() == SC_OK &&
+				entity.getContentEncoding() == null &&
+				!response.containsHeader(CONTENT_ENCODING) &&
+				!isTransformationForbidden(response) &&
+				entity.getContentType() != null &&
+				configuration.isCompressibleContentType(entity.getContentType().getValue()) &&
+				configuration.isCompressibleContentLength(entity.getContentLength());
+	}
+
+	private boolean isTransformationForbidden(HttpResponse response) {
+		for (Header header : response.getHeaders(CACHE_CONTROL))
+			for (HeaderElement element : header.getElements())
+				if (NO_TRANSFORM_DIRECTIVE.equalsIgnoreCase(element.getName()))
+					return true;
+		return false;
+	}
+
+	private void compressResponseEntity(HttpRequest request, HttpResponse response, ContentCoding coding) {
+		final HttpEntity entity = response.getEntity();
+		describeCompressedVariant(response, coding);
+		if (fitsIntoSingleChunk(entity) && !isHeadRequest(request))
+			compressResponseEntityUpfront(response, entity, coding);
+		else
+			response.setEntity(new CompressingHttpEntity(entity, coding, configuration.getCompressionLevel(),
+					configuration.getChunkSizeInBytes()));
+	}
+
+	private void describeCompressedVariant(HttpResponse response, ContentCoding coding) {
+		response.removeHeaders(ACCEPT_RANGES);
+		response.removeHeaders(CONTENT_MD5);
+		response.removeHeaders(DIGEST);
+		final Header entityTagHeader = response.getFirstHeader(ETAG);
+		if (entityTagHeader == null)
+			return;
+		final String entityTag = entityTagHeader.getValue().trim();
+		if (entityTag.length() > 1 && entityTag.endsWith(QUOTE))
+			response.setHeader(ETAG, entityTag.substring(0, entityTag.length() - 1) + VARIANT_SEPARATOR +
+					coding.getToken() + QUOTE);
+		else
+			response.removeHeaders(ETAG);
+	}
+
+	private boolean isHeadRequest(HttpRequest request) {
+		return "HEAD".equalsIgnoreCase(request.getRequestLine().getMethod());
+	}
+
+	private boolean fitsIntoSingleChunk(HttpEntity entity) {
+		return entity.getContentLength() >= 0 && entity.getContentLength() <= configuration.getChunkSizeInBytes();
+	}
+
+	private void compressResponseEntityUpfront(HttpResponse response, HttpEntity entity, ContentCoding coding) {
+		try {
+			final ByteArrayEntity compressedEntity = new ByteArrayEntity(CompressingHttpEntity.compressIntoByteArray(
+					entity, coding, configuration.getCompressionLevel(), configuration.getChunkSizeInBytes()));
+			compressedEntity.setContentType(entity.getContentType());
+			compressedEntity.setContentEncoding(coding.getToken());
+			response.setEntity(compressedEntity);
+		} catch (IOException e) {
+			LOGGER.error("Cannot read response entity content to compress it", e);
+			response.setStatusCode(SC_INTERNAL_SERVER_ERROR);
+			response.setReasonPhrase("INTERNAL SERVER ERROR");
+			response.setEntity(null);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.server.compression;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import static java.util.Collections.unmodifiableList;
+import static java.util.Collections.unmodifiableSet;
+import static org.apache.commons.lang3.Validate.inclusiveBetween;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Immutable and validated settings of response compression. Use {@link CompressionConfigurationBuilder} to create it.
+ */
+public class CompressionConfiguration {
+
+	public static final String MIME_TYPE_WILDCARD_SUFFIX = "/*";
+	private static final char MIME_TYPE_PARAMETERS_SEPARATOR = ';';
+	private static final char MIME_TYPE_SUBTYPE_SEPARATOR = '/';
+
+	private final Set<String> compressibleMimeTypes;
+	private final Set<String> compressibleMimeTypeFamilies;
+	private final long minimumSizeInBytes;
+	private final int chunkSizeInBytes;
+	private final int compressionLevel;
+	private final List<ContentCoding> offeredCodings;
+
+	CompressionConfiguration(Collection<String> compressibleMimeTypes, long minimumSizeInBytes, int chunkSizeInBytes,
+							 int compressionLevel, Collection<ContentCoding> offeredCodings) {
+		noNullElements(notNull(compressibleMimeTypes, "Compressible MIME types cannot be null"));
+		isTrue(minimumSizeInBytes >= 0, "Minimum size of compressed entity cannot be negative");
+		inclusiveBetween(1, Integer.MAX_VALUE, chunkSizeInBytes, "Chunk size must be greater than 0");
+		inclusiveBetween(-1, 9, compressionLevel, "Compression level must be a number between -1 and 9");
+		notEmpty(noNullElements(notNull(offeredCodings, "Offered content codings cannot be null")),
+				"At least one content coding needs to be offered");
+		this.minimumSizeInBytes = minimumSizeInBytes;
+		this.chunkSizeInBytes = chunkSizeInBytes;
+		this.compressionLevel = compressionLevel;
+		this.offeredCodings = unmodifiableList(new ArrayList<ContentCoding>(offeredCodings));
+		final Set<String> mimeTypes = new HashSet<String>();
+		final Set<String> mimeTypeFamilies = new HashSet<String>();
+		for (String mimeType : compressibleMimeTypes)
+			addMimeType(mimeType.trim().toLowerCase(Locale.ENGLISH), mimeTypes, mimeTypeFamilies);
+		this.compressibleMimeTypes = unmodifiableSet(mimeTypes);
+		this.compressibleMimeTypeFamilies = unmodifiableSet(mimeTypeFamilies);
+	}
+
+	private static void addMimeType(String mimeType, Set<String> mimeTypes, Set<String> mimeTypeFamilies) {
+		if (mimeType.endsWith(MIME_TYPE_WILDCARD_SUFFIX))
+			mimeTypeFamilies.add(mimeType.substring(0, mimeType.length() - MIME_TYPE_WILDCARD_SUFFIX.length()));
+		else
+			mimeTypes.add(mimeType);
+	}
+
+	/**
+	 * Check if content of a given type can be compressed. Parameters of content type (like charset) are ignored.
+	 *
+	 * @param contentType i.e. value of Content-Type header; null is never compressible
+	 * @return true if content type is on the allow-list (directly or via type family wildcard like text/*)
+	 */
+	public boolean isCompressibleContentType(String contentType) {
+		if (contentType == null)
+			return false;
+		final String mimeType = stripParameters(contentType).trim().toLowerCase(Locale.ENGLISH);
+		final int subtypeSeparatorIndex = mimeType.indexOf(MIME_TYPE_SUBTYPE_SEPARATOR);
+		return compressibleMimeTypes.contains(mimeType) || (subtypeSeparatorIndex > 0 &&
+				compressibleMimeTypeFamilies.contains(mimeType.substring(0, subtypeSeparatorIndex)));
+	}
+
+	/**
+	 * Check if content of a given length is big enough to be compressed.
+	 *
+	 * @param contentLength length in bytes or negative number when length is unknown (it is always big enough)
+	 * @return true if compression is worth trying
+	 */
+	public boolean isCompressibleContentLength(long contentLength) {
+		return contentLength < 0 || contentLength >= minimumSizeInBytes;
+	}
+
+	private static String stripParameters(String contentType) {
+		final int parametersIndex = contentType.indexOf(MIME_TYPE_PARAMETERS_SEPARATOR);
+		return parametersIndex < 0 ? contentType : contentType.substring(0, parametersIndex);
+	}
+
+	public long getMinimumSizeInBytes() {
+		return minimumSizeInBytes;
+	}
+
+	public int getChunkSizeInBytes() {
+		return chunkSizeInBytes;
+	}
+
+	public int getCompressionLevel() {
+		return compressionLevel;
+	}
+
+	/**
+	 * @return not null and not empty list of codings ordered by server preference
+	 */
+	public List<ContentCoding> getOfferedCodings() {
+		return offeredCodings;
+	}
+}
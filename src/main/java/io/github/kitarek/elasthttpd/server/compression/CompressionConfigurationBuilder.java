@@ -0,0 +1,152 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.server.compression;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.Deflater;
+
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.DEFLATE;
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.GZIP;
+import static java.lang.Integer.MAX_VALUE;
+import static java.lang.String.format;
+import static java.util.Arrays.asList;
+import static org.apache.commons.lang3.Validate.inclusiveBetween;
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.noNullElements;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Builds response compression settings that can be passed to
+ * {@link io.github.kitarek.elasthttpd.ElastHttpDBuilder#compressResponses(CompressionConfigurationBuilder)}.
+ */
+public class CompressionConfigurationBuilder {
+
+	public static final long DEFAULT_MINIMUM_SIZE_IN_BYTES = 1024;
+	public static final int DEFAULT_CHUNK_SIZE_IN_BYTES = 8192;
+	public static final String[] DEFAULT_COMPRESSIBLE_MIME_TYPES = { "text/*", "application/javascript",
+			"application/x-javascript", "application/json", "application/xml", "application/xhtml+xml",
+			"application/rss+xml", "application/atom+xml", "image/svg+xml" };
+
+	private final List<String> compressibleMimeTypes = new ArrayList<String>();
+	private final List<ContentCoding> offeredCodings = new ArrayList<ContentCoding>();
+	private long minimumSizeInBytes;
+	private int chunkSizeInBytes;
+	private int compressionLevel;
+
+	private CompressionConfigurationBuilder() {}
+
+	/**
+	 * Create builder preconfigured with defaults: gzip preferred over deflate, default compression level,
+	 * text based MIME types, 1KB minimum size and 8KB chunks.
+	 *
+	 * @return not null builder
+	 */
+	public static CompressionConfigurationBuilder newCompressionConfiguration() {
+		final CompressionConfigurationBuilder builder = new CompressionConfigurationBuilder();
+		builder.setCompressibleMimeTypes(DEFAULT_COMPRESSIBLE_MIME_TYPES);
+		builder.setOfferedCodings(GZIP, DEFLATE);
+		builder.setMinimumSizeInBytes(DEFAULT_MINIMUM_SIZE_IN_BYTES);
+		builder.setChunkSizeInBytes(DEFAULT_CHUNK_SIZE_IN_BYTES);
+		builder.setCompressionLevel(Deflater.DEFAULT_COMPRESSION);
+		return builder;
+	}
+
+	/**
+	 * Replace the allow-list of MIME types which can be compressed. Type family wildcards like 'text/*' are allowed.
+	 *
+	 * @param mimeTypes not null and not empty MIME types
+	 * @return this builder
+	 */
+	public CompressionConfigurationBuilder setCompressibleMimeTypes(String... mimeTypes) {
+		notEmpty(noNullElements(notNull(mimeTypes, "MIME types cannot be null")), "At least one MIME type is needed");
+		compressibleMimeTypes.clear();
+		compressibleMimeTypes.addAll(asList(mimeTypes));
+		return this;
+	}
+
+	/**
+	 * Extend the allow-list of MIME types which can be compressed.
+	 *
+	 * @param mimeType not null MIME type or type family wildcard like 'text/*'
+	 * @return this builder
+	 */
+	public CompressionConfigurationBuilder addCompressibleMimeType(String mimeType) {
+		compressibleMimeTypes.add(notNull(mimeType, "MIME type cannot be null"));
+		return this;
+	}
+
+	/**
+	 * Define codings offered by server ordered by server preference.
+	 *
+	 * @param codings not null and not empty codings
+	 * @return this builder
+	 */
+	public CompressionConfigurationBuilder setOfferedCodings(ContentCoding... codings) {
+		notEmpty(noNullElements(notNull(codings, "Content codings cannot be null")),
+				"At least one content coding is needed");
+		offeredCodings.clear();
+		offeredCodings.addAll(asList(codings));
+		return this;
+	}
+
+	/**
+	 * Define the minimum size of response entity to compress. Smaller entities are sent as they are.
+	 *
+	 * @param minimumSizeInBytes zero or positive number of bytes
+	 * @return this builder
+	 */
+	public CompressionConfigurationBuilder setMinimumSizeInBytes(long minimumSizeInBytes) {
+		isTrue(minimumSizeInBytes >= 0, "Minimum size must be zero or positive number");
+		this.minimumSizeInBytes = minimumSizeInBytes;
+		return this;
+	}
+
+	/**
+	 * Define the size of chunk in which compressed data is produced. Entities of known length not greater than
+	 * that size are compressed upfront and sent with Content-Length, bigger ones are streamed using chunked
+	 * transfer coding.
+	 *
+	 * @param chunkSizeInBytes positive number of bytes
+	 * @return this builder
+	 */
+	public CompressionConfigurationBuilder setChunkSizeInBytes(int chunkSizeInBytes) {
+		inclusiveBetween(1, MAX_VALUE, chunkSizeInBytes,
+				format("Chunk size must be a number between %d and %d", 1, MAX_VALUE));
+		this.chunkSizeInBytes = chunkSizeInBytes;
+		return this;
+	}
+
+	/**
+	 * Define compression level.
+	 *
+	 * @param compressionLevel from 0 (no compression) to 9 (best compression) or -1 for default level
+	 * @return this builder
+	 */
+	public CompressionConfigurationBuilder setCompressionLevel(int compressionLevel) {
+		inclusiveBetween(-1, 9, compressionLevel, "Compression level must be a number between -1 and 9");
+		this.compressionLevel = compressionLevel;
+		return this;
+	}
+
+	public CompressionConfiguration createNow() {
+		return new CompressionConfiguration(compressibleMimeTypes, minimumSizeInBytes, chunkSizeInBytes,
+				compressionLevel, offeredCodings);
+	}
+}
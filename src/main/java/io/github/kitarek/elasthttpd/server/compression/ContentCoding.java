@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.server.compression;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static io.github.kitarek.elasthttpd.commons.Optional.optional;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Content codings (see Content-Encoding and Accept-Encoding HTTP headers) that server is able to produce itself.
+ */
+public enum ContentCoding {
+	GZIP("gzip") {
+		public DeflaterOutputStream createEncodingStream(OutputStream out, int level, int bufferSize)
+				throws IOException {
+			return new LeveledGzipOutputStream(out, level, bufferSize);
+		}
+	},
+	DEFLATE("deflate") {
+		public DeflaterOutputStream createEncodingStream(OutputStream out, int level, int bufferSize)
+				throws IOException {
+			return new EndingDeflaterOutputStream(out, level, bufferSize);
+		}
+	};
+
+	private static Map<String, ContentCoding> tokenMap = new HashMap<String, ContentCoding>();
+
+	static {
+		for (ContentCoding coding : values())
+			tokenMap.put(coding.token, coding);
+		tokenMap.put("x-gzip", GZIP);
+	}
+
+	/**
+	 * Find content coding by its (case insensitive) HTTP token like 'gzip'.
+	 *
+	 * @param token not null HTTP token
+	 * @return optional content coding that is not present for tokens not supported by server
+	 */
+	public static Optional<ContentCoding> fromToken(String token) {
+		final String normalizedToken = notNull(token, "Content coding token cannot be null")
+				.trim().toLowerCase(Locale.ENGLISH);
+		return optional(tokenMap.get(normalizedToken));
+	}
+
+	ContentCoding(String token) {
+		this.token = token;
+	}
+
+	private final String token;
+
+	/**
+	 * @return the token used in Content-Encoding header
+	 */
+	public String getToken() {
+		return token;
+	}
+
+	/**
+	 * Wrap an output stream so everything written to returned stream is encoded with this content coding.
+	 * Closing the returned stream releases native compressor resources and closes the wrapped stream.
+	 *
+	 * @param out not null output stream that will receive encoded bytes
+	 * @param level compression level from 0 to 9 or -1 for the default level
+	 * @param bufferSize size of the internal compressor output buffer
+	 * @return not null encoding stream
+	 * @throws IOException when header of encoded stream cannot be written
+	 */
+	public abstract DeflaterOutputStream createEncodingStream(OutputStream out, int level, int bufferSize)
+			throws IOException;
+
+	private static class LeveledGzipOutputStream extends GZIPOutputStream {
+		private LeveledGzipOutputStream(OutputStream out, int level, int bufferSize) throws IOException {
+			super(out, bufferSize);
+			def.setLevel(level);
+		}
+	}
+
+	private static class EndingDeflaterOutputStream extends DeflaterOutputStream {
+		private EndingDeflaterOutputStream(OutputStream out, int level, int bufferSize) {
+			super(out, new Deflater(level), bufferSize);
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				def.end();
+			}
+		}
+	}
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.server.networking;
+
+import io.github.kitarek.elasthttpd.commons.Optional;
+import io.github.kitarek.elasthttpd.model.HttpMethod;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestFactory;
+import org.apache.http.MethodNotSupportedException;
+import org.apache.http.RequestLine;
+import org.apache.http.message.BasicHttpEntityEnclosingRequest;
+import org.apache.http.message.BasicHttpRequest;
+
+import java.util.Locale;
+
+import static io.github.kitarek.elasthttpd.model.HttpMethodType.ENTITY_ENCODING;
+import static java.lang.String.format;
+import static org.apache.commons.lang3.Validate.notNull;
+
+/**
+ * Creates requests for all methods declared by {@link HttpMethod} (i.e. PATCH that is not known to the default
+ * factory of HTTP core). Requests of methods that encode entities are able to carry a body.
+ */
+public class HttpMethodRequestFactory implements HttpRequestFactory {
+
+	public static final HttpMethodRequestFactory INSTANCE = new HttpMethodRequestFactory();
+
+	public HttpRequest newHttpRequest(RequestLine requestLine) throws MethodNotSupportedException {
+		notNull(requestLine, "Request line cannot be null");
+		return isEntityEncoding(requestLine.getMethod())
+				? new BasicHttpEntityEnclosingRequest(requestLine)
+				: new BasicHttpRequest(requestLine);
+	}
+
+	public HttpRequest newHttpRequest(String method, String uri) throws MethodNotSupportedException {
+		notNull(method, "Method cannot be null");
+		notNull(uri, "URI cannot be null");
+		return isEntityEncoding(method)
+				? new BasicHttpEntityEnclosingRequest(method, uri)
+				: new BasicHttpRequest(method, uri);
+	}
+
+	private boolean isEntityEncoding(String method) throws MethodNotSupportedException {
+		final Optional<HttpMethod> optionalMethod = HttpMethod.fromString(method.toUpperCase(Locale.ROOT));
+		if (optionalMethod.isNotPresent())
+			throw new MethodNotSupportedException(format("%s method not supported", method));
+		return optionalMethod.get().getType() == ENTITY_ENCODING;
+	}
+}
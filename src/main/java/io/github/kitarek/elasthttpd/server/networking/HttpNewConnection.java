@@ -22,6 +22,7 @@ import org.apache.http.HttpConnectionFactory;
 import org.apache.http.HttpServerConnection;
 import org.apache.http.impl.DefaultBHttpServerConnection;
 import org.apache.http.impl.DefaultBHttpServerConnectionFactory;
+import org.apache.http.impl.io.DefaultHttpRequestParserFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,7 +44,8 @@ public class HttpNewConnection implements NewConnection {
 	public HttpNewConnection(Socket clientSocket, SocketConfiguration socketConfiguration) {
 		this.clientSocket = notNull(clientSocket, "Client socket cannot be null");
 		this.socketConfiguration = notNull(socketConfiguration, "Socket configuration cannot be null");
-		connectionFactory = DefaultBHttpServerConnectionFactory.INSTANCE;
+		connectionFactory = new DefaultBHttpServerConnectionFactory(null, null, null,
+				new DefaultHttpRequestParserFactory(null, HttpMethodRequestFactory.INSTANCE), null);
 	}
 
 	public HttpServerConnection acceptAndConfigure() {
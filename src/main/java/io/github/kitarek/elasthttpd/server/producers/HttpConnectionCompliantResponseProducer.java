@@ -25,6 +25,7 @@ import org.apache.http.HttpResponse;
 import org.apache.http.HttpServerConnection;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpProcessor;
+import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -89,10 +90,24 @@ public class HttpConnectionCompliantResponseProducer implements HttpConnectionPr
 		serverConnection.sendResponseHeader(responseToSend);
 		if (canSendResponseBody(responseToSend, optionalhttpRequestedMethod)) {
 				serverConnection.sendResponseEntity(responseToSend);
+		} else {
+			releaseResponseEntity(responseToSend);
 		}
 		serverConnection.flush();
 	}
 
+	/**
+	 * Close content of streaming entity which is not sent (i.e. for HEAD request), so resources like opened files
+	 * are not held until garbage collection.
+	 */
+	private void releaseResponseEntity(HttpResponse responseNotSent) {
+		try {
+			EntityUtils.consume(responseNotSent.getEntity());
+		} catch (IOException e) {
+			logger.warn("Cannot release content of response entity that was not sent", e);
+		}
+	}
+
 	private boolean canSendResponseBody(HttpResponse responseToSend, Optional<HttpMethod> optionalhttpRequestedMethod) {
 		return ((optionalhttpRequestedMethod.isNotPresent() || !isHeadRequestMethod(optionalhttpRequestedMethod)) &&
 					getStatusCode(responseToSend) >= SC_OK &&
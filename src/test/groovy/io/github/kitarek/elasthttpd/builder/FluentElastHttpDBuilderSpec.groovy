@@ -23,6 +23,8 @@ import io.github.kitarek.elasthttpd.server.networking.NetworkConfigurationBuilde
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import static io.github.kitarek.elasthttpd.server.compression.CompressionConfigurationBuilder.newCompressionConfiguration
+
 class FluentElastHttpDBuilderSpec extends Specification {
 
 	def 'FluentElastHttpDBuilder can be created without specyfing any parameters'() {
@@ -188,5 +190,29 @@ class FluentElastHttpDBuilderSpec extends Specification {
 			thrown(NullPointerException)
 	}
 
+	def 'Always can enable response compression with preconfigured CompressionConfigurationBuilder'() {
+		given:
+			def ElastHttpDBuilder builderUnderTest = new FluentElastHttpDBuilder()
+
+		when:
+			def builderInChain = builderUnderTest.compressResponses(newCompressionConfiguration())
+
+		then:
+			builderInChain != null
+			builderInChain == builderUnderTest
+			notThrown()
+	}
+
+	def 'Never can enable response compression with null CompressionConfigurationBuilder'() {
+		given:
+			def ElastHttpDBuilder builderUnderTest = new FluentElastHttpDBuilder()
+
+		when:
+			builderUnderTest.compressResponses(null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
 
 }
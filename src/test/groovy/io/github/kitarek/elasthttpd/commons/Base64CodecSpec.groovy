@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.commons
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static java.nio.charset.StandardCharsets.US_ASCII
+
+class Base64CodecSpec extends Specification {
+
+	@Unroll
+	def 'Always encodes "#text" as "#encoded" and decodes it back'() {
+		expect:
+			Base64Codec.encode(text.getBytes(US_ASCII)) == encoded
+			new String(Base64Codec.decode(encoded).get(), US_ASCII) == text
+
+		where:
+			text      | encoded
+			""        | ""
+			"f"       | "Zg=="
+			"fo"      | "Zm8="
+			"foo"     | "Zm9v"
+			"foob"    | "Zm9vYg=="
+			"fooba"   | "Zm9vYmE="
+			"foobar"  | "Zm9vYmFy"
+	}
+
+	def 'Always encodes and decodes all byte values'() {
+		given:
+			def bytes = (-128..127).collect { (byte) it } as byte[]
+
+		expect:
+			Base64Codec.decode(Base64Codec.encode(bytes)).get() == bytes
+			Base64Codec.encode([-5, -1] as byte[]) == "+/8="
+	}
+
+	@Unroll
+	def 'Never decodes invalid value "#encoded"'() {
+		expect:
+			Base64Codec.decode(encoded).isNotPresent()
+
+		where:
+			encoded << ["Zg", "Zg=", "Zh==", "Zm9=", "Z===", "Zg==Zg==", "Zm9v\n", "Zm 9", "Zm-v", "Zm\u00e9v"]
+	}
+
+	def 'Never cannot encode or decode null'() {
+		when:
+			Base64Codec.encode(null)
+
+		then:
+			thrown(NullPointerException)
+
+		when:
+			Base64Codec.decode(null)
+
+		then:
+			thrown(NullPointerException)
+	}
+}
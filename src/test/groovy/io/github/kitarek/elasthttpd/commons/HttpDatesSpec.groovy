@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static io.github.kitarek.elasthttpd.commons.HttpDates.formatDate
+import static io.github.kitarek.elasthttpd.commons.HttpDates.parseDate
+
+class HttpDatesSpec extends Specification {
+
+	def 'Always formats date using IMF-fixdate format'() {
+		expect:
+			formatDate(784111777000L) == "Sun, 06 Nov 1994 08:49:37 GMT"
+	}
+
+	@Unroll
+	def 'Always parses date given in any format allowed by HTTP: #value'() {
+		expect:
+			parseDate(value).get() == 784111777000L
+
+		where:
+			value << ["Sun, 06 Nov 1994 08:49:37 GMT", "Sunday, 06-Nov-94 08:49:37 GMT", "Sun Nov  6 08:49:37 1994",
+					  " Sun, 06 Nov 1994 08:49:37 GMT "]
+	}
+
+	@Unroll
+	def 'Never parses invalid date: #value'() {
+		expect:
+			parseDate(value).isNotPresent()
+
+		where:
+			value << ["", "yesterday", "Sun, 06 Nov 1994 08:49:37 GMT trailing", "Sun, 32 Nov 1994 08:49:37 GMT"]
+	}
+
+	def 'Never cannot parse null date'() {
+		when:
+			parseDate(null)
+		then:
+			thrown(NullPointerException)
+	}
+}
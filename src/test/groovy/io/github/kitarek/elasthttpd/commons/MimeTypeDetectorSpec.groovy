@@ -108,6 +108,55 @@ class MimeTypeDetectorSpec extends Specification {
 			optionalMimeType.isNotPresent()
 	}
 
+	def 'Always detects mime/type by extension from the given table without accessing the file'() {
+		given:
+			MimeTypeDetector detector = new MimeTypeDetector(MimeTypeTable.emptyTable().withMimeType("txt", "text/x-custom"))
+			def File file = Mock()
+
+		when:
+			Optional<String> optionalMimeType = detector.detectMimeContentType(file)
+
+		then:
+			1 * file.getName() >> "notes.txt"
+			0 * file._
+		and:
+			optionalMimeType.get() == "text/x-custom"
+	}
+
+	def 'Always remembers mime/type probed for file with unknown extension until file changes'() {
+		given:
+			MimeTypeDetector detector = new MimeTypeDetector(MimeTypeTable.emptyTable())
+			def file = File.createTempFile("sniffed", ".unknownextension")
+			file.text = "plain text"
+
+		when:
+			def firstMimeType = detector.detectMimeContentType(file)
+			def secondMimeType = detector.detectMimeContentType(file)
+
+		then:
+			firstMimeType == secondMimeType
+			detector.sniffedMimeTypes.missCount == 1
+			detector.sniffedMimeTypes.hitCount == 1
+
+		when:
+			file.text = "changed plain text"
+			detector.detectMimeContentType(file)
+
+		then:
+			detector.sniffedMimeTypes.missCount == 2
+
+		cleanup:
+			file.delete()
+	}
+
+	def 'Never cannot create detector with null table'() {
+		when:
+			new MimeTypeDetector(null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
 	@Shared
 	private currentExistingProjectDirectory = {
 		Path currentRelativePath = Paths.get("");
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class MimeTypeTableSpec extends Specification {
+
+	@Unroll
+	def 'Always resolves MIME type of #fileName by extension using default table'() {
+		expect:
+			MimeTypeTable.defaultTable().mimeTypeOf(fileName).get() == mimeType
+
+		where:
+			fileName             | mimeType
+			"index.html"         | "text/html"
+			"INDEX.HTM"          | "text/html"
+			"app.min.js"         | "text/javascript"
+			"style.css"          | "text/css"
+			"favicon.ico"        | "image/x-icon"
+			"font.woff2"         | "font/woff2"
+			"test-file.txt"      | "text/plain"
+			"document.pdf"       | "application/pdf"
+			"release.tar.gz"     | "application/gzip"
+			"module.wasm"        | "application/wasm"
+	}
+
+	@Unroll
+	def 'Never resolves MIME type of file name #fileName without known extension'() {
+		expect:
+			MimeTypeTable.defaultTable().mimeTypeOf(fileName).isNotPresent()
+
+		where:
+			fileName << ["README", "archive.", "data.unknownextension", ""]
+	}
+
+	def 'Always creates new table with added MIME type leaving the original table unchanged'() {
+		given:
+			def originalTable = MimeTypeTable.defaultTable()
+
+		when:
+			def extendedTable = originalTable.withMimeType(".YAML", "application/yaml").withMimeType("js", "application/javascript")
+
+		then:
+			extendedTable.mimeTypeOf("config.yaml").get() == "application/yaml"
+			extendedTable.mimeTypeOf("app.js").get() == "application/javascript"
+			originalTable.mimeTypeOf("config.yaml").isNotPresent()
+			originalTable.mimeTypeOf("app.js").get() == "text/javascript"
+			extendedTable.size() == originalTable.size() + 1
+	}
+
+	def 'Always can start with empty table'() {
+		expect:
+			MimeTypeTable.emptyTable().size() == 0
+			MimeTypeTable.emptyTable().withMimeType("x", "application/x").mimeTypeOf("file.x").get() == "application/x"
+	}
+
+	@Unroll
+	def 'Never cannot add invalid extension "#extension" or MIME type "#mimeType"'() {
+		when:
+			MimeTypeTable.emptyTable().withMimeType(extension, mimeType)
+
+		then:
+			thrown(expectedException)
+
+		where:
+			extension | mimeType     | expectedException
+			null      | "text/plain" | NullPointerException
+			"txt"     | null         | NullPointerException
+			"."       | "text/plain" | IllegalArgumentException
+			"txt"     | "plain"      | IllegalArgumentException
+	}
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons
+
+import spock.lang.Specification
+
+class SegmentedLruCacheSpec extends Specification {
+
+	def weigher = new Weigher<String>() {
+		long weigh(String value) {
+			value.length()
+		}
+	}
+
+	def 'Never cannot create cache without positive maximum weight'() {
+		when:
+			new SegmentedLruCache<String, String>(0, weigher)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always returns cached value and counts hits and misses'() {
+		given:
+			def cache = new SegmentedLruCache<String, String>(10, weigher)
+			cache.put("a", "aaa")
+
+		expect:
+			cache.get("a").get() == "aaa"
+			cache.get("a").get() == "aaa"
+			cache.get("b").isNotPresent()
+			cache.hitCount == 2
+			cache.missCount == 1
+			cache.currentWeight == 3
+	}
+
+	def 'Never counts hits and misses of values got without counting until they are recorded'() {
+		given:
+			def cache = new SegmentedLruCache<String, String>(10, weigher)
+			cache.put("a", "aaa")
+
+		when:
+			def value = cache.getWithoutCounting("a")
+			def missingValue = cache.getWithoutCounting("b")
+
+		then:
+			value.get() == "aaa"
+			missingValue.isNotPresent()
+			cache.hitCount == 0
+			cache.missCount == 0
+
+		when:
+			cache.recordMiss()
+
+		then:
+			cache.hitCount == 0
+			cache.missCount == 1
+	}
+
+	def 'Always keeps values requested again when many values are requested only once'() {
+		given:
+			def cache = new SegmentedLruCache<String, String>(10, weigher)
+			cache.put("hot", "hot")
+			cache.get("hot")
+
+		when:
+			["a", "b", "c", "d", "e"].each { cache.put(it, it * 3) }
+
+		then:
+			cache.get("hot").isPresent()
+			cache.currentWeight <= 10
+			cache.evictionCount == 3
+	}
+
+	def 'Always demotes values that do not fit into protected segment instead of evicting them'() {
+		given:
+			def cache = new SegmentedLruCache<String, String>(10, weigher)
+			["a", "b", "c"].each { cache.put(it, it * 3) }
+
+		when:
+			["a", "b", "c"].each { cache.get(it) }
+
+		then:
+			cache.size() == 3
+			cache.currentWeight == 9
+			cache.evictionCount == 0
+	}
+
+	def 'Never caches value heavier than whole cache'() {
+		given:
+			def cache = new SegmentedLruCache<String, String>(3, weigher)
+
+		expect:
+			!cache.put("a", "aaaa")
+			cache.size() == 0
+	}
+
+	def 'Always notifies about removed values and returns snapshot of keys'() {
+		given:
+			def removedValues = []
+			def cache = new SegmentedLruCache<String, String>(10, weigher) {
+				protected void onRemoval(String value) {
+					removedValues << value
+				}
+			}
+			cache.put("a", "aa")
+			cache.put("b", "bb")
+			cache.get("b")
+
+		when:
+			def keys = cache.keys()
+			cache.remove("b")
+			cache.clear()
+
+		then:
+			keys as Set == ["a", "b"] as Set
+			removedValues == ["bb", "aa"]
+			cache.currentWeight == 0
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.commons
+
+import spock.lang.Specification
+
+class StripedLocksSpec extends Specification {
+
+	def 'Never cannot create locks without positive number of stripes'() {
+		when:
+			new StripedLocks(0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always gives the same reentrant lock for the same hash code'() {
+		given:
+			def locks = new StripedLocks(4)
+
+		expect:
+			locks.lockFor("/file.txt".hashCode()).is(locks.lockFor("/file.txt".hashCode()))
+			locks.lockFor(1).is(locks.lockFor(5))
+			!locks.lockFor(1).is(locks.lockFor(2))
+			locks.lockFor(Integer.MIN_VALUE).is(locks.lockFor(0))
+			locks.numberOfStripes == 4
+	}
+
+	def 'Always allows to take the lock again by the thread holding it'() {
+		given:
+			def lock = new StripedLocks(1).lockFor(7)
+
+		when:
+			lock.lock()
+			def lockedAgain = lock.tryLock()
+
+		then:
+			lockedAgain
+
+		cleanup:
+			lock.unlock()
+			lock.unlock()
+	}
+}
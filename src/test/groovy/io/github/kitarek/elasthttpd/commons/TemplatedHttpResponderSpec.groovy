@@ -223,4 +223,160 @@ class TemplatedHttpResponderSpec extends Specification {
 			1 * response.setReasonPhrase("CREATED")
 	}
 
-}
\ No newline at end of file
+
+	def 'Always removes entity and sets status code and reason if NotModified template is used'() {
+		given:
+			def TemplatedHttpResponder responder = new TemplatedHttpResponder()
+			def HttpResponse response = Mock()
+
+		when:
+			responder.respondThatResourceIsNotModified(response)
+
+		then:
+			1 * response.setStatusCode(HttpStatus.SC_NOT_MODIFIED)
+			1 * response.setReasonPhrase("NOT MODIFIED")
+			1 * response.setEntity(null)
+	}
+
+	def 'Set entity to specified message with correct status code and reason if PreconditionFailed template is used'() {
+		given:
+			def TemplatedHttpResponder responder = new TemplatedHttpResponder()
+			def HttpResponse response = Mock()
+			def catchedEntity
+
+		when:
+			responder.respondWithPreconditionFailed(response, "M")
+
+		then:
+			1 * response.setStatusCode(HttpStatus.SC_PRECONDITION_FAILED)
+			1 * response.setReasonPhrase("PRECONDITION FAILED")
+			1 * response.setEntity(_) >> { args ->
+				catchedEntity = args[0]
+			}
+		and:
+			catchedEntity instanceof ByteArrayEntity
+			catchedEntity.content.text == "M"
+	}
+
+	def 'Always sets status code and reason if PartialContent template is used'() {
+		given:
+			def TemplatedHttpResponder responder = new TemplatedHttpResponder()
+			def HttpResponse response = Mock()
+
+		when:
+			responder.respondWithPartialContent(response)
+
+		then:
+			1 * response.setStatusCode(HttpStatus.SC_PARTIAL_CONTENT)
+			1 * response.setReasonPhrase("PARTIAL CONTENT")
+			0 * response.setEntity(_)
+	}
+
+	def 'Set entity to specified message with correct status code and reason if RangeNotSatisfiable template is used'() {
+		given:
+			def TemplatedHttpResponder responder = new TemplatedHttpResponder()
+			def HttpResponse response = Mock()
+			def catchedEntity
+
+		when:
+			responder.respondWithRequestedRangeNotSatisfiable(response, "M")
+
+		then:
+			1 * response.setStatusCode(HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE)
+			1 * response.setReasonPhrase("REQUESTED RANGE NOT SATISFIABLE")
+			1 * response.setEntity(_) >> { args ->
+				catchedEntity = args[0]
+			}
+		and:
+			catchedEntity.content.text == "M"
+	}
+
+	def 'Always uses rendered message as it is if NotFound template is used with rendered message'() {
+		given:
+			def TemplatedHttpResponder responder = new TemplatedHttpResponder()
+			def HttpResponse response = Mock()
+			def renderedMessage = "404".bytes
+			def catchedEntity
+
+		when:
+			responder.respondWithRenderedResourceNotFound(response, renderedMessage)
+
+		then:
+			1 * response.setStatusCode(HttpStatus.SC_NOT_FOUND)
+			1 * response.setReasonPhrase("NOT FOUND")
+			1 * response.setEntity(_) >> { args ->
+				catchedEntity = args[0]
+			}
+		and:
+			catchedEntity.content.bytes == renderedMessage
+			catchedEntity.contentType.value == "text/plain; charset=US-ASCII"
+	}
+
+	def 'Set entity to specified message with correct status code and reason if BadRequest template is used'() {
+		given:
+			def TemplatedHttpResponder responder = new TemplatedHttpResponder()
+			def HttpResponse response = Mock()
+			def catchedEntity
+
+		when:
+			responder.respondWithBadRequest(response, "M")
+
+		then:
+			1 * response.setStatusCode(HttpStatus.SC_BAD_REQUEST)
+			1 * response.setReasonPhrase("BAD REQUEST")
+			1 * response.setEntity(_) >> { args ->
+				catchedEntity = args[0]
+			}
+		and:
+			catchedEntity instanceof ByteArrayEntity
+			catchedEntity.content.text == "M"
+	}
+
+	def 'Set entity to specified message with correct status code and reason if Conflict template is used'() {
+		given:
+			def TemplatedHttpResponder responder = new TemplatedHttpResponder()
+			def HttpResponse response = Mock()
+			def catchedEntity
+
+		when:
+			responder.respondWithConflict(response, "M")
+
+		then:
+			1 * response.setStatusCode(HttpStatus.SC_CONFLICT)
+			1 * response.setReasonPhrase("CONFLICT")
+			1 * response.setEntity(_) >> { args ->
+				catchedEntity = args[0]
+			}
+		and:
+			catchedEntity instanceof ByteArrayEntity
+			catchedEntity.content.text == "M"
+	}
+
+	def 'Set only status code and reason if Accepted template is used'() {
+		given:
+			def TemplatedHttpResponder responder = new TemplatedHttpResponder()
+			def HttpResponse response = Mock()
+
+		when:
+			responder.respondThatRequestIsAccepted(response)
+
+		then:
+			1 * response.setStatusCode(HttpStatus.SC_ACCEPTED)
+			1 * response.setReasonPhrase("ACCEPTED")
+			0 * response.setEntity(_)
+	}
+
+	def 'Set only status code and reason if Patched template is used'() {
+		given:
+			def TemplatedHttpResponder responder = new TemplatedHttpResponder()
+			def HttpResponse response = Mock()
+
+		when:
+			responder.respondWithNoContentAndReasonPatched(response)
+
+		then:
+			1 * response.setStatusCode(HttpStatus.SC_NO_CONTENT)
+			1 * response.setReasonPhrase("PATCHED")
+			0 * response.setEntity(_)
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.commons
+
+import spock.lang.Specification
+
+class WeightedLruCacheSpec extends Specification {
+
+	def weigher = new Weigher<String>() {
+		long weigh(String value) {
+			value.length()
+		}
+	}
+
+	def 'Never cannot create cache without positive maximum weight'() {
+		when:
+			new WeightedLruCache<String, String>(0, weigher)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Never cannot create cache without weigher'() {
+		when:
+			new WeightedLruCache<String, String>(10, null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always returns cached value and counts hits and misses'() {
+		given:
+			def cache = new WeightedLruCache<String, String>(10, weigher)
+			cache.put("a", "aaa")
+
+		expect:
+			cache.get("a").get() == "aaa"
+			cache.get("b").isNotPresent()
+			cache.hitCount == 1
+			cache.missCount == 1
+			cache.currentWeight == 3
+	}
+
+	def 'Always evicts least recently used values when weight is exceeded'() {
+		given:
+			def cache = new WeightedLruCache<String, String>(10, weigher)
+			cache.put("a", "aaaa")
+			cache.put("b", "bbbb")
+			cache.get("a")
+
+		when:
+			cache.put("c", "cccc")
+
+		then:
+			cache.get("b").isNotPresent()
+			cache.get("a").isPresent()
+			cache.get("c").isPresent()
+			cache.currentWeight == 8
+			cache.evictionCount == 1
+	}
+
+	def 'Never caches value heavier than whole cache'() {
+		given:
+			def cache = new WeightedLruCache<String, String>(3, weigher)
+
+		expect:
+			!cache.put("a", "aaaa")
+			cache.size() == 0
+			cache.currentWeight == 0
+	}
+
+	def 'Always accounts weight of replaced and removed values and notifies about removal'() {
+		given:
+			def removedValues = []
+			def cache = new WeightedLruCache<String, String>(10, weigher) {
+				protected void onRemoval(String value) {
+					removedValues << value
+				}
+			}
+			cache.put("a", "aaaa")
+			cache.put("a", "aa")
+
+		when:
+			cache.remove("a")
+
+		then:
+			cache.currentWeight == 0
+			removedValues == ["aaaa", "aa"]
+	}
+
+	def 'Always provides snapshot of entries without changing their recency'() {
+		given:
+			def cache = new WeightedLruCache<String, String>(3, weigher)
+			cache.put("a", "a")
+			cache.put("b", "b")
+
+		when:
+			def entries = cache.entries()
+			cache.put("c", "c")
+			cache.put("d", "d")
+
+		then:
+			entries == [a: "a", b: "b"]
+			cache.keys() == ["b", "c", "d"]
+			cache.hitCount == 0
+	}
+}
@@ -17,14 +17,27 @@
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file
 
+import io.github.kitarek.elasthttpd.commons.MimeTypeTable
+import io.github.kitarek.elasthttpd.plugins.consumers.file.change.FileSystemChangeWatcher
+import io.github.kitarek.elasthttpd.plugins.consumers.file.patch.FilePatchMode
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.InMemoryFileStorage
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.DurabilityMode
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.GroupCommitter
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.file.ClosedWatchServiceException
+import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.Paths
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
 
 import static io.github.kitarek.elasthttpd.plugins.consumers.file.FileServerPluginBuilder.currentDirectory
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlPolicy.maxAge
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlPolicy.noCache
+import static io.github.kitarek.elasthttpd.server.compression.CompressionConfigurationBuilder.newCompressionConfiguration
 
 class FileServerPluginBuilderSpec extends Specification {
 
@@ -150,6 +163,493 @@ class FileServerPluginBuilderSpec extends Specification {
 			thrown(NullPointerException)
 	}
 
+	def 'Always can build consumer serving precompressed sidecar files'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.servePrecompressedFilesWhenAvailable()
+					.build()
+
+		then:
+			consumer != null
+			consumer instanceof HttpFileRequestConsumerDispatcher
+	}
+
+	def 'Always can build consumer caching compressed files together with precompressed sidecar files'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.servePrecompressedFilesWhenAvailable()
+					.cacheCompressedFiles(newCompressionConfiguration(), 1024 * 1024)
+					.build()
+
+		then:
+			consumer != null
+			consumer instanceof HttpFileRequestConsumerDispatcher
+	}
+
+	def 'Never cannot cache compressed files without positive cache size'() {
+		when:
+			FileServerPluginBuilder.fileServer().cacheCompressedFiles(newCompressionConfiguration(), 0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always can build consumer caching hot files in memory'() {
+		given:
+			def rootDirectory = Files.createTempDirectory("root").toFile()
+
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(rootDirectory.absolutePath)
+					.allowFileOperations(FileServerMode.READ_AND_WRITE)
+					.cacheHotFilesInMemory(1024 * 1024, 64 * 1024)
+					.build()
+
+		then:
+			consumer != null
+			consumer instanceof HttpFileRequestConsumerDispatcher
+
+		cleanup:
+			rootDirectory.deleteDir()
+	}
+
+	@Unroll
+	def 'Never cannot cache hot files in memory with invalid limits'() {
+		when:
+			FileServerPluginBuilder.fileServer().cacheHotFilesInMemory(cacheSize, fileSize)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			cacheSize | fileSize
+			0         | 1
+			1024      | 0
+			1024      | Integer.MAX_VALUE + 1L
+	}
+
+	def 'Always can build consumer serving large files memory mapped together with hot files cache'() {
+		given:
+			def rootDirectory = Files.createTempDirectory("root").toFile()
+
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(rootDirectory.absolutePath)
+					.cacheHotFilesInMemory(1024 * 1024, 64 * 1024)
+					.serveLargeFilesMemoryMapped(1024 * 1024, 1024 * 1024 * 1024)
+					.build()
+
+		then:
+			consumer != null
+			consumer instanceof HttpFileRequestConsumerDispatcher
+
+		cleanup:
+			rootDirectory.deleteDir()
+	}
+
+	@Unroll
+	def 'Never cannot serve large files memory mapped with invalid limits'() {
+		when:
+			FileServerPluginBuilder.fileServer().serveLargeFilesMemoryMapped(minimumSize, maximumSize)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			minimumSize | maximumSize
+			0           | 1024
+			1024        | 0
+	}
+
+	def 'Always can build consumer with custom MIME types'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.withMimeTypeTable(MimeTypeTable.defaultTable())
+					.mapFileExtensionToMimeType("yaml", "application/yaml")
+					.build()
+
+		then:
+			consumer != null
+			consumer instanceof HttpFileRequestConsumerDispatcher
+	}
+
+	def 'Never cannot use null MIME type table or invalid MIME type mapping'() {
+		when:
+			FileServerPluginBuilder.fileServer().withMimeTypeTable(null)
+
+		then:
+			thrown(NullPointerException)
+
+		when:
+			FileServerPluginBuilder.fileServer().mapFileExtensionToMimeType("", "text/plain")
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always can build consumer using content hash entity tags'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.useContentHashEntityTags()
+					.build()
+
+		then:
+			consumer != null
+			consumer instanceof HttpFileRequestConsumerDispatcher
+	}
+
+	def 'Always can build consumer caching file metadata'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.serveSubresourceWhenDirectoryRequested("index.html")
+					.cacheFileMetadata(1000)
+					.build()
+
+		then:
+			consumer != null
+			consumer instanceof HttpFileRequestConsumerDispatcher
+	}
+
+	def 'Never cannot cache file metadata without positive time to live'() {
+		when:
+			FileServerPluginBuilder.fileServer().cacheFileMetadata(0)
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always can build consumer with cache control rules'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.withCacheControlForPath("/static/*", maxAge(31536000).immutable())
+					.withCacheControlForPath("*.html", noCache())
+					.withCacheControlForMimeType("image/*", maxAge(86400))
+					.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+	}
+
+	@Unroll
+	def 'Never cannot add cache control rule with incorrect pattern #pattern'() {
+		when:
+			FileServerPluginBuilder.fileServer().withCacheControlForPath(pattern, noCache())
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			pattern << ["static/*", "/*/*"]
+	}
+
+	@Unroll
+	def 'Always can build consumer listing directory contents with cached listings: #cached'() {
+		given:
+			def builder = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.listDirectoryContents()
+			if (cached)
+				builder.cacheDirectoryListings(1024 * 1024)
+
+		when:
+			def consumer = builder.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+
+		where:
+			cached << [false, true]
+	}
+
+	def 'Never cannot cache directory listings without positive cache size'() {
+		when:
+			FileServerPluginBuilder.fileServer().cacheDirectoryListings(0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always can build consumer caching not found paths'() {
+		given:
+			def root = Files.createTempDirectory("notfound").toFile()
+
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(root.absolutePath)
+					.cacheNotFoundPaths(1024 * 1024)
+					.build()
+
+		then:
+			consumer != null
+			consumer instanceof HttpFileRequestConsumerDispatcher
+
+		cleanup:
+			root.delete()
+	}
+
+	def 'Always can build consumer serving first existing subresource for directories with cached indexes: #cached'() {
+		given:
+			def root = Files.createTempDirectory("indexes").toFile()
+			def builder = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(root.absolutePath)
+					.serveFirstExistingSubresourceWhenDirectoryRequested("index.html", "index.htm")
+			if (cached)
+				builder.cacheDirectoryIndexes(1024)
+
+		when:
+			def consumer = builder.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+
+		cleanup:
+			root.delete()
+
+		where:
+			cached << [false, true]
+	}
+
+	def 'Never cannot serve first existing subresource for directories without subresources'() {
+		when:
+			FileServerPluginBuilder.fileServer().serveFirstExistingSubresourceWhenDirectoryRequested(subresources)
+
+		then:
+			thrown(exception)
+
+		where:
+			subresources                     | exception
+			null                             | NullPointerException
+			[] as String[]                   | IllegalArgumentException
+			["index.html", null] as String[] | NullPointerException
+	}
+
+	def 'Never cannot cache directory indexes without positive number of directories'() {
+		when:
+			FileServerPluginBuilder.fileServer().cacheDirectoryIndexes(0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Never cannot cache not found paths without positive cache size'() {
+		when:
+			FileServerPluginBuilder.fileServer().cacheNotFoundPaths(0)
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	@Unroll
+	def 'Always can build consumer syncing uploads to disk with #durabilityMode durability'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.allowFileOperations(FileServerMode.READ_AND_WRITE)
+					.syncUploadsToDisk(durabilityMode)
+					.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+
+		where:
+			durabilityMode << DurabilityMode.values()
+	}
+
+	def 'Always can build consumer syncing uploads to disk with custom group committer'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.allowFileOperations(FileServerMode.READ_AND_WRITE)
+					.syncUploadsToDiskWithGroupCommit(new GroupCommitter(500, 16))
+					.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+	}
+
+	def 'Always stops group committer and watcher of root directory when consumer is closed'() {
+		given:
+			def root = Files.createTempDirectory("stopped").toFile()
+			def committer = Mock(GroupCommitter)
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(root.absolutePath)
+					.allowFileOperations(FileServerMode.READ_AND_WRITE)
+					.syncUploadsToDiskWithGroupCommit(committer)
+					.cacheNotFoundPaths(1024 * 1024)
+					.build()
+			def watcher = consumer.backgroundServices.find { it instanceof FileSystemChangeWatcher }
+
+		when:
+			consumer.close()
+
+		then:
+			consumer instanceof Closeable
+			1 * committer.close()
+
+		when:
+			watcher.watchService.poll()
+
+		then:
+			thrown(ClosedWatchServiceException)
+
+		cleanup:
+			root.delete()
+	}
+
+	def 'Never cannot sync uploads to disk without durability mode or group committer'() {
+		when:
+			FileServerPluginBuilder.fileServer().syncUploadsToDisk(null)
+
+		then:
+			thrown(NullPointerException)
+
+		when:
+			FileServerPluginBuilder.fileServer().syncUploadsToDiskWithGroupCommit(null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	@Unroll
+	def 'Always can build consumer patching files #patchMode'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.allowFileOperations(FileServerMode.READ_AND_WRITE)
+					.patchFiles(patchMode)
+					.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+
+		where:
+			patchMode << FilePatchMode.values()
+	}
+
+	def 'Never cannot patch files without patch mode'() {
+		when:
+			FileServerPluginBuilder.fileServer().patchFiles(null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always can build consumer deduplicating uploads in blob store outside of root directory'() {
+		given:
+			def blobStoreDirectory = Files.createTempDirectory("blobs").toFile()
+
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.allowFileOperations(FileServerMode.READ_AND_WRITE)
+					.deduplicateUploads(blobStoreDirectory.absolutePath)
+					.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+
+		cleanup:
+			blobStoreDirectory.deleteDir()
+	}
+
+	def 'Never cannot deduplicate uploads without blob store directory or with one inside root directory'() {
+		when:
+			FileServerPluginBuilder.fileServer().deduplicateUploads(null)
+
+		then:
+			thrown(NullPointerException)
+
+		when:
+			FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.allowFileOperations(FileServerMode.READ_AND_WRITE)
+					.deduplicateUploads(currentDirectory() + "/blobs")
+					.build()
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always can build consumer serving files of storage without root directory'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.serveFromStorage(new InMemoryFileStorage())
+					.allowFileOperations(FileServerMode.READ_AND_WRITE)
+					.listDirectoryContents()
+					.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+	}
+
+	def 'Never cannot serve files of null storage'() {
+		when:
+			FileServerPluginBuilder.fileServer().serveFromStorage(null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always can build consumer serving entries of archive without root directory'() {
+		given:
+			def directory = Files.createTempDirectory("archive").toFile()
+			def archive = new File(directory, "site.zip")
+			def zip = new ZipOutputStream(new FileOutputStream(archive))
+			zip.putNextEntry(new ZipEntry("index.html"))
+			zip.close()
+
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.serveFromArchive(archive.absolutePath)
+					.serveSubresourceWhenDirectoryRequested("index.html")
+					.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	def 'Always can build consumer sending archives of directories'() {
+		when:
+			def consumer = FileServerPluginBuilder.fileServer()
+					.withRootServerDirectory(currentDirectory())
+					.serveSubresourceWhenDirectoryRequested("index.html")
+					.sendArchivesOfDirectories()
+					.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+
+		when:
+			consumer = FileServerPluginBuilder.fileServer()
+					.serveFromStorage(new InMemoryFileStorage())
+					.sendArchivesOfDirectories()
+					.build()
+
+		then:
+			consumer instanceof HttpFileRequestConsumerDispatcher
+	}
+
+	def 'Never cannot serve entries of null or missing archive'() {
+		when:
+			FileServerPluginBuilder.fileServer().serveFromArchive(null)
+
+		then:
+			thrown(NullPointerException)
+
+		when:
+			FileServerPluginBuilder.fileServer().serveFromArchive(currentDirectory() + "/missing.zip").build()
+
+		then:
+			thrown(IllegalStateException)
+	}
+
 	@Shared
 	private validExistingDirectory = {
 		Path currentRelativePath = Paths.get(".");
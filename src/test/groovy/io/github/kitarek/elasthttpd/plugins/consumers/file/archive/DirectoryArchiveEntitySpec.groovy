@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.archive
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.InMemoryFileStorage
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.ZipInputStream
+
+class DirectoryArchiveEntitySpec extends Specification {
+
+	def storage = new InMemoryFileStorage()
+
+	def setup() {
+		write("/site/b.txt", "second")
+		write("/site/a/x.txt", "first")
+		write("/site/a/empty/.keep", "")
+		write("/other.txt", "other")
+	}
+
+	@Unroll
+	def 'Never cannot create entity with null #description'() {
+		when:
+			new DirectoryArchiveEntity(fileStorage, path, rootName, format)
+
+		then:
+			thrown(NullPointerException)
+
+		where:
+			description         | fileStorage               | path    | rootName | format
+			"storage"           | null                      | "/site" | "site"   | DirectoryArchiveFormat.TAR
+			"path"              | new InMemoryFileStorage() | null    | "site"   | DirectoryArchiveFormat.TAR
+			"name of root"      | new InMemoryFileStorage() | "/site" | null     | DirectoryArchiveFormat.TAR
+			"format of archive" | new InMemoryFileStorage() | "/site" | "site"   | null
+	}
+
+	def 'Always is sent chunked with MIME type of archive format'() {
+		when:
+			def entity = new DirectoryArchiveEntity(storage, "/site", "site", DirectoryArchiveFormat.ZIP)
+
+		then:
+			entity.chunked
+			entity.contentLength == -1
+			entity.contentType.value == "application/zip"
+			entity.repeatable
+	}
+
+	def 'Always archives the whole directory tree depth first in order of names'() {
+		given:
+			def entity = new DirectoryArchiveEntity(storage, "/site", "site", DirectoryArchiveFormat.ZIP)
+			def out = new ByteArrayOutputStream()
+
+		when:
+			entity.writeTo(out)
+			def entries = readZip(out.toByteArray())
+
+		then:
+			entries.keySet() as List == ["site/", "site/a/", "site/a/empty/", "site/a/empty/.keep", "site/a/x.txt",
+										 "site/b.txt"]
+			entries["site/a/x.txt"] == "first"
+			entries["site/b.txt"] == "second"
+	}
+
+	def 'Always archives root directory under the given name'() {
+		when:
+			def entries = readZip(new DirectoryArchiveEntity(storage, "/", "archive", DirectoryArchiveFormat.ZIP)
+					.content.bytes)
+
+		then:
+			entries.keySet().first() == "archive/"
+			entries["archive/other.txt"] == "other"
+			entries["archive/site/a/x.txt"] == "first"
+	}
+
+	def 'Always archives tree in tar format'() {
+		given:
+			def out = new ByteArrayOutputStream()
+
+		when:
+			new DirectoryArchiveEntity(storage, "/site/a", "a", DirectoryArchiveFormat.TAR).writeTo(out)
+
+		then:
+			out.size() == 7 * 512
+			new String(out.toByteArray(), 0, 2, "US-ASCII") == "a/"
+	}
+
+	private void write(String path, String content) {
+		storage.write(path, new ByteArrayInputStream(content.bytes), content.length())
+	}
+
+	private static Map<String, String> readZip(byte[] archive) {
+		def entries = new LinkedHashMap<String, String>()
+		def zip = new ZipInputStream(new ByteArrayInputStream(archive))
+		def entry
+		while ((entry = zip.nextEntry) != null)
+			entries[entry.name] = entry.directory ? "" : readEntry(zip)
+		entries
+	}
+
+	private static String readEntry(ZipInputStream zip) {
+		def content = new ByteArrayOutputStream()
+		def buffer = new byte[1024]
+		int readBytes
+		while ((readBytes = zip.read(buffer)) != -1)
+			content.write(buffer, 0, readBytes)
+		content.toString("UTF-8")
+	}
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.archive
+
+import spock.lang.Specification
+
+import static java.nio.charset.StandardCharsets.US_ASCII
+import static java.nio.charset.StandardCharsets.UTF_8
+
+class TarArchiveWriterSpec extends Specification {
+
+	def out = new ByteArrayOutputStream()
+	def writer = new TarArchiveWriter(out)
+
+	def 'Never cannot create writer without output stream'() {
+		when:
+			new TarArchiveWriter(null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always writes ustar headers, padded content and the end of archive'() {
+		when:
+			writer.writeDirectory("dir", 1000000)
+			writer.writeFile("dir/a.txt", 7, 2000000, stream("content"))
+			writer.finish()
+			def archive = out.toByteArray()
+
+		then:
+			archive.length == 5 * 512
+			field(archive, 0, 100) == "dir/"
+			archive[156] == (byte) '5'
+			field(archive, 257, 6) == "ustar"
+			field(archive, 512, 100) == "dir/a.txt"
+			field(archive, 512 + 124, 12) == "00000000007"
+			field(archive, 512 + 136, 12) == Long.toOctalString(2000).padLeft(11, "0")
+			archive[512 + 156] == (byte) '0'
+			new String(archive, 1024, 7, US_ASCII) == "content"
+			archive[(3 * 512)..<(5 * 512)].every { it == 0 }
+	}
+
+	def 'Always writes header checksum of unsigned header bytes'() {
+		when:
+			writer.writeFile("a.txt", 0, 0, stream(""))
+			def header = out.toByteArray()
+			def sum = 0
+			header.eachWithIndex { headerByte, index -> sum += (index >= 148 && index < 156) ? 32 : headerByte & 0xFF }
+
+		then:
+			Integer.parseInt(field(header, 148, 7), 8) == sum
+	}
+
+	def 'Always splits long name into prefix and name at separator'() {
+		given:
+			def name = "d" * 120 + "/file.txt"
+
+		when:
+			writer.writeFile(name, 0, 0, stream(""))
+
+		then:
+			field(out.toByteArray(), 0, 100) == "file.txt"
+			field(out.toByteArray(), 345, 155) == "d" * 120
+	}
+
+	def 'Always describes name that does not fit ustar header with pax header'() {
+		given:
+			def name = "\u017c" * 10 + "/" + "f" * 120
+
+		when:
+			writer.writeFile(name, 0, 0, stream(""))
+			def archive = out.toByteArray()
+			def recordLength = Integer.parseInt(field(archive, 124, 12), 8)
+
+		then:
+			archive[156] == (byte) 'x'
+			new String(archive, 512, recordLength, UTF_8) == "$recordLength path=$name\n"
+			archive[1024 + 156] == (byte) '0'
+	}
+
+	def 'Always pads file truncated while it is written to its declared length'() {
+		when:
+			writer.writeFile("a.txt", 10, 0, stream("abc"))
+
+		then:
+			out.toByteArray().length == 2 * 512
+			new String(out.toByteArray(), 512, 10, US_ASCII) == "abc" + "\0" * 7
+	}
+
+	def 'Never writes more bytes of file than its declared length'() {
+		when:
+			writer.writeFile("a.txt", 3, 0, stream("abcdef"))
+
+		then:
+			out.toByteArray().length == 2 * 512
+			new String(out.toByteArray(), 512, 4, US_ASCII) == "abc\0"
+	}
+
+	private static String field(byte[] header, int offset, int length) {
+		new String(header, offset, length, US_ASCII).replaceAll("\0.*", "")
+	}
+
+	private static InputStream stream(String content) {
+		new ByteArrayInputStream(content.getBytes(US_ASCII))
+	}
+}
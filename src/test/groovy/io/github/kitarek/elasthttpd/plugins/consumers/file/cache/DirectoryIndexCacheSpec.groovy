@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cache
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.cache.DirectoryIndexCache.NO_INDEX
+
+class DirectoryIndexCacheSpec extends Specification {
+
+	def root = Files.createTempDirectory("indexcache").toFile()
+
+	def cleanup() {
+		root.deleteDir()
+	}
+
+	def 'Never cannot create cache without positive number of directories'() {
+		when:
+			new DirectoryIndexCache(0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always remembers resolved index and resolution without index'() {
+		given:
+			def cache = new DirectoryIndexCache(16)
+			def other = new File(root, "other")
+
+		when:
+			cache.rememberResolvedIndex(root, 1, cache.invalidationCount)
+			cache.rememberResolvedIndex(other, NO_INDEX, cache.invalidationCount)
+
+		then:
+			cache.getResolvedIndex(root).get() == 1
+			cache.getResolvedIndex(other).get() == NO_INDEX
+			cache.getResolvedIndex(new File(root, "unknown")).isNotPresent()
+	}
+
+	def 'Never remembers resolution when any file changed since the resolution started'() {
+		given:
+			def cache = new DirectoryIndexCache(16)
+			def invalidationCountBeforeResolution = cache.invalidationCount
+			cache.fileChanged(new File(root, "index.html"))
+
+		expect:
+			!cache.rememberResolvedIndex(root, 0, invalidationCountBeforeResolution)
+			cache.getResolvedIndex(root).isNotPresent()
+	}
+
+	def 'Never remembers more directories than allowed'() {
+		given:
+			def cache = new DirectoryIndexCache(2)
+
+		when:
+			(1..3).each { cache.rememberResolvedIndex(new File(root, "d" + it), 0, cache.invalidationCount) }
+
+		then:
+			cache.cache.size() == 2
+			cache.getResolvedIndex(new File(root, "d1")).isNotPresent()
+	}
+
+	@Unroll
+	def 'Always forgets resolutions of parent, the changed directory and directories under it when #changed changes'() {
+		given:
+			def cache = new DirectoryIndexCache(16)
+			["", "a", "a/b", "a/b/c", "ab"].each {
+				cache.rememberResolvedIndex(new File(root, it), 0, cache.invalidationCount)
+			}
+
+		when:
+			cache.fileChanged(new File(root, changed))
+
+		then:
+			["", "a", "a/b", "a/b/c", "ab"].findAll { cache.getResolvedIndex(new File(root, it)).isPresent() } == kept
+
+		where:
+			changed        | kept
+			"a/index.html" | ["", "a/b", "a/b/c", "ab"]
+			"a/b"          | ["", "ab"]
+			"ab/x"         | ["", "a", "a/b", "a/b/c"]
+	}
+
+	def 'Always forgets all resolutions when all files changed'() {
+		given:
+			def cache = new DirectoryIndexCache(16)
+			cache.rememberResolvedIndex(root, 0, cache.invalidationCount)
+
+		when:
+			cache.allFilesChanged()
+
+		then:
+			cache.getResolvedIndex(root).isNotPresent()
+			cache.cache.size() == 0
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cache
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+class HotFileCacheSpec extends Specification {
+
+	def directory = Files.createTempDirectory("hot").toFile()
+	def file = new File(directory, "favicon.ico")
+	def cache = new HotFileCache(1024, 100)
+
+	def setup() {
+		file.text = "icon"
+	}
+
+	def cleanup() {
+		directory.deleteDir()
+	}
+
+	@Unroll
+	def 'Never cannot create cache with invalid limits'() {
+		when:
+			new HotFileCache(cacheSize, fileSize)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			cacheSize | fileSize
+			0         | 1
+			1024      | 0
+			1024      | Integer.MAX_VALUE + 1L
+	}
+
+	def 'Always serves content from memory once file was loaded'() {
+		when:
+			def firstContent = provideContentOf(file)
+			def secondContent = provideContentOf(file)
+
+		then:
+			firstContent.get().openContent().bytes == "icon".bytes
+			secondContent.get().openContent().bytes == "icon".bytes
+			secondContent.get().contentLength == 4
+			cache.cache.hitCount == 1
+			cache.cache.missCount == 1
+	}
+
+	def 'Always reloads file changed without notification once its size or modification time is different'() {
+		given:
+			def lastModified = file.lastModified()
+			provideContentOf(file)
+
+		when:
+			file.text = "iconic"
+			file.setLastModified(lastModified)
+			def contentOfLongerFile = provideContentOf(file)
+			file.text = "ICON"
+			file.setLastModified(lastModified - 2000)
+			def contentOfTouchedFile = provideContentOf(file)
+
+		then:
+			contentOfLongerFile.get().openContent().bytes == "iconic".bytes
+			contentOfTouchedFile.get().openContent().bytes == "ICON".bytes
+			cache.cache.hitCount == 0
+	}
+
+	def 'Never provides loaded content when file was changed after the caller read its metadata'() {
+		given:
+			def length = file.length()
+			def lastModified = file.lastModified()
+			file.text = "changed icon"
+
+		expect:
+			cache.provideContent(file, length, lastModified).isNotPresent()
+	}
+
+	def 'Always reloads file after it was reported as changed'() {
+		given:
+			provideContentOf(file)
+			file.text = "new icon"
+
+		when:
+			cache.fileChanged(file)
+
+		then:
+			cache.cache.size() == 0
+			provideContentOf(file).get().openContent().bytes == "new icon".bytes
+	}
+
+	def 'Always invalidates all files in changed directory and all files when all are changed'() {
+		given:
+			def subdirectory = new File(directory, "static")
+			subdirectory.mkdir()
+			def nestedFile = new File(subdirectory, "app.js")
+			nestedFile.text = "app"
+			def similarlyNamedFile = new File(directory, "static.txt")
+			similarlyNamedFile.text = "static"
+			[file, nestedFile, similarlyNamedFile].each { provideContentOf(it) }
+
+		when:
+			cache.fileChanged(subdirectory)
+
+		then:
+			cache.cache.size() == 2
+
+		when:
+			cache.allFilesChanged()
+
+		then:
+			cache.cache.size() == 0
+	}
+
+	def 'Never caches files bigger than the limit'() {
+		given:
+			file.text = "x" * 101
+
+		expect:
+			provideContentOf(file).isNotPresent()
+			cache.cache.size() == 0
+	}
+
+	def 'Always shares cached content between many readers'() {
+		given:
+			def content = provideContentOf(file).get()
+
+		when:
+			def firstStream = content.openContent()
+			def secondStream = content.openContent()
+
+		then:
+			firstStream.read() == ('i' as char) as int
+			secondStream.bytes == "icon".bytes
+			firstStream.bytes == "con".bytes
+	}
+
+	private provideContentOf(File file) {
+		cache.provideContent(file, file.length(), file.lastModified())
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cache
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+class MemoryMappedFileCacheSpec extends Specification {
+
+	def directory = Files.createTempDirectory("mapped").toFile()
+	def file = new File(directory, "artifact.bin")
+	def content = (0..<4096).collect { it as byte } as byte[]
+	def cache = new MemoryMappedFileCache(1024, 16 * 1024)
+
+	def setup() {
+		file.bytes = content
+	}
+
+	def cleanup() {
+		directory.deleteDir()
+	}
+
+	@Unroll
+	def 'Never cannot create cache with invalid limits'() {
+		when:
+			new MemoryMappedFileCache(minimumSize, maximumSize)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			minimumSize | maximumSize
+			0           | 1024
+			1024        | 0
+	}
+
+	def 'Always shares one mapping between concurrent readers of the same file'() {
+		when:
+			def firstStream = provideContentOf(file).get().openContent()
+			def secondStream = provideContentOf(file).get().openContent()
+
+		then:
+			firstStream.bytes == content
+			secondStream.skip(4000) == 4000
+			secondStream.bytes == content[4000..-1] as byte[]
+			cache.cache.size() == 1
+			cache.cache.hitCount == 1
+
+		cleanup:
+			firstStream.close()
+			secondStream.close()
+	}
+
+	def 'Always keeps mapping for opened streams until they are closed even when file is invalidated'() {
+		given:
+			def fileContent = provideContentOf(file).get()
+			def stream = fileContent.openContent()
+
+		when:
+			cache.fileChanged(file)
+
+		then:
+			cache.cache.size() == 0
+			stream.bytes == content
+
+		when:
+			stream.close()
+			fileContent.openContent()
+
+		then:
+			thrown(IOException)
+	}
+
+	def 'Never allows to read stream after it was closed'() {
+		given:
+			def stream = provideContentOf(file).get().openContent()
+			stream.close()
+
+		when:
+			stream.read()
+
+		then:
+			thrown(IOException)
+	}
+
+	def 'Always maps file again when it was modified'() {
+		given:
+			provideContentOf(file).get().openContent().close()
+			def reversedContent = content.toList().reverse() as byte[]
+			file.bytes = reversedContent
+			file.setLastModified(file.lastModified() + 2000)
+
+		when:
+			def stream = provideContentOf(file).get().openContent()
+
+		then:
+			stream.bytes == reversedContent
+			cache.cache.size() == 1
+
+		cleanup:
+			stream.close()
+	}
+
+	def 'Never maps files smaller than minimum size or bigger than all mappings together'() {
+		given:
+			def smallFile = new File(directory, "small.bin")
+			smallFile.bytes = new byte[1023]
+			def bigFile = new File(directory, "big.bin")
+			bigFile.bytes = new byte[16 * 1024 + 1]
+
+		expect:
+			provideContentOf(smallFile).isNotPresent()
+			provideContentOf(bigFile).isNotPresent()
+	}
+
+	def 'Always unmaps all files when all files changed'() {
+		given:
+			def fileContent = provideContentOf(file).get()
+
+		when:
+			cache.allFilesChanged()
+			fileContent.openContent()
+
+		then:
+			thrown(IOException)
+			cache.cache.size() == 0
+	}
+
+	private provideContentOf(File file) {
+		cache.provideContent(file, file.length(), file.lastModified())
+	}
+}
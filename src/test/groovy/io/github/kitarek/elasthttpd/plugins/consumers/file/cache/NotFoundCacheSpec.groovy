@@ -0,0 +1,135 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cache
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class NotFoundCacheSpec extends Specification {
+
+	def 'Never cannot create cache without positive size'() {
+		when:
+			new NotFoundCache(0)
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always remembers message of missing request path'() {
+		given:
+			def cache = new NotFoundCache(1024)
+			def message = "404".bytes
+
+		when:
+			def remembered = cache.rememberNotFound("/missing", "/root/missing", message, cache.invalidationCount)
+
+		then:
+			remembered
+			cache.getNotFoundMessage("/missing").get().is(message)
+			cache.getNotFoundMessage("/other").isNotPresent()
+	}
+
+	def 'Never remembers missing path when any file changed since request started'() {
+		given:
+			def cache = new NotFoundCache(1024)
+			def invalidationCount = cache.invalidationCount
+
+		when:
+			cache.fileChanged(new File("/root/unrelated"))
+
+		then:
+			!cache.rememberNotFound("/missing", "/root/missing", "404".bytes, invalidationCount)
+			cache.getNotFoundMessage("/missing").isNotPresent()
+	}
+
+	def 'Never remembers too long request paths'() {
+		given:
+			def cache = new NotFoundCache(1024 * 1024)
+			def requestPath = "/" + ("a" * NotFoundCache.MAXIMUM_CACHED_REQUEST_PATH_LENGTH)
+
+		expect:
+			!cache.rememberNotFound(requestPath, "/root" + requestPath, "404".bytes, cache.invalidationCount)
+	}
+
+	def 'Never takes more memory than the limit'() {
+		given:
+			def cache = new NotFoundCache(2048)
+
+		when:
+			(1..1000).each {
+				cache.rememberNotFound("/missing/" + it, "/root/missing/" + it, "404".bytes, cache.invalidationCount)
+			}
+
+		then:
+			cache.cache.currentWeight <= 2048
+			cache.cache.size() > 0
+			cache.getNotFoundMessage("/missing/1000").isPresent()
+			cache.getNotFoundMessage("/missing/1").isNotPresent()
+			cache.requestPathsByMissingPath.size() == cache.cache.size()
+	}
+
+	@Unroll
+	def 'Always forgets missing path #missingPath when #changedPath changes: #forgotten'() {
+		given:
+			def cache = new NotFoundCache(1024)
+			cache.rememberNotFound("/request", missingPath, "404".bytes, cache.invalidationCount)
+
+		when:
+			cache.fileChanged(new File(changedPath))
+
+		then:
+			cache.getNotFoundMessage("/request").isNotPresent() == forgotten
+
+		where:
+			missingPath          | changedPath          | forgotten
+			"/root/a/file.txt"   | "/root/a/file.txt"   | true
+			"/root/a/file.txt"   | "/root/a"            | true
+			"/root/a"            | "/root/a/b/file.txt" | true
+			"/root/a/file.txt"   | "/root/a/file.txt2"  | false
+			"/root/ab"           | "/root/a"            | false
+	}
+
+	def 'Always forgets only missing paths of changed file, its ancestors and its descendants'() {
+		given:
+			def cache = new NotFoundCache(1024 * 1024)
+			["/a", "/a/b", "/a/b/c/d", "/a/b2", "/a/b.txt", "/e", "/e/b"].each {
+				cache.rememberNotFound(it, "/root" + it, "404".bytes, cache.invalidationCount)
+			}
+			cache.rememberNotFound("/a/b/", "/root/a/b", "404".bytes, cache.invalidationCount)
+
+		when:
+			cache.fileChanged(new File("/root/a/b"))
+
+		then:
+			["/a", "/a/b", "/a/b/", "/a/b/c/d"].every { cache.getNotFoundMessage(it).isNotPresent() }
+			["/a/b2", "/a/b.txt", "/e", "/e/b"].every { cache.getNotFoundMessage(it).isPresent() }
+			cache.requestPathsByMissingPath.keySet() == ["/root/a/b.txt", "/root/a/b2", "/root/e", "/root/e/b"] as Set
+	}
+
+	def 'Always forgets all missing paths when all files changed'() {
+		given:
+			def cache = new NotFoundCache(1024)
+			cache.rememberNotFound("/request", "/root/request", "404".bytes, cache.invalidationCount)
+
+		when:
+			cache.allFilesChanged()
+
+		then:
+			cache.getNotFoundMessage("/request").isNotPresent()
+			cache.requestPathsByMissingPath.isEmpty()
+	}
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlPolicy.maxAge
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlPolicy.noCache
+
+class CacheControlPolicySpec extends Specification {
+
+	@Unroll
+	def 'Always builds Cache-Control #expectedCacheControl and Expires #expectedExpires of policy'() {
+		expect:
+			policy.cacheControl == expectedCacheControl
+			policy.getExpires(1500) == expectedExpires
+
+		where:
+			policy                   | expectedCacheControl      | expectedExpires
+			maxAge(0)                | "max-age=0"               | "Thu, 01 Jan 1970 00:00:01 GMT"
+			maxAge(60)               | "max-age=60"              | "Thu, 01 Jan 1970 00:01:01 GMT"
+			maxAge(3600).immutable() | "max-age=3600, immutable" | "Thu, 01 Jan 1970 01:00:01 GMT"
+			noCache()                | "no-cache"                | "Thu, 01 Jan 1970 00:00:00 GMT"
+	}
+
+	def 'Always formats Expires again when time moves to the next second'() {
+		given:
+			def policy = maxAge(10)
+
+		expect:
+			policy.getExpires(1000).is(policy.getExpires(1999))
+			policy.getExpires(2000) == "Thu, 01 Jan 1970 00:00:12 GMT"
+	}
+
+	@Unroll
+	def 'Never cannot create policy with max age #maxAgeInSeconds out of range'() {
+		when:
+			maxAge(maxAgeInSeconds)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			maxAgeInSeconds << [-1, CacheControlPolicy.MAXIMUM_MAX_AGE_IN_SECONDS + 1]
+	}
+
+	def 'Never cannot make immutable policy requiring revalidation'() {
+		when:
+			noCache().immutable()
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+}
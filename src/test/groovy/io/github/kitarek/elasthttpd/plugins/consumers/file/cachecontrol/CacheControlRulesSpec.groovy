@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol
+
+import spock.lang.Shared
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty
+import static io.github.kitarek.elasthttpd.commons.Optional.present
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlPolicy.maxAge
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlPolicy.noCache
+
+class CacheControlRulesSpec extends Specification {
+
+	@Shared
+	def immutablePolicy = maxAge(31536000).immutable()
+	@Shared
+	def noCachePolicy = noCache()
+	@Shared
+	def imagePolicy = maxAge(86400)
+	@Shared
+	def pngPolicy = maxAge(3600)
+	@Shared
+	def rules = CacheControlRules.noRules()
+			.withPathPattern("/index.html", noCachePolicy)
+			.withPathPattern("/static/*", immutablePolicy)
+			.withPathPattern("*.html", noCachePolicy)
+			.withPathPattern("/img/*.svg", immutablePolicy)
+			.withMimeType("image/*", imagePolicy)
+			.withMimeType("IMAGE/PNG", pngPolicy)
+
+	@Unroll
+	def 'Always chooses policy for #requestPath of MIME type #mimeType'() {
+		when:
+			def optionalPolicy = rules.policyFor(requestPath, mimeType == null ? empty() : present(mimeType))
+
+		then:
+			(optionalPolicy.isPresent() ? optionalPolicy.get() : null) == expectedPolicy
+
+		where:
+			requestPath         | mimeType                  | expectedPolicy
+			"/index.html"       | "text/html"               | noCachePolicy
+			"/static/app.js"    | "text/javascript"         | immutablePolicy
+			"/static/a/b.html"  | "text/html"               | immutablePolicy
+			"/docs/page.html"   | null                      | noCachePolicy
+			"/img/logo.svg"     | "image/svg+xml"           | immutablePolicy
+			"/img.svg"          | "image/svg+xml"           | imagePolicy
+			"/photos/a.png"     | "image/png"               | pngPolicy
+			"/photos/a.gif"     | "image/gif; charset=x"    | imagePolicy
+			"/app.js"           | "text/javascript"         | null
+			"/app.js"           | null                      | null
+			"/static"           | null                      | null
+	}
+
+	def 'Always replaces rule of the same pattern keeping its position'() {
+		given:
+			def replacedRules = CacheControlRules.noRules()
+					.withPathPattern("/a/*", noCachePolicy)
+					.withPathPattern("*.js", imagePolicy)
+					.withPathPattern("/a/*", immutablePolicy)
+
+		expect:
+			replacedRules.policyFor("/a/b.js", empty()).get().is(immutablePolicy)
+	}
+
+	def 'Never changes rules when a new rule is added'() {
+		given:
+			def noRules = CacheControlRules.noRules()
+
+		when:
+			def newRules = noRules.withPathPattern("*", noCachePolicy)
+
+		then:
+			noRules.isEmpty()
+			!newRules.isEmpty()
+			newRules.policyFor("/anything", empty()).isPresent()
+	}
+
+	@Unroll
+	def 'Never cannot add incorrect path pattern #pathPattern'() {
+		when:
+			CacheControlRules.noRules().withPathPattern(pathPattern, noCachePolicy)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			pathPattern << ["", "static/*", "/a/*/b/*", "**.js"]
+	}
+
+	@Unroll
+	def 'Never cannot add incorrect MIME type #mimeType'() {
+		when:
+			CacheControlRules.noRules().withMimeType(mimeType, noCachePolicy)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			mimeType << ["", "image", "/png"]
+	}
+}
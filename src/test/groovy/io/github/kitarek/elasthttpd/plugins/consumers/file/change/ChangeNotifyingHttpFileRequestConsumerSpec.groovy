@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.change
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.HttpFileRequestConsumer
+import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import org.apache.http.message.BasicHttpRequest
+import spock.lang.Specification
+
+class ChangeNotifyingHttpFileRequestConsumerSpec extends Specification {
+
+	def 'Never cannot create consumer with null dependencies'() {
+		when:
+			new ChangeNotifyingHttpFileRequestConsumer(null, Mock(FileChangeListener))
+
+		then:
+			thrown(NullPointerException)
+
+		when:
+			new ChangeNotifyingHttpFileRequestConsumer(Mock(HttpFileRequestConsumer), null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always notifies listener about requested file even when decorated consumer fails'() {
+		given:
+			def HttpFileRequestConsumer decoratedConsumer = Mock()
+			def FileChangeListener listener = Mock()
+			def consumer = new ChangeNotifyingHttpFileRequestConsumer(decoratedConsumer, listener)
+			def HttpFileRequest fileRequest = Stub()
+			def UriToFileMapper mapper = Stub()
+			fileRequest.request() >> new BasicHttpRequest("PUT", "/static/app.js")
+			fileRequest.mapper() >> mapper
+			mapper.mapUriRequestPath("/static/app.js") >> "/srv/static/app.js"
+
+		when:
+			consumer.consumeFileRequest(fileRequest)
+
+		then:
+			1 * decoratedConsumer.consumeFileRequest(fileRequest) >> { throw new IllegalStateException() }
+			thrown(IllegalStateException)
+		and:
+			1 * listener.fileChanged(new File("/srv/static/app.js"))
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.change
+
+import spock.lang.Specification
+import spock.util.concurrent.PollingConditions
+
+import java.nio.file.Files
+
+class FileSystemChangeWatcherSpec extends Specification {
+
+	def directory = Files.createTempDirectory("watched").toFile()
+	def conditions = new PollingConditions(timeout: 30)
+	def changedFiles = [].asSynchronized()
+	def listener = new FileChangeListener() {
+		void fileChanged(File file) {
+			changedFiles << file.absoluteFile
+		}
+
+		void allFilesChanged() {
+		}
+	}
+
+	def cleanup() {
+		directory.deleteDir()
+	}
+
+	def 'Never cannot create watcher for missing directory or without listener'() {
+		when:
+			new FileSystemChangeWatcher(new File(directory, "missing"), listener)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		when:
+			new FileSystemChangeWatcher(directory, null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always notifies about files changed in watched directory tree including new directories'() {
+		given:
+			def watcher = new FileSystemChangeWatcher(directory, listener)
+			watcher.startWatching()
+			def file = new File(directory, "index.html")
+			def newDirectory = new File(directory, "static")
+
+		when:
+			file.text = "index"
+			newDirectory.mkdir()
+
+		then:
+			conditions.eventually {
+				assert changedFiles.contains(file.absoluteFile)
+				assert changedFiles.contains(newDirectory.absoluteFile)
+			}
+
+		when:
+			def nestedFile = new File(newDirectory, "app.js")
+			nestedFile.text = "app"
+
+		then:
+			conditions.eventually {
+				assert changedFiles.contains(nestedFile.absoluteFile)
+			}
+
+		cleanup:
+			watcher.stopWatching()
+	}
+}
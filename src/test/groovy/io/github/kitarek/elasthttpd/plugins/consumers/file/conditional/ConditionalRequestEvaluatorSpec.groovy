@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.conditional
+
+import org.apache.http.message.BasicHttpRequest
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static io.github.kitarek.elasthttpd.commons.HttpDates.formatDate
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult.NOT_MODIFIED
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult.PRECONDITION_FAILED
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult.PROCEED
+
+class ConditionalRequestEvaluatorSpec extends Specification {
+
+	static final long LAST_MODIFIED = 784111777000L
+	static final String MODIFICATION_DATE = formatDate(LAST_MODIFIED)
+	static final String EARLIER_DATE = formatDate(LAST_MODIFIED - 1000)
+	static final String LATER_DATE = formatDate(LAST_MODIFIED + 1000)
+
+	def evaluator = new ConditionalRequestEvaluator()
+	def validators = new FileValidators("abc", LAST_MODIFIED + 500)
+
+	@Unroll
+	def 'Never cannot evaluate null request or validators'() {
+		when:
+			evaluator.evaluate(request, fileValidators)
+		then:
+			thrown(NullPointerException)
+
+		where:
+			request                          | fileValidators
+			null                             | new FileValidators("abc", 0)
+			new BasicHttpRequest("GET", "/") | null
+	}
+
+	@Unroll
+	def 'Always evaluates #method request with headers #headers to #result'() {
+		given:
+			def request = new BasicHttpRequest(method, "/")
+			headers.each { name, value -> request.addHeader(name, value) }
+
+		expect:
+			evaluator.evaluate(request, validators) == result
+
+		where:
+			method | headers                                                           | result
+			"GET"  | [:]                                                               | PROCEED
+			"GET"  | ["If-None-Match": '"abc"']                                        | NOT_MODIFIED
+			"HEAD" | ["If-None-Match": 'W/"abc"']                                      | NOT_MODIFIED
+			"GET"  | ["If-None-Match": '"x", "abc-gzip"']                             | NOT_MODIFIED
+			"GET"  | ["If-None-Match": '*']                                            | NOT_MODIFIED
+			"GET"  | ["If-None-Match": '"x,abc"']                                      | PROCEED
+			"GET"  | ["If-None-Match": '"abd"']                                        | PROCEED
+			"PUT"  | ["If-None-Match": '"abc"']                                        | PRECONDITION_FAILED
+			"GET"  | ["If-Modified-Since": MODIFICATION_DATE]                          | NOT_MODIFIED
+			"GET"  | ["If-Modified-Since": LATER_DATE]                                 | NOT_MODIFIED
+			"GET"  | ["If-Modified-Since": EARLIER_DATE]                               | PROCEED
+			"GET"  | ["If-Modified-Since": "invalid"]                                  | PROCEED
+			"GET"  | ["If-Modified-Since": formatDate(System.currentTimeMillis() + 3600000)] | PROCEED
+			"PUT"  | ["If-Modified-Since": MODIFICATION_DATE]                          | PROCEED
+			"GET"  | ["If-None-Match": '"abd"', "If-Modified-Since": MODIFICATION_DATE] | PROCEED
+			"GET"  | ["If-Match": '"abc"']                                             | PROCEED
+			"GET"  | ["If-Match": '*']                                                 | PROCEED
+			"GET"  | ["If-Match": 'W/"abc"']                                           | PRECONDITION_FAILED
+			"PUT"  | ["If-Match": '"abd"']                                             | PRECONDITION_FAILED
+			"GET"  | ["If-Unmodified-Since": MODIFICATION_DATE]                        | PROCEED
+			"GET"  | ["If-Unmodified-Since": EARLIER_DATE]                             | PRECONDITION_FAILED
+			"GET"  | ["If-Match": '"abc"', "If-Unmodified-Since": EARLIER_DATE]        | PROCEED
+			"GET"  | ["If-Match": '"abc"', "If-None-Match": '"abc"']                   | NOT_MODIFIED
+	}
+
+	@Unroll
+	def 'Always finds entity tag #matchedTag matched by If-None-Match #header'() {
+		given:
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("If-None-Match", header)
+
+		expect:
+			def optionalTag = evaluator.findMatchedEntityTag(request, validators)
+			(optionalTag.isPresent() ? optionalTag.get() : null) == matchedTag
+
+		where:
+			header                      | matchedTag
+			'"abc"'                     | '"abc"'
+			'"x", "abc-gzip"'           | '"abc-gzip"'
+			'W/"abc-deflate"'           | '"abc-deflate"'
+			'"abc-br", "abc"'           | '"abc"'
+			'*'                         | null
+			'"abd"'                     | null
+	}
+}
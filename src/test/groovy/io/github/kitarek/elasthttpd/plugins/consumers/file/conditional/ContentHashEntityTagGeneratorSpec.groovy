@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.conditional
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStore
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStoreSpec
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.security.MessageDigest
+
+class ContentHashEntityTagGeneratorSpec extends Specification {
+
+	def generator = new ContentHashEntityTagGenerator()
+
+	def 'Always generates the same tag for files with the same content'() {
+		given:
+			def first = createFile("content")
+			def second = createFile("content")
+
+		expect:
+			generator.generateEntityTag(first, first.length(), 1) ==
+					generator.generateEntityTag(second, second.length(), 2)
+			generator.generateEntityTag(first, first.length(), 1) ==~ /[0-9a-f]{32}/
+
+		cleanup:
+			first.delete()
+			second.delete()
+	}
+
+	def 'Always generates new tag when file content changes'() {
+		given:
+			def file = createFile("content")
+			def tag = generator.generateEntityTag(file, file.length(), 1)
+
+		when:
+			file.text = "changed"
+
+		then:
+			generator.generateEntityTag(file, file.length(), 2) != tag
+
+		cleanup:
+			file.delete()
+	}
+
+	def 'Always remembers tag of the same file version without reading it again'() {
+		given:
+			def file = createFile("content")
+			def tag = generator.generateEntityTag(file, 7, 1)
+
+		when:
+			file.delete()
+
+		then:
+			generator.generateEntityTag(file, 7, 1) == tag
+	}
+
+	@Requires({ ContentDigestStoreSpec.isUserDefinedAttributeSupported() })
+	def 'Always uses digest stored with the file without hashing its content'() {
+		given:
+			def file = createFile("content")
+			new ContentDigestStore().store(file, MessageDigest.getInstance("SHA-256").digest("stored".bytes))
+
+		expect:
+			generator.generateEntityTag(file, file.length(), file.lastModified()) ==
+					generator.generateEntityTag(createFile("stored"), 6, 1)
+
+		cleanup:
+			file.delete()
+	}
+
+	def 'Always falls back to metadata based tag when file cannot be read'() {
+		given:
+			def file = new File("does-not-exist-" + System.nanoTime())
+
+		expect:
+			generator.generateEntityTag(file, 10, 255) ==
+					new MetadataEntityTagGenerator().generateEntityTag(file, 10, 255)
+	}
+
+	def 'Always generates metadata based tag from length and modification time'() {
+		expect:
+			new MetadataEntityTagGenerator().generateEntityTag(new File("any"), 10, 255) == "a-ff"
+	}
+
+	private static File createFile(String content) {
+		def file = File.createTempFile("etag", ".txt")
+		file.text = content
+		return file
+	}
+}
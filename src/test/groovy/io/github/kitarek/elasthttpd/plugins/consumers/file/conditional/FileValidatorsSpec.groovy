@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.conditional
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.GZIP
+
+class FileValidatorsSpec extends Specification {
+
+	def 'Never cannot create validators without entity tag'() {
+		when:
+			new FileValidators(null, 0)
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always quotes entity tags of file and its variants'() {
+		given:
+			def validators = new FileValidators("abc", 784111777000L)
+
+		expect:
+			validators.entityTag == '"abc"'
+			validators.getEntityTagOfVariant(GZIP) == '"abc-gzip"'
+			validators.lastModifiedDate == "Sun, 06 Nov 1994 08:49:37 GMT"
+	}
+
+	@Unroll
+	def 'Always matches opaque tag #opaqueTag of file or its variants only'() {
+		expect:
+			new FileValidators("abc", 0).matchesOpaqueTag(opaqueTag) == matches
+
+		where:
+			opaqueTag    | matches
+			"abc"        | true
+			"abc-gzip"   | true
+			"abc-deflate"| true
+			"abc-"       | false
+			"abc-br2"    | false
+			"abcd"       | false
+			"ab"         | false
+	}
+}
@@ -16,15 +16,19 @@
  */
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer
+import io.github.kitarek.elasthttpd.commons.Optional
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
 import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
 import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentAddressedStore
 import org.apache.http.HttpRequest
 import org.apache.http.HttpResponse
 import org.apache.http.RequestLine
 import spock.lang.Shared
 import spock.lang.Specification
 
+import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.Paths
 
@@ -162,6 +166,68 @@ class HttpFileDeleteRequestConsumerSpec extends Specification {
 			new File(existingPathToFile).delete()
 	}
 
+	def 'Never cannot create delete consumer with null optional content addressed store'() {
+		when:
+			new HttpFileDeleteRequestConsumer(Mock(TemplatedHttpResponder), null)
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always releases blob of content addressed store referenced by deleted file'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def ContentAddressedStore store = Mock()
+			def consumer = new HttpFileDeleteRequestConsumer(responderMock, Optional.present(store))
+			def HttpFileRequest fileRequest = Stub()
+			def HttpResponse response = Mock()
+			fileRequest.response() >> response
+		and:
+			def file = File.createTempFile("delete", ".txt")
+			def digest = new byte[32]
+
+		when:
+			consumer.tryDeleteFileAndRespondToRequest(fileRequest, file)
+
+		then:
+			1 * store.referencedDigestOf(file) >> Optional.present(digest)
+
+		then:
+			1 * store.release(digest)
+			1 * responderMock.respondWithNoContentAndReasonDeleted(response)
+			!file.exists()
+	}
+
+	def 'Always respond with NOT FOUND template to delete request for temporary file of upload in progress'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def HttpFileRequestConsumer consumer = new HttpFileDeleteRequestConsumer(responderMock)
+			def HttpFileRequest fileRequest = Stub()
+			def HttpRequest request = Stub()
+			def HttpResponse response = Mock()
+			def UriToFileMapper mapper = Stub()
+			def RequestLine requestLine = Stub()
+			def temporaryFile = new AtomicUploadPublisher().createTemporaryFile(
+					new File(Files.createTempDirectory("upload").toFile(), "file.txt"))
+		and:
+			fileRequest.request() >> request
+			fileRequest.response() >> response
+			fileRequest.mapper() >> mapper
+			request.getRequestLine() >> requestLine
+			requestLine.uri >> "/" + temporaryFile.name
+			mapper.mapUriRequestPath("/" + temporaryFile.name) >> temporaryFile.absolutePath
+
+		when:
+			consumer.consumeFileRequest(fileRequest)
+
+		then:
+			1 * responderMock.respondWithResourceNotFound(response, _)
+			temporaryFile.exists()
+
+		cleanup:
+			temporaryFile.delete()
+			temporaryFile.parentFile.delete()
+	}
+
 	def 'When file deletion is unsuccsesful respond with Internal Server Error'() {
 		given:
 			def responderMock = Mock(TemplatedHttpResponder)
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer
+
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.MetadataEntityTagGenerator
+import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
+import io.github.kitarek.elasthttpd.plugins.consumers.file.patch.FilePatchMode
+import io.github.kitarek.elasthttpd.plugins.consumers.file.patch.FilePatcher
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.FileUploadWriter
+import org.apache.http.HttpRequest
+import org.apache.http.HttpResponse
+import org.apache.http.HttpVersion
+import org.apache.http.entity.StringEntity
+import org.apache.http.message.BasicHttpEntityEnclosingRequest
+import org.apache.http.message.BasicHttpRequest
+import org.apache.http.message.BasicHttpResponse
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+class HttpFilePatchRequestConsumerSpec extends Specification {
+
+	def root = Files.createTempDirectory("patch").toFile()
+	def responder = Mock(TemplatedHttpResponder)
+	def entityTagGenerator = new MetadataEntityTagGenerator()
+
+	def cleanup() {
+		root.deleteDir()
+	}
+
+	def 'Never cannot create consumer without its dependencies'() {
+		when:
+			new HttpFilePatchRequestConsumer(templatedResponder, patcher, generator)
+
+		then:
+			thrown(NullPointerException)
+
+		where:
+			templatedResponder           | patcher         | generator
+			null                         | createPatcher() | new MetadataEntityTagGenerator()
+			Mock(TemplatedHttpResponder) | null            | new MetadataEntityTagGenerator()
+			Mock(TemplatedHttpResponder) | createPatcher() | null
+	}
+
+	@Unroll
+	def 'Always patches range of file #mode and responds with its new validators'() {
+		given:
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+			def consumer = createConsumer(mode)
+
+		when:
+			def response = consume(consumer, patchRequest("bytes 2-4/*", "abc"))
+
+		then:
+			1 * responder.respondWithNoContentAndReasonPatched(_)
+			file.text == "01abc56789"
+			response.getFirstHeader("ETag").value == entityTagOf(file)
+			response.getFirstHeader("Last-Modified") != null
+
+		where:
+			mode << FilePatchMode.values()
+	}
+
+	def 'Always patches file when If-Match header matches its current version'() {
+		given:
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+			def request = patchRequest("bytes 0-0/*", "a")
+			request.addHeader("If-Match", entityTagOf(file))
+
+		when:
+			consume(createConsumer(FilePatchMode.IN_PLACE), request)
+
+		then:
+			1 * responder.respondWithNoContentAndReasonPatched(_)
+			file.text == "a123456789"
+	}
+
+	def 'Never patches file when If-Match header does not match its current version'() {
+		given:
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+			def consumer = createConsumer(FilePatchMode.IN_PLACE)
+			def staleEntityTag = entityTagOf(file)
+			consume(consumer, patchRequest("bytes 0-0/*", "a"))
+			def request = patchRequest("bytes 1-1/*", "b")
+			request.addHeader("If-Match", staleEntityTag)
+
+		when:
+			def response = consume(consumer, request)
+
+		then:
+			1 * responder.respondWithPreconditionFailed(_, _)
+			0 * responder.respondWithNoContentAndReasonPatched(_)
+			file.text == "a123456789"
+			response.getFirstHeader("ETag").value == entityTagOf(file)
+	}
+
+	def 'Always responds with Range Not Satisfiable to range starting after the end of file'() {
+		given:
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+
+		when:
+			def response = consume(createConsumer(FilePatchMode.IN_PLACE), patchRequest("bytes 11-11/*", "a"))
+
+		then:
+			1 * responder.respondWithRequestedRangeNotSatisfiable(_, _)
+			response.getFirstHeader("Content-Range").value == "bytes */10"
+			file.text == "0123456789"
+	}
+
+	@Unroll
+	def 'Always responds with Bad Request to invalid patch with Content-Range "#contentRange" and body "#body"'() {
+		given:
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+
+		when:
+			consume(createConsumer(FilePatchMode.COPY_ON_WRITE), patchRequest(contentRange, body))
+
+		then:
+			1 * responder.respondWithBadRequest(_, _)
+			file.text == "0123456789"
+
+		where:
+			contentRange  | body
+			"bytes 0-1/*" | "a"
+			"bytes */10"  | ""
+			"bytes 0-1"   | "ab"
+	}
+
+	def 'Always responds with Bad Request to patch without body'() {
+		given:
+			new File(root, "file.txt").text = "0123456789"
+
+		when:
+			consume(createConsumer(FilePatchMode.IN_PLACE), new BasicHttpRequest("PATCH", "/file.txt"))
+
+		then:
+			1 * responder.respondWithBadRequest(_, _)
+	}
+
+	def 'Always responds with Not Found to patch of file that does not exist'() {
+		when:
+			consume(createConsumer(FilePatchMode.IN_PLACE), patchRequest("bytes 0-0/*", "a"))
+
+		then:
+			1 * responder.respondWithResourceNotFound(_, _ as String)
+			root.list().length == 0
+	}
+
+	def 'Always responds with Forbidden to patch of directory'() {
+		given:
+			new File(root, "file.txt").mkdir()
+
+		when:
+			consume(createConsumer(FilePatchMode.IN_PLACE), patchRequest("bytes 0-0/*", "a"))
+
+		then:
+			1 * responder.respondWithResourceForbidden(_, _)
+	}
+
+	private HttpFilePatchRequestConsumer createConsumer(FilePatchMode mode) {
+		new HttpFilePatchRequestConsumer(responder, new FilePatcher(new FileUploadWriter(),
+				new AtomicUploadPublisher(), mode), entityTagGenerator)
+	}
+
+	private static FilePatcher createPatcher() {
+		new FilePatcher(new FileUploadWriter(), new AtomicUploadPublisher(), FilePatchMode.IN_PLACE)
+	}
+
+	private static BasicHttpEntityEnclosingRequest patchRequest(String contentRange, String body) {
+		def request = new BasicHttpEntityEnclosingRequest("PATCH", "/file.txt")
+		request.addHeader("Content-Range", contentRange)
+		request.setEntity(new StringEntity(body, "UTF-8"))
+		request
+	}
+
+	private String entityTagOf(File file) {
+		'"' + entityTagGenerator.generateEntityTag(file, file.length(), file.lastModified()) + '"'
+	}
+
+	private HttpResponse consume(HttpFilePatchRequestConsumer consumer, HttpRequest request) {
+		def HttpFileRequest fileRequest = Stub()
+		def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		fileRequest.request() >> request
+		fileRequest.response() >> response
+		fileRequest.mapper() >> new UriToFileMapper(root.absolutePath)
+		consumer.consumeFileRequest(fileRequest)
+		response
+	}
+}
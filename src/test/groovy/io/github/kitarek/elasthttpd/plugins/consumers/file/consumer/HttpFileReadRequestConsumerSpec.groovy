@@ -19,8 +19,11 @@ package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
 import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.HttpDirectoryRequestConsumer
 import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadata
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadataProvider
 import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.HttpFileProducer
 import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher
 import org.apache.http.HttpRequest
 import org.apache.http.HttpResponse
 import org.apache.http.RequestLine
@@ -28,9 +31,11 @@ import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.Paths
 
+import static io.github.kitarek.elasthttpd.commons.Optional.present
 import static java.util.UUID.randomUUID
 
 class HttpFileReadRequestConsumerSpec extends Specification {
@@ -176,7 +181,7 @@ class HttpFileReadRequestConsumerSpec extends Specification {
 
 		then:
 			1 * mapper.mapUriRequestPath(requestedUri) >> existingPathToFile
-			1 * producer.sendFileOverHttpResponse(_, response) >> { args ->
+			1 * producer.sendFileOverHttpResponse(_, request, response) >> { args ->
 				passedFileArgumentToProducer = args[0]
 			}
 		and:
@@ -185,6 +190,101 @@ class HttpFileReadRequestConsumerSpec extends Specification {
 			passedFileArgumentToProducer.absolutePath == existingPathToFile
 	}
 
+	def 'Always takes metadata of requested file from provider and passes it to HttpFileProducer'() {
+		given:
+			def HttpFileProducer producer = Mock()
+			def FileMetadataProvider metadataProvider = Mock()
+			def HttpFileRequestConsumer consumer = new HttpFileReadRequestConsumer(producer,
+					Mock(TemplatedHttpResponder), Mock(HttpDirectoryRequestConsumer), present(metadataProvider))
+			def HttpFileRequest fileRequest = Stub()
+		and:
+			def HttpRequest request = Mock()
+			def HttpResponse response = Mock()
+			def UriToFileMapper mapper = Stub()
+			def RequestLine requestLine = Stub()
+		and:
+			fileRequest.request() >> request
+			fileRequest.response() >> response
+			fileRequest.mapper() >> mapper
+			request.getRequestLine() >> requestLine
+			requestLine.uri >> "/cached/file"
+			mapper.mapUriRequestPath("/cached/file") >> "/not/existing/cached/file"
+		and:
+			def metadata = new FileMetadata(true, false, true, true, 10, 20)
+
+		when:
+			consumer.consumeFileRequest(fileRequest)
+
+		then:
+			1 * metadataProvider.provideMetadata(new File("/not/existing/cached/file")) >> metadata
+			1 * producer.sendFileOverHttpResponse(new File("/not/existing/cached/file"), metadata, request, response)
+			0 * producer.sendFileOverHttpResponse(_, _, _)
+	}
+
+	def 'Always responds with 404 code when provider describes requested file as not existing'() {
+		given:
+			def TemplatedHttpResponder templatedHttpResponder = Mock()
+			def HttpFileProducer producer = Mock()
+			def FileMetadataProvider metadataProvider = Stub()
+			def HttpFileRequestConsumer consumer = new HttpFileReadRequestConsumer(producer, templatedHttpResponder,
+					Mock(HttpDirectoryRequestConsumer), present(metadataProvider))
+			def HttpFileRequest fileRequest = Stub()
+		and:
+			def HttpRequest request = Stub()
+			def HttpResponse response = Mock()
+			def UriToFileMapper mapper = Stub()
+			def RequestLine requestLine = Stub()
+		and:
+			fileRequest.request() >> request
+			fileRequest.response() >> response
+			fileRequest.mapper() >> mapper
+			request.getRequestLine() >> requestLine
+			requestLine.uri >> "/build.gradle"
+			mapper.mapUriRequestPath("/build.gradle") >> currentExistingProjectDirectory() + "/build.gradle"
+			metadataProvider.provideMetadata(_) >> FileMetadata.NOT_EXISTING
+
+		when:
+			consumer.consumeFileRequest(fileRequest)
+
+		then:
+			1 * templatedHttpResponder.respondWithResourceNotFound(response, _)
+			0 * producer._
+	}
+
+	def 'Always responds with 404 code to read request for temporary file of upload in progress'() {
+		given:
+			def templatedHttpResponder = Mock(TemplatedHttpResponder)
+			def HttpFileProducer producer = Mock()
+			def HttpFileRequestConsumer consumer = new HttpFileReadRequestConsumer(producer, templatedHttpResponder,
+					Mock(HttpDirectoryRequestConsumer))
+			def HttpFileRequest fileRequest = Stub()
+			def temporaryFile = new AtomicUploadPublisher().createTemporaryFile(
+					new File(Files.createTempDirectory("upload").toFile(), "file.txt"))
+		and:
+			def HttpRequest request = Stub()
+			def HttpResponse response = Mock()
+			def UriToFileMapper mapper = Stub()
+			def RequestLine requestLine = Stub()
+		and:
+			fileRequest.request() >> request
+			fileRequest.response() >> response
+			fileRequest.mapper() >> mapper
+			request.getRequestLine() >> requestLine
+			requestLine.uri >> "/" + temporaryFile.name
+			mapper.mapUriRequestPath("/" + temporaryFile.name) >> temporaryFile.absolutePath
+
+		when:
+			consumer.consumeFileRequest(fileRequest)
+
+		then:
+			1 * templatedHttpResponder.respondWithResourceNotFound(response, _)
+			0 * producer._
+
+		cleanup:
+			temporaryFile.delete()
+			temporaryFile.parentFile.delete()
+	}
+
 	@Shared
 	private currentExistingProjectDirectory = {
 		Path currentRelativePath = Paths.get("");
@@ -18,6 +18,7 @@
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer
 
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.MetadataEntityTagGenerator
 import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.HttpDirectoryRequestConsumer
 import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.HttpFileProducer
 import spock.lang.Specification
@@ -83,6 +84,21 @@ class HttpFileRequestConsumerFactorySpec extends Specification {
 			consumer instanceof HttpFileWriteRequestConsumer
 	}
 
+	def 'Always can create patch operation file request consumer'() {
+		given:
+			def producer = Stub(HttpFileProducer)
+			producer.getEntityTagGenerator() >> new MetadataEntityTagGenerator()
+			def HttpFileRequestConsumerFactory factory = new HttpFileRequestConsumerFactory(
+					Mock(TemplatedHttpResponder), Mock(HttpDirectoryRequestConsumer), producer)
+
+		when:
+			def HttpFileRequestConsumer consumer = factory.createConsumerForPatchOperation()
+
+		then:
+			consumer != null
+			consumer instanceof HttpFilePatchRequestConsumer
+	}
+
 	def 'Always can create delete operation file request consumer'() {
 		given:
 			def HttpFileRequestConsumerFactory factory = new HttpFileRequestConsumerFactory(
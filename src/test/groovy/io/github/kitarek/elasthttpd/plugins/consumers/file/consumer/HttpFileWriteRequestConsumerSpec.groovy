@@ -16,22 +16,38 @@
  */
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer
+import io.github.kitarek.elasthttpd.commons.Base64Codec
+import io.github.kitarek.elasthttpd.commons.Optional
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
 import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStore
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStoreSpec
 import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentAddressedStore
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentAddressedStoreSpec
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.FileUploadWriter
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.PartialUploads
+import org.apache.http.Header
 import org.apache.http.HttpEntity
 import org.apache.http.HttpEntityEnclosingRequest
 import org.apache.http.HttpRequest
 import org.apache.http.HttpResponse
 import org.apache.http.RequestLine
+import org.apache.http.entity.BasicHttpEntity
 import org.apache.http.entity.StringEntity
+import org.apache.http.message.BasicHeader
+import spock.lang.Requires
 import spock.lang.Shared
 import spock.lang.Specification
+import spock.lang.Unroll
 
 import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.Paths
+import java.security.MessageDigest
 
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFileName
 import static java.nio.charset.StandardCharsets.UTF_8
 import static java.util.UUID.randomUUID
 
@@ -223,56 +239,264 @@ class HttpFileWriteRequestConsumerSpec extends Specification {
 			notThrown()
 	}
 
-	def 'Write the stream itself is not fatal for request processing'() {
+	def 'Write the body itself is not fatal for request processing'() {
 		given:
 			def responderMock = Mock(TemplatedHttpResponder)
 			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(responderMock)
 			def File file = Mock()
-			def OutputStream outputStream = Mock()
+			def RandomAccessFile randomAccessFile = Mock()
 			def HttpEntity entity = Mock()
 
 		when:
-			consumer.writeAndFlush(file, entity, outputStream)
+			def written = consumer.write(file, entity, randomAccessFile)
 
 		then:
-			1 * entity.writeTo(outputStream) >> {
-				throw new IOException();
-			}
-		and:
-			1 * outputStream.flush() >> {
+			1 * entity.getContentLength() >> -1
+			1 * entity.getContent() >> {
 				throw new IOException();
 			}
 		and:
-			1 * outputStream.close() >> {
+			1 * randomAccessFile.close() >> {
 				throw new IOException();
 			}
 		and:
+			!written
 			notThrown()
 	}
 
-	def 'Write the stream itself is not fatal for request processing (flush correct)'() {
+	def 'Always respond with "Internal Server Error" template when body is shorter than declared'() {
 		given:
 			def responderMock = Mock(TemplatedHttpResponder)
 			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(responderMock)
-			def File file = Mock()
-			def OutputStream outputStream = Mock()
-			def HttpEntity entity = Mock()
+			def HttpFileRequest fileRequest = Stub()
+		and:
+			def HttpEntityEnclosingRequest request = Mock()
+			def HttpResponse response = Mock()
+			def UriToFileMapper mapper = Mock()
+		and:
+			fileRequest.request() >> request
+			fileRequest.response() >> response
+			fileRequest.mapper() >> mapper
+		and:
+			def requestedUri = DIR_WITH_TEST_RESOURCES + randomUUID()
+			def RequestLine requestLine = Mock()
+			requestLine.uri >> requestedUri
+			request.getRequestLine() >> requestLine
+		and:
+			def entity = new BasicHttpEntity()
+			entity.content = new ByteArrayInputStream("short".bytes)
+			entity.contentLength = 10
+			request.getEntity() >> entity
+		and:
+			def existingPathToFile = currentExistingProjectDirectory() + DIR_WITH_TEST_RESOURCES + randomUUID()
 
 		when:
-			consumer.writeAndFlush(file, entity, outputStream)
+			consumer.consumeFileRequest(fileRequest)
 
 		then:
-			1 * entity.writeTo(outputStream) >> {
-				throw new IOException();
-			}
+			1 * mapper.mapUriRequestPath(requestedUri) >> existingPathToFile
+			1 * responderMock.respondWithInternalServerError(response, { it.contains(requestedUri) })
+			0 * responderMock.respondThatResourceIsCreated(_)
 		and:
-			1 * outputStream.flush()
+			!new File(existingPathToFile).exists()
+			new File(existingPathToFile).parentFile.list().findAll { isTemporaryFileName(it) }.isEmpty()
+
+		cleanup:
+			new File(existingPathToFile).delete()
+	}
+
+	def 'Always keeps the previous version of file when upload cannot be completed'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(responderMock)
+			def directory = Files.createTempDirectory("upload").toFile()
+			def file = new File(directory, "file.txt")
+			file.text = "previous"
+			def HttpFileRequest fileRequest = Stub()
+			def HttpEntityEnclosingRequest request = Stub()
+			def UriToFileMapper mapper = Stub()
+			def RequestLine requestLine = Stub()
 		and:
-			1 * outputStream.close() >> {
-				throw new IOException();
-			}
+			fileRequest.request() >> request
+			fileRequest.response() >> Mock(HttpResponse)
+			fileRequest.mapper() >> mapper
+			mapper.mapUriRequestPath(_) >> file.absolutePath
+			requestLine.uri >> "/file.txt"
+			request.getRequestLine() >> requestLine
+			request.getFirstHeader(_) >> null
 		and:
-			notThrown()
+			def entity = new BasicHttpEntity()
+			entity.content = new ByteArrayInputStream("next".bytes)
+			entity.contentLength = 100
+			request.getEntity() >> entity
+
+		when:
+			consumer.consumeFileRequest(fileRequest)
+
+		then:
+			1 * responderMock.respondWithInternalServerError(_, _)
+		and:
+			file.text == "previous"
+			directory.list() == ["file.txt"] as String[]
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	def 'Always respond with NOT FOUND template and keeps temporary file of upload in progress when it is requested'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(responderMock)
+			def directory = Files.createTempDirectory("upload").toFile()
+			def temporaryFile = new AtomicUploadPublisher().createTemporaryFile(new File(directory, "file.txt"))
+			temporaryFile.text = "in progress"
+			def HttpFileRequest fileRequest = Stub()
+			def HttpEntityEnclosingRequest request = Stub()
+			def UriToFileMapper mapper = Stub()
+			def RequestLine requestLine = Stub()
+		and:
+			fileRequest.request() >> request
+			fileRequest.response() >> Mock(HttpResponse)
+			fileRequest.mapper() >> mapper
+			mapper.mapUriRequestPath(_) >> temporaryFile.absolutePath
+			requestLine.uri >> "/" + temporaryFile.name
+			request.getRequestLine() >> requestLine
+			request.getEntity() >> new StringEntity("overwritten")
+
+		when:
+			consumer.consumeFileRequest(fileRequest)
+
+		then:
+			1 * responderMock.respondWithResourceNotFound(_, _)
+			0 * responderMock.respondThatResourceIsCreated(_)
+		and:
+			temporaryFile.text == "in progress"
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	@Unroll
+	def 'Always respond with "BAD REQUEST" template and keeps the previous version of file when #header header is "#value"'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(responderMock)
+			def directory = Files.createTempDirectory("upload").toFile()
+			def file = new File(directory, "file.txt")
+			file.text = "previous"
+
+		when:
+			consumeWholeFile(consumer, file, "next", new BasicHeader(header, value))
+
+		then:
+			1 * responderMock.respondWithBadRequest(_, _)
+			0 * responderMock.respondThatResourceIsCreated(_)
+		and:
+			file.text == "previous"
+			directory.list() == ["file.txt"] as String[]
+
+		cleanup:
+			directory.deleteDir()
+
+		where:
+			header        | value
+			"Content-MD5" | encodedDigest("MD5", "other")
+			"Content-MD5" | "not a digest"
+			"Digest"      | "SHA-256=" + encodedDigest("SHA-256", "other")
+	}
+
+	def 'Always creates a file which body matches its declared digest'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(responderMock)
+			def directory = Files.createTempDirectory("upload").toFile()
+			def file = new File(directory, "file.txt")
+
+		when:
+			consumeWholeFile(consumer, file, "next", new BasicHeader("Content-MD5", encodedDigest("MD5", "next")))
+
+		then:
+			1 * responderMock.respondThatResourceIsCreated(_)
+			file.text == "next"
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	@Requires({ ContentDigestStoreSpec.isUserDefinedAttributeSupported() })
+	def 'Always stores SHA-256 digest of uploaded file'() {
+		given:
+			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(Mock(TemplatedHttpResponder))
+			def directory = Files.createTempDirectory("upload").toFile()
+			def file = new File(directory, "file.txt")
+
+		when:
+			consumeWholeFile(consumer, file, "content", null)
+
+		then:
+			new ContentDigestStore().load(file, file.length(), file.lastModified()).get() ==
+					MessageDigest.getInstance("SHA-256").digest("content".getBytes(UTF_8))
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	@Requires({ ContentAddressedStoreSpec.isHardLinkCountSupported() })
+	def 'Always stores the same content of uploaded files once and skips writing body with declared stored digest'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def directory = Files.createTempDirectory("upload").toFile()
+			def store = new ContentAddressedStore(new File(directory, "blobs"))
+			def HttpFileRequestConsumer consumer = deduplicatingConsumer(responderMock, store)
+			def first = new File(directory, "a")
+			def second = new File(directory, "b")
+
+		when:
+			consumeWholeFile(consumer, first, "content", null)
+			consumeWholeFile(consumer, second, "content",
+					new BasicHeader("Digest", "SHA-256=" + encodedDigest("SHA-256", "content")))
+
+		then:
+			2 * responderMock.respondThatResourceIsCreated(_)
+			second.text == "content"
+			Files.isSameFile(first.toPath(), second.toPath())
+			store.storedBlobCount == 1
+			store.skippedWriteCount == 1
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	@Requires({ ContentAddressedStoreSpec.isHardLinkCountSupported() })
+	def 'Always releases blob of replaced file and never publishes stored content not matching body'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def directory = Files.createTempDirectory("upload").toFile()
+			def store = new ContentAddressedStore(new File(directory, "blobs"))
+			def HttpFileRequestConsumer consumer = deduplicatingConsumer(responderMock, store)
+			def file = new File(directory, "a")
+			consumeWholeFile(consumer, file, "content", null)
+			def blob = store.blobOf(MessageDigest.getInstance("SHA-256").digest("content".getBytes(UTF_8)))
+
+		when:
+			consumeWholeFile(consumer, new File(directory, "b"), "other",
+					new BasicHeader("Digest", "SHA-256=" + encodedDigest("SHA-256", "content")))
+
+		then:
+			1 * responderMock.respondWithBadRequest(_, _)
+			!new File(directory, "b").exists()
+			ContentAddressedStore.linkCountOf(blob) == 2
+
+		when:
+			consumeWholeFile(consumer, file, "other", null)
+
+		then:
+			file.text == "other"
+			!blob.exists()
+			store.removedBlobCount == 1
+
+		cleanup:
+			directory.deleteDir()
 	}
 
 	def 'Always creates a file based on entity content and respond with "CREATED" status template to write request *with entity* for requested URI that is existing path but not to an existing directory'() {
@@ -325,6 +549,159 @@ class HttpFileWriteRequestConsumerSpec extends Specification {
 	}
 
 
+	def 'Always accepts parts of file with Content-Range and creates the file when all parts are received'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(responderMock)
+			def directory = Files.createTempDirectory("upload").toFile()
+			def file = new File(directory, "file.txt")
+
+		when:
+			consumePart(consumer, file, "bytes 5-9/10", "56789")
+
+		then:
+			1 * responderMock.respondThatRequestIsAccepted(_)
+			1 * _.setHeader("Range", "bytes=5-9")
+			!file.exists()
+
+		when:
+			consumePart(consumer, file, "bytes */10", null)
+
+		then:
+			1 * responderMock.respondThatRequestIsAccepted(_)
+			1 * _.setHeader("Range", "bytes=5-9")
+
+		when:
+			consumePart(consumer, file, "bytes 0-4/10", "01234")
+
+		then:
+			1 * responderMock.respondThatResourceIsCreated(_)
+			file.text == "0123456789"
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	@Unroll
+	def 'Always respond with "BAD REQUEST" template to part with invalid Content-Range "#contentRange" or body'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(responderMock)
+			def directory = Files.createTempDirectory("upload").toFile()
+
+		when:
+			consumePart(consumer, new File(directory, "file.txt"), contentRange, body)
+
+		then:
+			1 * responderMock.respondWithBadRequest(_, _)
+			directory.list().length == 0
+
+		cleanup:
+			directory.deleteDir()
+
+		where:
+			contentRange    | body
+			"bytes 0-4"     | "01234"
+			"bytes 0-4/10"  | "0123"
+			"bytes 0-4/10"  | null
+			"bytes */10"    | "01234"
+	}
+
+	def 'Always respond with "CONFLICT" template to part of file which upload with another length is in progress'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(responderMock)
+			def directory = Files.createTempDirectory("upload").toFile()
+			def file = new File(directory, "file.txt")
+			consumePart(consumer, file, "bytes 0-4/10", "01234")
+
+		when:
+			consumePart(consumer, file, "bytes 0-4/20", "01234")
+
+		then:
+			1 * responderMock.respondWithConflict(_, _)
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	def 'Never receives part which body does not match its declared digest'() {
+		given:
+			def responderMock = Mock(TemplatedHttpResponder)
+			def HttpFileRequestConsumer consumer = new HttpFileWriteRequestConsumer(responderMock)
+			def directory = Files.createTempDirectory("upload").toFile()
+			def file = new File(directory, "file.txt")
+
+		when:
+			consumePart(consumer, file, "bytes 0-4/10", "01234",
+					new BasicHeader("Content-MD5", encodedDigest("MD5", "other")))
+
+		then:
+			1 * responderMock.respondWithBadRequest(_, _)
+
+		when:
+			consumePart(consumer, file, "bytes */10", null)
+
+		then:
+			1 * responderMock.respondThatRequestIsAccepted(_)
+			0 * _.setHeader("Range", _)
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	private void consumeWholeFile(HttpFileRequestConsumer consumer, File file, String body, Header header) {
+		def HttpFileRequest fileRequest = Stub()
+		def HttpEntityEnclosingRequest request = Stub()
+		def UriToFileMapper mapper = Stub()
+		def RequestLine requestLine = Stub()
+		fileRequest.request() >> request
+		fileRequest.response() >> Mock(HttpResponse)
+		fileRequest.mapper() >> mapper
+		mapper.mapUriRequestPath(_) >> file.absolutePath
+		requestLine.uri >> "/" + file.name
+		request.getRequestLine() >> requestLine
+		if (header != null)
+			request.getFirstHeader(header.name) >> header
+		request.getFirstHeader(_) >> null
+		request.getEntity() >> new StringEntity(body, "text/plain", "UTF-8")
+		consumer.consumeFileRequest(fileRequest)
+	}
+
+	private static HttpFileWriteRequestConsumer deduplicatingConsumer(TemplatedHttpResponder responder,
+																	  ContentAddressedStore store) {
+		def writer = new FileUploadWriter()
+		def publisher = new AtomicUploadPublisher()
+		new HttpFileWriteRequestConsumer(responder, writer, publisher, new PartialUploads(writer, publisher),
+				Optional.present(store))
+	}
+
+	private static String encodedDigest(String algorithm, String body) {
+		Base64Codec.encode(MessageDigest.getInstance(algorithm).digest(body.getBytes(UTF_8)))
+	}
+
+	private HttpResponse consumePart(HttpFileRequestConsumer consumer, File file, String contentRange, String body,
+									 Header... headers) {
+		def HttpFileRequest fileRequest = Stub()
+		def HttpEntityEnclosingRequest request = Stub()
+		def HttpResponse response = Mock()
+		def UriToFileMapper mapper = Stub()
+		def RequestLine requestLine = Stub()
+		fileRequest.request() >> request
+		fileRequest.response() >> response
+		fileRequest.mapper() >> mapper
+		mapper.mapUriRequestPath(_) >> file.absolutePath
+		requestLine.uri >> "/" + file.name
+		request.getRequestLine() >> requestLine
+		request.getFirstHeader("Content-Range") >> new BasicHeader("Content-Range", contentRange)
+		for (Header header : headers)
+			request.getFirstHeader(header.name) >> header
+		request.getFirstHeader(_) >> null
+		request.getEntity() >> (body == null ? null : new StringEntity(body, "text/plain", "UTF-8"))
+		consumer.consumeFileRequest(fileRequest)
+		response
+	}
+
 	@Shared
 	private currentExistingProjectDirectory = {
 		Path currentRelativePath = Paths.get("");
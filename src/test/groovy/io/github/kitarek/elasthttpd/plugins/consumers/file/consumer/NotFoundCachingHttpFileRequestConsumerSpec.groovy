@@ -0,0 +1,100 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer
+
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.NotFoundCache
+import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import org.apache.http.HttpVersion
+import org.apache.http.message.BasicHttpRequest
+import org.apache.http.message.BasicHttpResponse
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class NotFoundCachingHttpFileRequestConsumerSpec extends Specification {
+
+	@Unroll
+	def 'Never cannot create consumer with null dependencies'() {
+		when:
+			new NotFoundCachingHttpFileRequestConsumer(consumer, cache, responder)
+		then:
+			thrown(NullPointerException)
+
+		where:
+			consumer                      | cache                   | responder
+			null                          | new NotFoundCache(1024) | new TemplatedHttpResponder()
+			Stub(HttpFileRequestConsumer) | null                    | new TemplatedHttpResponder()
+			Stub(HttpFileRequestConsumer) | new NotFoundCache(1024) | null
+	}
+
+	def 'Always answers repeated requests for missing path from cache without decorated consumer and mapping'() {
+		given:
+			def HttpFileRequestConsumer decoratedConsumer = Mock()
+			def UriToFileMapper mapper = Mock()
+			def responder = new TemplatedHttpResponder()
+			def consumer = new NotFoundCachingHttpFileRequestConsumer(decoratedConsumer, new NotFoundCache(4096),
+					responder)
+			def first = fileRequest("/missing?first", mapper)
+			def second = fileRequest("/missing?second", mapper)
+
+		when:
+			consumer.consumeFileRequest(first)
+
+		then:
+			1 * decoratedConsumer.consumeFileRequest(first) >> {
+				responder.respondWithResourceNotFound(first.response(), "404: /missing")
+			}
+			1 * mapper.mapUriRequestPath("/missing?first") >> "/root/missing"
+
+		when:
+			consumer.consumeFileRequest(second)
+
+		then:
+			0 * decoratedConsumer._
+			0 * mapper._
+			second.response().statusLine.statusCode == 404
+			second.response().entity.content.text == "404: /missing"
+	}
+
+	def 'Never remembers paths that were found'() {
+		given:
+			def HttpFileRequestConsumer decoratedConsumer = Mock()
+			def cache = new NotFoundCache(4096)
+			def consumer = new NotFoundCachingHttpFileRequestConsumer(decoratedConsumer, cache,
+					new TemplatedHttpResponder())
+
+		when:
+			consumer.consumeFileRequest(fileRequest("/found", Stub(UriToFileMapper)))
+			consumer.consumeFileRequest(fileRequest("/found", Stub(UriToFileMapper)))
+
+		then:
+			2 * decoratedConsumer.consumeFileRequest(_)
+			cache.cache.size() == 0
+	}
+
+	private HttpFileRequest fileRequest(String uri, UriToFileMapper fileMapper) {
+		def HttpFileRequest fileRequest = Stub()
+		def request = new BasicHttpRequest("GET", uri)
+		def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		fileRequest.request() >> request
+		fileRequest.response() >> response
+		fileRequest.mapper() >> fileMapper
+		return fileRequest
+	}
+}
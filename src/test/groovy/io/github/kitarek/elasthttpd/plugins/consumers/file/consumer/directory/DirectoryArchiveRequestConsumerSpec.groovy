@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory
+
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.archive.DirectoryArchiveEntity
+import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.InMemoryFileStorage
+import org.apache.http.HttpResponse
+import org.apache.http.HttpVersion
+import org.apache.http.message.BasicHttpRequest
+import org.apache.http.message.BasicHttpResponse
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.FileServerPluginBuilder.currentDirectory
+
+class DirectoryArchiveRequestConsumerSpec extends Specification {
+
+	def storage = new InMemoryFileStorage()
+	def directoryRequestConsumer = Mock(HttpDirectoryRequestConsumer)
+	def consumer = new DirectoryArchiveRequestConsumer(storage, new TemplatedHttpResponder(),
+			directoryRequestConsumer)
+
+	def setup() {
+		storage.write("/docs/a.txt", new ByteArrayInputStream("content".bytes), 7)
+	}
+
+	@Unroll
+	def 'Never cannot create consumer with null dependencies'() {
+		when:
+			new DirectoryArchiveRequestConsumer(fileStorage, responder, otherConsumer)
+
+		then:
+			thrown(NullPointerException)
+
+		where:
+			fileStorage               | responder                    | otherConsumer
+			null                      | new TemplatedHttpResponder() | Stub(HttpDirectoryRequestConsumer)
+			new InMemoryFileStorage() | null                         | Stub(HttpDirectoryRequestConsumer)
+			new InMemoryFileStorage() | new TemplatedHttpResponder() | null
+	}
+
+	@Unroll
+	def 'Always sends #token archive of requested directory as attachment'() {
+		when:
+			def response = serve(uri)
+
+		then:
+			response.statusLine.statusCode == 200
+			response.entity instanceof DirectoryArchiveEntity
+			response.entity.contentType.value == mimeType
+			response.getFirstHeader("Content-Disposition").value == "attachment; filename=\"$fileName\""
+			0 * directoryRequestConsumer.serveExistingDirectoryElement(_, _)
+
+		where:
+			token | uri                  | mimeType            | fileName
+			"tar" | "/docs?archive=tar"  | "application/x-tar" | "docs.tar"
+			"zip" | "/docs/?archive=zip" | "application/zip"   | "docs.zip"
+			"tar" | "/?archive=tar"      | "application/x-tar" | "archive.tar"
+	}
+
+	def 'Always sends file name of archive that is not ASCII also encoded'() {
+		given:
+			storage.write("/\u017c\u00f3\u0142w/a.txt", new ByteArrayInputStream("content".bytes), 7)
+
+		when:
+			def response = serve("/%C5%BC%C3%B3%C5%82w?archive=zip")
+
+		then:
+			response.getFirstHeader("Content-Disposition").value ==
+					"attachment; filename=\"___w.zip\"; filename*=UTF-8''%C5%BC%C3%B3%C5%82w.zip"
+	}
+
+	def 'Always answers unknown archive format with BAD REQUEST'() {
+		when:
+			def response = serve("/docs?archive=rar")
+
+		then:
+			response.statusLine.statusCode == 400
+			0 * directoryRequestConsumer.serveExistingDirectoryElement(_, _)
+	}
+
+	@Unroll
+	def 'Always passes directory request #description to the wrapped consumer'() {
+		when:
+			serve(uri)
+
+		then:
+			1 * directoryRequestConsumer.serveExistingDirectoryElement(_, new File("/docs"))
+
+		where:
+			description                   | uri
+			"without query"               | "/docs"
+			"without archive parameter"   | "/docs?format=json"
+			"with malformed query string" | "/docs?archive=%zz"
+	}
+
+	private HttpResponse serve(String uri) {
+		def request = new BasicHttpRequest("GET", uri)
+		def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		def HttpFileRequest fileRequest = Stub()
+		fileRequest.request() >> request
+		fileRequest.response() >> response
+		fileRequest.mapper() >> new UriToFileMapper(currentDirectory())
+		consumer.serveExistingDirectoryElement(fileRequest, new File("/docs"))
+		return response
+	}
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory
+
+import groovy.json.JsonSlurper
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListing
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingProvider
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import org.apache.http.HttpResponse
+import org.apache.http.HttpVersion
+import org.apache.http.message.BasicHttpRequest
+import org.apache.http.message.BasicHttpResponse
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+import static io.github.kitarek.elasthttpd.commons.Optional.present
+
+class DirectoryListingRequestConsumerSpec extends Specification {
+
+	def directory = Files.createTempDirectory("listing").toFile()
+
+	def setup() {
+		["c": "ccc", "a": "a", "b": "bb"].each { name, content -> new File(directory, name).text = content }
+	}
+
+	def cleanup() {
+		directory.deleteDir()
+	}
+
+	@Unroll
+	def 'Never cannot create consumer with null dependencies'() {
+		when:
+			new DirectoryListingRequestConsumer(responder, provider)
+
+		then:
+			thrown(NullPointerException)
+
+		where:
+			responder                    | provider
+			null                         | present(Stub(DirectoryListingProvider))
+			new TemplatedHttpResponder() | null
+	}
+
+	def 'Always lists directory as HTML page by default'() {
+		given:
+			def consumer = new DirectoryListingRequestConsumer(new TemplatedHttpResponder())
+
+		when:
+			def response = serve(consumer, "/dir")
+
+		then:
+			response.statusLine.statusCode == 200
+			response.entity.contentType.value == "text/html; charset=UTF-8"
+			response.getFirstHeader("Vary").value == "Accept"
+			def html = response.entity.content.getText("UTF-8")
+			html.contains('<a href="/dir/a">a</a>')
+			html.indexOf('/dir/a"') < html.indexOf('/dir/b"')
+			html.indexOf('/dir/b"') < html.indexOf('/dir/c"')
+	}
+
+	@Unroll
+	def 'Always lists directory as JSON when requested with #description'() {
+		given:
+			def consumer = new DirectoryListingRequestConsumer(new TemplatedHttpResponder())
+
+		when:
+			def response = serve(consumer, uri, accept)
+
+		then:
+			response.entity.contentType.value == "application/json; charset=UTF-8"
+			new JsonSlurper().parse(response.entity.content).entries*.name == ["a", "b", "c"]
+
+		where:
+			description         | uri                 | accept
+			"format parameter"  | "/dir/?format=json" | null
+			"Accept header"     | "/dir/"             | "application/json, text/plain"
+	}
+
+	def 'Always pages through listing sorted by size in descending order using next page cursors'() {
+		given:
+			def consumer = new DirectoryListingRequestConsumer(new TemplatedHttpResponder())
+
+		when:
+			def firstPage = new JsonSlurper().parse(
+					serve(consumer, "/dir/?format=json&sort=size&order=desc&limit=2").entity.content)
+			def secondPage = new JsonSlurper().parse(serve(consumer, firstPage.next).entity.content)
+
+		then:
+			firstPage.total == 3
+			firstPage.entries*.name == ["c", "b"]
+			firstPage.next == "/dir/?sort=size&order=desc&limit=2&format=json&after=2%3Ab"
+			secondPage.entries*.name == ["a"]
+			secondPage.next == null
+	}
+
+	def 'Always takes listing from provider instead of scanning directory'() {
+		given:
+			def DirectoryListingProvider provider = Mock()
+			def consumer = new DirectoryListingRequestConsumer(new TemplatedHttpResponder(), present(provider))
+
+		when:
+			def response = serve(consumer, "/dir/?format=json")
+
+		then:
+			1 * provider.provideListing(directory) >> new DirectoryListing([])
+			new JsonSlurper().parse(response.entity.content).total == 0
+	}
+
+	def 'Always responds with internal server error when directory cannot be listed'() {
+		given:
+			def DirectoryListingProvider provider = Stub()
+			def consumer = new DirectoryListingRequestConsumer(new TemplatedHttpResponder(), present(provider))
+			provider.provideListing(_) >> { throw new IOException("Cannot read") }
+
+		when:
+			def response = serve(consumer, "/dir/")
+
+		then:
+			response.statusLine.statusCode == 500
+	}
+
+	@Unroll
+	def 'Always responds with bad request for incorrect query #query'() {
+		given:
+			def DirectoryListingProvider provider = Mock()
+			def consumer = new DirectoryListingRequestConsumer(new TemplatedHttpResponder(), present(provider))
+
+		when:
+			def response = serve(consumer, "/dir/?" + query)
+
+		then:
+			0 * provider._
+			response.statusLine.statusCode == 400
+
+		where:
+			query << ["sort=owner", "order=random", "limit=0", "limit=10001", "limit=x", "sort=size&after=x",
+					  "format=xml", "after=%zz"]
+	}
+
+	private HttpResponse serve(DirectoryListingRequestConsumer consumer, String uri, String accept = null) {
+		def request = new BasicHttpRequest("GET", uri)
+		if (accept != null)
+			request.addHeader("Accept", accept)
+		def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		def HttpFileRequest fileRequest = Stub()
+		fileRequest.request() >> request
+		fileRequest.response() >> response
+		consumer.serveExistingDirectoryElement(fileRequest, directory)
+		return response
+	}
+}
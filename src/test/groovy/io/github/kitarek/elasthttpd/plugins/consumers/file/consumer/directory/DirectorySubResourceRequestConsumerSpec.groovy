@@ -16,8 +16,12 @@
  */
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory
+import io.github.kitarek.elasthttpd.commons.Optional
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.DirectoryIndexCache
 import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadata
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadataProvider
 import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.HttpFileProducer
 import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
 import org.apache.http.HttpRequest
@@ -27,6 +31,7 @@ import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
 
+import java.nio.file.Files
 import java.nio.file.Path
 import java.nio.file.Paths
 
@@ -152,7 +157,7 @@ class DirectorySubResourceRequestConsumerSpec extends Specification {
 			consumer.serveExistingDirectoryElement(fileRequest, new File(currentExistingProjectDirectory()))
 
 		then:
-			1 * producer.sendFileOverHttpResponse(_, response) >> { args ->
+			1 * producer.sendFileOverHttpResponse(_, request, response) >> { args ->
 				passedFileArgumentToProducer = args[0]
 			}
 		and:
@@ -161,6 +166,173 @@ class DirectorySubResourceRequestConsumerSpec extends Specification {
 			passedFileArgumentToProducer.absolutePath == existingPathToFile
 	}
 
+	@Unroll
+	def 'Never cannot create instance serving first existing subresource without valid subresources: #subResources'() {
+		when:
+			new DirectorySubResourceRequestConsumer(Mock(HttpFileProducer), Mock(TemplatedHttpResponder), subResources,
+					Optional.<FileMetadataProvider>empty(), Optional.<DirectoryIndexCache>empty())
+
+		then:
+			thrown(exception)
+
+		where:
+			subResources         | exception
+			null                 | NullPointerException
+			[]                   | IllegalArgumentException
+			["index.html", null] | IllegalArgumentException
+	}
+
+	def 'Always serves the first existing subresource and responds with "NOT FOUND" when none exists'() {
+		given:
+			def HttpFileProducer producer = Mock()
+			def TemplatedHttpResponder templatedHttpResponder = Mock()
+			def consumer = new DirectorySubResourceRequestConsumer(producer, templatedHttpResponder,
+					["index.html", "index.htm"], Optional.<FileMetadataProvider>empty(),
+					Optional.<DirectoryIndexCache>empty())
+			def fileRequest = stubFileRequest()
+			def directory = Files.createTempDirectory("index").toFile()
+
+		when:
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+
+		then:
+			1 * templatedHttpResponder.respondWithResourceNotFound(fileRequest.response(), _)
+			0 * producer.sendFileOverHttpResponse(*_)
+
+		when:
+			new File(directory, "index.htm").createNewFile()
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+
+		then:
+			1 * producer.sendFileOverHttpResponse(new File(directory, "index.htm"), fileRequest.request(),
+					fileRequest.response())
+
+		when:
+			new File(directory, "index.html").createNewFile()
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+
+		then:
+			1 * producer.sendFileOverHttpResponse(new File(directory, "index.html"), fileRequest.request(),
+					fileRequest.response())
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	def 'Always serves remembered subresource until directory change is notified'() {
+		given:
+			def HttpFileProducer producer = Mock()
+			def cache = new DirectoryIndexCache(16)
+			def consumer = new DirectorySubResourceRequestConsumer(producer, Mock(TemplatedHttpResponder),
+					["index.html", "index.htm"], Optional.<FileMetadataProvider>empty(), Optional.present(cache))
+			def fileRequest = stubFileRequest()
+			def directory = Files.createTempDirectory("index").toFile()
+			new File(directory, "index.htm").createNewFile()
+
+		when:
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+			new File(directory, "index.html").createNewFile()
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+
+		then:
+			2 * producer.sendFileOverHttpResponse(new File(directory, "index.htm"), _, _)
+			cache.getResolvedIndex(directory).get() == 1
+
+		when:
+			cache.fileChanged(new File(directory, "index.html"))
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+
+		then:
+			1 * producer.sendFileOverHttpResponse(new File(directory, "index.html"), _, _)
+			cache.getResolvedIndex(directory).get() == 0
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	def 'Always resolves subresource again when the remembered one disappeared'() {
+		given:
+			def HttpFileProducer producer = Mock()
+			def cache = new DirectoryIndexCache(16)
+			def consumer = new DirectorySubResourceRequestConsumer(producer, Mock(TemplatedHttpResponder),
+					["index.html", "index.htm"], Optional.<FileMetadataProvider>empty(), Optional.present(cache))
+			def fileRequest = stubFileRequest()
+			def directory = Files.createTempDirectory("index").toFile()
+			new File(directory, "index.html").createNewFile()
+			new File(directory, "index.htm").createNewFile()
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+
+		when:
+			new File(directory, "index.html").delete()
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+
+		then:
+			1 * producer.sendFileOverHttpResponse(new File(directory, "index.htm"), _, _)
+			cache.getResolvedIndex(directory).get() == 1
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	def 'Always responds with "NOT FOUND" from remembered resolution without any subresource'() {
+		given:
+			def HttpFileProducer producer = Mock()
+			def TemplatedHttpResponder templatedHttpResponder = Mock()
+			def cache = new DirectoryIndexCache(16)
+			def consumer = new DirectorySubResourceRequestConsumer(producer, templatedHttpResponder,
+					["index.html"], Optional.<FileMetadataProvider>empty(), Optional.present(cache))
+			def fileRequest = stubFileRequest()
+			def directory = Files.createTempDirectory("index").toFile()
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+
+		when:
+			new File(directory, "index.html").createNewFile()
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+
+		then:
+			1 * templatedHttpResponder.respondWithResourceNotFound(_, _)
+			0 * producer.sendFileOverHttpResponse(*_)
+			cache.getResolvedIndex(directory).get() == DirectoryIndexCache.NO_INDEX
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	def 'Always takes metadata of subresources from provider and passes it to HttpFileProducer'() {
+		given:
+			def HttpFileProducer producer = Mock()
+			def FileMetadataProvider metadataProvider = Stub()
+			def consumer = new DirectorySubResourceRequestConsumer(producer, Mock(TemplatedHttpResponder),
+					["index.html", "index.htm"], Optional.present(metadataProvider),
+					Optional.<DirectoryIndexCache>empty())
+			def fileRequest = stubFileRequest()
+			def directory = new File("/not/existing/directory")
+			def metadata = new FileMetadata(true, false, true, true, 10, 20)
+		and:
+			metadataProvider.provideMetadata(new File(directory, "index.html")) >> FileMetadata.NOT_EXISTING
+			metadataProvider.provideMetadata(new File(directory, "index.htm")) >> metadata
+
+		when:
+			consumer.serveExistingDirectoryElement(fileRequest, directory)
+
+		then:
+			1 * producer.sendFileOverHttpResponse(new File(directory, "index.htm"), metadata, fileRequest.request(),
+					fileRequest.response())
+			0 * producer.sendFileOverHttpResponse(_, _, _)
+	}
+
+	private HttpFileRequest stubFileRequest() {
+		def HttpRequest request = Mock()
+		def HttpResponse response = Mock()
+		def RequestLine requestLine = Stub()
+		requestLine.uri >> "/"
+		request.getRequestLine() >> requestLine
+		def HttpFileRequest fileRequest = Stub()
+		fileRequest.request() >> request
+		fileRequest.response() >> response
+		fileRequest
+	}
+
 	@Shared
 	private currentExistingProjectDirectory = {
 		Path currentRelativePath = Paths.get("");
@@ -17,9 +17,14 @@
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cache.DirectoryIndexCache
+import io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingProvider
 import io.github.kitarek.elasthttpd.plugins.consumers.file.producer.HttpFileProducer
 import spock.lang.Specification
 
+import static io.github.kitarek.elasthttpd.commons.Optional.empty
+import static io.github.kitarek.elasthttpd.commons.Optional.present
+
 class HttpDirectoryRequestConsumerFactorySpec extends Specification {
 
 	def 'Cannot initalize HttpDirectoryRequestConsumerFactory without dependency'() {
@@ -69,6 +74,32 @@ class HttpDirectoryRequestConsumerFactorySpec extends Specification {
 	}
 
 
+	def 'Always can create directory request consumer serving first existing subresource with optional cache'() {
+		given:
+			def HttpDirectoryRequestConsumerFactory factory = new HttpDirectoryRequestConsumerFactory(
+					Mock(TemplatedHttpResponder), Mock(HttpFileProducer))
+
+		when:
+			def HttpDirectoryRequestConsumer consumer =
+					factory.createConsumerThatAllowsToAccessFirstExistingSubResourceForDirectories(
+							["index.html", "index.htm"], present(new DirectoryIndexCache(16)))
+
+		then:
+			consumer instanceof DirectorySubResourceRequestConsumer
+	}
+
+	def 'Never can create directory request consumer serving first existing subresource without subresources'() {
+		given:
+			def HttpDirectoryRequestConsumerFactory factory = new HttpDirectoryRequestConsumerFactory(
+					Mock(TemplatedHttpResponder), Mock(HttpFileProducer))
+
+		when:
+			factory.createConsumerThatAllowsToAccessFirstExistingSubResourceForDirectories(null, empty())
+
+		then:
+			thrown(NullPointerException)
+	}
+
 	def 'Always can create forbidden access directory request consumer'() {
 		given:
 			def HttpDirectoryRequestConsumerFactory factory = new HttpDirectoryRequestConsumerFactory(
@@ -83,4 +114,15 @@ class HttpDirectoryRequestConsumerFactorySpec extends Specification {
 			consumer instanceof ForbiddenDirectoryRequestConsumer
 	}
 
+
+	def 'Always can create directory listing request consumer with or without listing provider'() {
+		given:
+			def HttpDirectoryRequestConsumerFactory factory = new HttpDirectoryRequestConsumerFactory(
+					Mock(TemplatedHttpResponder), Mock(HttpFileProducer))
+
+		expect:
+			factory.createConsumerThatListsDirectories(empty()) instanceof DirectoryListingRequestConsumer
+			factory.createConsumerThatListsDirectories(present(Mock(DirectoryListingProvider))) instanceof
+					DirectoryListingRequestConsumer
+	}
 }
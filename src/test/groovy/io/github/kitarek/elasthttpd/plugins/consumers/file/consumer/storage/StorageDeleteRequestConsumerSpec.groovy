@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.storage
+
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.InMemoryFileStorage
+import org.apache.http.HttpResponse
+import org.apache.http.HttpVersion
+import org.apache.http.message.BasicHttpRequest
+import org.apache.http.message.BasicHttpResponse
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.FileServerPluginBuilder.currentDirectory
+
+class StorageDeleteRequestConsumerSpec extends Specification {
+
+	def storage = new InMemoryFileStorage()
+	def consumer = new StorageDeleteRequestConsumer(storage, new TemplatedHttpResponder())
+
+	def setup() {
+		storage.write("/d/a.txt", new ByteArrayInputStream("a".bytes), 1)
+	}
+
+	@Unroll
+	def 'Always answers delete request of #description with #statusCode'() {
+		when:
+			def response = delete(uri)
+
+		then:
+			response.statusLine.statusCode == statusCode
+			storage.stat("/d/a.txt").isPresent() == fileKept
+
+		where:
+			description    | uri        | statusCode | fileKept
+			"file"         | "/d/a.txt" | 204        | false
+			"directory"    | "/d"       | 403        | true
+			"missing file" | "/missing" | 404        | true
+	}
+
+	private HttpResponse delete(String uri) {
+		def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		def HttpFileRequest fileRequest = Stub()
+		fileRequest.request() >> new BasicHttpRequest("DELETE", uri)
+		fileRequest.response() >> response
+		fileRequest.mapper() >> new UriToFileMapper(currentDirectory())
+		consumer.consumeFileRequest(fileRequest)
+		return response
+	}
+}
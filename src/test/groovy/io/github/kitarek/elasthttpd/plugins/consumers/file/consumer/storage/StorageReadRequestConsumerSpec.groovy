@@ -0,0 +1,251 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.storage
+
+import io.github.kitarek.elasthttpd.commons.MimeTypeTable
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.EntityTagGenerator
+import io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.directory.HttpDirectoryRequestConsumer
+import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.InMemoryFileStorage
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.ZipArchiveStorage
+import org.apache.http.HttpResponse
+import org.apache.http.HttpVersion
+import org.apache.http.message.BasicHttpRequest
+import org.apache.http.message.BasicHttpResponse
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+import java.util.zip.GZIPInputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.FileServerPluginBuilder.currentDirectory
+
+class StorageReadRequestConsumerSpec extends Specification {
+
+	def storage = new InMemoryFileStorage()
+	def directoryRequestConsumer = Mock(HttpDirectoryRequestConsumer)
+	def consumer = new StorageReadRequestConsumer(storage, MimeTypeTable.defaultTable(), new TemplatedHttpResponder(),
+			["index.html"], directoryRequestConsumer)
+
+	def setup() {
+		storage.write("/a.txt", new ByteArrayInputStream("content".bytes), 7)
+	}
+
+	@Unroll
+	def 'Never cannot create consumer with null dependencies'() {
+		when:
+			new StorageReadRequestConsumer(fileStorage, mimeTypeTable, responder, directoryConsumer)
+
+		then:
+			thrown(NullPointerException)
+
+		where:
+			fileStorage               | mimeTypeTable               | responder                    | directoryConsumer
+			null                      | MimeTypeTable.emptyTable()  | new TemplatedHttpResponder() | Stub(HttpDirectoryRequestConsumer)
+			new InMemoryFileStorage() | null                        | new TemplatedHttpResponder() | Stub(HttpDirectoryRequestConsumer)
+			new InMemoryFileStorage() | MimeTypeTable.emptyTable()  | null                         | Stub(HttpDirectoryRequestConsumer)
+			new InMemoryFileStorage() | MimeTypeTable.emptyTable()  | new TemplatedHttpResponder() | null
+	}
+
+	def 'Never cannot create consumer with null entity tag generator'() {
+		when:
+			new StorageReadRequestConsumer(storage, MimeTypeTable.defaultTable(), new TemplatedHttpResponder(),
+					["index.html"], directoryRequestConsumer, null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always sends stored file with entity tag of given generator'() {
+		given:
+			def generator = Mock(EntityTagGenerator)
+			def lastModified = storage.stat("/a.txt").get().lastModified
+			consumer = new StorageReadRequestConsumer(storage, MimeTypeTable.defaultTable(),
+					new TemplatedHttpResponder(), ["index.html"], directoryRequestConsumer, generator)
+
+		when:
+			def response = serve("GET", "/a.txt")
+
+		then:
+			1 * generator.generateEntityTag(new File("/a.txt"), 7, lastModified) >> "tag"
+			response.statusLine.statusCode == 200
+			response.getFirstHeader("ETag").value == '"tag"'
+	}
+
+	def 'Always sends stored file with its type and validators'() {
+		when:
+			def response = serve("GET", "/a.txt?query")
+
+		then:
+			response.statusLine.statusCode == 200
+			response.entity.content.text == "content"
+			response.entity.contentLength == 7
+			response.entity.contentType.value == "text/plain"
+			response.getFirstHeader("ETag").value ==
+					'"7-' + Long.toHexString(storage.stat("/a.txt").get().lastModified) + '"'
+			response.getFirstHeader("Last-Modified") != null
+			response.getFirstHeader("Accept-Ranges").value == "bytes"
+	}
+
+	def 'Always answers conditional request for not modified file without content'() {
+		given:
+			def etag = serve("GET", "/a.txt").getFirstHeader("ETag").value
+
+		when:
+			def response = serve("GET", "/a.txt", ["If-None-Match": etag])
+
+		then:
+			response.statusLine.statusCode == 304
+			response.entity == null
+	}
+
+	def 'Always answers conditional request for not modified variant with entity tag of the variant'() {
+		given:
+			def etag = serve("GET", "/a.txt").getFirstHeader("ETag").value
+			def variantTag = etag.substring(0, etag.length() - 1) + '-gzip"'
+
+		when:
+			def response = serve("GET", "/a.txt", ["If-None-Match": '"other", W/' + variantTag])
+
+		then:
+			response.statusLine.statusCode == 304
+			response.getFirstHeader("ETag").value == variantTag
+	}
+
+	def 'Always answers failed precondition with PRECONDITION FAILED'() {
+		when:
+			def response = serve("GET", "/a.txt", ["If-Match": '"other"'])
+
+		then:
+			response.statusLine.statusCode == 412
+	}
+
+	@Unroll
+	def 'Always sends #description'() {
+		when:
+			def response = serve("GET", "/a.txt", ["Range": range])
+
+		then:
+			response.statusLine.statusCode == statusCode
+			response.getFirstHeader("Content-Range")?.value == contentRange
+			response.entity.content.text == content
+
+		where:
+			description                            | range          | statusCode | contentRange  | content
+			"a single range with PARTIAL CONTENT"   | "bytes=3-5"    | 206        | "bytes 3-5/7" | "ten"
+			"whole file when many ranges requested" | "bytes=0-0,3-" | 200        | null          | "content"
+	}
+
+	def 'Always answers unsatisfiable range with REQUESTED RANGE NOT SATISFIABLE'() {
+		when:
+			def response = serve("GET", "/a.txt", ["Range": "bytes=70-"])
+
+		then:
+			response.statusLine.statusCode == 416
+			response.getFirstHeader("Content-Range").value == "bytes */7"
+	}
+
+	def 'Always answers request for missing file with NOT FOUND'() {
+		expect:
+			serve("GET", "/missing").statusLine.statusCode == 404
+	}
+
+	def 'Always answers request for temporary file of upload with NOT FOUND'() {
+		given:
+			storage.write("/.elasthttpd-upload-1.tmp", new ByteArrayInputStream("part".bytes), 4)
+
+		expect:
+			serve("GET", "/.elasthttpd-upload-1.tmp").statusLine.statusCode == 404
+	}
+
+	def 'Always serves directory with its sub-resource when it exists'() {
+		given:
+			storage.write("/d/index.html", new ByteArrayInputStream("<p/>".bytes), 4)
+
+		when:
+			def response = serve("GET", "/d")
+
+		then:
+			response.entity.content.text == "<p/>"
+			response.entity.contentType.value == "text/html"
+			0 * directoryRequestConsumer.serveExistingDirectoryElement(_, _)
+	}
+
+	def 'Always passes directory without sub-resource to directory consumer'() {
+		when:
+			serve("GET", "/")
+
+		then:
+			1 * directoryRequestConsumer.serveExistingDirectoryElement(_, new File("/"))
+	}
+
+	def 'Always sends deflated entry of archive still compressed to client accepting gzip'() {
+		given:
+			def directory = Files.createTempDirectory("archive").toFile()
+			def archiveStorage = openArchiveWithEntry(new File(directory, "site.zip"), "a.txt", "content" * 100)
+			consumer = new StorageReadRequestConsumer(archiveStorage, MimeTypeTable.defaultTable(),
+					new TemplatedHttpResponder(), directoryRequestConsumer)
+
+		when:
+			def response = serve("GET", "/a.txt", ["Accept-Encoding": "gzip"])
+
+		then:
+			response.statusLine.statusCode == 200
+			response.getFirstHeader("Content-Encoding").value == "gzip"
+			response.getFirstHeader("Vary").value == "Accept-Encoding"
+			response.getFirstHeader("ETag").value.endsWith('-gzip"')
+			response.entity.contentType.value == "text/plain"
+			new GZIPInputStream(response.entity.content).text == "content" * 100
+
+		when:
+			response = serve("GET", "/a.txt", ["Accept-Encoding": "gzip", "Range": "bytes=0-6"])
+
+		then:
+			response.statusLine.statusCode == 206
+			response.getFirstHeader("Content-Encoding") == null
+			response.entity.content.text == "content"
+
+		cleanup:
+			archiveStorage?.close()
+			directory.deleteDir()
+	}
+
+	private static ZipArchiveStorage openArchiveWithEntry(File archive, String name, String content) {
+		def zip = new ZipOutputStream(new FileOutputStream(archive))
+		zip.putNextEntry(new ZipEntry(name))
+		zip.write(content.bytes)
+		zip.close()
+		ZipArchiveStorage.open(archive)
+	}
+
+	private HttpResponse serve(String method, String uri, Map<String, String> headers = [:]) {
+		def request = new BasicHttpRequest(method, uri)
+		headers.each { name, value -> request.addHeader(name, value) }
+		def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		def HttpFileRequest fileRequest = Stub()
+		fileRequest.request() >> request
+		fileRequest.response() >> response
+		fileRequest.mapper() >> new UriToFileMapper(currentDirectory())
+		consumer.consumeFileRequest(fileRequest)
+		return response
+	}
+}
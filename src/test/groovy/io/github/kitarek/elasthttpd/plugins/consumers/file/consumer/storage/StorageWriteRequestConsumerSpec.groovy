@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.consumer.storage
+
+import io.github.kitarek.elasthttpd.commons.Optional
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.UriToFileMapper
+import io.github.kitarek.elasthttpd.plugins.consumers.file.request.HttpFileRequest
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.FileStorage
+import io.github.kitarek.elasthttpd.plugins.consumers.file.storage.InMemoryFileStorage
+import org.apache.http.HttpResponse
+import org.apache.http.HttpVersion
+import org.apache.http.entity.ByteArrayEntity
+import org.apache.http.message.BasicHttpEntityEnclosingRequest
+import org.apache.http.message.BasicHttpResponse
+import spock.lang.Specification
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.FileServerPluginBuilder.currentDirectory
+
+class StorageWriteRequestConsumerSpec extends Specification {
+
+	def storage = new InMemoryFileStorage()
+	def consumer = new StorageWriteRequestConsumer(storage, new TemplatedHttpResponder())
+
+	def 'Never cannot create consumer with null dependencies'() {
+		when:
+			new StorageWriteRequestConsumer(null, new TemplatedHttpResponder())
+
+		then:
+			thrown(NullPointerException)
+
+		when:
+			new StorageWriteRequestConsumer(storage, null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always creates or replaces stored file with body of request'() {
+		when:
+			def created = upload("/a.txt", "old content")
+			def replaced = upload("/a.txt", "content")
+
+		then:
+			created.statusLine.statusCode == 201
+			replaced.statusLine.statusCode == 201
+			storage.openForRead("/a.txt").text == "content"
+	}
+
+	def 'Always answers upload over directory with FORBIDDEN'() {
+		given:
+			upload("/d/a.txt", "a")
+
+		expect:
+			upload("/d", "content").statusLine.statusCode == 403
+	}
+
+	def 'Always answers upload in parts with BAD REQUEST'() {
+		when:
+			def response = upload("/a.txt", "c", ["Content-Range": "bytes 0-0/7"])
+
+		then:
+			response.statusLine.statusCode == 400
+			storage.stat("/a.txt").isNotPresent()
+	}
+
+	def 'Always answers failed write with INTERNAL SERVER ERROR'() {
+		given:
+			def FileStorage failingStorage = Stub()
+			failingStorage.stat(_) >> Optional.empty()
+			failingStorage.write(_, _, _) >> { throw new IOException("Disk is full") }
+			consumer = new StorageWriteRequestConsumer(failingStorage, new TemplatedHttpResponder())
+
+		expect:
+			upload("/a.txt", "content").statusLine.statusCode == 500
+	}
+
+	private HttpResponse upload(String uri, String content, Map<String, String> headers = [:]) {
+		def request = new BasicHttpEntityEnclosingRequest("PUT", uri)
+		headers.each { name, value -> request.addHeader(name, value) }
+		request.entity = new ByteArrayEntity(content.bytes)
+		def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		def HttpFileRequest fileRequest = Stub()
+		fileRequest.request() >> request
+		fileRequest.response() >> response
+		fileRequest.mapper() >> new UriToFileMapper(currentDirectory())
+		consumer.consumeFileRequest(fileRequest)
+		return response
+	}
+}
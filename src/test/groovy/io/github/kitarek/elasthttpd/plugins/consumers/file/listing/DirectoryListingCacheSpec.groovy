@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+class DirectoryListingCacheSpec extends Specification {
+
+	def 'Never cannot create cache without positive size'() {
+		when:
+			new DirectoryListingCache(0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always scans directory only once until it changes'() {
+		given:
+			def directory = Files.createTempDirectory("listing").toFile()
+			new File(directory, "a").text = "a"
+			def cache = new DirectoryListingCache(1024 * 1024)
+
+		when:
+			def firstListing = cache.provideListing(directory)
+			new File(directory, "b").text = "b"
+			def secondListing = cache.provideListing(directory)
+
+		then:
+			secondListing.is(firstListing)
+			secondListing.size() == 1
+
+		when:
+			cache.fileChanged(new File(directory, "b"))
+
+		then:
+			cache.provideListing(directory).size() == 2
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	@Unroll
+	def 'Always forgets listing of #listedPath when #changedPath changes: #forgotten'() {
+		given:
+			def cache = new DirectoryListingCache(1024 * 1024)
+			cache.cache.put(new File(listedPath).absolutePath, new DirectoryListing([]))
+
+		when:
+			cache.fileChanged(new File(changedPath))
+
+		then:
+			(cache.cache.size() == 0) == forgotten
+
+		where:
+			listedPath   | changedPath       | forgotten
+			"/root/a"    | "/root/a"         | true
+			"/root/a"    | "/root/a/file"    | true
+			"/root/a/b"  | "/root/a"         | true
+			"/root/a"    | "/root/a/b/file"  | false
+			"/root/ab"   | "/root/a"         | false
+	}
+
+	def 'Always forgets all listings when all files changed'() {
+		given:
+			def cache = new DirectoryListingCache(1024 * 1024)
+			cache.cache.put("/root/a", new DirectoryListing([]))
+
+		when:
+			cache.allFilesChanged()
+
+		then:
+			cache.cache.size() == 0
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingSortOrder.MODIFIED
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingSortOrder.NAME
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingSortOrder.SIZE
+
+class DirectoryListingSortOrderSpec extends Specification {
+
+	@Unroll
+	def 'Always finds order #expectedOrder by its token #token'() {
+		expect:
+			DirectoryListingSortOrder.fromToken(token).get() == expectedOrder
+
+		where:
+			token      | expectedOrder
+			"name"     | NAME
+			"size"     | SIZE
+			"modified" | MODIFIED
+	}
+
+	def 'Never finds order by unknown token'() {
+		expect:
+			DirectoryListingSortOrder.fromToken("NAME").isNotPresent()
+	}
+
+	@Unroll
+	def 'Always formats cursor #expectedCursor of entry in #order order and parses it back'() {
+		given:
+			def entry = new DirectoryEntry("a:b", false, 12, 34)
+
+		when:
+			def cursor = order.formatCursor(entry)
+			def probe = order.parseCursor(cursor).get()
+
+		then:
+			cursor == expectedCursor
+			order.comparator.compare(probe, entry) == 0
+
+		where:
+			order    | expectedCursor
+			NAME     | "a:b"
+			SIZE     | "12:a:b"
+			MODIFIED | "34:a:b"
+	}
+
+	@Unroll
+	def 'Never parses malformed cursor #cursor'() {
+		expect:
+			SIZE.parseCursor(cursor).isNotPresent()
+
+		where:
+			cursor << ["", "abc", ":abc", "x:abc"]
+	}
+
+	def 'Always orders entries with the same key by name'() {
+		expect:
+			SIZE.comparator.compare(new DirectoryEntry("b", false, 1, 0), new DirectoryEntry("a", false, 1, 0)) > 0
+			SIZE.comparator.compare(new DirectoryEntry("b", false, 1, 0), new DirectoryEntry("a", false, 2, 0)) < 0
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty
+import static io.github.kitarek.elasthttpd.commons.Optional.present
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingSortOrder.MODIFIED
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingSortOrder.NAME
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.listing.DirectoryListingSortOrder.SIZE
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.TEMPORARY_FILE_PREFIX
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.TEMPORARY_FILE_SUFFIX
+
+class DirectoryListingSpec extends Specification {
+
+	def listing = new DirectoryListing([
+			new DirectoryEntry("c", false, 1, 300),
+			new DirectoryEntry("a", false, 3, 200),
+			new DirectoryEntry("e", true, 0, 100),
+			new DirectoryEntry("b", false, 1, 500),
+			new DirectoryEntry("d", false, 2, 400)])
+
+	def 'Always scans all entries of directory with their metadata'() {
+		given:
+			def directory = Files.createTempDirectory("listing").toFile()
+			new File(directory, "file.txt").text = "abc"
+			new File(directory, "sub").mkdir()
+
+		when:
+			def scannedListing = DirectoryListing.scan(directory)
+			def entries = scannedListing.getPage(NAME, false, empty(), 10).entries
+
+		then:
+			scannedListing.size() == 2
+			entries*.name == ["file.txt", "sub"]
+			entries*.directory == [false, true]
+			entries[0].length == 3
+			entries[0].lastModified == new File(directory, "file.txt").lastModified()
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	def 'Never lists temporary files of uploads in progress'() {
+		given:
+			def directory = Files.createTempDirectory("listing").toFile()
+			new File(directory, "file.txt").text = "abc"
+			new File(directory, TEMPORARY_FILE_PREFIX + "1" + TEMPORARY_FILE_SUFFIX).text = "ab"
+
+		when:
+			def scannedListing = DirectoryListing.scan(directory)
+
+		then:
+			scannedListing.getPage(NAME, false, empty(), 10).entries*.name == ["file.txt"]
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	def 'Never cannot scan not existing directory'() {
+		when:
+			DirectoryListing.scan(new File("/not/existing/directory/" + UUID.randomUUID()))
+
+		then:
+			thrown(IOException)
+	}
+
+	@Unroll
+	def 'Always returns page of #limit entries sorted by #order in #direction order after #cursor'() {
+		when:
+			def page = listing.getPage(order, direction == "desc", cursor == null ? empty() : order.parseCursor(cursor),
+					limit)
+
+		then:
+			page.entries*.name == expectedNames
+			page.totalNumberOfEntries == 5
+			(page.nextPageCursor.isPresent() ? page.nextPageCursor.get() : null) == expectedNextCursor
+
+		where:
+			order    | direction | cursor  | limit | expectedNames             | expectedNextCursor
+			NAME     | "asc"     | null    | 10    | ["a", "b", "c", "d", "e"] | null
+			NAME     | "asc"     | null    | 2     | ["a", "b"]                | "b"
+			NAME     | "asc"     | "b"     | 2     | ["c", "d"]                | "d"
+			NAME     | "asc"     | "bb"    | 2     | ["c", "d"]                | "d"
+			NAME     | "asc"     | "d"     | 2     | ["e"]                     | null
+			NAME     | "desc"    | null    | 2     | ["e", "d"]                | "d"
+			NAME     | "desc"    | "d"     | 2     | ["c", "b"]                | "b"
+			NAME     | "desc"    | "b"     | 2     | ["a"]                     | null
+			SIZE     | "asc"     | null    | 3     | ["e", "b", "c"]           | "1:c"
+			SIZE     | "asc"     | "1:c"   | 3     | ["d", "a"]                | null
+			SIZE     | "desc"    | "2:d"   | 2     | ["c", "b"]                | "1:b"
+			MODIFIED | "desc"    | null    | 1     | ["b"]                     | "500:b"
+			MODIFIED | "asc"     | "300:c" | 5     | ["d", "b"]                | null
+	}
+
+	def 'Never cannot get page without positive limit'() {
+		when:
+			listing.getPage(NAME, false, empty(), 0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always weighs listing by its entries'() {
+		expect:
+			listing.weightInBytes > new DirectoryListing([]).weightInBytes
+			new DirectoryListing([new DirectoryEntry("aaaa", false, 0, 0)]).weightInBytes >
+					new DirectoryListing([new DirectoryEntry("a", false, 0, 0)]).weightInBytes
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing
+
+import spock.lang.Specification
+
+import static io.github.kitarek.elasthttpd.commons.HttpDates.formatDate
+import static io.github.kitarek.elasthttpd.commons.Optional.empty
+import static io.github.kitarek.elasthttpd.commons.Optional.present
+
+class HtmlDirectoryListingRendererSpec extends Specification {
+
+	def renderer = new HtmlDirectoryListingRenderer()
+
+	def 'Always renders entries as escaped links under directory with parent and next page links'() {
+		given:
+			def page = new DirectoryListingPage([
+					new DirectoryEntry("a <b>&\"c\".txt", false, 12, 1000),
+					new DirectoryEntry("sub dir", true, 0, 2000)], 5, present("c"))
+
+		when:
+			def html = new String(renderer.render("/docs/", page, present("/docs/?limit=2&after=c")), "UTF-8")
+
+		then:
+			html.contains('<a href="/">../</a>')
+			html.contains('<a href="/docs/a%20%3Cb%3E%26%22c%22.txt">a &lt;b&gt;&amp;&quot;c&quot;.txt</a></td><td>12</td>')
+			html.contains('<a href="/docs/sub%20dir/">sub dir/</a></td><td>-</td><td>' + formatDate(2000))
+			html.contains('<a href="/docs/?limit=2&amp;after=c">Next page</a>')
+			html.contains('5 entries')
+			renderer.contentType.toString() == "text/html; charset=UTF-8"
+	}
+
+	def 'Never renders parent and next page links for the last page of root directory'() {
+		when:
+			def html = new String(renderer.render("/", new DirectoryListingPage([], 0, empty()), empty()), "UTF-8")
+
+		then:
+			!html.contains("../")
+			!html.contains("Next page")
+	}
+
+	def 'Always encodes non-ASCII names as UTF-8 in links'() {
+		when:
+			def html = new String(renderer.render("/", new DirectoryListingPage(
+					[new DirectoryEntry("\u017caba", false, 0, 0)], 1, empty()), empty()), "UTF-8")
+
+		then:
+			html.contains('<a href="/%C5%BCaba">\u017caba</a>')
+	}
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.listing
+
+import groovy.json.JsonSlurper
+import spock.lang.Specification
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty
+import static io.github.kitarek.elasthttpd.commons.Optional.present
+
+class JsonDirectoryListingRendererSpec extends Specification {
+
+	def renderer = new JsonDirectoryListingRenderer()
+
+	def 'Always renders page as JSON object with entries and next page'() {
+		given:
+			def page = new DirectoryListingPage([
+					new DirectoryEntry("a \"quoted\"\\\n name", false, 12, 1000),
+					new DirectoryEntry("sub", true, 0, 2000)], 5, present("sub"))
+
+		when:
+			def json = new String(renderer.render("/docs/", page, present("/docs/?after=sub")), "UTF-8")
+			def parsed = new JsonSlurper().parseText(json)
+
+		then:
+			!json.contains("\n")
+			parsed.path == "/docs/"
+			parsed.total == 5
+			parsed.entries == [
+					[name: "a \"quoted\"\\\n name", type: "file", size: 12, modified: 1000],
+					[name: "sub", type: "directory", size: 0, modified: 2000]]
+			parsed.next == "/docs/?after=sub"
+			renderer.contentType.toString() == "application/json; charset=UTF-8"
+	}
+
+	def 'Always renders null next page of the last page'() {
+		when:
+			def json = new String(renderer.render("/", new DirectoryListingPage([], 0, empty()), empty()), "UTF-8")
+
+		then:
+			json == '{"path":"/","total":0,"entries":[],"next":null}'
+	}
+}
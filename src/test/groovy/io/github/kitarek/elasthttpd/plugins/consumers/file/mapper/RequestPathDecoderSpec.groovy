@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.mapper
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.charset.Charset
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.mapper.RequestPathDecoder.decodeRequestPath
+
+class RequestPathDecoderSpec extends Specification {
+
+	static final Charset UTF_8 = Charset.forName("UTF-8")
+
+	@Unroll
+	def 'Always decodes and normalizes request path #requestPath into #expectedPath'() {
+		expect:
+			decodeRequestPath(requestPath, UTF_8) == expectedPath
+
+		where:
+			requestPath                  | expectedPath
+			'/'                          | '/'
+			''                           | '/'
+			'/src'                       | '/src'
+			'/src/'                      | '/src'
+			'//src///a//'                | '/src/a'
+			'/src/a/b/c%20'              | '/src/a/b/c '
+			'/src+a'                     | '/src a'
+			'/src%2B'                    | '/src+'
+			'/%C5%BCaba'                 | '/\u017caba'
+			'/\u017caba'                 | '/\u017caba'
+			'/./a/./b/.'                 | '/a/b'
+			'/a/../b'                    | '/b'
+			'/a/b/../../..'              | '/'
+			'/../../../src/a/b/c'        | '/src/a/b/c'
+			'/../src/../a/../b/c%2FD'    | '/b/c/D'
+			'/a/%2E%2E/%2e%2e/etc'       | '/etc'
+			'/a%2F..%2F..%2Fetc'         | '/etc'
+			'/a/...'                     | '/a/...'
+			'/a/..b/.c'                  | '/a/..b/.c'
+	}
+
+	@Unroll
+	def 'Never cannot decode request path #requestPath with incorrect escape sequence or null character'() {
+		when:
+			decodeRequestPath(requestPath, UTF_8)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			requestPath << ['/a%', '/a%2', '/a%zz', '/a%+b', '/a%-1', '/a%00b', '/a\u0000b', '/a%2%41']
+	}
+
+	def 'Never cannot decode request path without charset'() {
+		when:
+			decodeRequestPath('/', null)
+
+		then:
+			thrown(NullPointerException)
+	}
+}
@@ -219,6 +219,82 @@ class UriToFileMapperSpec extends Specification {
 			'/src%2B?'               | validExistingDirectory() | validExistingDirectory() + "/src+"
 	}
 
+	def 'Always maps the same URI request path to the same remembered path'() {
+		given:
+			def UriToFileMapper mapper = new UriToFileMapper(validExistingDirectory())
+
+		when:
+			def firstPath = mapper.mapUriRequestPath('/src/../build.gradle?a=b')
+			def secondPath = mapper.mapUriRequestPath('/src/../build.gradle?a=b')
+
+		then:
+			firstPath == validExistingDirectory() + "/build.gradle"
+			secondPath.is(firstPath)
+			mapper.numberOfResolvedPaths == 1
+	}
+
+	def 'Never remembers more resolved paths than the limit'() {
+		given:
+			def UriToFileMapper mapper = new UriToFileMapper(validExistingDirectory(), 2)
+
+		when:
+			def mappedPaths = ['/a', '/b', '/c', '/d', '/e'].collect { mapper.mapUriRequestPath(it) }
+
+		then:
+			mappedPaths == ['/a', '/b', '/c', '/d', '/e'].collect { validExistingDirectory() + it }
+			mapper.numberOfResolvedPaths <= 2
+	}
+
+	def 'Always remembers one resolved path for URIs that differ only in query string'() {
+		given:
+			def UriToFileMapper mapper = new UriToFileMapper(validExistingDirectory())
+
+		when:
+			def mappedPaths = ['/src?1', '/src?2', '/src?3'].collect { mapper.mapUriRequestPath(it) }
+
+		then:
+			mappedPaths.every { it.is(mappedPaths[0]) }
+			mapper.numberOfResolvedPaths == 1
+	}
+
+	def 'Always keeps hot resolved path when paths requested once exceed the limit'() {
+		given:
+			def UriToFileMapper mapper = new UriToFileMapper(validExistingDirectory(), 2)
+			def hotPath = mapper.mapUriRequestPath('/hot')
+			mapper.mapUriRequestPath('/hot')
+
+		when:
+			['/a', '/b', '/c', '/d'].each { mapper.mapUriRequestPath(it) }
+
+		then:
+			mapper.mapUriRequestPath('/hot').is(hotPath)
+			mapper.numberOfResolvedPaths == 2
+	}
+
+	def 'Never remembers resolved paths when remembering is disabled or URI is too long'() {
+		given:
+			def UriToFileMapper mapper = new UriToFileMapper(validExistingDirectory(), limit)
+
+		when:
+			mapper.mapUriRequestPath(uri)
+
+		then:
+			mapper.numberOfResolvedPaths == 0
+
+		where:
+			limit | uri
+			0     | '/src'
+			16    | '/' + ('a' * UriToFileMapper.MAXIMUM_CACHED_URI_LENGTH)
+	}
+
+	def 'Never cannot create class instance with negative limit of resolved paths'() {
+		when:
+			new UriToFileMapper(validExistingDirectory(), -1)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
 	@Shared
 	private validExistingDirectory = {
 		Path currentRelativePath = Paths.get("");
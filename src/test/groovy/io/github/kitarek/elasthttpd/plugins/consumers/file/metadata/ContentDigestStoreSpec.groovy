@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.metadata
+
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.nio.file.attribute.UserDefinedFileAttributeView
+import java.security.MessageDigest
+
+class ContentDigestStoreSpec extends Specification {
+
+	def store = new ContentDigestStore()
+	def root = Files.createTempDirectory("digests").toFile()
+
+	def cleanup() {
+		root.deleteDir()
+	}
+
+	static boolean isUserDefinedAttributeSupported() {
+		def directory = Files.createTempDirectory("attributes")
+		try {
+			Files.getFileStore(directory).supportsFileAttributeView(UserDefinedFileAttributeView)
+		} finally {
+			Files.delete(directory)
+		}
+	}
+
+	@Requires({ ContentDigestStoreSpec.isUserDefinedAttributeSupported() })
+	def 'Always loads digest stored for the current version of file'() {
+		given:
+			def file = new File(root, "file")
+			file.text = "content"
+			def digest = sha256("content")
+
+		when:
+			def stored = store.store(file, digest)
+
+		then:
+			stored
+			store.load(file, file.length(), file.lastModified()).get() == digest
+	}
+
+	@Requires({ ContentDigestStoreSpec.isUserDefinedAttributeSupported() })
+	def 'Never loads digest stored for another version of file'() {
+		given:
+			def file = new File(root, "file")
+			file.text = "content"
+			store.store(file, sha256("content"))
+
+		expect:
+			store.load(file, file.length() + 1, file.lastModified()).isNotPresent()
+			store.load(file, file.length(), file.lastModified() + 1000).isNotPresent()
+	}
+
+	def 'Never loads digest of file without stored digest'() {
+		given:
+			def file = new File(root, "file")
+			file.text = "content"
+
+		expect:
+			store.load(file, file.length(), file.lastModified()).isNotPresent()
+			store.load(new File(root, "missing"), 0, 0).isNotPresent()
+	}
+
+	def 'Never stores digest of missing file'() {
+		expect:
+			!store.store(new File(root, "missing"), sha256("content"))
+	}
+
+	def 'Never cannot store digest with another length than SHA-256'() {
+		when:
+			store.store(new File(root, "file"), new byte[16])
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	static byte[] sha256(String content) {
+		MessageDigest.getInstance("SHA-256").digest(content.bytes)
+	}
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.metadata
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class ContentDigestsSpec extends Specification {
+
+	def 'Always computes SHA-256 digest of the whole file content'() {
+		given:
+			def file = Files.createTempFile("digest", ".txt").toFile()
+			file.bytes = ("a" * 100000).bytes
+
+		expect:
+			ContentDigests.computeDigest(file) == ContentDigests.createMessageDigest("SHA-256").digest(file.bytes)
+			ContentDigests.computeDigest(file).length == ContentDigestStore.DIGEST_LENGTH_IN_BYTES
+
+		cleanup:
+			file.delete()
+	}
+
+	def 'Never computes digest of file that does not exist'() {
+		when:
+			ContentDigests.computeDigest(new File("/not/existing/file.txt"))
+
+		then:
+			thrown(IOException)
+	}
+
+	def 'Always encodes all or leading bytes as lower case hex'() {
+		given:
+			def bytes = [0, 15, 16, -1] as byte[]
+
+		expect:
+			ContentDigests.toHex(bytes) == "000f10ff"
+			ContentDigests.toHex(bytes, 2) == "000f"
+			ContentDigests.toHex(new byte[0]) == ""
+	}
+
+	def 'Never encodes more bytes than given'() {
+		when:
+			ContentDigests.toHex(new byte[2], 3)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Never creates digest with algorithm not supported by the platform'() {
+		when:
+			ContentDigests.createMessageDigest("SHA-999")
+
+		then:
+			thrown(IllegalStateException)
+	}
+}
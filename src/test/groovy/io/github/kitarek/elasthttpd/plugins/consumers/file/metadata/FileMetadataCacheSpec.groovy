@@ -0,0 +1,151 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.metadata
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+class FileMetadataCacheSpec extends Specification {
+
+	@Unroll
+	def 'Never cannot create cache with time to live #timeToLive and #maximumEntries entries'() {
+		when:
+			new FileMetadataCache(timeToLive, maximumEntries)
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			timeToLive | maximumEntries
+			0          | 1
+			1000       | 0
+	}
+
+	def 'Always remembers metadata of file until it expires'() {
+		given:
+			def cache = new FileMetadataCache(60000)
+			def file = createFile("content")
+
+		when:
+			def first = cache.provideMetadata(file)
+			file.text = "changed content"
+			def second = cache.provideMetadata(file)
+
+		then:
+			second.is(first)
+			second.length == 7
+			cache.hitCount == 1
+			cache.missCount == 1
+			cache.size() == 1
+
+		cleanup:
+			file.delete()
+	}
+
+	def 'Always reads metadata again when it has expired'() {
+		given:
+			def cache = new FileMetadataCache(1)
+			def file = createFile("content")
+			cache.provideMetadata(file)
+
+		when:
+			file.text = "changed content"
+			sleep(5)
+
+		then:
+			cache.provideMetadata(file).length == 15
+			cache.missCount == 2
+
+		cleanup:
+			file.delete()
+	}
+
+	def 'Always forgets metadata of changed file and all files in changed directory'() {
+		given:
+			def cache = new FileMetadataCache(60000)
+			def directory = Files.createTempDirectory("metadata").toFile()
+			def nested = new File(directory, "nested.txt")
+			nested.text = "content"
+			def other = createFile("other")
+			[directory, nested, other].each { cache.provideMetadata(it) }
+
+		when:
+			cache.fileChanged(directory)
+
+		then:
+			cache.size() == 1
+
+		when:
+			cache.allFilesChanged()
+
+		then:
+			cache.size() == 0
+
+		cleanup:
+			nested.delete()
+			directory.delete()
+			other.delete()
+	}
+
+	def 'Always remembers that file does not exist'() {
+		given:
+			def cache = new FileMetadataCache(60000)
+			def file = new File(Files.createTempDirectory("metadata").toFile(), "missing.txt")
+
+		when:
+			cache.provideMetadata(file)
+			file.text = "created"
+
+		then:
+			!cache.provideMetadata(file).exists()
+
+		when:
+			cache.fileChanged(file)
+
+		then:
+			cache.provideMetadata(file).exists()
+
+		cleanup:
+			file.delete()
+			file.parentFile.delete()
+	}
+
+	def 'Never remembers more entries than the limit until some of them expire'() {
+		given:
+			def cache = new FileMetadataCache(60000, 2)
+
+		when:
+			(1..3).each { cache.provideMetadata(new File("not-existing-" + it)) }
+
+		then:
+			cache.size() == 2
+
+		when:
+			cache.provideMetadata(new File("not-existing-3"))
+
+		then:
+			cache.missCount == 4
+	}
+
+	private static File createFile(String content) {
+		def file = File.createTempFile("metadata", ".txt")
+		file.text = content
+		return file
+	}
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.metadata
+
+import spock.lang.Specification
+
+import static java.util.UUID.randomUUID
+
+class FileMetadataSpec extends Specification {
+
+	def 'Always reads metadata of existing regular file'() {
+		given:
+			def file = File.createTempFile("metadata", ".txt")
+			file.text = "content"
+
+		when:
+			def metadata = FileMetadata.readMetadata(file)
+
+		then:
+			metadata.exists()
+			metadata.regularFile
+			!metadata.directory
+			metadata.readable
+			metadata.length == 7
+			metadata.lastModified == file.lastModified()
+
+		cleanup:
+			file.delete()
+	}
+
+	def 'Always reads metadata of existing directory'() {
+		when:
+			def metadata = FileMetadata.readMetadata(new File(System.getProperty("java.io.tmpdir")))
+
+		then:
+			metadata.exists()
+			metadata.directory
+			!metadata.regularFile
+	}
+
+	def 'Always reads metadata of not existing file as not existing'() {
+		expect:
+			FileMetadata.readMetadata(new File("not-existing-" + randomUUID())).is(FileMetadata.NOT_EXISTING)
+			!FileMetadata.NOT_EXISTING.exists()
+	}
+
+	def 'Never cannot read metadata of null file'() {
+		when:
+			FileMetadata.readMetadata(null)
+		then:
+			thrown(NullPointerException)
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.patch
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange
+import org.apache.http.message.BasicHttpEntityEnclosingRequest
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1
+
+class BytePatchSpec extends Specification {
+
+	def 'Always reads single range declared by Content-Range header'() {
+		given:
+			def patch = BytePatch.fromRequest(request("Content-Range", "bytes 2-4/*"), stream("abc"), 3)
+
+		when:
+			def contentRange = patch.nextRange().get()
+
+		then:
+			contentRange.range.get() == new ByteRange(2, 4)
+			!contentRange.completeLengthKnown
+			patch.body.text == "abc"
+			patch.nextRange().isNotPresent()
+	}
+
+	def 'Never reads single range which body is longer than the range'() {
+		given:
+			def patch = BytePatch.fromRequest(request("Content-Range", "bytes 0-1/10"), stream("abc"), -1)
+			patch.nextRange()
+			patch.body.read(new byte[2])
+
+		when:
+			patch.nextRange()
+
+		then:
+			thrown(InvalidPatchException)
+	}
+
+	@Unroll
+	def 'Never creates patch from request with #header "#value" and body of #length bytes'() {
+		when:
+			BytePatch.fromRequest(request(header, value), stream("abc"), length)
+
+		then:
+			thrown(InvalidPatchException)
+
+		where:
+			header          | value                             | length
+			"Content-Range" | "bytes 0-2/*"                     | 2
+			"Content-Range" | "bytes */10"                      | 3
+			"Content-Range" | "bytes 0-2"                       | 3
+			"Content-Type"  | "application/octet-stream"        | 3
+			"Content-Type"  | "multipart/byteranges"            | 3
+			"Content-Type"  | "multipart/byteranges; boundary=" | 3
+			"Accept"        | "*/*"                             | 3
+	}
+
+	def 'Always reads ranges of multipart body one by one'() {
+		given:
+			def body = "preamble\r\n--XYZ\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/*\r\n\r\nab\r\n" +
+					"--XYZ \r\ncontent-range: bytes 5-8/9\r\n\r\nc\r\nd\r\n--XYZ--\r\nepilogue"
+			def patch = BytePatch.fromRequest(request("Content-Type", "multipart/byteranges; boundary=\"XYZ\""),
+					stream(body), body.length())
+
+		when:
+			def first = patch.nextRange().get()
+			def firstBytes = readBytes(patch, 2)
+			def second = patch.nextRange().get()
+			def secondBytes = readBytes(patch, 4)
+
+		then:
+			first.range.get() == new ByteRange(0, 1)
+			firstBytes == "ab"
+			second.range.get() == new ByteRange(5, 8)
+			second.completeLength == 9
+			secondBytes == "c\r\nd"
+			patch.nextRange().isNotPresent()
+			patch.nextRange().isNotPresent()
+	}
+
+	@Unroll
+	def 'Never reads ranges of malformed multipart body "#body"'() {
+		given:
+			def patch = BytePatch.fromRequest(request("Content-Type", "multipart/byteranges; boundary=XYZ"),
+					stream(body), -1)
+
+		when:
+			patch.nextRange()
+			readBytes(patch, 2)
+			patch.nextRange()
+
+		then:
+			thrown(InvalidPatchException)
+
+		where:
+			body << ["no boundary at all",
+					 "--XYZ\r\nContent-Type: text/plain\r\n\r\nab\r\n--XYZ--\r\n",
+					 "--XYZ\r\nContent-Range: bytes 0-1/*\r\n\r\nabcd\r\n--XYZ--\r\n",
+					 "--XYZ\r\nContent-Range: bytes 0-1/*\r\n\r\nab\r\n",
+					 "--XYZ\r\nContent-Range: bytes */2\r\n\r\nab\r\n--XYZ--\r\n"]
+	}
+
+	private static BasicHttpEntityEnclosingRequest request(String header, String value) {
+		def request = new BasicHttpEntityEnclosingRequest("PATCH", "/file.txt")
+		request.addHeader(header, value)
+		request
+	}
+
+	private static InputStream stream(String body) {
+		new ByteArrayInputStream(body.getBytes(ISO_8859_1))
+	}
+
+	private static String readBytes(BytePatch patch, int length) {
+		def bytes = new byte[length]
+		new DataInputStream(patch.body).readFully(bytes)
+		new String(bytes, ISO_8859_1)
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.patch
+
+import io.github.kitarek.elasthttpd.commons.Optional
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentAddressedStore
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.ContentAddressedStoreSpec
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.DurabilityMode
+import io.github.kitarek.elasthttpd.plugins.consumers.file.upload.FileUploadWriter
+import org.apache.http.message.BasicHttpEntityEnclosingRequest
+import spock.lang.Requires
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1
+
+class FilePatcherSpec extends Specification {
+
+	def root = Files.createTempDirectory("patch").toFile()
+
+	def cleanup() {
+		root.deleteDir()
+	}
+
+	def 'Never cannot create patcher without its dependencies'() {
+		when:
+			new FilePatcher(writer, publisher, mode)
+
+		then:
+			thrown(NullPointerException)
+
+		where:
+			writer                 | publisher                   | mode
+			null                   | new AtomicUploadPublisher() | FilePatchMode.IN_PLACE
+			new FileUploadWriter() | null                        | FilePatchMode.IN_PLACE
+			new FileUploadWriter() | new AtomicUploadPublisher() | null
+	}
+
+	@Unroll
+	def 'Always applies ranges #contentRanges to file #mode'() {
+		given:
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+			def patcher = new FilePatcher(new FileUploadWriter(), new AtomicUploadPublisher(4, DurabilityMode.FILE_SYNC),
+					mode)
+
+		when:
+			patcher.patch(file, multipartPatch(contentRanges, bodies))
+
+		then:
+			file.text == expectedContent
+			root.list() == ["file.txt"] as String[]
+
+		where:
+			mode                        | contentRanges                          | bodies         | expectedContent
+			FilePatchMode.IN_PLACE      | ["bytes 2-4/*"]                        | ["abc"]        | "01abc56789"
+			FilePatchMode.IN_PLACE      | ["bytes 0-0/*", "bytes 9-11/*"]        | ["a", "bcd"]   | "a12345678bcd"
+			FilePatchMode.IN_PLACE      | ["bytes 0-1/4"]                        | ["ab"]         | "ab23"
+			FilePatchMode.IN_PLACE      | ["bytes 10-11/12", "bytes 0-0/12"]     | ["ab", "c"]    | "c123456789ab"
+			FilePatchMode.COPY_ON_WRITE | ["bytes 2-4/*"]                        | ["abc"]        | "01abc56789"
+			FilePatchMode.COPY_ON_WRITE | ["bytes 0-0/*", "bytes 9-11/*"]        | ["a", "bcd"]   | "a12345678bcd"
+			FilePatchMode.COPY_ON_WRITE | ["bytes 0-1/4"]                        | ["ab"]         | "ab23"
+	}
+
+	@Unroll
+	def 'Always changes modification time of file patched #mode within the same millisecond'() {
+		given:
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+			def lastModified = file.lastModified()
+			def patcher = new FilePatcher(new FileUploadWriter(), new AtomicUploadPublisher(), mode)
+
+		when:
+			patcher.patch(file, multipartPatch(["bytes 0-0/*"], ["a"]))
+			def firstLastModified = file.lastModified()
+			patcher.patch(file, multipartPatch(["bytes 0-0/*"], ["b"]))
+
+		then:
+			firstLastModified > lastModified
+			file.lastModified() > firstLastModified
+
+		where:
+			mode << FilePatchMode.values()
+	}
+
+	@Unroll
+	def 'Never applies range starting after the end of file #mode'() {
+		given:
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+			def patcher = new FilePatcher(new FileUploadWriter(), new AtomicUploadPublisher(), mode)
+
+		when:
+			patcher.patch(file, multipartPatch(["bytes 11-11/*"], ["a"]))
+
+		then:
+			thrown(UnsatisfiablePatchException)
+			file.text == "0123456789"
+			root.list() == ["file.txt"] as String[]
+
+		where:
+			mode << FilePatchMode.values()
+	}
+
+	def 'Always keeps previous version of file when patch copied on write is not valid'() {
+		given:
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+			def patcher = new FilePatcher(new FileUploadWriter(), new AtomicUploadPublisher(),
+					FilePatchMode.COPY_ON_WRITE)
+
+		when:
+			patcher.patch(file, multipartPatch(["bytes 0-0/10", "bytes 1-1/11"], ["a", "b"]))
+
+		then:
+			thrown(InvalidPatchException)
+			file.text == "0123456789"
+			root.list() == ["file.txt"] as String[]
+	}
+
+	@Requires({ ContentAddressedStoreSpec.isHardLinkCountSupported() })
+	def 'Always patches a copy of file with other names and releases blob referenced by it'() {
+		given:
+			def store = Mock(ContentAddressedStore)
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+			def otherName = new File(root, "other.txt")
+			Files.createLink(otherName.toPath(), file.toPath())
+			def digest = new byte[32]
+			def patcher = new FilePatcher(new FileUploadWriter(), new AtomicUploadPublisher(), FilePatchMode.IN_PLACE,
+					Optional.present(store))
+
+		when:
+			patcher.patch(file, multipartPatch(["bytes 2-4/*"], ["abc"]))
+
+		then:
+			1 * store.referencedDigestOf(file) >> Optional.present(digest)
+			1 * store.release(digest)
+			file.text == "01abc56789"
+			otherName.text == "0123456789"
+	}
+
+	def 'Never patches file that does not exist'() {
+		given:
+			def patcher = new FilePatcher(new FileUploadWriter(), new AtomicUploadPublisher(), FilePatchMode.IN_PLACE)
+
+		when:
+			patcher.patch(new File(root, "missing.txt"), multipartPatch(["bytes 0-0/*"], ["a"]))
+
+		then:
+			thrown(FileNotFoundException)
+			root.list().length == 0
+	}
+
+	def 'Always serializes patches and uploads of the same path with the lock of upload publisher'() {
+		given:
+			def publisher = new AtomicUploadPublisher()
+			def patcher = new FilePatcher(new FileUploadWriter(), publisher, FilePatchMode.IN_PLACE)
+
+		expect:
+			patcher.lockFor(new File(root, "file.txt")).is(publisher.lockFor(new File(root, "file.txt")))
+	}
+
+	@Unroll
+	def 'Always publishes patched copy while the lock of the file is held with #mode durability'() {
+		given:
+			def file = new File(root, "file.txt")
+			file.text = "0123456789"
+			def patcher = new FilePatcher(new FileUploadWriter(), new AtomicUploadPublisher(4, mode),
+					FilePatchMode.COPY_ON_WRITE)
+			def lock = patcher.lockFor(file)
+
+		when:
+			lock.lock()
+			try {
+				patcher.patch(file, multipartPatch(["bytes 0-1/*"], ["ab"]))
+			} finally {
+				lock.unlock()
+			}
+
+		then:
+			file.text == "ab23456789"
+
+		where:
+			mode << DurabilityMode.values()
+	}
+
+	private static BytePatch multipartPatch(List<String> contentRanges, List<String> bodies) {
+		def body = new StringBuilder()
+		for (int i = 0; i < contentRanges.size(); i++)
+			body.append("--XYZ\r\nContent-Range: ").append(contentRanges[i]).append("\r\n\r\n").append(bodies[i])
+					.append("\r\n")
+		body.append("--XYZ--\r\n")
+		def request = new BasicHttpEntityEnclosingRequest("PATCH", "/file.txt")
+		request.addHeader("Content-Type", "multipart/byteranges; boundary=XYZ")
+		BytePatch.fromRequest(request, new ByteArrayInputStream(body.toString().getBytes(ISO_8859_1)), -1)
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer
+
+import io.github.kitarek.elasthttpd.commons.Optional
+import io.github.kitarek.elasthttpd.server.compression.AcceptEncodingNegotiator
+import org.apache.http.HttpRequest
+import org.apache.http.message.BasicHttpRequest
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.zip.GZIPInputStream
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty
+import static io.github.kitarek.elasthttpd.commons.Optional.present
+import static io.github.kitarek.elasthttpd.server.compression.CompressionConfigurationBuilder.newCompressionConfiguration
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.DEFLATE
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.GZIP
+
+class CompressedFileVariantCacheSpec extends Specification {
+
+	def directory = Files.createTempDirectory("compressed").toFile()
+	def file = new File(directory, "app.js")
+	def configuration = newCompressionConfiguration().createNow()
+	def cache = new CompressedFileVariantCache(new AcceptEncodingNegotiator(), configuration, 1024 * 1024, 64 * 1024)
+
+	def setup() {
+		file.text = "var app = {};\n" * 1000
+	}
+
+	def cleanup() {
+		directory.deleteDir()
+	}
+
+	def 'Never cannot create cache without positive maximum file size'() {
+		when:
+			new CompressedFileVariantCache(new AcceptEncodingNegotiator(), configuration, 1024, 0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always compresses file once and serves next requests from memory'() {
+		when:
+			def firstVariant = resolveVariantOf(file, present("application/javascript"), requestAccepting("gzip"))
+			def secondVariant = resolveVariantOf(file, present("application/javascript"), requestAccepting("gzip"))
+
+		then:
+			firstVariant.get().contentCoding == GZIP
+			new GZIPInputStream(firstVariant.get().openContent()).bytes == file.bytes
+			secondVariant.get().openContent().bytes == firstVariant.get().openContent().bytes
+			cache.cache.missCount == 1
+			cache.cache.hitCount == 1
+			cache.cache.currentWeight == firstVariant.get().contentLength
+	}
+
+	def 'Always keeps variants of different codings apart'() {
+		when:
+			def gzipVariant = resolveVariantOf(file, present("text/javascript"), requestAccepting("gzip"))
+			def deflateVariant = resolveVariantOf(file, present("text/javascript"), requestAccepting("deflate"))
+
+		then:
+			gzipVariant.get().contentCoding == GZIP
+			deflateVariant.get().contentCoding == DEFLATE
+			cache.cache.size() == 2
+	}
+
+	def 'Always compresses file again when it was modified'() {
+		given:
+			resolveVariantOf(file, present("text/plain"), requestAccepting("gzip"))
+			file.text = "modified content;\n" * 1000
+			file.setLastModified(file.lastModified() + 2000)
+
+		when:
+			def variant = resolveVariantOf(file, present("text/plain"), requestAccepting("gzip"))
+
+		then:
+			new GZIPInputStream(variant.get().openContent()).bytes == file.bytes
+			cache.cache.missCount == 2
+	}
+
+	def 'Always compresses file only once for concurrent first requests'() {
+		given:
+			def executor = Executors.newFixedThreadPool(8)
+			def tasks = (1..8).collect {
+				{ -> resolveVariantOf(file, present("text/plain"), requestAccepting("gzip")).get() } as Callable
+			}
+
+		when:
+			def variants = executor.invokeAll(tasks)*.get()
+
+		then:
+			variants.every { it.openContent().bytes == variants[0].openContent().bytes }
+			cache.cache.size() == 1
+			cache.cache.evictionCount == 0
+
+		cleanup:
+			executor.shutdown()
+	}
+
+	def 'Never compresses file on cache miss for HEAD request'() {
+		given:
+			def headRequest = requestAccepting("gzip", "HEAD")
+
+		when:
+			def variant = resolveVariantOf(file, present("text/plain"), headRequest)
+
+		then:
+			variant.get().contentCoding == GZIP
+			variant.get().contentLength == FileVariant.UNKNOWN_CONTENT_LENGTH
+			cache.cache.size() == 0
+
+		when:
+			def content = new GZIPInputStream(variant.get().openContent()).bytes
+
+		then:
+			content == file.bytes
+			cache.cache.size() == 1
+	}
+
+	def 'Always describes cached variant with its length for HEAD request'() {
+		given:
+			def getVariant = resolveVariantOf(file, present("text/plain"), requestAccepting("gzip"))
+
+		when:
+			def headVariant = resolveVariantOf(file, present("text/plain"), requestAccepting("gzip", "HEAD"))
+
+		then:
+			headVariant.get().contentLength == getVariant.get().contentLength
+			cache.cache.missCount == 1
+			cache.cache.hitCount == 1
+	}
+
+	def 'Never resolves variant for not compressible, too small or too big files or not accepted codings'() {
+		given:
+			def smallFile = new File(directory, "small.txt")
+			smallFile.text = "small"
+			def bigFile = new File(directory, "big.txt")
+			bigFile.text = "x" * (128 * 1024)
+
+		expect:
+			resolveVariantOf(file, present("image/png"), requestAccepting("gzip")).isNotPresent()
+			resolveVariantOf(file, empty(), requestAccepting("gzip")).isNotPresent()
+			resolveVariantOf(smallFile, present("text/plain"), requestAccepting("gzip")).isNotPresent()
+			resolveVariantOf(bigFile, present("text/plain"), requestAccepting("gzip")).isNotPresent()
+			resolveVariantOf(file, present("text/plain"), requestAccepting("br")).isNotPresent()
+			resolveVariantOf(file, present("text/plain"), new BasicHttpRequest("GET", "/app.js")).isNotPresent()
+	}
+
+	private def resolveVariantOf(File originalFile, Optional<String> optionalContentType, HttpRequest request) {
+		cache.resolveVariant(originalFile, originalFile.length(), originalFile.lastModified(), optionalContentType,
+				request)
+	}
+
+	private static def requestAccepting(String acceptEncoding, String method = "GET") {
+		def request = new BasicHttpRequest(method, "/app.js")
+		request.addHeader("Accept-Encoding", acceptEncoding)
+		request
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer
+
+import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.ConditionalRequestResult
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.FileValidators
+import org.apache.http.HttpVersion
+import org.apache.http.message.BasicHttpRequest
+import org.apache.http.message.BasicHttpResponse
+import spock.lang.Specification
+
+class ConditionalFileResponderSpec extends Specification {
+
+	def validators = new FileValidators("7-1", 1000)
+	def responder = new ConditionalFileResponder(new TemplatedHttpResponder())
+	def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+
+	def 'Never cannot create responder without templated responder'() {
+		when:
+			new ConditionalFileResponder(null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always lets unconditional request proceed with Last-Modified header'() {
+		when:
+			def result = responder.respondToPreconditions(requestWith([:]), response, validators, "a.txt")
+
+		then:
+			result == ConditionalRequestResult.PROCEED
+			response.statusLine.statusCode == 200
+			response.getFirstHeader("Last-Modified").value == validators.lastModifiedDate
+	}
+
+	def 'Always answers request for not modified variant with entity tag of the variant'() {
+		when:
+			def result = responder.respondToPreconditions(requestWith(["If-None-Match": 'W/"7-1-gzip"']), response,
+					validators, "a.txt")
+
+		then:
+			result == ConditionalRequestResult.NOT_MODIFIED
+			response.statusLine.statusCode == 304
+			response.getFirstHeader("ETag").value == '"7-1-gzip"'
+	}
+
+	def 'Always answers failed precondition without Last-Modified header'() {
+		when:
+			def result = responder.respondToPreconditions(requestWith(["If-Match": '"other"']), response,
+					validators, "a.txt")
+
+		then:
+			result == ConditionalRequestResult.PRECONDITION_FAILED
+			response.statusLine.statusCode == 412
+			response.getFirstHeader("Last-Modified") == null
+	}
+
+	def 'Always advertises byte ranges of satisfiable range request'() {
+		when:
+			def result = responder.respondToRanges(requestWith(["Range": "bytes=0-1"]), response, validators, 7,
+					"a.txt")
+
+		then:
+			!result.isNotSatisfiable()
+			response.statusLine.statusCode == 200
+			response.getFirstHeader("Accept-Ranges").value == "bytes"
+	}
+
+	def 'Always answers unsatisfiable range with length of file'() {
+		when:
+			def result = responder.respondToRanges(requestWith(["Range": "bytes=9-"]), response, validators, 7,
+					"a.txt")
+
+		then:
+			result.isNotSatisfiable()
+			response.statusLine.statusCode == 416
+			response.getFirstHeader("Content-Range").value == "bytes */7"
+	}
+
+	private static requestWith(Map<String, String> headers) {
+		def request = new BasicHttpRequest("GET", "/a.txt")
+		headers.each { name, value -> request.setHeader(name, value) }
+		return request
+	}
+}
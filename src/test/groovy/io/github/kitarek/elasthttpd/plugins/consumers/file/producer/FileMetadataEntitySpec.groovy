@@ -0,0 +1,59 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer
+
+import spock.lang.Specification
+
+class FileMetadataEntitySpec extends Specification {
+
+	def 'Never cannot create entity with negative length'() {
+		when:
+			new FileMetadataEntity(-1)
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always describes length of content without giving access to it'() {
+		given:
+			def entity = new FileMetadataEntity(1024)
+
+		expect:
+			entity.contentLength == 1024
+			entity.repeatable
+			!entity.streaming
+
+		when:
+			entity.content
+		then:
+			thrown(IOException)
+
+		when:
+			entity.writeTo(new ByteArrayOutputStream())
+		then:
+			thrown(IOException)
+	}
+
+	def 'Always describes content of unknown length'() {
+		given:
+			def entity = new FileMetadataEntity()
+
+		expect:
+			entity.contentLength == FileVariant.UNKNOWN_CONTENT_LENGTH
+			!entity.streaming
+	}
+}
@@ -16,19 +16,35 @@
  */
 
 package io.github.kitarek.elasthttpd.plugins.consumers.file.producer
+import io.github.kitarek.elasthttpd.commons.Base64Codec
 import io.github.kitarek.elasthttpd.commons.MimeTypeDetector
 import io.github.kitarek.elasthttpd.commons.TemplatedHttpResponder
+import io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlRules
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.EntityTagGenerator
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.MetadataEntityTagGenerator
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStore
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.ContentDigestStoreSpec
+import io.github.kitarek.elasthttpd.plugins.consumers.file.metadata.FileMetadata
 import org.apache.http.HttpResponse
+import org.apache.http.HttpVersion
 import org.apache.http.entity.AbstractHttpEntity
+import org.apache.http.message.BasicHttpRequest
+import org.apache.http.message.BasicHttpResponse
+import spock.lang.Requires
 import spock.lang.Shared
 import spock.lang.Specification
 import spock.lang.Unroll
 
 import java.nio.file.Path
 import java.nio.file.Paths
+import java.security.MessageDigest
 
+import static io.github.kitarek.elasthttpd.commons.HttpDates.formatDate
 import static io.github.kitarek.elasthttpd.commons.Optional.empty
 import static io.github.kitarek.elasthttpd.commons.Optional.present
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlPolicy.maxAge
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.cachecontrol.CacheControlPolicy.noCache
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.GZIP
 
 class HttpFileProducerSpec extends Specification {
 
@@ -217,6 +233,490 @@ class HttpFileProducerSpec extends Specification {
 			1 * responder.respondWithInternalServerError(httpResponse, _)
 	}
 
+	def 'Always sends encoded file variant with original content type and Vary header when resolver finds it'() {
+		given:
+			def MimeTypeDetector detector = Mock()
+			def TemplatedHttpResponder responder = Mock()
+			def FileVariantResolver resolver = Mock()
+			def HttpFileProducer producer = new HttpFileProducer(detector, responder, present(resolver))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def request = new BasicHttpRequest("GET", "/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		and:
+			def encodedContent = [31, -117, 8, 0] as byte[]
+			def FileVariant variant = Stub()
+			variant.contentCoding >> GZIP
+			variant.contentLength >> encodedContent.length
+			variant.openContent() >> new ByteArrayInputStream(encodedContent)
+		and:
+			detector.detectMimeContentType(localRealTextFile) >> present(textFileMimeType())
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, request, response)
+
+		then:
+			1 * resolver.resolveVariant(localRealTextFile, localRealTextFile.length(), localRealTextFile.lastModified(),
+					present(textFileMimeType()), request) >> present(variant)
+			0 * responder._
+		and:
+			response.entity.contentEncoding.value == "gzip"
+			response.entity.contentLength == encodedContent.length
+			response.entity.contentType.value == textFileMimeType()
+			response.getFirstHeader("Vary").value == "Accept-Encoding"
+	}
+
+	def 'Always sends the original file with Vary header when resolver does not find any variant'() {
+		given:
+			def MimeTypeDetector detector = Mock()
+			def FileVariantResolver resolver = Stub()
+			def HttpFileProducer producer = new HttpFileProducer(detector, Mock(TemplatedHttpResponder),
+					present(resolver))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		and:
+			detector.detectMimeContentType(localRealTextFile) >> empty()
+			resolver.resolveVariant(_, _, _, _, _) >> empty()
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, new BasicHttpRequest("GET", "/"), response)
+
+		then:
+			response.entity.contentEncoding == null
+			response.entity.contentLength == localRealTextFile.size()
+			response.getFirstHeader("Vary").value == "Accept-Encoding"
+	}
+
+	def 'Always sends file content from provider without opening the file when provider has it'() {
+		given:
+			def MimeTypeDetector detector = Mock()
+			def FileContentProvider provider = Mock()
+			def HttpFileProducer producer = new HttpFileProducer(detector, Mock(TemplatedHttpResponder), empty(),
+					present(provider))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		and:
+			def cachedContent = "cached".bytes
+			def FileContent content = Stub()
+			content.contentLength >> cachedContent.length
+			content.openContent() >> new ByteArrayInputStream(cachedContent)
+		and:
+			detector.detectMimeContentType(localRealTextFile) >> present(textFileMimeType())
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, new BasicHttpRequest("GET", "/"), response)
+
+		then:
+			1 * provider.provideContent(localRealTextFile, localRealTextFile.length(),
+					localRealTextFile.lastModified()) >> present(content)
+		and:
+			response.entity.content.bytes == cachedContent
+			response.entity.contentLength == cachedContent.length
+			response.entity.contentType.value == textFileMimeType()
+			response.getFirstHeader("Vary") == null
+	}
+
+	def 'Always reads file from filesystem when provider does not have its content'() {
+		given:
+			def MimeTypeDetector detector = Mock()
+			def FileContentProvider provider = Stub()
+			def HttpFileProducer producer = new HttpFileProducer(detector, Mock(TemplatedHttpResponder), empty(),
+					present(provider))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		and:
+			detector.detectMimeContentType(localRealTextFile) >> empty()
+			provider.provideContent(_, _, _) >> empty()
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, response)
+
+		then:
+			response.entity.content.bytes == localRealTextFile.bytes
+	}
+
+	def 'Always adds ETag and Last-Modified validators when request for file is known'() {
+		given:
+			def MimeTypeDetector detector = Stub()
+			def HttpFileProducer producer = new HttpFileProducer(detector, Mock(TemplatedHttpResponder))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		and:
+			detector.detectMimeContentType(_) >> empty()
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, new BasicHttpRequest("GET", "/"), response)
+
+		then:
+			response.getFirstHeader("ETag").value ==
+					"\"${Long.toHexString(localRealTextFile.length())}-${Long.toHexString(localRealTextFile.lastModified())}\""
+			response.getFirstHeader("Last-Modified").value == formatDate(localRealTextFile.lastModified())
+			response.entity.content.bytes == localRealTextFile.bytes
+	}
+
+	def 'Always answers with not modified without opening the file when client has its current version'() {
+		given:
+			def MimeTypeDetector detector = Mock()
+			def TemplatedHttpResponder responder = Mock()
+			def FileContentProvider provider = Mock()
+			def HttpFileProducer producer = new HttpFileProducer(detector, responder, empty(), present(provider))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+			def entityTag = "\"${Long.toHexString(localRealTextFile.length())}-${Long.toHexString(localRealTextFile.lastModified())}\""
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("If-None-Match", "\"other\", " + entityTag)
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, request, response)
+
+		then:
+			1 * responder.respondThatResourceIsNotModified(response)
+			0 * detector._
+			0 * provider._
+		and:
+			response.entity == null
+			response.getFirstHeader("ETag").value == entityTag
+			response.getFirstHeader("Last-Modified") != null
+	}
+
+	def 'Always answers with not modified carrying entity tag of variant that client has'() {
+		given:
+			def HttpFileProducer producer = new HttpFileProducer(Stub(MimeTypeDetector), Mock(TemplatedHttpResponder))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+			def opaqueTag = Long.toHexString(localRealTextFile.length()) + "-" +
+					Long.toHexString(localRealTextFile.lastModified())
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("If-None-Match", "W/\"${opaqueTag}-gzip\"")
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, request, response)
+
+		then:
+			response.entity == null
+			response.getFirstHeader("ETag").value == "\"${opaqueTag}-gzip\""
+	}
+
+	def 'Always answers with precondition failed when entity tag from If-Match does not match'() {
+		given:
+			def TemplatedHttpResponder responder = Mock()
+			def HttpFileProducer producer = new HttpFileProducer(Mock(MimeTypeDetector), responder)
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("If-Match", "\"other\"")
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, request, response)
+
+		then:
+			1 * responder.respondWithPreconditionFailed(response, _)
+		and:
+			response.entity == null
+			response.getFirstHeader("ETag") == null
+	}
+
+	def 'Always uses entity tag of variant when encoded file variant is sent'() {
+		given:
+			def MimeTypeDetector detector = Stub()
+			def FileVariantResolver resolver = Stub()
+			def EntityTagGenerator generator = Stub()
+			def HttpFileProducer producer = new HttpFileProducer(detector, Mock(TemplatedHttpResponder),
+					present(resolver), empty(), generator)
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		and:
+			def FileVariant variant = Stub()
+			variant.contentCoding >> GZIP
+			variant.contentLength >> 1
+			variant.openContent() >> new ByteArrayInputStream([1] as byte[])
+			detector.detectMimeContentType(_) >> empty()
+			resolver.resolveVariant(_, _, _, _, _) >> present(variant)
+			generator.generateEntityTag(localRealTextFile, _, _) >> "tag"
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, new BasicHttpRequest("GET", "/"), response)
+
+		then:
+			response.getFirstHeader("ETag").value == "\"tag-gzip\""
+	}
+
+	def 'Always sends single requested range of original file as partial content'() {
+		given:
+			def TemplatedHttpResponder responder = Mock()
+			def MimeTypeDetector detector = Stub()
+			def FileVariantResolver resolver = Mock()
+			def HttpFileProducer producer = new HttpFileProducer(detector, responder, present(resolver))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Range", "bytes=1-3")
+		and:
+			detector.detectMimeContentType(_) >> present(textFileMimeType())
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, request, response)
+
+		then:
+			1 * responder.respondWithPartialContent(response)
+			0 * resolver._
+		and:
+			response.getFirstHeader("Content-Range").value == "bytes 1-3/${localRealTextFile.length()}"
+			response.getFirstHeader("Accept-Ranges").value == "bytes"
+			response.entity.contentLength == 3
+			response.entity.contentType.value == textFileMimeType()
+			response.entity.content.bytes == localRealTextFile.bytes[1..3] as byte[]
+	}
+
+	def 'Always sends many requested ranges of file as multipart byte ranges'() {
+		given:
+			def TemplatedHttpResponder responder = Mock()
+			def MimeTypeDetector detector = Stub()
+			def HttpFileProducer producer = new HttpFileProducer(detector, responder)
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Range", "bytes=0-0,2-2")
+		and:
+			detector.detectMimeContentType(_) >> empty()
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, request, response)
+
+		then:
+			1 * responder.respondWithPartialContent(response)
+		and:
+			response.getFirstHeader("Content-Range") == null
+			response.entity.contentType.value.startsWith("multipart/byteranges; boundary=")
+	}
+
+	def 'Always answers with range not satisfiable when none of requested ranges overlaps the file'() {
+		given:
+			def TemplatedHttpResponder responder = Mock()
+			def HttpFileProducer producer = new HttpFileProducer(Stub(MimeTypeDetector), responder)
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Range", "bytes=${localRealTextFile.length()}-")
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, request, response)
+
+		then:
+			1 * responder.respondWithRequestedRangeNotSatisfiable(response, _)
+		and:
+			response.getFirstHeader("Content-Range").value == "bytes */${localRealTextFile.length()}"
+			response.entity == null
+	}
+
+	def 'Always describes file from its metadata only when HEAD request is received'() {
+		given:
+			def MimeTypeDetector detector = Stub()
+			def FileContentProvider provider = Mock()
+			def HttpFileProducer producer = new HttpFileProducer(detector, Mock(TemplatedHttpResponder), empty(),
+					present(provider))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		and:
+			detector.detectMimeContentType(_) >> present(textFileMimeType())
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, new BasicHttpRequest("HEAD", "/"), response)
+
+		then:
+			0 * provider._
+		and:
+			response.entity instanceof FileMetadataEntity
+			response.entity.contentLength == localRealTextFile.length()
+			response.entity.contentType.value == textFileMimeType()
+			response.getFirstHeader("ETag") != null
+			response.getFirstHeader("Last-Modified") != null
+	}
+
+	def 'Always takes length and modification time of file from metadata given by the caller'() {
+		given:
+			def MimeTypeDetector detector = Stub()
+			def HttpFileProducer producer = new HttpFileProducer(detector, Mock(TemplatedHttpResponder))
+			detector.detectMimeContentType(_) >> empty()
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def metadata = new FileMetadata(true, false, true, true, 42, 784111777000L)
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, metadata, new BasicHttpRequest("HEAD", "/"), response)
+
+		then:
+			response.entity.contentLength == 42
+			response.getFirstHeader("ETag").value == '"2a-' + Long.toHexString(784111777000L) + '"'
+			response.getFirstHeader("Last-Modified").value == formatDate(784111777000L)
+	}
+
+	@Unroll
+	def 'Never cannot pass metadata of file that is #description'() {
+		given:
+			def HttpFileProducer producer = new HttpFileProducer(Stub(MimeTypeDetector), Mock(TemplatedHttpResponder))
+
+		when:
+			producer.sendFileOverHttpResponse(new File("any"), metadata, new BasicHttpRequest("GET", "/"),
+					Mock(HttpResponse))
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			description    | metadata
+			"not existing" | FileMetadata.NOT_EXISTING
+			"a directory"  | new FileMetadata(true, true, false, true, 0, 0)
+			"not readable" | new FileMetadata(true, false, true, false, 0, 0)
+	}
+
+	@Unroll
+	def 'Always describes encoded file variant of #variantLength length without opening it for HEAD request'() {
+		given:
+			def MimeTypeDetector detector = Stub()
+			def FileVariantResolver resolver = Stub()
+			def FileVariant variant = Mock()
+			def HttpFileProducer producer = new HttpFileProducer(detector, Mock(TemplatedHttpResponder),
+					present(resolver))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		and:
+			detector.detectMimeContentType(_) >> empty()
+			resolver.resolveVariant(_, _, _, _, _) >> present(variant)
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, new BasicHttpRequest("HEAD", "/"), response)
+
+		then:
+			_ * variant.contentCoding >> GZIP
+			_ * variant.contentLength >> variantLength
+			0 * variant.openContent()
+		and:
+			response.entity instanceof FileMetadataEntity
+			response.entity.contentLength == variantLength
+			response.entity.contentEncoding.value == "gzip"
+			response.getFirstHeader("ETag").value.endsWith('-gzip"')
+
+		where:
+			variantLength << [42, FileVariant.UNKNOWN_CONTENT_LENGTH]
+	}
+
+	@Unroll
+	def 'Always adds caching headers chosen by rules to #method response for #uri'() {
+		given:
+			def MimeTypeDetector detector = Stub()
+			def rules = CacheControlRules.noRules()
+					.withPathPattern("/static/*", maxAge(3600).immutable())
+					.withMimeType("text/plain", noCache())
+			def HttpFileProducer producer = new HttpFileProducer(detector, new TemplatedHttpResponder(), empty(),
+					empty(), new MetadataEntityTagGenerator(), rules)
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+			def request = new BasicHttpRequest(method, uri)
+			request.addHeader("If-Modified-Since", formatDate(localRealTextFile.lastModified()))
+		and:
+			detector.detectMimeContentType(_) >> present(textFileMimeType())
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, request, response)
+
+		then:
+			response.statusLine.statusCode == 304
+			response.getFirstHeader("Cache-Control").value == expectedCacheControl
+			response.getFirstHeader("Expires") != null
+
+		where:
+			method | uri                         | expectedCacheControl
+			"GET"  | "/static/test-file.txt?v=1" | "max-age=3600, immutable"
+			"HEAD" | "/static/test-file.txt"     | "max-age=3600, immutable"
+			"GET"  | "/test-file.txt"            | "no-cache"
+	}
+
+	def 'Always sends full file with caching headers chosen by rules'() {
+		given:
+			def MimeTypeDetector detector = Stub()
+			def HttpFileProducer producer = new HttpFileProducer(detector, new TemplatedHttpResponder(), empty(),
+					empty(), new MetadataEntityTagGenerator(), CacheControlRules.noRules().withPathPattern("*.txt",
+					maxAge(60)))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		and:
+			detector.detectMimeContentType(_) >> empty()
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, new BasicHttpRequest("GET", "/test-file.txt"),
+					response)
+
+		then:
+			response.getFirstHeader("Cache-Control").value == "max-age=60"
+			response.entity.content.bytes == localRealTextFile.bytes
+	}
+
+	def 'Never adds caching headers when no rule matches the file'() {
+		given:
+			def MimeTypeDetector detector = Stub()
+			def HttpFileProducer producer = new HttpFileProducer(detector, new TemplatedHttpResponder(), empty(),
+					empty(), new MetadataEntityTagGenerator(), CacheControlRules.noRules().withPathPattern("*.js",
+					maxAge(60)))
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		and:
+			detector.detectMimeContentType(_) >> present(textFileMimeType())
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, new BasicHttpRequest("GET", "/test-file.txt"),
+					response)
+
+		then:
+			response.getFirstHeader("Cache-Control") == null
+			response.getFirstHeader("Expires") == null
+	}
+
+	@Unroll
+	@Requires({ ContentDigestStoreSpec.isUserDefinedAttributeSupported() })
+	def 'Always adds stored digest of file only when client wants SHA-256 digest with "#wantDigest"'() {
+		given:
+			def HttpFileProducer producer = new HttpFileProducer(new MimeTypeDetector(), new TemplatedHttpResponder())
+			def file = File.createTempFile("digest", ".txt")
+			file.text = "content"
+			def digest = MessageDigest.getInstance("SHA-256").digest("content".bytes)
+			new ContentDigestStore().store(file, digest)
+			def request = new BasicHttpRequest("GET", "/" + file.name)
+			request.setHeader("Want-Digest", wantDigest)
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+
+		when:
+			producer.sendFileOverHttpResponse(file, request, response)
+
+		then:
+			response.getFirstHeader("Digest")?.value == (added ? "SHA-256=" + Base64Codec.encode(digest) : null)
+
+		cleanup:
+			file.delete()
+
+		where:
+			wantDigest               | added
+			"SHA-256"                | true
+			"md5;q=1, sha-256;q=0.3" | true
+			"sha-256;q=0"            | false
+			"MD5"                    | false
+	}
+
+	def 'Never adds digest of file that is not stored with it'() {
+		given:
+			def HttpFileProducer producer = new HttpFileProducer(new MimeTypeDetector(), new TemplatedHttpResponder())
+			def File localRealTextFile = new File(currentExistingProjectDirectory() + "/src/test/resources/test-file.txt")
+			def request = new BasicHttpRequest("GET", "/test-file.txt")
+			request.setHeader("Want-Digest", "SHA-256")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+
+		when:
+			producer.sendFileOverHttpResponse(localRealTextFile, request, response)
+
+		then:
+			response.getFirstHeader("Digest") == null
+			response.entity.content.bytes == localRealTextFile.bytes
+	}
+
 	@Shared
 	private currentExistingProjectDirectory = {
 		Path currentRelativePath = Paths.get("");
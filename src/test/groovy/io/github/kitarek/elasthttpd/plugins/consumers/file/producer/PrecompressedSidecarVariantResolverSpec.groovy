@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.producer
+
+import io.github.kitarek.elasthttpd.commons.Optional
+import io.github.kitarek.elasthttpd.server.compression.AcceptEncodingNegotiator
+import org.apache.http.HttpRequest
+import org.apache.http.message.BasicHttpRequest
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.zip.GZIPOutputStream
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.GZIP
+
+class PrecompressedSidecarVariantResolverSpec extends Specification {
+
+	def directory = Files.createTempDirectory("sidecar").toFile()
+	def originalFile = new File(directory, "app.js")
+	def sidecarFile = new File(directory, "app.js.gz")
+
+	def setup() {
+		originalFile.text = "var app = {};\n" * 100
+		sidecarFile.withOutputStream { output ->
+			def gzip = new GZIPOutputStream(output)
+			gzip.write(originalFile.bytes)
+			gzip.close()
+		}
+		sidecarFile.setLastModified(originalFile.lastModified() + 1000)
+	}
+
+	def cleanup() {
+		directory.deleteDir()
+	}
+
+	def 'Never cannot create resolver without negotiator'() {
+		when:
+			new PrecompressedSidecarVariantResolver(null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always resolves up to date sidecar when client accepts gzip'() {
+		given:
+			def resolver = new PrecompressedSidecarVariantResolver(new AcceptEncodingNegotiator())
+			def request = requestAccepting("gzip, deflate")
+
+		when:
+			def optionalVariant = resolveVariantOf(resolver, originalFile, empty(), request)
+
+		then:
+			optionalVariant.isPresent()
+			optionalVariant.get().contentCoding == GZIP
+			optionalVariant.get().contentLength == sidecarFile.length()
+			optionalVariant.get().openContent().bytes == sidecarFile.bytes
+	}
+
+	def 'Never resolves sidecar when client does not accept gzip'() {
+		given:
+			def resolver = new PrecompressedSidecarVariantResolver(new AcceptEncodingNegotiator())
+
+		expect:
+			resolveVariantOf(resolver, originalFile, empty(), requestAccepting("deflate")).isNotPresent()
+			resolveVariantOf(resolver, originalFile, empty(), new BasicHttpRequest("GET", "/app.js")).isNotPresent()
+	}
+
+	def 'Never resolves sidecar that is older than the original file'() {
+		given:
+			def resolver = new PrecompressedSidecarVariantResolver(new AcceptEncodingNegotiator())
+			sidecarFile.setLastModified(originalFile.lastModified() - 10000)
+
+		expect:
+			resolveVariantOf(resolver, originalFile, empty(), requestAccepting("gzip")).isNotPresent()
+	}
+
+	def 'Never resolves sidecar that is older than the original file described by the caller'() {
+		given:
+			def resolver = new PrecompressedSidecarVariantResolver(new AcceptEncodingNegotiator())
+
+		expect:
+			resolver.resolveVariant(originalFile, originalFile.length(), sidecarFile.lastModified() + 1000, empty(),
+					requestAccepting("gzip")).isNotPresent()
+	}
+
+	def 'Never resolves sidecar that does not exist or is a directory'() {
+		given:
+			def resolver = new PrecompressedSidecarVariantResolver(new AcceptEncodingNegotiator())
+			def fileWithoutSidecar = new File(directory, "style.css")
+			fileWithoutSidecar.text = "body {}"
+			new File(directory, "style.css.gz").mkdir()
+
+		expect:
+			resolveVariantOf(resolver, fileWithoutSidecar, empty(), requestAccepting("gzip")).isNotPresent()
+	}
+
+	private static def resolveVariantOf(FileVariantResolver resolver, File originalFile,
+										Optional<String> optionalContentType, HttpRequest request) {
+		resolver.resolveVariant(originalFile, originalFile.length(), originalFile.lastModified(), optionalContentType,
+				request)
+	}
+
+	private static def requestAccepting(String acceptEncoding) {
+		def request = new BasicHttpRequest("GET", "/app.js")
+		request.addHeader("Accept-Encoding", acceptEncoding)
+		request
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.range
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ByteRangeSpec extends Specification {
+
+	@Unroll
+	def 'Never cannot create byte range from #first to #last'() {
+		when:
+			new ByteRange(first, last)
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			first | last
+			-1    | 0
+			5     | 4
+	}
+
+	def 'Always computes length and Content-Range of byte range'() {
+		given:
+			def range = new ByteRange(0, 499)
+
+		expect:
+			range.length == 500
+			range.toContentRange(1234) == "bytes 0-499/1234"
+			range == new ByteRange(0, 499)
+	}
+}
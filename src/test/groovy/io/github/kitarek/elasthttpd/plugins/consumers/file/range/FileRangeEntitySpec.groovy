@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.range
+
+import spock.lang.Specification
+
+class FileRangeEntitySpec extends Specification {
+
+	def 'Never cannot create entity without file or range'() {
+		when:
+			new FileRangeEntity(null, new ByteRange(0, 1))
+		then:
+			thrown(NullPointerException)
+
+		when:
+			new FileRangeEntity(new File("any"), null)
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always writes only the range of file'() {
+		given:
+			def file = createFile("0123456789")
+			def entity = new FileRangeEntity(file, new ByteRange(3, 6))
+			def output = new ByteArrayOutputStream()
+
+		when:
+			entity.writeTo(output)
+
+		then:
+			output.toString() == "3456"
+			entity.contentLength == 4
+			entity.repeatable
+			!entity.streaming
+
+		cleanup:
+			file.delete()
+	}
+
+	def 'Always provides content limited to the range of file'() {
+		given:
+			def file = createFile("0123456789")
+			def entity = new FileRangeEntity(file, new ByteRange(8, 9))
+
+		when:
+			def content = entity.content
+
+		then:
+			content.bytes == "89".bytes
+
+		cleanup:
+			content?.close()
+			file.delete()
+	}
+
+	def 'Always fails when file was truncated before its range was sent'() {
+		given:
+			def file = createFile("0123456789")
+			def entity = new FileRangeEntity(file, new ByteRange(5, 9))
+			file.text = "012"
+
+		when:
+			entity.writeTo(new ByteArrayOutputStream())
+
+		then:
+			thrown(IOException)
+
+		cleanup:
+			file.delete()
+	}
+
+	private static File createFile(String content) {
+		def file = File.createTempFile("range", ".txt")
+		file.text = content
+		return file
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.range
+
+import spock.lang.Specification
+
+import static io.github.kitarek.elasthttpd.commons.Optional.empty
+import static io.github.kitarek.elasthttpd.commons.Optional.present
+
+class MultipartByteRangesEntitySpec extends Specification {
+
+	def 'Never cannot create entity without ranges'() {
+		when:
+			new MultipartByteRangesEntity(new File("any"), [], 10, empty())
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always writes every range as separate part with its headers'() {
+		given:
+			def file = File.createTempFile("ranges", ".txt")
+			file.text = "0123456789"
+			def entity = new MultipartByteRangesEntity(file, [new ByteRange(0, 1), new ByteRange(7, 9)], 10,
+					present("text/plain"))
+			def boundary = entity.contentType.value - "multipart/byteranges; boundary="
+			def output = new ByteArrayOutputStream()
+
+		when:
+			entity.writeTo(output)
+
+		then:
+			output.toString() == "--${boundary}\r\nContent-Type: text/plain\r\nContent-Range: bytes 0-1/10\r\n\r\n01" +
+					"\r\n--${boundary}\r\nContent-Type: text/plain\r\nContent-Range: bytes 7-9/10\r\n\r\n789" +
+					"\r\n--${boundary}--\r\n"
+			entity.contentLength == output.size()
+			entity.content.bytes == output.toByteArray()
+
+		cleanup:
+			file.delete()
+	}
+
+	def 'Always omits Content-Type of parts when type of file is not known'() {
+		given:
+			def file = File.createTempFile("ranges", ".bin")
+			file.text = "0123456789"
+			def entity = new MultipartByteRangesEntity(file, [new ByteRange(0, 0), new ByteRange(9, 9)], 10, empty())
+			def output = new ByteArrayOutputStream()
+
+		when:
+			entity.writeTo(output)
+
+		then:
+			!output.toString().contains("Content-Type")
+			entity.contentLength == output.size()
+
+		cleanup:
+			file.delete()
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.range
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.conditional.FileValidators
+import org.apache.http.message.BasicHttpRequest
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static io.github.kitarek.elasthttpd.commons.HttpDates.formatDate
+
+class RangeRequestEvaluatorSpec extends Specification {
+
+	static final long LAST_MODIFIED = 784111777000L
+
+	def evaluator = new RangeRequestEvaluator()
+	def validators = new FileValidators("abc", LAST_MODIFIED)
+
+	@Unroll
+	def 'Always resolves range header #range against content of 10 bytes into #expectedRanges'() {
+		given:
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Range", range)
+
+		when:
+			def result = evaluator.evaluate(request, validators, 10)
+
+		then:
+			result.partialContent
+			result.ranges.collect { it.toString() } == expectedRanges
+
+		where:
+			range                | expectedRanges
+			"bytes=0-4"          | ["0-4"]
+			"bytes=5-"           | ["5-9"]
+			"bytes=-3"           | ["7-9"]
+			"bytes=-30"          | ["0-9"]
+			"bytes=8-20"         | ["8-9"]
+			"Bytes = 1-1 , 3-4"  | ["1-1", "3-4"]
+			"bytes=4-5,0-1"      | ["4-5", "0-1"]
+			"bytes=0-1,20-30"    | ["0-1"]
+			"bytes=0-1,,2-2"     | ["0-1", "2-2"]
+	}
+
+	@Unroll
+	def 'Always ignores invalid range header #range'() {
+		given:
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Range", range)
+
+		expect:
+			evaluator.evaluate(request, validators, 10).fullContent
+
+		where:
+			range << ["bytes", "items=0-1", "bytes=", "bytes=1", "bytes=a-2", "bytes=3-1", "bytes=-", "bytes=--1",
+					  "bytes=0-1,x", "bytes=1234567890123456789-", "bytes=" + (["0-0"] * 65).join(",")]
+	}
+
+	@Unroll
+	def 'Always reports not satisfiable range header #range for content of #length bytes'() {
+		given:
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Range", range)
+
+		expect:
+			evaluator.evaluate(request, validators, length).notSatisfiable
+
+		where:
+			range              | length
+			"bytes=10-"        | 10
+			"bytes=10-20,30-"  | 10
+			"bytes=-0"         | 10
+			"bytes=0-"         | 0
+			"bytes=-5"         | 0
+	}
+
+	@Unroll
+	def 'Always sends full content for #method request or request without range'() {
+		given:
+			def request = new BasicHttpRequest(method, "/")
+			if (range)
+				request.addHeader("Range", "bytes=0-1")
+
+		expect:
+			evaluator.evaluate(request, validators, 10).fullContent
+
+		where:
+			method | range
+			"GET"  | false
+			"HEAD" | true
+			"PUT"  | true
+	}
+
+	@Unroll
+	def 'Always evaluates If-Range #ifRange as matching: #matching'() {
+		given:
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Range", "bytes=0-1")
+			request.addHeader("If-Range", ifRange)
+
+		expect:
+			evaluator.evaluate(request, validators, 10).partialContent == matching
+
+		where:
+			ifRange                           | matching
+			'"abc"'                           | true
+			'W/"abc"'                         | false
+			'"abc-gzip"'                      | false
+			'"abd"'                           | false
+			formatDate(LAST_MODIFIED)         | true
+			formatDate(LAST_MODIFIED - 1000)  | false
+			"invalid date"                    | false
+	}
+
+	@Unroll
+	def 'Never cannot evaluate range request with invalid arguments'() {
+		when:
+			evaluator.evaluate(request, fileValidators, length)
+		then:
+			thrown(exception)
+
+		where:
+			request                          | fileValidators              | length | exception
+			null                             | new FileValidators("a", 0)  | 1      | NullPointerException
+			new BasicHttpRequest("GET", "/") | null                        | 1      | NullPointerException
+			new BasicHttpRequest("GET", "/") | new FileValidators("a", 0)  | -1     | IllegalArgumentException
+	}
+}
@@ -77,6 +77,7 @@ class HttpFileRequestConsumerSelectorSpec extends Specification {
 		and:
 			1 * factory.createConsumerForReadOperation()
 			1 * factory.createConsumerForWriteOperation()
+			1 * factory.createConsumerForPatchOperation()
 			1 * factory.createConsumerForDeleteOperation()
 			0 * factory._
 	}
@@ -178,6 +179,26 @@ class HttpFileRequestConsumerSelectorSpec extends Specification {
 			optionalConsumer.get() == expectedDeleteConsumer
 	}
 
+	def 'Selector created for read-and-write mode returns always correct patch consumer only for PATCH requests'() {
+		given:
+			def factory = Stub(HttpFileRequestConsumerFactory)
+		and:
+			def expectedPatchConsumer = Mock(HttpFileRequestConsumer)
+			factory.createConsumerForReadOperation() >> Mock(HttpFileRequestConsumer)
+			factory.createConsumerForWriteOperation() >> Mock(HttpFileRequestConsumer)
+			factory.createConsumerForPatchOperation() >> expectedPatchConsumer
+			factory.createConsumerForDeleteOperation() >> Mock(HttpFileRequestConsumer)
+		and:
+			def selector = new HttpFileRequestConsumerSelector(READ_AND_WRITE, factory)
+
+		when:
+			def optionalConsumer = selector.selectConsumer(PATCH)
+
+		then:
+			optionalConsumer.isPresent() == true
+			optionalConsumer.get() == expectedPatchConsumer
+	}
+
 	@Unroll("Selector created for read-and-write mode never returns consumer for #httpMethod")
 	def 'Selector created for read-and-write mode never returns consumer for TRACE, OPTIONS, ...'() {
 		given:
@@ -196,7 +217,7 @@ class HttpFileRequestConsumerSelectorSpec extends Specification {
 			optionalConsumer.isNotPresent()
 
 		where:
-			httpMethod << [TRACE, OPTIONS, CONNECT, PATCH]
+			httpMethod << [TRACE, OPTIONS, CONNECT]
 	}
 
 }
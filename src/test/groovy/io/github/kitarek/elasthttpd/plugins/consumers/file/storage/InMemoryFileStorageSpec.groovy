@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class InMemoryFileStorageSpec extends Specification {
+
+	def storage = new InMemoryFileStorage()
+
+	def 'Always stores written content and its metadata'() {
+		when:
+			def writtenBytes = storage.write("/a.txt", stream("content"), 7)
+
+		then:
+			writtenBytes == 7
+			storage.openForRead("/a.txt").text == "content"
+			storage.stat("/a.txt").get().name == "a.txt"
+			!storage.stat("/a.txt").get().directory
+			storage.stat("/a.txt").get().length == 7
+			storage.numberOfFiles == 1
+			storage.storedBytes == 7
+	}
+
+	def 'Always reads only bytes of requested range'() {
+		given:
+			storage.write("/a.txt", stream("content"), FileStorage.UNKNOWN_CONTENT_LENGTH)
+
+		expect:
+			storage.openForRead("/a.txt", new ByteRange(3, 5)).text == "ten"
+	}
+
+	def 'Always replaces the whole content of file and keeps the opened version for readers'() {
+		given:
+			storage.write("/a.txt", stream("old content"), 11)
+			def openedContent = storage.openForRead("/a.txt")
+
+		when:
+			storage.write("/a.txt", stream("new"), 3)
+
+		then:
+			openedContent.text == "old content"
+			storage.openForRead("/a.txt").text == "new"
+			storage.storedBytes == 3
+	}
+
+	def 'Never stores content that has not the declared length'() {
+		when:
+			storage.write("/a.txt", stream("content"), 8)
+
+		then:
+			thrown(IOException)
+			storage.stat("/a.txt").isNotPresent()
+			storage.storedBytes == 0
+	}
+
+	def 'Always creates missing parent directories of written file'() {
+		when:
+			storage.write("/a/b/c.txt", stream("c"), 1)
+
+		then:
+			storage.stat("/a").get().directory
+			storage.stat("/a/b").get().directory
+			storage.list("/")*.name == ["a"]
+			storage.list("/a")*.name == ["b"]
+			storage.list("/a/b")*.name == ["c.txt"]
+	}
+
+	def 'Always lists only direct children of directory'() {
+		given:
+			["/a", "/b/c", "/b/d/e", "/ba", "/b-"].each {
+				storage.write(it, stream(it), FileStorage.UNKNOWN_CONTENT_LENGTH)
+			}
+
+		expect:
+			storage.list("/")*.name.sort() == ["a", "b", "b-", "ba"]
+			storage.list("/b")*.name.sort() == ["c", "d"]
+	}
+
+	def 'Never cannot write directory or file inside of file'() {
+		given:
+			storage.write("/a/b", stream("b"), 1)
+
+		when:
+			storage.write("/a", stream("a"), 1)
+
+		then:
+			thrown(FileNotFoundException)
+
+		when:
+			storage.write("/a/b/c", stream("c"), 1)
+
+		then:
+			thrown(FileNotFoundException)
+	}
+
+	def 'Always deletes files and empty directories only'() {
+		given:
+			storage.write("/a/b", stream("b"), 1)
+
+		when:
+			storage.delete("/a")
+
+		then:
+			thrown(IOException)
+
+		when:
+			def fileDeleted = storage.delete("/a/b")
+			def fileDeletedAgain = storage.delete("/a/b")
+			def directoryDeleted = storage.delete("/a")
+
+		then:
+			fileDeleted
+			!fileDeletedAgain
+			directoryDeleted
+			storage.list("/").empty
+			storage.storedBytes == 0
+	}
+
+	def 'Never cannot open missing file or directory'() {
+		given:
+			storage.write("/a/b", stream("b"), 1)
+
+		when:
+			storage.openForRead(path)
+
+		then:
+			thrown(FileNotFoundException)
+
+		where:
+			path << ["/missing", "/a"]
+	}
+
+	def 'Never cannot list missing directory or file'() {
+		given:
+			storage.write("/a", stream("a"), 1)
+
+		when:
+			storage.list(path)
+
+		then:
+			thrown(FileNotFoundException)
+
+		where:
+			path << ["/missing", "/a"]
+	}
+
+	def 'Never accepts relative paths or paths ending with separator'() {
+		when:
+			storage.stat(path)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			path << ["a", "/a/"]
+	}
+
+	def 'Always copies the whole directory tree except temporary files of uploads'() {
+		given:
+			def directory = Files.createTempDirectory("storage").toFile()
+			new File(directory, "a.txt").text = "a"
+			new File(directory, "b").mkdir()
+			new File(directory, "b/c.txt").text = "cc"
+			new File(directory, ".elasthttpd-upload-1.tmp").text = "partial"
+
+		when:
+			def copy = InMemoryFileStorage.copyOf(directory)
+
+		then:
+			copy.list("/")*.name.sort() == ["a.txt", "b"]
+			copy.openForRead("/b/c.txt").text == "cc"
+			copy.stat("/b/c.txt").get().lastModified == new File(directory, "b/c.txt").lastModified()
+			copy.storedBytes == 3
+
+		cleanup:
+			directory.deleteDir()
+	}
+
+	private static InputStream stream(String content) {
+		new ByteArrayInputStream(content.bytes)
+	}
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange
+import spock.lang.Specification
+
+import java.nio.file.Files
+
+class LocalFileStorageSpec extends Specification {
+
+	def root = Files.createTempDirectory("storage").toFile()
+	def storage = new LocalFileStorage(root)
+
+	def cleanup() {
+		root.deleteDir()
+	}
+
+	def 'Never cannot create storage without existing root directory'() {
+		when:
+			new LocalFileStorage(null)
+
+		then:
+			thrown(NullPointerException)
+
+		when:
+			new LocalFileStorage(new File(root, "missing"))
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always writes content into file of root directory'() {
+		when:
+			def writtenBytes = storage.write("/a.txt", stream("content"), 7)
+
+		then:
+			writtenBytes == 7
+			new File(root, "a.txt").text == "content"
+			root.list() == ["a.txt"]
+			storage.stat("/a.txt").get().length == 7
+			storage.stat("/a.txt").get().lastModified == new File(root, "a.txt").lastModified()
+	}
+
+	def 'Never replaces file with content that has not the declared length'() {
+		given:
+			new File(root, "a.txt").text = "old"
+
+		when:
+			storage.write("/a.txt", stream("content"), 8)
+
+		then:
+			thrown(IOException)
+			new File(root, "a.txt").text == "old"
+			root.list() == ["a.txt"]
+	}
+
+	def 'Never cannot write file into missing directory or over directory'() {
+		given:
+			new File(root, "directory").mkdir()
+
+		when:
+			storage.write(path, stream("content"), 7)
+
+		then:
+			thrown(FileNotFoundException)
+
+		where:
+			path << ["/missing/a.txt", "/directory"]
+	}
+
+	def 'Always reads the whole content or only its range'() {
+		given:
+			new File(root, "a.txt").text = "content"
+
+		expect:
+			storage.openForRead("/a.txt").text == "content"
+			storage.openForRead("/a.txt", new ByteRange(3, 5)).text == "ten"
+	}
+
+	def 'Never cannot open missing file or directory'() {
+		given:
+			new File(root, "directory").mkdir()
+
+		when:
+			storage.openForRead(path)
+
+		then:
+			thrown(FileNotFoundException)
+
+		where:
+			path << ["/missing", "/directory"]
+	}
+
+	def 'Always lists directory without temporary files of uploads'() {
+		given:
+			new File(root, "a.txt").text = "a"
+			new File(root, "b").mkdir()
+			new File(root, ".elasthttpd-upload-1.tmp").text = "partial"
+
+		when:
+			def entries = storage.list("/")
+
+		then:
+			entries*.name.sort() == ["a.txt", "b"]
+			entries.find { it.name == "b" }.directory
+			storage.stat("/").get().directory
+	}
+
+	def 'Always deletes existing files only'() {
+		given:
+			new File(root, "a.txt").text = "a"
+
+		expect:
+			storage.delete("/a.txt")
+			!storage.delete("/a.txt")
+			storage.stat("/a.txt").isNotPresent()
+	}
+
+	def 'Never maps paths outside of root directory'() {
+		when:
+			storage.stat("/../outside")
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	private static InputStream stream(String content) {
+		new ByteArrayInputStream(content.bytes)
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.storage
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+import java.util.zip.CRC32
+import java.util.zip.GZIPInputStream
+import java.util.zip.InflaterInputStream
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.DEFLATE
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.GZIP
+
+class ZipArchiveStorageSpec extends Specification {
+
+	def directory = Files.createTempDirectory("archive").toFile()
+	def archive = new File(directory, "site.zip")
+	def text = (0..<1000).collect { "line $it" }.join("\n")
+	ZipArchiveStorage storage
+
+	def setup() {
+		def zip = new ZipOutputStream(new FileOutputStream(archive))
+		zip.putNextEntry(new ZipEntry("index.html"))
+		zip.write("<p/>".bytes)
+		zip.putNextEntry(new ZipEntry("empty/"))
+		zip.putNextEntry(new ZipEntry("js/app/main.js"))
+		zip.write(text.bytes)
+		zip.putNextEntry(storedEntry("raw.bin", "0123456789".bytes))
+		zip.write("0123456789".bytes)
+		zip.putNextEntry(new ZipEntry("../outside.txt"))
+		zip.write("x".bytes)
+		zip.close()
+		storage = ZipArchiveStorage.open(archive)
+	}
+
+	def cleanup() {
+		storage.close()
+		directory.deleteDir()
+	}
+
+	def 'Never cannot open missing file or file that is not an archive'() {
+		when:
+			ZipArchiveStorage.open(new File(directory, "missing.zip"))
+
+		then:
+			thrown(FileNotFoundException)
+
+		when:
+			def notArchive = new File(directory, "a.txt")
+			notArchive.text = "content"
+			ZipArchiveStorage.open(notArchive)
+
+		then:
+			thrown(IOException)
+	}
+
+	def 'Always indexes files and directories implied by entries except entries with unsafe names'() {
+		expect:
+			storage.numberOfFiles == 3
+			storage.list("/").collect { it.name }.sort() == ["empty", "index.html", "js", "raw.bin"]
+			storage.list("/js").collect { it.name } == ["app"]
+			storage.list("/empty").empty
+			storage.stat("/js/app").get().directory
+			storage.stat("/js/app/main.js").get().length == text.length()
+			storage.stat("/outside.txt").isNotPresent()
+			storage.stat("/missing").isNotPresent()
+	}
+
+	@Unroll
+	def 'Always reads the whole content and ranges of #method entry'() {
+		expect:
+			storage.openForRead(path).text == content
+			storage.openForRead(path, new ByteRange(2, 6)).text == content.substring(2, 7)
+
+		where:
+			method     | path              | content
+			"stored"   | "/raw.bin"        | "0123456789"
+			"deflated" | "/js/app/main.js" | (0..<1000).collect { "line $it" }.join("\n")
+	}
+
+	def 'Always offers encoded variants of deflated entries only'() {
+		expect:
+			storage.storedCodingsOf("/js/app/main.js") == [GZIP, DEFLATE]
+			storage.storedCodingsOf("/raw.bin").empty
+			storage.storedVariantOf("/raw.bin", GZIP).isNotPresent()
+			storage.storedVariantOf("/missing", GZIP).isNotPresent()
+	}
+
+	def 'Always sends compressed data of deflated entry as gzip and deflate variants'() {
+		given:
+			def gzipVariant = storage.storedVariantOf("/js/app/main.js", GZIP).get()
+			def deflateVariant = storage.storedVariantOf("/js/app/main.js", DEFLATE).get()
+
+		when:
+			def gzipContent = gzipVariant.openContent().bytes
+			def deflateContent = deflateVariant.openContent().bytes
+
+		then:
+			gzipContent.length == gzipVariant.contentLength
+			gzipContent.length < text.length()
+			new GZIPInputStream(new ByteArrayInputStream(gzipContent)).text == text
+			deflateContent.length == deflateVariant.contentLength
+			new InflaterInputStream(new ByteArrayInputStream(deflateContent)).text == text
+	}
+
+	def 'Never cannot modify archive'() {
+		when:
+			storage.write("/a.txt", new ByteArrayInputStream("content".bytes), 7)
+
+		then:
+			thrown(IOException)
+
+		when:
+			storage.delete("/index.html")
+
+		then:
+			thrown(IOException)
+			storage.stat("/index.html").isPresent()
+	}
+
+	def 'Never cannot open missing file or list path that is not a directory'() {
+		when:
+			storage.openForRead("/js")
+
+		then:
+			thrown(FileNotFoundException)
+
+		when:
+			storage.list("/index.html")
+
+		then:
+			thrown(FileNotFoundException)
+	}
+
+	private static ZipEntry storedEntry(String name, byte[] content) {
+		def entry = new ZipEntry(name)
+		def crc = new CRC32()
+		crc.update(content)
+		entry.method = ZipEntry.STORED
+		entry.size = content.length
+		entry.crc = crc.value
+		entry
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload
+
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.TEMPORARY_FILE_PREFIX
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.TEMPORARY_FILE_SUFFIX
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.isTemporaryFileName
+import static io.github.kitarek.elasthttpd.plugins.consumers.file.upload.AtomicUploadPublisher.removeAbandonedTemporaryFiles
+
+class AtomicUploadPublisherSpec extends Specification {
+
+	def root = Files.createTempDirectory("publish").toFile()
+
+	def cleanup() {
+		root.deleteDir()
+	}
+
+	def 'Never cannot create publisher without positive number of lock stripes'() {
+		when:
+			new AtomicUploadPublisher(0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always creates temporary file next to the target'() {
+		given:
+			def publisher = new AtomicUploadPublisher()
+
+		when:
+			def temporaryFile = publisher.createTemporaryFile(new File(root, "file.txt"))
+
+		then:
+			temporaryFile.exists()
+			temporaryFile.parentFile == root
+			isTemporaryFileName(temporaryFile.name)
+	}
+
+	def 'Never creates temporary file when directory of the target does not exist'() {
+		when:
+			new AtomicUploadPublisher().createTemporaryFile(new File(root, "missing/file.txt"))
+
+		then:
+			thrown(FileNotFoundException)
+	}
+
+	def 'Always replaces the target while the previous version stays readable for already opened readers'() {
+		given:
+			def publisher = new AtomicUploadPublisher()
+			def target = new File(root, "file.txt")
+			target.text = "previous"
+			def reader = new FileInputStream(target)
+			def temporaryFile = publisher.createTemporaryFile(target)
+			temporaryFile.text = "next"
+
+		when:
+			publisher.publish(temporaryFile, target)
+
+		then:
+			target.text == "next"
+			!temporaryFile.exists()
+			reader.text == "previous"
+
+		cleanup:
+			reader.close()
+	}
+
+	@Unroll
+	def 'Always replaces the target with #durabilityMode durability'() {
+		given:
+			def publisher = new AtomicUploadPublisher(4, durabilityMode)
+			def target = new File(root, "file.txt")
+			target.text = "previous"
+			def temporaryFile = publisher.createTemporaryFile(target)
+			temporaryFile.text = "next"
+
+		when:
+			publisher.publish(temporaryFile, target)
+
+		then:
+			target.text == "next"
+			root.list() == ["file.txt"] as String[]
+			publisher.optionalGroupCommitter.isPresent() == (durabilityMode == DurabilityMode.GROUP_COMMIT)
+
+		where:
+			durabilityMode << DurabilityMode.values()
+	}
+
+	@Unroll
+	def 'Never publishes missing temporary file with #durabilityMode durability'() {
+		given:
+			def publisher = new AtomicUploadPublisher(4, durabilityMode)
+			def target = new File(root, "file.txt")
+			target.text = "previous"
+
+		when:
+			publisher.publish(new File(root, "missing.tmp"), target)
+
+		then:
+			thrown(IOException)
+			target.text == "previous"
+
+		where:
+			durabilityMode << DurabilityMode.values()
+	}
+
+	def 'Never cannot create publisher without durability mode or group committer'() {
+		when:
+			new AtomicUploadPublisher(4, (DurabilityMode) null)
+
+		then:
+			thrown(NullPointerException)
+
+		when:
+			new AtomicUploadPublisher(4, (GroupCommitter) null)
+
+		then:
+			thrown(NullPointerException)
+	}
+
+	def 'Always discards temporary file'() {
+		given:
+			def publisher = new AtomicUploadPublisher()
+			def temporaryFile = publisher.createTemporaryFile(new File(root, "file.txt"))
+
+		when:
+			publisher.discard(temporaryFile)
+
+		then:
+			!temporaryFile.exists()
+			root.list().length == 0
+	}
+
+	def 'Always serializes publications of the same path with the same lock'() {
+		given:
+			def publisher = new AtomicUploadPublisher(4)
+
+		expect:
+			publisher.lockFor(new File(root, "file.txt")).is(publisher.lockFor(new File(root, "file.txt")))
+	}
+
+	def 'Always removes only abandoned temporary files of uploads'() {
+		given:
+			def abandoned = new File(root, "a/" + TEMPORARY_FILE_PREFIX + "1" + TEMPORARY_FILE_SUFFIX)
+			abandoned.parentFile.mkdirs()
+			abandoned.createNewFile()
+			abandoned.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000)
+			def inProgress = new File(root, TEMPORARY_FILE_PREFIX + "2" + TEMPORARY_FILE_SUFFIX)
+			inProgress.createNewFile()
+			def regular = new File(root, "regular.tmp")
+			regular.createNewFile()
+			regular.setLastModified(System.currentTimeMillis() - 2 * 60 * 60 * 1000)
+
+		when:
+			def numberOfRemovedFiles = removeAbandonedTemporaryFiles(root, 60 * 60 * 1000)
+
+		then:
+			numberOfRemovedFiles == 1
+			!abandoned.exists()
+			inProgress.exists()
+			regular.exists()
+	}
+}
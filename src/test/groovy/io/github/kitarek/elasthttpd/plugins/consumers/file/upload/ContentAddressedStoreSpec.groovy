@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload
+
+import spock.lang.Requires
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.security.MessageDigest
+
+import static java.nio.charset.StandardCharsets.US_ASCII
+
+@Requires({ ContentAddressedStoreSpec.isHardLinkCountSupported() })
+class ContentAddressedStoreSpec extends Specification {
+
+	def base = Files.createTempDirectory("blobs").toFile()
+	def root = new File(base, "root")
+	def store = new ContentAddressedStore(new File(base, "blobs"))
+	def publisher = new AtomicUploadPublisher()
+
+	def setup() {
+		root.mkdir()
+	}
+
+	def cleanup() {
+		base.deleteDir()
+	}
+
+	static boolean isHardLinkCountSupported() {
+		def directory = Files.createTempDirectory("links")
+		try {
+			Files.getFileStore(directory).supportsFileAttributeView("unix")
+		} finally {
+			Files.delete(directory)
+		}
+	}
+
+	def 'Never cannot create store without directory or positive number of lock stripes'() {
+		when:
+			new ContentAddressedStore(null)
+
+		then:
+			thrown(NullPointerException)
+
+		when:
+			new ContentAddressedStore(base, 0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always names blob by hexadecimal digest of its content'() {
+		when:
+			def blob = store.blobOf(sha256("content"))
+
+		then:
+			blob.name == new BigInteger(1, sha256("content")).toString(16).padLeft(64, "0")
+			blob.parentFile.name == blob.name.substring(0, 2)
+			blob.parentFile.parentFile == new File(base, "blobs")
+	}
+
+	def 'Always stores the first uploaded content as blob linked by the uploaded file'() {
+		given:
+			def file = new File(root, "a")
+
+		when:
+			publisher.publish(store.deduplicate(temporaryFile(file, "content"), sha256("content")), file)
+
+		then:
+			file.text == "content"
+			ContentAddressedStore.linkCountOf(file) == 2
+			Files.isSameFile(file.toPath(), store.blobOf(sha256("content")).toPath())
+			store.storedBlobCount == 1
+			store.deduplicatedUploadCount == 0
+	}
+
+	def 'Always replaces the same uploaded content with a link of already stored blob'() {
+		given:
+			def first = new File(root, "a")
+			def second = new File(root, "b")
+			publisher.publish(store.deduplicate(temporaryFile(first, "content"), sha256("content")), first)
+			def temporaryFile = temporaryFile(second, "content")
+
+		when:
+			def published = store.deduplicate(temporaryFile, sha256("content"))
+			publisher.publish(published, second)
+
+		then:
+			published != temporaryFile
+			!temporaryFile.exists()
+			second.text == "content"
+			Files.isSameFile(first.toPath(), second.toPath())
+			ContentAddressedStore.linkCountOf(first) == 3
+			store.deduplicatedUploadCount == 1
+			root.list().sort() == ["a", "b"]
+	}
+
+	def 'Always republishes a link of the same blob over the same file'() {
+		given:
+			def file = new File(root, "a")
+			publisher.publish(store.deduplicate(temporaryFile(file, "content"), sha256("content")), file)
+
+		when:
+			publisher.publish(store.deduplicate(temporaryFile(file, "content"), sha256("content")), file)
+
+		then:
+			root.list() == ["a"]
+			ContentAddressedStore.linkCountOf(file) == 2
+	}
+
+	def 'Always links stored blob without any written content and never links missing one'() {
+		given:
+			def file = new File(root, "a")
+			publisher.publish(store.deduplicate(temporaryFile(file, "content"), sha256("content")), file)
+
+		when:
+			def optionalLink = store.linkStoredBlob(sha256("content"), new File(root, "b"))
+
+		then:
+			optionalLink.get().text == "content"
+			optionalLink.get().parentFile == root
+			store.skippedWriteCount == 1
+			store.linkStoredBlob(sha256("other"), new File(root, "c")).isNotPresent()
+			store.linkStoredBlob(sha256("content"), new File(root, "missing/c")).isNotPresent()
+	}
+
+	def 'Always finds digest of blob referenced by file and never by a file that is not a reference'() {
+		given:
+			def file = new File(root, "a")
+			publisher.publish(store.deduplicate(temporaryFile(file, "content"), sha256("content")), file)
+			def other = new File(root, "b")
+			other.text = "content"
+
+		expect:
+			store.referencedDigestOf(file).get() == sha256("content")
+			store.referencedDigestOf(other).isNotPresent()
+			store.referencedDigestOf(new File(root, "missing")).isNotPresent()
+	}
+
+	def 'Always removes blob released by its last reference only'() {
+		given:
+			def first = new File(root, "a")
+			def second = new File(root, "b")
+			publisher.publish(store.deduplicate(temporaryFile(first, "content"), sha256("content")), first)
+			publisher.publish(store.deduplicate(temporaryFile(second, "content"), sha256("content")), second)
+			def blob = store.blobOf(sha256("content"))
+
+		when:
+			first.delete()
+
+		then:
+			!store.release(sha256("content"))
+			blob.exists()
+
+		when:
+			second.delete()
+
+		then:
+			store.release(sha256("content"))
+			!blob.exists()
+			store.removedBlobCount == 1
+	}
+
+	def 'Always removes all unreferenced blobs'() {
+		given:
+			def first = new File(root, "a")
+			def second = new File(root, "b")
+			publisher.publish(store.deduplicate(temporaryFile(first, "content"), sha256("content")), first)
+			publisher.publish(store.deduplicate(temporaryFile(second, "other"), sha256("other")), second)
+			first.delete()
+
+		when:
+			def removed = store.removeUnreferencedBlobs()
+
+		then:
+			removed == 1
+			!store.blobOf(sha256("content")).exists()
+			store.blobOf(sha256("other")).exists()
+	}
+
+	def 'Always counts a single link of file without other names'() {
+		given:
+			def file = new File(root, "a")
+			file.text = "content"
+
+		expect:
+			ContentAddressedStore.linkCountOf(file) == 1
+	}
+
+	private File temporaryFile(File target, String content) {
+		def temporaryFile = publisher.createTemporaryFile(target)
+		temporaryFile.text = content
+		temporaryFile
+	}
+
+	private static byte[] sha256(String content) {
+		MessageDigest.getInstance("SHA-256").digest(content.getBytes(US_ASCII))
+	}
+}
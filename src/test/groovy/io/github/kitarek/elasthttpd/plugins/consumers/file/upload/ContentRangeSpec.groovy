@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ContentRangeSpec extends Specification {
+
+	@Unroll
+	def 'Always parses part of file #header'() {
+		when:
+			def contentRange = ContentRange.parse(header)
+
+		then:
+			contentRange.range.get() == new ByteRange(first, last)
+			contentRange.completeLength == length
+
+		where:
+			header                   | first | last | length
+			"bytes 0-499/1234"       | 0     | 499  | 1234
+			" bytes 500-1233/1234 "  | 500   | 1233 | 1234
+			"bytes 0-0/1"            | 0     | 0    | 1
+	}
+
+	def 'Always parses query for received parts of file'() {
+		when:
+			def contentRange = ContentRange.parse("bytes */1234")
+
+		then:
+			contentRange.range.isNotPresent()
+			contentRange.completeLength == 1234
+	}
+
+	@Unroll
+	def 'Never accepts invalid content range "#header"'() {
+		when:
+			ContentRange.parse(header)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			header << ["", "bytes", "items 0-1/2", "bytes 0-1/*", "bytes 0-1", "bytes 1-0/2", "bytes 0-2/2",
+					   "bytes -1/2", "bytes 0-/2", "bytes */0", "bytes +0-1/2", "bytes 0-1/99999999999999999999",
+					   "bytes \u0660-1/2"]
+	}
+
+	@Unroll
+	def 'Always parses part of file with unknown complete length "#header" when it is allowed'() {
+		when:
+			def contentRange = ContentRange.parse(header, true)
+
+		then:
+			contentRange.range.get() == new ByteRange(first, last)
+			contentRange.completeLength == length
+			contentRange.completeLengthKnown == known
+			contentRange.toString() == header
+
+		where:
+			header           | first | last | length                               | known
+			"bytes 0-499/*"  | 0     | 499  | ContentRange.UNKNOWN_COMPLETE_LENGTH | false
+			"bytes 2-3/1234" | 2     | 3    | 1234                                 | true
+	}
+
+	def 'Never accepts query for received parts of file with unknown complete length'() {
+		when:
+			ContentRange.parse("bytes */*", true)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+}
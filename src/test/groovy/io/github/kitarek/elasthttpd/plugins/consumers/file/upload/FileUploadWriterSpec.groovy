@@ -0,0 +1,215 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload
+
+import org.apache.http.entity.BasicHttpEntity
+import org.apache.http.entity.ByteArrayEntity
+import org.apache.http.impl.io.ChunkedInputStream
+import org.apache.http.impl.io.HttpTransportMetricsImpl
+import org.apache.http.impl.io.SessionInputBufferImpl
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.nio.file.Files
+import java.security.MessageDigest
+
+import static java.nio.charset.StandardCharsets.US_ASCII
+
+class FileUploadWriterSpec extends Specification {
+
+	def root = Files.createTempDirectory("upload").toFile()
+
+	def cleanup() {
+		root.deleteDir()
+	}
+
+	def 'Never cannot create writer without positive size of buffer'() {
+		when:
+			new FileUploadWriter(0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always reuses one byte array and one direct buffer of the thread for all bodies'() {
+		given:
+			def writer = new FileUploadWriter(16)
+
+		expect:
+			writer.arrays.get().length == 16
+			writer.arrays.get().is(writer.arrays.get())
+			writer.buffers.get().direct
+			writer.buffers.get().capacity() == 16
+			writer.buffers.get().is(writer.buffers.get())
+	}
+
+	@Unroll
+	def 'Always writes whole body of #size bytes declared by Content-Length in blocks of buffer'() {
+		given:
+			def writer = new FileUploadWriter(7)
+			def body = (0..<size).collect { (byte) it } as byte[]
+			def file = new File(root, "file")
+			file.bytes = "previous longer content of file".bytes
+			def randomAccessFile = new RandomAccessFile(file, "rw")
+
+		when:
+			def written = writer.writeEntity(new ByteArrayEntity(body), randomAccessFile)
+			randomAccessFile.close()
+
+		then:
+			written == size
+			file.bytes == body
+
+		where:
+			size << [0, 1, 7, 8, 100]
+	}
+
+	def 'Always writes chunked body of unknown length'() {
+		given:
+			def writer = new FileUploadWriter(4)
+			def chunked = "5\r\nhello\r\n1\r\n \r\n5\r\nworld\r\n0\r\n\r\n"
+			def sessionBuffer = new SessionInputBufferImpl(new HttpTransportMetricsImpl(), 16)
+			sessionBuffer.bind(new ByteArrayInputStream(chunked.getBytes(US_ASCII)))
+			def entity = new BasicHttpEntity()
+			entity.chunked = true
+			entity.contentLength = -1
+			entity.content = new ChunkedInputStream(sessionBuffer)
+			def file = new File(root, "file")
+			file.bytes = "previous longer content of file".bytes
+			def randomAccessFile = new RandomAccessFile(file, "rw")
+
+		when:
+			def written = writer.writeEntity(entity, randomAccessFile)
+			randomAccessFile.close()
+
+		then:
+			written == 11
+			new String(file.bytes, US_ASCII) == "hello world"
+	}
+
+	def 'Never accepts body shorter than declared Content-Length'() {
+		given:
+			def writer = new FileUploadWriter()
+			def entity = new BasicHttpEntity()
+			entity.content = new ByteArrayInputStream("short".bytes)
+			entity.contentLength = 10
+			def randomAccessFile = new RandomAccessFile(new File(root, "file"), "rw")
+
+		when:
+			writer.writeEntity(entity, randomAccessFile)
+
+		then:
+			thrown(IOException)
+
+		cleanup:
+			randomAccessFile.close()
+	}
+
+	def 'Always updates digests with every block of written body'() {
+		given:
+			def writer = new FileUploadWriter(4)
+			def body = (0..<30).collect { (byte) it } as byte[]
+			def digests = [MessageDigest.getInstance("MD5"), MessageDigest.getInstance("SHA-256")]
+			def file = new File(root, "file")
+			def randomAccessFile = new RandomAccessFile(file, "rw")
+
+		when:
+			writer.writeEntity(new ByteArrayEntity(body), randomAccessFile, digests)
+			randomAccessFile.close()
+
+		then:
+			file.bytes == body
+			digests[0].digest() == MessageDigest.getInstance("MD5").digest(body)
+			digests[1].digest() == MessageDigest.getInstance("SHA-256").digest(body)
+	}
+
+	def 'Always digests whole body without writing it anywhere'() {
+		given:
+			def writer = new FileUploadWriter(4)
+			def body = (0..<30).collect { (byte) it } as byte[]
+			def digest = MessageDigest.getInstance("SHA-256")
+
+		when:
+			def read = writer.digestEntity(new ByteArrayEntity(body), [digest])
+
+		then:
+			read == 30
+			digest.digest() == MessageDigest.getInstance("SHA-256").digest(body)
+			root.list().length == 0
+	}
+
+	def 'Never digests body shorter than declared Content-Length'() {
+		given:
+			def entity = new BasicHttpEntity()
+			entity.content = new ByteArrayInputStream("abc".bytes)
+			entity.contentLength = 10
+
+		when:
+			new FileUploadWriter().digestEntity(entity, [MessageDigest.getInstance("MD5")])
+
+		then:
+			thrown(IOException)
+	}
+
+	def 'Always transfers stream into channel from the given position'() {
+		given:
+			def writer = new FileUploadWriter(2)
+			def file = new File(root, "file")
+			file.bytes = "abcdef".bytes
+			def randomAccessFile = new RandomAccessFile(file, "rw")
+
+		when:
+			def written = writer.transfer(new ByteArrayInputStream("XYZ".bytes), randomAccessFile.channel, 2)
+			randomAccessFile.close()
+
+		then:
+			written == 3
+			new String(file.bytes, US_ASCII) == "abXYZf"
+	}
+
+	def 'Always transfers only leading bytes of stream and leaves the rest unread'() {
+		given:
+			def writer = new FileUploadWriter(2)
+			def file = new File(root, "file")
+			file.bytes = "abcdef".bytes
+			def randomAccessFile = new RandomAccessFile(file, "rw")
+			def stream = new ByteArrayInputStream("XYZ--rest".bytes)
+
+		when:
+			writer.transferPrefix(stream, randomAccessFile.channel, 1, 3)
+			randomAccessFile.close()
+
+		then:
+			new String(file.bytes, US_ASCII) == "aXYZef"
+			stream.text == "--rest"
+	}
+
+	def 'Never transfers leading bytes of stream shorter than requested'() {
+		given:
+			def writer = new FileUploadWriter(2)
+			def randomAccessFile = new RandomAccessFile(new File(root, "file"), "rw")
+
+		when:
+			writer.transferPrefix(new ByteArrayInputStream("XY".bytes), randomAccessFile.channel, 0, 3)
+
+		then:
+			thrown(IOException)
+
+		cleanup:
+			randomAccessFile.close()
+	}
+}
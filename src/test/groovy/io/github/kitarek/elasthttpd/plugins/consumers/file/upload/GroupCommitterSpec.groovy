@@ -0,0 +1,167 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload
+
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class GroupCommitterSpec extends Specification {
+
+	def root = Files.createTempDirectory("commit").toFile()
+
+	def cleanup() {
+		root.deleteDir()
+	}
+
+	def 'Never cannot create committer with negative window or without positive batch size'() {
+		when:
+			new GroupCommitter(window, batchSize)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			window | batchSize
+			-1     | 1
+			0      | 0
+	}
+
+	def 'Always commits concurrent uploads together in batches and measures them'() {
+		given:
+			def committer = new GroupCommitter(50000, 64)
+			def publisher = new AtomicUploadPublisher(4, committer)
+			def executor = Executors.newFixedThreadPool(8)
+			def start = new CountDownLatch(1)
+
+		when:
+			def results = (0..<8).collect { number ->
+				executor.submit({
+					def target = new File(root, "file-${number}.txt")
+					def temporaryFile = publisher.createTemporaryFile(target)
+					temporaryFile.text = "content ${number}"
+					start.await()
+					publisher.publish(temporaryFile, target)
+				} as Callable)
+			}
+			start.countDown()
+			results*.get()
+
+		then:
+			(0..<8).every { new File(root, "file-${it}.txt").text == "content ${it}" }
+			root.list().length == 8
+			committer.numberOfCommits == 8
+			committer.numberOfBatches < 8
+			committer.largestBatchSize > 1
+			committer.averageBatchSize > 1
+			committer.maximumCommitLatencyInMicroseconds >= committer.averageCommitLatencyInMicroseconds
+
+		cleanup:
+			executor.shutdown()
+	}
+
+	def 'Always commits upload alone without waiting when window is zero'() {
+		given:
+			def committer = new GroupCommitter(0, 1)
+			def publisher = new AtomicUploadPublisher(4, committer)
+			def target = new File(root, "file.txt")
+			def temporaryFile = publisher.createTemporaryFile(target)
+			temporaryFile.text = "content"
+
+		when:
+			publisher.publish(temporaryFile, target)
+
+		then:
+			target.text == "content"
+			committer.numberOfBatches == 1
+			committer.largestBatchSize == 1
+	}
+
+	def 'Never commits upload which content cannot be synchronized by its own thread'() {
+		given:
+			def committer = new GroupCommitter()
+			def publisher = new AtomicUploadPublisher(4, committer)
+
+		when:
+			publisher.publish(new File(root, "missing.tmp"), new File(root, "file.txt"))
+
+		then:
+			thrown(IOException)
+			committer.numberOfCommits == 0
+			!new File(root, "file.txt").exists()
+	}
+
+	def 'Never hides failure of synchronization of directory committed in a batch'() {
+		given:
+			def committer = new GroupCommitter()
+
+		when:
+			committer.commit(new File(root, "missing/file.txt"))
+
+		then:
+			thrown(IOException)
+			committer.numberOfCommits == 1
+	}
+
+	def 'Always stops committer thread when closed and starts it again for the next upload'() {
+		given:
+			def committer = new GroupCommitter(0, 1)
+			committer.commit(new File(root, "first.txt"))
+			def firstCommitterThread = committer.committerThread
+
+		when:
+			committer.close()
+
+		then:
+			!firstCommitterThread.alive
+			committer.committerThread == null
+
+		when:
+			committer.commit(new File(root, "second.txt"))
+
+		then:
+			committer.numberOfBatches == 2
+			committer.committerThread.alive
+
+		cleanup:
+			committer.close()
+	}
+
+	def 'Always commits uploads enqueued before closing without waiting for the end of commit window'() {
+		given:
+			def committer = new GroupCommitter(TimeUnit.MINUTES.toMicros(1), 64)
+			def executor = Executors.newSingleThreadExecutor()
+			def result = executor.submit({ committer.commit(new File(root, "file.txt")) } as Callable)
+			while (committer.committerThread == null || !committer.pendingCommits.isEmpty())
+				Thread.sleep(1)
+
+		when:
+			committer.close()
+			result.get(10, TimeUnit.SECONDS)
+
+		then:
+			committer.numberOfCommits == 1
+			committer.numberOfBatches == 1
+
+		cleanup:
+			executor.shutdown()
+	}
+}
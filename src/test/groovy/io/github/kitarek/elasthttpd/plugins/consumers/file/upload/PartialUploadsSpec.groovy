@@ -0,0 +1,160 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload
+
+import io.github.kitarek.elasthttpd.commons.Base64Codec
+import org.apache.http.message.BasicHttpRequest
+import spock.lang.Specification
+
+import java.nio.file.Files
+import java.security.MessageDigest
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class PartialUploadsSpec extends Specification {
+
+	def root = Files.createTempDirectory("partial").toFile()
+	def target = new File(root, "file.bin")
+	def uploads = new PartialUploads(new FileUploadWriter(16), new AtomicUploadPublisher())
+
+	def cleanup() {
+		root.deleteDir()
+	}
+
+	def 'Never cannot create uploads without positive idle timeout'() {
+		when:
+			new PartialUploads(new FileUploadWriter(), new AtomicUploadPublisher(), 0)
+
+		then:
+			thrown(IllegalArgumentException)
+	}
+
+	def 'Always publishes file when the last missing part is received'() {
+		when:
+			def first = uploads.writePart(target, ContentRange.parse("bytes 5-9/10"), stream("56789"))
+
+		then:
+			!first.completed
+			first.toRangeHeaderValue() == "bytes=5-9"
+			!target.exists()
+			uploads.getStatus(target, 10).toRangeHeaderValue() == "bytes=5-9"
+
+		when:
+			def last = uploads.writePart(target, ContentRange.parse("bytes 0-4/10"), stream("01234"))
+
+		then:
+			last.completed
+			target.text == "0123456789"
+			root.list() == ["file.bin"] as String[]
+			uploads.numberOfUploadsInProgress == 0
+			uploads.getStatus(target, 10).receivedRanges.isEmpty()
+	}
+
+	def 'Always publishes file uploaded in parts over many connections at once'() {
+		given:
+			def content = (0..<4096).collect { (byte) (it * 31) } as byte[]
+			def executor = Executors.newFixedThreadPool(8)
+
+		when:
+			def statuses = (0..<64).collect { part ->
+				executor.submit({
+					def first = part * 64
+					uploads.writePart(target, ContentRange.parse("bytes ${first}-${first + 63}/4096"),
+							new ByteArrayInputStream(content, first, 64))
+				} as Callable)
+			}*.get()
+
+		then:
+			statuses.count { it.completed } == 1
+			target.bytes == content
+
+		cleanup:
+			executor.shutdown()
+	}
+
+	def 'Never remembers part which body is shorter than its range'() {
+		when:
+			uploads.writePart(target, ContentRange.parse("bytes 0-9/20"), stream("0123"))
+
+		then:
+			thrown(IOException)
+			uploads.getStatus(target, 20).receivedRanges.isEmpty()
+	}
+
+	def 'Never remembers part which body does not match its declared digest'() {
+		given:
+			def digests = UploadDigests.expectedBy(digestRequest("SHA-256=" + sha256("other")), false)
+
+		when:
+			uploads.writePart(target, ContentRange.parse("bytes 0-4/10"), stream("01234"), digests)
+
+		then:
+			thrown(UploadDigestMismatchException)
+			uploads.getStatus(target, 10).receivedRanges.isEmpty()
+	}
+
+	def 'Always remembers part which body matches its declared digest'() {
+		given:
+			def digests = UploadDigests.expectedBy(digestRequest("SHA-256=" + sha256("01234")), false)
+
+		when:
+			def status = uploads.writePart(target, ContentRange.parse("bytes 0-4/10"), stream("01234"), digests)
+
+		then:
+			status.toRangeHeaderValue() == "bytes=0-4"
+	}
+
+	def 'Never accepts part of file which upload with another length is in progress'() {
+		given:
+			uploads.writePart(target, ContentRange.parse("bytes 0-4/10"), stream("01234"))
+
+		when:
+			uploads.writePart(target, ContentRange.parse("bytes 0-4/20"), stream("01234"))
+
+		then:
+			thrown(IllegalStateException)
+	}
+
+	def 'Always discards idle uploads when the next upload is started'() {
+		given:
+			def idleUploads = new PartialUploads(new FileUploadWriter(), new AtomicUploadPublisher(), 1)
+			idleUploads.writePart(target, ContentRange.parse("bytes 0-4/10"), stream("01234"))
+			Thread.sleep(10)
+
+		when:
+			idleUploads.writePart(new File(root, "other.bin"), ContentRange.parse("bytes 0-4/10"), stream("01234"))
+
+		then:
+			idleUploads.numberOfUploadsInProgress == 1
+			idleUploads.getStatus(target, 10).receivedRanges.isEmpty()
+			root.list().length == 1
+	}
+
+	private static InputStream stream(String content) {
+		new ByteArrayInputStream(content.bytes)
+	}
+
+	private static digestRequest(String digest) {
+		def request = new BasicHttpRequest("PUT", "/file.bin")
+		request.addHeader("Digest", digest)
+		request
+	}
+
+	private static String sha256(String content) {
+		Base64Codec.encode(MessageDigest.getInstance("SHA-256").digest(content.bytes))
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload
+
+import io.github.kitarek.elasthttpd.plugins.consumers.file.range.ByteRange
+import spock.lang.Specification
+import spock.lang.Unroll
+
+class ReceivedRangesSpec extends Specification {
+
+	@Unroll
+	def 'Always merges overlapping and adjacent ranges #added into #expected'() {
+		given:
+			def receivedRanges = new ReceivedRanges()
+
+		when:
+			added.each { receivedRanges.add(new ByteRange(it[0], it[1])) }
+
+		then:
+			receivedRanges.ranges.collect { it.toString() } == expected
+			receivedRanges.receivedBytes == receivedBytes
+
+		where:
+			added                                 | expected                  | receivedBytes
+			[[0, 9]]                              | ["0-9"]                   | 10
+			[[0, 9], [10, 19]]                    | ["0-19"]                  | 20
+			[[10, 19], [0, 9]]                    | ["0-19"]                  | 20
+			[[0, 9], [20, 29]]                    | ["0-9", "20-29"]          | 20
+			[[0, 9], [20, 29], [5, 24]]           | ["0-29"]                  | 30
+			[[0, 9], [20, 29], [40, 49], [9, 41]] | ["0-49"]                  | 50
+			[[0, 9], [2, 3]]                      | ["0-9"]                   | 10
+			[[5, 6], [0, 100]]                    | ["0-100"]                 | 101
+			[[0, 9], [30, 39], [11, 19]]          | ["0-9", "11-19", "30-39"] | 29
+	}
+
+	def 'Always is complete only when all bytes are received'() {
+		given:
+			def receivedRanges = new ReceivedRanges()
+
+		when:
+			receivedRanges.add(new ByteRange(5, 9))
+
+		then:
+			!receivedRanges.isComplete(10)
+
+		when:
+			receivedRanges.add(new ByteRange(0, 4))
+
+		then:
+			receivedRanges.isComplete(10)
+			!receivedRanges.isComplete(11)
+	}
+}
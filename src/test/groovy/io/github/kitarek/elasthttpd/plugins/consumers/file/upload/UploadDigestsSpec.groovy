@@ -0,0 +1,150 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.plugins.consumers.file.upload
+
+import io.github.kitarek.elasthttpd.commons.Base64Codec
+import org.apache.http.message.BasicHttpRequest
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.security.MessageDigest
+
+import static java.nio.charset.StandardCharsets.US_ASCII
+
+class UploadDigestsSpec extends Specification {
+
+	@Unroll
+	def 'Always verifies body with matching #header header'() {
+		given:
+			def digests = UploadDigests.expectedBy(request(header, value), false)
+
+		when:
+			update(digests, "hello world")
+			digests.verify()
+
+		then:
+			notThrown(UploadDigestMismatchException)
+			digests.isVerified()
+
+		where:
+			header        | value
+			"Content-MD5" | encoded("MD5", "hello world")
+			"Digest"      | "MD5=" + encoded("MD5", "hello world")
+			"Digest"      | "sha=" + encoded("SHA-1", "hello world")
+			"Digest"      | "SHA-256=" + encoded("SHA-256", "hello world")
+			"Digest"      | "sha-512=" + encoded("SHA-512", "hello world") + ",unixsum=30637"
+	}
+
+	def 'Never verifies body declared only with unsupported algorithm'() {
+		given:
+			def digests = UploadDigests.expectedBy(request("Digest", "UNIXsum=30637"), false)
+
+		when:
+			update(digests, "hello world")
+			digests.verify()
+
+		then:
+			notThrown(UploadDigestMismatchException)
+			!digests.isVerified()
+	}
+
+	@Unroll
+	def 'Never verifies body with mismatching #header header'() {
+		given:
+			def digests = UploadDigests.expectedBy(request(header, value), false)
+
+		when:
+			update(digests, "hello world")
+			digests.verify()
+
+		then:
+			thrown(UploadDigestMismatchException)
+
+		where:
+			header        | value
+			"Content-MD5" | encoded("MD5", "hello")
+			"Digest"      | "SHA-256=" + encoded("SHA-256", "hello")
+			"Digest"      | "md5=" + encoded("MD5", "hello world") + ", sha-256=" + encoded("SHA-256", "hello")
+	}
+
+	@Unroll
+	def 'Never accepts malformed #header header "#value"'() {
+		when:
+			UploadDigests.expectedBy(request(header, value), false)
+
+		then:
+			thrown(IllegalArgumentException)
+
+		where:
+			header        | value
+			"Content-MD5" | "not base64"
+			"Content-MD5" | encoded("SHA-256", "hello")
+			"Digest"      | "SHA-256"
+			"Digest"      | "=abc"
+			"Digest"      | "MD5=abc"
+	}
+
+	def 'Always computes SHA-256 digest of body when requested even if it is not declared'() {
+		given:
+			def digests = UploadDigests.expectedBy(request("Content-MD5", encoded("MD5", "content")), true)
+
+		when:
+			update(digests, "content")
+			digests.verify()
+
+		then:
+			digests.contentDigest.get() == MessageDigest.getInstance("SHA-256").digest("content".getBytes(US_ASCII))
+			digests.messageDigests*.algorithm == ["MD5", "SHA-256"]
+	}
+
+	def 'Always provides declared SHA-256 digest before body is read'() {
+		expect:
+			UploadDigests.expectedBy(request("Digest", "SHA-256=" + encoded("SHA-256", "content")), true)
+					.expectedContentDigest.get() ==
+					MessageDigest.getInstance("SHA-256").digest("content".getBytes(US_ASCII))
+			UploadDigests.expectedBy(request("Content-MD5", encoded("MD5", "content")), true)
+					.expectedContentDigest.isNotPresent()
+	}
+
+	def 'Never computes anything when nothing is declared nor requested'() {
+		given:
+			def digests = UploadDigests.expectedBy(new BasicHttpRequest("PUT", "/file"), false)
+
+		when:
+			digests.verify()
+
+		then:
+			digests.messageDigests.isEmpty()
+			digests.contentDigest.isNotPresent()
+			!digests.isVerified()
+			UploadDigests.none().messageDigests.isEmpty()
+	}
+
+	private static request(String header, String value) {
+		def request = new BasicHttpRequest("PUT", "/file")
+		request.addHeader(header, value)
+		request
+	}
+
+	private static void update(UploadDigests digests, String body) {
+		digests.messageDigests.each { it.update(body.getBytes(US_ASCII)) }
+	}
+
+	private static String encoded(String algorithm, String body) {
+		Base64Codec.encode(MessageDigest.getInstance(algorithm).digest(body.getBytes(US_ASCII)))
+	}
+}
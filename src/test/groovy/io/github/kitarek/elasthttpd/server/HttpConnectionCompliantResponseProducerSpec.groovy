@@ -16,13 +16,18 @@
  */
 
 package io.github.kitarek.elasthttpd.server
+import io.github.kitarek.elasthttpd.server.compression.CompressingHttpEntity
+import io.github.kitarek.elasthttpd.server.compression.ContentCoding
 import io.github.kitarek.elasthttpd.server.producers.HttpConnectionCompliantResponseProducer
 import io.github.kitarek.elasthttpd.server.producers.HttpConnectionProducer
+import org.apache.http.HttpEntity
 import org.apache.http.HttpRequest
 import org.apache.http.HttpResponse
 import org.apache.http.HttpServerConnection
+import org.apache.http.HttpVersion
 import org.apache.http.RequestLine
 import org.apache.http.StatusLine
+import org.apache.http.message.BasicHttpResponse
 import org.apache.http.protocol.HttpContext
 import org.apache.http.protocol.HttpProcessor
 import spock.lang.Specification
@@ -132,5 +137,34 @@ class HttpConnectionCompliantResponseProducerSpec extends Specification {
 			SC_RESET_CONTENT | "DELETE"        | 0
 			SC_ACCEPTED      | "POST"          | 1
 	}
-}
 
+	def 'HTTP connection producer never compresses content of compressing entity that is not sent for HEAD request'() {
+		given:
+			def httpRequestStub = Stub(HttpRequest)
+			def requestLineStub = Stub(RequestLine)
+			def HttpContext httpContextStub = Stub(HttpContext)
+			httpContextStub.getAttribute(HTTP_CONNECTION) >> httpServerConnection
+			httpContextStub.getAttribute(HTTP_REQUEST) >> httpRequestStub
+			httpRequestStub.getRequestLine() >> requestLineStub
+			requestLineStub.method >> "HEAD"
+		and:
+			def httpResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1, SC_OK, "OK")
+			def originalEntity = Mock(HttpEntity)
+			def originalContent = Mock(InputStream)
+			httpResponse.setEntity(new CompressingHttpEntity(originalEntity, ContentCoding.GZIP, -1, 1024))
+
+		when:
+			httpConnnectionProducer.sendResponse(httpResponse, httpContextStub)
+
+		then:
+			1 * httpProcessorMock.process(httpResponse, _)
+			1 * httpServerConnection.sendResponseHeader(httpResponse)
+			0 * httpServerConnection.sendResponseEntity(_)
+			1 * httpServerConnection.flush()
+		and:
+			_ * originalEntity.isStreaming() >> true
+			1 * originalEntity.getContent() >> originalContent
+			1 * originalContent.close()
+			0 * originalEntity.writeTo(_)
+	}
+}
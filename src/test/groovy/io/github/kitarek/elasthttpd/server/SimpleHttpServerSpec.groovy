@@ -94,6 +94,22 @@ class SimpleHttpServerSpec extends Specification {
 			1 * socket.stopListening()
 	}
 
+	def 'Http Server closes its resources when stopped'() {
+		given:
+			def resource = Mock(Closeable)
+			def failingResource = Mock(Closeable)
+			def HttpServer server = new SimpleHttpServer(dummyExecutor(), dummyListener(), dummySocket(),
+					[failingResource, resource])
+
+		when:
+			server.stop();
+
+		then:
+			1 * failingResource.close() >> { throw new IOException("Cannot close") }
+			1 * resource.close()
+			notThrown(IOException)
+	}
+
 	def 'Can block caller thread waiting for Http Server to be stopped'() {
 		given:
 			def executorMock = Mock(ListenerExecutor)
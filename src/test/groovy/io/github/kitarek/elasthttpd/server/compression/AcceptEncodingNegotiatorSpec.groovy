@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.server.compression
+
+import org.apache.http.message.BasicHttpRequest
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.DEFLATE
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.GZIP
+
+class AcceptEncodingNegotiatorSpec extends Specification {
+
+	def 'Never selects any coding when client does not send Accept-Encoding header'() {
+		given:
+			def negotiator = new AcceptEncodingNegotiator()
+			def request = new BasicHttpRequest("GET", "/")
+
+		when:
+			def optionalCoding = negotiator.negotiate(request, [GZIP, DEFLATE])
+
+		then:
+			optionalCoding.isNotPresent()
+	}
+
+	@Unroll("Selects #expectedCoding for Accept-Encoding: '#acceptEncoding'")
+	def 'Always selects the coding with the highest quality and prefers server order for equal qualities'() {
+		given:
+			def negotiator = new AcceptEncodingNegotiator()
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Accept-Encoding", acceptEncoding)
+
+		when:
+			def optionalCoding = negotiator.negotiate(request, [GZIP, DEFLATE])
+
+		then:
+			optionalCoding.isPresent()
+			optionalCoding.get() == expectedCoding
+
+		where:
+			acceptEncoding                 | expectedCoding
+			"gzip, deflate, br"            | GZIP
+			"deflate, gzip"                | GZIP
+			"deflate"                      | DEFLATE
+			"gzip;q=0.4, deflate;q=0.5"    | DEFLATE
+			"*"                            | GZIP
+			"*;q=0.1, gzip;q=0"            | DEFLATE
+			"x-gzip"                       | GZIP
+			"GZIP"                         | GZIP
+	}
+
+	@Unroll("Never selects any coding for Accept-Encoding: '#acceptEncoding'")
+	def 'Never selects coding that is not acceptable'() {
+		given:
+			def negotiator = new AcceptEncodingNegotiator()
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Accept-Encoding", acceptEncoding)
+
+		when:
+			def optionalCoding = negotiator.negotiate(request, [GZIP, DEFLATE])
+
+		then:
+			optionalCoding.isNotPresent()
+
+		where:
+			acceptEncoding << ["identity", "br", "gzip;q=0, deflate;q=0", "*;q=0", "gzip;q=abc", ""]
+	}
+
+	def 'Can check whether a single coding is accepted'() {
+		given:
+			def negotiator = new AcceptEncodingNegotiator()
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Accept-Encoding", "gzip;q=0.8, deflate;q=0")
+
+		expect:
+			negotiator.accepts(request, GZIP)
+			!negotiator.accepts(request, DEFLATE)
+	}
+
+	@Unroll
+	def 'Never cannot negotiate with null arguments'() {
+		when:
+			new AcceptEncodingNegotiator().negotiate(request, codings)
+
+		then:
+			thrown(NullPointerException)
+
+		where:
+			request                             | codings
+			null                                | [GZIP]
+			new BasicHttpRequest("GET", "/")    | null
+	}
+}
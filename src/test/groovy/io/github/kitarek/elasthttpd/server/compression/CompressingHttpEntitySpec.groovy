@@ -0,0 +1,58 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.server.compression
+
+import org.apache.http.HttpEntity
+import org.apache.http.entity.ByteArrayEntity
+import spock.lang.Specification
+
+import java.util.zip.GZIPInputStream
+
+import static io.github.kitarek.elasthttpd.server.compression.ContentCoding.GZIP
+
+class CompressingHttpEntitySpec extends Specification {
+
+	def 'Never compresses wrapped entity when content is closed without being read but releases wrapped content'() {
+		given:
+			def wrappedEntity = Mock(HttpEntity)
+			def wrappedContent = Mock(InputStream)
+			def entity = new CompressingHttpEntity(wrappedEntity, GZIP, -1, 1024)
+
+		when:
+			entity.getContent().close()
+
+		then:
+			_ * wrappedEntity.isStreaming() >> true
+			1 * wrappedEntity.getContent() >> wrappedContent
+			1 * wrappedContent.close()
+			0 * wrappedEntity.writeTo(_)
+	}
+
+	def 'Always compresses wrapped entity when content is read'() {
+		given:
+			def entity = new CompressingHttpEntity(new ByteArrayEntity("Hello".getBytes("UTF-8")), GZIP, -1, 1024)
+
+		when:
+			def content = entity.getContent()
+			def decompressedContent = new GZIPInputStream(content).getText("UTF-8")
+			content.close()
+
+		then:
+			decompressedContent == "Hello"
+	}
+}
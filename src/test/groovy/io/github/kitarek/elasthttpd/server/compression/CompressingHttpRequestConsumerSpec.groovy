@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package io.github.kitarek.elasthttpd.server.compression
+
+import io.github.kitarek.elasthttpd.server.consumers.HttpRequestConsumer
+import org.apache.http.HttpEntity
+import org.apache.http.HttpResponse
+import org.apache.http.HttpVersion
+import org.apache.http.entity.ContentType
+import org.apache.http.entity.InputStreamEntity
+import org.apache.http.entity.StringEntity
+import org.apache.http.message.BasicHeader
+import org.apache.http.message.BasicHttpRequest
+import org.apache.http.message.BasicHttpResponse
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import java.util.zip.GZIPInputStream
+import java.util.zip.InflaterInputStream
+
+import static io.github.kitarek.elasthttpd.server.compression.CompressionConfigurationBuilder.newCompressionConfiguration
+
+class CompressingHttpRequestConsumerSpec extends Specification {
+
+	def 'Never cannot create consumer with null dependencies'() {
+		when:
+			new CompressingHttpRequestConsumer(consumer, configuration, negotiator)
+
+		then:
+			thrown(NullPointerException)
+
+		where:
+			consumer                  | configuration                            | negotiator
+			null                      | newCompressionConfiguration().createNow() | new AcceptEncodingNegotiator()
+			Mock(HttpRequestConsumer) | null                                      | new AcceptEncodingNegotiator()
+			Mock(HttpRequestConsumer) | newCompressionConfiguration().createNow() | null
+	}
+
+	def 'Always compresses small text entity upfront with gzip and keeps its content type'() {
+		given:
+			def text = largeText(200)
+			def response = consumeWithCompression("gzip", new StringEntity(text, ContentType.TEXT_HTML))
+
+		expect:
+			response.entity.contentEncoding.value == "gzip"
+			response.entity.contentLength > 0
+			!response.entity.chunked
+			response.entity.contentType.value.startsWith("text/html")
+			response.getFirstHeader("Vary").value == "Accept-Encoding"
+			new GZIPInputStream(response.entity.content).text == text
+	}
+
+	def 'Always compresses big entity of unknown length on the fly using chunks'() {
+		given:
+			def text = largeText(100000)
+			def entity = new InputStreamEntity(new ByteArrayInputStream(text.bytes), -1,
+					ContentType.APPLICATION_JSON)
+			def response = consumeWithCompression("deflate", entity)
+			def compressed = new ByteArrayOutputStream()
+
+		when:
+			response.entity.writeTo(compressed)
+
+		then:
+			response.entity instanceof CompressingHttpEntity
+			response.entity.chunked
+			response.entity.contentLength == -1
+			response.entity.contentEncoding.value == "deflate"
+			new InflaterInputStream(new ByteArrayInputStream(compressed.toByteArray())).text == text
+	}
+
+	@Unroll
+	def 'Never compresses entity when client does not accept it but still adds Vary header'() {
+		given:
+			def entity = new StringEntity(largeText(2000), ContentType.TEXT_PLAIN)
+			def response = consumeWithCompression(acceptEncoding, entity)
+
+		expect:
+			response.entity.is(entity)
+			response.getFirstHeader("Vary").value == "Accept-Encoding"
+
+		where:
+			acceptEncoding << [null, "identity", "br"]
+	}
+
+	@Unroll
+	def 'Never compresses entity that is too small, not on the allow-list or already encoded'() {
+		given:
+			def response = consumeWithCompression("gzip", entity)
+
+		expect:
+			response.entity.is(entity)
+			!response.containsHeader("Vary")
+
+		where:
+			entity << [
+					new StringEntity("small", ContentType.TEXT_PLAIN),
+					new StringEntity(largeText(2000), ContentType.create("image/png")),
+					encodedEntity()
+			]
+	}
+
+	def 'Never compresses response that forbids transformations'() {
+		given:
+			def entity = new StringEntity(largeText(2000), ContentType.TEXT_PLAIN)
+			def HttpRequestConsumer consumer = Mock()
+			def compressingConsumer = new CompressingHttpRequestConsumer(consumer,
+					newCompressionConfiguration().createNow(), new AcceptEncodingNegotiator())
+			def request = new BasicHttpRequest("GET", "/")
+			request.addHeader("Accept-Encoding", "gzip")
+			def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+
+		when:
+			compressingConsumer.consumeRequest(request, response)
+
+		then:
+			1 * consumer.consumeRequest(request, response) >> {
+				response.addHeader("Cache-Control", "public, no-transform")
+				response.setEntity(entity)
+			}
+			response.entity.is(entity)
+	}
+
+	private static def encodedEntity() {
+		def entity = new StringEntity(largeText(2000), ContentType.TEXT_PLAIN)
+		entity.setContentEncoding("gzip")
+		entity
+	}
+
+	private static String largeText(int repetitions) {
+		"Lorem ipsum dolor sit amet. " * repetitions
+	}
+
+	def 'Always compresses entity of response to HEAD request on the fly without reading it'() {
+		given:
+			def HttpEntity entity = Mock()
+			entity.contentType >> new BasicHeader("Content-Type", "text/plain")
+			entity.contentLength >> 2000
+
+		when:
+			def response = consumeWithCompression("gzip", entity, "HEAD")
+
+		then:
+			0 * entity.getContent()
+			0 * entity.writeTo(_)
+		and:
+			response.entity instanceof CompressingHttpEntity
+			response.entity.chunked
+			response.entity.contentEncoding.value == "gzip"
+	}
+
+	@Unroll
+	def 'Always gives #coding variant entity tag #variantTag instead of #entityTag and drops ranges and digests'() {
+		given:
+			def headers = ["ETag": entityTag, "Accept-Ranges": "bytes", "Digest": "SHA-256=abc=", "Content-MD5": "abc="]
+
+		when:
+			def response = consumeWithCompression(coding, new StringEntity(largeText(200), ContentType.TEXT_PLAIN),
+					"GET", headers)
+
+		then:
+			response.entity.contentEncoding.value == coding
+			response.getFirstHeader("ETag")?.value == variantTag
+			!response.containsHeader("Accept-Ranges")
+			!response.containsHeader("Digest")
+			!response.containsHeader("Content-MD5")
+
+		where:
+			coding    | entityTag    | variantTag
+			"gzip"    | '"abc"'      | '"abc-gzip"'
+			"deflate" | 'W/"abc"'    | 'W/"abc-deflate"'
+			"gzip"    | 'malformed'  | null
+	}
+
+	def 'Never changes entity tag nor ranges of response that is not compressed'() {
+		when:
+			def response = consumeWithCompression("identity", new StringEntity(largeText(200), ContentType.TEXT_PLAIN),
+					"GET", ["ETag": '"abc"', "Accept-Ranges": "bytes"])
+
+		then:
+			response.entity.contentEncoding == null
+			response.getFirstHeader("ETag").value == '"abc"'
+			response.getFirstHeader("Accept-Ranges").value == "bytes"
+	}
+
+	private HttpResponse consumeWithCompression(String acceptEncoding, entity, String method = "GET",
+												Map<String, String> headers = [:]) {
+		def HttpRequestConsumer consumer = Stub()
+		def compressingConsumer = new CompressingHttpRequestConsumer(consumer,
+				newCompressionConfiguration().createNow(), new AcceptEncodingNegotiator())
+		def request = new BasicHttpRequest(method, "/")
+		if (acceptEncoding != null)
+			request.addHeader("Accept-Encoding", acceptEncoding)
+		def response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK")
+		consumer.consumeRequest(request, response) >> {
+			headers.each { name, value -> response.setHeader(name, value) }
+			response.setEntity(entity)
+		}
+		compressingConsumer.consumeRequest(request, response)
+		response
+	}
+}
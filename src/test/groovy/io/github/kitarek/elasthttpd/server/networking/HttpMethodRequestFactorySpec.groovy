@@ -0,0 +1,56 @@
+/*
+ * Copyright 2015 Arek Kita
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package io.github.kitarek.elasthttpd.server.networking
+
+import org.apache.http.HttpEntityEnclosingRequest
+import org.apache.http.MethodNotSupportedException
+import org.apache.http.message.BasicRequestLine
+import spock.lang.Specification
+import spock.lang.Unroll
+
+import static org.apache.http.HttpVersion.HTTP_1_1
+
+class HttpMethodRequestFactorySpec extends Specification {
+
+	@Unroll
+	def 'Always creates request able to carry body only for #method'() {
+		when:
+			def request = HttpMethodRequestFactory.INSTANCE.newHttpRequest(new BasicRequestLine(method, "/", HTTP_1_1))
+
+		then:
+			request.requestLine.method == method
+			(request instanceof HttpEntityEnclosingRequest) == entityEnclosing
+
+		where:
+			method    | entityEnclosing
+			"PATCH"   | true
+			"PUT"     | true
+			"post"    | true
+			"GET"     | false
+			"HEAD"    | false
+			"DELETE"  | false
+			"OPTIONS" | false
+	}
+
+	def 'Never creates request of unknown method'() {
+		when:
+			HttpMethodRequestFactory.INSTANCE.newHttpRequest("PROPFIND", "/")
+
+		then:
+			thrown(MethodNotSupportedException)
+	}
+}